@@ -40,6 +40,7 @@ public final class RodaConstants {
   public static final String CORE_SOLR_HTTP_URL = "core.solr.http.url";
   public static final String CORE_SOLR_CLOUD_URLS = "core.solr.cloud.urls";
   public static final String CORE_SOLR_STEMMING_LANGUAGE = "core.solr.stemming.language";
+  public static final String CORE_SOLR_PERMISSION_TOKENS = "core.solr.permission_tokens";
 
   public static final String CORE_EVENTS_ENABLED = "core.events.enabled";
   public static final String CORE_EVENTS_NOTIFIER_AND_HANDLER_ARE_THE_SAME = "core.events.notifier_and_handler_are_the_same";
@@ -156,6 +157,7 @@ public final class RodaConstants {
   public static final String RODA_OBJECT_RISK = "risk";
   public static final String RODA_OBJECT_INCIDENCE = "incidence";
   public static final String RODA_OBJECT_TRANSFERRED_RESOURCE = "transferred_resource";
+  public static final String RODA_OBJECT_TRANSFERRED_RESOURCE_UPLOAD = "transferred_resource_upload";
   public static final String RODA_OBJECT_USER = "user";
   public static final String RODA_OBJECT_GROUP = "group";
   public static final String RODA_OBJECT_DESCRIPTIVE_METADATA = "descriptive_metadata";
@@ -203,8 +205,10 @@ public final class RodaConstants {
   public static final String CORE_STORAGE_FOLDER = "storage";
   public static final String CORE_STORAGE_HISTORY_FOLDER = "storage-history";
   public static final String CORE_INDEX_FOLDER = "index";
+  public static final String CORE_FULLTEXT_FOLDER = "fulltext";
   public static final String CORE_CROSSWALKS_FOLDER = "crosswalks";
   public static final String CORE_ORCHESTRATOR_FOLDER = "orchestrator";
+  public static final String CORE_ORCHESTRATOR_JOURNAL_FOLDER = "orchestrator-journal";
   public static final String CORE_JOBREPORT_FOLDER = "jobreport";
   public static final String CORE_JOB_FOLDER = "job";
   public static final String CORE_TRANSFERREDRESOURCE_FOLDER = "transferredresource";
@@ -237,6 +241,12 @@ public final class RodaConstants {
   public static final String CORE_DIP_FOLDER = "dip";
   public static final String CORE_DIP_FILE_FOLDER = "dipfile";
   public static final String CORE_REPRESENTATION_INFORMATION_FOLDER = "representation-information";
+  public static final String CORE_CONVERSION_POOL_FOLDER = "conversion-pool";
+  public static final String CORE_TRANSFERREDRESOURCE_SNAPSHOT_FILE = "transferred-resources-snapshot.gz";
+  public static final String CORE_TRANSFERREDRESOURCE_UPLOADS_FOLDER = "transferred-resources-uploads";
+  public static final String CORE_NOTIFICATION_QUEUE_FOLDER = "notification-queue";
+  public static final String CORE_MIGRATION_LEDGER_FOLDER = "migration-ledger";
+  public static final String CORE_ACTION_LOG_INDEXED_FILES = "actionlog-indexed-files";
 
   public static final String CORE_I18N_CLIENT_FOLDER = "client";
   public static final String CORE_I18_GWT_XML_FILE = "I18N.gwt.xml";
@@ -282,6 +292,7 @@ public final class RodaConstants {
   public static final String API_QUERY_SEP = "&";
   public static final String API_QUERY_KEY_ACCEPT_FORMAT = "acceptFormat";
   public static final String API_QUERY_KEY_INLINE = "inline";
+  public static final String API_QUERY_KEY_COMPRESS = "compress";
   public static final String API_QUERY_KEY_JSONP_CALLBACK = "callback";
   public static final String API_QUERY_DEFAULT_JSONP_CALLBACK = "";
   public static final String API_QUERY_VALUE_ACCEPT_FORMAT_BIN = "bin";
@@ -306,6 +317,7 @@ public final class RodaConstants {
   public static final String API_QUERY_KEY_FACET_LIMIT = "facetLimit";
   public static final String API_QUERY_KEY_EXPORT_FACETS = "exportFacets";
   public static final String API_QUERY_KEY_FILENAME = "filename";
+  public static final String API_QUERY_KEY_FIELD = "field";
   // "http path param" related strings
   public static final String API_PATH_PARAM_AIP_ID = "aip_id";
   public static final String API_PATH_PARAM_REPRESENTATION_ID = "representation_id";
@@ -316,6 +328,7 @@ public final class RodaConstants {
   public static final String API_PATH_PARAM_METADATA_ID = "metadata_id";
   public static final String API_PATH_PARAM_TRANSFERRED_RESOURCE_ID = "transferred_resource_id";
   public static final String API_PATH_PARAM_TRANSFERRED_RESOURCE_UUID = "transferred_resource_uuid";
+  public static final String API_PATH_PARAM_UPLOAD_ID = "upload_id";
   public static final String API_PATH_PARAM_SIP_ID = "sip_id";
   public static final String API_PATH_PARAM_NOTIFICATION_ID = "notification_id";
   public static final String API_PATH_PARAM_AGENT_ID = "agent_id";
@@ -396,6 +409,7 @@ public final class RodaConstants {
   public static final String CONTROLLER_REPRESENTATION_UUID_PARAM = "representationUUID";
   public static final String CONTROLLER_TRANSFERRED_RESOURCE_PARAM = RODA_OBJECT_TRANSFERRED_RESOURCE;
   public static final String CONTROLLER_TRANSFERRED_RESOURCE_ID_PARAM = "transferredResourceId";
+  public static final String CONTROLLER_UPLOAD_ID_PARAM = "uploadId";
   public static final String CONTROLLER_TRANSFERRED_RESOURCE_NAME_PARAM = "transferredResourceName";
   public static final String CONTROLLER_FILE_PARAM = RODA_OBJECT_FILE;
   public static final String CONTROLLER_FILE_ID_PARAM = "fileId";
@@ -506,6 +520,17 @@ public final class RodaConstants {
 
   public static final OrchestratorType DEFAULT_ORCHESTRATOR_TYPE = OrchestratorType.AKKA;
   public static final String ORCHESTRATOR_TYPE_PROPERTY = "core.orchestrator.type";
+  public static final String ORCHESTRATOR_DISTRIBUTED_HOSTNAME = "core.orchestrator.distributed.hostname";
+  public static final String ORCHESTRATOR_DISTRIBUTED_PORT = "core.orchestrator.distributed.port";
+  public static final String ORCHESTRATOR_DISTRIBUTED_WORK_TIMEOUT = "core.orchestrator.distributed.work_timeout";
+  public static final String ORCHESTRATOR_DISTRIBUTED_MAX_ATTEMPTS = "core.orchestrator.distributed.max_attempts";
+  public static final String ORCHESTRATOR_DISTRIBUTED_JOURNAL_PLUGIN = "core.orchestrator.distributed.journal.plugin";
+  public static final String ORCHESTRATOR_DISTRIBUTED_JOURNAL_PATH = "core.orchestrator.distributed.journal.path";
+  public static final String ORCHESTRATOR_DISTRIBUTED_WORKER_HOSTNAME = "core.orchestrator.distributed.worker.hostname";
+  public static final String ORCHESTRATOR_DISTRIBUTED_WORKER_PORT = "core.orchestrator.distributed.worker.port";
+  public static final String ORCHESTRATOR_DISTRIBUTED_WORKER_SLOTS = "core.orchestrator.distributed.worker.slots";
+  public static final String ORCHESTRATOR_DISTRIBUTED_WORKER_HEARTBEAT = "core.orchestrator.distributed.worker"
+    + ".heartbeat";
 
   public static final int CORE_LDAP_DEFAULT_PORT = 10389;
   public static final String CORE_LDAP_BACKEND_JDBM = "JDBM";
@@ -593,6 +618,7 @@ public final class RodaConstants {
   public static final String ADMINISTRATORS = "administrators";
   public static final String INDEX_PERMISSION_USERS_PREFIX = "permission_users_";
   public static final String INDEX_PERMISSION_GROUPS_PREFIX = "permission_groups_";
+  public static final String INDEX_PERMISSION_TOKENS_PREFIX = "permission_tokens_";
 
   /*
    * Index common fields
@@ -622,6 +648,7 @@ public final class RodaConstants {
   public static final String AIP_REPRESENTATION_ID = "representationId";
   public static final String AIP_HAS_REPRESENTATIONS = "hasRepresentations";
   public static final String AIP_GHOST = "ghost";
+  public static final String AIP_PERMISSIONS_PENDING = "permissionsPending";
   public static final String AIP_CHILDREN = "aip_children";
 
   public static final String AIP_DESCRIPTIVE_METADATA = "descriptiveMetadata";
@@ -814,6 +841,7 @@ public final class RodaConstants {
   public static final String PLUGIN_PARAMS_BOOLEAN_VALUE = "parameter.boolean_value";
   public static final String PLUGIN_PARAMS_CLEAR_INDEXES = "parameter.clear_indexes";
   public static final String PLUGIN_PARAMS_OPTIMIZE_INDEXES = "parameter.optimize_indexes";
+  public static final String PLUGIN_PARAMS_FORCE_REINDEX = "parameter.force_reindex";
   public static final String PLUGIN_PARAMS_OBJECT_CLASS = "parameter.object_class";
   public static final String PLUGIN_PARAMS_CLASS_CANONICAL_NAME = "parameter.class_canonical_name";
   public static final String PLUGIN_PARAMS_SIP_TO_AIP_CLASS = "parameter.sip_to_aip_class";
@@ -961,6 +989,7 @@ public final class RodaConstants {
   public static final String FILE_DATE_CREATED_BY_APPLICATION = "dateCreatedByApplication";
   public static final String FILE_HASH = "hash";
   public static final String FILE_FULLTEXT = "fulltext";
+  public static final String FILE_FULLTEXT_CHUNK_OF = "fulltextChunkOf";
   public static final String FILE_ANCESTORS = "ancestors";
   public static final String FILE_FORMAT_DESIGNATION = "formatDesignation";
 
@@ -1378,6 +1407,9 @@ public final class RodaConstants {
   public static final String MEDIA_TYPE_TEXT_PLAIN = "text/plain";
   public static final String MEDIA_TYPE_TEXT_XML = "text/xml";
   public static final String MEDIA_TYPE_TEXT_HTML = "text/html";
+  public static final String MEDIA_TYPE_TEXT_CSV = "text/csv";
+  public static final String MEDIA_TYPE_APPLICATION_NDJSON = "application/x-ndjson";
+  public static final String MEDIA_TYPE_APPLICATION_GZIP = "application/gzip";
   public static final String HTTP_HEADERS_WWW_AUTHENTICATE = "WWW-Authenticate";
   public static final int STATUS_OK = 200;
 
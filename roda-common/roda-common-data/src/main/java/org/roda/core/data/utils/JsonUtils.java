@@ -14,13 +14,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.IOUtils;
-import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadataMixIn;
@@ -30,18 +31,140 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
+/**
+ * JSON (de)serialization helpers.
+ *
+ * Object mappers are expensive to create and cache the serializers and
+ * deserializers of each type, so a single mapper per format and mix-in
+ * configuration is shared by all threads, as well as the readers and writers
+ * built from them.
+ *
+ * Model files (AIP, DIP, jobs, job reports, ...) can optionally be written as
+ * Smile, a binary and more compact encoding of JSON, see
+ * {@link #setModelFormat(ModelFormat)}. Reading from streams or files detects
+ * the format, so JSON and Smile files can coexist.
+ */
 public final class JsonUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(JsonUtils.class);
   private static final String JSON_ERROR_MESSAGE = "Error while parsing JSON";
 
+  /** Smile documents start with ":)\n" */
+  private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+  public enum ModelFormat {
+    JSON, SMILE
+  }
+
+  private static final Map<String, ObjectMapper> MAPPERS = new ConcurrentHashMap<>();
+  private static final Map<String, ObjectReader> READERS = new ConcurrentHashMap<>();
+  private static final Map<String, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+  private static final ObjectMapper JSON_MAPPER = getMapper(ModelFormat.JSON, false, null, null);
+  private static final ObjectMapper SMILE_MAPPER = getMapper(ModelFormat.SMILE, false, null, null);
+  private static final JavaType STRING_MAP_TYPE = TypeFactory.defaultInstance().constructType(
+    new TypeReference<Map<String, String>>() {});
+
+  private static volatile ModelFormat modelFormat = ModelFormat.JSON;
+
   private JsonUtils() {
     // do nothing
   }
 
+  /**
+   * Sets the encoding used by {@link #getModelBytesFromObject(Object)}.
+   */
+  public static void setModelFormat(ModelFormat format) {
+    modelFormat = format == null ? ModelFormat.JSON : format;
+  }
+
+  public static ModelFormat getModelFormat() {
+    return modelFormat;
+  }
+
+  private static ObjectMapper getMapper(ModelFormat format, boolean descriptiveMetadataMixIn, Class<?> mixinTarget,
+    Class<?> mixin) {
+    String key = format + "|" + descriptiveMetadataMixIn + "|"
+      + (mixin == null ? "" : mixinTarget.getName() + "|" + mixin.getName());
+    return MAPPERS.computeIfAbsent(key, k -> {
+      ObjectMapper mapper = new ObjectMapper(format == ModelFormat.SMILE ? new SmileFactory() : new JsonFactory());
+      if (descriptiveMetadataMixIn) {
+        mapper.addMixIn(DescriptiveMetadata.class, DescriptiveMetadataMixIn.class);
+      }
+      if (mixin != null) {
+        mapper.addMixIn(mixinTarget, mixin);
+      }
+      return mapper;
+    });
+  }
+
+  private static ObjectReader getReader(ModelFormat format, JavaType type) {
+    return READERS.computeIfAbsent(format + "|" + type.toCanonical(),
+      k -> (format == ModelFormat.SMILE ? SMILE_MAPPER : JSON_MAPPER).readerFor(type));
+  }
+
+  private static ObjectReader getReader(ModelFormat format, Class<?> objectClass) {
+    return getReader(format, TypeFactory.defaultInstance().constructType(objectClass));
+  }
+
+  private static ObjectWriter getWriter(ModelFormat format, Object object, Class<?> mixin) {
+    boolean descriptiveMetadataMixIn = useDescriptiveMetadataMixIn(object);
+    Class<?> objectClass = object == null ? Object.class : object.getClass();
+    String key = format + "|" + descriptiveMetadataMixIn + "|"
+      + (mixin == null ? "" : objectClass.getName() + "|" + mixin.getName());
+    return WRITERS.computeIfAbsent(key, k -> getMapper(format, descriptiveMetadataMixIn, objectClass, mixin).writer());
+  }
+
+  /**
+   * Peeks at the first bytes of the stream, without consuming them, to tell
+   * Smile from JSON.
+   */
+  private static ModelFormat detectFormat(BufferedInputStream stream) throws IOException {
+    stream.mark(SMILE_HEADER.length);
+    byte[] header = new byte[SMILE_HEADER.length];
+    int read = IOUtils.read(stream, header);
+    stream.reset();
+    return read == SMILE_HEADER.length && Arrays.equals(header, SMILE_HEADER) ? ModelFormat.SMILE : ModelFormat.JSON;
+  }
+
+  /**
+   * Tells if a stream starts like a Smile document, reading only its first
+   * bytes and leaving it open.
+   */
+  public static boolean isSmile(InputStream stream) throws IOException {
+    byte[] header = new byte[SMILE_HEADER.length];
+    return IOUtils.read(stream, header) == SMILE_HEADER.length && Arrays.equals(header, SMILE_HEADER);
+  }
+
+  /**
+   * Reads a JSON or Smile stream, closing it, and writes it back as JSON.
+   */
+  public static byte[] getJsonBytes(InputStream json) throws GenericException {
+    try (BufferedInputStream stream = new BufferedInputStream(json)) {
+      JsonNode node = (detectFormat(stream) == ModelFormat.SMILE ? SMILE_MAPPER : JSON_MAPPER).readTree(stream);
+      return JSON_MAPPER.writeValueAsBytes(node);
+    } catch (IOException e) {
+      throw new GenericException(JSON_ERROR_MESSAGE, e);
+    }
+  }
+
+  /**
+   * Serializes a model object using the configured model format.
+   */
+  public static byte[] getModelBytesFromObject(Object object) throws GenericException {
+    try {
+      return getWriter(modelFormat, object, null).writeValueAsBytes(object);
+    } catch (IOException e) {
+      throw new GenericException("Error transforming object to " + modelFormat, e);
+    }
+  }
+
   public static <T> T readObjectFromFile(Path jsonFile, Class<T> objectClass) throws GenericException {
     try (InputStream stream = Files.newInputStream(jsonFile)) {
       return getObjectFromJson(stream, objectClass);
@@ -73,8 +196,7 @@ public final class JsonUtils {
   public static Map<String, String> getMapFromJson(String json) {
     Map<String, String> ret = new HashMap<>();
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      ret = mapper.readValue(json, new TypeReference<Map<String, String>>() {});
+      ret = getReader(ModelFormat.JSON, STRING_MAP_TYPE).readValue(json);
     } catch (IOException e) {
       LOGGER.error("Error transforming json string to Map<String,String>", e);
     }
@@ -88,66 +210,46 @@ public final class JsonUtils {
   public static String getJsonFromObject(Object object, Class<?> mixin) {
     String ret = null;
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      mapper = addMixinsToMapper(mapper, object, mixin);
-      ret = mapper.writeValueAsString(object);
+      ret = getWriter(ModelFormat.JSON, object, mixin).writeValueAsString(object);
     } catch (IOException e) {
       LOGGER.error("Error transforming object '{}' to json string", object, e);
     }
     return ret;
   }
 
-  private static ObjectMapper addMixinsToMapper(ObjectMapper mapper, Object object, Class<?> mixin) {
-    if (!(object instanceof DescriptiveMetadata)) {
-      if (object instanceof List<?>) {
-        List<?> objectList = (List<?>) object;
-        if (!objectList.isEmpty() && !(objectList.get(0) instanceof DescriptiveMetadata)) {
-          mapper.addMixIn(DescriptiveMetadata.class, DescriptiveMetadataMixIn.class);
-        }
-      } else {
-        mapper.addMixIn(DescriptiveMetadata.class, DescriptiveMetadataMixIn.class);
-      }
-    }
-
-    if (mixin != null) {
-      mapper.addMixIn(object.getClass(), mixin);
+  private static boolean useDescriptiveMetadataMixIn(Object object) {
+    if (object instanceof DescriptiveMetadata) {
+      return false;
+    } else if (object instanceof List<?>) {
+      List<?> objectList = (List<?>) object;
+      return !objectList.isEmpty() && !(objectList.get(0) instanceof DescriptiveMetadata);
+    } else {
+      return true;
     }
-
-    return mapper;
   }
 
   public static <T> T getObjectFromJson(Path json, Class<T> objectClass) throws GenericException {
-    T ret;
-    InputStream stream = null;
     try {
-      stream = Files.newInputStream(json);
-      String jsonString = IOUtils.toString(stream, RodaConstants.DEFAULT_ENCODING);
-      ret = getObjectFromJson(jsonString, objectClass);
+      return getObjectFromJson(Files.newInputStream(json), objectClass);
     } catch (IOException e) {
       throw new GenericException(JSON_ERROR_MESSAGE, e);
-    } finally {
-      IOUtils.closeQuietly(stream);
     }
-    return ret;
   }
 
+  /**
+   * Reads an object from a JSON or Smile stream, closing it.
+   */
   public static <T> T getObjectFromJson(InputStream json, Class<T> objectClass) throws GenericException {
-    T ret;
-    try {
-      String jsonString = IOUtils.toString(json, RodaConstants.DEFAULT_ENCODING);
-      ret = getObjectFromJson(jsonString, objectClass);
+    try (BufferedInputStream stream = new BufferedInputStream(json)) {
+      return getReader(detectFormat(stream), objectClass).readValue(stream);
     } catch (IOException e) {
       throw new GenericException(e);
-    } finally {
-      IOUtils.closeQuietly(json);
     }
-    return ret;
   }
 
   public static <T> T getObjectFromJson(String json, Class<T> objectClass) throws GenericException {
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      return mapper.readValue(json, objectClass);
+      return getReader(ModelFormat.JSON, objectClass).readValue(json);
     } catch (IOException e) {
       throw new GenericException(JSON_ERROR_MESSAGE, e);
     }
@@ -155,9 +257,8 @@ public final class JsonUtils {
 
   public static <T> List<T> getListFromJson(String json, Class<T> objectClass) throws GenericException {
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      TypeFactory t = TypeFactory.defaultInstance();
-      return mapper.readValue(json, t.constructCollectionType(ArrayList.class, objectClass));
+      JavaType type = TypeFactory.defaultInstance().constructCollectionType(ArrayList.class, objectClass);
+      return getReader(ModelFormat.JSON, type).readValue(json);
     } catch (IOException e) {
       throw new GenericException(JSON_ERROR_MESSAGE, e);
     }
@@ -165,29 +266,27 @@ public final class JsonUtils {
 
   public static JsonNode parseJson(String json) throws GenericException {
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      return mapper.readTree(json);
+      return JSON_MAPPER.readTree(json);
     } catch (IOException e) {
       throw new GenericException(JSON_ERROR_MESSAGE, e);
     }
   }
 
+  /**
+   * Parses a JSON or Smile stream, closing it.
+   */
   public static JsonNode parseJson(InputStream json) throws GenericException {
-    try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      return mapper.readTree(json);
+    try (BufferedInputStream stream = new BufferedInputStream(json)) {
+      return (detectFormat(stream) == ModelFormat.SMILE ? SMILE_MAPPER : JSON_MAPPER).readTree(stream);
     } catch (IOException e) {
       throw new GenericException(JSON_ERROR_MESSAGE, e);
-    } finally {
-      IOUtils.closeQuietly(json);
     }
   }
 
   public static String getJsonFromNode(JsonNode node) {
     String ret = null;
     try {
-      ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-      ret = mapper.writeValueAsString(node);
+      ret = JSON_MAPPER.writeValueAsString(node);
     } catch (IOException e) {
       LOGGER.error("Error transforming object '{}' to json string", node, e);
     }
@@ -61,6 +61,7 @@ public class IndexedAIP implements IsIndexed, HasId, HasPermissions, HasState {
   private Long numberOfSchemaFiles;
   private Boolean hasRepresentations;
   private Boolean ghost;
+  private Boolean permissionsPending;
 
   private List<String> ingestSIPIds;
   private String ingestJobId;
@@ -354,6 +355,18 @@ public class IndexedAIP implements IsIndexed, HasId, HasPermissions, HasState {
     this.ghost = ghost;
   }
 
+  /**
+   * @return true while the permissions in the index, inherited from an
+   *         ancestor, are not yet in the AIP metadata file.
+   */
+  public Boolean getPermissionsPending() {
+    return permissionsPending;
+  }
+
+  public void setPermissionsPending(Boolean permissionsPending) {
+    this.permissionsPending = permissionsPending;
+  }
+
   public Date getCreatedOn() {
     return createdOn;
   }
@@ -0,0 +1,209 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.data.v2.ip;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.roda.core.data.common.RodaConstants;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A resumable upload of a file to the transferred resources area. Chunks can
+ * be sent in any order, addressed by their offset, and the ranges already
+ * received are kept so that an interrupted upload can be resumed.
+ */
+@javax.xml.bind.annotation.XmlRootElement(name = RodaConstants.RODA_OBJECT_TRANSFERRED_RESOURCE_UPLOAD)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferredResourceUpload implements Serializable {
+  private static final long serialVersionUID = -2217624505941343153L;
+
+  private String id;
+  private String parentUUID;
+  private String fileName;
+  private long size;
+  private String checksum;
+  private String createdBy;
+  private Date createdOn;
+  private Date updatedOn;
+  private List<Range> receivedRanges = new ArrayList<>();
+
+  public TransferredResourceUpload() {
+    super();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getParentUUID() {
+    return parentUUID;
+  }
+
+  public void setParentUUID(String parentUUID) {
+    this.parentUUID = parentUUID;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public void setFileName(String fileName) {
+    this.fileName = fileName;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  /**
+   * @return the expected SHA-256 (hexadecimal) of the whole file.
+   */
+  public String getChecksum() {
+    return checksum;
+  }
+
+  public void setChecksum(String checksum) {
+    this.checksum = checksum;
+  }
+
+  public String getCreatedBy() {
+    return createdBy;
+  }
+
+  public void setCreatedBy(String createdBy) {
+    this.createdBy = createdBy;
+  }
+
+  public Date getCreatedOn() {
+    return createdOn;
+  }
+
+  public void setCreatedOn(Date createdOn) {
+    this.createdOn = createdOn;
+  }
+
+  public Date getUpdatedOn() {
+    return updatedOn;
+  }
+
+  public void setUpdatedOn(Date updatedOn) {
+    this.updatedOn = updatedOn;
+  }
+
+  /**
+   * @return the sorted, non overlapping, byte ranges already received.
+   */
+  public List<Range> getReceivedRanges() {
+    return receivedRanges;
+  }
+
+  public void setReceivedRanges(List<Range> receivedRanges) {
+    this.receivedRanges = receivedRanges;
+  }
+
+  /**
+   * Marks a range as received, merging it with the adjacent or overlapping
+   * ranges already received.
+   */
+  public void addReceivedRange(long offset, long length) {
+    long start = offset;
+    long end = offset + length;
+    List<Range> merged = new ArrayList<>();
+    int insertAt = 0;
+    for (Range range : receivedRanges) {
+      if (range.getEnd() < start) {
+        merged.add(range);
+        insertAt++;
+      } else if (range.getOffset() > end) {
+        merged.add(range);
+      } else {
+        start = Math.min(start, range.getOffset());
+        end = Math.max(end, range.getEnd());
+      }
+    }
+    merged.add(insertAt, new Range(start, end - start));
+    receivedRanges = merged;
+  }
+
+  @JsonIgnore
+  public long getReceivedBytes() {
+    long received = 0;
+    for (Range range : receivedRanges) {
+      received += range.getLength();
+    }
+    return received;
+  }
+
+  @JsonIgnore
+  public boolean isComplete() {
+    return getReceivedBytes() == size;
+  }
+
+  @Override
+  public String toString() {
+    return "TransferredResourceUpload [id=" + id + ", parentUUID=" + parentUUID + ", fileName=" + fileName
+      + ", size=" + size + ", checksum=" + checksum + ", createdBy=" + createdBy + ", createdOn=" + createdOn
+      + ", updatedOn=" + updatedOn + ", receivedRanges=" + receivedRanges + "]";
+  }
+
+  public static class Range implements Serializable {
+    private static final long serialVersionUID = 4581335786432349163L;
+
+    private long offset;
+    private long length;
+
+    public Range() {
+      super();
+    }
+
+    public Range(long offset, long length) {
+      super();
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public void setOffset(long offset) {
+      this.offset = offset;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public void setLength(long length) {
+      this.length = length;
+    }
+
+    @JsonIgnore
+    public long getEnd() {
+      return offset + length;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + offset + ", " + getEnd() + "[";
+    }
+  }
+}
@@ -39,6 +39,9 @@ public class Notification implements IsModelObject, IsIndexed, HasId {
   private boolean isAcknowledged = false;
   private Map<String, String> acknowledgedUsers = null;
   private NotificationState state;
+  private int deliveryAttempts = 0;
+  private Date lastDeliveryAttempt = null;
+  private String deliveryError = null;
   
   private Map<String, Object> fields;
 
@@ -60,6 +63,9 @@ public class Notification implements IsModelObject, IsIndexed, HasId {
     this.isAcknowledged = notification.isAcknowledged();
     this.acknowledgedUsers = notification.getAcknowledgedUsers();
     this.state = NotificationState.CREATED;
+    this.deliveryAttempts = notification.getDeliveryAttempts();
+    this.lastDeliveryAttempt = notification.getLastDeliveryAttempt();
+    this.deliveryError = notification.getDeliveryError();
   }
 
   @JsonIgnore
@@ -153,6 +159,35 @@ public class Notification implements IsModelObject, IsIndexed, HasId {
     this.state = state;
   }
 
+  /**
+   * @return the number of delivery attempts of the deliveries made in
+   *         background, while the notification is in the
+   *         {@link NotificationState#CREATED} state.
+   */
+  public int getDeliveryAttempts() {
+    return deliveryAttempts;
+  }
+
+  public void setDeliveryAttempts(int deliveryAttempts) {
+    this.deliveryAttempts = deliveryAttempts;
+  }
+
+  public Date getLastDeliveryAttempt() {
+    return lastDeliveryAttempt;
+  }
+
+  public void setLastDeliveryAttempt(Date lastDeliveryAttempt) {
+    this.lastDeliveryAttempt = lastDeliveryAttempt;
+  }
+
+  public String getDeliveryError() {
+    return deliveryError;
+  }
+
+  public void setDeliveryError(String deliveryError) {
+    this.deliveryError = deliveryError;
+  }
+
   @JsonIgnore
   @Override
   public String getUUID() {
@@ -163,7 +198,8 @@ public class Notification implements IsModelObject, IsIndexed, HasId {
   public String toString() {
     return "Notification [id=" + id + ", subject=" + subject + ", body=" + body + ", sentOn=" + sentOn + ", fromUser="
       + fromUser + ", recipientUsers=" + recipientUsers + ", acknowledgeToken=" + acknowledgeToken + ", isAcknowledged="
-      + isAcknowledged + ", acknowledgedUsers=" + acknowledgedUsers + ", state=" + state + "]";
+      + isAcknowledged + ", acknowledgedUsers=" + acknowledgedUsers + ", state=" + state + ", deliveryAttempts="
+      + deliveryAttempts + ", lastDeliveryAttempt=" + lastDeliveryAttempt + ", deliveryError=" + deliveryError + "]";
   }
 
   @Override
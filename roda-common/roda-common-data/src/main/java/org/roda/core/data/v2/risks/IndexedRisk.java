@@ -31,6 +31,10 @@ public class IndexedRisk extends Risk implements IsIndexed {
     super();
   }
 
+  public IndexedRisk(Risk risk) {
+    super(risk);
+  }
+
   public IndexedRisk(IndexedRisk risk) {
     super(risk);
     this.incidencesCount = risk.getIncidencesCount();
@@ -8,11 +8,15 @@
 package org.roda.core.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -26,6 +30,7 @@ import org.slf4j.LoggerFactory;
  */
 public class CommandUtility {
   private static final Logger LOGGER = LoggerFactory.getLogger(CommandUtility.class);
+  private static final long OUTPUT_CAPTURE_GRACE_PERIOD_IN_MILLIS = 1000;
 
   private CommandUtility() {
     // do nothing
@@ -130,6 +135,131 @@ public class CommandUtility {
     return execute(withErrorStream, args.toArray(new String[args.size()]));
   }
 
+  /**
+   * Execute the given command line inside a working directory, killing the
+   * process if it runs longer than the given timeout or if it produces more
+   * output than allowed.
+   *
+   * @param args
+   *          the command line as a list of arguments.
+   * @param workingDirectory
+   *          the directory where the process will run (or <code>null</code> to
+   *          use the current one).
+   * @param timeoutInMillis
+   *          the maximum amount of time the process may run (0 or less for no
+   *          timeout).
+   * @param maxOutputInBytes
+   *          the maximum amount of output that is captured (0 or less for no
+   *          limit).
+   *
+   * @return a {@link String} with the output of the command.
+   *
+   * @throws CommandException
+   */
+  public static String execute(List<String> args, Path workingDirectory, long timeoutInMillis,
+    long maxOutputInBytes) throws CommandException {
+    Process process = null;
+
+    try {
+      LOGGER.debug("Executing {} on {}", args, workingDirectory);
+
+      ProcessBuilder processBuilder = new ProcessBuilder(args);
+      processBuilder.redirectErrorStream(true);
+      if (workingDirectory != null) {
+        processBuilder.directory(workingDirectory.toFile());
+      }
+      process = processBuilder.start();
+
+      BoundedCaptureOutputThread captureOutputThread = new BoundedCaptureOutputThread(process, maxOutputInBytes);
+      captureOutputThread.start();
+
+      boolean finished;
+      if (timeoutInMillis > 0) {
+        finished = process.waitFor(timeoutInMillis, TimeUnit.MILLISECONDS);
+      } else {
+        process.waitFor();
+        finished = true;
+      }
+
+      if (!finished) {
+        process.destroyForcibly();
+        captureOutputThread.join(OUTPUT_CAPTURE_GRACE_PERIOD_IN_MILLIS);
+        throw new CommandException("Command " + args + " timed out after " + timeoutInMillis + " ms", -1,
+          captureOutputThread.getOutput());
+      }
+
+      captureOutputThread.join();
+      String output = captureOutputThread.getOutput();
+
+      if (captureOutputThread.isOutputLimitExceeded()) {
+        throw new CommandException("Command " + args + " exceeded the output limit of " + maxOutputInBytes + " bytes",
+          -1, output);
+      }
+
+      int exitValue = process.exitValue();
+      LOGGER.debug("Command {} terminated with value {}", args, exitValue);
+
+      if (exitValue == 0) {
+        return output;
+      } else {
+        throw new CommandException("Command " + args + " terminated with error code " + exitValue, exitValue, output);
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Error executing command {}", args, e);
+      throw new CommandException("Error executing command " + args + " - " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (process != null) {
+        process.destroyForcibly();
+      }
+      throw new CommandException("Interrupted while executing command " + args, e);
+    }
+  }
+
+}
+
+class BoundedCaptureOutputThread extends Thread {
+  private static final Logger logger = LoggerFactory.getLogger(BoundedCaptureOutputThread.class);
+
+  private final Process process;
+  private final long maxOutputInBytes;
+  private final ByteArrayOutputStream outputBuffer = new ByteArrayOutputStream();
+  private volatile boolean outputLimitExceeded = false;
+
+  public BoundedCaptureOutputThread(Process process, long maxOutputInBytes) {
+    this.process = process;
+    this.maxOutputInBytes = maxOutputInBytes;
+    setDaemon(true);
+  }
+
+  @Override
+  public void run() {
+    byte[] buffer = new byte[8192];
+    long total = 0;
+
+    try (InputStream is = process.getInputStream()) {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        total += read;
+        if (maxOutputInBytes > 0 && total > maxOutputInBytes) {
+          outputLimitExceeded = true;
+          process.destroyForcibly();
+          break;
+        }
+        outputBuffer.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      logger.debug("Exception reading from process output", e);
+    }
+  }
+
+  public String getOutput() {
+    return new String(outputBuffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  public boolean isOutputLimitExceeded() {
+    return outputLimitExceeded;
+  }
 }
 
 class CaptureOutputThread extends Thread {
@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.roda.core.CorporaConstants;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.user.User;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.storage.DefaultStoragePath;
+import org.roda.core.storage.StorageService;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.storage.fs.FileStorageService;
+import org.roda.core.util.IdUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class ClassificationPlanUtilsTest {
+  private static Path basePath;
+
+  private static ModelService model;
+  private static IndexService index;
+  private static StorageService corporaService;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(getClass(), true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+    model = RodaCoreFactory.getModelService();
+    index = RodaCoreFactory.getIndexService();
+
+    URL corporaURL = ClassificationPlanUtilsTest.class.getResource("/corpora");
+    corporaService = new FileStorageService(Paths.get(corporaURL.toURI()));
+
+    RodaCoreFactory.getRodaConfiguration().setProperty(RodaConstants.LEVELS_CLASSIFICATION_PLAN, "fonds");
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  @Test
+  public void testTypeIsOmittedWhenMissing() throws Exception {
+    // the corpora AIP is a fonds of type MIXED
+    AIP typed = model.createAIP(IdUtils.createUUID(), corporaService,
+      DefaultStoragePath.parse(CorporaConstants.SOURCE_AIP_CONTAINER, CorporaConstants.SOURCE_AIP_ID),
+      RodaConstants.ADMIN);
+    AIP untyped = model.createAIP(IdUtils.createUUID(), corporaService,
+      DefaultStoragePath.parse(CorporaConstants.SOURCE_AIP_CONTAINER, CorporaConstants.SOURCE_AIP_ID),
+      RodaConstants.ADMIN);
+    untyped.setType(null);
+    model.updateAIP(untyped, RodaConstants.ADMIN);
+    index.commitAIPs();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ClassificationPlanUtils.writeClassificationPlan(new User(RodaConstants.ADMIN), out, true);
+    Map<String, JsonNode> plan = new HashMap<>();
+    for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+      JsonNode aip = JsonUtils.parseJson(line);
+      plan.put(aip.get("id").asText(), aip);
+    }
+
+    JsonNode typedAIP = plan.get(typed.getId());
+    JsonNode untypedAIP = plan.get(untyped.getId());
+    Assert.assertEquals(typedAIP.get("type").asText(), "MIXED");
+    Assert.assertFalse(untypedAIP.has("type"));
+
+    // apart from the type, both are exported the same way
+    Set<String> typedFields = new HashSet<>();
+    typedAIP.fieldNames().forEachRemaining(typedFields::add);
+    typedFields.remove("type");
+    Set<String> untypedFields = new HashSet<>();
+    untypedAIP.fieldNames().forEachRemaining(untypedFields::add);
+    Assert.assertEquals(untypedFields, typedFields);
+    Assert.assertEquals(untypedAIP.get("metadata"), typedAIP.get("metadata"));
+  }
+}
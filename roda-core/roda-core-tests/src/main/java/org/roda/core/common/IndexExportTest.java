@@ -0,0 +1,174 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.IOUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Permissions.PermissionType;
+import org.roda.core.data.v2.user.User;
+import org.roda.core.index.IndexService;
+import org.roda.core.index.utils.IterableIndexResult;
+import org.roda.core.model.ModelService;
+import org.roda.core.storage.fs.FSUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the output streams of the index export (/v1/index/export), over results
+ * that span several pages.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class IndexExportTest {
+  private static final int PAGE_SIZE = 10;
+  private static final int AIPS = 25;
+  private static final int READABLE_AIPS = 15;
+  private static final String READER = "reader";
+  private static final List<String> FIELDS = Collections.singletonList(RodaConstants.INDEX_UUID);
+
+  private static Path basePath;
+
+  private static ModelService model;
+  private static IndexService index;
+
+  private static Set<String> allIds = new HashSet<>();
+  private static Set<String> readableIds = new HashSet<>();
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(getClass(), true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+    model = RodaCoreFactory.getModelService();
+    index = RodaCoreFactory.getIndexService();
+
+    IterableIndexResult.injectSearchPageSize(PAGE_SIZE);
+
+    for (int i = 0; i < AIPS; i++) {
+      Permissions permissions = new Permissions();
+      if (i < READABLE_AIPS) {
+        permissions.setUserPermissions(READER, Collections.singleton(PermissionType.READ));
+      }
+      String id = model.createAIP(null, "", permissions, RodaConstants.ADMIN).getId();
+      allIds.add(id);
+      if (i < READABLE_AIPS) {
+        readableIds.add(id);
+      }
+    }
+    index.commit(IndexedAIP.class);
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  private static IterableIndexResult<IndexedAIP> findAll(User user) throws RODAException {
+    return index.findAll(IndexedAIP.class, Filter.ALL, user, true, FIELDS);
+  }
+
+  private static byte[] write(ConsumesOutputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    stream.consumeOutputStream(out);
+    return out.toByteArray();
+  }
+
+  private static Set<String> readJSON(byte[] export) {
+    Set<String> ids = new HashSet<>();
+    for (String line : new String(export, StandardCharsets.UTF_8).split("\n")) {
+      Map<String, String> values = JsonUtils.getMapFromJson(line);
+      Assert.assertEquals(values.keySet(), new HashSet<>(FIELDS));
+      Assert.assertTrue(ids.add(values.get(RodaConstants.INDEX_UUID)), line);
+    }
+    return ids;
+  }
+
+  private static Set<String> readCSV(byte[] export) throws IOException {
+    Set<String> ids = new HashSet<>();
+    try (CSVParser parser = CSVFormat.EXCEL.withFirstRecordAsHeader()
+      .parse(new StringReader(new String(export, StandardCharsets.UTF_8)))) {
+      Assert.assertEquals(parser.getHeaderMap().keySet(), new HashSet<>(FIELDS));
+      for (CSVRecord record : parser) {
+        Assert.assertTrue(ids.add(record.get(RodaConstants.INDEX_UUID)), record.toString());
+      }
+    }
+    return ids;
+  }
+
+  @Test
+  public void testJSONExportOfAllPages() throws Exception {
+    User admin = new User(RodaConstants.ADMIN);
+    byte[] export = write(new ResultsJSONOutputStream<>(findAll(admin), FIELDS, "export.ndjson"));
+    Assert.assertEquals(readJSON(export), allIds);
+  }
+
+  @Test
+  public void testCSVExportOfAllPages() throws Exception {
+    User admin = new User(RodaConstants.ADMIN);
+    byte[] export = write(new ResultsCSVOutputStream<>(findAll(admin), FIELDS, "export.csv", ','));
+    Assert.assertEquals(readCSV(export), allIds);
+  }
+
+  @Test
+  public void testExportIsFilteredByPermissions() throws Exception {
+    User reader = new User(READER, READER, false);
+    Assert.assertEquals(readJSON(write(new ResultsJSONOutputStream<>(findAll(reader), FIELDS, "export.ndjson"))),
+      readableIds);
+    Assert.assertEquals(readCSV(write(new ResultsCSVOutputStream<>(findAll(reader), FIELDS, "export.csv", ','))),
+      readableIds);
+  }
+
+  @Test
+  public void testGzippedExport() throws Exception {
+    User admin = new User(RodaConstants.ADMIN);
+    ConsumesOutputStream csv = new ResultsCSVOutputStream<>(findAll(admin), FIELDS, "export.csv", ',');
+    ConsumesOutputStream gzipped = new GzippedOutputStream(csv);
+    Assert.assertEquals(gzipped.getFileName(), "export.csv.gz");
+    Assert.assertEquals(gzipped.getMediaType(), RodaConstants.MEDIA_TYPE_APPLICATION_GZIP);
+
+    byte[] export;
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(write(gzipped)))) {
+      export = IOUtils.toByteArray(in);
+    }
+    Assert.assertEquals(readCSV(export), allIds);
+    Assert.assertEquals(export, write(new ResultsCSVOutputStream<>(findAll(admin), FIELDS, "export.csv", ',')));
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.utils.JsonUtils.ModelFormat;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.AIPState;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
+import org.roda.core.data.v2.ip.metadata.DescriptiveMetadataMixIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the previous approach (a new object mapper per call) with the
+ * shared readers/writers and with the Smile model format. Not part of the
+ * dev/travis groups as it only reports timings.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL})
+public class JsonUtilsBenchmarkTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JsonUtilsBenchmarkTest.class);
+  private static final int WARMUP_ITERATIONS = 2000;
+  private static final int ITERATIONS = 20000;
+
+  @AfterClass
+  public void tearDown() {
+    JsonUtils.setModelFormat(ModelFormat.JSON);
+  }
+
+  @Test
+  public void benchmarkAIPSerialization() throws IOException, GenericException {
+    AIP aip = createAIP(20);
+
+    run("new mapper per call", aip, this::writeWithNewMapper, this::readWithNewMapper);
+
+    JsonUtils.setModelFormat(ModelFormat.JSON);
+    run("shared JSON writers/readers", aip, JsonUtils::getModelBytesFromObject,
+      bytes -> JsonUtils.getObjectFromJson(new ByteArrayInputStream(bytes), AIP.class));
+
+    JsonUtils.setModelFormat(ModelFormat.SMILE);
+    run("shared Smile writers/readers", aip, JsonUtils::getModelBytesFromObject,
+      bytes -> JsonUtils.getObjectFromJson(new ByteArrayInputStream(bytes), AIP.class));
+  }
+
+  private void run(String name, AIP aip, Writer writer, Reader reader) throws IOException, GenericException {
+    byte[] bytes = writer.write(aip);
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      reader.read(writer.write(aip));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      writer.write(aip);
+    }
+    long writeNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    AIP read = null;
+    for (int i = 0; i < ITERATIONS; i++) {
+      read = reader.read(bytes);
+    }
+    long readNanos = System.nanoTime() - start;
+
+    Assert.assertNotNull(read);
+    Assert.assertEquals(read.getRepresentations().size(), aip.getRepresentations().size());
+
+    LOGGER.info("{}: {} bytes, write {} us/op, read {} us/op", name, bytes.length, writeNanos / ITERATIONS / 1000.0,
+      readNanos / ITERATIONS / 1000.0);
+  }
+
+  private byte[] writeWithNewMapper(AIP aip) throws IOException {
+    ObjectMapper mapper = new ObjectMapper(new JsonFactory());
+    mapper.addMixIn(DescriptiveMetadata.class, DescriptiveMetadataMixIn.class);
+    return mapper.writeValueAsBytes(aip);
+  }
+
+  private AIP readWithNewMapper(byte[] bytes) throws IOException {
+    return new ObjectMapper(new JsonFactory()).readValue(bytes, AIP.class);
+  }
+
+  private static AIP createAIP(int numberOfRepresentations) {
+    AIP aip = new AIP("aip", "parent", "type", AIPState.ACTIVE, new Permissions(), "admin");
+    List<Representation> representations = new ArrayList<>();
+    for (int i = 0; i < numberOfRepresentations; i++) {
+      representations.add(new Representation("rep" + i, "aip", i == 0, "MIXED"));
+    }
+    aip.setRepresentations(representations);
+    return aip;
+  }
+
+  @FunctionalInterface
+  private interface Writer {
+    byte[] write(AIP aip) throws IOException, GenericException;
+  }
+
+  @FunctionalInterface
+  private interface Reader {
+    AIP read(byte[] bytes) throws IOException, GenericException;
+  }
+}
@@ -7,13 +7,28 @@
  */
 package org.roda.core.common;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.utils.JsonUtils.ModelFormat;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.AIPState;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.ByteArrayContentPayload;
+import org.roda.core.storage.DefaultBinary;
+import org.roda.core.storage.DefaultStoragePath;
+import org.roda.core.storage.StorageServiceUtils;
 import org.testng.Assert;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
@@ -45,4 +60,61 @@ public class JsonUtilsTest {
       AssertJUnit.assertNotNull(report);
     }
   }
+
+  @Test
+  public void testModelFormatsAreDetectedWhenReading() throws GenericException {
+    AIP aip = new AIP("aip", null, "type", AIPState.ACTIVE, new Permissions(), "admin");
+    List<Representation> representations = new ArrayList<>();
+    representations.add(new Representation("rep", "aip", true, "MIXED"));
+    aip.setRepresentations(representations);
+
+    try {
+      JsonUtils.setModelFormat(ModelFormat.SMILE);
+      byte[] smile = JsonUtils.getModelBytesFromObject(aip);
+      JsonUtils.setModelFormat(ModelFormat.JSON);
+      byte[] json = JsonUtils.getModelBytesFromObject(aip);
+
+      Assert.assertTrue(smile.length < json.length);
+      Assert.assertEquals(new String(json, StandardCharsets.UTF_8), JsonUtils.getJsonFromObject(aip));
+
+      AIP fromSmile = JsonUtils.getObjectFromJson(new ByteArrayInputStream(smile), AIP.class);
+      AIP fromJson = JsonUtils.getObjectFromJson(new ByteArrayInputStream(json), AIP.class);
+      Assert.assertEquals(fromSmile.getId(), aip.getId());
+      Assert.assertEquals(fromSmile.getRepresentations().get(0).getId(), "rep");
+      Assert.assertEquals(JsonUtils.getJsonFromObject(fromSmile), JsonUtils.getJsonFromObject(fromJson));
+      Assert.assertEquals(JsonUtils.parseJson(new ByteArrayInputStream(smile)).get("id").asText(), "aip");
+    } finally {
+      JsonUtils.setModelFormat(ModelFormat.JSON);
+    }
+  }
+
+  @Test
+  public void testSmileModelFilesAreExportedAsJson() throws Exception {
+    AIP aip = new AIP("aip", null, "type", AIPState.ACTIVE, new Permissions(), "admin");
+    byte[] json = JsonUtils.getJsonFromObject(aip).getBytes(StandardCharsets.UTF_8);
+    byte[] smile;
+    try {
+      JsonUtils.setModelFormat(ModelFormat.SMILE);
+      smile = JsonUtils.getModelBytesFromObject(aip);
+    } finally {
+      JsonUtils.setModelFormat(ModelFormat.JSON);
+    }
+
+    Assert.assertTrue(JsonUtils.isSmile(new ByteArrayInputStream(smile)));
+    Assert.assertFalse(JsonUtils.isSmile(new ByteArrayInputStream(json)));
+    Assert.assertFalse(JsonUtils.isSmile(new ByteArrayInputStream(new byte[] {':'})));
+
+    StoragePath path = DefaultStoragePath.parse("aip", RodaConstants.STORAGE_AIP_METADATA_FILENAME);
+    Binary exported = StorageServiceUtils
+      .getExportedBinary(new DefaultBinary(path, new ByteArrayContentPayload(smile), (long) smile.length, false, null));
+    byte[] exportedBytes = IOUtils.toByteArray(exported.getContent().createInputStream());
+    Assert.assertEquals(exportedBytes, json);
+    Assert.assertEquals(exported.getSizeInBytes().longValue(), json.length);
+
+    Binary jsonBinary = new DefaultBinary(path, new ByteArrayContentPayload(json), (long) json.length, false, null);
+    Assert.assertSame(StorageServiceUtils.getExportedBinary(jsonBinary), jsonBinary);
+    Binary otherBinary = new DefaultBinary(DefaultStoragePath.parse("aip", "file.bin"),
+      new ByteArrayContentPayload(smile), (long) smile.length, false, null);
+    Assert.assertSame(StorageServiceUtils.getExportedBinary(otherBinary), otherBinary);
+  }
 }
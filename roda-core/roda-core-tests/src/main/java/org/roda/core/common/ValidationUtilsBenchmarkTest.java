@@ -0,0 +1,143 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BOMInputStream;
+import org.roda.core.common.validation.ValidationUtils;
+import org.roda.core.data.common.RodaConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Compares the previous approach (a new validator and parser per document)
+ * with the validators and parsers reused by each thread. Not part of the
+ * dev/travis groups as it only reports timings.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL})
+public class ValidationUtilsBenchmarkTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ValidationUtilsBenchmarkTest.class);
+  private static final int WARMUP_ITERATIONS = 1000;
+  private static final int ITERATIONS = 10000;
+  private static final int THREADS = 4;
+
+  @Test
+  public void benchmarkDescriptiveMetadataValidation() throws Exception {
+    URL schemaURL = getClass().getResource("/config/schemas/dc.xsd");
+    Schema schema = SchemaFactory.newInstance(RodaConstants.W3C_XML_SCHEMA_NS_URI)
+      .newSchema(new StreamSource(schemaURL.toString()));
+
+    byte[] document;
+    try (InputStream inputStream = getClass().getResourceAsStream("/corpora/aip/AIP_2/metadata/descriptive/dc.xml")) {
+      document = IOUtils.toByteArray(inputStream);
+    }
+
+    boolean valid = validateWithNewValidator(schema, document);
+    Assert.assertEquals(ValidationUtils.validate(schema, new ByteArrayInputStream(document)).isValid(), valid);
+
+    run("new validator per document", () -> validateWithNewValidator(schema, document));
+    run("reused validator", () -> ValidationUtils.validate(schema, new ByteArrayInputStream(document)).isValid());
+    runInParallel("reused validator, " + THREADS + " threads",
+      () -> ValidationUtils.validate(schema, new ByteArrayInputStream(document)).isValid());
+  }
+
+  private void run(String name, Validation validation) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      validation.validate();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      validation.validate();
+    }
+    long nanos = System.nanoTime() - start;
+
+    LOGGER.info("{}: {} us/document", name, nanos / ITERATIONS / 1000.0);
+  }
+
+  private void runInParallel(String name, Validation validation) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      long start = System.nanoTime();
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < ITERATIONS / THREADS; i++) {
+            validation.validate();
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long nanos = System.nanoTime() - start;
+
+      LOGGER.info("{}: {} us/document", name, nanos / ITERATIONS / 1000.0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  private static boolean validateWithNewValidator(Schema schema, byte[] document) throws IOException, SAXException {
+    List<Exception> errors = new ArrayList<>();
+    DefaultHandler errorHandler = new DefaultHandler() {
+      @Override
+      public void warning(SAXParseException e) {
+        errors.add(e);
+      }
+
+      @Override
+      public void error(SAXParseException e) {
+        errors.add(e);
+      }
+    };
+
+    try (InputStreamReader reader = new InputStreamReader(new BOMInputStream(new ByteArrayInputStream(document)))) {
+      XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+      xmlReader.setEntityResolver(new RodaEntityResolver());
+      Validator validator = schema.newValidator();
+      validator.setErrorHandler(errorHandler);
+      validator.validate(new SAXSource(xmlReader, new InputSource(reader)));
+    } catch (SAXException e) {
+      return false;
+    }
+    return errors.isEmpty();
+  }
+
+  @FunctionalInterface
+  private interface Validation {
+    boolean validate() throws Exception;
+  }
+}
@@ -9,16 +9,20 @@ package org.roda.core.common;
 
 import static org.testng.AssertJUnit.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.roda.core.CorporaConstants;
 import org.roda.core.RodaCoreFactory;
@@ -39,6 +43,7 @@ import org.roda.core.data.v2.jobs.PluginState;
 import org.roda.core.data.v2.jobs.PluginType;
 import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.data.v2.validation.ValidationException;
+import org.roda.core.data.v2.validation.ValidationReport;
 import org.roda.core.index.IndexService;
 import org.roda.core.index.IndexServiceTest;
 import org.roda.core.model.ModelService;
@@ -53,6 +58,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
 
 @Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
 public class ValidationUtilsTest {
@@ -61,6 +67,10 @@ public class ValidationUtilsTest {
   private static IndexService index;
   private static StorageService corporaService;
 
+  private static final String VALID_DC = "<simpledc><title>Title</title></simpledc>";
+  private static final String INVALID_DC = "<simpledc><unknown>Unknown</unknown></simpledc>";
+  private static final String MALFORMED_DC = "<simpledc><title>Title</simpledc>";
+
   private static final Logger logger = LoggerFactory.getLogger(ValidationUtilsTest.class);
 
   @BeforeClass
@@ -170,4 +180,68 @@ public class ValidationUtilsTest {
       SelectedItemsList.create(AIP.class, Arrays.asList(aip2.getId())));
     TestsHelper.getJobReports(index, job2, true);
   }
+
+  private static Schema loadDublinCoreSchema() throws SAXException {
+    URL schemaURL = ValidationUtilsTest.class.getResource("/config/schemas/dc.xsd");
+    return SchemaFactory.newInstance(RodaConstants.W3C_XML_SCHEMA_NS_URI)
+      .newSchema(new StreamSource(schemaURL.toString()));
+  }
+
+  private static ValidationReport validate(Schema schema, String xml) {
+    return ValidationUtils.validate(schema, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static ValidationReport isXMLValid(String xml) {
+    return ValidationUtils.isXMLValid(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testReusedValidatorIsResetBetweenDocuments() throws SAXException {
+    Schema schema = loadDublinCoreSchema();
+
+    // same thread and schema, so the same validator and parser every time
+    ValidationReport invalid = validate(schema, INVALID_DC);
+    assertEquals(false, invalid.isValid());
+    assertEquals(false, invalid.getIssues().isEmpty());
+
+    ValidationReport valid = validate(schema, VALID_DC);
+    assertEquals(true, valid.isValid());
+    assertEquals(true, valid.getIssues().isEmpty());
+
+    assertEquals(false, validate(schema, MALFORMED_DC).isValid());
+    assertEquals(true, validate(schema, VALID_DC).isValid());
+    assertEquals(false, validate(schema, INVALID_DC).isValid());
+  }
+
+  @Test
+  public void testReusedParserIsResetBetweenDocuments() {
+    ValidationReport malformed = isXMLValid(MALFORMED_DC);
+    assertEquals(false, malformed.isValid());
+    assertEquals(false, malformed.getIssues().isEmpty());
+
+    ValidationReport wellFormed = isXMLValid(VALID_DC);
+    assertEquals(true, wellFormed.isValid());
+    assertEquals(true, wellFormed.getIssues().isEmpty());
+
+    // an unknown element is still well formed
+    assertEquals(true, isXMLValid(INVALID_DC).isValid());
+    assertEquals(false, isXMLValid(MALFORMED_DC).isValid());
+  }
+
+  @Test
+  public void testValidationAfterClearingValidators() throws SAXException {
+    Schema schema = loadDublinCoreSchema();
+    assertEquals(true, validate(schema, VALID_DC).isValid());
+
+    ValidationUtils.clearValidators();
+    assertEquals(false, validate(schema, INVALID_DC).isValid());
+    assertEquals(true, validate(schema, VALID_DC).isValid());
+
+    // a reloaded schema gets validators of its own
+    ValidationUtils.clearValidators();
+    Schema reloaded = loadDublinCoreSchema();
+    assertEquals(true, validate(reloaded, VALID_DC).isValid());
+    assertEquals(false, validate(reloaded, INVALID_DC).isValid());
+    assertEquals(true, validate(schema, VALID_DC).isValid());
+  }
 }
@@ -0,0 +1,181 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.monitor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.index.IndexService;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.IdUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class IncrementalTransferredResourcesScannerTest {
+  private static final long TIMEOUT_IN_MILLIS = 30000;
+
+  private static Path basePath;
+  private static Path transferPath;
+  private static IndexService index;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(IncrementalTransferredResourcesScannerTest.class, true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+
+    index = RodaCoreFactory.getIndexService();
+    transferPath = basePath.resolve("transfer");
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  @AfterMethod
+  public static void cleanup()
+    throws GenericException, RequestNotValidException, IOException, AuthorizationDeniedException {
+    FSUtils.deletePathQuietly(transferPath);
+    FSUtils.deletePathQuietly(basePath.resolve("snapshot.gz"));
+    index.delete(TransferredResource.class, Filter.ALL);
+    index.commit(TransferredResource.class);
+  }
+
+  private static IncrementalTransferredResourcesScanner createScanner() throws IOException {
+    Files.createDirectories(transferPath);
+    return new IncrementalTransferredResourcesScanner(transferPath, basePath.resolve("snapshot.gz"), index, 10, 2, 0);
+  }
+
+  private static void write(String relativePath, String content) throws IOException {
+    Path file = transferPath.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static TransferredResource find(String relativePath) throws GenericException {
+    try {
+      return index.retrieve(TransferredResource.class, IdUtils.getTransferredResourceUUID(relativePath),
+        new ArrayList<>());
+    } catch (NotFoundException e) {
+      return null;
+    }
+  }
+
+  private static long size(String relativePath) throws GenericException {
+    TransferredResource resource = find(relativePath);
+    return resource == null ? -1 : resource.getSize();
+  }
+
+  private static void waitFor(String description, Callable<Boolean> condition) throws Exception {
+    long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+    while (!condition.call()) {
+      if (System.currentTimeMillis() > deadline) {
+        Assert.fail("Timed out waiting for " + description);
+      }
+      Thread.sleep(200);
+    }
+  }
+
+  @Test
+  public void testWatchedCreateMoveAndDelete() throws Exception {
+    write("a/existing.txt", "12");
+    try (IncrementalTransferredResourcesScanner scanner = createScanner()) {
+      scanner.start();
+      Assert.assertTrue(scanner.awaitInitialization(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      Assert.assertNotNull(find("a/existing.txt"));
+      Assert.assertEquals(size("a"), 2);
+
+      write("a/b/created.txt", "12345");
+      waitFor("the created file", () -> find("a/b/created.txt") != null && size("a") == 7);
+      Assert.assertEquals(size("a/b"), 5);
+
+      Files.move(transferPath.resolve("a/b/created.txt"), transferPath.resolve("a/moved.txt"));
+      waitFor("the moved file", () -> find("a/b/created.txt") == null && find("a/moved.txt") != null);
+      Assert.assertEquals(size("a/b"), 0);
+      Assert.assertEquals(size("a"), 7);
+
+      Files.delete(transferPath.resolve("a/moved.txt"));
+      waitFor("the deleted file", () -> find("a/moved.txt") == null && size("a") == 2);
+
+      FSUtils.deletePath(transferPath.resolve("a"));
+      waitFor("the deleted folder", () -> find("a") == null && find("a/existing.txt") == null);
+    }
+  }
+
+  @Test
+  public void testReconcile() throws Exception {
+    write("a/one.txt", "1");
+    write("a/b/two.txt", "22");
+    try (IncrementalTransferredResourcesScanner scanner = createScanner()) {
+      scanner.reconcile(Optional.empty(), false);
+      Assert.assertEquals(size("a"), 3);
+      Assert.assertEquals(size("a/b"), 2);
+
+      write("a/b/three.txt", "333");
+      Files.delete(transferPath.resolve("a/one.txt"));
+      scanner.reconcile(Optional.empty(), false);
+      Assert.assertNull(find("a/one.txt"));
+      Assert.assertNotNull(find("a/b/three.txt"));
+      Assert.assertEquals(size("a/b"), 5);
+      Assert.assertEquals(size("a"), 5);
+    }
+  }
+
+  @Test
+  public void testRepair() throws Exception {
+    write("a/one.txt", "1");
+    write("a/b/two.txt", "22");
+    try (IncrementalTransferredResourcesScanner scanner = createScanner()) {
+      scanner.reconcile(Optional.empty(), false);
+
+      // the index no longer matches the snapshot
+      index.delete(TransferredResource.class,
+        Collections.singletonList(IdUtils.getTransferredResourceUUID("a/b/two.txt")));
+      index.create(TransferredResource.class, TransferredResourcesScanner
+        .instantiateTransferredResource(transferPath.resolve("a/ghost.txt"), transferPath));
+      index.commit(TransferredResource.class);
+
+      scanner.reconcile(Optional.of("a"), false);
+      Assert.assertNull(find("a/b/two.txt"));
+
+      scanner.reconcile(Optional.of("a"), true);
+      Assert.assertNotNull(find("a/b/two.txt"));
+      Assert.assertNull(find("a/ghost.txt"));
+      Assert.assertEquals(size("a"), 3);
+    }
+  }
+}
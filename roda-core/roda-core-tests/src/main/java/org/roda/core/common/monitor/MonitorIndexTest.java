@@ -7,14 +7,20 @@
  */
 package org.roda.core.common.monitor;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.hamcrest.MatcherAssert;
@@ -23,14 +29,17 @@ import org.roda.core.RodaCoreFactory;
 import org.roda.core.TestsHelper;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.NodeType;
+import org.roda.core.data.exceptions.AlreadyExistsException;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.index.IndexResult;
 import org.roda.core.data.v2.index.filter.Filter;
 import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.data.v2.ip.TransferredResourceUpload;
 import org.roda.core.index.IndexService;
 import org.roda.core.storage.fs.FSUtils;
 import org.roda.core.util.IdUtils;
@@ -249,6 +258,139 @@ public class MonitorIndexTest {
     Assert.assertEquals(resultAfterRemoves, resultBeforeRemoves - 1);
   }
 
+  @Test
+  public void testResumableUpload() throws Exception {
+    TransferredResourcesScanner monitor = new TransferredResourcesScanner(sips, index, RodaCoreFactory.getNodeType());
+    TransferredResourcesUploadManager uploadManager = new TransferredResourcesUploadManager(monitor,
+      sips.resolveSibling("uploads-test"), 24);
+    uploadManager.start(0);
+
+    byte[] content = new byte[1000];
+    new Random().nextBytes(content);
+    byte[] firstChunk = Arrays.copyOfRange(content, 0, 600);
+    byte[] secondChunk = Arrays.copyOfRange(content, 600, content.length);
+
+    TransferredResourceUpload upload = uploadManager.createUpload(null, "uploaded.bin", content.length,
+      sha256(content), "admin");
+
+    // chunks out of order, one of them corrupted on the first try
+    uploadManager.uploadChunk(upload.getId(), 600, new ByteArrayInputStream(secondChunk), sha256(secondChunk));
+    try {
+      uploadManager.uploadChunk(upload.getId(), 0, new ByteArrayInputStream(secondChunk), sha256(firstChunk));
+      Assert.fail("Chunk with wrong checksum should not be accepted");
+    } catch (RequestNotValidException e) {
+      // expected
+    }
+
+    try {
+      uploadManager.finishUpload(upload.getId());
+      Assert.fail("Incomplete upload should not be finished");
+    } catch (RequestNotValidException e) {
+      // expected
+    }
+
+    upload = uploadManager.uploadChunk(upload.getId(), 0, new ByteArrayInputStream(firstChunk), sha256(firstChunk));
+    Assert.assertTrue(upload.isComplete());
+    Assert.assertEquals(upload.getReceivedRanges().size(), 1);
+
+    TransferredResource resource = uploadManager.finishUpload(upload.getId());
+    index.commit(TransferredResource.class);
+
+    Assert.assertEquals(Files.readAllBytes(sips.resolve("uploaded.bin")), content);
+    Assert.assertEquals(index.retrieve(TransferredResource.class, resource.getUUID(), new ArrayList<>()).getSize(),
+      content.length);
+    Assert.assertFalse(FSUtils.exists(sips.resolveSibling("uploads-test").resolve(upload.getId())));
+
+    uploadManager.close();
+  }
+
+  @Test
+  public void testFailedChunkRetryKeepsReceivedBytes() throws Exception {
+    TransferredResourcesScanner monitor = new TransferredResourcesScanner(sips, index, RodaCoreFactory.getNodeType());
+    TransferredResourcesUploadManager uploadManager = new TransferredResourcesUploadManager(monitor,
+      sips.resolveSibling("uploads-test"), 24);
+    uploadManager.start(0);
+
+    byte[] content = new byte[1000];
+    new Random().nextBytes(content);
+    byte[] firstChunk = Arrays.copyOfRange(content, 0, 600);
+    byte[] secondChunk = Arrays.copyOfRange(content, 600, content.length);
+    byte[] corruptedChunk = new byte[secondChunk.length];
+
+    // without whole file checksum, nothing else would catch a corruption
+    TransferredResourceUpload upload = uploadManager.createUpload(null, "retried.bin", content.length, null, "admin");
+    uploadManager.uploadChunk(upload.getId(), 0, new ByteArrayInputStream(firstChunk), sha256(firstChunk));
+    uploadManager.uploadChunk(upload.getId(), 600, new ByteArrayInputStream(secondChunk), sha256(secondChunk));
+
+    // a retry of an already received chunk that fails its checksum
+    try {
+      uploadManager.uploadChunk(upload.getId(), 600, new ByteArrayInputStream(corruptedChunk), sha256(secondChunk));
+      Assert.fail("Chunk with wrong checksum should not be accepted");
+    } catch (RequestNotValidException e) {
+      // expected
+    }
+
+    uploadManager.finishUpload(upload.getId());
+    Assert.assertEquals(Files.readAllBytes(sips.resolve("retried.bin")), content);
+
+    // an existing file is never replaced
+    upload = uploadManager.createUpload(null, "retried.bin", firstChunk.length, null, "admin");
+    uploadManager.uploadChunk(upload.getId(), 0, new ByteArrayInputStream(firstChunk), null);
+    try {
+      uploadManager.finishUpload(upload.getId());
+      Assert.fail("Upload should not replace an existing file");
+    } catch (AlreadyExistsException e) {
+      // expected
+    }
+    Assert.assertEquals(Files.readAllBytes(sips.resolve("retried.bin")), content);
+
+    uploadManager.close();
+  }
+
+  @Test
+  public void testExpiredUploadsAreRemoved() throws Exception {
+    TransferredResourcesScanner monitor = new TransferredResourcesScanner(sips, index, RodaCoreFactory.getNodeType());
+    Path uploadsPath = sips.resolveSibling("uploads-expiry-test");
+    TransferredResourcesUploadManager uploadManager = new TransferredResourcesUploadManager(monitor, uploadsPath, 24);
+    uploadManager.start(0);
+
+    TransferredResourceUpload upload = uploadManager.createUpload(null, "expiring.bin", 10, null, "admin");
+    uploadManager.uploadChunk(upload.getId(), 0, new ByteArrayInputStream(new byte[5]), null);
+
+    // leftover of a failed creation, without upload information, last changed
+    // before the expiration
+    Path leftover = Files.createDirectory(uploadsPath.resolve(IdUtils.createUUID()));
+    Files.setLastModifiedTime(leftover,
+      FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)));
+
+    uploadManager.removeExpiredUploads();
+    Assert.assertFalse(FSUtils.exists(leftover));
+    Assert.assertEquals(uploadManager.retrieveUpload(upload.getId()).getReceivedBytes(), 5L);
+    uploadManager.close();
+
+    // every upload not updated since the expiration is removed
+    uploadManager = new TransferredResourcesUploadManager(monitor, uploadsPath, 0);
+    uploadManager.start(0);
+    Thread.sleep(10);
+    uploadManager.removeExpiredUploads();
+    Assert.assertFalse(FSUtils.exists(uploadsPath.resolve(upload.getId())));
+    try {
+      uploadManager.uploadChunk(upload.getId(), 5, new ByteArrayInputStream(new byte[5]), null);
+      Assert.fail("Chunk of an expired upload should not be accepted");
+    } catch (NotFoundException e) {
+      // expected
+    }
+    uploadManager.close();
+  }
+
+  private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
   private static int populate(Path basePath) throws IOException {
     Random randomno = new Random();
     int numberOfItemsByLevel = nextIntInRange(2, 3, randomno);
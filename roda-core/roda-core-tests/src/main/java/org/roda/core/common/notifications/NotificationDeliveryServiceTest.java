@@ -0,0 +1,328 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.notifications;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.IOUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.v2.notifications.Notification;
+import org.roda.core.data.v2.notifications.NotificationState;
+import org.roda.core.model.ModelService;
+import org.roda.core.storage.fs.FSUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class NotificationDeliveryServiceTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDeliveryServiceTest.class);
+  private static final long TIMEOUT_IN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private static Path basePath;
+  private static ModelService model;
+
+  private Path queueDirectory;
+  private HttpServer httpServer;
+  private AtomicInteger httpRequests;
+  private AtomicInteger httpFailuresLeft;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(NotificationDeliveryServiceTest.class, true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+
+    model = RodaCoreFactory.getModelService();
+    LOGGER.info("Running notification delivery tests under storage {}", basePath);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  @BeforeMethod
+  public void startHttpServer() throws IOException {
+    queueDirectory = basePath.resolve(RodaConstants.CORE_NOTIFICATION_QUEUE_FOLDER + System.nanoTime());
+    httpRequests = new AtomicInteger();
+    httpFailuresLeft = new AtomicInteger();
+
+    httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    httpServer.createContext("/notify", exchange -> {
+      IOUtils.toByteArray(exchange.getRequestBody());
+      httpRequests.incrementAndGet();
+      int status = httpFailuresLeft.getAndDecrement() > 0 ? 503 : 200;
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+    });
+    httpServer.start();
+  }
+
+  @AfterMethod
+  public void stopHttpServer() {
+    httpServer.stop(0);
+  }
+
+  private String getEndpoint() {
+    return "http://localhost:" + httpServer.getAddress().getPort() + "/notify";
+  }
+
+  private NotificationDeliveryService createService(int maxAttempts, long backoffInMillis) throws IOException {
+    return new NotificationDeliveryService(queueDirectory, 2, maxAttempts, backoffInMillis, backoffInMillis * 4,
+      TimeUnit.SECONDS.toMillis(1), 5000);
+  }
+
+  private Notification createNotification(String... recipients) throws Exception {
+    Notification notification = new Notification();
+    notification.setSubject("Delivery test");
+    notification.setFromUser(NotificationDeliveryServiceTest.class.getSimpleName());
+    notification.setRecipientUsers(Arrays.asList(recipients));
+    return model.createNotification(notification, null);
+  }
+
+  private Notification waitForState(String notificationId, NotificationState state) throws Exception {
+    waitFor(() -> {
+      try {
+        return model.retrieveNotification(notificationId).getState() == state;
+      } catch (Exception e) {
+        return false;
+      }
+    });
+    return model.retrieveNotification(notificationId);
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+    while (!condition.getAsBoolean()) {
+      Assert.assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for delivery");
+      Thread.sleep(50);
+    }
+  }
+
+  @Test
+  public void testBackoff() {
+    Assert.assertEquals(NotificationDeliveryService.computeBackoff(1, 1000, 10000), 1000);
+    Assert.assertEquals(NotificationDeliveryService.computeBackoff(2, 1000, 10000), 2000);
+    Assert.assertEquals(NotificationDeliveryService.computeBackoff(4, 1000, 10000), 8000);
+    Assert.assertEquals(NotificationDeliveryService.computeBackoff(5, 1000, 10000), 10000);
+    Assert.assertEquals(NotificationDeliveryService.computeBackoff(100, 1000, 10000), 10000);
+  }
+
+  @Test
+  public void testHttpDeliveryIsRetried() throws Exception {
+    httpFailuresLeft.set(2);
+    Notification notification = createNotification(getEndpoint());
+    NotificationDeliveryService service = createService(5, 50);
+    try {
+      service.enqueue(Collections.singletonList(NotificationDelivery.http(notification.getId(), getEndpoint(), "{}")));
+
+      Notification delivered = waitForState(notification.getId(), NotificationState.COMPLETED);
+      Assert.assertEquals(httpRequests.get(), 3);
+      Assert.assertEquals(delivered.getDeliveryAttempts(), 3);
+      Assert.assertNotNull(delivered.getLastDeliveryAttempt());
+      Assert.assertTrue(service.getPendingDeliveries().isEmpty());
+      Assert.assertEquals(queueDirectory.toFile().list().length, 0);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testHttpDeliveryGivesUp() throws Exception {
+    httpFailuresLeft.set(Integer.MAX_VALUE);
+    Notification notification = createNotification(getEndpoint());
+    NotificationDeliveryService service = createService(3, 50);
+    try {
+      service.enqueue(Collections.singletonList(NotificationDelivery.http(notification.getId(), getEndpoint(), "{}")));
+
+      Notification failed = waitForState(notification.getId(), NotificationState.FAILED);
+      Assert.assertEquals(httpRequests.get(), 3);
+      Assert.assertEquals(failed.getDeliveryAttempts(), 3);
+      Assert.assertNotNull(failed.getDeliveryError());
+      Assert.assertTrue(service.getPendingDeliveries().isEmpty());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testPendingDeliveriesSurviveRestart() throws Exception {
+    httpFailuresLeft.set(Integer.MAX_VALUE);
+    Notification notification = createNotification(getEndpoint());
+    NotificationDeliveryService service = createService(5, TimeUnit.HOURS.toMillis(1));
+    try {
+      service.enqueue(Collections.singletonList(NotificationDelivery.http(notification.getId(), getEndpoint(), "{}")));
+      waitFor(() -> httpRequests.get() == 1 && service.getPendingDeliveries().get(0).getAttempts() == 1);
+    } finally {
+      service.shutdown();
+    }
+
+    NotificationDeliveryService restarted = createService(5, TimeUnit.HOURS.toMillis(1));
+    try {
+      List<NotificationDelivery> pending = restarted.getPendingDeliveries();
+      Assert.assertEquals(pending.size(), 1);
+      Assert.assertEquals(pending.get(0).getNotificationId(), notification.getId());
+      Assert.assertEquals(pending.get(0).getAttempts(), 1);
+      Assert.assertEquals(model.retrieveNotification(notification.getId()).getState(), NotificationState.CREATED);
+    } finally {
+      restarted.shutdown();
+    }
+  }
+
+  @Test
+  public void testEmailsToSameRecipientShareTransport() throws Exception {
+    String recipient = "recipient@example.com";
+    try (SmtpStub smtp = new SmtpStub()) {
+      RodaCoreFactory.getRodaConfiguration().setProperty("core.email.protocol", "smtp");
+      RodaCoreFactory.getRodaConfiguration().setProperty("core.email.host", "localhost");
+      RodaCoreFactory.getRodaConfiguration().setProperty("core.email.port", String.valueOf(smtp.getPort()));
+      RodaCoreFactory.getRodaConfiguration().setProperty("core.email.from", "roda@example.com");
+
+      Notification first = createNotification(recipient);
+      Notification second = createNotification(recipient);
+      NotificationDeliveryService service = createService(5, 50);
+      try {
+        String from = first.getFromUser();
+        String subject = first.getSubject();
+        service.enqueue(Arrays.asList(NotificationDelivery.email(first.getId(), recipient, from, subject, "<p>1</p>"),
+          NotificationDelivery.email(second.getId(), recipient, from, subject, "<p>2</p>"),
+          NotificationDelivery.email(second.getId(), recipient, from, subject, "<p>3</p>")));
+
+        waitForState(first.getId(), NotificationState.COMPLETED);
+        waitForState(second.getId(), NotificationState.COMPLETED);
+        Assert.assertEquals(smtp.getMessages(), 3);
+        Assert.assertEquals(smtp.getConnections(), 1);
+      } finally {
+        service.shutdown();
+      }
+    } finally {
+      for (String property : Arrays.asList("protocol", "host", "port", "from")) {
+        RodaCoreFactory.getRodaConfiguration().clearProperty("core.email." + property);
+      }
+    }
+  }
+
+  /**
+   * Minimal SMTP server that accepts every message.
+   */
+  private static class SmtpStub implements Closeable {
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+
+    public SmtpStub() throws IOException {
+      serverSocket = new ServerSocket(0);
+      Thread acceptor = new Thread(() -> {
+        while (!serverSocket.isClosed()) {
+          try {
+            Socket socket = serverSocket.accept();
+            connections.incrementAndGet();
+            Thread handler = new Thread(() -> handle(socket));
+            handler.setDaemon(true);
+            handler.start();
+          } catch (IOException e) {
+            // closed
+          }
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+
+    public int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    public int getConnections() {
+      return connections.get();
+    }
+
+    public int getMessages() {
+      return messages.get();
+    }
+
+    private void handle(Socket socket) {
+      try (Socket s = socket;
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+        Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.ISO_8859_1)) {
+        reply(out, "220 localhost ESMTP stub");
+        boolean inData = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+          String command = line.toUpperCase();
+          if (inData) {
+            if (".".equals(line)) {
+              inData = false;
+              messages.incrementAndGet();
+              reply(out, "250 OK");
+            }
+          } else if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+            reply(out, "250 localhost");
+          } else if (command.startsWith("DATA")) {
+            inData = true;
+            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+          } else if (command.startsWith("QUIT")) {
+            reply(out, "221 Bye");
+            break;
+          } else if (command.startsWith("MAIL") || command.startsWith("RCPT") || command.startsWith("RSET")
+            || command.startsWith("NOOP")) {
+            reply(out, "250 OK");
+          } else {
+            reply(out, "502 Command not implemented");
+          }
+        }
+      } catch (IOException e) {
+        // connection closed by the client
+      }
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+      out.write(reply + "\r\n");
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+}
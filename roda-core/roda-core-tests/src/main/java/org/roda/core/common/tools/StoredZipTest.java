@@ -0,0 +1,244 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.zip.Zip64ExtendedInformationExtraField;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipShort;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.NullInputStream;
+import org.roda.core.common.iterables.CloseableIterables;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.storage.ByteArrayContentPayload;
+import org.roda.core.storage.ContentPayload;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class StoredZipTest {
+  private static final ZipShort ZIP64_EXTRA_ID = new ZipShort(0x0001);
+
+  private static ZipEntryInfo entry(String name, String content) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    return new ZipEntryInfo(name, new ByteArrayContentPayload(bytes), bytes.length);
+  }
+
+  private static List<ZipEntryInfo> createEntries() {
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      big.append("line ").append(i).append('\n');
+    }
+
+    List<ZipEntryInfo> entries = new ArrayList<>();
+    entries.add(new ZipEntryInfo("folder/", null, 0));
+    entries.add(entry("folder/a.txt", "a"));
+    entries.add(entry("folder/empty.txt", ""));
+    entries.add(entry("folder/\u00e7\u00e3o.txt", "non ASCII name"));
+    entries.add(entry("big.txt", big.toString()));
+    return entries;
+  }
+
+  private static ZipEntryInfo entry(String name, String content, long lastModified, AtomicInteger reads) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    ContentPayload payload = new ByteArrayContentPayload(bytes) {
+      @Override
+      public InputStream createInputStream() {
+        reads.incrementAndGet();
+        return super.createInputStream();
+      }
+    };
+    return new ZipEntryInfo(name, payload, bytes.length, lastModified);
+  }
+
+  private static byte[] write(StoredZip zip, long from, long len) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    zip.consumeOutputStream(out, from, len);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testSizeAndContent() throws Exception {
+    List<ZipEntryInfo> entries = createEntries();
+    StoredZip zip = new StoredZip("test.zip", () -> CloseableIterables.fromList(entries));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    zip.consumeOutputStream(out);
+    Assert.assertEquals(out.size(), zip.getSize());
+
+    Path file = Files.createTempFile("stored", ".zip");
+    try {
+      Files.write(file, out.toByteArray());
+      try (ZipFile zipFile = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+        Assert.assertEquals(zipFile.size(), entries.size());
+        for (ZipEntryInfo info : entries) {
+          ZipEntry zipEntry = zipFile.getEntry(info.getName());
+          Assert.assertNotNull(zipEntry, info.getName());
+          Assert.assertEquals(zipEntry.getMethod(), ZipEntry.STORED);
+          Assert.assertEquals(zipEntry.isDirectory(), info.isDirectory());
+          if (!info.isDirectory()) {
+            try (InputStream expected = info.getPayload().createInputStream();
+              InputStream actual = zipFile.getInputStream(zipEntry)) {
+              Assert.assertTrue(IOUtils.contentEquals(expected, actual), info.getName());
+            }
+          }
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testStreamedRoundTrip() throws Exception {
+    List<ZipEntryInfo> entries = createEntries();
+    StoredZip zip = new StoredZip("test.zip", () -> CloseableIterables.fromList(entries));
+    byte[] full = write(zip, 0, zip.getSize());
+
+    // java.util.zip.ZipInputStream refuses stored entries with data
+    // descriptors, so the ZIP is streamed with commons-compress instead
+    try (ZipArchiveInputStream in = new ZipArchiveInputStream(new ByteArrayInputStream(full),
+      StandardCharsets.UTF_8.name(), true, true)) {
+      for (ZipEntryInfo info : entries) {
+        ZipArchiveEntry zipEntry = in.getNextZipEntry();
+        Assert.assertNotNull(zipEntry, info.getName());
+        Assert.assertEquals(zipEntry.getName(), info.getName());
+        Assert.assertEquals(zipEntry.getMethod(), ZipEntry.STORED);
+        // entries below 4 GB keep the plain local header
+        Assert.assertNull(zipEntry.getExtraField(ZIP64_EXTRA_ID), info.getName());
+        if (!info.isDirectory()) {
+          try (InputStream expected = info.getPayload().createInputStream()) {
+            Assert.assertTrue(IOUtils.contentEquals(expected, in), info.getName());
+          }
+        }
+      }
+      Assert.assertNull(in.getNextZipEntry());
+    }
+  }
+
+  @Test
+  public void testLocalHeaderOfEntriesOf4GBOrMore() throws Exception {
+    long bigSize = 0xFFFFFFFFL + 10;
+    ZipEntryInfo big = new ZipEntryInfo("big.bin", new ByteArrayContentPayload(new byte[0]) {
+      @Override
+      public InputStream createInputStream() {
+        return new NullInputStream(bigSize);
+      }
+    }, bigSize);
+    StoredZip zip = new StoredZip("big.zip", () -> CloseableIterables.fromList(Arrays.asList(big)));
+
+    // local header with ZIP64 extra field, data, ZIP64 data descriptor, central
+    // header with ZIP64 sizes, ZIP64 end records and end record
+    int name = "big.bin".length();
+    int localHeaderSize = 30 + name + 20;
+    Assert.assertEquals(zip.getSize(), localHeaderSize + bigSize + 24 + 46 + name + 20 + 56 + 20 + 22);
+
+    byte[] localHeader = write(zip, 0, localHeaderSize);
+    try (ZipArchiveInputStream in = new ZipArchiveInputStream(new ByteArrayInputStream(localHeader),
+      StandardCharsets.UTF_8.name(), true, true)) {
+      ZipArchiveEntry zipEntry = in.getNextZipEntry();
+      Assert.assertEquals(zipEntry.getName(), "big.bin");
+      Assert.assertTrue(zipEntry.getExtraField(ZIP64_EXTRA_ID) instanceof Zip64ExtendedInformationExtraField);
+    }
+  }
+
+  @Test
+  public void testRanges() throws Exception {
+    List<ZipEntryInfo> entries = createEntries();
+    StoredZip zip = new StoredZip("test.zip", () -> CloseableIterables.fromList(entries));
+    byte[] full = write(zip, 0, zip.getSize());
+
+    long size = zip.getSize();
+    for (long[] range : new long[][] {{0, 10}, {5, 100}, {200, 5000}, {size - 300, 300}, {size - 1, 1},
+      {0, size}}) {
+      int from = (int) range[0];
+      int to = (int) (range[0] + range[1]);
+      Assert.assertEquals(write(zip, range[0], range[1]), Arrays.copyOfRange(full, from, to),
+        "range " + from + "-" + to);
+    }
+  }
+
+  @Test
+  public void testEntityTag() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    List<ZipEntryInfo> entries = Arrays.asList(new ZipEntryInfo("folder/", null, 0),
+      entry("folder/a.txt", "a", 1000L, reads), entry("b.txt", "b", 2000L, reads));
+    StoredZip zip = new StoredZip("test.zip", () -> CloseableIterables.fromList(entries));
+    Assert.assertNotNull(zip.getEntityTag());
+    Assert.assertEquals(zip.getLastModified().getTime(), 2000L);
+    Assert.assertEquals(new StoredZip("other.zip", () -> CloseableIterables.fromList(entries)).getEntityTag(),
+      zip.getEntityTag());
+
+    List<List<ZipEntryInfo>> changes = Arrays.asList(entries.subList(0, 2),
+      Arrays.asList(entries.get(0), entries.get(1), entry("b.txt", "b", 3000L, reads)),
+      Arrays.asList(entries.get(0), entries.get(1), entry("b.txt", "bb", 2000L, reads)),
+      Arrays.asList(entries.get(0), entries.get(1), entry("c.txt", "b", 2000L, reads)));
+    for (List<ZipEntryInfo> changed : changes) {
+      Assert.assertNotEquals(new StoredZip("test.zip", () -> CloseableIterables.fromList(changed)).getEntityTag(),
+        zip.getEntityTag());
+    }
+
+    // without modification times there is no validator
+    StoredZip unknown = new StoredZip("test.zip", () -> CloseableIterables.fromList(createEntries()));
+    Assert.assertNull(unknown.getEntityTag());
+    Assert.assertNull(unknown.getLastModified());
+    Assert.assertEquals(reads.get(), 0);
+  }
+
+  @Test
+  public void testCentralDirectoryRangeUsesKnownCrcs() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    List<ZipEntryInfo> entries = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      entries.add(entry("file" + i + ".txt", "content " + i, System.currentTimeMillis(), reads));
+    }
+    StoredZip zip = new StoredZip("crcs.zip", () -> CloseableIterables.fromList(entries));
+    long size = zip.getSize();
+
+    // only the end of the ZIP, which needs the CRCs of every entry
+    byte[] end = write(zip, size - 100, 100);
+    Assert.assertEquals(reads.get(), entries.size());
+
+    reads.set(0);
+    Assert.assertEquals(write(zip, size - 100, 100), end);
+    Assert.assertEquals(reads.get(), 0);
+
+    byte[] full = write(zip, 0, size);
+    Assert.assertEquals(Arrays.copyOfRange(full, (int) size - 100, (int) size), end);
+  }
+
+  @Test
+  public void testChangedEntries() throws Exception {
+    List<ZipEntryInfo> entries = createEntries();
+    AtomicInteger iterations = new AtomicInteger();
+    // the last entry is gone after the size is computed
+    StoredZip zip = new StoredZip("test.zip", () -> CloseableIterables.fromList(
+      iterations.getAndIncrement() == 0 ? entries : entries.subList(0, entries.size() - 1)));
+
+    try {
+      write(zip, 0, Long.MAX_VALUE);
+      Assert.fail("Writing a ZIP whose entries changed should fail");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
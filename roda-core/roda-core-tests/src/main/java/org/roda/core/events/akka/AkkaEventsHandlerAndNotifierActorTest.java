@@ -0,0 +1,184 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.events.akka;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.common.akka.Messages;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.v2.user.User;
+import org.roda.core.events.AbstractEventsHandler;
+import org.roda.core.model.ModelService;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import akka.cluster.ddata.DistributedData;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.Replicator;
+import akka.cluster.ddata.Replicator.GetSuccess;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Runs several events nodes (each in its own actor system, as RODA instances
+ * would) on localhost and checks that, under sustained changes, every change
+ * reaches the other nodes while the replicated state stays bounded.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL})
+public class AkkaEventsHandlerAndNotifierActorTest {
+  private static final int NODES = 3;
+  private static final int CHANGES = 4000;
+  private static final int DELETE_EVERY = 10;
+  private static final long RETENTION_IN_MILLIS = 2000;
+  private static final long GC_INTERVAL_IN_MILLIS = 250;
+
+  public static class CountingEventsHandler extends AbstractEventsHandler {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger updated = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    @Override
+    public void handleUserUpdated(ModelService model, User user, String password) {
+      updated.incrementAndGet();
+    }
+
+    @Override
+    public void handleUserDeleted(ModelService model, String id) {
+      deleted.incrementAndGet();
+    }
+  }
+
+  private static int getFreePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static int getReplicatedEntries(ActorSystem system) throws Exception {
+    Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+    Object response = Await.result(Patterns.ask(DistributedData.get(system).replicator(),
+      new Replicator.Get<>(AkkaEventsHandlerAndNotifierActor.CHANGES_KEY, Replicator.readLocal()), timeout),
+      timeout.duration());
+    if (response instanceof GetSuccess) {
+      return ((GetSuccess<LWWMap<String, CRDTWrapper>>) response).dataValue().size();
+    }
+    return 0;
+  }
+
+  private static boolean isClusterUp(List<ActorSystem> systems) {
+    for (ActorSystem system : systems) {
+      int up = 0;
+      for (Member member : Cluster.get(system).state().getMembers()) {
+        if (member.status().equals(MemberStatus.up())) {
+          up++;
+        }
+      }
+      if (up < NODES) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void testReplicatedStateIsBoundedUnderSustainedChanges() throws Exception {
+    String seed = "akka.tcp://EventsSystem@127.0.0.1:" + getFreePort();
+    List<ActorSystem> systems = new ArrayList<>();
+    List<ActorRef> actors = new ArrayList<>();
+    List<CountingEventsHandler> handlers = new ArrayList<>();
+    try {
+      for (int node = 0; node < NODES; node++) {
+        String port = node == 0 ? seed.substring(seed.lastIndexOf(':') + 1) : Integer.toString(getFreePort());
+        Config config = ConfigFactory.parseString("akka.cluster.seed-nodes=[\"" + seed + "\"]")
+          .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.hostname=127.0.0.1"))
+          .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.port=" + port))
+          .withFallback(ConfigFactory.parseString("akka.cluster.distributed-data.gossip-interval=500ms"))
+          .withFallback(ConfigFactory.parseResources("config/orchestrator/events.conf"));
+        ActorSystem system = ActorSystem.create("EventsSystem", config);
+        systems.add(system);
+        CountingEventsHandler handler = new CountingEventsHandler();
+        handlers.add(handler);
+        actors.add(system.actorOf(Props.create(AkkaEventsHandlerAndNotifierActor.class, handler, "WriteMajority", 3,
+          RETENTION_IN_MILLIS, GC_INTERVAL_IN_MILLIS), "eventsNotifierAndHandlerActor"));
+      }
+
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+      while (!isClusterUp(systems) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(200);
+      }
+      Assert.assertTrue(isClusterUp(systems), "Cluster did not form");
+
+      int[] updatesByNode = new int[NODES];
+      int[] deletionsByNode = new int[NODES];
+      int maxEntries = 0;
+      for (int i = 0; i < CHANGES; i++) {
+        int node = i % NODES;
+        if (i % DELETE_EVERY == DELETE_EVERY - 1) {
+          actors.get(node).tell(Messages.newEventUserDeleted("deleted" + i, "test"), ActorRef.noSender());
+          deletionsByNode[node]++;
+        } else {
+          User user = new User("user" + i, "user" + i, false);
+          actors.get(node).tell(Messages.newEventUserUpdated(user, null, false, "test"), ActorRef.noSender());
+          updatesByNode[node]++;
+        }
+
+        if (i % 100 == 0) {
+          for (ActorSystem system : systems) {
+            maxEntries = Math.max(maxEntries, getReplicatedEntries(system));
+          }
+        }
+        Thread.sleep(3);
+      }
+
+      // every node gets the changes of the other nodes
+      int updates = CHANGES - CHANGES / DELETE_EVERY;
+      int deletions = CHANGES / DELETE_EVERY;
+      deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+      for (int node = 0; node < NODES; node++) {
+        CountingEventsHandler handler = handlers.get(node);
+        while ((handler.updated.get() < updates - updatesByNode[node]
+          || handler.deleted.get() < deletions - deletionsByNode[node]) && System.currentTimeMillis() < deadline) {
+          Thread.sleep(100);
+        }
+        Assert.assertEquals(handler.updated.get(), updates - updatesByNode[node]);
+        Assert.assertEquals(handler.deleted.get(), deletions - deletionsByNode[node]);
+      }
+
+      // and only the recent changes are kept, until all are collected
+      Assert.assertTrue(maxEntries < CHANGES / 2, "Replicated state reached " + maxEntries + " entries");
+      deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+      for (ActorSystem system : systems) {
+        while (getReplicatedEntries(system) > 0 && System.currentTimeMillis() < deadline) {
+          Thread.sleep(200);
+        }
+        Assert.assertEquals(getReplicatedEntries(system), 0);
+      }
+    } finally {
+      for (ActorSystem system : systems) {
+        Await.result(system.terminate(), Duration.create(30, TimeUnit.SECONDS));
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.DefaultBinary;
+import org.roda.core.storage.DefaultStoragePath;
+import org.roda.core.storage.fs.FSPathContentPayload;
+import org.roda.core.storage.fs.FSUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class FullTextStoreTest {
+  private static final int CHUNK_SIZE = 100;
+
+  private Path basePath;
+  private Path textPath;
+  private File file;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    basePath = Files.createTempDirectory("fulltext");
+    textPath = basePath.resolve("text.txt");
+    file = new File("file.pdf", "aip", "rep", Collections.emptyList(), false);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FSUtils.deletePathQuietly(basePath);
+  }
+
+  private Binary writeText(String text, long lastModified) throws Exception {
+    Files.write(textPath, text.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(textPath, FileTime.fromMillis(lastModified));
+    return new DefaultBinary(DefaultStoragePath.parse("text.txt"), new FSPathContentPayload(textPath),
+      Files.size(textPath), false, null);
+  }
+
+  private static String words(int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      text.append("word").append(i).append(i % 7 == 0 ? '\n' : ' ');
+    }
+    return text.toString();
+  }
+
+  @Test
+  public void testSplitsTextInChunksAtWordBoundaries() throws Exception {
+    String text = words(200);
+    FullTextStore store = new FullTextStore(basePath.resolve("store"), CHUNK_SIZE, Long.MAX_VALUE, 0);
+    FullTextStore.FullText fulltext = store.update(file, writeText(text, 1000));
+
+    Assert.assertTrue(fulltext.getChunks() > text.length() / CHUNK_SIZE);
+    StringBuilder joined = new StringBuilder();
+    for (int chunk = 0; chunk < fulltext.getChunks(); chunk++) {
+      String chunkText = store.retrieveChunk(file, chunk);
+      Assert.assertTrue(chunkText.length() <= CHUNK_SIZE);
+      Assert.assertTrue(Character.isWhitespace(chunkText.charAt(chunkText.length() - 1)));
+      joined.append(chunkText);
+    }
+    Assert.assertEquals(joined.toString(), text);
+  }
+
+  @Test
+  public void testKeepsChunksWhileTextIsUnchanged() throws Exception {
+    FullTextStore store = new FullTextStore(basePath.resolve("store"), CHUNK_SIZE, Long.MAX_VALUE, 0);
+    int chunks = store.update(file, writeText(words(200), 1000)).getChunks();
+    Path firstChunk;
+    try (Stream<Path> paths = Files.walk(basePath.resolve("store"))) {
+      firstChunk = paths.filter(path -> path.getFileName().toString().equals("0.txt.gz")).findFirst().get();
+    }
+    Object fileKey = Files.readAttributes(firstChunk, BasicFileAttributes.class).fileKey();
+
+    // the same text is not split again
+    FullTextStore.FullText fulltext = store.update(file, writeText(words(200), 1000));
+    Assert.assertEquals(fulltext.getChunks(), chunks);
+    Assert.assertEquals(Files.readAttributes(firstChunk, BasicFileAttributes.class).fileKey(), fileKey);
+
+    // a shorter text replaces it, remembering how many chunks there were
+    fulltext = store.update(file, writeText(words(10), 2000));
+    Assert.assertEquals(fulltext.getChunks(), 1);
+    Assert.assertEquals(fulltext.getPreviousChunks(), chunks);
+    Assert.assertEquals(store.retrieveChunk(file, 0), words(10));
+    Assert.assertEquals(store.retrieve(file).getChunks(), 1);
+  }
+
+  @Test
+  public void testIndexesOnlyTheFirstPartOfBigTexts() throws Exception {
+    FullTextStore store = new FullTextStore(basePath.resolve("store"), CHUNK_SIZE, 3 * CHUNK_SIZE, 0);
+    FullTextStore.FullText fulltext = store.update(file, writeText(words(1000), 1000));
+
+    long total = 0;
+    for (int chunk = 0; chunk < fulltext.getChunks(); chunk++) {
+      total += store.retrieveChunk(file, chunk).length();
+    }
+    Assert.assertEquals(total, 3 * CHUNK_SIZE);
+  }
+
+  @Test
+  public void testIndexesOnlyTheFirstBytesOfTextsAboveTheThreshold() throws Exception {
+    String text = words(100);
+    int threshold = text.length() / 2;
+    FullTextStore store = new FullTextStore(basePath.resolve("store"), CHUNK_SIZE, Long.MAX_VALUE, threshold);
+    FullTextStore.FullText fulltext = store.update(file, writeText(text, 1000));
+    Assert.assertTrue(fulltext.getChunks() > 0);
+
+    StringBuilder joined = new StringBuilder();
+    for (int chunk = 0; chunk < fulltext.getChunks(); chunk++) {
+      joined.append(store.retrieveChunk(file, chunk));
+    }
+    Assert.assertEquals(joined.toString(), text.substring(0, threshold));
+
+    // no limit in bytes
+    FullTextStore unbounded = new FullTextStore(basePath.resolve("unbounded"), CHUNK_SIZE, Long.MAX_VALUE, 0);
+    fulltext = unbounded.update(file, writeText(text, 2000));
+    joined.setLength(0);
+    for (int chunk = 0; chunk < fulltext.getChunks(); chunk++) {
+      joined.append(unbounded.retrieveChunk(file, chunk));
+    }
+    Assert.assertEquals(joined.toString(), text);
+  }
+
+  @Test
+  public void testConcurrentUpdatesOfTheSameFile() throws Exception {
+    FullTextStore store = new FullTextStore(basePath.resolve("store"), CHUNK_SIZE, Long.MAX_VALUE, 0);
+    List<Binary> texts = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Path path = basePath.resolve("text" + i + ".txt");
+      Files.write(path, words(100 + i).getBytes(StandardCharsets.UTF_8));
+      texts.add(new DefaultBinary(DefaultStoragePath.parse(path.getFileName().toString()),
+        new FSPathContentPayload(path), Files.size(path), false, null));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<FullTextStore.FullText>> futures = new ArrayList<>();
+      for (Binary text : texts) {
+        futures.add(executor.submit(() -> store.update(file, text)));
+      }
+      for (Future<FullTextStore.FullText> future : futures) {
+        Assert.assertTrue(future.get().getChunks() > 0);
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // whichever update was last, its chunks are complete
+    FullTextStore.FullText fulltext = store.retrieve(file);
+    StringBuilder joined = new StringBuilder();
+    for (int chunk = 0; chunk < fulltext.getChunks(); chunk++) {
+      joined.append(store.retrieveChunk(file, chunk));
+    }
+    boolean found = false;
+    for (int i = 0; i < texts.size(); i++) {
+      found |= joined.toString().equals(words(100 + i));
+    }
+    Assert.assertTrue(found);
+  }
+}
@@ -50,12 +50,14 @@ import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.index.IndexResult;
 import org.roda.core.data.v2.index.filter.EmptyKeyFilterParameter;
 import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
 import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.AIPState;
 import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.IndexedRepresentation;
 import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Permissions.PermissionType;
@@ -68,8 +70,10 @@ import org.roda.core.data.v2.notifications.NotificationState;
 import org.roda.core.data.v2.notifications.Notification;
 import org.roda.core.data.v2.ri.RepresentationInformation;
 import org.roda.core.data.v2.ri.RepresentationInformationSupport;
+import org.roda.core.data.v2.risks.IncidenceStatus;
 import org.roda.core.data.v2.risks.IndexedRisk;
 import org.roda.core.data.v2.risks.Risk;
+import org.roda.core.data.v2.risks.RiskIncidence;
 import org.roda.core.data.v2.risks.SeverityLevel;
 import org.roda.core.data.v2.user.Group;
 import org.roda.core.data.v2.user.RODAMember;
@@ -298,6 +302,31 @@ public class IndexServiceTest {
     model.deleteAIP(aipId);
   }
 
+  @Test
+  public void testDeleteAIPsInBulk() throws RODAException {
+    final String aipId = IdUtils.createUUID();
+    final String otherAipId = IdUtils.createUUID();
+    model.createAIP(aipId, corporaService,
+      DefaultStoragePath.parse(CorporaConstants.SOURCE_AIP_CONTAINER, CorporaConstants.SOURCE_AIP_ID),
+      RodaConstants.ADMIN);
+    model.createAIP(otherAipId, corporaService,
+      DefaultStoragePath.parse(CorporaConstants.SOURCE_AIP_CONTAINER, CorporaConstants.SOURCE_AIP_ID),
+      RodaConstants.ADMIN);
+    index.commitAIPs();
+
+    List<String> deleted = model.deleteAIPs(Arrays.asList(aipId, otherAipId, IdUtils.createUUID()));
+    assertEquals(Arrays.asList(aipId, otherAipId), deleted);
+    index.commitAIPs();
+
+    Filter aipFilter = new Filter(new OneOfManyFilterParameter(RodaConstants.INDEX_UUID, deleted));
+    assertEquals(0L, index.count(IndexedAIP.class, aipFilter).longValue());
+    Filter representationFilter = new Filter(
+      new OneOfManyFilterParameter(RodaConstants.REPRESENTATION_AIP_ID, deleted));
+    assertEquals(0L, index.count(IndexedRepresentation.class, representationFilter).longValue());
+    Filter fileFilter = new Filter(new OneOfManyFilterParameter(RodaConstants.FILE_AIP_ID, deleted));
+    assertEquals(0L, index.count(IndexedFile.class, fileFilter).longValue());
+  }
+
   @Test
   public void testListCollections() throws RODAException {
     // generate AIP ID
@@ -517,6 +546,68 @@ public class IndexServiceTest {
     MatcherAssert.assertThat(entries2.getTotalCount(), Matchers.is(number));
   }
 
+  @Test
+  public void testReindexActionLogsSkipsIndexedFiles() throws RODAException {
+    String component = "ACTION_LOG_REINDEX";
+    for (int i = 0; i < 5; i++) {
+      LogEntry entry = new LogEntry();
+      entry.setUUID(IdUtils.createUUID());
+      entry.setActionComponent(component);
+      entry.setDatetime(new Date());
+      model.addLogEntry(entry, logPath, false);
+    }
+
+    List<String> reindexedFiles = Collections.synchronizedList(new ArrayList<>());
+    List<RODAException> failures = Collections.synchronizedList(new ArrayList<>());
+    ActionLogReindexer.Listener listener = new ActionLogReindexer.Listener() {
+      @Override
+      public void fileReindexed(String file, int entriesIndexed, int entriesFailed) {
+        reindexedFiles.add(file);
+      }
+
+      @Override
+      public void entriesFailed(int count, RODAException cause) {
+        failures.add(cause);
+      }
+    };
+
+    Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.LOG_ACTION_COMPONENT, component));
+    index.reindexActionLogs(0, false, listener);
+    assertTrue(failures.isEmpty());
+    assertTrue(!reindexedFiles.isEmpty());
+    assertEquals(5L, (long) index.count(LogEntry.class, filter));
+
+    // nothing changed, so every file is skipped
+    reindexedFiles.clear();
+    index.reindexActionLogs(0, false, listener);
+    assertTrue(reindexedFiles.isEmpty());
+
+    // only the file that grew is reindexed
+    LogEntry entry = new LogEntry();
+    entry.setUUID(IdUtils.createUUID());
+    entry.setActionComponent(component);
+    entry.setDatetime(new Date());
+    model.addLogEntry(entry, logPath, false);
+
+    index.reindexActionLogs(0, false, listener);
+    assertEquals(1, reindexedFiles.size());
+    assertEquals(6L, (long) index.count(LogEntry.class, filter));
+    assertTrue(failures.isEmpty());
+
+    // a forced reindex reads every file again
+    reindexedFiles.clear();
+    index.reindexActionLogs(0, true, listener);
+    assertTrue(!reindexedFiles.isEmpty());
+    assertEquals(6L, (long) index.count(LogEntry.class, filter));
+    assertTrue(failures.isEmpty());
+
+    // files moved to the storage were already indexed
+    reindexedFiles.clear();
+    model.findOldLogsAndMoveThemToStorage(logPath, null);
+    index.reindexActionLogs(0, false, listener);
+    assertTrue(reindexedFiles.isEmpty());
+  }
+
   @Test
   public void testReindexAIP() throws RequestNotValidException, GenericException, AuthorizationDeniedException,
     AlreadyExistsException, NotFoundException, ValidationException {
@@ -680,6 +771,106 @@ public class IndexServiceTest {
     }
   }
 
+  @Test
+  public void testRiskIncidencesInBulk() throws RODAException {
+    Risk risk = new Risk();
+    risk.setName("Bulk incidences risk");
+    risk.setIdentifiedOn(new Date());
+    risk.setIdentifiedBy("admin");
+    model.createRisk(risk, true);
+
+    List<RiskIncidence> incidences = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      RiskIncidence incidence = new RiskIncidence();
+      incidence.setRiskId(risk.getId());
+      incidence.setAipId(IdUtils.createUUID());
+      incidence.setObjectClass(AIP.class.getSimpleName());
+      incidence.setStatus(IncidenceStatus.UNMITIGATED);
+      incidence.setSeverity(SeverityLevel.MODERATE);
+      incidences.add(incidence);
+    }
+    assertEquals(25, model.createRiskIncidences(incidences, true).size());
+
+    Filter riskFilter = new Filter(new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_RISK_ID, risk.getId()));
+    assertEquals(25L, index.count(RiskIncidence.class, riskFilter).longValue());
+    IndexedRisk indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(25, indexedRisk.getIncidencesCount());
+    assertEquals(25, indexedRisk.getUnmitigatedIncidencesCount());
+
+    List<RiskIncidence> mitigated = incidences.subList(0, 10);
+    mitigated.forEach(incidence -> incidence.setStatus(IncidenceStatus.MITIGATED));
+    assertEquals(10, model.updateRiskIncidences(mitigated, true).size());
+
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(25, indexedRisk.getIncidencesCount());
+    assertEquals(15, indexedRisk.getUnmitigatedIncidencesCount());
+
+    // single incidences change the counters too
+    RiskIncidence single = incidences.get(10);
+    single.setStatus(IncidenceStatus.MITIGATED);
+    model.updateRiskIncidence(single, true);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(25, indexedRisk.getIncidencesCount());
+    assertEquals(14, indexedRisk.getUnmitigatedIncidencesCount());
+
+    RiskIncidence created = new RiskIncidence();
+    created.setRiskId(risk.getId());
+    created.setAipId(IdUtils.createUUID());
+    created.setObjectClass(AIP.class.getSimpleName());
+    created.setStatus(IncidenceStatus.UNMITIGATED);
+    model.createRiskIncidence(created, true);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(26, indexedRisk.getIncidencesCount());
+    assertEquals(15, indexedRisk.getUnmitigatedIncidencesCount());
+
+    model.deleteRiskIncidence(created.getId(), true);
+    model.deleteRiskIncidence(incidences.get(0).getId(), true);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(24, indexedRisk.getIncidencesCount());
+    assertEquals(14, indexedRisk.getUnmitigatedIncidencesCount());
+
+    // reindexing the risk counts the incidences already indexed, and
+    // reindexing those does not change the counters
+    index.reindex(model.retrieveRisk(risk.getId()));
+    index.commit(IndexedRisk.class);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(24, indexedRisk.getIncidencesCount());
+    assertEquals(14, indexedRisk.getUnmitigatedIncidencesCount());
+
+    for (RiskIncidence incidence : incidences.subList(1, incidences.size())) {
+      index.reindex(model.retrieveRiskIncidence(incidence.getId()));
+    }
+    index.commit(RiskIncidence.class, IndexedRisk.class);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(24, indexedRisk.getIncidencesCount());
+    assertEquals(14, indexedRisk.getUnmitigatedIncidencesCount());
+
+    // with no incidences indexed, reindexing them after the risk rebuilds the
+    // counters
+    index.delete(RiskIncidence.class, riskFilter);
+    index.commit(RiskIncidence.class);
+    index.reindex(model.retrieveRisk(risk.getId()));
+    index.commit(IndexedRisk.class);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(0, indexedRisk.getIncidencesCount());
+    assertEquals(0, indexedRisk.getUnmitigatedIncidencesCount());
+
+    for (RiskIncidence incidence : incidences.subList(1, incidences.size())) {
+      index.reindex(model.retrieveRiskIncidence(incidence.getId()));
+    }
+    index.commit(RiskIncidence.class, IndexedRisk.class);
+    indexedRisk = index.retrieve(IndexedRisk.class, risk.getId(), new ArrayList<>());
+    assertEquals(24, indexedRisk.getIncidencesCount());
+    assertEquals(14, indexedRisk.getUnmitigatedIncidencesCount());
+
+    // cleanup
+    for (RiskIncidence incidence : incidences.subList(1, incidences.size())) {
+      model.deleteRiskIncidence(incidence.getId(), false);
+    }
+    model.deleteRisk(risk.getId(), true);
+    index.commit(RiskIncidence.class);
+  }
+
   @Test
   public void testRepresentationInformationIndex() throws RODAException {
     RepresentationInformation ri = new RepresentationInformation();
@@ -0,0 +1,191 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.SolrInputDocument;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.ip.AIPState;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Permissions.PermissionType;
+import org.roda.core.data.v2.user.User;
+import org.roda.core.index.schema.SolrCollectionRegistry;
+import org.roda.core.index.utils.SolrUtils;
+import org.roda.core.storage.fs.FSUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Compares, on the embedded Solr, the previous permission and state filter (a
+ * single filter query per user) with the separate filter queries and with the
+ * permission tokens filter. Not part of the dev/travis groups as it only
+ * reports timings.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL})
+public class PermissionFilterQueriesBenchmarkTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermissionFilterQueriesBenchmarkTest.class);
+
+  private static final int DOCUMENTS = 20000;
+  private static final int GROUPS = 500;
+  private static final int GROUPS_PER_DOCUMENT = 3;
+  private static final int GROUPS_PER_USER = 40;
+  private static final int GROUP_SETS = 10;
+  private static final int USERS = 100;
+  private static final int QUERIES_PER_USER = 50;
+
+  private static Path basePath;
+  private static SolrClient solr;
+  private static String collection;
+  private static List<Set<String>> groupSets = new ArrayList<>();
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(PermissionFilterQueriesBenchmarkTest.class, true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+
+    solr = RodaCoreFactory.getSolr();
+    collection = SolrCollectionRegistry.getIndexName(IndexedAIP.class);
+
+    Random random = new Random(42);
+    List<SolrInputDocument> documents = new ArrayList<>();
+    for (int i = 0; i < DOCUMENTS; i++) {
+      Permissions permissions = new Permissions();
+      permissions.setUserPermissions("owner" + (i % USERS), Collections.singleton(PermissionType.READ));
+      for (int g = 0; g < GROUPS_PER_DOCUMENT; g++) {
+        permissions.setGroupPermissions("group" + random.nextInt(GROUPS), Collections.singleton(PermissionType.READ));
+      }
+
+      SolrInputDocument document = new SolrInputDocument();
+      document.addField(RodaConstants.INDEX_UUID, "aip" + i);
+      document.addField(RodaConstants.INDEX_ID, "aip" + i);
+      document.addField(RodaConstants.INDEX_STATE,
+        SolrUtils.formatEnum(i % 10 == 0 ? AIPState.DESTROYED : AIPState.ACTIVE));
+      SolrUtils.setPermissions(permissions, document);
+      documents.add(document);
+    }
+    solr.add(collection, documents);
+    solr.commit(collection);
+
+    for (int s = 0; s < GROUP_SETS; s++) {
+      Set<String> groups = new HashSet<>();
+      while (groups.size() < GROUPS_PER_USER) {
+        groups.add("group" + random.nextInt(GROUPS));
+      }
+      groupSets.add(groups);
+    }
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    SolrUtils.setFilterByPermissionTokens(false);
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  @Test
+  public void benchmarkPermissionFilterQueries() throws Exception {
+    User user = getUser("check", 0);
+    long expected = countWithSingleFilterQuery(user, null);
+    Assert.assertEquals((long) countWithSeparateFilterQueries(user, null), expected);
+    SolrUtils.setFilterByPermissionTokens(true);
+    Assert.assertEquals((long) countWithSeparateFilterQueries(user, null), expected);
+    SolrUtils.setFilterByPermissionTokens(false);
+
+    // each approach gets its own users, so that none benefits from the filter
+    // cache entries of the previous one
+    run("single filter query", "single", false);
+    run("separate filter queries", "separate", false);
+    run("permission tokens", "tokens", true);
+  }
+
+  private void run(String name, String usersPrefix, boolean tokens) throws Exception {
+    SolrUtils.setFilterByPermissionTokens(tokens);
+    try {
+      long start = System.nanoTime();
+      for (int q = 0; q < QUERIES_PER_USER; q++) {
+        for (int u = 0; u < USERS; u++) {
+          User user = getUser(usersPrefix, u);
+          // a different main query each time, so that only filters are cached
+          String id = "aip" + ((q * USERS + u) % DOCUMENTS);
+          if (usersPrefix.equals("single")) {
+            countWithSingleFilterQuery(user, id);
+          } else {
+            countWithSeparateFilterQueries(user, id);
+          }
+        }
+      }
+      long nanos = System.nanoTime() - start;
+
+      LOGGER.info("{}: {} us/query", name, nanos / (QUERIES_PER_USER * USERS) / 1000.0);
+    } finally {
+      SolrUtils.setFilterByPermissionTokens(false);
+    }
+  }
+
+  private static User getUser(String prefix, int index) {
+    User user = new User(prefix + index, prefix + index, false);
+    user.setGroups(new HashSet<>(groupSets.get(index % GROUP_SETS)));
+    return user;
+  }
+
+  private static Long countWithSeparateFilterQueries(User user, String id) throws Exception {
+    Filter filter = id == null ? Filter.ALL : new Filter(new SimpleFilterParameter(RodaConstants.INDEX_ID, id));
+    return SolrUtils.count(solr, IndexedAIP.class, filter, user, true);
+  }
+
+  /**
+   * The filter query as built before, i.e. permissions and state together.
+   */
+  private static long countWithSingleFilterQuery(User user, String id) throws Exception {
+    StringBuilder fq = new StringBuilder();
+    fq.append("((").append(RodaConstants.INDEX_PERMISSION_USERS_PREFIX).append(PermissionType.READ).append(": \"")
+      .append(user.getId()).append("\") OR (");
+    boolean first = true;
+    for (String group : user.getGroups()) {
+      if (!first) {
+        fq.append(" OR ");
+      }
+      first = false;
+      fq.append("(").append(RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX).append(PermissionType.READ).append(": \"")
+        .append(group).append("\")");
+    }
+    fq.append(")) AND (").append(RodaConstants.INDEX_STATE).append(": \"")
+      .append(SolrUtils.formatEnum(AIPState.ACTIVE)).append("\")");
+
+    SolrQuery query = new SolrQuery(id == null ? "*:*" : RodaConstants.INDEX_ID + ":\"" + id + "\"");
+    query.addFilterQuery(fq.toString());
+    query.setRows(0);
+    return solr.query(collection, query).getResults().getNumFound();
+  }
+}
@@ -10,6 +10,8 @@ package org.roda.core.index;
 import static org.testng.AssertJUnit.assertEquals;
 
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -120,4 +122,60 @@ public class PermissionsRecursiveTest {
       .getUserPermissions(user.getName());
     assertEquals(permissions.contains(PermissionType.READ), true);
   }
+
+  @Test
+  public void testPropagateAIPPermissions() throws RODAException, InterruptedException {
+    AIP parent = model.createAIP(null, "", new Permissions(), RodaConstants.ADMIN);
+    AIP child = model.createAIP(parent.getId(), "", new Permissions(), RodaConstants.ADMIN);
+    AIP grandChild = model.createAIP(child.getId(), "", new Permissions(), RodaConstants.ADMIN);
+    index.commitAIPs();
+
+    Permissions permissions = new Permissions();
+    permissions.setGroupPermissions("propagated", Collections.singleton(PermissionType.READ));
+    assertEquals(2, index.propagateAIPPermissions(parent.getId(), permissions, RodaConstants.ADMIN));
+
+    // the index has the permissions right away
+    IndexedAIP indexed = index.retrieve(IndexedAIP.class, grandChild.getId(), Collections.emptyList());
+    assertEquals(permissions.getGroupPermissions("propagated"),
+      indexed.getPermissions().getGroupPermissions("propagated"));
+
+    // and the metadata files once nothing is pending
+    long deadline = System.currentTimeMillis() + 30000;
+    while (index.hasAIPPermissionsPending(parent.getId()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(200);
+      index.commitAIPs();
+    }
+    assertEquals(false, index.hasAIPPermissionsPending(parent.getId()));
+    for (String id : Arrays.asList(child.getId(), grandChild.getId())) {
+      assertEquals(permissions.getGroupPermissions("propagated"),
+        model.retrieveAIP(id).getPermissions().getGroupPermissions("propagated"));
+    }
+  }
+
+  @Test
+  public void testResumeAIPPermissionsPropagation() throws RODAException, InterruptedException {
+    AIP parent = model.createAIP(null, "", new Permissions(), RodaConstants.ADMIN);
+    AIP child = model.createAIP(parent.getId(), "", new Permissions(), RodaConstants.ADMIN);
+    AIP grandChild = model.createAIP(child.getId(), "", new Permissions(), RodaConstants.ADMIN);
+    index.commitAIPs();
+
+    // writes interrupted by a shutdown, as if the node stopped right away
+    Permissions permissions = new Permissions();
+    permissions.setGroupPermissions("resumed", Collections.singleton(PermissionType.READ));
+    index.propagateAIPPermissions(parent.getId(), permissions, RodaConstants.ADMIN);
+    index.shutdownAIPPermissionsPropagation(0);
+
+    // the AIPs left pending are written when resumed
+    index.resumeAIPPermissionsPropagation();
+    long deadline = System.currentTimeMillis() + 30000;
+    while (index.hasAIPPermissionsPending(parent.getId()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(200);
+      index.commitAIPs();
+    }
+    assertEquals(false, index.hasAIPPermissionsPending(parent.getId()));
+    for (String id : Arrays.asList(child.getId(), grandChild.getId())) {
+      assertEquals(permissions.getGroupPermissions("resumed"),
+        model.retrieveAIP(id).getPermissions().getGroupPermissions("resumed"));
+    }
+  }
 }
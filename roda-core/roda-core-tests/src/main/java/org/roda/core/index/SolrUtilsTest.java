@@ -48,6 +48,8 @@ import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
 import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.index.sort.SortParameter;
 import org.roda.core.data.v2.index.sort.Sorter;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.user.User;
 import org.roda.core.index.utils.SolrUtils;
 import org.roda.core.storage.Binary;
 import org.roda.core.storage.DefaultStoragePath;
@@ -295,6 +297,42 @@ public class SolrUtilsTest {
     assertThat(sortList.get(1).getOrder(), Matchers.equalTo(ORDER.asc));
   }
 
+  @Test
+  public void testGetFilterQueries() {
+    User user1 = new User("user1", "user1", false);
+    user1.addGroup("researchers");
+    user1.addGroup("archivists");
+    User user2 = new User("user2", "user2", false);
+    user2.addGroup("archivists");
+    user2.addGroup("researchers");
+
+    List<String> filterQueries1 = SolrUtils.getFilterQueries(user1, true, IndexedAIP.class);
+    List<String> filterQueries2 = SolrUtils.getFilterQueries(user2, true, IndexedAIP.class);
+    assertThat(filterQueries1, Matchers.hasSize(2));
+    assertThat(filterQueries2, Matchers.hasSize(2));
+
+    // the state filter query is the same for everyone
+    assertEquals(filterQueries1.get(1), filterQueries2.get(1));
+    assertThat(filterQueries1.get(1), Matchers.containsString(RodaConstants.INDEX_STATE));
+
+    // and so is the groups clause for users with the same groups
+    String groupsClause = "filter(((" + RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX + "READ: \"archivists\") OR ("
+      + RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX + "READ: \"researchers\")))";
+    assertThat(filterQueries1.get(0), Matchers.endsWith(groupsClause));
+    assertThat(filterQueries2.get(0), Matchers.endsWith(groupsClause));
+
+    assertThat(SolrUtils.getFilterQueries(user1, false, IndexedAIP.class), Matchers.hasSize(1));
+    assertThat(SolrUtils.getFilterQueries(null, false, IndexedAIP.class), Matchers.empty());
+
+    SolrUtils.setFilterByPermissionTokens(true);
+    try {
+      assertEquals("{!terms f=" + RodaConstants.INDEX_PERMISSION_TOKENS_PREFIX + "READ separator=\",\"}"
+        + "g:archivists,g:researchers,u:user1", SolrUtils.getFilterQueries(user1, false, IndexedAIP.class).get(0));
+    } finally {
+      SolrUtils.setFilterByPermissionTokens(false);
+    }
+  }
+
   @Test
   public void testDateParser() throws ParseException {
     String test1 = "2018-06-22T00:00:00Z";
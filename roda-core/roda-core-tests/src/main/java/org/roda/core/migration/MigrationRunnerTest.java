@@ -0,0 +1,178 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.migration;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.TestsHelper;
+import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.common.iterables.CloseableIterables;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.storage.StorageService;
+import org.roda.core.storage.fs.FSUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class MigrationRunnerTest {
+  private static final int PARTITIONS = 200;
+
+  private static Path basePath;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(MigrationRunnerTest.class, true);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    FSUtils.deletePath(basePath);
+  }
+
+  private static class TestMigrationAction implements PartitionedMigrationAction<AIP> {
+    private final List<String> partitions = new ArrayList<>();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger migrations = new AtomicInteger();
+
+    public TestMigrationAction() {
+      for (int i = 0; i < PARTITIONS; i++) {
+        partitions.add("aip-" + i);
+      }
+    }
+
+    @Override
+    public CloseableIterable<String> listPartitions(StorageService storage) {
+      return CloseableIterables.fromList(partitions);
+    }
+
+    @Override
+    public void migrate(StorageService storage, String partition) throws RODAException {
+      if (failing.contains(partition)) {
+        throw new GenericException("Could not migrate " + partition);
+      }
+      migrations.incrementAndGet();
+    }
+
+    @Override
+    public boolean partitionExists(StorageService storage, String partition) {
+      return !deleted.contains(partition);
+    }
+
+    @Override
+    public boolean isToVersionValid(int toVersion) {
+      return toVersion == 2;
+    }
+  }
+
+  @Test
+  public void testRunIsResumedFromLedger() throws Exception {
+    Path ledgerFile = basePath.resolve("resume.ledger");
+    TestMigrationAction action = new TestMigrationAction();
+    action.failing.add("aip-10");
+    action.failing.add("aip-150");
+
+    try (MigrationRunner runner = new MigrationRunner("test", action, null, ledgerFile)) {
+      Assert.assertFalse(runner.run(4, 60000));
+      Assert.assertEquals(runner.getTotal(), PARTITIONS);
+      Assert.assertEquals(runner.getDone(), PARTITIONS - 2);
+      Assert.assertEquals(runner.getFailed(), 2);
+      Assert.assertEquals(action.migrations.get(), PARTITIONS - 2);
+    }
+
+    // a new run only migrates what is missing
+    action.failing.clear();
+    try (MigrationRunner runner = new MigrationRunner("test", action, null, ledgerFile)) {
+      Assert.assertEquals(runner.getDone(), PARTITIONS - 2);
+      Assert.assertTrue(runner.run(4, 60000));
+      Assert.assertEquals(runner.getDone(), PARTITIONS);
+      Assert.assertEquals(action.migrations.get(), PARTITIONS);
+    }
+  }
+
+  @Test
+  public void testPartitionIsMigratedOnce() throws Exception {
+    TestMigrationAction action = new TestMigrationAction();
+    try (MigrationRunner runner = new MigrationRunner("test", action, null, basePath.resolve("once.ledger"))) {
+      // e.g. an AIP read before the migration reaches it
+      Assert.assertTrue(runner.migratePartition("aip-5"));
+      Assert.assertTrue(runner.migratePartition("aip-5"));
+      Assert.assertEquals(action.migrations.get(), 1);
+
+      Assert.assertTrue(runner.run(4, 60000));
+      Assert.assertEquals(action.migrations.get(), PARTITIONS);
+      Assert.assertTrue(runner.isFinished());
+    }
+  }
+
+  @Test
+  public void testPartitionsCreatedAfterStartAreNotMigrated() throws Exception {
+    TestMigrationAction action = new TestMigrationAction();
+    try (MigrationRunner runner = new MigrationRunner("test", action, null, basePath.resolve("snapshot.ledger"))) {
+      Assert.assertTrue(runner.migratePartition("aip-5"));
+
+      // e.g. an AIP created, already in the new version, after the migration
+      // started
+      action.partitions.add("aip-new");
+      Assert.assertTrue(runner.migratePartition("aip-new"));
+      Assert.assertEquals(action.migrations.get(), 1);
+
+      Assert.assertTrue(runner.run(4, 60000));
+      Assert.assertEquals(runner.getTotal(), PARTITIONS);
+      Assert.assertEquals(action.migrations.get(), PARTITIONS);
+    }
+  }
+
+  @Test
+  public void testDeletedPartitionsDoNotBlockTheMigration() throws Exception {
+    TestMigrationAction action = new TestMigrationAction();
+    try (MigrationRunner runner = new MigrationRunner("test", action, null, basePath.resolve("deleted.ledger"))) {
+      runner.getPartitions();
+
+      // an AIP deleted after the migration started fails to be migrated
+      action.failing.add("aip-20");
+      action.deleted.add("aip-20");
+
+      Assert.assertTrue(runner.run(4, 60000));
+      Assert.assertEquals(runner.getFailed(), 0);
+      Assert.assertEquals(action.migrations.get(), PARTITIONS - 1);
+    }
+  }
+
+  @Test
+  public void testLedgerIgnoresUnterminatedLine() throws Exception {
+    Path ledgerFile = basePath.resolve("partial.ledger");
+    Files.write(ledgerFile, "aip-1\naip-2\naip-".getBytes(StandardCharsets.UTF_8));
+
+    try (MigrationLedger ledger = new MigrationLedger(ledgerFile)) {
+      Assert.assertEquals(ledger.size(), 2);
+      Assert.assertTrue(ledger.isDone("aip-2"));
+      Assert.assertFalse(ledger.isDone("aip-"));
+      ledger.markDone("aip-3");
+    }
+
+    try (MigrationLedger ledger = new MigrationLedger(ledgerFile)) {
+      Assert.assertEquals(ledger.size(), 3);
+      Assert.assertTrue(ledger.isDone("aip-3"));
+      Assert.assertFalse(ledger.isDone("aip-"));
+      Assert.assertFalse(ledger.isDone("aip-aip-3"));
+    }
+  }
+}
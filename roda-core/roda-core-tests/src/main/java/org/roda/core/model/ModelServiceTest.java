@@ -46,6 +46,7 @@ import org.roda.core.common.iterables.CloseableIterable;
 import org.roda.core.common.iterables.CloseableIterables;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.AlreadyExistsException;
+import org.roda.core.data.exceptions.AuthenticationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RODAException;
@@ -1063,6 +1064,33 @@ public class ModelServiceTest {
 
   }
 
+  @Test
+  public void testPasswordChangeRejectsOldCredentials() throws RODAException {
+    User user = new User("user_password");
+    user.setActive(true);
+    user.setEmail("userpassword@example.com");
+    user.setGuest(false);
+    user.setFullName("userpassword");
+    model.createUser(user, "old-password", true);
+
+    // credentials are cached once verified
+    assertNotNull(model.retrieveAuthenticatedUser(user.getName(), "old-password"));
+    assertNotNull(model.retrieveAuthenticatedUser(user.getName(), "old-password"));
+
+    model.updateUser(model.retrieveUser(user.getName()), "new-password", true);
+
+    try {
+      model.retrieveAuthenticatedUser(user.getName(), "old-password");
+      fail("The old password should be rejected right after being changed");
+    } catch (AuthenticationDeniedException e) {
+      // expected
+    }
+    assertNotNull(model.retrieveAuthenticatedUser(user.getName(), "new-password"));
+
+    // cleanup
+    model.deleteUser(user.getId(), true);
+  }
+
   @Test
   public void testListing() throws RODAException, IOException {
     populate(RodaCoreFactory.getTransferredResourcesScanner().getBasePath());
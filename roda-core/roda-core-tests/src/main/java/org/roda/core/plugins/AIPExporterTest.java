@@ -0,0 +1,149 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.roda.core.CorporaConstants;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AlreadyExistsException;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.plugins.plugins.base.AIPExporter;
+import org.roda.core.storage.DefaultStoragePath;
+import org.roda.core.storage.DirectResourceAccess;
+import org.roda.core.storage.StorageService;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.storage.fs.FileStorageService;
+import org.roda.core.util.FileUtility;
+import org.roda.core.util.IdUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class AIPExporterTest {
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final String JPEG_ENTRY = "representations/" + CorporaConstants.REPRESENTATION_1_ID + "/data/"
+    + CorporaConstants.REPRESENTATION_1_FILE_2_ID;
+
+  private static Path basePath;
+  private static ModelService model;
+  private static IndexService index;
+  private static StorageService corporaService;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(AIPExporterTest.class, true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = false;
+    boolean deployFolderMonitor = false;
+    boolean deployOrchestrator = false;
+    boolean deployPluginManager = false;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+    model = RodaCoreFactory.getModelService();
+    index = RodaCoreFactory.getIndexService();
+
+    URL corporaURL = AIPExporterTest.class.getResource("/corpora");
+    corporaService = new FileStorageService(Paths.get(corporaURL.toURI()));
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  private static String createAIP() throws Exception {
+    String aipId = IdUtils.createUUID();
+    model.createAIP(aipId, corporaService,
+      DefaultStoragePath.parse(CorporaConstants.SOURCE_AIP_CONTAINER, CorporaConstants.SOURCE_AIP_ID),
+      RodaConstants.ADMIN);
+    index.commitAIPs();
+    return aipId;
+  }
+
+  private static String checksum(InputStream inputStream) throws Exception {
+    try (InputStream stream = inputStream) {
+      return FileUtility.checksum(stream, DIGEST_ALGORITHM);
+    }
+  }
+
+  @Test
+  public void testExportToZip() throws Exception {
+    String aipId = createAIP();
+    Path output = Files.createDirectories(basePath.resolve("zip"));
+    new AIPExporter(model.getStorage(), index, output, false, true).exportToZip(aipId);
+
+    List<String> manifest = Files.readAllLines(output.resolve(aipId + AIPExporter.MANIFEST_EXTENSION));
+    try (ZipFile zip = new ZipFile(output.resolve(aipId + AIPExporter.ZIP_EXTENSION).toFile())) {
+      int files = 0;
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        if (!entry.isDirectory()) {
+          files++;
+          Assert.assertTrue(manifest.contains(checksum(zip.getInputStream(entry)) + "  " + entry.getName()),
+            entry.getName() + " is not in the manifest");
+        }
+      }
+      Assert.assertEquals(manifest.size(), files);
+
+      // already compressed formats are not compressed again
+      ZipEntry jpeg = zip.getEntry(JPEG_ENTRY);
+      Assert.assertTrue(jpeg.getCompressedSize() >= jpeg.getSize());
+      ZipEntry metadata = zip.getEntry(RodaConstants.STORAGE_AIP_METADATA_FILENAME);
+      Assert.assertTrue(metadata.getCompressedSize() < metadata.getSize());
+    }
+  }
+
+  @Test
+  public void testExportToFolderLinksFiles() throws Exception {
+    String aipId = createAIP();
+    Path output = Files.createDirectories(basePath.resolve("folder"));
+    new AIPExporter(model.getStorage(), index, output, false, true).exportToFolder(aipId);
+
+    Path exported = output.resolve(aipId).resolve(JPEG_ENTRY);
+    try (DirectResourceAccess directAccess = model.getStorage()
+      .getDirectAccess(ModelUtils.getAIPStoragePath(aipId))) {
+      Assert.assertTrue(Files.isSameFile(exported, directAccess.getPath().resolve(JPEG_ENTRY)));
+    }
+
+    List<String> manifest = Files.readAllLines(output.resolve(aipId + AIPExporter.MANIFEST_EXTENSION));
+    Assert.assertTrue(
+      manifest.contains(checksum(Files.newInputStream(exported)) + "  " + aipId + "/" + JPEG_ENTRY));
+
+    try {
+      new AIPExporter(model.getStorage(), index, output, false, true).exportToFolder(aipId);
+      Assert.fail("Exporting over an existing folder should fail");
+    } catch (AlreadyExistsException e) {
+      // expected
+    }
+
+    // copied when not linking
+    new AIPExporter(model.getStorage(), index, output, true, false).exportToFolder(aipId);
+    try (DirectResourceAccess directAccess = model.getStorage()
+      .getDirectAccess(ModelUtils.getAIPStoragePath(aipId))) {
+      Assert.assertFalse(Files.isSameFile(exported, directAccess.getPath().resolve(JPEG_ENTRY)));
+    }
+    Assert.assertEquals(Files.readAllLines(output.resolve(aipId + AIPExporter.MANIFEST_EXTENSION)), manifest);
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.plugins.plugins.common.ConversionExecutionService;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.CommandException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class ConversionExecutionServiceTest {
+  private static Path basePath;
+  private static ConversionExecutionService service;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    basePath = TestsHelper.createBaseTempDir(ConversionExecutionServiceTest.class, false);
+    service = new ConversionExecutionService(2, basePath, 1000, 16, 10);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    service.shutdown();
+    FSUtils.deletePathQuietly(basePath);
+  }
+
+  @Test
+  public void testWorkingDirectoriesAreReusedAndCleaned() throws InterruptedException, ExecutionException {
+    List<Future<Path>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(service.submit(workingDirectory -> {
+        try (Stream<Path> files = Files.list(workingDirectory)) {
+          Assert.assertEquals(files.count(), 0L);
+        }
+        Files.createFile(workingDirectory.resolve("scratch"));
+        return workingDirectory;
+      }));
+    }
+
+    Set<Path> directories = new HashSet<>();
+    for (Future<Path> future : futures) {
+      directories.add(future.get());
+    }
+
+    Assert.assertTrue(directories.size() <= service.getPoolSize());
+  }
+
+  @Test
+  public void testCommandsRunInTheWorkingDirectoryOfTheTask() throws InterruptedException, ExecutionException {
+    Future<Boolean> future = service.submit(workingDirectory -> {
+      Assert.assertEquals(service.getCurrentWorkingDirectory(), workingDirectory);
+      service.executeCommand(Arrays.asList("touch", "created-by-command"));
+      return Files.exists(workingDirectory.resolve("created-by-command"));
+    });
+
+    Assert.assertTrue(future.get());
+    Assert.assertNull(service.getCurrentWorkingDirectory());
+  }
+
+  @Test(expectedExceptions = CommandException.class)
+  public void testProcessTimeout() throws CommandException {
+    service.executeCommand(Arrays.asList("sleep", "5"));
+  }
+
+  @Test(expectedExceptions = CommandException.class)
+  public void testProcessOutputLimit() throws CommandException {
+    service.executeCommand(Arrays.asList("echo", "this output is longer than sixteen bytes"));
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.index.select.SelectedItemsList;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.IndexedRepresentation;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.PluginState;
+import org.roda.core.data.v2.jobs.PluginType;
+import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.plugins.plugins.internal.DeleteRODAObjectPlugin;
+import org.roda.core.storage.StringContentPayload;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.storage.fs.FileStorageService;
+import org.roda.core.util.IdUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class DeleteRODAObjectPluginTest {
+  private static Path basePath;
+
+  private static ModelService model;
+  private static IndexService index;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(getClass(), true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = true;
+    boolean deployFolderMonitor = true;
+    boolean deployOrchestrator = true;
+    boolean deployPluginManager = true;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+    model = RodaCoreFactory.getModelService();
+    index = RodaCoreFactory.getIndexService();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  /**
+   * Creates an AIP with two children, one of them with a child of its own and a
+   * file.
+   *
+   * @return the ids of the descendants
+   */
+  private static List<String> createTree(AIP root) throws RODAException {
+    List<String> descendants = new ArrayList<>();
+    AIP child = model.createAIP(root.getId(), "", new Permissions(), RodaConstants.ADMIN);
+    descendants.add(child.getId());
+    descendants.add(model.createAIP(root.getId(), "", new Permissions(), RodaConstants.ADMIN).getId());
+    descendants.add(model.createAIP(child.getId(), "", new Permissions(), RodaConstants.ADMIN).getId());
+
+    Representation representation = model.createRepresentation(child.getId(), IdUtils.createUUID(), true, "", true,
+      RodaConstants.ADMIN);
+    model.createFile(child.getId(), representation.getId(), Collections.emptyList(), "file.txt",
+      new StringContentPayload("content"), true);
+
+    index.commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class);
+    return descendants;
+  }
+
+  private static long countDescendants(String aipId) throws RODAException {
+    return index.count(IndexedAIP.class, new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aipId)));
+  }
+
+  private static boolean existsInStorage(String aipId) throws RODAException {
+    try {
+      model.retrieveAIP(aipId);
+      return true;
+    } catch (NotFoundException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testDeleteAIPWithDescendants() throws RODAException {
+    AIP root = model.createAIP(null, "", new Permissions(), RodaConstants.ADMIN);
+    List<String> descendants = createTree(root);
+    Assert.assertEquals(countDescendants(root.getId()), descendants.size());
+
+    Job job = TestsHelper.executeJob(DeleteRODAObjectPlugin.class, PluginType.AIP_TO_AIP,
+      SelectedItemsList.create(AIP.class, root.getId()));
+    TestsHelper.getJobReports(index, job, true);
+    index.commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class);
+
+    Assert.assertFalse(existsInStorage(root.getId()));
+    for (String descendant : descendants) {
+      Assert.assertFalse(existsInStorage(descendant), descendant);
+    }
+    Assert.assertEquals(countDescendants(root.getId()), 0L);
+    Assert.assertEquals(index.count(IndexedRepresentation.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.REPRESENTATION_ANCESTORS, root.getId()))).longValue(), 0L);
+    Assert.assertEquals(index.count(IndexedFile.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.FILE_ANCESTORS, root.getId()))).longValue(), 0L);
+  }
+
+  @Test
+  public void testDescendantsThatCouldNotBeDeletedAreIndexedAgain() throws Exception {
+    AIP root = model.createAIP(null, "", new Permissions(), RodaConstants.ADMIN);
+    List<String> descendants = createTree(root);
+
+    // a file in place of the trash folder makes every deletion fail
+    Path trashPath = ((FileStorageService) RodaCoreFactory.getStorageService()).getTrashPath();
+    Path movedTrashPath = basePath.resolve("moved-trash");
+    Files.createDirectories(trashPath);
+    Files.move(trashPath, movedTrashPath);
+    Files.createFile(trashPath);
+    Job job;
+    try {
+      job = TestsHelper.executeJob(DeleteRODAObjectPlugin.class, PluginType.AIP_TO_AIP,
+        SelectedItemsList.create(AIP.class, root.getId()));
+    } finally {
+      Files.delete(trashPath);
+      Files.move(movedTrashPath, trashPath);
+    }
+
+    List<Report> reports = TestsHelper.getJobReports(index, job, false);
+    Assert.assertEquals(reports.get(0).getPluginState(), PluginState.FAILURE);
+    index.commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class);
+
+    Assert.assertTrue(existsInStorage(root.getId()));
+    for (String descendant : descendants) {
+      Assert.assertTrue(existsInStorage(descendant), descendant);
+    }
+    Assert.assertEquals(countDescendants(root.getId()), descendants.size());
+    Assert.assertEquals(index.count(IndexedFile.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.FILE_ANCESTORS, root.getId()))).longValue(), 1L);
+  }
+}
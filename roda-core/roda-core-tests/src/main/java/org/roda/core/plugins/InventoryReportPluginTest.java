@@ -0,0 +1,134 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.index.select.SelectedItemsList;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.IndexedRepresentation;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.PluginType;
+import org.roda.core.index.IndexService;
+import org.roda.core.model.ModelService;
+import org.roda.core.plugins.plugins.base.InventoryReportPlugin;
+import org.roda.core.plugins.plugins.base.InventoryReportWriter;
+import org.roda.core.storage.StringContentPayload;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.IdUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class InventoryReportPluginTest {
+  private static final List<String> FIELDS = Collections.singletonList(InventoryReportPlugin.CSV_FIELD_AIP_ID);
+
+  private static Path basePath;
+
+  private static ModelService model;
+  private static IndexService index;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(getClass(), true);
+
+    boolean deploySolr = true;
+    boolean deployLdap = true;
+    boolean deployFolderMonitor = true;
+    boolean deployOrchestrator = true;
+    boolean deployPluginManager = true;
+    boolean deployDefaultResources = false;
+    RodaCoreFactory.instantiateTest(deploySolr, deployLdap, deployFolderMonitor, deployOrchestrator,
+      deployPluginManager, deployDefaultResources);
+    model = RodaCoreFactory.getModelService();
+    index = RodaCoreFactory.getIndexService();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    RodaCoreFactory.shutdown();
+    FSUtils.deletePath(basePath);
+  }
+
+  private static AIP createAIPWithFile() throws RODAException {
+    AIP aip = model.createAIP(null, "", new Permissions(), RodaConstants.ADMIN);
+    Representation representation = model.createRepresentation(aip.getId(), IdUtils.createUUID(), true, "", true,
+      RodaConstants.ADMIN);
+    model.createFile(aip.getId(), representation.getId(), Collections.emptyList(), "file.txt",
+      new StringContentPayload("content"), true);
+    index.commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class);
+    return aip;
+  }
+
+  private static Map<String, String> getParameters(Path output) {
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put(InventoryReportPlugin.CSV_FILE_FIELDS, String.join(",", FIELDS));
+    parameters.put(InventoryReportPlugin.CSV_FILE_OUTPUT, output.toString());
+    parameters.put(InventoryReportPlugin.CSV_FILE_HEADERS, "false");
+    parameters.put(InventoryReportPlugin.CSV_FILE_OUTPUT_DATA, "true");
+    parameters.put(InventoryReportPlugin.CSV_FILE_OUTPUT_DESCRIPTIVE, "false");
+    parameters.put(InventoryReportPlugin.CSV_FILE_OTHER_METADATA_TYPES, "");
+    parameters.put(InventoryReportPlugin.CSV_FILE_COMPRESS, "false");
+    return parameters;
+  }
+
+  @Test
+  public void testInterruptedReportIsResumedByAnotherJob() throws Exception {
+    AIP aip1 = createAIPWithFile();
+    AIP aip2 = createAIPWithFile();
+    Path output = basePath.resolve("inventory.csv");
+
+    // a job that wrote the first AIP and was interrupted before its end, so its
+    // report was never completed (the row is marked to tell it from a new one)
+    String interruptedRow = InventoryReportWriter
+      .toCSV(Collections.singletonList(Arrays.asList(aip1.getId(), "interrupted")));
+    InventoryReportWriter writer = new InventoryReportWriter(output,
+      InventoryReportPlugin.getReportId(output, FIELDS, true, false, null), false, null, 1);
+    writer.write(aip1.getId(), interruptedRow);
+    writer.close();
+
+    Job job = TestsHelper.executeJob(InventoryReportPlugin.class, getParameters(output), PluginType.MISC,
+      SelectedItemsList.create(AIP.class, aip1.getId(), aip2.getId()));
+    TestsHelper.getJobReports(index, job, true);
+
+    String expected = interruptedRow
+      + InventoryReportWriter.toCSV(Collections.singletonList(Collections.singletonList(aip2.getId())));
+    Assert.assertEquals(new String(Files.readAllBytes(output), StandardCharsets.UTF_8), expected);
+    Assert.assertFalse(
+      Files.exists(output.resolveSibling(output.getFileName() + InventoryReportWriter.CHECKPOINT_SUFFIX)));
+
+    // a report interrupted with other options starts from the beginning
+    writer = new InventoryReportWriter(output, InventoryReportPlugin.getReportId(output, FIELDS, false, false, null),
+      false, null, 1);
+    writer.write(aip1.getId(), interruptedRow);
+    writer.close();
+
+    job = TestsHelper.executeJob(InventoryReportPlugin.class, getParameters(output), PluginType.MISC,
+      SelectedItemsList.create(AIP.class, aip1.getId()));
+    TestsHelper.getJobReports(index, job, true);
+    Assert.assertEquals(new String(Files.readAllBytes(output), StandardCharsets.UTF_8),
+      InventoryReportWriter.toCSV(Collections.singletonList(Collections.singletonList(aip1.getId()))));
+  }
+}
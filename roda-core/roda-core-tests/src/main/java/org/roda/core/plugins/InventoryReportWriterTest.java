@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.roda.core.TestsHelper;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.plugins.plugins.base.InventoryReportWriter;
+import org.roda.core.storage.fs.FSUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class InventoryReportWriterTest {
+  private static final List<String> HEADERS = Arrays.asList("aipId", "fileId");
+
+  private static Path basePath;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    basePath = TestsHelper.createBaseTempDir(InventoryReportWriterTest.class, true);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    FSUtils.deletePath(basePath);
+  }
+
+  private static String row(String aipId) throws IOException {
+    return InventoryReportWriter.toCSV(Collections.singletonList(Arrays.asList(aipId, "file")));
+  }
+
+  private static String read(Path output, boolean compressed) throws IOException {
+    try (InputStream inputStream = compressed ? new GZIPInputStream(Files.newInputStream(output))
+      : Files.newInputStream(output)) {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    }
+  }
+
+  private void testReportIsResumed(String name, boolean compress) throws Exception {
+    Path output = basePath.resolve(name);
+
+    InventoryReportWriter writer = new InventoryReportWriter(output, "report-1", compress, HEADERS, 2);
+    writer.write("aip-1", row("aip-1"));
+    writer.write("aip-2", row("aip-2"));
+    writer.write("aip-3", row("aip-3"));
+    // simulates an interruption after aip-3 was written but not checkpointed
+    writer.close();
+    Path checkpoint = output.resolveSibling(name + InventoryReportWriter.CHECKPOINT_SUFFIX);
+    List<String> lines = Files.readAllLines(checkpoint);
+    Files.write(checkpoint, lines.subList(0, lines.size() - 2), StandardCharsets.UTF_8,
+      StandardOpenOption.TRUNCATE_EXISTING);
+    Files.write(checkpoint, "aip aip-".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    writer = new InventoryReportWriter(output, "report-1", compress, HEADERS, 2);
+    Assert.assertTrue(writer.isResumed());
+    Assert.assertEquals(writer.size(), 2);
+    Assert.assertTrue(writer.isWritten("aip-2"));
+    Assert.assertFalse(writer.isWritten("aip-3"));
+    writer.write("aip-3", row("aip-3"));
+    writer.write("aip-4", row("aip-4"));
+    writer.complete();
+
+    Assert.assertFalse(Files.exists(checkpoint));
+    Assert.assertEquals(read(output, compress),
+      InventoryReportWriter.toCSV(Collections.singletonList(HEADERS)) + row("aip-1") + row("aip-2") + row("aip-3")
+        + row("aip-4"));
+
+    // without checkpoints a new report starts from the beginning
+    writer = new InventoryReportWriter(output, "report-1", compress, null, 2);
+    Assert.assertFalse(writer.isResumed());
+    writer.write("aip-1", row("aip-1"));
+    writer.complete();
+    Assert.assertEquals(read(output, compress), row("aip-1"));
+  }
+
+  @Test
+  public void testOtherReportIsNotResumed() throws Exception {
+    Path output = basePath.resolve("other.csv");
+
+    InventoryReportWriter writer = new InventoryReportWriter(output, "report-1", false, HEADERS, 2);
+    writer.write("aip-1", row("aip-1"));
+    writer.write("aip-2", row("aip-2"));
+    writer.close();
+
+    // another report
+    writer = new InventoryReportWriter(output, "report-2", false, HEADERS, 2);
+    Assert.assertFalse(writer.isResumed());
+    writer.close();
+
+    // the same report with another compression or headers
+    writer = new InventoryReportWriter(output, "report-2", false, null, 2);
+    Assert.assertFalse(writer.isResumed());
+    writer.write("aip-1", row("aip-1"));
+    writer.close();
+    writer = new InventoryReportWriter(output, "report-2", true, null, 2);
+    Assert.assertFalse(writer.isResumed());
+    Assert.assertEquals(writer.size(), 0);
+    writer.complete();
+  }
+
+  @Test
+  public void testReportIsResumed() throws Exception {
+    testReportIsResumed("report.csv", false);
+  }
+
+  @Test
+  public void testCompressedReportIsResumed() throws Exception {
+    testReportIsResumed("report.csv.gz", true);
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class ParallelProcessingServiceTest {
+  private static ParallelProcessingService service;
+
+  @BeforeClass
+  public static void setUp() {
+    service = new ParallelProcessingService(4);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    service.shutdown();
+  }
+
+  private static List<Integer> createItems(int count) {
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      items.add(i);
+    }
+    return items;
+  }
+
+  @Test
+  public void testResultsAreHandledInOrderWithBoundedParallelism() {
+    List<Integer> items = createItems(50);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Integer> handled = new ArrayList<>();
+    Thread caller = Thread.currentThread();
+
+    service.process(items, 2, item -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        // later items finish first
+        Thread.sleep(50 - item);
+      } finally {
+        running.decrementAndGet();
+      }
+      return item * 2;
+    }, (item, result, error) -> {
+      Assert.assertNull(error);
+      Assert.assertEquals(result.intValue(), item * 2);
+      Assert.assertSame(Thread.currentThread(), caller);
+      handled.add(item);
+    });
+
+    Assert.assertEquals(handled, items);
+    Assert.assertTrue(maxRunning.get() <= 2, "at most 2 items at a time, but were " + maxRunning.get());
+  }
+
+  @Test
+  public void testErrorsAreHandledPerItem() {
+    for (int parallelism : new int[] {1, 4}) {
+      List<Integer> failed = new ArrayList<>();
+      List<Integer> succeeded = new ArrayList<>();
+
+      service.process(createItems(10), parallelism, item -> {
+        if (item % 3 == 0) {
+          throw new IllegalStateException("item " + item);
+        }
+        return item;
+      }, (item, result, error) -> {
+        if (error != null) {
+          Assert.assertEquals(error.getMessage(), "item " + item);
+          failed.add(item);
+        } else {
+          succeeded.add(result);
+        }
+      });
+
+      Assert.assertEquals(failed.toString(), "[0, 3, 6, 9]");
+      Assert.assertEquals(succeeded.toString(), "[1, 2, 4, 5, 7, 8]");
+    }
+  }
+
+  @Test
+  public void testSequentialProcessingRunsInTheCallingThread() {
+    Thread caller = Thread.currentThread();
+    AtomicInteger processed = new AtomicInteger();
+    service.process(createItems(5), 1, item -> {
+      Assert.assertSame(Thread.currentThread(), caller);
+      return processed.incrementAndGet();
+    }, (item, result, error) -> Assert.assertNull(error));
+    Assert.assertEquals(processed.get(), 5);
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.plugins.orchestrate.akka.distributed.AkkaDistributedPluginWorker;
+import org.roda.core.plugins.orchestrate.akka.distributed.Frontend;
+import org.roda.core.plugins.orchestrate.akka.distributed.Master;
+import org.roda.core.plugins.orchestrate.akka.distributed.Worker;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.cluster.client.ClusterClient;
+import akka.cluster.client.ClusterClientSettings;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import akka.cluster.singleton.ClusterSingletonManager;
+import akka.cluster.singleton.ClusterSingletonManagerSettings;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Runs a master and several worker nodes (each in its own actor system, as
+ * worker JVMs would) on localhost.
+ */
+@Test(groups = {RodaConstants.TEST_GROUP_ALL})
+public class DistributedWorkersTest {
+  private static final int NODES = 3;
+  private static final int SLOTS = 2;
+  private static final int WORK = 40;
+  private static final FiniteDuration WORK_TIMEOUT = Duration.create(3, TimeUnit.SECONDS);
+  private static final FiniteDuration REGISTER_INTERVAL = Duration.create(500, TimeUnit.MILLISECONDS);
+
+  public static class SquareExecutor extends UntypedActor {
+    @Override
+    public void onReceive(Object message) throws Exception {
+      if (message instanceof Master.Work) {
+        int n = (Integer) ((Master.Work) message).job;
+        Thread.sleep(500);
+        getSender().tell(new Worker.WorkComplete(n * n), getSelf());
+      } else {
+        unhandled(message);
+      }
+    }
+  }
+
+  public static class ResultsCollector extends UntypedActor {
+    private final Map<String, Object> results;
+    private final CountDownLatch latch;
+
+    public ResultsCollector(Map<String, Object> results, CountDownLatch latch) {
+      this.results = results;
+      this.latch = latch;
+      ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+      mediator.tell(new DistributedPubSubMediator.Subscribe(Master.RESULTS_TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public void onReceive(Object message) {
+      if (message instanceof Master.WorkResult) {
+        Master.WorkResult result = (Master.WorkResult) message;
+        if (results.putIfAbsent(result.workId, result.result) == null) {
+          latch.countDown();
+        }
+      }
+    }
+  }
+
+  private static int getFreePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void submit(ActorRef frontend, Master.Work work) throws Exception {
+    Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+    for (int attempt = 0; attempt < 30; attempt++) {
+      // not ok while the master is starting
+      if (Await.result(Patterns.ask(frontend, work, timeout), timeout.duration()) instanceof Frontend.Ok) {
+        return;
+      }
+      Thread.sleep(1000);
+    }
+    Assert.fail("Master did not accept " + work);
+  }
+
+  @Test
+  public void testWorkIsRedispatchedWhenAWorkerNodeIsLost() throws Exception {
+    String systemPath = "ClusterSystem@127.0.0.1:" + getFreePort();
+    Config masterConfig = ConfigFactory.parseString("akka.cluster.seed-nodes=[\"akka.tcp://" + systemPath + "\"]")
+      .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.port=" + systemPath.split(":")[1]))
+      .withFallback(ConfigFactory.parseString("akka.persistence.journal.plugin=akka.persistence.journal.inmem"))
+      .withFallback(ConfigFactory.parseResources("config/orchestrator/distributed.conf"));
+    Config workerConfig = ConfigFactory
+      .parseString("akka.cluster.client.initial-contacts=[\"akka.tcp://" + systemPath + "/system/receptionist\"]")
+      .withFallback(ConfigFactory.parseResources("config/orchestrator/worker.conf"));
+
+    ActorSystem clusterSystem = ActorSystem.create("ClusterSystem", masterConfig);
+    List<ActorSystem> workerSystems = new ArrayList<>();
+    try {
+      clusterSystem.actorOf(ClusterSingletonManager.props(Master.props(WORK_TIMEOUT, 3), PoisonPill.getInstance(),
+        ClusterSingletonManagerSettings.create(clusterSystem).withRole("backend")), "master");
+      ActorRef frontend = clusterSystem.actorOf(Props.create(Frontend.class), "frontend");
+      Map<String, Object> results = new ConcurrentHashMap<>();
+      CountDownLatch latch = new CountDownLatch(WORK);
+      clusterSystem.actorOf(Props.create(ResultsCollector.class, results, latch), "results");
+
+      for (int node = 0; node < NODES; node++) {
+        ActorSystem workerSystem = ActorSystem.create("WorkerSystem", workerConfig);
+        workerSystems.add(workerSystem);
+        ActorRef clusterClient = workerSystem
+          .actorOf(ClusterClient.props(ClusterClientSettings.create(workerSystem)), "clusterClient");
+        Props executorProps = Props.create(SquareExecutor.class)
+          .withDispatcher(AkkaDistributedPluginWorker.EXECUTOR_DISPATCHER);
+        for (int slot = 0; slot < SLOTS; slot++) {
+          workerSystem.actorOf(Worker.props(clusterClient, executorProps, REGISTER_INTERVAL, "node-" + node),
+            "worker-" + slot);
+        }
+      }
+
+      for (int i = 0; i < WORK; i++) {
+        submit(frontend, new Master.Work("work-" + i, i));
+      }
+
+      // a worker node is lost while executing its work
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+      while (results.size() < NODES * SLOTS && System.currentTimeMillis() < deadline) {
+        Thread.sleep(100);
+      }
+      Await.result(workerSystems.get(0).terminate(), Duration.create(30, TimeUnit.SECONDS));
+
+      Assert.assertTrue(latch.await(120, TimeUnit.SECONDS), "Only " + results.size() + " results");
+      for (int i = 0; i < WORK; i++) {
+        Assert.assertEquals(results.get("work-" + i), i * i);
+      }
+    } finally {
+      for (ActorSystem workerSystem : workerSystems) {
+        workerSystem.terminate();
+      }
+      Await.result(clusterSystem.terminate(), Duration.create(30, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.util.Collections;
+
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.plugins.orchestrate.akka.distributed.Master.Work;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups = {RodaConstants.TEST_GROUP_ALL, RodaConstants.TEST_GROUP_DEV, RodaConstants.TEST_GROUP_TRAVIS})
+public class WorkStateTest {
+
+  private static WorkState complete(WorkState state, String workId) {
+    WorkState ret = state.updated(new WorkState.WorkAccepted(new Work(workId, null)));
+    ret = ret.updated(new WorkState.WorkStarted(workId));
+    return ret.updated(new WorkState.WorkCompleted(workId, null));
+  }
+
+  @Test
+  public void testCompactionKeepsDoneWork() {
+    WorkState state = new WorkState();
+    for (int i = 0; i < 5; i++) {
+      state = complete(state, "work-" + i);
+    }
+
+    WorkState compacted = state.updated(new WorkState.WorkCompacted(state.getLastDoneWorkIds(3)));
+    Assert.assertFalse(compacted.hasWork());
+    Assert.assertFalse(compacted.hasWorkInProgress());
+
+    // the most recent done work is still recognized, e.g. when resubmitted
+    for (int i = 2; i < 5; i++) {
+      Assert.assertTrue(compacted.isDone("work-" + i));
+      Assert.assertTrue(compacted.isAccepted("work-" + i));
+    }
+    Assert.assertFalse(compacted.isDone("work-0"));
+    Assert.assertFalse(compacted.isDone("work-1"));
+
+    // and new work goes on as usual
+    compacted = compacted.updated(new WorkState.WorkAccepted(new Work("work-5", null)));
+    Assert.assertTrue(compacted.hasWork());
+    compacted = compacted.updated(new WorkState.WorkCancelled(Collections.singleton("work-5")));
+    Assert.assertTrue(compacted.isDone("work-5"));
+  }
+}
@@ -8,17 +8,23 @@
 package org.roda.core.storage.fs;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
 
 import org.roda.core.TestsHelper;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.storage.AbstractStorageServiceTest;
+import org.roda.core.storage.RandomMockContentPayload;
 import org.roda.core.storage.StorageService;
+import org.roda.core.storage.StorageTestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -109,6 +115,121 @@ public class FileStorageServiceTest extends AbstractStorageServiceTest<FileStora
     }
   }
 
+  @Test
+  public void testTrashRestoreAndPurge() throws RODAException, IOException {
+    // own data folder, as the trash is created next to the storage folder
+    Path dataPath = Files.createTempDirectory("trash_test");
+    try {
+      FileStorageService trashStorage = new FileStorageService(dataPath.resolve("storage"));
+      TrashManager trashManager = new TrashManager(trashStorage.getTrashPath(), dataPath, 0, 0, 2, 1000);
+      trashManager.start(0);
+      trashStorage.setTrashManager(trashManager);
+
+      final StoragePath containerStoragePath = StorageTestUtils.generateRandomContainerStoragePath();
+      trashStorage.createContainer(containerStoragePath);
+      final StoragePath binaryStoragePath = StorageTestUtils
+        .generateRandomResourceStoragePathUnder(containerStoragePath);
+
+      // delete the same binary three times
+      for (int i = 0; i < 3; i++) {
+        trashStorage.createBinary(binaryStoragePath, new RandomMockContentPayload(), false);
+        trashStorage.deleteResource(binaryStoragePath);
+      }
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 3);
+      Assert.assertTrue(trashManager.getSize() > 0);
+
+      // only the configured number of copies is kept
+      trashManager.purge();
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 2);
+
+      // the most recent deletion is restored
+      trashStorage.restoreFromTrash(binaryStoragePath);
+      Assert.assertTrue(trashStorage.hasBinary(binaryStoragePath));
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 1);
+
+      // entries are kept across restarts
+      trashManager.close();
+      TrashManager reloaded = new TrashManager(trashStorage.getTrashPath(), dataPath, 0, 0, 2, 1000);
+      reloaded.start(0);
+      Assert.assertEquals(reloaded.getNumberOfEntries(), 1);
+      Assert.assertEquals(reloaded.getSize(), trashManager.getSize());
+      reloaded.close();
+    } finally {
+      FSUtils.deletePathQuietly(dataPath);
+    }
+  }
+
+  @Test
+  public void testTrashNestedDeletions() throws RODAException, IOException {
+    Path dataPath = Files.createTempDirectory("trash_test");
+    try {
+      TrashManager trashManager = new TrashManager(dataPath.resolve("trash"), dataPath, 0, 0, 0, 1000);
+      trashManager.start(0);
+      Path aipPath = dataPath.resolve("storage").resolve("aip").resolve("X");
+      Path firstFile = aipPath.resolve("data").resolve("f");
+      Path secondFile = aipPath.resolve("data").resolve("g");
+
+      Files.createDirectories(firstFile.getParent());
+      Files.write(firstFile, "first".getBytes(StandardCharsets.UTF_8));
+      trashManager.trash(aipPath, null);
+
+      // a file under a folder that is already in the trash
+      Files.createDirectories(secondFile.getParent());
+      Files.write(secondFile, "second".getBytes(StandardCharsets.UTF_8));
+      trashManager.trash(secondFile, null);
+      Assert.assertEquals(trashManager.getSize(), "first".length() + "second".length());
+
+      // restoring the folder does not bring back the file deleted later
+      FSUtils.deletePath(aipPath);
+      trashManager.restore(aipPath);
+      Assert.assertTrue(Files.exists(firstFile));
+      Assert.assertFalse(Files.exists(secondFile));
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 1);
+      Assert.assertEquals(trashManager.getSize(), "second".length());
+
+      trashManager.restore(secondFile);
+      Assert.assertEquals(new String(Files.readAllBytes(secondFile), StandardCharsets.UTF_8), "second");
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 0);
+      trashManager.close();
+    } finally {
+      FSUtils.deletePathQuietly(dataPath);
+    }
+  }
+
+  @Test
+  public void testTrashPurgeAdoptedContent() throws RODAException, IOException {
+    Path dataPath = Files.createTempDirectory("trash_test");
+    try {
+      // content left in the trash by previous versions, without journal
+      Path trashPath = dataPath.resolve("trash");
+      Path legacyFile = trashPath.resolve("storage").resolve("aip").resolve("old").resolve("f");
+      Files.createDirectories(legacyFile.getParent());
+      Files.write(legacyFile, "legacy".getBytes(StandardCharsets.UTF_8));
+      Files.setLastModifiedTime(trashPath.resolve("storage"),
+        FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10)));
+
+      TrashManager trashManager = new TrashManager(trashPath, dataPath, 1, 0, 0, 1000);
+      trashManager.start(0);
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 1);
+
+      Path newFile = dataPath.resolve("storage").resolve("aip").resolve("new").resolve("f");
+      Files.createDirectories(newFile.getParent());
+      Files.write(newFile, "new".getBytes(StandardCharsets.UTF_8));
+      trashManager.trash(newFile, null);
+
+      // purging the adopted content keeps the deletions made afterwards
+      trashManager.purge();
+      Assert.assertFalse(Files.exists(legacyFile));
+      Assert.assertEquals(trashManager.getNumberOfEntries(), 1);
+      Assert.assertEquals(trashManager.getSize(), "new".length());
+      trashManager.restore(newFile);
+      Assert.assertEquals(new String(Files.readAllBytes(newFile), StandardCharsets.UTF_8), "new");
+      trashManager.close();
+    } finally {
+      FSUtils.deletePathQuietly(dataPath);
+    }
+  }
+
   @Override
   protected FileStorageService getStorage() {
     return storage;
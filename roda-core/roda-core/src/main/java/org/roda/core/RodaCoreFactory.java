@@ -91,8 +91,12 @@ import org.roda.core.common.PremisV3Utils;
 import org.roda.core.common.RodaUtils;
 import org.roda.core.common.UserUtility;
 import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.common.monitor.IncrementalTransferredResourcesScanner;
 import org.roda.core.common.monitor.TransferUpdateStatus;
 import org.roda.core.common.monitor.TransferredResourcesScanner;
+import org.roda.core.common.monitor.TransferredResourcesUploadManager;
+import org.roda.core.common.notifications.NotificationDeliveryService;
+import org.roda.core.common.validation.ValidationUtils;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.NodeType;
 import org.roda.core.data.common.RodaConstants.OrchestratorType;
@@ -107,6 +111,7 @@ import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.exceptions.ReturnWithExceptions;
 import org.roda.core.data.exceptions.RoleAlreadyExistsException;
+import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.common.Pair;
 import org.roda.core.data.v2.index.IndexResult;
 import org.roda.core.data.v2.index.facet.Facets;
@@ -128,6 +133,8 @@ import org.roda.core.data.v2.validation.ValidationException;
 import org.roda.core.events.EventsHandler;
 import org.roda.core.events.EventsManager;
 import org.roda.core.events.EventsNotifier;
+import org.roda.core.index.FullTextStore;
+import org.roda.core.index.IndexCountService;
 import org.roda.core.index.IndexService;
 import org.roda.core.index.schema.Field;
 import org.roda.core.index.schema.SolrBootstrapUtils;
@@ -139,13 +146,19 @@ import org.roda.core.model.ModelService;
 import org.roda.core.plugins.PluginManager;
 import org.roda.core.plugins.PluginManagerException;
 import org.roda.core.plugins.PluginOrchestrator;
+import org.roda.core.plugins.orchestrate.AkkaDistributedPluginOrchestrator;
 import org.roda.core.plugins.orchestrate.AkkaEmbeddedPluginOrchestrator;
+import org.roda.core.plugins.orchestrate.akka.distributed.AkkaDistributedPluginWorker;
+import org.roda.core.plugins.orchestrate.akka.distributed.Master;
+import org.roda.core.plugins.plugins.common.ConversionExecutionService;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
 import org.roda.core.storage.DefaultStoragePath;
 import org.roda.core.storage.Resource;
 import org.roda.core.storage.StorageService;
 import org.roda.core.storage.StorageServiceWrapper;
 import org.roda.core.storage.fs.FSUtils;
 import org.roda.core.storage.fs.FileStorageService;
+import org.roda.core.storage.fs.TrashManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -155,6 +168,7 @@ import ch.qos.logback.core.joran.spi.JoranException;
 import io.prometheus.client.dropwizard.DropwizardExports;
 import io.prometheus.client.exporter.HTTPServer;
 import io.prometheus.client.hotspot.DefaultExports;
+import scala.concurrent.duration.Duration;
 
 /**
  * @author Hélder Silva <hsilva@keep.pt>
@@ -215,6 +229,7 @@ public class RodaCoreFactory {
 
   // TransferredResources related objects
   private static TransferredResourcesScanner transferredResourcesScanner;
+  private static TrashManager trashManager;
 
   // Configuration related objects
   private static CompositeConfiguration rodaConfiguration = null;
@@ -375,10 +390,11 @@ public class RodaCoreFactory {
   }
 
   private static void instantiateWorker() {
-    INSTANTIATE_SOLR = false;
+    // a worker executes blocks of the jobs of a master, sharing its index
+    INSTANTIATE_SOLR = true;
     INSTANTIATE_LDAP = false;
     INSTANTIATE_SCANNER = false;
-    INSTANTIATE_PLUGIN_ORCHESTRATOR = false;
+    INSTANTIATE_PLUGIN_ORCHESTRATOR = true;
     INSTANTIATE_DEFAULT_RESOURCES = false;
     INSTANTIATE_EXAMPLE_RESOURCES = false;
     instantiate(NodeType.WORKER);
@@ -443,6 +459,10 @@ public class RodaCoreFactory {
         // initialize metrics stuff
         initializeMetrics();
 
+        // encoding of model files (AIP, DIP, jobs & job reports)
+        JsonUtils.setModelFormat(
+          JsonUtils.ModelFormat.valueOf(getConfigurationString("core.model.format", "JSON").toUpperCase()));
+
         // instantiate events manager
         instantiateEventsManager();
 
@@ -461,14 +481,22 @@ public class RodaCoreFactory {
         MigrationManager migrationManager = new MigrationManager(dataPath);
         if (NodeType.MASTER == nodeType
           && migrationManager.isNecessaryToPerformMigration(getSolr(), tempIndexConfigsPath)) {
-          // migrationManager.setupModelMigrations();
-          // migrationManager.performModelMigrations();
-          throw new GenericException("It's necessary to do a model/index migration");
+          migrationManager.setupModelMigrations();
+          if (migrationManager.isBackgroundModelMigrationPossible()) {
+            // AIPs not yet migrated are migrated when read
+            migrationManager.startModelMigrationsInBackground();
+          } else {
+            throw new GenericException("It's necessary to do a model/index migration");
+          }
         }
 
         instantiateDefaultObjects();
         LOGGER.debug("Finished instantiating default objects");
 
+        if (NodeType.MASTER == nodeType && INSTANTIATE_SOLR) {
+          resumeAIPPermissionsPropagation();
+        }
+
         // instantiate plugin manager
         // 20160920 hsilva: this must be the last thing to be instantiated as
         // problems may araise when instantiating objects at the same time the
@@ -767,6 +795,17 @@ public class RodaCoreFactory {
 
   }
 
+  private static void resumeAIPPermissionsPropagation() {
+    try {
+      int pending = index.resumeAIPPermissionsPropagation();
+      if (pending > 0) {
+        LOGGER.info("Resumed the writing of the permissions of {} AIPs", pending);
+      }
+    } catch (GenericException | AuthorizationDeniedException e) {
+      LOGGER.error("Could not resume the writing of the AIP permissions left pending", e);
+    }
+  }
+
   private static void instantiateDefaultObjects() {
     if (INSTANTIATE_DEFAULT_RESOURCES) {
       try (CloseableIterable<Resource> resources = getStorageService()
@@ -989,7 +1028,8 @@ public class RodaCoreFactory {
       LOGGER.debug("Going to instantiate Filesystem on '{}'", storagePath);
       String trashDirName = getRodaConfiguration().getString("core.storage.filesystem.trash",
         RodaConstants.TRASH_CONTAINER);
-      StorageService fileStorageService = new FileStorageService(storagePath, trashDirName);
+      FileStorageService fileStorageService = new FileStorageService(storagePath, trashDirName);
+      instantiateTrashManager(fileStorageService);
       return fileStorageService;
     } else {
       LOGGER.error("Unknown storage service '{}'", storageType.name());
@@ -998,6 +1038,21 @@ public class RodaCoreFactory {
 
   }
 
+  private static void instantiateTrashManager(FileStorageService fileStorageService) throws GenericException {
+    trashManager = new TrashManager(fileStorageService.getTrashPath(), fileStorageService.getRodaDataPath(),
+      getRodaConfigurationAsInt(0, "core", "storage", "filesystem", "trash", "max_age_in_days"),
+      getRodaConfigurationAsInt(0, "core", "storage", "filesystem", "trash", "max_size_in_mb"),
+      getRodaConfigurationAsInt(0, "core", "storage", "filesystem", "trash", "max_copies_per_path"),
+      getRodaConfigurationAsInt(100, "core", "storage", "filesystem", "trash", "purge_files_per_second"));
+    trashManager.start(nodeType == NodeType.MASTER || nodeType == NodeType.TEST
+      ? getRodaConfigurationAsInt(60, "core", "storage", "filesystem", "trash", "purge_interval_in_minutes")
+      : 0);
+    if (getMetrics() != null) {
+      trashManager.registerMetrics(getMetrics());
+    }
+    fileStorageService.setTrashManager(trashManager);
+  }
+
   /**
    * <p>
    * Warnings like
@@ -1034,6 +1089,16 @@ public class RodaCoreFactory {
             instantiatedWithoutErrors = false;
           }
         }
+      } else if (nodeType == NodeType.WORKER) {
+        // the index is the one of the master, which is also the one that
+        // bootstraps it
+        solrHome = configPath.resolve(RodaConstants.CORE_INDEX_FOLDER);
+        SolrType solrType = SolrType
+          .valueOf(getConfigurationString(RodaConstants.CORE_SOLR_TYPE, RodaConstants.DEFAULT_SOLR_TYPE.toString()));
+        if (solrType == SolrType.EMBEDDED) {
+          LOGGER.error("Unable to instantiate Solr in WORKER mode, as an embedded one cannot be shared with the master");
+          instantiatedWithoutErrors = false;
+        }
       } else if (nodeType == NodeType.TEST) {
         try {
           solrHome = Files.createTempDirectory(getWorkingDirectory(), RodaConstants.CORE_INDEX_FOLDER);
@@ -1050,7 +1115,7 @@ public class RodaCoreFactory {
       }
 
       if (instantiatedWithoutErrors) {
-        boolean writeIsAllowed = checkIfWriteIsAllowed(getNodeType());
+        boolean writeIsAllowed = checkIfWriteIsAllowed(getNodeType()) && nodeType != NodeType.WORKER;
 
         // instantiate solr
         solr = instantiateSolr(solrHome, writeIsAllowed);
@@ -1090,6 +1155,8 @@ public class RodaCoreFactory {
     }
 
     Field.initialize();
+    SolrUtils
+      .setFilterByPermissionTokens(getRodaConfiguration().getBoolean(RodaConstants.CORE_SOLR_PERMISSION_TOKENS, false));
 
     if (solrType == RodaConstants.SolrType.HTTP) {
       String solrBaseUrl = getConfigurationString(RodaConstants.CORE_SOLR_HTTP_URL, "http://localhost:8983/solr/");
@@ -1343,6 +1410,7 @@ public class RodaCoreFactory {
 
     if (nodeType == NodeType.MASTER) {
       processPreservationEventTypeProperties();
+      startNotificationDeliveryService();
     } else if (nodeType == NodeType.TEST && !INSTANTIATE_LDAP && INSTANTIATE_SOLR) {
       try {
         getIndexService().create(RODAMember.class, new User(RodaConstants.ADMIN));
@@ -1353,10 +1421,40 @@ public class RodaCoreFactory {
     }
   }
 
+  private static void startNotificationDeliveryService() {
+    try {
+      // resumes the deliveries left pending by a previous run
+      NotificationDeliveryService.getInstance();
+    } catch (IOException e) {
+      LOGGER.error("Could not start notification delivery service", e);
+    }
+  }
+
   private static void instantiateOrchestrator() {
     OrchestratorType orchestratorType = getOrchestratorType();
-    if (orchestratorType == OrchestratorType.AKKA) {
+    String hostname = getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_HOSTNAME, "127.0.0.1");
+    String port = getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_PORT, "2551");
+
+    if (nodeType == NodeType.WORKER) {
+      pluginOrchestrator = new AkkaDistributedPluginWorker(hostname, port,
+        getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_WORKER_HOSTNAME, "127.0.0.1"),
+        getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_WORKER_PORT, "0"),
+        getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(),
+          RodaConstants.ORCHESTRATOR_DISTRIBUTED_WORKER_SLOTS),
+        Duration.create(getRodaConfigurationAsInt(10, RodaConstants.ORCHESTRATOR_DISTRIBUTED_WORKER_HEARTBEAT),
+          TimeUnit.SECONDS));
+    } else if (orchestratorType == OrchestratorType.AKKA) {
       pluginOrchestrator = new AkkaEmbeddedPluginOrchestrator();
+    } else if (orchestratorType == OrchestratorType.AKKA_DISTRIBUTED) {
+      String journalPath = getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_JOURNAL_PATH,
+        getDataPath().resolve(RodaConstants.CORE_ORCHESTRATOR_JOURNAL_FOLDER).toString());
+      pluginOrchestrator = new AkkaDistributedPluginOrchestrator(hostname, port,
+        getRodaConfiguration().getString(RodaConstants.ORCHESTRATOR_DISTRIBUTED_JOURNAL_PLUGIN,
+          AkkaDistributedPluginOrchestrator.DEFAULT_JOURNAL_PLUGIN),
+        Paths.get(journalPath),
+        Duration.create(getRodaConfigurationAsInt(60, RodaConstants.ORCHESTRATOR_DISTRIBUTED_WORK_TIMEOUT),
+          TimeUnit.SECONDS),
+        getRodaConfigurationAsInt(Master.DEFAULT_MAX_ATTEMPTS, RodaConstants.ORCHESTRATOR_DISTRIBUTED_MAX_ATTEMPTS));
     } else {
       LOGGER.error("Orchestrator type '{}' is invalid or not supported. No plugin orchestrator will be started!",
         orchestratorType);
@@ -1394,6 +1492,10 @@ public class RodaCoreFactory {
   public static void shutdown() {
     if (instantiated) {
       if (INSTANTIATE_SOLR) {
+        if (index != null) {
+          index.shutdownAIPPermissionsPropagation(
+            getRodaConfigurationAsInt(60, "core.index.permissions_propagation.shutdown_timeout_in_seconds"));
+        }
         try {
           solr.close();
         } catch (IOException e) {
@@ -1409,6 +1511,21 @@ public class RodaCoreFactory {
       if (INSTANTIATE_PLUGIN_ORCHESTRATOR) {
         pluginOrchestrator.shutdown();
       }
+      ConversionExecutionService.shutdownInstance();
+      ParallelProcessingService.shutdownInstance();
+      IndexCountService.shutdownInstance();
+      FullTextStore.shutdownInstance();
+      NotificationDeliveryService.shutdownInstance();
+      MigrationManager.stopBackgroundMigrations();
+      if (transferredResourcesScanner != null && transferredResourcesScanner.getIncrementalScanner() != null) {
+        transferredResourcesScanner.getIncrementalScanner().close();
+      }
+      if (transferredResourcesScanner != null && transferredResourcesScanner.getUploadManager() != null) {
+        transferredResourcesScanner.getUploadManager().close();
+      }
+      if (trashManager != null) {
+        trashManager.close();
+      }
       if (nodeType == NodeType.TEST) {
         // final cleanup
         FSUtils.deletePathQuietly(workingDirectoryPath);
@@ -1587,6 +1704,29 @@ public class RodaCoreFactory {
 
       transferredResourcesScanner = new TransferredResourcesScanner(transferredResourcesFolderPath, getIndexService(),
         nodeType);
+
+      if (rodaConfiguration.getBoolean("transferredResources.incremental.enabled", false)
+        && (nodeType == NodeType.MASTER || nodeType == NodeType.TEST)) {
+        IncrementalTransferredResourcesScanner incrementalScanner = new IncrementalTransferredResourcesScanner(
+          transferredResourcesFolderPath, dataPath.resolve(RodaConstants.CORE_TRANSFERREDRESOURCE_SNAPSHOT_FILE),
+          getIndexService(), getRodaConfigurationAsInt(1000, "transferredResources", "incremental", "batch_size"),
+          getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(), "transferredResources", "incremental",
+            "scan_threads"),
+          getRodaConfigurationAsInt(60, "transferredResources", "incremental", "reconciliation_interval_in_minutes"));
+        incrementalScanner.start();
+        transferredResourcesScanner.setIncrementalScanner(incrementalScanner);
+      }
+
+      // staging area is kept next to the transfer folder so that finished
+      // uploads can be moved into it and partial ones are never scanned
+      TransferredResourcesUploadManager uploadManager = new TransferredResourcesUploadManager(
+        transferredResourcesScanner,
+        transferredResourcesFolderPath.resolveSibling(RodaConstants.CORE_TRANSFERREDRESOURCE_UPLOADS_FOLDER),
+        getRodaConfigurationAsInt(24, "transferredResources", "upload", "expiration_in_hours"));
+      uploadManager.start(nodeType == NodeType.MASTER || nodeType == NodeType.TEST
+        ? getRodaConfigurationAsInt(60, "transferredResources", "upload", "cleanup_interval_in_minutes")
+        : 0);
+      transferredResourcesScanner.setUploadManager(uploadManager);
     } catch (final Exception e) {
       LOGGER.error("Error starting Transferred Resources Scanner: " + e.getMessage(), e);
       instantiatedWithoutErrors = false;
@@ -1896,6 +2036,7 @@ public class RodaCoreFactory {
     rodaPropertiesCache.clear();
     rodaSharedConfigurationPropertiesCache = null;
     RODA_SCHEMAS_CACHE.invalidateAll();
+    ValidationUtils.clearValidators();
     I18N_CACHE.invalidateAll();
     SHARED_PROPERTIES_CACHE.invalidateAll();
     processPreservationEventTypeProperties();
@@ -5,10 +5,10 @@
  *
  * https://github.com/keeps/roda
  */
-package org.roda.wui.api.v1.utils;
+package org.roda.core.common;
 
 import org.apache.commons.csv.CSVFormat;
-import org.roda.core.common.ConsumesOutputStream;
+import org.roda.core.data.common.RodaConstants;
 
 /**
  * Abstract CSV output stream.
@@ -42,7 +42,7 @@ public abstract class CSVOutputStream implements ConsumesOutputStream {
 
   @Override
   public String getMediaType() {
-    return ExtraMediaType.TEXT_CSV;
+    return RodaConstants.MEDIA_TYPE_TEXT_CSV;
   }
 
   protected CSVFormat getFormat() {
@@ -10,22 +10,16 @@ package org.roda.core.common;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.net.util.Base64;
 import org.roda.core.RodaCoreFactory;
 import org.roda.core.data.common.RodaConstants;
-import org.roda.core.data.exceptions.AuthorizationDeniedException;
-import org.roda.core.data.exceptions.GenericException;
-import org.roda.core.data.exceptions.NotFoundException;
-import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.v2.index.filter.Filter;
 import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
-import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.IndexedAIP;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
@@ -35,105 +29,166 @@ import org.roda.core.index.utils.IterableIndexResult;
 import org.roda.core.model.ModelService;
 import org.roda.core.storage.Binary;
 
+import com.fasterxml.jackson.core.Base64Variants;
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 
+/**
+ * Exports the classification plan (all AIPs of the classification plan levels
+ * together with their descriptive metadata).
+ *
+ * The plan is written while the index is iterated, so memory use does not
+ * depend on the plan size. A file name ending in <code>.ndjson</code> produces
+ * one AIP per line instead of a single JSON document, and a file name ending in
+ * <code>.gz</code> produces gzip compressed output.
+ */
 public class ClassificationPlanUtils {
+  private static final String NDJSON_EXTENSION = ".ndjson";
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+  private static final String MEDIA_TYPE_GZIP = "application/gzip";
+
+  // a failing export must not look like a complete (but shorter) plan
+  private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+    .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+  private static final List<String> AIP_FIELDS_TO_RETURN = Arrays.asList(RodaConstants.INDEX_UUID,
+    RodaConstants.AIP_TITLE, RodaConstants.AIP_PARENT_ID, RodaConstants.AIP_LEVEL);
 
   private ClassificationPlanUtils() {
     // do nothing
   }
 
-  public static ConsumesOutputStream retrieveClassificationPlan(User user, String filename)
-    throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
-    try {
-      JsonFactory factory = new JsonFactory();
-      ObjectMapper mapper = new ObjectMapper(factory);
-      ObjectNode root = mapper.createObjectNode();
-
-      ArrayNode array = mapper.createArrayNode();
-      List<String> descriptionsLevels = RodaUtils
-        .copyList(RodaCoreFactory.getRodaConfiguration().getList(RodaConstants.LEVELS_CLASSIFICATION_PLAN));
-
-      Filter allButRepresentationsFilter = new Filter(
-        new OneOfManyFilterParameter(RodaConstants.AIP_LEVEL, descriptionsLevels));
-
-      IndexService index = RodaCoreFactory.getIndexService();
-      boolean justActive = true;
-      try (IterableIndexResult<IndexedAIP> res = index.findAll(IndexedAIP.class, allButRepresentationsFilter, user,
-        justActive, new ArrayList<>())) {
-        Iterator<IndexedAIP> it = res.iterator();
-        while (it.hasNext()) {
-          array.add(aipToJSON(it.next()));
+  public static ConsumesOutputStream retrieveClassificationPlan(User user, String filename) {
+    boolean gzip = filename.endsWith(GZIP_EXTENSION);
+    String uncompressedFilename = gzip ? filename.substring(0, filename.length() - GZIP_EXTENSION.length())
+      : filename;
+    boolean ndjson = uncompressedFilename.endsWith(NDJSON_EXTENSION);
+
+    String mediaType;
+    if (gzip) {
+      mediaType = MEDIA_TYPE_GZIP;
+    } else if (ndjson) {
+      mediaType = MEDIA_TYPE_NDJSON;
+    } else {
+      mediaType = RodaConstants.MEDIA_TYPE_APPLICATION_JSON;
+    }
+
+    return new ConsumesOutputStream() {
+
+      @Override
+      public void consumeOutputStream(OutputStream out) throws IOException {
+        if (gzip) {
+          GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
+          writeClassificationPlan(user, gzipOutputStream, ndjson);
+          gzipOutputStream.finish();
+        } else {
+          writeClassificationPlan(user, out, ndjson);
         }
       }
 
-      root.set("dos", array);
+      @Override
+      public long getSize() {
+        return -1;
+      }
+
+      @Override
+      public Date getLastModified() {
+        return null;
+      }
+
+      @Override
+      public String getFileName() {
+        return filename;
+      }
 
-      return new DefaultConsumesOutputStream(filename, RodaConstants.MEDIA_TYPE_APPLICATION_JSON, out -> {
-        try {
-          mapper.writeValue(out, root);
-        } catch (IOException e) {
-          // do nothing
+      @Override
+      public String getMediaType() {
+        return mediaType;
+      }
+    };
+  }
+
+  public static void writeClassificationPlan(User user, OutputStream out, boolean ndjson) throws IOException {
+    List<String> descriptionsLevels = RodaUtils
+      .copyList(RodaCoreFactory.getRodaConfiguration().getList(RodaConstants.LEVELS_CLASSIFICATION_PLAN));
+    Filter allButRepresentationsFilter = new Filter(
+      new OneOfManyFilterParameter(RodaConstants.AIP_LEVEL, descriptionsLevels));
+
+    IndexService index = RodaCoreFactory.getIndexService();
+    boolean justActive = true;
+
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out);
+      IterableIndexResult<IndexedAIP> res = index.findAll(IndexedAIP.class, allButRepresentationsFilter, user,
+        justActive, AIP_FIELDS_TO_RETURN)) {
+      if (ndjson) {
+        generator.setRootValueSeparator(null);
+        for (IndexedAIP aip : res) {
+          writeAIP(generator, aip);
+          generator.writeRaw('\n');
+        }
+      } else {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("dos");
+        for (IndexedAIP aip : res) {
+          writeAIP(generator, aip);
         }
-      });
-    } catch (IOException e) {
-      throw new GenericException(e);
+        generator.writeEndArray();
+        generator.writeEndObject();
+      }
+    } catch (RODAException e) {
+      throw new IOException("Could not export classification plan", e);
     }
   }
 
-  public static ObjectNode aipToJSON(IndexedAIP indexedAIP)
-    throws IOException, RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
-    JsonFactory factory = new JsonFactory();
-    ObjectMapper mapper = new ObjectMapper(factory);
-    ModelService model = RodaCoreFactory.getModelService();
-
-    ObjectNode node = mapper.createObjectNode();
+  private static void writeAIP(JsonGenerator generator, IndexedAIP indexedAIP) throws IOException, RODAException {
+    generator.writeStartObject();
     if (indexedAIP.getTitle() != null) {
-      node = node.put("title", indexedAIP.getTitle());
+      generator.writeStringField("title", indexedAIP.getTitle());
     }
     if (indexedAIP.getId() != null) {
-      node = node.put("id", indexedAIP.getId());
+      generator.writeStringField("id", indexedAIP.getId());
     }
     if (indexedAIP.getParentID() != null) {
-      node = node.put("parentId", indexedAIP.getParentID());
+      generator.writeStringField("parentId", indexedAIP.getParentID());
     }
     if (indexedAIP.getLevel() != null) {
-      node = node.put("descriptionlevel", indexedAIP.getLevel());
+      generator.writeStringField("descriptionlevel", indexedAIP.getLevel());
     }
-    AIP modelAIP = model.retrieveAIP(indexedAIP.getId());
 
+    // the type and the descriptive metadata types and versions are read from
+    // the AIP metadata, as the index has an empty type for AIPs without one
+    ModelService model = RodaCoreFactory.getModelService();
+    AIP modelAIP = model.retrieveAIP(indexedAIP.getId());
     if (modelAIP.getType() != null) {
-      node = node.put("type", modelAIP.getType());
+      generator.writeStringField("type", modelAIP.getType());
     }
-    if (modelAIP != null) {
-      List<DescriptiveMetadata> descriptiveMetadata = modelAIP.getDescriptiveMetadata();
-      if (descriptiveMetadata != null && !descriptiveMetadata.isEmpty()) {
-        ArrayNode metadata = mapper.createArrayNode();
-        for (DescriptiveMetadata dm : descriptiveMetadata) {
-          ObjectNode dmNode = mapper.createObjectNode();
-          if (dm.getId() != null) {
-            dmNode = dmNode.put("id", dm.getId());
-          }
-          if (dm.getType() != null) {
-            dmNode = dmNode.put("metadataType", dm.getType());
-          }
-          if (dm.getVersion() != null) {
-            dmNode = dmNode.put("metadataVersion", dm.getVersion());
-          }
-          Binary b = model.retrieveDescriptiveMetadataBinary(modelAIP.getId(), dm.getId());
-          InputStream is = b.getContent().createInputStream();
-          dmNode = dmNode.put("content", new String(Base64.encodeBase64(IOUtils.toByteArray(is))));
-          IOUtils.closeQuietly(is);
-          dmNode = dmNode.put("contentEncoding", "Base64");
-
-          metadata = metadata.add(dmNode);
+
+    List<DescriptiveMetadata> descriptiveMetadata = modelAIP.getDescriptiveMetadata();
+    if (descriptiveMetadata != null && !descriptiveMetadata.isEmpty()) {
+      generator.writeArrayFieldStart("metadata");
+      for (DescriptiveMetadata dm : descriptiveMetadata) {
+        generator.writeStartObject();
+        if (dm.getId() != null) {
+          generator.writeStringField("id", dm.getId());
+        }
+        if (dm.getType() != null) {
+          generator.writeStringField("metadataType", dm.getType());
+        }
+        if (dm.getVersion() != null) {
+          generator.writeStringField("metadataVersion", dm.getVersion());
+        }
+
+        Binary binary = model.retrieveDescriptiveMetadataBinary(modelAIP.getId(), dm.getId());
+        generator.writeFieldName("content");
+        try (InputStream is = binary.getContent().createInputStream()) {
+          generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, is, -1);
         }
-        node.set("metadata", metadata);
+        generator.writeStringField("contentEncoding", "Base64");
+        generator.writeEndObject();
       }
+      generator.writeEndArray();
     }
-    return node;
+    generator.writeEndObject();
   }
 }
@@ -16,6 +16,7 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
+import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -23,8 +24,6 @@ import javax.mail.internet.MimeMultipart;
 
 import org.roda.core.RodaCoreFactory;
 
-import com.sun.mail.smtp.SMTPTransport;
-
 public class ConfigurableEmailUtility {
 
   private static final List<String> DEFAULT_PROPERTIES = Arrays.asList("host", "port", "auth", "starttls.enable");
@@ -36,6 +35,7 @@ public class ConfigurableEmailUtility {
   private String subject;
   private javax.mail.Authenticator authenticator = null;
   private Properties props = new Properties();
+  private Session session = null;
 
   public ConfigurableEmailUtility(String fromActor, String subject) {
     this.protocol = RodaCoreFactory.getRodaConfiguration().getString("core.email.protocol", "");
@@ -54,10 +54,32 @@ public class ConfigurableEmailUtility {
       throw new MessagingException();
     }
 
-    Session session = Session.getDefaultInstance(props, authenticator);
-    session.setDebug(false);
+    Transport transport = connect();
+    try {
+      sendMail(transport, recipient, message);
+    } finally {
+      transport.close();
+    }
+  }
+
+  /**
+   * Opens a connection to the configured mail server that can be used to send
+   * several messages with {@link #sendMail(Transport, String, String)}. The
+   * caller is responsible for closing it.
+   */
+  public Transport connect() throws MessagingException {
+    Transport transport = getSession().getTransport(this.protocol);
+    transport.connect();
+    return transport;
+  }
 
-    Message msg = new MimeMessage(session);
+  public void sendMail(Transport transport, String recipient, String message) throws MessagingException {
+
+    if ("".equals(from)) {
+      throw new MessagingException();
+    }
+
+    Message msg = new MimeMessage(getSession());
 
     InternetAddress addressFrom = new InternetAddress(from);
     msg.setFrom(addressFrom);
@@ -75,10 +97,15 @@ public class ConfigurableEmailUtility {
     msg.setContent(mimeMultipart);
 
     // sending the message
-    SMTPTransport transport = (SMTPTransport) session.getTransport(this.protocol);
-    transport.connect();
     transport.sendMessage(msg, msg.getAllRecipients());
-    transport.close();
+  }
+
+  private Session getSession() {
+    if (session == null) {
+      session = Session.getInstance(props, authenticator);
+      session.setDebug(false);
+    }
+    return session;
   }
 
   private void createSessionParameters() {
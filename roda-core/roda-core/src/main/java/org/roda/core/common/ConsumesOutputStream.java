@@ -18,6 +18,14 @@ public interface ConsumesOutputStream {
   
   Date getLastModified();
 
+  /**
+   * @return an entity tag that changes whenever the content does, or null to
+   *         derive it from the last modification time.
+   */
+  default String getEntityTag() {
+    return null;
+  }
+
   String getFileName();
 
   String getMediaType();
@@ -11,6 +11,7 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,6 +20,8 @@ import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.common.iterables.CloseableIterables;
+import org.roda.core.common.tools.StoredZip;
 import org.roda.core.common.tools.ZipEntryInfo;
 import org.roda.core.common.tools.ZipTools;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
@@ -30,6 +33,7 @@ import org.roda.core.storage.Binary;
 import org.roda.core.storage.BinaryConsumesOutputStream;
 import org.roda.core.storage.Resource;
 import org.roda.core.storage.StorageService;
+import org.roda.core.storage.StorageServiceUtils;
 
 public class DownloadUtils {
 
@@ -47,11 +51,25 @@ public class DownloadUtils {
   }
 
   public static ConsumesOutputStream download(final StorageService storage, final Resource resource, String name)
+    throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
+    return download(storage, resource, name, false);
+  }
+
+  /**
+   * Downloads a binary or, as a ZIP, the contents of a directory. The ZIP
+   * entries are stored, so that the size of the ZIP is known and ranges of it
+   * can be downloaded, unless it is compressed.
+   */
+  public static ConsumesOutputStream download(final StorageService storage, final Resource resource, String name,
+    boolean compress)
     throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
     ConsumesOutputStream stream;
     final StoragePath storagePath = resource.getStoragePath();
 
-    if (resource.isDirectory()) {
+    if (resource.isDirectory() && !compress) {
+      final String fileName = name == null ? storagePath.getName() : name;
+      stream = new StoredZip(fileName + ZIP_FILE_NAME_EXTENSION, () -> listZipEntries(storage, storagePath, ""));
+    } else if (resource.isDirectory()) {
       // send zip with directory contents
       final String fileName = name == null ? storagePath.getName() : name;
 
@@ -79,7 +97,7 @@ public class DownloadUtils {
                 // adding a file
                 ZipEntry entry = new ZipEntry(entryPath);
                 zos.putNextEntry(entry);
-                Binary binary = storage.getBinary(r.getStoragePath());
+                Binary binary = StorageServiceUtils.getExportedBinary(storage.getBinary(r.getStoragePath()));
                 try (InputStream inputStream = binary.getContent().createInputStream()) {
                   IOUtils.copy(inputStream, zos);
                 }
@@ -114,12 +132,52 @@ public class DownloadUtils {
 
     } else {
       // send the one file
-      stream = new BinaryConsumesOutputStream(storage.getBinary(storagePath));
+      stream = new BinaryConsumesOutputStream(StorageServiceUtils.getExportedBinary(storage.getBinary(storagePath)));
     }
 
     return stream;
   }
 
+  /**
+   * Lists the resources under a storage path as ZIP entries, named after their
+   * path relative to it, with their last modification time when their content
+   * is a file, and with the model files stored as Smile written as JSON.
+   */
+  public static CloseableIterable<ZipEntryInfo> listZipEntries(final StorageService storage,
+    final StoragePath storagePath, final String prefix) throws IOException {
+    final int basePathSize = storagePath.asList().size();
+    CloseableIterable<Resource> resources;
+    try {
+      resources = storage.listResourcesUnderDirectory(storagePath, true);
+    } catch (GenericException | NotFoundException e) {
+      throw new IOException(e);
+    }
+
+    return CloseableIterables.transform(resources, r -> {
+      List<String> pathAsList = r.getStoragePath().asList();
+      String entryPath = prefix + String.join(ZIP_PATH_DELIMITER, pathAsList.subList(basePathSize, pathAsList.size()));
+      if (r.isDirectory()) {
+        return new ZipEntryInfo(entryPath + ZIP_PATH_DELIMITER, null, 0);
+      }
+
+      try {
+        Binary binary = r instanceof Binary ? (Binary) r : storage.getBinary(r.getStoragePath());
+        Binary exported = StorageServiceUtils.getExportedBinary(binary);
+        return new ZipEntryInfo(entryPath, exported.getContent(), exported.getSizeInBytes(),
+          StorageServiceUtils.getLastModified(binary));
+      } catch (GenericException | RequestNotValidException | NotFoundException | AuthorizationDeniedException e) {
+        throw new UncheckedIOException(new IOException(e));
+      }
+    });
+  }
+
+  /**
+   * @return a ZIP of stored entries, read from their source as it is sent
+   */
+  public static StreamResponse createZipStreamResponse(StoredZip.Entries entries, String zipName) {
+    return new StreamResponse(new StoredZip(zipName + ZIP_FILE_NAME_EXTENSION, entries));
+  }
+
   public static StreamResponse createZipStreamResponse(List<ZipEntryInfo> zipEntries, String zipName) {
 
     final ConsumesOutputStream stream = new ConsumesOutputStream() {
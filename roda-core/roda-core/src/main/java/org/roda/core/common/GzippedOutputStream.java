@@ -0,0 +1,67 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import org.roda.core.data.common.RodaConstants;
+
+
+/**
+ * Output stream that gzips what another output stream writes.
+ */
+public class GzippedOutputStream implements ConsumesOutputStream {
+
+  /** The gzip file extension. */
+  private static final String GZIP_EXTENSION = ".gz";
+  /** The size of the buffer of the compressor. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The output stream to gzip. */
+  private final ConsumesOutputStream stream;
+
+  /**
+   * Constructor.
+   *
+   * @param stream
+   *          the output stream to gzip.
+   */
+  public GzippedOutputStream(final ConsumesOutputStream stream) {
+    this.stream = stream;
+  }
+
+  @Override
+  public void consumeOutputStream(final OutputStream out) throws IOException {
+    final GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+    stream.consumeOutputStream(gzip);
+    gzip.finish();
+  }
+
+  @Override
+  public String getFileName() {
+    return stream.getFileName() + GZIP_EXTENSION;
+  }
+
+  @Override
+  public String getMediaType() {
+    return RodaConstants.MEDIA_TYPE_APPLICATION_GZIP;
+  }
+
+  @Override
+  public Date getLastModified() {
+    return stream.getLastModified();
+  }
+
+  @Override
+  public long getSize() {
+    return -1;
+  }
+}
@@ -10,8 +10,11 @@ package org.roda.core.common;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -19,6 +22,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -88,6 +93,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.util.DateParser;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * @author Rui Castro
  *
@@ -148,6 +158,13 @@ public class LdapUtility {
   private static final String RODA_DUMMY_USER = "cn=roda,ou=system,dc=roda,dc=org";
 
   private static final int CACHE_SIZE = RodaCoreFactory.getRodaConfiguration().getInt("core.ldap.cacheSize", 100);
+  private static final int CREDENTIALS_CACHE_TTL_IN_SECONDS = RodaCoreFactory.getRodaConfiguration()
+    .getInt("core.ldap.cache.credentials_ttl_in_seconds", 60);
+  private static final int USERS_CACHE_TTL_IN_SECONDS = RodaCoreFactory.getRodaConfiguration()
+    .getInt("core.ldap.cache.users_ttl_in_seconds", 300);
+  private static final int USERS_CACHE_SIZE = RodaCoreFactory.getRodaConfiguration().getInt("core.ldap.cache.size",
+    1000);
+  private static final int CREDENTIALS_SALT_LENGTH = 16;
   // for backwards compatibility by default define JDBM backend
   private static final String LDAP_BACKEND = RodaCoreFactory.getRodaConfiguration().getString("core.ldap.backend",
     RodaConstants.CORE_LDAP_BACKEND_JDBM);
@@ -235,6 +252,24 @@ public class LdapUtility {
 
   private PartitionFactory partitionFactory;
 
+  /**
+   * Salted hashes of recently verified credentials (and the user they
+   * authenticated) so that repeated logins and basic-auth requests don't bind
+   * against LDAP every time. Disabled when its TTL is 0.
+   */
+  private final Cache<String, CachedCredentials> credentialsCache;
+
+  /** Users (with their roles and groups) by name. Disabled when its TTL is 0. */
+  private final Cache<String, User> usersCache;
+
+  /**
+   * Incremented on every invalidation, so that what was read from LDAP before
+   * a change is not cached after it.
+   */
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
   /**
    * Constructs a new LdapUtility class with the given parameters.
    *
@@ -310,6 +345,73 @@ public class LdapUtility {
     this.dataDirectory = dataDirectory;
 
     this.partitionFactory = createPartitionFactory();
+
+    this.credentialsCache = CacheBuilder.newBuilder().maximumSize(USERS_CACHE_SIZE)
+      .expireAfterWrite(CREDENTIALS_CACHE_TTL_IN_SECONDS, TimeUnit.SECONDS).recordStats().build();
+    this.usersCache = CacheBuilder.newBuilder().maximumSize(USERS_CACHE_SIZE)
+      .expireAfterWrite(USERS_CACHE_TTL_IN_SECONDS, TimeUnit.SECONDS).recordStats().build();
+    registerCacheMetrics();
+  }
+
+  private void registerCacheMetrics() {
+    MetricRegistry metrics = RodaCoreFactory.getMetrics();
+    if (metrics != null) {
+      String className = LdapUtility.class.getSimpleName();
+      registerGauge(metrics, MetricRegistry.name(className, "credentialsCacheHitRate"),
+        () -> credentialsCache.stats().hitRate());
+      registerGauge(metrics, MetricRegistry.name(className, "usersCacheHitRate"), () -> usersCache.stats().hitRate());
+      registerGauge(metrics, MetricRegistry.name(className, "usersCacheSize"), usersCache::size);
+    }
+  }
+
+  private static <T> void registerGauge(MetricRegistry metrics, String name, Gauge<T> gauge) {
+    // a new instance replaces the gauges of the previous one
+    metrics.remove(name);
+    metrics.register(name, gauge);
+  }
+
+  /**
+   * Forgets the cached information and credentials of a user.
+   */
+  public void invalidateUser(final String username) {
+    if (username != null) {
+      cacheGeneration.incrementAndGet();
+      usersCache.invalidate(username);
+      credentialsCache.invalidate(username);
+    }
+  }
+
+  /**
+   * Forgets the cached information of all users, e.g. after a group or role
+   * change that can affect any of them.
+   */
+  public void invalidateUsers() {
+    cacheGeneration.incrementAndGet();
+    usersCache.invalidateAll();
+    credentialsCache.invalidateAll();
+  }
+
+  /**
+   * Caches a value read from LDAP unless the cache was invalidated since it
+   * started being read, in which case the value may be stale.
+   */
+  private <V> void cacheIfCurrent(final Cache<String, V> cache, final String key, final V value,
+    final long generation) {
+    if (cacheGeneration.get() == generation) {
+      cache.put(key, value);
+      if (cacheGeneration.get() != generation) {
+        // invalidated while being cached
+        cache.invalidate(key);
+      }
+    }
+  }
+
+  private static User copyUser(final User user) {
+    final User copy = new User(user);
+    copy.setAllRoles(new HashSet<>(user.getAllRoles()));
+    copy.setDirectRoles(new HashSet<>(user.getDirectRoles()));
+    copy.setGroups(new HashSet<>(user.getGroups()));
+    return copy;
   }
 
   public void setRODAAdministratorsDN(String rodaAdministratorsDN) {
@@ -457,7 +559,19 @@ public class LdapUtility {
    */
   public User getUser(final String name) throws GenericException {
     try {
-      return getUser(service.getAdminSession(), name);
+      if (USERS_CACHE_TTL_IN_SECONDS > 0 && name != null) {
+        User user = usersCache.getIfPresent(name);
+        if (user == null) {
+          final long generation = cacheGeneration.get();
+          user = getUser(service.getAdminSession(), name);
+          if (user != null) {
+            cacheIfCurrent(usersCache, name, user, generation);
+          }
+        }
+        return user == null ? null : copyUser(user);
+      } else {
+        return getUser(service.getAdminSession(), name);
+      }
     } catch (final LdapException e) {
       throw new GenericException("Error getting user " + name, e);
     }
@@ -538,6 +652,7 @@ public class LdapUtility {
       throw new GenericException("Error adding user " + user.getName(), e);
     }
 
+    invalidateUser(user.getName());
     final User newUser = getUser(user.getName());
     if (newUser == null) {
       throw new GenericException("The user was not created!");
@@ -839,15 +954,29 @@ public class LdapUtility {
       throw new AuthenticationDeniedException("Username and password cannot be blank!");
     }
 
+    if (CREDENTIALS_CACHE_TTL_IN_SECONDS > 0) {
+      final CachedCredentials cached = credentialsCache.getIfPresent(username);
+      if (cached != null && cached.matches(password)) {
+        return copyUser(cached.getUser());
+      }
+    }
+
+    final long generation = cacheGeneration.get();
     try {
 
       // Try to get a session using username and password.
       // Use this session to retrieve user's direct attributes.
       final CoreSession userSession = service.getSession(new Dn(getUserDN(username)), password.getBytes());
       final Entry entry = userSession.lookup(new Dn(getUserDN(username)));
-      final User user = getUserFromEntry(entry);
-      // Use the admin session to get the user roles and groups
-      return setUserRolesAndGroups(service.getAdminSession(), user);
+      final User user = setUserRolesAndGroups(service.getAdminSession(), getUserFromEntry(entry));
+
+      if (CREDENTIALS_CACHE_TTL_IN_SECONDS > 0) {
+        final byte[] salt = new byte[CREDENTIALS_SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        cacheIfCurrent(credentialsCache, username, new CachedCredentials(salt, password, copyUser(user)), generation);
+      }
+
+      return user;
 
     } catch (final LdapAuthenticationException e) {
       throw new AuthenticationDeniedException(e.getMessage(), e);
@@ -1150,6 +1279,8 @@ public class LdapUtility {
           addMemberToRoleOrGroup(service.getAdminSession(), roleDN, this.rodaAdministratorsDN, ROLE_OCCUPANT);
         }
         throw new RoleAlreadyExistsException("Role " + roleName + " already exists.", e);
+      } finally {
+        invalidateUsers();
       }
     } catch (final LdapException e) {
       throw new GenericException("Error adding role '" + roleName + "'", e);
@@ -1455,6 +1586,9 @@ public class LdapUtility {
       throw new NotFoundException("Group " + modifiedGroup.getName() + " doesn't exist.", e);
     } catch (final LdapException e) {
       throw new GenericException("Error modifying group " + modifiedGroup.getName(), e);
+    } finally {
+      // members and their roles may have changed, even if only partially
+      invalidateUsers();
     }
 
     return getGroup(modifiedGroup.getName());
@@ -1602,6 +1736,8 @@ public class LdapUtility {
       throw new GenericException("Error modifying user " + modifiedUser.getName() + " - " + e.getMessage(), e);
     } catch (final NoSuchAlgorithmException e) {
       throw new GenericException("Error encoding password for user " + modifiedUser.getName(), e);
+    } finally {
+      invalidateUser(modifiedUser.getName());
     }
 
   }
@@ -1632,8 +1768,12 @@ public class LdapUtility {
 
     final String passwordDigest = new String(PasswordUtil.createStoragePassword(password, algorithm));
 
-    session.modify(new Dn(getUserDN(username)),
-      new DefaultModification(ModificationOperation.REPLACE_ATTRIBUTE, USER_PASSWORD, passwordDigest));
+    try {
+      session.modify(new Dn(getUserDN(username)),
+        new DefaultModification(ModificationOperation.REPLACE_ATTRIBUTE, USER_PASSWORD, passwordDigest));
+    } finally {
+      invalidateUser(username);
+    }
   }
 
   private void addMemberToRoleOrGroup(final CoreSession session, final String dn, final String memberDN,
@@ -1666,18 +1806,22 @@ public class LdapUtility {
   }
 
   private void removeMember(final CoreSession session, final String memberDN) throws LdapException {
-    // For each group the member is in, remove that member from the group
-    final Set<String> directMemberGroupsDN = getDNsOfGroupsContainingMember(session, memberDN);
-    for (String groupDN : directMemberGroupsDN) {
-      removeMemberFromRoleOrGroup(session, groupDN, memberDN, UNIQUE_MEMBER);
-    }
-    // For each role the member owns, remove that member from the
-    // roleOccupant
-    final Set<String> directMemberRolesDN = getDNsOfDirectRolesForMember(session, memberDN);
-    for (String roleDN : directMemberRolesDN) {
-      removeMemberFromRoleOrGroup(session, roleDN, memberDN, ROLE_OCCUPANT);
+    try {
+      // For each group the member is in, remove that member from the group
+      final Set<String> directMemberGroupsDN = getDNsOfGroupsContainingMember(session, memberDN);
+      for (String groupDN : directMemberGroupsDN) {
+        removeMemberFromRoleOrGroup(session, groupDN, memberDN, UNIQUE_MEMBER);
+      }
+      // For each role the member owns, remove that member from the
+      // roleOccupant
+      final Set<String> directMemberRolesDN = getDNsOfDirectRolesForMember(session, memberDN);
+      for (String roleDN : directMemberRolesDN) {
+        removeMemberFromRoleOrGroup(session, roleDN, memberDN, ROLE_OCCUPANT);
+      }
+      session.delete(new Dn(memberDN));
+    } finally {
+      invalidateUsers();
     }
-    session.delete(new Dn(memberDN));
   }
 
   /**
@@ -2173,6 +2317,40 @@ public class LdapUtility {
 
   }
 
+  /**
+   * A successful authentication, storing a salted hash of the password instead
+   * of the password itself.
+   */
+  private static class CachedCredentials {
+    private final byte[] salt;
+    private final byte[] hash;
+    private final User user;
+
+    CachedCredentials(final byte[] salt, final String password, final User user) throws GenericException {
+      this.salt = salt;
+      this.hash = hash(salt, password);
+      this.user = user;
+    }
+
+    boolean matches(final String password) throws GenericException {
+      return MessageDigest.isEqual(hash, hash(salt, password));
+    }
+
+    User getUser() {
+      return user;
+    }
+
+    private static byte[] hash(final byte[] salt, final String password) throws GenericException {
+      try {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(salt);
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+      } catch (final NoSuchAlgorithmException e) {
+        throw new GenericException("Error hashing credentials", e);
+      }
+    }
+  }
+
   public boolean isInternal(String username) throws GenericException, NotFoundException {
     final CoreSession session = this.service.getAdminSession();
     Entry entry;
@@ -0,0 +1,125 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.IOUtils;
+import org.roda.core.data.v2.index.IndexResult;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.index.utils.IterableIndexResult;
+
+/**
+ * CSV output stream for {@link IndexResult} or {@link IterableIndexResult}.
+ * 
+ * The results are written as they are iterated, so iterating an
+ * {@link IterableIndexResult} writes all of them without keeping them in
+ * memory, and stops as soon as writing fails, e.g. when the client disconnects.
+ * 
+ * @param <T>
+ *          the type of results.
+ * @author Rui Castro <rui.castro@gmail.com>
+ */
+public class ResultsCSVOutputStream<T extends IsIndexed> extends CSVOutputStream {
+
+  /** The results to write to output stream. */
+  private final Iterable<T> results;
+  /** The indexed fields to write, or empty to write the CSV values. */
+  private final List<String> fields;
+
+  /**
+   * Constructor.
+   *
+   * @param results
+   *          the results to write to output stream.
+   * @param filename
+   *          the filename.
+   * @param delimiter
+   *          the CSV field delimiter.
+   */
+  public ResultsCSVOutputStream(final IndexResult<T> results, final String filename, final char delimiter) {
+    this(results.getResults(), Collections.emptyList(), filename, delimiter);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param results
+   *          the results to write to output stream, closed after being written
+   *          if they are {@link Closeable}.
+   * @param fields
+   *          the indexed fields to write, or empty to write the CSV values of
+   *          the results.
+   * @param filename
+   *          the filename.
+   * @param delimiter
+   *          the CSV field delimiter.
+   */
+  public ResultsCSVOutputStream(final Iterable<T> results, final List<String> fields, final String filename,
+    final char delimiter) {
+    super(filename, delimiter);
+    this.results = results;
+    this.fields = fields;
+  }
+
+  @Override
+  public void consumeOutputStream(final OutputStream out) throws IOException {
+    final OutputStreamWriter writer = new OutputStreamWriter(out);
+    try {
+      CSVPrinter printer = null;
+      if (!fields.isEmpty()) {
+        printer = getFormat().withHeader(fields.toArray(new String[0])).print(writer);
+      }
+
+      for (final T result : this.results) {
+        if (printer == null) {
+          printer = getFormat().withHeader(result.toCsvHeaders().toArray(new String[0])).print(writer);
+        }
+        printer.printRecord(fields.isEmpty() ? result.toCsvValues() : getIndexedValues(result, fields));
+      }
+      writer.flush();
+    } finally {
+      if (results instanceof Closeable) {
+        IOUtils.closeQuietly((Closeable) results);
+      }
+    }
+  }
+
+  /**
+   * @return the values of some indexed fields of a result, null if they are
+   *         missing.
+   */
+  static List<Object> getIndexedValues(final IsIndexed result, final List<String> fields) {
+    final Map<String, Object> indexedFields = result.getFields() == null ? Collections.emptyMap()
+      : result.getFields();
+    final List<Object> values = new ArrayList<>(fields.size());
+    for (String field : fields) {
+      values.add(indexedFields.get(field));
+    }
+    return values;
+  }
+
+  @Override
+  public Date getLastModified() {
+    return null;
+  }
+
+  @Override
+  public long getSize() {
+    return -1;
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.index.utils.IterableIndexResult;
+
+/**
+ * Newline delimited JSON output stream for results, one JSON object per line.
+ *
+ * The results are written as they are iterated, so iterating an
+ * {@link IterableIndexResult} writes all of them without keeping them in
+ * memory, and stops as soon as writing fails, e.g. when the client disconnects.
+ *
+ * @param <T>
+ *          the type of results.
+ */
+public class ResultsJSONOutputStream<T extends IsIndexed> implements ConsumesOutputStream {
+
+  /** The results to write to output stream. */
+  private final Iterable<T> results;
+  /** The indexed fields to write, or empty to write the whole results. */
+  private final List<String> fields;
+  /** The filename. */
+  private final String filename;
+
+  /**
+   * Constructor.
+   *
+   * @param results
+   *          the results to write to output stream, closed after being written
+   *          if they are {@link Closeable}.
+   * @param fields
+   *          the indexed fields to write, or empty to write the whole results.
+   * @param filename
+   *          the filename.
+   */
+  public ResultsJSONOutputStream(final Iterable<T> results, final List<String> fields, final String filename) {
+    this.results = results;
+    this.fields = fields;
+    this.filename = filename;
+  }
+
+  @Override
+  public void consumeOutputStream(final OutputStream out) throws IOException {
+    final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    try {
+      for (final T result : this.results) {
+        final String json = JsonUtils.getJsonFromObject(fields.isEmpty() ? result : getIndexedFields(result));
+        if (json == null) {
+          throw new IOException("Could not write " + result.getUUID() + " as JSON");
+        }
+        writer.write(json);
+        writer.write('\n');
+      }
+      writer.flush();
+    } finally {
+      if (results instanceof Closeable) {
+        IOUtils.closeQuietly((Closeable) results);
+      }
+    }
+  }
+
+  private Map<String, Object> getIndexedFields(final T result) {
+    final Map<String, Object> values = new LinkedHashMap<>();
+    final List<Object> indexedValues = ResultsCSVOutputStream.getIndexedValues(result, fields);
+    for (int i = 0; i < fields.size(); i++) {
+      values.put(fields.get(i), indexedValues.get(i));
+    }
+    return values;
+  }
+
+  @Override
+  public String getFileName() {
+    return filename;
+  }
+
+  @Override
+  public String getMediaType() {
+    return RodaConstants.MEDIA_TYPE_APPLICATION_NDJSON;
+  }
+
+  @Override
+  public Date getLastModified() {
+    return null;
+  }
+
+  @Override
+  public long getSize() {
+    return -1;
+  }
+}
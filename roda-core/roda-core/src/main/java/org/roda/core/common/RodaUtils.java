@@ -274,6 +274,14 @@ public class RodaUtils {
     }
   }
 
+  /**
+   * Forgets the compiled metadata stylesheets, so changes to them are used on
+   * the next transformation.
+   */
+  public static void invalidateMetadataStylesheets() {
+    CACHE.invalidateAll();
+  }
+
   protected static XsltExecutable createMetadataTransformer(String basePath, String metadataType,
     String metadataVersion) throws SaxonApiException, GenericException {
     InputStream transformerStream = null;
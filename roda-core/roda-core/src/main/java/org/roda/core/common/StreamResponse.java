@@ -14,6 +14,7 @@ public class StreamResponse implements EntityResponse {
   private String mediaType;
   private long fileSize = -1;
   private Date lastModified;
+  private String entityTag;
   private ConsumesOutputStream stream;
 
   public StreamResponse(ConsumesOutputStream stream) {
@@ -22,6 +23,7 @@ public class StreamResponse implements EntityResponse {
     this.fileSize = stream.getSize();
     this.mediaType = stream.getMediaType();
     this.lastModified = stream.getLastModified();
+    this.entityTag = stream.getEntityTag();
     this.stream = stream;
   }
 
@@ -79,4 +81,16 @@ public class StreamResponse implements EntityResponse {
     this.lastModified = lastModified;
   }
 
+  /**
+   * @return the entity tag, or null to derive it from the last modification
+   *         time
+   */
+  public String getEntityTag() {
+    return entityTag;
+  }
+
+  public void setEntityTag(String entityTag) {
+    this.entityTag = entityTag;
+  }
+
 }
@@ -7,11 +7,11 @@
  */
 package org.roda.core.common;
 
-import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
@@ -25,9 +25,15 @@ import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.FilterParameter;
+import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
+import org.roda.core.data.v2.index.filter.OrFiltersParameters;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.index.select.SelectedItems;
 import org.roda.core.data.v2.index.select.SelectedItemsFilter;
 import org.roda.core.data.v2.index.select.SelectedItemsList;
+import org.roda.core.data.v2.index.sublist.Sublist;
 import org.roda.core.data.v2.ip.DIPFile;
 import org.roda.core.data.v2.ip.IndexedAIP;
 import org.roda.core.data.v2.ip.IndexedDIP;
@@ -39,11 +45,10 @@ import org.roda.core.data.v2.ip.metadata.IndexedPreservationEvent;
 import org.roda.core.data.v2.user.User;
 import org.roda.core.index.IndexService;
 import org.roda.core.index.schema.SolrCollection;
-import org.roda.core.index.utils.IndexUtils;
-import org.roda.core.index.utils.IterableIndexResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class UserUtility {
@@ -52,6 +57,8 @@ public class UserUtility {
   private static final String REGISTER_ACTIVE_PROPERTY = "ui.register.active";
   private static final String REGISTER_DEFAULT_GROUPS = "ui.register.defaultGroups";
   private static final String REGISTER_DEFAULT_ROLES = "ui.register.defaultRoles";
+  // stays below Solr's default maxBooleanClauses (1024)
+  private static final int PERMISSIONS_CHECK_BATCH_SIZE = 1000;
 
   private static LdapUtility ldapUtility;
 
@@ -419,23 +426,15 @@ public class UserUtility {
       return;
     }
 
-    IndexService index = RodaCoreFactory.getIndexService();
     if (selected instanceof SelectedItemsFilter) {
-      SelectedItemsFilter<IndexedAIP> selectedItems = (SelectedItemsFilter<IndexedAIP>) selected;
-      try (IterableIndexResult<IndexedAIP> result = index.findAll(IndexedAIP.class, selectedItems.getFilter(),
-        RodaConstants.AIP_PERMISSIONS_FIELDS_TO_RETURN)) {
-
-        for (IndexedAIP aip : result) {
+      checkPermissionsByCount(user, (SelectedItemsFilter<IndexedAIP>) selected, IndexedAIP.class, permission);
+    } else if (selected instanceof SelectedItemsList) {
+      // AIPs that no longer exist are ignored
+      List<String> ids = new ArrayList<>(new LinkedHashSet<>(((SelectedItemsList<IndexedAIP>) selected).getIds()));
+      for (List<String> chunk : Lists.partition(ids, PERMISSIONS_CHECK_BATCH_SIZE)) {
+        for (IndexedAIP aip : retrieveChunk(IndexedAIP.class, chunk, RodaConstants.AIP_PERMISSIONS_FIELDS_TO_RETURN)) {
           checkAIPPermissions(user, aip, permission);
         }
-      } catch (IOException e) {
-        LOGGER.error("Error getting AIPs to check permissions", e);
-      }
-    } else if (selected instanceof SelectedItemsList) {
-      SelectedItemsList<IndexedAIP> selectedItems = (SelectedItemsList<IndexedAIP>) selected;
-      List<IndexedAIP> aips = IndexUtils.getIndexedAIPsFromObjectIds(selectedItems);
-      for (IndexedAIP aip : aips) {
-        checkAIPPermissions(user, aip, permission);
       }
     } else {
       throw new RequestNotValidException(
@@ -450,23 +449,15 @@ public class UserUtility {
       return;
     }
 
-    IndexService index = RodaCoreFactory.getIndexService();
     if (selected instanceof SelectedItemsFilter) {
-      SelectedItemsFilter<IndexedDIP> selectedItems = (SelectedItemsFilter<IndexedDIP>) selected;
-      try (IterableIndexResult<IndexedDIP> findAll = index.findAll(IndexedDIP.class, selectedItems.getFilter(),
-        RodaConstants.DIP_PERMISSIONS_FIELDS_TO_RETURN)) {
-
-        for (IndexedDIP dip : findAll) {
+      checkPermissionsByCount(user, (SelectedItemsFilter<IndexedDIP>) selected, IndexedDIP.class, permission);
+    } else if (selected instanceof SelectedItemsList) {
+      // DIPs that no longer exist are ignored
+      List<String> ids = new ArrayList<>(new LinkedHashSet<>(((SelectedItemsList<IndexedDIP>) selected).getIds()));
+      for (List<String> chunk : Lists.partition(ids, PERMISSIONS_CHECK_BATCH_SIZE)) {
+        for (IndexedDIP dip : retrieveChunk(IndexedDIP.class, chunk, RodaConstants.DIP_PERMISSIONS_FIELDS_TO_RETURN)) {
           checkDIPPermissions(user, dip, permission);
         }
-      } catch (IOException e) {
-        LOGGER.error("Error getting DIPs to check permissions", e);
-      }
-    } else if (selected instanceof SelectedItemsList) {
-      SelectedItemsList<IndexedDIP> selectedItems = (SelectedItemsList<IndexedDIP>) selected;
-      List<IndexedDIP> dips = IndexUtils.getIndexedDIPsFromObjectIds(selectedItems);
-      for (IndexedDIP dip : dips) {
-        checkDIPPermissions(user, dip, permission);
       }
     } else {
       throw new RequestNotValidException(
@@ -490,7 +481,7 @@ public class UserUtility {
   }
 
   private static <T extends IsIndexed> void checkObjectPermissions(User user, SelectedItems<T> selected,
-    Function<T, String> toAIP, PermissionType permission, List<String> fieldsToRequestIndex)
+    Function<T, String> toAIP, String aipIdField, PermissionType permission)
     throws AuthorizationDeniedException, GenericException, RequestNotValidException {
 
     if (isAdministrator(user)) {
@@ -498,48 +489,41 @@ public class UserUtility {
     }
 
     Class<T> classToReturn = SelectedItemsUtils.parseClass(selected.getSelectedClass());
-    IndexService index = RodaCoreFactory.getIndexService();
     if (selected instanceof SelectedItemsFilter) {
-      SelectedItemsFilter<T> selectedItems = (SelectedItemsFilter<T>) selected;
-      try (IterableIndexResult<T> findAll = index.findAll(classToReturn, selectedItems.getFilter(),
-        fieldsToRequestIndex)) {
+      // objects carry the permissions of their AIP
+      checkPermissionsByCount(user, (SelectedItemsFilter<T>) selected, classToReturn, permission);
+    } else if (selected instanceof SelectedItemsList) {
+      List<String> uuids = new ArrayList<>(new LinkedHashSet<>(((SelectedItemsList<T>) selected).getIds()));
+      List<String> fieldsToReturn = Arrays.asList(RodaConstants.INDEX_UUID, aipIdField);
+
+      Set<String> aipIds = new LinkedHashSet<>();
+      for (List<String> chunk : Lists.partition(uuids, PERMISSIONS_CHECK_BATCH_SIZE)) {
+        List<T> objs = retrieveChunk(classToReturn, chunk, fieldsToReturn);
+        if (objs.size() < chunk.size()) {
+          // conservative approach
+          throw new AuthorizationDeniedException("Could not verify permissions of objects ["
+            + classToReturn.getSimpleName() + "] " + getMissingIds(chunk, objs));
+        }
 
-        for (T obj : findAll) {
+        for (T obj : objs) {
           String aipId = toAIP.apply(obj);
-          IndexedAIP aip;
-          try {
-            aip = index.retrieve(IndexedAIP.class, aipId, RodaConstants.AIP_PERMISSIONS_FIELDS_TO_RETURN);
-            checkAIPPermissions(user, aip, permission);
-          } catch (NotFoundException e) {
-            // conservative approach
-            throw new AuthorizationDeniedException(
-              "Could not verify permissions of object [" + classToReturn.getSimpleName() + "] " + obj.getUUID(), e);
+          if (aipId != null) {
+            aipIds.add(aipId);
           }
         }
-      } catch (IOException e) {
-        LOGGER.error("Error getting objects to check permissions", e);
       }
-    } else if (selected instanceof SelectedItemsList) {
-      SelectedItemsList<T> selectedItems = (SelectedItemsList<T>) selected;
 
-      List<IndexedAIP> aips = new ArrayList<>();
-      for (String uuid : selectedItems.getIds()) {
-        T obj;
-        try {
-          obj = index.retrieve(classToReturn, uuid, fieldsToRequestIndex);
-          String aipId = toAIP.apply(obj);
-          IndexedAIP aip = index.retrieve(IndexedAIP.class, aipId, RodaConstants.AIP_PERMISSIONS_FIELDS_TO_RETURN);
-          aips.add(aip);
-        } catch (NotFoundException e) {
+      for (List<String> chunk : Lists.partition(new ArrayList<>(aipIds), PERMISSIONS_CHECK_BATCH_SIZE)) {
+        List<IndexedAIP> aips = retrieveChunk(IndexedAIP.class, chunk, RodaConstants.AIP_PERMISSIONS_FIELDS_TO_RETURN);
+        if (aips.size() < chunk.size()) {
           // conservative approach
           throw new AuthorizationDeniedException(
-            "Could not verify permissions of object [" + classToReturn.getSimpleName() + "] " + uuid, e);
+            "Could not verify permissions of objects in AIPs " + getMissingIds(chunk, aips));
         }
 
-      }
-
-      for (IndexedAIP aip : aips) {
-        checkAIPPermissions(user, aip, permission);
+        for (IndexedAIP aip : aips) {
+          checkAIPPermissions(user, aip, permission);
+        }
       }
     } else {
       throw new RequestNotValidException(
@@ -547,15 +531,62 @@ public class UserUtility {
     }
   }
 
+  /**
+   * Checks the permissions of a filter selection without retrieving it, by
+   * comparing the number of selected objects with the number of those the user
+   * has permissions on.
+   */
+  private static <T extends IsIndexed> void checkPermissionsByCount(User user, SelectedItemsFilter<T> selected,
+    Class<T> classToReturn, PermissionType permission)
+    throws AuthorizationDeniedException, GenericException, RequestNotValidException {
+    IndexService index = RodaCoreFactory.getIndexService();
+
+    List<FilterParameter> permissionParameters = new ArrayList<>();
+    permissionParameters
+      .add(new SimpleFilterParameter(RodaConstants.INDEX_PERMISSION_USERS_PREFIX + permission, user.getId()));
+    if (!user.getGroups().isEmpty()) {
+      permissionParameters.add(new OneOfManyFilterParameter(RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX + permission,
+        new ArrayList<>(user.getGroups())));
+    }
+
+    Filter permittedFilter = new Filter(selected.getFilter());
+    permittedFilter.add(new OrFiltersParameters(permissionParameters));
+
+    long selectedCount = index.count(classToReturn, selected.getFilter());
+    long permittedCount = selectedCount == 0 ? 0 : index.count(classToReturn, permittedFilter);
+
+    LOGGER.debug("Checking if user '{}' has permissions to {} {} objects ({} allowed)", user.getId(), permission,
+      selectedCount, permittedCount);
+
+    if (permittedCount < selectedCount) {
+      throw new AuthorizationDeniedException(
+        "The user '" + user.getId() + "' does not have permissions to " + permission);
+    }
+  }
+
+  private static <T extends IsIndexed> List<T> retrieveChunk(Class<T> classToReturn, List<String> uuids,
+    List<String> fieldsToReturn) throws GenericException, RequestNotValidException {
+    Filter filter = new Filter(new OneOfManyFilterParameter(RodaConstants.INDEX_UUID, uuids));
+    return RodaCoreFactory.getIndexService()
+      .find(classToReturn, filter, null, new Sublist(0, uuids.size()), fieldsToReturn).getResults();
+  }
+
+  private static <T extends IsIndexed> Set<String> getMissingIds(List<String> uuids, List<T> found) {
+    Set<String> missing = new HashSet<>(uuids);
+    for (T obj : found) {
+      missing.remove(obj.getUUID());
+    }
+    return missing;
+  }
+
   public static void checkRepresentationPermissions(User user, SelectedItems<IndexedRepresentation> selected,
     PermissionType permission) throws AuthorizationDeniedException, GenericException, RequestNotValidException {
-    checkObjectPermissions(user, selected, rep -> rep.getAipId(), permission,
-      RodaConstants.REPRESENTATION_FIELDS_TO_RETURN);
+    checkObjectPermissions(user, selected, rep -> rep.getAipId(), RodaConstants.REPRESENTATION_AIP_ID, permission);
   }
 
   public static void checkFilePermissions(User user, SelectedItems<IndexedFile> selected, PermissionType permission)
     throws AuthorizationDeniedException, GenericException, RequestNotValidException {
-    checkObjectPermissions(user, selected, file -> file.getAipId(), permission, RodaConstants.FILE_FIELDS_TO_RETURN);
+    checkObjectPermissions(user, selected, file -> file.getAipId(), RodaConstants.FILE_AIP_ID, permission);
   }
 
   public static User resetGroupsAndRoles(User user) {
@@ -197,6 +197,22 @@ public final class CloseableIterables {
     };
   }
 
+  public static <A, B> CloseableIterable<B> transform(final CloseableIterable<A> iterable,
+    final Function<? super A, ? extends B> function) {
+    return new CloseableIterable<B>() {
+
+      @Override
+      public void close() throws IOException {
+        iterable.close();
+      }
+
+      @Override
+      public Iterator<B> iterator() {
+        return Iterators.transform(iterable.iterator(), function::apply);
+      }
+    };
+  }
+
   public static <T> boolean isEmpty(CloseableIterable<T> it) {
     boolean empty = Iterables.isEmpty(it);
     IOUtils.closeQuietly(it);
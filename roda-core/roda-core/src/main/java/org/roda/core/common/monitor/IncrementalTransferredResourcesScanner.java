@@ -0,0 +1,712 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.monitor;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.NotSimpleFilterParameter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.index.IndexService;
+import org.roda.core.index.utils.SolrUtils;
+import org.roda.core.util.IdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the transferred resources index up to date by indexing only the
+ * entries that were created, modified or deleted.
+ *
+ * Changes are detected with a {@link WatchService} and, as a safety net for
+ * lost events and for changes made while RODA was down, by periodically
+ * comparing the transfer area with a snapshot of the last scan. The snapshot is
+ * persisted so that a restart only indexes what changed in the meantime. A
+ * repair (the manual update) indexes everything under a folder again, in case
+ * the index and the snapshot no longer match.
+ * Folder sizes are kept up to date by propagating the size difference of each
+ * changed file to its ancestors.
+ */
+public class IncrementalTransferredResourcesScanner implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalTransferredResourcesScanner.class);
+
+  private static final long WATCH_POLL_TIMEOUT_IN_MILLIS = 2000;
+  private static final String SNAPSHOT_SEPARATOR = "\t";
+
+  private final Path basePath;
+  private final Path snapshotPath;
+  private final IndexService index;
+  private final int batchSize;
+  private final int scanThreads;
+  private final long reconciliationIntervalInMinutes;
+
+  /**
+   * relative path -> last scanned state, sorted so that the contents of a
+   * folder are between "folder/" and "folder0" ('0' comes right after '/')
+   */
+  private final ConcurrentSkipListMap<String, ScanEntry> snapshot = new ConcurrentSkipListMap<>();
+  private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+  private final Object changesLock = new Object();
+  private final CountDownLatch initialized = new CountDownLatch(1);
+
+  private WatchService watchService;
+  private Thread watchThread;
+  private ScheduledExecutorService reconciliationExecutor;
+  private boolean watchLimitReached = false;
+  private volatile boolean running = false;
+
+  public IncrementalTransferredResourcesScanner(Path basePath, Path snapshotPath, IndexService index, int batchSize,
+    int scanThreads, long reconciliationIntervalInMinutes) {
+    this.basePath = basePath;
+    this.snapshotPath = snapshotPath;
+    this.index = index;
+    this.batchSize = Math.max(1, batchSize);
+    this.scanThreads = Math.max(1, scanThreads);
+    this.reconciliationIntervalInMinutes = reconciliationIntervalInMinutes;
+  }
+
+  /**
+   * Loads the persisted snapshot and starts watching for changes. The snapshot
+   * is reconciled with the transfer area in background, so that the startup
+   * does not wait for the transfer area to be walked.
+   */
+  public void start() throws IOException {
+    running = true;
+    boolean snapshotLoaded = loadSnapshot();
+    watchService = FileSystems.getDefault().newWatchService();
+
+    watchThread = new Thread(() -> {
+      initialize(snapshotLoaded);
+      watch();
+    }, "TransferredResourcesWatcher");
+    watchThread.setDaemon(true);
+    watchThread.start();
+
+    if (reconciliationIntervalInMinutes > 0) {
+      reconciliationExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "TransferredResourcesReconciliation");
+        thread.setDaemon(true);
+        return thread;
+      });
+      reconciliationExecutor.scheduleWithFixedDelay(this::reconcileQuietly, reconciliationIntervalInMinutes,
+        reconciliationIntervalInMinutes, TimeUnit.MINUTES);
+    }
+
+    LOGGER.info("Incremental transferred resources scanner started with {} known entries", snapshot.size());
+  }
+
+  private void initialize(boolean snapshotLoaded) {
+    try {
+      // watch before walking, so that nothing changed during the walk is missed
+      registerRecursively(basePath);
+      // first run: repair, to also remove documents left by previous full scans
+      reconcile(Optional.empty(), !snapshotLoaded);
+    } catch (IOException | GenericException | AuthorizationDeniedException | RuntimeException e) {
+      LOGGER.error("Error reconciling transferred resources", e);
+    } finally {
+      initialized.countDown();
+    }
+  }
+
+  /**
+   * Waits for the first reconciliation, started by {@link #start()}, to finish.
+   *
+   * @return true if it finished, false if the timeout elapsed.
+   */
+  public boolean awaitInitialization(long timeout, TimeUnit unit) throws InterruptedException {
+    return initialized.await(timeout, unit);
+  }
+
+  /**
+   * Walks the transfer area (or one of its folders) and compares it with the
+   * snapshot, indexing only the differences or, to repair the index, indexing
+   * every entry found and removing the documents of the ones not found.
+   */
+  public void reconcile(Optional<String> folderRelativePath, boolean repair)
+    throws IOException, GenericException, AuthorizationDeniedException {
+    long start = System.currentTimeMillis();
+    Path root = folderRelativePath.isPresent() ? basePath.resolve(folderRelativePath.get()) : basePath;
+    RodaCoreFactory.setTransferredResourcesScannerUpdateStatus(folderRelativePath, true);
+
+    try {
+      Map<String, ScanEntry> current = walk(root);
+
+      int changes;
+      synchronized (changesLock) {
+        // the watcher may have applied changes made after the walk
+        current.keySet().removeIf(relativePath -> !snapshot.containsKey(relativePath) && !exists(relativePath));
+        if (repair) {
+          changes = replaceSubtree(folderRelativePath, current);
+        } else {
+          Set<String> removals = new HashSet<>();
+          for (String relativePath : subtree(folderRelativePath).keySet()) {
+            if (!current.containsKey(relativePath) && !exists(relativePath)) {
+              removals.add(relativePath);
+            }
+          }
+          changes = applyChanges(current, removals);
+        }
+        persistSnapshot();
+      }
+
+      LOGGER.info("Reconciled transferred resources under {} in {} ms ({} index changes)", root,
+        System.currentTimeMillis() - start, changes);
+    } finally {
+      RodaCoreFactory.setTransferredResourcesScannerUpdateStatus(folderRelativePath, false);
+    }
+  }
+
+  private void reconcileQuietly() {
+    try {
+      reconcile(Optional.empty(), false);
+    } catch (IOException | GenericException | AuthorizationDeniedException | RuntimeException e) {
+      LOGGER.error("Error reconciling transferred resources", e);
+    }
+  }
+
+  private NavigableMap<String, ScanEntry> subtree(Optional<String> folderRelativePath) {
+    if (folderRelativePath.isPresent()) {
+      String prefix = folderRelativePath.get();
+      NavigableMap<String, ScanEntry> ret = new TreeMap<>(snapshot.subMap(prefix + "/", prefix + "0"));
+      ScanEntry folder = snapshot.get(prefix);
+      if (folder != null) {
+        ret.put(prefix, folder);
+      }
+      return ret;
+    } else {
+      return snapshot;
+    }
+  }
+
+  /**
+   * Walks a folder, processing each of its sub-folders in parallel.
+   */
+  private Map<String, ScanEntry> walk(Path root) throws IOException {
+    Map<String, ScanEntry> entries = new ConcurrentHashMap<>();
+    if (!Files.exists(root)) {
+      return entries;
+    }
+
+    if (!root.equals(basePath)) {
+      addEntry(entries, root, Files.readAttributes(root, BasicFileAttributes.class));
+    }
+
+    List<Path> children = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+      stream.forEach(children::add);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(scanThreads);
+    try {
+      pool.submit(() -> children.parallelStream().forEach(child -> walkSubtree(child, entries))).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while scanning " + root, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error scanning " + root, e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+
+    return entries;
+  }
+
+  private void walkSubtree(Path subtreeRoot, Map<String, ScanEntry> entries) {
+    try {
+      Files.walkFileTree(subtreeRoot, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            addEntry(entries, dir, attrs);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            addEntry(entries, file, attrs);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // can be a broken symlink or unauthorized (do nothing)
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    } catch (IOException e) {
+      LOGGER.warn("Error scanning transferred resources under {}", subtreeRoot, e);
+    }
+  }
+
+  private void addEntry(Map<String, ScanEntry> entries, Path path, BasicFileAttributes attrs) {
+    entries.put(relativize(path), new ScanEntry(attrs.isDirectory(), attrs.isDirectory() ? 0 : attrs.size(),
+      attrs.lastModifiedTime().toMillis(), attrs.creationTime().toMillis()));
+  }
+
+  private boolean exists(String relativePath) {
+    return Files.exists(basePath.resolve(relativePath));
+  }
+
+  private String relativize(Path path) {
+    return basePath.relativize(path).toString();
+  }
+
+  /**
+   * Applies the detected changes to the snapshot and to the index.
+   *
+   * @return the number of index documents created, updated or deleted.
+   */
+  private int applyChanges(Map<String, ScanEntry> upserts, Set<String> removals)
+    throws GenericException, AuthorizationDeniedException {
+    synchronized (changesLock) {
+      Set<String> toIndex = new HashSet<>();
+      List<String> toDelete = new ArrayList<>();
+
+      for (String relativePath : removals) {
+        ScanEntry removed = snapshot.remove(relativePath);
+        if (removed != null) {
+          toDelete.add(IdUtils.getTransferredResourceUUID(Paths.get(relativePath)));
+          if (removed.isDirectory()) {
+            NavigableMap<String, ScanEntry> children = snapshot.subMap(relativePath + "/", relativePath + "0");
+            for (String child : children.keySet()) {
+              toDelete.add(IdUtils.getTransferredResourceUUID(Paths.get(child)));
+            }
+            children.clear();
+          }
+          propagateSize(relativePath, -removed.getSize(), toIndex);
+        }
+      }
+
+      // parents sort before their children, so folders exist before sizes are
+      // propagated to them
+      for (Map.Entry<String, ScanEntry> upsert : new TreeMap<>(upserts).entrySet()) {
+        String relativePath = upsert.getKey();
+        ScanEntry entry = upsert.getValue();
+        ScanEntry previous = snapshot.get(relativePath);
+
+        if (entry.isDirectory()) {
+          if (previous == null || !previous.isDirectory()) {
+            snapshot.put(relativePath, entry);
+            toIndex.add(relativePath);
+            if (previous != null) {
+              propagateSize(relativePath, -previous.getSize(), toIndex);
+            }
+          } else if (previous.getLastModified() != entry.getLastModified()) {
+            snapshot.put(relativePath, entry.withSize(previous.getSize()));
+          }
+        } else if (previous == null || previous.isDirectory() || previous.getSize() != entry.getSize()
+          || previous.getLastModified() != entry.getLastModified()) {
+          long previousSize = previous == null ? 0 : previous.getSize();
+          snapshot.put(relativePath, entry);
+          toIndex.add(relativePath);
+          propagateSize(relativePath, entry.getSize() - previousSize, toIndex);
+        }
+      }
+
+      indexEntries(toIndex, new Date());
+      deleteEntries(toDelete);
+
+      if (!toIndex.isEmpty() || !toDelete.isEmpty()) {
+        index.commit(TransferredResource.class);
+      }
+
+      return toIndex.size() + toDelete.size();
+    }
+  }
+
+  /**
+   * Replaces the snapshot entries of a folder (or of the whole transfer area) by
+   * the walked ones, summing the sizes of their folders again, indexes all of
+   * them and removes the other documents under the folder from the index.
+   *
+   * @return the number of index documents created or updated.
+   */
+  private int replaceSubtree(Optional<String> folderRelativePath, Map<String, ScanEntry> current)
+    throws GenericException, AuthorizationDeniedException {
+    synchronized (changesLock) {
+      Date scanDate = new Date();
+      Map<String, ScanEntry> entries = withFolderSizes(current);
+      Filter staleFilter = new Filter(new NotSimpleFilterParameter(RodaConstants.TRANSFERRED_RESOURCE_LAST_SCAN_DATE,
+        SolrUtils.formatDateWithMillis(scanDate)));
+      Set<String> toIndex = new HashSet<>(entries.keySet());
+
+      if (folderRelativePath.isPresent()) {
+        String prefix = folderRelativePath.get();
+        ScanEntry previous = snapshot.remove(prefix);
+        ScanEntry replacement = entries.get(prefix);
+        snapshot.subMap(prefix + "/", prefix + "0").clear();
+        snapshot.putAll(entries);
+        propagateSize(prefix, (replacement == null ? 0 : replacement.getSize())
+          - (previous == null ? 0 : previous.getSize()), toIndex);
+        if (replacement == null) {
+          deleteEntries(Collections.singletonList(IdUtils.getTransferredResourceUUID(Paths.get(prefix))));
+        }
+        staleFilter.add(new SimpleFilterParameter(RodaConstants.TRANSFERRED_RESOURCE_ANCESTORS, prefix));
+      } else {
+        snapshot.clear();
+        snapshot.putAll(entries);
+      }
+
+      indexEntries(toIndex, scanDate);
+      index.commit(TransferredResource.class);
+      index.delete(TransferredResource.class, staleFilter);
+      index.commit(TransferredResource.class);
+      return toIndex.size();
+    }
+  }
+
+  /**
+   * @return the entries with the size of each folder set to the sum of the
+   *         sizes of the files under it.
+   */
+  private static Map<String, ScanEntry> withFolderSizes(Map<String, ScanEntry> entries) {
+    Map<String, Long> folderSizes = new HashMap<>();
+    for (Map.Entry<String, ScanEntry> entry : entries.entrySet()) {
+      if (!entry.getValue().isDirectory()) {
+        Path parent = Paths.get(entry.getKey()).getParent();
+        while (parent != null) {
+          folderSizes.merge(parent.toString(), entry.getValue().getSize(), Long::sum);
+          parent = parent.getParent();
+        }
+      }
+    }
+
+    Map<String, ScanEntry> ret = new HashMap<>();
+    entries.forEach((relativePath, entry) -> ret.put(relativePath,
+      entry.isDirectory() ? entry.withSize(folderSizes.getOrDefault(relativePath, 0L)) : entry));
+    return ret;
+  }
+
+  private void propagateSize(String relativePath, long delta, Set<String> toIndex) {
+    if (delta == 0) {
+      return;
+    }
+
+    Path parent = Paths.get(relativePath).getParent();
+    while (parent != null) {
+      String parentPath = parent.toString();
+      ScanEntry ancestor = snapshot.get(parentPath);
+      if (ancestor != null) {
+        snapshot.put(parentPath, ancestor.withSize(ancestor.getSize() + delta));
+        toIndex.add(parentPath);
+      }
+      parent = parent.getParent();
+    }
+  }
+
+  private void indexEntries(Set<String> relativePaths, Date scanDate) throws AuthorizationDeniedException {
+    List<TransferredResource> batch = new ArrayList<>();
+
+    for (String relativePath : relativePaths) {
+      ScanEntry entry = snapshot.get(relativePath);
+      if (entry != null) {
+        TransferredResource resource = TransferredResourcesScanner
+          .instantiateTransferredResource(basePath.resolve(relativePath), basePath);
+        resource.setFile(!entry.isDirectory());
+        resource.setSize(entry.getSize());
+        resource.setCreationDate(new Date(entry.getCreationTime()));
+        resource.setLastScanDate(scanDate);
+        batch.add(resource);
+
+        if (batch.size() >= batchSize) {
+          index.create(TransferredResource.class, batch);
+          batch = new ArrayList<>();
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      index.create(TransferredResource.class, batch);
+    }
+  }
+
+  private void deleteEntries(List<String> uuids) throws GenericException, AuthorizationDeniedException {
+    for (int i = 0; i < uuids.size(); i += batchSize) {
+      try {
+        index.delete(TransferredResource.class, uuids.subList(i, Math.min(uuids.size(), i + batchSize)));
+      } catch (RequestNotValidException e) {
+        LOGGER.error("Could not delete removed transferred resources from index", e);
+      }
+    }
+  }
+
+  /*
+   * Watching
+   * ___________________________________________________________________________
+   */
+
+  private void registerRecursively(Path root) {
+    try {
+      Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            register(dir);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    } catch (IOException e) {
+      LOGGER.warn("Could not watch transferred resources under {}", root, e);
+    }
+  }
+
+  private void register(Path dir) {
+    try {
+      WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      watchedDirectories.put(key, dir);
+    } catch (IOException e) {
+      if (!watchLimitReached) {
+        watchLimitReached = true;
+        LOGGER.warn("Could not watch {}, changes under it will only be found by periodic reconciliation", dir, e);
+      }
+    }
+  }
+
+  private void watch() {
+    Map<String, ScanEntry> upserts = new ConcurrentHashMap<>();
+    Set<String> removals = new HashSet<>();
+
+    while (running) {
+      try {
+        WatchKey key = watchService.poll(WATCH_POLL_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          if (handleEvents(key, upserts, removals)) {
+            upserts.clear();
+            removals.clear();
+            reconcileQuietly();
+            continue;
+          }
+        }
+
+        // flush when the batch is full or when events stop arriving
+        if ((key == null && (!upserts.isEmpty() || !removals.isEmpty()))
+          || upserts.size() + removals.size() >= batchSize) {
+          applyChanges(upserts, removals);
+          upserts.clear();
+          removals.clear();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running = false;
+      } catch (ClosedWatchServiceException e) {
+        running = false;
+      } catch (GenericException | AuthorizationDeniedException | RuntimeException e) {
+        LOGGER.error("Error indexing transferred resources changes", e);
+      }
+    }
+  }
+
+  /**
+   * @return true if events were lost and a full reconciliation is needed.
+   */
+  private boolean handleEvents(WatchKey key, Map<String, ScanEntry> upserts, Set<String> removals) {
+    Path dir = watchedDirectories.get(key);
+    boolean overflow = false;
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflow = true;
+      } else if (dir != null) {
+        Path path = dir.resolve((Path) event.context());
+        String relativePath = relativize(path);
+
+        if (event.kind() == ENTRY_DELETE) {
+          upserts.remove(relativePath);
+          removals.add(relativePath);
+        } else {
+          removals.remove(relativePath);
+          try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.isDirectory() && event.kind() == ENTRY_CREATE) {
+              registerRecursively(path);
+              walkSubtree(path, upserts);
+            } else {
+              addEntry(upserts, path, attrs);
+            }
+          } catch (NoSuchFileException e) {
+            removals.add(relativePath);
+          } catch (IOException e) {
+            LOGGER.debug("Could not read attributes of {}", path, e);
+          }
+        }
+      }
+    }
+
+    if (!key.reset()) {
+      watchedDirectories.remove(key);
+    }
+
+    return overflow;
+  }
+
+  /*
+   * Snapshot persistence
+   * ___________________________________________________________________________
+   */
+
+  private boolean loadSnapshot() {
+    if (!Files.exists(snapshotPath)) {
+      return false;
+    }
+
+    try (BufferedReader reader = new BufferedReader(
+      new InputStreamReader(new GZIPInputStream(Files.newInputStream(snapshotPath)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(SNAPSHOT_SEPARATOR, 5);
+        if (fields.length == 5) {
+          snapshot.put(fields[4], new ScanEntry("d".equals(fields[0]), Long.parseLong(fields[1]),
+            Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+        }
+      }
+      return true;
+    } catch (IOException | NumberFormatException e) {
+      LOGGER.warn("Could not load transferred resources scan snapshot, a full scan will be done", e);
+      snapshot.clear();
+      return false;
+    }
+  }
+
+  private void persistSnapshot() {
+    Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+    try {
+      try (BufferedWriter writer = new BufferedWriter(
+        new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+        for (Map.Entry<String, ScanEntry> e : snapshot.entrySet()) {
+          if (e.getKey().indexOf('\n') < 0) {
+            ScanEntry entry = e.getValue();
+            writer.write((entry.isDirectory() ? "d" : "f") + SNAPSHOT_SEPARATOR + entry.getSize() + SNAPSHOT_SEPARATOR
+              + entry.getLastModified() + SNAPSHOT_SEPARATOR + entry.getCreationTime() + SNAPSHOT_SEPARATOR
+              + e.getKey());
+            writer.newLine();
+          }
+        }
+      }
+      Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.error("Could not persist transferred resources scan snapshot", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    if (reconciliationExecutor != null) {
+      reconciliationExecutor.shutdownNow();
+    }
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOGGER.debug("Error closing transferred resources watch service", e);
+      }
+    }
+    if (watchThread != null) {
+      try {
+        watchThread.join(WATCH_POLL_TIMEOUT_IN_MILLIS * 2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (changesLock) {
+      persistSnapshot();
+    }
+  }
+
+  private static class ScanEntry {
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+    private final long creationTime;
+
+    ScanEntry(boolean directory, long size, long lastModified, long creationTime) {
+      this.directory = directory;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.creationTime = creationTime;
+    }
+
+    ScanEntry withSize(long newSize) {
+      return new ScanEntry(directory, newSize, lastModified, creationTime);
+    }
+
+    boolean isDirectory() {
+      return directory;
+    }
+
+    long getSize() {
+      return size;
+    }
+
+    long getLastModified() {
+      return lastModified;
+    }
+
+    long getCreationTime() {
+      return creationTime;
+    }
+  }
+}
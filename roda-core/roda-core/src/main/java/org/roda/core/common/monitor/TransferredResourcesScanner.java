@@ -10,6 +10,7 @@ package org.roda.core.common.monitor;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -59,6 +60,8 @@ public class TransferredResourcesScanner {
   private final Path basePath;
   private IndexService index;
   private NodeType nodeType;
+  private IncrementalTransferredResourcesScanner incrementalScanner = null;
+  private TransferredResourcesUploadManager uploadManager = null;
 
   public TransferredResourcesScanner(Path basePath, IndexService index, NodeType nodeType) {
     this.basePath = basePath;
@@ -74,6 +77,22 @@ public class TransferredResourcesScanner {
     return basePath;
   }
 
+  public void setIncrementalScanner(IncrementalTransferredResourcesScanner incrementalScanner) {
+    this.incrementalScanner = incrementalScanner;
+  }
+
+  public IncrementalTransferredResourcesScanner getIncrementalScanner() {
+    return incrementalScanner;
+  }
+
+  public void setUploadManager(TransferredResourcesUploadManager uploadManager) {
+    this.uploadManager = uploadManager;
+  }
+
+  public TransferredResourcesUploadManager getUploadManager() {
+    return uploadManager;
+  }
+
   public TransferredResource createFolder(String parentUUID, String folderName)
     throws GenericException, NotFoundException, AuthorizationDeniedException {
     Path parentPath;
@@ -134,6 +153,67 @@ public class TransferredResourcesScanner {
     }
   }
 
+  /**
+   * Moves an already assembled file (e.g. from a finished upload) into the
+   * transferred resources folder and indexes it. The file must be on the same
+   * file system so that it is moved, not copied.
+   */
+  public TransferredResource createFile(String parentUUID, String fileName, Path stagedFile, long size)
+    throws GenericException, NotFoundException, AlreadyExistsException, AuthorizationDeniedException {
+    Path parentPath;
+
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    if (StringUtils.isNotBlank(parentUUID)) {
+      TransferredResource parent = index.retrieve(TransferredResource.class, parentUUID, fieldsToReturn);
+      parentPath = basePath.resolve(parent.getRelativePath());
+    } else {
+      parentPath = basePath;
+    }
+
+    Path file = parentPath.resolve(fileName);
+    try {
+      try {
+        Files.createDirectories(parentPath);
+      } catch (FileAlreadyExistsException e) {
+        // do nothing and carry on
+      }
+
+      moveWithoutReplacing(stagedFile, file);
+      Date now = new Date();
+      TransferredResource resource = instantiateTransferredResource(file, basePath);
+      resource.setSize(size);
+      resource.setCreationDate(now);
+      resource.setLastScanDate(now);
+      index.create(TransferredResource.class, resource);
+      return resource;
+    } catch (FileAlreadyExistsException e) {
+      LOGGER.error("Cannot create file", e);
+      throw new AlreadyExistsException(file.toString());
+    } catch (IOException e) {
+      LOGGER.error("Cannot create file", e);
+      throw new GenericException("Cannot create file", e);
+    }
+  }
+
+  /**
+   * Moves a file, failing if the target exists even if it is created
+   * concurrently. An atomic move would silently replace it, so the file is
+   * hard linked to the target, which fails if it exists, and then removed.
+   */
+  private static void moveWithoutReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+    } catch (FileAlreadyExistsException e) {
+      throw e;
+    } catch (UnsupportedOperationException | FileSystemException e) {
+      LOGGER.debug("Could not link {}, moving it instead", source, e);
+      Files.move(source, target);
+      return;
+    }
+    Files.delete(source);
+  }
+
   public InputStream retrieveFile(String path) throws NotFoundException, RequestNotValidException, GenericException {
     InputStream ret;
     Path p = basePath.resolve(path);
@@ -239,8 +319,18 @@ public class TransferredResourcesScanner {
 
     if (!RodaCoreFactory.getTransferredResourcesScannerUpdateStatus(folderRelativePath)) {
       if (index != null) {
-        ReindexTransferredResourcesRunnable reindexRunnable = new ReindexTransferredResourcesRunnable(index, basePath,
-          folderRelativePath);
+        Runnable reindexRunnable;
+        if (incrementalScanner != null) {
+          reindexRunnable = () -> {
+            try {
+              incrementalScanner.reconcile(folderRelativePath, true);
+            } catch (IOException | GenericException | AuthorizationDeniedException e) {
+              LOGGER.error("Error reconciling transferred resources", e);
+            }
+          };
+        } else {
+          reindexRunnable = new ReindexTransferredResourcesRunnable(index, basePath, folderRelativePath);
+        }
 
         if (waitToFinish) {
           reindexRunnable.run();
@@ -0,0 +1,363 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.monitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.data.exceptions.AlreadyExistsException;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.data.v2.ip.TransferredResourceUpload;
+import org.roda.core.data.v2.ip.TransferredResourceUpload.Range;
+import org.roda.core.storage.fs.FSUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resumable, chunked, uploads to the transferred resources area.
+ *
+ * Each upload has its own folder in the staging area, holding the upload
+ * information and a data file with the final size. Chunks are written straight
+ * at their offset of the data file, skipping the bytes already received, and
+ * only accounted as received if their checksum matches, so they can arrive in
+ * any order (or be retried) without a failed retry overwriting bytes already
+ * received. When all bytes are received the whole file checksum is verified
+ * and the data file is moved (not copied) into the transfer folder, where it is
+ * indexed once. The staging area must therefore be on the same file system as
+ * the transfer folder but outside of it, so that partial uploads are never
+ * picked up by the scanners.
+ *
+ * Uploads that are not updated for a while are removed by a periodic cleaner.
+ */
+public class TransferredResourcesUploadManager implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransferredResourcesUploadManager.class);
+
+  private static final String UPLOAD_FILE = "upload.json";
+  private static final String UPLOAD_TEMP_FILE = "upload.json.tmp";
+  private static final String DATA_FILE = "data";
+  private static final String CHECKSUM_ALGORITHM = "SHA-256";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final TransferredResourcesScanner scanner;
+  private final Path uploadsPath;
+  private final long expirationInMillis;
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+  private ScheduledExecutorService cleaner = null;
+
+  public TransferredResourcesUploadManager(TransferredResourcesScanner scanner, Path uploadsPath,
+    int expirationInHours) {
+    this.scanner = scanner;
+    this.uploadsPath = uploadsPath;
+    this.expirationInMillis = TimeUnit.HOURS.toMillis(expirationInHours);
+  }
+
+  public void start(int cleanupIntervalInMinutes) throws IOException {
+    Files.createDirectories(uploadsPath);
+
+    if (cleanupIntervalInMinutes > 0) {
+      cleaner = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "TransferredResourcesUploadCleaner");
+        thread.setDaemon(true);
+        return thread;
+      });
+      cleaner.scheduleWithFixedDelay(this::removeExpiredUploads, 0, cleanupIntervalInMinutes, TimeUnit.MINUTES);
+    }
+  }
+
+  public TransferredResourceUpload createUpload(String parentUUID, String fileName, long size, String checksum,
+    String username) throws GenericException, RequestNotValidException {
+    if (StringUtils.isBlank(fileName) || fileName.contains("/") || fileName.contains("\\") || ".".equals(fileName)
+      || "..".equals(fileName)) {
+      throw new RequestNotValidException("Invalid file name: " + fileName);
+    }
+    if (size < 0) {
+      throw new RequestNotValidException("Invalid file size: " + size);
+    }
+
+    TransferredResourceUpload upload = new TransferredResourceUpload();
+    upload.setId(UUID.randomUUID().toString());
+    upload.setParentUUID(StringUtils.isNotBlank(parentUUID) ? parentUUID : null);
+    upload.setFileName(fileName);
+    upload.setSize(size);
+    upload.setChecksum(StringUtils.isNotBlank(checksum) ? checksum.toLowerCase() : null);
+    upload.setCreatedBy(username);
+    upload.setCreatedOn(new Date());
+    upload.setUpdatedOn(upload.getCreatedOn());
+
+    Path uploadPath = uploadsPath.resolve(upload.getId());
+    try {
+      Files.createDirectories(uploadPath);
+      // sparse on most file systems, chunks will fill it in
+      try (FileChannel channel = FileChannel.open(uploadPath.resolve(DATA_FILE), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE)) {
+        if (size > 0) {
+          channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+      }
+      writeUpload(upload);
+    } catch (IOException e) {
+      FSUtils.deletePathQuietly(uploadPath);
+      throw new GenericException("Could not create upload", e);
+    }
+
+    return upload;
+  }
+
+  public TransferredResourceUpload retrieveUpload(String uploadId) throws GenericException, NotFoundException {
+    synchronized (getLock(uploadId)) {
+      return readUpload(uploadId);
+    }
+  }
+
+  /**
+   * Writes a chunk at the given offset. The chunk is only accounted as received
+   * if the SHA-256 (hexadecimal) of its content matches the given checksum, if
+   * any, otherwise it must be sent again.
+   */
+  public TransferredResourceUpload uploadChunk(String uploadId, long offset, InputStream content, String checksum)
+    throws GenericException, NotFoundException, RequestNotValidException {
+    TransferredResourceUpload upload = retrieveUpload(uploadId);
+    if (offset < 0 || offset > upload.getSize()) {
+      throw new RequestNotValidException("Invalid offset " + offset + " for upload of size " + upload.getSize());
+    }
+
+    // the chunk is written straight into the data file, but never over bytes
+    // already received, so that a failed retry does not overwrite them
+    List<Range> receivedRanges = upload.getReceivedRanges();
+    MessageDigest digest = getDigest();
+    long written = 0;
+    try (FileChannel channel = FileChannel.open(getDataPath(uploadId), StandardOpenOption.WRITE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = content.read(buffer)) != -1) {
+        if (offset + written + read > upload.getSize()) {
+          throw new RequestNotValidException("Chunk goes beyond the size of the upload (" + upload.getSize() + ")");
+        }
+        digest.update(buffer, 0, read);
+        writeNotReceived(channel, buffer, read, offset + written, receivedRanges);
+        written += read;
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not write chunk of upload " + uploadId, e);
+    }
+
+    String chunkChecksum = toHex(digest.digest());
+    if (StringUtils.isNotBlank(checksum) && !chunkChecksum.equalsIgnoreCase(checksum)) {
+      throw new RequestNotValidException(
+        "Chunk checksum mismatch at offset " + offset + ", expected " + checksum + " but got " + chunkChecksum);
+    }
+
+    synchronized (getLock(uploadId)) {
+      // re-read as other chunks may have been received in the meantime
+      upload = readUpload(uploadId);
+      if (written > 0) {
+        upload.addReceivedRange(offset, written);
+      }
+      upload.setUpdatedOn(new Date());
+      writeUpload(upload);
+    }
+
+    return upload;
+  }
+
+  /**
+   * Writes the bytes of a buffer at the given position of the data file, except
+   * the ones in the (sorted) ranges already received.
+   */
+  private static void writeNotReceived(FileChannel channel, byte[] buffer, int length, long position,
+    List<Range> receivedRanges) throws IOException {
+    long start = position;
+    long end = position + length;
+    for (Range range : receivedRanges) {
+      if (range.getOffset() >= end) {
+        break;
+      }
+      if (range.getOffset() > start) {
+        write(channel, buffer, (int) (start - position), (int) (range.getOffset() - start), start);
+      }
+      start = Math.min(end, Math.max(start, range.getEnd()));
+    }
+    if (start < end) {
+      write(channel, buffer, (int) (start - position), (int) (end - start), start);
+    }
+  }
+
+  private static void write(FileChannel channel, byte[] buffer, int from, int length, long position)
+    throws IOException {
+    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, from, length);
+    long current = position;
+    while (byteBuffer.hasRemaining()) {
+      current += channel.write(byteBuffer, current);
+    }
+  }
+
+  /**
+   * Verifies that the whole file was received and matches the upload checksum,
+   * moves it to the transfer folder and indexes it.
+   */
+  public TransferredResource finishUpload(String uploadId) throws GenericException, NotFoundException,
+    RequestNotValidException, AlreadyExistsException, AuthorizationDeniedException {
+    TransferredResource resource;
+    synchronized (getLock(uploadId)) {
+      TransferredResourceUpload upload = readUpload(uploadId);
+      if (!upload.isComplete()) {
+        throw new RequestNotValidException("Upload " + uploadId + " is not complete, received "
+          + upload.getReceivedBytes() + " of " + upload.getSize() + " bytes");
+      }
+
+      Path dataPath = getDataPath(uploadId);
+      if (upload.getChecksum() != null) {
+        String fileChecksum = computeChecksum(dataPath);
+        if (!fileChecksum.equals(upload.getChecksum())) {
+          throw new RequestNotValidException(
+            "File checksum mismatch, expected " + upload.getChecksum() + " but got " + fileChecksum);
+        }
+      }
+
+      resource = scanner.createFile(upload.getParentUUID(), upload.getFileName(), dataPath, upload.getSize());
+      FSUtils.deletePathQuietly(uploadsPath.resolve(uploadId));
+      locks.remove(uploadId);
+    }
+    return resource;
+  }
+
+  public void deleteUpload(String uploadId) throws GenericException, NotFoundException {
+    synchronized (getLock(uploadId)) {
+      Path uploadPath = uploadsPath.resolve(uploadId);
+      if (!FSUtils.exists(uploadPath.resolve(UPLOAD_FILE))) {
+        throw new NotFoundException("Upload not found: " + uploadId);
+      }
+      FSUtils.deletePath(uploadPath);
+      locks.remove(uploadId);
+    }
+  }
+
+  public void removeExpiredUploads() {
+    long expirationDate = System.currentTimeMillis() - expirationInMillis;
+    try (DirectoryStream<Path> uploads = Files.newDirectoryStream(uploadsPath)) {
+      for (Path uploadPath : uploads) {
+        String uploadId = uploadPath.getFileName().toString();
+        synchronized (getLock(uploadId)) {
+          long lastUpdated;
+          try {
+            lastUpdated = readUpload(uploadId).getUpdatedOn().getTime();
+          } catch (GenericException | NotFoundException | RuntimeException e) {
+            // leftover of a failed creation
+            lastUpdated = Files.getLastModifiedTime(uploadPath).toMillis();
+          }
+
+          if (lastUpdated < expirationDate) {
+            LOGGER.info("Removing expired upload {}", uploadId);
+            FSUtils.deletePathQuietly(uploadPath);
+            locks.remove(uploadId);
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("Error removing expired uploads", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (cleaner != null) {
+      cleaner.shutdownNow();
+    }
+  }
+
+  private Object getLock(String uploadId) {
+    return locks.computeIfAbsent(uploadId, id -> new Object());
+  }
+
+  private Path getDataPath(String uploadId) {
+    return uploadsPath.resolve(uploadId).resolve(DATA_FILE);
+  }
+
+  private TransferredResourceUpload readUpload(String uploadId) throws GenericException, NotFoundException {
+    // upload ids are generated UUIDs, anything else could escape the staging area
+    try {
+      UUID.fromString(uploadId);
+    } catch (IllegalArgumentException e) {
+      throw new NotFoundException("Upload not found: " + uploadId);
+    }
+
+    Path uploadFile = uploadsPath.resolve(uploadId).resolve(UPLOAD_FILE);
+    if (!FSUtils.exists(uploadFile)) {
+      throw new NotFoundException("Upload not found: " + uploadId);
+    }
+    return JsonUtils.readObjectFromFile(uploadFile, TransferredResourceUpload.class);
+  }
+
+  private void writeUpload(TransferredResourceUpload upload) throws GenericException {
+    Path uploadPath = uploadsPath.resolve(upload.getId());
+    Path tempFile = uploadPath.resolve(UPLOAD_TEMP_FILE);
+    try {
+      Files.write(tempFile, JsonUtils.getJsonFromObject(upload).getBytes(StandardCharsets.UTF_8));
+      Files.move(tempFile, uploadPath.resolve(UPLOAD_FILE), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new GenericException("Could not save upload " + upload.getId(), e);
+    }
+  }
+
+  private static String computeChecksum(Path file) throws GenericException {
+    MessageDigest digest = getDigest();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not compute checksum of " + file, e);
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest getDigest() throws GenericException {
+    try {
+      return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new GenericException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -9,6 +9,7 @@ package org.roda.core.common.notifications;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,8 @@ public class EmailNotificationProcessor implements NotificationProcessor {
   private Map<String, Object> scope;
   private String templateName;
   private String localeString;
+  private boolean deferred = false;
+  private List<NotificationDelivery> deferredDeliveries = new ArrayList<>();
 
   public EmailNotificationProcessor(String templateName) {
     this.scope = new HashMap<>();
@@ -54,6 +57,18 @@ public class EmailNotificationProcessor implements NotificationProcessor {
     this.localeString = localeString;
   }
 
+  /**
+   * @param deferred
+   *          if true, the e-mails are sent in background by the
+   *          {@link NotificationDeliveryService} and retried if the mail server
+   *          is not available.
+   */
+  public EmailNotificationProcessor(String templateName, Map<String, Object> scope, boolean deferred) {
+    this.templateName = templateName;
+    this.scope = scope;
+    this.deferred = deferred;
+  }
+
   @Override
   public Notification processNotification(ModelService model, final Notification notification) {
     Notification processedNotification = new Notification(notification);
@@ -99,7 +114,11 @@ public class EmailNotificationProcessor implements NotificationProcessor {
       for (String recipient : recipients) {
         String modifiedBody = getUpdatedMessageBody(model, notification, recipient, template, scope);
         String host = RodaCoreFactory.getRodaConfigurationAsString("core", "email", "host");
-        if (StringUtils.isNotBlank(host)) {
+        if (StringUtils.isNotBlank(host) && deferred) {
+          LOGGER.debug("Enqueuing email ...");
+          deferredDeliveries.add(NotificationDelivery.email(processedNotification.getId(), recipient,
+            processedNotification.getFromUser(), processedNotification.getSubject(), modifiedBody));
+        } else if (StringUtils.isNotBlank(host)) {
           LOGGER.debug("Sending email ...");
           emailUtility.sendMail(recipient, modifiedBody);
           LOGGER.debug("Email sent");
@@ -110,12 +129,18 @@ public class EmailNotificationProcessor implements NotificationProcessor {
         }
       }
     } catch (IOException | MessagingException | GenericException e) {
+      deferredDeliveries.clear();
       processedNotification.setState(NotificationState.FAILED);
       LOGGER.debug("Error sending e-mail: {}", e.getMessage());
     }
     return processedNotification;
   }
 
+  @Override
+  public List<NotificationDelivery> getDeferredDeliveries() {
+    return deferredDeliveries;
+  }
+
   private String getUpdatedMessageBody(ModelService model, Notification notification, String recipient, String template,
     Map<String, Object> scopes) throws GenericException {
 
@@ -7,23 +7,11 @@
  */
 package org.roda.core.common.notifications;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.roda.core.RodaCoreFactory;
-import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.jobs.Job;
 import org.roda.core.data.v2.notifications.NotificationState;
@@ -38,10 +26,23 @@ public class HTTPNotificationProcessor implements NotificationProcessor {
 
   private String endpoint;
   private Map<String, Object> scope;
+  private boolean deferred;
+  private List<NotificationDelivery> deferredDeliveries = new ArrayList<>();
 
   public HTTPNotificationProcessor(String endpoint, Map<String, Object> scope) {
+    this(endpoint, scope, false);
+  }
+
+  /**
+   * @param deferred
+   *          if true, the notification is posted in background by the
+   *          {@link NotificationDeliveryService} and retried if the endpoint is
+   *          not available.
+   */
+  public HTTPNotificationProcessor(String endpoint, Map<String, Object> scope, boolean deferred) {
     this.endpoint = endpoint;
     this.scope = scope;
+    this.deferred = deferred;
   }
 
   @Override
@@ -51,10 +52,12 @@ public class HTTPNotificationProcessor implements NotificationProcessor {
       Job job = (Job) scope.get(JOB_KEY);
       String content = createNotificationContent(job);
       notification.setBody(content);
-      if (endpoint != null) {
+      if (endpoint != null && deferred) {
+        LOGGER.debug("Enqueuing HTTP notification ...");
+        deferredDeliveries.add(NotificationDelivery.http(notification.getId(), endpoint, content));
+      } else if (endpoint != null) {
         LOGGER.debug("Sending notification via HTTP ...");
-        int timeout = RodaCoreFactory.getRodaConfiguration().getInt(RodaConstants.NOTIFICATION_HTTP_TIMEOUT, 10000);
-        boolean success = post(endpoint, content, timeout);
+        boolean success = post(endpoint, content);
 
         if (success) {
           LOGGER.debug("Notification sent");
@@ -71,60 +74,24 @@ public class HTTPNotificationProcessor implements NotificationProcessor {
     return notification;
   }
 
+  @Override
+  public List<NotificationDelivery> getDeferredDeliveries() {
+    return deferredDeliveries;
+  }
+
   private String createNotificationContent(Job job) {
     // TODO: create content (XML?) from Job
     return JsonUtils.getJsonFromObject(job);
   }
 
-  private boolean post(String endpoint, String content, int timeout) {
+  private boolean post(String endpoint, String content) {
     boolean success = true;
-    RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout(timeout).setConnectTimeout(timeout)
-      .setConnectionRequestTimeout(timeout).build();
-
-    try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-      HttpPost httppost = new HttpPost(endpoint);
-      httppost.setConfig(requestConfig);
-      httppost
-        .setEntity(new StringEntity(content, ContentType.create("application/json", RodaConstants.DEFAULT_ENCODING)));
-
-      HttpResponse response = httpclient.execute(httppost);
-      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-        success = false;
-      } else {
-        HttpEntity entity = response.getEntity();
-        String responseTxt = processEntity(entity);
-        LOGGER.debug("HTTP response: {}", responseTxt);
-      }
-    } catch (IOException e) {
+    try {
+      NotificationDeliveryService.getInstance().post(endpoint, content);
+    } catch (IOException | IllegalArgumentException e) {
       LOGGER.debug("HTTP POST error: {}", e.getMessage());
       success = false;
     }
-
     return success;
   }
-
-  // FIXME 20160905 hsilva: is this method really needed? and, is this the best
-  // way to implement it (30 lines)?
-  private String processEntity(HttpEntity entity) {
-    String responseTxt = null;
-    if (entity != null) {
-      try (InputStream is = entity.getContent()) {
-        StringBuilder sb = new StringBuilder();
-        String line;
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
-          while ((line = br.readLine()) != null) {
-            sb.append(line);
-          }
-        } catch (IOException e) {
-          // do nothing
-        }
-
-        responseTxt = sb.toString();
-      } catch (UnsupportedOperationException | IOException e1) {
-        // do nothing
-      }
-    }
-    return responseTxt;
-  }
 }
@@ -0,0 +1,154 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.notifications;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.roda.core.util.IdUtils;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A message of a {@link org.roda.core.data.v2.notifications.Notification} that
+ * is waiting in the {@link NotificationDeliveryService} queue to be delivered
+ * to one recipient.
+ */
+public class NotificationDelivery implements Serializable {
+  private static final long serialVersionUID = 3208740581236592474L;
+
+  public enum Channel {
+    EMAIL, HTTP
+  }
+
+  private String id;
+  private String notificationId;
+  private Channel channel;
+  private String recipient;
+  private String fromUser;
+  private String subject;
+  private String content;
+  private int attempts = 0;
+  private Date nextAttempt;
+
+  public NotificationDelivery() {
+    super();
+  }
+
+  public NotificationDelivery(String notificationId, Channel channel, String recipient, String content) {
+    super();
+    this.id = IdUtils.createUUID();
+    this.notificationId = notificationId;
+    this.channel = channel;
+    this.recipient = recipient;
+    this.content = content;
+    this.nextAttempt = new Date();
+  }
+
+  public static NotificationDelivery email(String notificationId, String recipient, String fromUser, String subject,
+    String content) {
+    NotificationDelivery delivery = new NotificationDelivery(notificationId, Channel.EMAIL, recipient, content);
+    delivery.setFromUser(fromUser);
+    delivery.setSubject(subject);
+    return delivery;
+  }
+
+  public static NotificationDelivery http(String notificationId, String endpoint, String content) {
+    return new NotificationDelivery(notificationId, Channel.HTTP, endpoint, content);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getNotificationId() {
+    return notificationId;
+  }
+
+  public void setNotificationId(String notificationId) {
+    this.notificationId = notificationId;
+  }
+
+  public Channel getChannel() {
+    return channel;
+  }
+
+  public void setChannel(Channel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * @return the e-mail address or, for {@link Channel#HTTP}, the endpoint URL.
+   */
+  public String getRecipient() {
+    return recipient;
+  }
+
+  public void setRecipient(String recipient) {
+    this.recipient = recipient;
+  }
+
+  public String getFromUser() {
+    return fromUser;
+  }
+
+  public void setFromUser(String fromUser) {
+    this.fromUser = fromUser;
+  }
+
+  public String getSubject() {
+    return subject;
+  }
+
+  public void setSubject(String subject) {
+    this.subject = subject;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  public Date getNextAttempt() {
+    return nextAttempt;
+  }
+
+  public void setNextAttempt(Date nextAttempt) {
+    this.nextAttempt = nextAttempt;
+  }
+
+  /**
+   * @return the key of the batch this delivery belongs to, deliveries with the
+   *         same key are sent over the same connection.
+   */
+  @JsonIgnore
+  public String getBatchKey() {
+    return channel + " " + recipient;
+  }
+
+  @Override
+  public String toString() {
+    return "NotificationDelivery [id=" + id + ", notificationId=" + notificationId + ", channel=" + channel
+      + ", recipient=" + recipient + ", attempts=" + attempts + ", nextAttempt=" + nextAttempt + "]";
+  }
+}
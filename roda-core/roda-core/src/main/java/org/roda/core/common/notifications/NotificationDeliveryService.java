@@ -0,0 +1,412 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.notifications;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.common.ConfigurableEmailUtility;
+import org.roda.core.common.notifications.NotificationDelivery.Channel;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.notifications.Notification;
+import org.roda.core.data.v2.notifications.NotificationState;
+import org.roda.core.model.ModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers notification messages in background so that the job that created
+ * them does not wait for (or fail because of) a slow or unavailable mail server
+ * or HTTP endpoint.
+ *
+ * Each delivery is kept in a file of the queue folder until it succeeds or the
+ * maximum number of attempts is reached, so pending deliveries survive a
+ * restart. Failed attempts are retried with an exponential backoff. Deliveries
+ * to the same recipient are sent together by one worker, over one connection:
+ * HTTP connections come from a shared pool and each worker keeps its SMTP
+ * transport open between messages.
+ *
+ * The outcome is kept in the notification: it stays
+ * {@link NotificationState#CREATED} while deliveries are pending and becomes
+ * {@link NotificationState#COMPLETED} or {@link NotificationState#FAILED}
+ * afterwards.
+ */
+public class NotificationDeliveryService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDeliveryService.class);
+
+  private static final String CONFIG_PREFIX = "core.notification.delivery";
+  private static final int DEFAULT_THREADS = 2;
+  private static final int DEFAULT_MAX_ATTEMPTS = 10;
+  private static final int DEFAULT_BACKOFF_BASE_IN_SECONDS = 30;
+  private static final int DEFAULT_BACKOFF_MAX_IN_SECONDS = 21600;
+  private static final int DEFAULT_POLL_INTERVAL_IN_SECONDS = 30;
+  private static final int DEFAULT_HTTP_TIMEOUT = 10000;
+  private static final int SHUTDOWN_TIMEOUT_IN_SECONDS = 10;
+  private static final String DELIVERY_EXTENSION = ".json";
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  private static NotificationDeliveryService instance = null;
+
+  private final Path queueDirectory;
+  private final int maxAttempts;
+  private final long backoffBaseInMillis;
+  private final long backoffMaxInMillis;
+
+  private final Map<String, NotificationDelivery> deliveries = new ConcurrentHashMap<>();
+  private final Set<String> batchesInProgress = ConcurrentHashMap.newKeySet();
+  private final Map<Thread, Transport> transports = new ConcurrentHashMap<>();
+  private final Object notificationLock = new Object();
+
+  private final CloseableHttpClient httpClient;
+  private final ExecutorService workers;
+  private final ScheduledExecutorService dispatcher;
+
+  public NotificationDeliveryService(Path queueDirectory, int threads, int maxAttempts, long backoffBaseInMillis,
+    long backoffMaxInMillis, long pollIntervalInMillis, int httpTimeout) throws IOException {
+    int poolSize = Math.max(1, threads);
+    this.queueDirectory = queueDirectory;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.backoffBaseInMillis = Math.max(1, backoffBaseInMillis);
+    this.backoffMaxInMillis = Math.max(this.backoffBaseInMillis, backoffMaxInMillis);
+
+    Files.createDirectories(queueDirectory);
+    loadQueue();
+
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(poolSize * 2);
+    connectionManager.setDefaultMaxPerRoute(poolSize);
+    RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout(httpTimeout).setConnectTimeout(httpTimeout)
+      .setConnectionRequestTimeout(httpTimeout).build();
+    this.httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+      .setDefaultRequestConfig(requestConfig).build();
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+      Thread thread = new Thread(runnable, "notification-delivery-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "NotificationDeliveryDispatcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.dispatcher.scheduleWithFixedDelay(this::dispatch, 0, Math.max(1, pollIntervalInMillis),
+      TimeUnit.MILLISECONDS);
+
+    LOGGER.info("Started notification delivery service with {} workers and {} pending deliveries", poolSize,
+      deliveries.size());
+  }
+
+  public static synchronized NotificationDeliveryService getInstance() throws IOException {
+    if (instance == null) {
+      int threads = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_THREADS, CONFIG_PREFIX, "threads");
+      int maxAttempts = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_MAX_ATTEMPTS, CONFIG_PREFIX,
+        "max_attempts");
+      int backoffBase = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_BACKOFF_BASE_IN_SECONDS, CONFIG_PREFIX,
+        "backoff_base_in_seconds");
+      int backoffMax = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_BACKOFF_MAX_IN_SECONDS, CONFIG_PREFIX,
+        "backoff_max_in_seconds");
+      int pollInterval = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_POLL_INTERVAL_IN_SECONDS, CONFIG_PREFIX,
+        "poll_interval_in_seconds");
+      int httpTimeout = RodaCoreFactory.getRodaConfiguration().getInt(RodaConstants.NOTIFICATION_HTTP_TIMEOUT,
+        DEFAULT_HTTP_TIMEOUT);
+
+      Path queueDirectory = RodaCoreFactory.getDataPath().resolve(RodaConstants.CORE_NOTIFICATION_QUEUE_FOLDER);
+      instance = new NotificationDeliveryService(queueDirectory, threads, maxAttempts,
+        TimeUnit.SECONDS.toMillis(backoffBase), TimeUnit.SECONDS.toMillis(backoffMax),
+        TimeUnit.SECONDS.toMillis(pollInterval), httpTimeout);
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  /**
+   * Computes how long to wait before the next attempt, doubling the wait after
+   * each failed attempt up to the maximum.
+   */
+  public static long computeBackoff(int attempts, long baseInMillis, long maxInMillis) {
+    long delay = baseInMillis << Math.min(Math.max(attempts - 1, 0), 30);
+    return delay <= 0 ? maxInMillis : Math.min(delay, maxInMillis);
+  }
+
+  /**
+   * Persists the deliveries and schedules them to be sent as soon as possible.
+   */
+  public void enqueue(List<NotificationDelivery> newDeliveries) {
+    for (NotificationDelivery delivery : newDeliveries) {
+      try {
+        persist(delivery);
+      } catch (IOException e) {
+        LOGGER.warn("Could not persist notification delivery {}, it will be lost on restart", delivery.getId(), e);
+      }
+      deliveries.put(delivery.getId(), delivery);
+    }
+
+    if (!dispatcher.isShutdown()) {
+      dispatcher.execute(this::dispatch);
+    }
+  }
+
+  public List<NotificationDelivery> getPendingDeliveries() {
+    return new ArrayList<>(deliveries.values());
+  }
+
+  /**
+   * Sends the content to the endpoint using a pooled connection.
+   *
+   * @throws IOException
+   *           if the endpoint cannot be reached or does not accept the content.
+   */
+  public void post(String endpoint, String content) throws IOException {
+    HttpPost httppost = new HttpPost(endpoint);
+    httppost
+      .setEntity(new StringEntity(content, ContentType.create("application/json", RodaConstants.DEFAULT_ENCODING)));
+
+    try (CloseableHttpResponse response = httpClient.execute(httppost)) {
+      int statusCode = response.getStatusLine().getStatusCode();
+      // the connection only goes back to the pool when the response is consumed
+      EntityUtils.consume(response.getEntity());
+      if (statusCode != HttpStatus.SC_OK) {
+        throw new IOException("Endpoint answered with HTTP status " + statusCode);
+      }
+    }
+  }
+
+  private void dispatch() {
+    try {
+      long now = System.currentTimeMillis();
+      Map<String, List<NotificationDelivery>> batches = new LinkedHashMap<>();
+      for (NotificationDelivery delivery : deliveries.values()) {
+        String batchKey = delivery.getBatchKey();
+        if (delivery.getNextAttempt().getTime() <= now && !batchesInProgress.contains(batchKey)) {
+          batches.computeIfAbsent(batchKey, k -> new ArrayList<>()).add(delivery);
+        }
+      }
+
+      for (Entry<String, List<NotificationDelivery>> batch : batches.entrySet()) {
+        if (batchesInProgress.add(batch.getKey())) {
+          workers.execute(() -> deliverBatch(batch.getKey(), batch.getValue()));
+        }
+      }
+    } catch (RuntimeException e) {
+      // an exception would cancel the periodic dispatch
+      LOGGER.error("Error dispatching notification deliveries", e);
+    }
+  }
+
+  private void deliverBatch(String batchKey, List<NotificationDelivery> batch) {
+    try {
+      for (NotificationDelivery delivery : batch) {
+        String error = null;
+        try {
+          if (delivery.getChannel() == Channel.HTTP) {
+            post(delivery.getRecipient(), delivery.getContent());
+          } else {
+            sendEmail(delivery);
+          }
+        } catch (IOException | MessagingException | RuntimeException e) {
+          error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        onDeliveryAttempt(delivery, error);
+      }
+    } finally {
+      batchesInProgress.remove(batchKey);
+    }
+  }
+
+  private void sendEmail(NotificationDelivery delivery) throws MessagingException {
+    ConfigurableEmailUtility emailUtility = new ConfigurableEmailUtility(delivery.getFromUser(),
+      delivery.getSubject());
+
+    Thread worker = Thread.currentThread();
+    Transport transport = transports.get(worker);
+    if (transport == null || !transport.isConnected()) {
+      closeQuietly(transports.remove(worker));
+      transport = emailUtility.connect();
+      transports.put(worker, transport);
+    }
+
+    try {
+      emailUtility.sendMail(transport, delivery.getRecipient(), delivery.getContent());
+    } catch (MessagingException e) {
+      // the connection state is unknown, the next message opens a new one
+      closeQuietly(transports.remove(worker));
+      throw e;
+    }
+  }
+
+  private void onDeliveryAttempt(NotificationDelivery delivery, String error) {
+    delivery.setAttempts(delivery.getAttempts() + 1);
+    boolean failed = error != null && delivery.getAttempts() >= maxAttempts;
+
+    if (error == null || failed) {
+      deliveries.remove(delivery.getId());
+      try {
+        Files.deleteIfExists(getDeliveryPath(delivery.getId()));
+      } catch (IOException e) {
+        LOGGER.warn("Could not remove notification delivery {} from the queue", delivery.getId(), e);
+      }
+
+      if (failed) {
+        LOGGER.warn("Giving up notification delivery to {} after {} attempts: {}", delivery.getRecipient(),
+          delivery.getAttempts(), error);
+      }
+    } else {
+      long backoff = computeBackoff(delivery.getAttempts(), backoffBaseInMillis, backoffMaxInMillis);
+      delivery.setNextAttempt(new Date(System.currentTimeMillis() + backoff));
+      try {
+        persist(delivery);
+      } catch (IOException e) {
+        LOGGER.warn("Could not persist notification delivery {}", delivery.getId(), e);
+      }
+      LOGGER.debug("Notification delivery to {} failed ({}), retrying in {} ms", delivery.getRecipient(), error,
+        backoff);
+    }
+
+    updateNotification(delivery.getNotificationId(), error, failed);
+  }
+
+  private void updateNotification(String notificationId, String error, boolean failed) {
+    ModelService model = RodaCoreFactory.getModelService();
+    synchronized (notificationLock) {
+      try {
+        Notification notification = model.retrieveNotification(notificationId);
+        notification.setDeliveryAttempts(notification.getDeliveryAttempts() + 1);
+        notification.setLastDeliveryAttempt(new Date());
+        if (error != null) {
+          notification.setDeliveryError(error);
+        }
+
+        if (failed) {
+          notification.setState(NotificationState.FAILED);
+        } else if (error == null && notification.getState() == NotificationState.CREATED
+          && !hasPendingDeliveries(notificationId)) {
+          notification.setState(NotificationState.COMPLETED);
+        }
+
+        model.updateNotification(notification);
+      } catch (NotFoundException e) {
+        LOGGER.debug("Notification {} no longer exists", notificationId);
+      } catch (GenericException | AuthorizationDeniedException e) {
+        LOGGER.warn("Could not update delivery state of notification {}", notificationId, e);
+      }
+    }
+  }
+
+  private boolean hasPendingDeliveries(String notificationId) {
+    return deliveries.values().stream().anyMatch(delivery -> notificationId.equals(delivery.getNotificationId()));
+  }
+
+  private Path getDeliveryPath(String deliveryId) {
+    return queueDirectory.resolve(deliveryId + DELIVERY_EXTENSION);
+  }
+
+  private void persist(NotificationDelivery delivery) throws IOException {
+    Path deliveryPath = getDeliveryPath(delivery.getId());
+    Path tempPath = queueDirectory.resolve(delivery.getId() + DELIVERY_EXTENSION + TEMP_EXTENSION);
+    Files.write(tempPath, JsonUtils.getJsonFromObject(delivery).getBytes(StandardCharsets.UTF_8));
+    Files.move(tempPath, deliveryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void loadQueue() throws IOException {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(queueDirectory, "*" + DELIVERY_EXTENSION)) {
+      for (Path deliveryPath : stream) {
+        try (InputStream inputStream = Files.newInputStream(deliveryPath)) {
+          NotificationDelivery delivery = JsonUtils.getObjectFromJson(inputStream, NotificationDelivery.class);
+          if (delivery.getNextAttempt() == null) {
+            delivery.setNextAttempt(new Date());
+          }
+          deliveries.put(delivery.getId(), delivery);
+        } catch (GenericException | IOException e) {
+          LOGGER.warn("Ignoring unreadable notification delivery {}", deliveryPath, e);
+        }
+      }
+    }
+  }
+
+  private void closeQuietly(Transport transport) {
+    if (transport != null) {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        LOGGER.debug("Error closing SMTP transport", e);
+      }
+    }
+  }
+
+  /**
+   * Stops the workers and closes the connections. Pending deliveries stay in
+   * the queue folder.
+   */
+  public void shutdown() {
+    dispatcher.shutdownNow();
+    workers.shutdown();
+    try {
+      if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+        workers.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    for (Transport transport : transports.values()) {
+      closeQuietly(transport);
+    }
+    transports.clear();
+
+    try {
+      httpClient.close();
+    } catch (IOException e) {
+      LOGGER.debug("Error closing HTTP client", e);
+    }
+  }
+}
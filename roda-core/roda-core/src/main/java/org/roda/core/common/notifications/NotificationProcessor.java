@@ -7,10 +7,22 @@
  */
 package org.roda.core.common.notifications;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.roda.core.data.v2.notifications.Notification;
 import org.roda.core.model.ModelService;
 
 @FunctionalInterface
 public interface NotificationProcessor {
   public Notification processNotification(ModelService model, Notification notification);
+
+  /**
+   * @return the deliveries that the processor left to the
+   *         {@link NotificationDeliveryService}, to be enqueued once the
+   *         processed notification is stored.
+   */
+  default List<NotificationDelivery> getDeferredDeliveries() {
+    return Collections.emptyList();
+  }
 }
@@ -0,0 +1,536 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.common.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.roda.core.common.ConsumesSkipableOutputStream;
+import org.roda.core.common.iterables.CloseableIterable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A ZIP file whose entries are stored without compression, so that its exact
+ * size is known before it is written and any range of its bytes can be written
+ * on its own, e.g. to resume an interrupted download.
+ *
+ * The entries are iterated from their source as the ZIP is written, once to
+ * compute its size and again to write it, and only their CRCs are kept in
+ * memory. As the CRC of an entry is only known after reading it, it is written
+ * after the entry data (in a data descriptor) and in the central directory, so
+ * writing a range that ends in the central directory reads again the entries
+ * before the range, without writing them. ZIP64 records are used when the ZIP or
+ * one of its entries is bigger than 4 GB or it has 65535 entries or more. The
+ * local header of an entry of 4 GB or more has a ZIP64 extra field (with zero
+ * sizes, as they follow the data), so that readers that stream the ZIP expect
+ * its ZIP64 data descriptor. Other entries keep the plain local header.
+ *
+ * When the last modification time of every entry is known, the ZIP has an
+ * entity tag, a hash of the names, sizes and modification times of the
+ * entries, and the CRCs of a ZIP written whole are kept by its entity tag, so
+ * that later ranges of the same ZIP do not read the entries again.
+ */
+public class StoredZip implements ConsumesSkipableOutputStream {
+  private static final String ZIP_MEDIA_TYPE = "application/zip";
+
+  private static final int LOC_SIG = 0x04034b50;
+  private static final int EXT_SIG = 0x08074b50;
+  private static final int CEN_SIG = 0x02014b50;
+  private static final int END_SIG = 0x06054b50;
+  private static final int ZIP64_END_SIG = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+  private static final int LOC_SIZE = 30;
+  private static final int EXT_SIZE = 16;
+  private static final int ZIP64_EXT_SIZE = 24;
+  private static final int ZIP64_LOCAL_EXTRA_SIZE = 20;
+  private static final int CEN_SIZE = 46;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_END_SIZE = 56;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  private static final int VERSION = 20;
+  private static final int ZIP64_VERSION = 45;
+  // data descriptor and UTF-8 names
+  private static final int FILE_FLAGS = 0x0808;
+  private static final int DIRECTORY_FLAGS = 0x0800;
+  private static final int STORED = 0;
+  private static final int DIRECTORY_ATTRIBUTES = 0x10;
+  // entries are dated 1980-01-01, the first DOS date, so that the ZIP bytes
+  // only depend on the entries
+  private static final int DOS_TIME = 0;
+  private static final int DOS_DATE = (1 << 5) | 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String ENTITY_TAG_ALGORITHM = "SHA-256";
+  // at most 8 MB of CRCs
+  private static final long CRC_CACHE_MAX_ENTRIES = 1024L * 1024L;
+
+  private static final Cache<String, long[]> CRCS = CacheBuilder.newBuilder().maximumWeight(CRC_CACHE_MAX_ENTRIES)
+    .weigher((String entityTag, long[] crcs) -> crcs.length).expireAfterAccess(1, TimeUnit.HOURS).build();
+
+  /**
+   * The source of the ZIP entries, iterated each time the ZIP is written. The
+   * entries must have a known size.
+   */
+  @FunctionalInterface
+  public interface Entries {
+    CloseableIterable<ZipEntryInfo> iterate() throws IOException;
+  }
+
+  private final String fileName;
+  private final Entries entries;
+  private Layout layout = null;
+
+  public StoredZip(String fileName, Entries entries) {
+    this.fileName = fileName;
+    this.entries = entries;
+  }
+
+  @Override
+  public String getFileName() {
+    return fileName;
+  }
+
+  @Override
+  public String getMediaType() {
+    return ZIP_MEDIA_TYPE;
+  }
+
+  /**
+   * @return the last modification time of the most recent entry, or null if it
+   *         is unknown
+   */
+  @Override
+  public Date getLastModified() {
+    Layout zipLayout = getLayout();
+    return zipLayout == null || zipLayout.entityTag == null ? null : new Date(zipLayout.lastModified);
+  }
+
+  /**
+   * @return a hash of the names, sizes and modification times of the entries,
+   *         or null if the modification time of an entry is unknown
+   */
+  @Override
+  public String getEntityTag() {
+    Layout zipLayout = getLayout();
+    return zipLayout == null ? null : zipLayout.entityTag;
+  }
+
+  /**
+   * @return the exact size of the ZIP, computed from the names and sizes of the
+   *         entries, or -1 if the entries could not be listed
+   */
+  @Override
+  public long getSize() {
+    Layout zipLayout = getLayout();
+    return zipLayout == null ? -1 : zipLayout.size;
+  }
+
+  private synchronized Layout getLayout() {
+    if (layout == null) {
+      try {
+        layout = computeLayout();
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return layout;
+  }
+
+  @Override
+  public void consumeOutputStream(OutputStream out) throws IOException {
+    write(out, 0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public void consumeOutputStream(OutputStream out, long from, long len) throws IOException {
+    write(out, from, len);
+  }
+
+  private static class Layout {
+    private long entries = 0;
+    private long centralDirectoryOffset = 0;
+    private long centralDirectorySize = 0;
+    private long size = 0;
+    private long lastModified = 0;
+    private String entityTag = null;
+
+    private boolean isZip64() {
+      return entries >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC
+        || centralDirectorySize >= ZIP64_MAGIC;
+    }
+  }
+
+  private Layout computeLayout() throws IOException {
+    Layout ret = new Layout();
+    MessageDigest digest = getEntityTagDigest();
+    boolean hasEntityTag = true;
+    try (CloseableIterable<ZipEntryInfo> iterable = entries.iterate()) {
+      for (ZipEntryInfo entry : iterable) {
+        long entrySize = getEntrySize(entry);
+        byte[] name = getName(entry);
+        ret.centralDirectorySize += CEN_SIZE + name.length + getZip64ExtraSize(entrySize, ret.centralDirectoryOffset);
+        ret.centralDirectoryOffset += getLocalHeaderSize(name, entrySize) + entrySize
+          + getDataDescriptorSize(entry, entrySize);
+        ret.entries++;
+
+        if (!entry.isDirectory() && entry.getLastModified() < 0) {
+          hasEntityTag = false;
+        }
+        ret.lastModified = Math.max(ret.lastModified, entry.getLastModified());
+        digest.update(allocate(4 + name.length + 16).putInt(name.length).put(name).putLong(entrySize)
+          .putLong(entry.getLastModified()).array());
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    ret.size = ret.centralDirectoryOffset + ret.centralDirectorySize
+      + (ret.isZip64() ? ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE : 0) + END_SIZE;
+    if (hasEntityTag) {
+      ret.entityTag = String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+    return ret;
+  }
+
+  private static MessageDigest getEntityTagDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(ENTITY_TAG_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void write(OutputStream out, long from, long len) throws IOException {
+    Layout layout = computeLayout();
+    RangeOutputStream range = new RangeOutputStream(out, from, len);
+    long[] cachedCrcs = layout.entityTag == null ? null : CRCS.getIfPresent(layout.entityTag);
+    boolean crcsKnown = cachedCrcs != null && cachedCrcs.length == layout.entries;
+    long[] crcs = crcsKnown ? cachedCrcs : new long[(int) Math.min(layout.entries, Integer.MAX_VALUE)];
+    // whether the CRC of every entry is computed, so that they can be kept
+    boolean allCrcsComputed = !crcsKnown;
+    int index = 0;
+
+    // local headers, data and data descriptors
+    try (CloseableIterable<ZipEntryInfo> iterable = entries.iterate()) {
+      for (ZipEntryInfo entry : iterable) {
+        if (range.isDone() || index >= crcs.length) {
+          allCrcsComputed = false;
+          break;
+        }
+        long entrySize = getEntrySize(entry);
+        byte[] name = getName(entry);
+        range.write(localHeader(entry, name));
+
+        if (!entry.isDirectory()) {
+          int descriptorSize = getDataDescriptorSize(entry, entrySize);
+          // the CRC is needed by the data descriptor and the central directory
+          boolean needsCrc = !crcsKnown && (range.overlaps(range.position() + entrySize, descriptorSize)
+            || range.overlaps(layout.centralDirectoryOffset, layout.size - layout.centralDirectoryOffset));
+          if (needsCrc || range.overlaps(range.position(), entrySize)) {
+            long crc = writeData(range, entry, entrySize, needsCrc);
+            if (needsCrc) {
+              crcs[index] = crc;
+            }
+          } else {
+            range.skip(entrySize);
+          }
+          allCrcsComputed &= needsCrc;
+          range.write(dataDescriptor(crcs[index], entrySize));
+        }
+        index++;
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    if (range.isDone()) {
+      return;
+    }
+
+    // central directory
+    index = 0;
+    long offset = 0;
+    try (CloseableIterable<ZipEntryInfo> iterable = entries.iterate()) {
+      for (ZipEntryInfo entry : iterable) {
+        if (index >= crcs.length) {
+          break;
+        }
+        long entrySize = getEntrySize(entry);
+        byte[] name = getName(entry);
+        range.write(centralHeader(entry, name, entrySize, crcs[index], offset));
+        offset += getLocalHeaderSize(name, entrySize) + entrySize + getDataDescriptorSize(entry, entrySize);
+        index++;
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    if (offset != layout.centralDirectoryOffset || range.position() != layout.size - endSize(layout)) {
+      throw new IOException("The entries of " + fileName + " changed while it was written");
+    }
+    if (allCrcsComputed && layout.entityTag != null && index == layout.entries) {
+      CRCS.put(layout.entityTag, crcs);
+    }
+    range.write(end(layout));
+    range.flush();
+  }
+
+  private static long writeData(RangeOutputStream range, ZipEntryInfo entry, long entrySize, boolean needsCrc)
+    throws IOException {
+    CRC32 crc = new CRC32();
+    long start = range.position();
+    try (InputStream in = entry.getPayload().createInputStream()) {
+      if (!needsCrc && range.getFrom() > start) {
+        long skip = range.getFrom() - start;
+        IOUtils.skipFully(in, skip);
+        range.skip(skip);
+      }
+
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while (range.position() - start < entrySize && !(range.isDone() && !needsCrc)
+        && (read = in.read(buffer, 0, (int) Math.min(buffer.length, entrySize - (range.position() - start)))) != -1) {
+        crc.update(buffer, 0, read);
+        range.write(buffer, 0, read);
+      }
+    }
+
+    long written = range.position() - start;
+    if (written < entrySize && (needsCrc || !range.isDone())) {
+      throw new IOException("ZIP entry " + entry.getName() + " is shorter than " + entrySize + " bytes");
+    }
+    range.skip(entrySize - written);
+    return crc.getValue();
+  }
+
+  private static long getEntrySize(ZipEntryInfo entry) throws IOException {
+    if (entry.isDirectory()) {
+      return 0;
+    }
+    if (entry.getSize() < 0) {
+      throw new IOException("Size of ZIP entry " + entry.getName() + " is unknown");
+    }
+    return entry.getSize();
+  }
+
+  private static byte[] getName(ZipEntryInfo entry) {
+    return entry.getName().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int getLocalHeaderSize(byte[] name, long entrySize) {
+    return LOC_SIZE + name.length + (entrySize >= ZIP64_MAGIC ? ZIP64_LOCAL_EXTRA_SIZE : 0);
+  }
+
+  private static int getDataDescriptorSize(ZipEntryInfo entry, long entrySize) {
+    if (entry.isDirectory()) {
+      return 0;
+    }
+    return entrySize >= ZIP64_MAGIC ? ZIP64_EXT_SIZE : EXT_SIZE;
+  }
+
+  private static int getZip64ExtraSize(long entrySize, long offset) {
+    int fields = (entrySize >= ZIP64_MAGIC ? 2 : 0) + (offset >= ZIP64_MAGIC ? 1 : 0);
+    return fields > 0 ? 4 + 8 * fields : 0;
+  }
+
+  private static int endSize(Layout layout) {
+    return (layout.isZip64() ? ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE : 0) + END_SIZE;
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static byte[] localHeader(ZipEntryInfo entry, byte[] name) throws IOException {
+    long entrySize = getEntrySize(entry);
+    boolean zip64 = entrySize >= ZIP64_MAGIC;
+    ByteBuffer buffer = allocate(getLocalHeaderSize(name, entrySize));
+    buffer.putInt(LOC_SIG);
+    buffer.putShort((short) (zip64 ? ZIP64_VERSION : VERSION));
+    buffer.putShort((short) (entry.isDirectory() ? DIRECTORY_FLAGS : FILE_FLAGS));
+    buffer.putShort((short) STORED);
+    buffer.putShort((short) DOS_TIME);
+    buffer.putShort((short) DOS_DATE);
+    // CRC and sizes follow the data, in the data descriptor
+    buffer.putInt(0);
+    buffer.putInt((int) (zip64 ? ZIP64_MAGIC : 0));
+    buffer.putInt((int) (zip64 ? ZIP64_MAGIC : 0));
+    buffer.putShort((short) name.length);
+    buffer.putShort((short) (zip64 ? ZIP64_LOCAL_EXTRA_SIZE : 0));
+    buffer.put(name);
+
+    if (zip64) {
+      buffer.putShort((short) ZIP64_EXTRA_ID);
+      buffer.putShort((short) (ZIP64_LOCAL_EXTRA_SIZE - 4));
+      buffer.putLong(0);
+      buffer.putLong(0);
+    }
+    return buffer.array();
+  }
+
+  private static byte[] dataDescriptor(long crc, long entrySize) {
+    boolean zip64 = entrySize >= ZIP64_MAGIC;
+    ByteBuffer buffer = allocate(zip64 ? ZIP64_EXT_SIZE : EXT_SIZE);
+    buffer.putInt(EXT_SIG);
+    buffer.putInt((int) crc);
+    if (zip64) {
+      buffer.putLong(entrySize);
+      buffer.putLong(entrySize);
+    } else {
+      buffer.putInt((int) entrySize);
+      buffer.putInt((int) entrySize);
+    }
+    return buffer.array();
+  }
+
+  private static byte[] centralHeader(ZipEntryInfo entry, byte[] name, long entrySize, long crc, long offset) {
+    boolean zip64Size = entrySize >= ZIP64_MAGIC;
+    boolean zip64Offset = offset >= ZIP64_MAGIC;
+    int extraSize = getZip64ExtraSize(entrySize, offset);
+
+    ByteBuffer buffer = allocate(CEN_SIZE + name.length + extraSize);
+    buffer.putInt(CEN_SIG);
+    buffer.putShort((short) ZIP64_VERSION);
+    buffer.putShort((short) (extraSize > 0 ? ZIP64_VERSION : VERSION));
+    buffer.putShort((short) (entry.isDirectory() ? DIRECTORY_FLAGS : FILE_FLAGS));
+    buffer.putShort((short) STORED);
+    buffer.putShort((short) DOS_TIME);
+    buffer.putShort((short) DOS_DATE);
+    buffer.putInt((int) crc);
+    buffer.putInt((int) (zip64Size ? ZIP64_MAGIC : entrySize));
+    buffer.putInt((int) (zip64Size ? ZIP64_MAGIC : entrySize));
+    buffer.putShort((short) name.length);
+    buffer.putShort((short) extraSize);
+    // comment length, disk number and internal attributes
+    buffer.putShort((short) 0);
+    buffer.putShort((short) 0);
+    buffer.putShort((short) 0);
+    buffer.putInt(entry.isDirectory() ? DIRECTORY_ATTRIBUTES : 0);
+    buffer.putInt((int) (zip64Offset ? ZIP64_MAGIC : offset));
+    buffer.put(name);
+
+    if (extraSize > 0) {
+      buffer.putShort((short) ZIP64_EXTRA_ID);
+      buffer.putShort((short) (extraSize - 4));
+      if (zip64Size) {
+        buffer.putLong(entrySize);
+        buffer.putLong(entrySize);
+      }
+      if (zip64Offset) {
+        buffer.putLong(offset);
+      }
+    }
+    return buffer.array();
+  }
+
+  private static byte[] end(Layout layout) {
+    ByteBuffer buffer = allocate(endSize(layout));
+    if (layout.isZip64()) {
+      long zip64EndOffset = layout.centralDirectoryOffset + layout.centralDirectorySize;
+      buffer.putInt(ZIP64_END_SIG);
+      buffer.putLong(ZIP64_END_SIZE - 12L);
+      buffer.putShort((short) ZIP64_VERSION);
+      buffer.putShort((short) ZIP64_VERSION);
+      buffer.putInt(0);
+      buffer.putInt(0);
+      buffer.putLong(layout.entries);
+      buffer.putLong(layout.entries);
+      buffer.putLong(layout.centralDirectorySize);
+      buffer.putLong(layout.centralDirectoryOffset);
+
+      buffer.putInt(ZIP64_LOCATOR_SIG);
+      buffer.putInt(0);
+      buffer.putLong(zip64EndOffset);
+      buffer.putInt(1);
+    }
+
+    buffer.putInt(END_SIG);
+    buffer.putShort((short) 0);
+    buffer.putShort((short) 0);
+    buffer.putShort((short) Math.min(layout.entries, ZIP64_MAGIC_COUNT));
+    buffer.putShort((short) Math.min(layout.entries, ZIP64_MAGIC_COUNT));
+    buffer.putInt((int) Math.min(layout.centralDirectorySize, ZIP64_MAGIC));
+    buffer.putInt((int) Math.min(layout.centralDirectoryOffset, ZIP64_MAGIC));
+    buffer.putShort((short) 0);
+    return buffer.array();
+  }
+
+  /**
+   * Writes only the bytes that fall in a range of the positions of what is
+   * written to it.
+   */
+  private static class RangeOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final long from;
+    private final long to;
+    private long position = 0;
+
+    RangeOutputStream(OutputStream out, long from, long len) {
+      this.out = out;
+      this.from = from;
+      this.to = len > Long.MAX_VALUE - from ? Long.MAX_VALUE : from + len;
+    }
+
+    long getFrom() {
+      return from;
+    }
+
+    long position() {
+      return position;
+    }
+
+    boolean isDone() {
+      return position >= to;
+    }
+
+    boolean overlaps(long start, long length) {
+      return start < to && start + length > from;
+    }
+
+    void skip(long length) {
+      position += length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      long start = Math.max(position, from);
+      long end = Math.min(position + len, to);
+      if (start < end) {
+        out.write(b, off + (int) (start - position), (int) (end - start));
+      }
+      position += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+  }
+}
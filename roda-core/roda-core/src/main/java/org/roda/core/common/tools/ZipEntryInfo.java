@@ -24,6 +24,10 @@ public class ZipEntryInfo {
 
   private final ContentPayload payload;
 
+  private final long size;
+
+  private final long lastModified;
+
   /**
    * Create a new zip entry info
    * 
@@ -42,8 +46,37 @@ public class ZipEntryInfo {
    * @param payload
    */
   public ZipEntryInfo(String name, ContentPayload payload) {
+    this(name, payload, -1);
+  }
+
+  /**
+   * Create a new zip entry info of known size, a directory if the name ends
+   * with a slash (and then without payload)
+   * 
+   * @param name
+   * @param payload
+   * @param size
+   *          the size in bytes, or -1 if unknown
+   */
+  public ZipEntryInfo(String name, ContentPayload payload, long size) {
+    this(name, payload, size, -1);
+  }
+
+  /**
+   * Create a new zip entry info of known size and last modification time
+   * 
+   * @param name
+   * @param payload
+   * @param size
+   *          the size in bytes, or -1 if unknown
+   * @param lastModified
+   *          the last modification time in milliseconds, or -1 if unknown
+   */
+  public ZipEntryInfo(String name, ContentPayload payload, long size, long lastModified) {
     this.name = name;
     this.payload = payload;
+    this.size = size;
+    this.lastModified = lastModified;
   }
 
   /**
@@ -59,4 +92,22 @@ public class ZipEntryInfo {
     return payload;
   }
 
+  /**
+   * @return the size in bytes, or -1 if unknown
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return the last modification time in milliseconds, or -1 if unknown
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public boolean isDirectory() {
+    return name.endsWith("/");
+  }
+
 }
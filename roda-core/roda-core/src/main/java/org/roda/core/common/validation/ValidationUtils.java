@@ -16,11 +16,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.Source;
 import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.Validator;
 
@@ -47,12 +48,13 @@ import org.roda.core.storage.Binary;
 import org.roda.core.storage.ContentPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
  * 
@@ -71,6 +73,16 @@ import org.xml.sax.helpers.XMLReaderFactory;
 public class ValidationUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(ValidationUtils.class);
 
+  private static final EntityResolver ENTITY_RESOLVER = new RodaEntityResolver();
+  private static final Map<Schema, ThreadLocal<Validator>> VALIDATORS = new ConcurrentHashMap<>();
+  private static final SAXParserFactory SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+  private static final ThreadLocal<SAXParser> SAX_PARSERS = new ThreadLocal<>();
+
+  static {
+    SAX_PARSER_FACTORY.setValidating(false);
+    SAX_PARSER_FACTORY.setNamespaceAware(true);
+  }
+
   /** Private empty constructor */
   private ValidationUtils() {
     // do nothing
@@ -140,21 +152,28 @@ public class ValidationUtils {
   }
 
   public static ValidationReport isXMLValid(ContentPayload xmlPayload) {
-    ValidationReport ret = new ValidationReport();
-
-    SAXParserFactory factory = SAXParserFactory.newInstance();
-    factory.setValidating(false);
-    factory.setNamespaceAware(true);
+    try (InputStream inputStream = xmlPayload.createInputStream()) {
+      return isXMLValid(inputStream);
+    } catch (IOException e) {
+      ValidationReport ret = new ValidationReport();
+      ret.setValid(false);
+      ret.setMessage(e.getMessage());
+      return ret;
+    }
+  }
 
+  /**
+   * Checks if the XML read from the stream is well formed, without buffering
+   * it. The stream is not closed.
+   */
+  public static ValidationReport isXMLValid(InputStream inputStream) {
+    ValidationReport ret = new ValidationReport();
     RodaErrorHandler errorHandler = new RodaErrorHandler();
 
-    try (Reader reader = new InputStreamReader(new BOMInputStream(xmlPayload.createInputStream()))) {
-      XMLReader xmlReader = XMLReaderFactory.createXMLReader();
-      xmlReader.setEntityResolver(new RodaEntityResolver());
-      InputSource inputSource = new InputSource(reader);
-
-      xmlReader.setErrorHandler(errorHandler);
-      xmlReader.parse(inputSource);
+    try {
+      Reader reader = new InputStreamReader(new BOMInputStream(inputStream));
+      XMLReader xmlReader = getXMLReader(ENTITY_RESOLVER, errorHandler);
+      xmlReader.parse(new InputSource(reader));
       ret.setValid(errorHandler.getErrors().isEmpty());
       for (SAXParseException saxParseException : errorHandler.getErrors()) {
         ret.addIssue(convertSAXParseException(saxParseException));
@@ -265,55 +284,49 @@ public class ValidationUtils {
    */
   public static ValidationReport validateDescriptiveBinary(ContentPayload descriptiveMetadataPayload,
     String descriptiveMetadataType, String descriptiveMetadataVersion, boolean failIfNoSchema) {
-    ValidationReport ret = new ValidationReport();
-    Optional<Schema> xmlSchema = RodaCoreFactory.getRodaSchema(descriptiveMetadataType, descriptiveMetadataVersion);
-
-    try {
-      if (xmlSchema.isPresent()) {
-        RodaErrorHandler errorHandler = new RodaErrorHandler();
-
-        try (InputStreamReader inputStreamReader = new InputStreamReader(
-          new BOMInputStream(descriptiveMetadataPayload.createInputStream()))) {
-
-          XMLReader xmlReader = XMLReaderFactory.createXMLReader();
-          xmlReader.setEntityResolver(new RodaEntityResolver());
-          InputSource inputSource = new InputSource(inputStreamReader);
-          Source source = new SAXSource(xmlReader, inputSource);
-
-          Validator validator = xmlSchema.get().newValidator();
-          validator.setErrorHandler(errorHandler);
-          validator.validate(source);
-          ret.setValid(errorHandler.getErrors().isEmpty());
-          for (SAXParseException saxParseException : errorHandler.getErrors()) {
-            ret.addIssue(convertSAXParseException(saxParseException));
-          }
-        } catch (SAXException e) {
-          LOGGER.debug("Error validating descriptive binary " + descriptiveMetadataType, e);
-          ret.setValid(false);
-          for (SAXParseException saxParseException : errorHandler.getErrors()) {
-            ret.addIssue(convertSAXParseException(saxParseException));
-          }
-        }
-      } else {
-        if (failIfNoSchema) {
-          LOGGER.error(
-            "Will fail validating descriptive metadata with type '{}' and version '{}' because couldn't find its schema",
-            descriptiveMetadataType, descriptiveMetadataVersion);
-          ret.setValid(false);
-          ret.setMessage("No schema to validate " + descriptiveMetadataType);
-        } else {
-          LOGGER.debug("Found no schema do validate descriptive metadata but will try to validate XML syntax...");
-          ret = isXMLValid(descriptiveMetadataPayload);
-        }
-      }
+    try (InputStream inputStream = descriptiveMetadataPayload.createInputStream()) {
+      return validateDescriptiveStream(inputStream, descriptiveMetadataType, descriptiveMetadataVersion,
+        failIfNoSchema);
     } catch (IOException e) {
       LOGGER.error("Error validating descriptive metadata", e);
+      ValidationReport ret = new ValidationReport();
       ret.setValid(false);
       ret.setMessage(e.getMessage());
+      return ret;
     }
+  }
 
-    return ret;
+  /**
+   * Validates descriptive medatada read from a stream, which is validated as it
+   * is read (i.e. the document is never buffered). The stream is not closed.
+   * 
+   * @param descriptiveMetadataType
+   * @param failIfNoSchema
+   */
+  public static ValidationReport validateDescriptiveStream(InputStream inputStream, String descriptiveMetadataType,
+    String descriptiveMetadataVersion, boolean failIfNoSchema) {
+    ValidationReport ret;
+    Optional<Schema> xmlSchema = RodaCoreFactory.getRodaSchema(descriptiveMetadataType, descriptiveMetadataVersion);
+
+    if (xmlSchema.isPresent()) {
+      InputSource inputSource = new InputSource(new InputStreamReader(new BOMInputStream(inputStream)));
+      ret = validate(xmlSchema.get(), inputSource, ENTITY_RESOLVER);
+      if (!ret.isValid()) {
+        LOGGER.debug("Descriptive metadata is not valid according to {}", descriptiveMetadataType);
+      }
+    } else if (failIfNoSchema) {
+      LOGGER.error(
+        "Will fail validating descriptive metadata with type '{}' and version '{}' because couldn't find its schema",
+        descriptiveMetadataType, descriptiveMetadataVersion);
+      ret = new ValidationReport();
+      ret.setValid(false);
+      ret.setMessage("No schema to validate " + descriptiveMetadataType);
+    } else {
+      LOGGER.debug("Found no schema do validate descriptive metadata but will try to validate XML syntax...");
+      ret = isXMLValid(inputStream);
+    }
 
+    return ret;
   }
 
   /**
@@ -324,32 +337,28 @@ public class ValidationUtils {
    * @param failIfNoSchema
    */
   public static ValidationReport validatePreservationBinary(Binary binary, boolean failIfNoSchema) {
+    try (InputStream inputStream = binary.getContent().createInputStream()) {
+      return validatePreservationStream(inputStream, failIfNoSchema);
+    } catch (IOException e) {
+      ValidationReport report = new ValidationReport();
+      report.setValid(false);
+      report.setMessage(e.getMessage());
+      return report;
+    }
+  }
+
+  /**
+   * Validates preservation medatada read from a stream, without buffering it.
+   * The stream is not closed.
+   *
+   * @param failIfNoSchema
+   */
+  public static ValidationReport validatePreservationStream(InputStream inputStream, boolean failIfNoSchema) {
     ValidationReport report = new ValidationReport();
     Optional<Schema> xmlSchema = RodaCoreFactory.getRodaSchema("premis-v2-0", null);
 
     if (xmlSchema.isPresent()) {
-      try (InputStream inputStream = binary.getContent().createInputStream()) {
-        Source xmlFile = new StreamSource(inputStream);
-        Validator validator = xmlSchema.get().newValidator();
-        RodaErrorHandler errorHandler = new RodaErrorHandler();
-        validator.setErrorHandler(errorHandler);
-        try {
-          validator.validate(xmlFile);
-          report.setValid(errorHandler.getErrors().isEmpty());
-          for (SAXParseException saxParseException : errorHandler.getErrors()) {
-            report.addIssue(convertSAXParseException(saxParseException));
-          }
-        } catch (SAXException e) {
-          LOGGER.error("Error validating preservation binary " + binary.getStoragePath(), e);
-          report.setValid(false);
-          for (SAXParseException saxParseException : errorHandler.getErrors()) {
-            report.addIssue(convertSAXParseException(saxParseException));
-          }
-        }
-      } catch (IOException e) {
-        report.setValid(false);
-        report.setMessage(e.getMessage());
-      }
+      report = validate(xmlSchema.get(), new InputSource(inputStream), null);
     } else if (failIfNoSchema) {
       report.setValid(false);
       report.setMessage("No schema to validate PREMIS");
@@ -358,6 +367,86 @@ public class ValidationUtils {
     return report;
   }
 
+  /**
+   * Validates the XML read from the stream against the schema, reusing the
+   * validator and parser of the current thread. The stream is not closed.
+   */
+  public static ValidationReport validate(Schema schema, InputStream inputStream) {
+    return validate(schema, new InputSource(new InputStreamReader(new BOMInputStream(inputStream))), ENTITY_RESOLVER);
+  }
+
+  private static ValidationReport validate(Schema schema, InputSource inputSource, EntityResolver entityResolver) {
+    ValidationReport ret = new ValidationReport();
+    RodaErrorHandler errorHandler = new RodaErrorHandler();
+
+    try {
+      Validator validator = getValidator(schema);
+      validator.setErrorHandler(errorHandler);
+      validator.validate(new SAXSource(getXMLReader(entityResolver, errorHandler), inputSource));
+      ret.setValid(errorHandler.getErrors().isEmpty());
+      for (SAXParseException saxParseException : errorHandler.getErrors()) {
+        ret.addIssue(convertSAXParseException(saxParseException));
+      }
+    } catch (SAXException e) {
+      LOGGER.debug("Error validating XML", e);
+      ret.setValid(false);
+      for (SAXParseException saxParseException : errorHandler.getErrors()) {
+        ret.addIssue(convertSAXParseException(saxParseException));
+      }
+      if (errorHandler.getErrors().isEmpty()) {
+        ret.setMessage(e.getMessage());
+      }
+    } catch (IOException e) {
+      LOGGER.error("Error validating XML", e);
+      ret.setValid(false);
+      ret.setMessage(e.getMessage());
+    }
+
+    return ret;
+  }
+
+  /**
+   * Schema validators are not thread safe and are expensive to create, so each
+   * thread keeps one per schema and resets it before reusing it.
+   */
+  private static Validator getValidator(Schema schema) {
+    Validator validator = VALIDATORS.computeIfAbsent(schema, s -> ThreadLocal.withInitial(s::newValidator)).get();
+    validator.reset();
+    return validator;
+  }
+
+  /**
+   * Each thread reuses its parser instead of looking up and creating a new one
+   * for every document.
+   */
+  private static XMLReader getXMLReader(EntityResolver entityResolver, ErrorHandler errorHandler) throws SAXException {
+    SAXParser parser = SAX_PARSERS.get();
+    if (parser == null) {
+      try {
+        synchronized (SAX_PARSER_FACTORY) {
+          parser = SAX_PARSER_FACTORY.newSAXParser();
+        }
+      } catch (ParserConfigurationException e) {
+        throw new SAXException("Could not create XML parser", e);
+      }
+      SAX_PARSERS.set(parser);
+    } else {
+      parser.reset();
+    }
+
+    XMLReader xmlReader = parser.getXMLReader();
+    xmlReader.setEntityResolver(entityResolver);
+    xmlReader.setErrorHandler(errorHandler);
+    return xmlReader;
+  }
+
+  /**
+   * Drops the validators of all threads, e.g. after the schemas are reloaded.
+   */
+  public static void clearValidators() {
+    VALIDATORS.clear();
+  }
+
   private static class RodaErrorHandler extends DefaultHandler {
     List<SAXParseException> errors;
 
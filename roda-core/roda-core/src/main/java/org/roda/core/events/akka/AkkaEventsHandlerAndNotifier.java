@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
@@ -72,8 +73,13 @@ public class AkkaEventsHandlerAndNotifier extends AbstractEventsHandler implemen
     String writeConsistency = RodaCoreFactory.getProperty("core.events.akka.writeConsistency", "");
     int writeConsistencyTimeoutInSeconds = RodaCoreFactory
       .getProperty("core.events.akka.writeConsistencyTimeoutInSeconds", 3);
+    long retentionInMillis = TimeUnit.SECONDS
+      .toMillis(RodaCoreFactory.getProperty("core.events.akka.retentionInSeconds", 60));
+    long gcIntervalInMillis = TimeUnit.SECONDS
+      .toMillis(RodaCoreFactory.getProperty("core.events.akka.gcIntervalInSeconds", 30));
     return eventsSystem.actorOf(Props.create(AkkaEventsHandlerAndNotifierActor.class, (EventsHandler) this,
-      writeConsistency, writeConsistencyTimeoutInSeconds), "eventsNotifierAndHandlerActor");
+      writeConsistency, writeConsistencyTimeoutInSeconds, retentionInMillis, gcIntervalInMillis),
+      "eventsNotifierAndHandlerActor");
   }
 
   @Override
@@ -11,7 +11,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -28,14 +31,23 @@ import org.roda.core.events.EventsHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.cluster.Cluster;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
 import akka.cluster.ddata.DistributedData;
-import akka.cluster.ddata.GSet;
-import akka.cluster.ddata.GSetKey;
 import akka.cluster.ddata.Key;
-import akka.cluster.ddata.ORMap;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.LWWMapKey;
+import akka.cluster.ddata.Replicator;
 import akka.cluster.ddata.Replicator.Changed;
 import akka.cluster.ddata.Replicator.Subscribe;
 import akka.cluster.ddata.Replicator.Update;
@@ -46,31 +58,76 @@ import akka.cluster.ddata.Replicator.WriteConsistency;
 import akka.cluster.ddata.Replicator.WriteMajority;
 import scala.Option;
 import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
+/**
+ * Replicates the user and group changes between RODA instances using a single
+ * {@link LWWMap} (propagated as deltas) from object key to its last change.
+ * Deletions are kept as entries (see {@link CRDTWrapper#deletion}) and every
+ * entry is removed from the map once the change has been acknowledged by the
+ * write consistency, has been there for the retention period and has been
+ * seen by every member of the cluster, so that the replicated state only holds
+ * the recent changes and a node that is unreachable for a while (e.g. in a
+ * network partition) still gets them when it is back.
+ *
+ * What each node has seen is replicated in another {@link LWWMap}, from node
+ * and instance to the highest version of the changes of that instance the node
+ * has seen (the changes of an instance are always seen in order, as each
+ * replica has all the changes of that instance up to some version).
+ */
 public class AkkaEventsHandlerAndNotifierActor extends AbstractActor {
   private static final Logger LOGGER = LoggerFactory.getLogger(AkkaEventsHandlerAndNotifierActor.class);
 
-  private static final String CACHE_PREFIX = "cache-";
   private static final String USER_KEY_PREFIX = "user-";
   private static final String GROUP_KEY_PREFIX = "group-";
   private static final String RODA_OBJECT_OTHER_INFO_PASSWORD = "password";
+  private static final Object GC_TICK = "gcTick";
+  // entries are also removed by any node, e.g. the ones of an instance that is
+  // gone, after this many retention periods
+  private static final int ORPHAN_RETENTION_PERIODS = 10;
+
+  static final Key<LWWMap<String, CRDTWrapper>> CHANGES_KEY = LWWMapKey.create("changes");
+  static final Key<LWWMap<String, Long>> SEEN_KEY = LWWMapKey.create("seen");
+  private static final String SEEN_KEY_SEPARATOR = " ";
 
   private final ActorRef replicator = DistributedData.get(context().system()).replicator();
   private final Cluster cluster = Cluster.get(context().system());
+  private final String nodeId = cluster.selfUniqueAddress().toString();
 
   private EventsHandler eventsHandler;
   private String instanceSenderId;
-
-  private final Key<GSet<ObjectKey>> objectKeysKey = GSetKey.create("objectKeys");
-  private Set<ObjectKey> objectKeys = new HashSet<>();
+  private long version = 0;
 
   private final WriteConsistency writeConsistency;
+  private final long retentionInMillis;
+  private final Cancellable gcTask;
+
+  // the last seen state of the replicated map, to tell which entries are new
+  private Map<String, CRDTWrapper> knownChanges = new HashMap<>();
+  // own changes that were written with the write consistency, and when
+  private final Map<String, WrittenChange> acknowledgedChanges = new HashMap<>();
+  // own changes whose write failed, to be written again
+  private final Map<String, WrittenChange> unacknowledgedChanges = new HashMap<>();
+  // the last seen state of the replicated versions seen by each node
+  private Map<String, Long> seenVersions = new HashMap<>();
+  // the highest version of the changes of each instance seen by this node
+  private final Map<String, Long> ownSeenVersions = new HashMap<>();
+
+  private volatile int replicatedEntries = 0;
+  private volatile int replicatedDeletions = 0;
+  private final Histogram propagationLagInMillis = new Histogram(new ExponentiallyDecayingReservoir());
 
   public AkkaEventsHandlerAndNotifierActor(final EventsHandler eventsHandler, final String writeConsistency,
-    final int writeConsistencyTimeoutInSeconds) {
+    final int writeConsistencyTimeoutInSeconds, final long retentionInMillis, final long gcIntervalInMillis) {
     this.eventsHandler = eventsHandler;
     this.instanceSenderId = self().toString();
     this.writeConsistency = instantiateWriteConsistency(writeConsistency, writeConsistencyTimeoutInSeconds);
+    this.retentionInMillis = retentionInMillis;
+
+    FiniteDuration gcInterval = Duration.create(gcIntervalInMillis, TimeUnit.MILLISECONDS);
+    this.gcTask = getContext().system().scheduler().schedule(gcInterval, gcInterval, getSelf(), GC_TICK,
+      getContext().dispatcher(), getSelf());
+    registerMetrics();
   }
 
   private WriteConsistency instantiateWriteConsistency(String writeConsistency,
@@ -83,10 +140,35 @@ public class AkkaEventsHandlerAndNotifierActor extends AbstractActor {
 
   }
 
+  private void registerMetrics() {
+    MetricRegistry metrics = RodaCoreFactory.getMetrics();
+    if (metrics != null) {
+      String className = AkkaEventsHandlerAndNotifierActor.class.getSimpleName();
+      registerMetric(metrics, MetricRegistry.name(className, "replicatedEntries"),
+        (Gauge<Integer>) () -> replicatedEntries);
+      registerMetric(metrics, MetricRegistry.name(className, "replicatedDeletions"),
+        (Gauge<Integer>) () -> replicatedDeletions);
+      registerMetric(metrics, MetricRegistry.name(className, "propagationLagInMillis"), propagationLagInMillis);
+    }
+  }
+
+  private static void registerMetric(MetricRegistry metrics, String name, Metric metric) {
+    // a new instance replaces the metrics of the previous one
+    metrics.remove(name);
+    metrics.register(name, metric);
+  }
+
   @Override
   public void preStart() {
-    Subscribe<GSet<ObjectKey>> subscribe = new Subscribe<>(objectKeysKey, getSelf());
+    Subscribe<LWWMap<String, CRDTWrapper>> subscribe = new Subscribe<>(CHANGES_KEY, getSelf());
     replicator.tell(subscribe, ActorRef.noSender());
+    Subscribe<LWWMap<String, Long>> subscribeSeen = new Subscribe<>(SEEN_KEY, getSelf());
+    replicator.tell(subscribeSeen, ActorRef.noSender());
+  }
+
+  @Override
+  public void postStop() {
+    gcTask.cancel();
   }
 
   @Override
@@ -97,82 +179,133 @@ public class AkkaEventsHandlerAndNotifierActor extends AbstractActor {
       .match(EventGroupUpdated.class, e -> handleGroupUpdated(e))
       .match(EventGroupDeleted.class, e -> handleGroupDeleted(e)).match(Changed.class, c -> handleChanged(c))
       .match(UpdateSuccess.class, e -> handleUpdateSuccess(e)).match(UpdateFailure.class, e -> handleUpdateFailure(e))
-      .matchAny(msg -> {
+      .matchEquals(GC_TICK, t -> collectGarbage()).matchAny(msg -> {
         LOGGER.warn("Received unknown message '{}'", msg);
       }).build();
   }
 
-  private void handleUpdateSuccess(UpdateSuccess e) {
-    // LOGGER.info("handleUpdateSuccess '{}'", e);
-    // FIXME 20180925 hsilva: do nothing???
+  private void handleUpdateSuccess(UpdateSuccess<?> e) {
+    Optional<Object> request = e.getRequest();
+    if (request.isPresent() && request.get() instanceof WrittenChange) {
+      WrittenChange written = (WrittenChange) request.get();
+      WrittenChange previous = acknowledgedChanges.get(written.key);
+      if (previous == null || previous.change.getVersion() < written.change.getVersion()) {
+        written.acknowledgedAt = System.currentTimeMillis();
+        acknowledgedChanges.put(written.key, written);
+      }
+    }
   }
 
-  private void handleUpdateFailure(UpdateFailure e) {
-    // LOGGER.info("handleUpdateFailure '{}'", e);
-    // FIXME 20180925 hsilva: what to do???
+  private void handleUpdateFailure(UpdateFailure<?> e) {
+    Optional<Object> request = e.getRequest();
+    if (request.isPresent() && request.get() instanceof WrittenChange) {
+      WrittenChange written = (WrittenChange) request.get();
+      LOGGER.debug("Could not write change of '{}' with the write consistency, trying again later", written.key);
+      unacknowledgedChanges.put(written.key, written);
+    }
   }
 
   private void handleChanged(Changed<?> e) {
-    if (e.key().equals(objectKeysKey)) {
-      handleObjectKeysChanged((Changed<GSet<ObjectKey>>) e);
-    } else if (e.key() instanceof ObjectKey) {
-      handleObjectChanged((Changed<ORMap<String, CRDTWrapper>>) e);
+    if (e.key().equals(CHANGES_KEY)) {
+      handleChangesChanged(((LWWMap<String, CRDTWrapper>) e.dataValue()).getEntries());
+    } else if (e.key().equals(SEEN_KEY)) {
+      seenVersions = new HashMap<>(((LWWMap<String, Long>) e.dataValue()).getEntries());
     }
   }
 
-  private void handleObjectKeysChanged(Changed<GSet<ObjectKey>> e) {
-    Set<ObjectKey> newKeys = e.dataValue().getElements();
-    Set<ObjectKey> keysToSubscribe = new HashSet<>(newKeys);
-    keysToSubscribe.removeAll(objectKeys);
-    keysToSubscribe.forEach(keyToSubscribe -> {
-      // subscribe to get notifications of when objects with this name are
-      // added or removed
-      replicator.tell(new Subscribe<>(keyToSubscribe, self()), self());
-    });
-    objectKeys = newKeys;
-
-    // 20180925 hsilva: to improve GC
-    keysToSubscribe = null;
-  }
-
-  private void handleObjectChanged(Changed<ORMap<String, CRDTWrapper>> e) {
-    String objectId = e.key().id().replaceFirst(CACHE_PREFIX, "");
-    Option<CRDTWrapper> option = e.dataValue().get(objectId);
-    if (option.isDefined()) {
-      CRDTWrapper wrapper = (CRDTWrapper) option.get();
-      if (!wrapper.getInstanceId().equals(instanceSenderId)) {
-        if (objectId.startsWith(USER_KEY_PREFIX)) {
-          String password = getUserPasswordFromRodaUserOtherInfoMap(wrapper);
-          if (!wrapper.isUpdate()) {
-            eventsHandler.handleUserCreated(RodaCoreFactory.getModelService(), (User) wrapper.getRodaObject(),
-              password);
-          } else {
-            eventsHandler.handleUserUpdated(RodaCoreFactory.getModelService(), (User) wrapper.getRodaObject(),
-              password);
-          }
-        } else if (objectId.startsWith(GROUP_KEY_PREFIX)) {
-          if (!wrapper.isUpdate()) {
-            eventsHandler.handleGroupCreated(RodaCoreFactory.getModelService(), (Group) wrapper.getRodaObject());
-          } else {
-            eventsHandler.handleGroupUpdated(RodaCoreFactory.getModelService(), (Group) wrapper.getRodaObject());
-          }
+  private void handleChangesChanged(Map<String, CRDTWrapper> changes) {
+    long now = System.currentTimeMillis();
+    int deletions = 0;
+    Map<String, Long> newlySeen = new HashMap<>();
+    for (Entry<String, CRDTWrapper> entry : changes.entrySet()) {
+      CRDTWrapper wrapper = entry.getValue();
+      if (wrapper.isDeletion()) {
+        deletions++;
+      }
+      if (wrapper.getVersion() > ownSeenVersions.getOrDefault(wrapper.getInstanceId(), 0L)) {
+        ownSeenVersions.put(wrapper.getInstanceId(), wrapper.getVersion());
+        newlySeen.put(wrapper.getInstanceId(), wrapper.getVersion());
+      }
+      if (!wrapper.isSameChange(knownChanges.get(entry.getKey()))
+        && !wrapper.getInstanceId().equals(instanceSenderId)) {
+        propagationLagInMillis.update(Math.max(0, now - wrapper.getTimeinmillis()));
+        handleObjectChanged(entry.getKey(), wrapper);
+      }
+    }
+
+    knownChanges = new HashMap<>(changes);
+    replicatedEntries = changes.size();
+    replicatedDeletions = deletions;
+    publishSeenVersions(newlySeen);
+  }
+
+  /**
+   * Tells the other nodes the highest versions of the changes of each instance
+   * this node has seen. Gossip is enough, as it only delays the removal of the
+   * changes.
+   */
+  private void publishSeenVersions(Map<String, Long> versions) {
+    if (!versions.isEmpty()) {
+      Update<LWWMap<String, Long>> update = new Update<>(SEEN_KEY, LWWMap.create(), Replicator.writeLocal(), curr -> {
+        LWWMap<String, Long> result = curr;
+        for (Entry<String, Long> entry : versions.entrySet()) {
+          result = result.put(cluster, getSeenKey(nodeId, entry.getKey()), entry.getValue());
         }
+        return result;
+      });
+      replicator.tell(update, self());
+    }
+  }
+
+  private static String getSeenKey(String node, String instanceId) {
+    return node + SEEN_KEY_SEPARATOR + instanceId;
+  }
+
+  /**
+   * @return true if every node in the cluster, reachable or not, has seen the
+   *         change. Nodes that were downed are no longer waited for.
+   */
+  private boolean isSeenByAllMembers(CRDTWrapper change) {
+    for (Member member : cluster.state().getMembers()) {
+      if (member.status().equals(MemberStatus.down()) || member.status().equals(MemberStatus.removed())) {
+        continue;
       }
-    } else {
-      // this is a deletion
+      Long seen = seenVersions.get(getSeenKey(member.uniqueAddress().toString(), change.getInstanceId()));
+      if (seen == null || seen < change.getVersion()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void handleObjectChanged(String objectId, CRDTWrapper wrapper) {
+    if (wrapper.isDeletion()) {
       if (objectId.startsWith(USER_KEY_PREFIX)) {
         eventsHandler.handleUserDeleted(RodaCoreFactory.getModelService(), objectId.replaceFirst(USER_KEY_PREFIX, ""));
       } else if (objectId.startsWith(GROUP_KEY_PREFIX)) {
         eventsHandler.handleGroupDeleted(RodaCoreFactory.getModelService(),
           objectId.replaceFirst(GROUP_KEY_PREFIX, ""));
       }
+    } else if (objectId.startsWith(USER_KEY_PREFIX)) {
+      String password = getUserPasswordFromRodaUserOtherInfoMap(wrapper);
+      if (!wrapper.isUpdate()) {
+        eventsHandler.handleUserCreated(RodaCoreFactory.getModelService(), (User) wrapper.getRodaObject(), password);
+      } else {
+        eventsHandler.handleUserUpdated(RodaCoreFactory.getModelService(), (User) wrapper.getRodaObject(), password);
+      }
+    } else if (objectId.startsWith(GROUP_KEY_PREFIX)) {
+      if (!wrapper.isUpdate()) {
+        eventsHandler.handleGroupCreated(RodaCoreFactory.getModelService(), (Group) wrapper.getRodaObject());
+      } else {
+        eventsHandler.handleGroupUpdated(RodaCoreFactory.getModelService(), (Group) wrapper.getRodaObject());
+      }
     }
   }
 
   private void handleUserCreated(EventUserCreated e) {
     String key = USER_KEY_PREFIX + e.getUser().getId();
-    putObjectInCache(key, new CRDTWrapper(e.getUser(), createRodaUserOtherInfoMapWithUserPassword(e.getPassword()),
-      false, instanceSenderId, new Date().getTime()));
+    putChange(key, new CRDTWrapper(e.getUser(), createRodaUserOtherInfoMapWithUserPassword(e.getPassword()), false,
+      instanceSenderId, new Date().getTime(), ++version));
   }
 
   private String getUserPasswordFromRodaUserOtherInfoMap(CRDTWrapper wrapper) {
@@ -187,67 +320,145 @@ public class AkkaEventsHandlerAndNotifierActor extends AbstractActor {
 
   private void handleUserUpdated(EventUserUpdated e) {
     String key = USER_KEY_PREFIX + e.getUser().getId();
-    putObjectInCache(key, new CRDTWrapper(e.getUser(), createRodaUserOtherInfoMapWithUserPassword(e.getPassword()),
-      true, instanceSenderId, new Date().getTime()));
+    putChange(key, new CRDTWrapper(e.getUser(), createRodaUserOtherInfoMapWithUserPassword(e.getPassword()), true,
+      instanceSenderId, new Date().getTime(), ++version));
   }
 
   private void handleUserDeleted(EventUserDeleted e) {
     String key = USER_KEY_PREFIX + e.getId();
-    evictObjectFromCache(key);
+    putChange(key, CRDTWrapper.deletion(instanceSenderId, new Date().getTime(), ++version));
   }
 
   private void handleGroupCreated(EventGroupCreated e) {
     String key = GROUP_KEY_PREFIX + e.getGroup().getId();
-    putObjectInCache(key,
-      new CRDTWrapper(e.getGroup(), Collections.emptyMap(), false, instanceSenderId, new Date().getTime()));
+    putChange(key,
+      new CRDTWrapper(e.getGroup(), Collections.emptyMap(), false, instanceSenderId, new Date().getTime(), ++version));
   }
 
   private void handleGroupUpdated(EventGroupUpdated e) {
     String key = GROUP_KEY_PREFIX + e.getGroup().getId();
-    putObjectInCache(key,
-      new CRDTWrapper(e.getGroup(), Collections.emptyMap(), true, instanceSenderId, new Date().getTime()));
+    putChange(key,
+      new CRDTWrapper(e.getGroup(), Collections.emptyMap(), true, instanceSenderId, new Date().getTime(), ++version));
   }
 
   private void handleGroupDeleted(EventGroupDeleted e) {
     String key = GROUP_KEY_PREFIX + e.getId();
-    evictObjectFromCache(key);
+    putChange(key, CRDTWrapper.deletion(instanceSenderId, new Date().getTime(), ++version));
   }
 
-  private void putObjectInCache(String key, CRDTWrapper value) {
-    ObjectKey objectKey = dataKey(key);
-    if (!objectKeys.contains(objectKey)) {
-      Update<GSet<ObjectKey>> update1 = new Update<>(objectKeysKey, GSet.create(), writeConsistency,
-        curr -> curr.add(objectKey));
-      replicator.tell(update1, self());
+  private void putChange(String key, CRDTWrapper value) {
+    Update<LWWMap<String, CRDTWrapper>> update = new Update<>(CHANGES_KEY, LWWMap.create(), writeConsistency,
+      Optional.of(new WrittenChange(key, value)), curr -> curr.put(cluster, key, value));
+    replicator.tell(update, self());
+  }
+
+  /**
+   * Writes again the own changes whose write failed and removes from the
+   * replicated map the changes that are no longer needed, i.e. those seen by
+   * every member that are own ones acknowledged more than a retention period
+   * ago or any older than {@link #ORPHAN_RETENTION_PERIODS} retention periods.
+   */
+  private void collectGarbage() {
+    long now = System.currentTimeMillis();
+
+    // e.g. removed by another node while this one was not a member
+    Map<String, Long> missingSeen = new HashMap<>();
+    ownSeenVersions.forEach((instanceId, seen) -> {
+      if (!seen.equals(seenVersions.get(getSeenKey(nodeId, instanceId)))) {
+        missingSeen.put(instanceId, seen);
+      }
+    });
+    publishSeenVersions(missingSeen);
+
+    if (!unacknowledgedChanges.isEmpty()) {
+      Map<String, CRDTWrapper> toWrite = new HashMap<>();
+      unacknowledgedChanges.values().forEach(written -> toWrite.put(written.key, written.change));
+      unacknowledgedChanges.clear();
+      toWrite.forEach((key, change) -> {
+        Update<LWWMap<String, CRDTWrapper>> update = new Update<>(CHANGES_KEY, LWWMap.create(), writeConsistency,
+          Optional.of(new WrittenChange(key, change)),
+          curr -> isCurrentChange(curr, key, change) ? curr.put(cluster, key, change) : curr);
+        replicator.tell(update, self());
+      });
     }
 
-    Update<ORMap<String, CRDTWrapper>> update = new Update<ORMap<String, CRDTWrapper>>(dataKey(key), ORMap.create(),
-      writeConsistency, curr -> curr.put(cluster, key, value));
-    replicator.tell(update, self());
+    Map<String, CRDTWrapper> toRemove = new HashMap<>();
+    Iterator<WrittenChange> iterator = acknowledgedChanges.values().iterator();
+    while (iterator.hasNext()) {
+      WrittenChange written = iterator.next();
+      if (now - written.acknowledgedAt >= retentionInMillis && isSeenByAllMembers(written.change)) {
+        toRemove.put(written.key, written.change);
+        iterator.remove();
+      }
+    }
+    long orphanRetentionInMillis = retentionInMillis * ORPHAN_RETENTION_PERIODS;
+    knownChanges.forEach((key, change) -> {
+      if (now - change.getTimeinmillis() >= orphanRetentionInMillis && isSeenByAllMembers(change)) {
+        toRemove.putIfAbsent(key, change);
+      }
+    });
+    removeSeenVersionsOfFormerMembers();
+
+    if (!toRemove.isEmpty()) {
+      // only removes the entries that were not changed meanwhile
+      Update<LWWMap<String, CRDTWrapper>> update = new Update<>(CHANGES_KEY, LWWMap.create(), writeConsistency,
+        curr -> {
+          LWWMap<String, CRDTWrapper> result = curr;
+          for (Entry<String, CRDTWrapper> entry : toRemove.entrySet()) {
+            if (isCurrentChange(result, entry.getKey(), entry.getValue())) {
+              result = result.remove(cluster, entry.getKey());
+            }
+          }
+          return result;
+        });
+      replicator.tell(update, self());
+    }
   }
 
-  private void evictObjectFromCache(String key) {
-    ObjectKey objectKey = dataKey(key);
-    if (!objectKeys.contains(objectKey)) {
-      Update<GSet<ObjectKey>> update1 = new Update<>(objectKeysKey, GSet.create(), writeConsistency,
-        curr -> curr.add(objectKey));
-      replicator.tell(update1, self());
+  /**
+   * Removes the versions seen by the nodes that are no longer in the cluster.
+   */
+  private void removeSeenVersionsOfFormerMembers() {
+    Set<String> members = new HashSet<>();
+    for (Member member : cluster.state().getMembers()) {
+      members.add(member.uniqueAddress().toString());
+    }
+    Set<String> toRemove = new HashSet<>();
+    for (String key : seenVersions.keySet()) {
+      // node ids have no separator in them
+      int separator = key.indexOf(SEEN_KEY_SEPARATOR);
+      if (separator < 0 || !members.contains(key.substring(0, separator))) {
+        toRemove.add(key);
+      }
     }
 
-    Update<ORMap<String, CRDTWrapper>> update = new Update<>(objectKey, ORMap.create(), writeConsistency,
-      curr -> curr.remove(cluster, key));
-    replicator.tell(update, self());
+    if (!toRemove.isEmpty()) {
+      Update<LWWMap<String, Long>> update = new Update<>(SEEN_KEY, LWWMap.create(), Replicator.writeLocal(), curr -> {
+        LWWMap<String, Long> result = curr;
+        for (String key : toRemove) {
+          if (result.contains(key)) {
+            result = result.remove(cluster, key);
+          }
+        }
+        return result;
+      });
+      replicator.tell(update, self());
+    }
   }
 
-  private ObjectKey dataKey(String entryKey) {
-    return new ObjectKey(CACHE_PREFIX + entryKey);
+  private static boolean isCurrentChange(LWWMap<String, CRDTWrapper> changes, String key, CRDTWrapper change) {
+    Option<CRDTWrapper> current = changes.get(key);
+    return current.isDefined() && change.isSameChange(current.get());
   }
 
-  public static class ObjectKey extends Key<ORMap<String, CRDTWrapper>> {
-    private static final long serialVersionUID = 4859356839497209682L;
+  private static class WrittenChange {
+    private final String key;
+    private final CRDTWrapper change;
+    private long acknowledgedAt;
 
-    public ObjectKey(String eventKey) {
-      super(eventKey);
+    public WrittenChange(String key, CRDTWrapper change) {
+      this.key = key;
+      this.change = change;
     }
   }
-}
\ No newline at end of file
+}
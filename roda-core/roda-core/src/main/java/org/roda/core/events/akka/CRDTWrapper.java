@@ -7,6 +7,7 @@
  */
 package org.roda.core.events.akka;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.roda.core.data.v2.IsRODAObject;
@@ -26,6 +27,8 @@ public class CRDTWrapper extends AbstractReplicatedData<CRDTWrapper>
   private boolean isUpdate;
   private String instanceId;
   private long timeinmillis;
+  private long version;
+  private boolean isDeletion;
 
   public CRDTWrapper(IsRODAObject rodaObject, Map<String, Object> rodaObjectOtherInfo, boolean isUpdate,
     String instanceId, long timeinmillis) {
@@ -36,12 +39,28 @@ public class CRDTWrapper extends AbstractReplicatedData<CRDTWrapper>
     this.setTimeinmillis(timeinmillis);
   }
 
+  public CRDTWrapper(IsRODAObject rodaObject, Map<String, Object> rodaObjectOtherInfo, boolean isUpdate,
+    String instanceId, long timeinmillis, long version) {
+    this(rodaObject, rodaObjectOtherInfo, isUpdate, instanceId, timeinmillis);
+    this.version = version;
+  }
+
+  /**
+   * Creates the entry that replaces the one of a deleted object until it is
+   * garbage collected.
+   */
+  public static CRDTWrapper deletion(String instanceId, long timeinmillis, long version) {
+    CRDTWrapper wrapper = new CRDTWrapper(null, Collections.emptyMap(), true, instanceId, timeinmillis, version);
+    wrapper.isDeletion = true;
+    return wrapper;
+  }
+
   public CRDTWrapper() {
   }
 
   @Override
   public String getId() {
-    return rodaObject.getId();
+    return rodaObject != null ? rodaObject.getId() : null;
   }
 
   public IsRODAObject getRodaObject() {
@@ -68,6 +87,22 @@ public class CRDTWrapper extends AbstractReplicatedData<CRDTWrapper>
     this.timeinmillis = timeinmillis;
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  public boolean isDeletion() {
+    return isDeletion;
+  }
+
+  /**
+   * @return true if both are the same change, i.e. written by the same instance
+   *         with the same version.
+   */
+  public boolean isSameChange(CRDTWrapper that) {
+    return that != null && version == that.getVersion() && instanceId.equals(that.getInstanceId());
+  }
+
   @Override
   public CRDTWrapper mergeData(CRDTWrapper that) {
     if (!this.instanceId.equals(that.getInstanceId()) && this.timeinmillis > that.getTimeinmillis()) {
@@ -81,6 +116,7 @@ public class CRDTWrapper extends AbstractReplicatedData<CRDTWrapper>
   @Override
   public String toString() {
     return "CRDTWrapper [rodaObject=" + rodaObject + ", rodaObjectOtherInfo=" + rodaObjectOtherInfo + ", isUpdate="
-      + isUpdate + ", instanceId=" + instanceId + ", timeinmillis=" + timeinmillis + "]";
+      + isUpdate + ", instanceId=" + instanceId + ", timeinmillis=" + timeinmillis + ", version=" + version
+      + ", isDeletion=" + isDeletion + "]";
   }
 }
@@ -0,0 +1,285 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotSupportedException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.exceptions.ReturnWithExceptions;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.IndexedRepresentation;
+import org.roda.core.data.v2.ip.Permissions;
+import org.roda.core.data.v2.ip.metadata.IndexedPreservationEvent;
+import org.roda.core.index.schema.SolrCollectionRegistry;
+import org.roda.core.index.utils.IterableIndexResult;
+import org.roda.core.index.utils.SolrUtils;
+import org.roda.core.model.ModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+
+/**
+ * Propagates the permissions of an AIP to all its descendants. The index is
+ * changed first, with batched atomic updates of the AIPs, representations and
+ * files that have the AIP as ancestor and of the preservation events of those
+ * AIPs, so that search reflects the new permissions at once. The metadata files
+ * of the descendants are then written by a pool of background writers and,
+ * until each one is written, the descendant is marked in the index as having
+ * its permissions pending ({@link RodaConstants#AIP_PERMISSIONS_PENDING}).
+ *
+ * The writers take the permissions from the index, so that a descendant always
+ * ends up with the permissions of the last propagation that reached it, and
+ * the mark is kept in the index until the file is written, so that the writes
+ * interrupted by a shutdown are resumed on the next start
+ * ({@link #resumePendingWrites()}).
+ */
+public class AIPPermissionsPropagator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AIPPermissionsPropagator.class);
+
+  public static final int DEFAULT_THREADS = 4;
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+  public static final int DEFAULT_WRITE_BATCH_SIZE = 100;
+
+  // preservation events are updated by batches of AIP ids, small enough not to
+  // exceed the maximum number of clauses of a query
+  private static final int AIP_IDS_BATCH_SIZE = 500;
+  private static final String VERSION_FIELD = "_version_";
+
+  private final SolrClient index;
+  private final ModelService model;
+  private final int batchSize;
+  private final int writeBatchSize;
+  private final ExecutorService writers;
+  private final AtomicInteger pendingWrites = new AtomicInteger();
+
+  public AIPPermissionsPropagator(SolrClient index, ModelService model, int threads, int batchSize,
+    int writeBatchSize) {
+    this.index = index;
+    this.model = model;
+    this.batchSize = Math.max(1, batchSize);
+    this.writeBatchSize = Math.max(1, writeBatchSize);
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    this.writers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+      Thread thread = new Thread(runnable, "aip-permissions-writer-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Changes the permissions of all descendants of an AIP in the index and
+   * schedules the writing of their metadata files.
+   *
+   * @return the number of descendants
+   */
+  public int propagate(String aipId, Permissions permissions, String updatedBy) throws GenericException {
+    Map<String, Object> fields = SolrUtils.getPermissionsAsPreCalculatedFields(permissions);
+    Map<String, Object> aipFields = new HashMap<>(fields);
+    aipFields.put(RodaConstants.AIP_PERMISSIONS_PENDING, true);
+    aipFields.put(RodaConstants.AIP_UPDATED_BY, updatedBy);
+
+    ReturnWithExceptions<Void, AIPPermissionsPropagator> ret = new ReturnWithExceptions<>(this);
+    SolrUtils.updateAll(index, IndexedAIP.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aipId)), aipFields, batchSize, this)
+      .addTo(ret);
+    SolrUtils.updateAll(index, IndexedRepresentation.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.REPRESENTATION_ANCESTORS, aipId)), fields, batchSize, this)
+      .addTo(ret);
+    SolrUtils.updateAll(index, IndexedFile.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.FILE_ANCESTORS, aipId)), fields, batchSize, this)
+      .addTo(ret);
+
+    List<String> descendants = listDescendants(aipId);
+    for (List<String> batch : Lists.partition(descendants, AIP_IDS_BATCH_SIZE)) {
+      SolrUtils.updateAll(index, IndexedPreservationEvent.class,
+        new Filter(new OneOfManyFilterParameter(RodaConstants.PRESERVATION_EVENT_AIP_ID, batch)), fields, batchSize,
+        this).addTo(ret);
+    }
+    commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class, IndexedPreservationEvent.class)
+      .addTo(ret);
+
+    // written even if the index was partially updated, as the writers follow
+    // what is in the index
+    scheduleWrites(descendants);
+
+    if (!ret.isEmpty()) {
+      throw new GenericException(
+        "Could not propagate the permissions of AIP " + aipId + " in the index: " + ret.getExceptions());
+    }
+    return descendants.size();
+  }
+
+  /**
+   * Schedules the writing of the metadata files of the AIPs that are marked in
+   * the index as having permissions pending, e.g. after a restart.
+   *
+   * @return the number of AIPs
+   */
+  public int resumePendingWrites() throws GenericException {
+    List<String> pending = new ArrayList<>();
+    try (IterableIndexResult<IndexedAIP> result = new IterableIndexResult<>(index, IndexedAIP.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.AIP_PERMISSIONS_PENDING, Boolean.TRUE.toString())), null,
+      false, Arrays.asList(RodaConstants.INDEX_UUID, RodaConstants.AIP_ID))) {
+      result.forEach(aip -> pending.add(aip.getId()));
+    } catch (IOException e) {
+      throw new GenericException("Could not list the AIPs with permissions pending", e);
+    }
+
+    if (!pending.isEmpty()) {
+      LOGGER.info("Resuming the writing of the permissions of {} AIPs", pending.size());
+      scheduleWrites(pending);
+    }
+    return pending.size();
+  }
+
+  private void scheduleWrites(List<String> aipIds) throws GenericException {
+    for (List<String> batch : Lists.partition(aipIds, writeBatchSize)) {
+      pendingWrites.addAndGet(batch.size());
+      try {
+        writers.execute(() -> write(batch));
+      } catch (RejectedExecutionException e) {
+        pendingWrites.addAndGet(-batch.size());
+        throw new GenericException("Permissions propagator is shut down, writes resumed on the next start", e);
+      }
+    }
+  }
+
+  /**
+   * Waits for the scheduled writes to finish, up to a timeout. The AIPs not
+   * written by then stay marked as pending and are resumed on the next start.
+   */
+  public void shutdown(long timeoutInSeconds) {
+    writers.shutdown();
+    try {
+      if (!writers.awaitTermination(timeoutInSeconds, TimeUnit.SECONDS)) {
+        writers.shutdownNow();
+        LOGGER.warn("Permissions of {} AIPs left pending, they will be written on the next start",
+          pendingWrites.get());
+      }
+    } catch (InterruptedException e) {
+      writers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private List<String> listDescendants(String aipId) throws GenericException {
+    List<String> descendants = new ArrayList<>();
+    try (IterableIndexResult<IndexedAIP> result = new IterableIndexResult<>(index, IndexedAIP.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aipId)), null, false,
+      Arrays.asList(RodaConstants.INDEX_UUID, RodaConstants.AIP_ID))) {
+      result.forEach(aip -> descendants.add(aip.getId()));
+    } catch (IOException e) {
+      throw new GenericException("Could not list the descendants of AIP " + aipId, e);
+    }
+    return descendants;
+  }
+
+  @SafeVarargs
+  private final ReturnWithExceptions<Void, AIPPermissionsPropagator> commit(Class<? extends IsIndexed>... classes) {
+    ReturnWithExceptions<Void, AIPPermissionsPropagator> ret = new ReturnWithExceptions<>(this);
+    for (Class<? extends IsIndexed> clazz : classes) {
+      try {
+        index.commit(SolrCollectionRegistry.getIndexName(clazz));
+      } catch (SolrServerException | IOException | SolrException | NotSupportedException e) {
+        ret.add(e);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Writes the permissions that the index has for the AIPs in their metadata
+   * files, as changed by the user that last updated them in the index, and then
+   * unmarks them as pending unless they were changed meanwhile.
+   */
+  private void write(List<String> aipIds) {
+    try {
+      String collection = SolrCollectionRegistry.getIndexName(IndexedAIP.class);
+      SolrQuery query = new SolrQuery(
+        SolrUtils.parseFilter(new Filter(new OneOfManyFilterParameter(RodaConstants.INDEX_UUID, aipIds))));
+      query.setRows(aipIds.size());
+
+      for (SolrDocument doc : index.query(collection, query).getResults()) {
+        String aipId = SolrUtils.objectToString(doc.get(RodaConstants.INDEX_UUID), null);
+        String updatedBy = SolrUtils.objectToString(doc.get(RodaConstants.AIP_UPDATED_BY), RodaConstants.ADMIN);
+        try {
+          model.writeAIPPermissions(aipId, SolrUtils.getPermissions(doc), updatedBy);
+          unmarkAsPending(collection, aipId, doc.get(VERSION_FIELD));
+        } catch (RODAException e) {
+          LOGGER.error("Could not write the permissions of AIP {}", aipId, e);
+        }
+      }
+    } catch (SolrServerException | IOException | SolrException | NotSupportedException | RequestNotValidException e) {
+      LOGGER.error("Could not write the permissions of AIPs {}", aipIds, e);
+    } finally {
+      pendingWrites.addAndGet(-aipIds.size());
+    }
+  }
+
+  private void unmarkAsPending(String collection, String aipId, Object version)
+    throws SolrServerException, IOException {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(RodaConstants.INDEX_UUID, aipId);
+    doc.addField(RodaConstants.AIP_PERMISSIONS_PENDING, Collections.singletonMap("set", false));
+    // fails if changed after being read, e.g. by a newer propagation whose
+    // writer will unmark it
+    doc.addField(VERSION_FIELD, version);
+    try {
+      index.add(collection, doc);
+    } catch (SolrException e) {
+      if (e.code() == SolrException.ErrorCode.CONFLICT.code) {
+        LOGGER.debug("Permissions of AIP {} changed while being written", aipId);
+      } else {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * @return the number of AIPs whose metadata files are waiting to be written.
+   */
+  public int getPendingWrites() {
+    return pendingWrites.get();
+  }
+
+  public void registerMetrics(MetricRegistry metrics) {
+    String name = MetricRegistry.name(AIPPermissionsPropagator.class.getSimpleName(), "pendingWrites");
+    metrics.remove(name);
+    metrics.register(name, (Gauge<Integer>) this::getPendingWrites);
+  }
+}
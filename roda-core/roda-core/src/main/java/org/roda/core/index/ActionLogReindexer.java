@@ -0,0 +1,496 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.LogEntryJsonParseException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.log.LogEntry;
+import org.roda.core.index.schema.SolrCollectionRegistry;
+import org.roda.core.model.ModelService;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.DefaultStoragePath;
+import org.roda.core.storage.Resource;
+import org.roda.core.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Reindexes the action log from its day files, both the ones already moved to
+ * the storage and the ones still in the log folder. Files are parsed in
+ * parallel and their entries are sent to Solr in batches, using commitWithin.
+ *
+ * The size and number of lines of each indexed file are kept by file name
+ * (so that a file moved from the log folder to the storage is still known),
+ * so that files that did not change since are skipped and files that only grew
+ * (i.e. the current day) are resumed after their last indexed line, unless the
+ * reindex is forced.
+ */
+public class ActionLogReindexer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ActionLogReindexer.class);
+
+  public static final int DEFAULT_THREADS = 4;
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+  public static final int DEFAULT_COMMIT_WITHIN_IN_SECONDS = 10;
+  public static final int DEFAULT_PROGRESS_INTERVAL_IN_SECONDS = 30;
+
+  private static final int QUEUE_SIZE_FACTOR = 4;
+  private static final String STORAGE_PREFIX = "storage/";
+  private static final String LOG_FOLDER_PREFIX = "log/";
+  private static final String SEPARATOR = "\t";
+
+  /**
+   * Receives the outcome of the reindex. Called from the reindex threads.
+   */
+  public interface Listener {
+    void fileReindexed(String file, int entriesIndexed, int entriesFailed);
+
+    void entriesFailed(int count, RODAException cause);
+  }
+
+  private interface LogFileContent {
+    InputStream open() throws IOException, RODAException;
+  }
+
+  private static final class LogFile {
+    private final String key;
+    private final String location;
+    private final Long sizeInBytes;
+    private final LogFileContent content;
+
+    private LogFile(String key, String location, Long sizeInBytes, LogFileContent content) {
+      this.key = key;
+      this.location = location;
+      this.sizeInBytes = sizeInBytes;
+      this.content = content;
+    }
+  }
+
+  private static final class IndexedFile {
+    private final long sizeInBytes;
+    private final int lines;
+    private final int entries;
+
+    private IndexedFile(long sizeInBytes, int lines, int entries) {
+      this.sizeInBytes = sizeInBytes;
+      this.lines = lines;
+      this.entries = entries;
+    }
+  }
+
+  private final SolrClient solrClient;
+  private final StorageService storage;
+  private final Path logPath;
+  private final Path indexedFilesPath;
+  private final int threads;
+  private final int batchSize;
+  private final int commitWithinInMillis;
+
+  private final Map<String, IndexedFile> indexedFiles = new ConcurrentHashMap<>();
+  private BufferedWriter indexedFilesWriter;
+
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong skippedFiles = new AtomicLong();
+  private final AtomicLong entries = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private volatile long startTime = 0;
+
+  /**
+   * @param indexedFilesPath
+   *          file where the size and number of lines of the indexed files are
+   *          kept between runs.
+   */
+  public ActionLogReindexer(SolrClient solrClient, StorageService storage, Path logPath, Path indexedFilesPath,
+    int threads, int batchSize, int commitWithinInSeconds) {
+    this.solrClient = solrClient;
+    this.storage = storage;
+    this.logPath = logPath;
+    this.indexedFilesPath = indexedFilesPath;
+    this.threads = Math.max(1, threads);
+    this.batchSize = Math.max(1, batchSize);
+    this.commitWithinInMillis = (int) TimeUnit.SECONDS.toMillis(Math.max(1, commitWithinInSeconds));
+  }
+
+  /**
+   * Reindexes the day files of the last days (or all of them if
+   * {@code daysToIndex} is 0).
+   *
+   * @param force
+   *          reindex also the files that did not change since the last run.
+   */
+  public void reindex(int daysToIndex, boolean force, Listener listener, int progressIntervalInSeconds)
+    throws GenericException {
+    Listener reindexListener = listener != null ? listener : new Listener() {
+      @Override
+      public void fileReindexed(String file, int entriesIndexed, int entriesFailed) {
+        // do nothing
+      }
+
+      @Override
+      public void entriesFailed(int count, RODAException cause) {
+        LOGGER.error("Could not reindex {} action log entries", count, cause);
+      }
+    };
+
+    startTime = System.currentTimeMillis();
+    Collection<LogFile> logFiles = listLogFiles();
+    openIndexedFiles(logFiles, force);
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(threads * QUEUE_SIZE_FACTOR), runnable -> {
+        Thread thread = new Thread(runnable, "ActionLogReindexer-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ActionLogReindexerProgressReporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long progressInterval = Math.max(1, progressIntervalInSeconds);
+    reporter.scheduleAtFixedRate(this::logProgress, progressInterval, progressInterval, TimeUnit.SECONDS);
+
+    try {
+      for (LogFile logFile : logFiles) {
+        if (daysToIndex <= 0 || ModelService.isLogFileToIndex(logFile.key, daysToIndex)) {
+          executor.execute(() -> reindexFile(logFile, reindexListener));
+        }
+      }
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      reporter.shutdownNow();
+      closeIndexedFiles();
+    }
+
+    try {
+      solrClient.commit(RodaConstants.INDEX_ACTION_LOG);
+    } catch (SolrServerException | IOException | SolrException e) {
+      throw new GenericException("Error commiting action log index", e);
+    }
+
+    long elapsed = System.currentTimeMillis() - startTime;
+    LOGGER.info("Action log reindexed in {}: {} files ({} unchanged), {} entries ({} entries/s), {} failed",
+      Duration.ofMillis(elapsed), files.get(), skippedFiles.get(), entries.get(), getEntriesPerSecond(),
+      failures.get());
+  }
+
+  /**
+   * Lists all the day files by name. A file both in the log folder and in the
+   * storage (i.e. being moved) is read from the log folder, where it may still
+   * be growing.
+   */
+  private Collection<LogFile> listLogFiles() throws GenericException {
+    Map<String, LogFile> ret = new LinkedHashMap<>();
+
+    if (logPath != null && Files.isDirectory(logPath)) {
+      try (DirectoryStream<Path> paths = Files.newDirectoryStream(logPath)) {
+        for (Path path : paths) {
+          String name = path.getFileName().toString();
+          if (Files.isRegularFile(path)) {
+            ret.put(name,
+              new LogFile(name, LOG_FOLDER_PREFIX + name, Files.size(path), () -> Files.newInputStream(path)));
+          }
+        }
+      } catch (IOException e) {
+        throw new GenericException("Error listing action log files from " + logPath, e);
+      }
+    }
+
+    try (CloseableIterable<Resource> actionLogs = storage
+      .listResourcesUnderContainer(DefaultStoragePath.parse(RodaConstants.STORAGE_CONTAINER_ACTIONLOG), false)) {
+      for (Resource resource : actionLogs) {
+        String name = resource.getStoragePath().getName();
+        if (resource instanceof Binary && !ret.containsKey(name)) {
+          Binary binary = (Binary) resource;
+          ret.put(name, new LogFile(name, STORAGE_PREFIX + name, binary.getSizeInBytes(),
+            () -> binary.getContent().createInputStream()));
+        }
+      }
+    } catch (NotFoundException e) {
+      // no action log in storage yet
+    } catch (RODAException | IOException e) {
+      throw new GenericException("Error listing action log files from storage", e);
+    }
+
+    return ret.values();
+  }
+
+  private void reindexFile(LogFile logFile, Listener listener) {
+    IndexedFile previous = indexedFiles.get(logFile.key);
+    if (previous != null && logFile.sizeInBytes != null && previous.sizeInBytes == logFile.sizeInBytes) {
+      skippedFiles.incrementAndGet();
+      files.incrementAndGet();
+      return;
+    }
+
+    // log files only grow, so lines already indexed can be skipped
+    boolean resume = previous != null && logFile.sizeInBytes != null && previous.sizeInBytes < logFile.sizeInBytes;
+    int linesToSkip = resume ? previous.lines : 0;
+    int fileEntries = resume ? previous.entries : 0;
+    int indexed = 0;
+    int failed = 0;
+    boolean indexFailed = false;
+
+    List<SolrInputDocument> batch = new ArrayList<>();
+    try (CountingInputStream input = new CountingInputStream(logFile.content.open());
+      BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (lineNumber <= linesToSkip || StringUtils.isBlank(line)) {
+          continue;
+        }
+
+        try {
+          LogEntry entry = JsonUtils.getObjectFromJson(line, LogEntry.class);
+          if (entry == null) {
+            continue;
+          }
+          // 20180730 hsilva: this is needed for backwards compatibility (as
+          // before uuid was equal to id)
+          if (entry.getUUID() == null) {
+            entry.setUUID(entry.getId());
+          }
+          batch.add(SolrCollectionRegistry.toSolrDocument(LogEntry.class, entry));
+        } catch (RODAException e) {
+          failed++;
+          listener.entriesFailed(1,
+            new LogEntryJsonParseException(e).setFilename(logFile.location).setLine(lineNumber));
+        }
+
+        if (batch.size() >= batchSize) {
+          if (addToIndex(batch, listener)) {
+            indexed += batch.size();
+          } else {
+            failed += batch.size();
+            indexFailed = true;
+          }
+          batch.clear();
+        }
+      }
+
+      if (!batch.isEmpty()) {
+        if (addToIndex(batch, listener)) {
+          indexed += batch.size();
+        } else {
+          failed += batch.size();
+          indexFailed = true;
+        }
+      }
+
+      // files still being written are indexed again (from where they were
+      // read up to) in the next run
+      if (!indexFailed && logFile.sizeInBytes != null && input.getByteCount() == logFile.sizeInBytes) {
+        recordIndexedFile(logFile.key, new IndexedFile(input.getByteCount(), lineNumber, fileEntries + indexed));
+      }
+    } catch (IOException | RODAException e) {
+      listener.entriesFailed(0, new GenericException("Error reading action log file " + logFile.location, e));
+    }
+
+    files.incrementAndGet();
+    failures.addAndGet(failed);
+    listener.fileReindexed(logFile.location, indexed, failed);
+  }
+
+  private boolean addToIndex(List<SolrInputDocument> batch, Listener listener) {
+    try {
+      solrClient.add(RodaConstants.INDEX_ACTION_LOG, batch, commitWithinInMillis);
+      entries.addAndGet(batch.size());
+      return true;
+    } catch (SolrServerException | IOException | SolrException e) {
+      listener.entriesFailed(batch.size(), new GenericException("Error adding action log entries to index", e));
+      return false;
+    }
+  }
+
+  /*
+   * Indexed files
+   * ____________________________________________________________________________________________________________________
+   */
+
+  private void openIndexedFiles(Collection<LogFile> logFiles, boolean force) throws GenericException {
+    indexedFiles.clear();
+    try {
+      Files.createDirectories(indexedFilesPath.getParent());
+      if (!force && Files.exists(indexedFilesPath)) {
+        // the last record of each file wins
+        for (String line : Files.readAllLines(indexedFilesPath, StandardCharsets.UTF_8)) {
+          String[] fields = line.split(SEPARATOR);
+          if (fields.length == 4 && StringUtils.isNumeric(fields[1]) && StringUtils.isNumeric(fields[2])
+            && StringUtils.isNumeric(fields[3])) {
+            // records were once kept by location, e.g. storage/2020-01-01.log
+            String name = fields[0].substring(fields[0].lastIndexOf('/') + 1);
+            indexedFiles.put(name,
+              new IndexedFile(Long.parseLong(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+          }
+        }
+      }
+
+      // files that no longer exist (e.g. old logs that were deleted) must not
+      // count as indexed entries
+      Set<String> names = logFiles.stream().map(logFile -> logFile.key).collect(Collectors.toSet());
+      indexedFiles.keySet().retainAll(names);
+
+      // entries were removed from the index (e.g. it was cleared), so nothing
+      // can be taken as indexed
+      long entriesInIndex = countEntriesInIndex();
+      long entriesInFiles = indexedFiles.values().stream().mapToLong(f -> f.entries).sum();
+      if (entriesInIndex < entriesInFiles) {
+        LOGGER.info("Action log index has {} entries but {} were indexed from files, reindexing all files",
+          entriesInIndex, entriesInFiles);
+        indexedFiles.clear();
+      }
+
+      // rewrite the file with a single record per file
+      Path tmp = indexedFilesPath.resolveSibling(indexedFilesPath.getFileName() + ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, IndexedFile> entry : indexedFiles.entrySet()) {
+          writeIndexedFile(writer, entry.getKey(), entry.getValue());
+        }
+      }
+      Files.move(tmp, indexedFilesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      indexedFilesWriter = Files.newBufferedWriter(indexedFilesPath, StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new GenericException("Error opening action log indexed files " + indexedFilesPath, e);
+    }
+  }
+
+  private long countEntriesInIndex() throws GenericException {
+    SolrQuery query = new SolrQuery("*:*");
+    query.setRows(0);
+    try {
+      return solrClient.query(RodaConstants.INDEX_ACTION_LOG, query).getResults().getNumFound();
+    } catch (SolrServerException | IOException | SolrException e) {
+      throw new GenericException("Error counting action log entries", e);
+    }
+  }
+
+  private synchronized void recordIndexedFile(String key, IndexedFile indexedFile) throws IOException {
+    indexedFiles.put(key, indexedFile);
+    writeIndexedFile(indexedFilesWriter, key, indexedFile);
+    indexedFilesWriter.flush();
+  }
+
+  private static void writeIndexedFile(BufferedWriter writer, String key, IndexedFile indexedFile)
+    throws IOException {
+    writer.write(key + SEPARATOR + indexedFile.sizeInBytes + SEPARATOR + indexedFile.lines + SEPARATOR
+      + indexedFile.entries);
+    writer.write('\n');
+  }
+
+  private synchronized void closeIndexedFiles() {
+    if (indexedFilesWriter != null) {
+      try {
+        indexedFilesWriter.close();
+      } catch (IOException e) {
+        LOGGER.warn("Error closing action log indexed files {}", indexedFilesPath, e);
+      }
+      indexedFilesWriter = null;
+    }
+  }
+
+  /*
+   * Metrics
+   * ____________________________________________________________________________________________________________________
+   */
+
+  public long getFiles() {
+    return files.get();
+  }
+
+  public long getSkippedFiles() {
+    return skippedFiles.get();
+  }
+
+  public long getEntries() {
+    return entries.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getEntriesPerSecond() {
+    long elapsed = System.currentTimeMillis() - startTime;
+    return startTime == 0 || elapsed <= 0 ? 0 : entries.get() * 1000 / elapsed;
+  }
+
+  public void registerMetrics(MetricRegistry metrics) {
+    String prefix = ActionLogReindexer.class.getSimpleName();
+    registerMetric(metrics, MetricRegistry.name(prefix, "files"), (Gauge<Long>) this::getFiles);
+    registerMetric(metrics, MetricRegistry.name(prefix, "skippedFiles"), (Gauge<Long>) this::getSkippedFiles);
+    registerMetric(metrics, MetricRegistry.name(prefix, "entries"), (Gauge<Long>) this::getEntries);
+    registerMetric(metrics, MetricRegistry.name(prefix, "failures"), (Gauge<Long>) this::getFailures);
+    registerMetric(metrics, MetricRegistry.name(prefix, "entriesPerSecond"),
+      (Gauge<Long>) this::getEntriesPerSecond);
+  }
+
+  private static void registerMetric(MetricRegistry metrics, String name, Metric metric) {
+    // a new run replaces the metrics of the previous one
+    metrics.remove(name);
+    metrics.register(name, metric);
+  }
+
+  private void logProgress() {
+    LOGGER.info("Action log reindex: {} files ({} unchanged), {} entries ({} entries/s), {} failed", files.get(),
+      skippedFiles.get(), entries.get(), getEntriesPerSecond(), failures.get());
+  }
+}
@@ -0,0 +1,375 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.ReturnWithExceptions;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.model.ModelObserver;
+import org.roda.core.model.ModelObserverAdapter;
+import org.roda.core.model.ModelService;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.IdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the full text extracted from files (the Apache Tika other metadata)
+ * gzipped on disk, split into chunks of a bounded number of characters, so
+ * that indexing holds a single chunk in memory instead of the whole text.
+ *
+ * The chunks of a file are kept for as long as its extracted text does not
+ * change, so reindexing reads them instead of decoding the text again. The
+ * store is a cache: it can be deleted at any time and is rebuilt when files are
+ * indexed.
+ */
+public class FullTextStore extends ModelObserverAdapter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FullTextStore.class);
+
+  private static final String CONFIG_PREFIX = "core.index.fulltext";
+  public static final int DEFAULT_CHUNK_SIZE_IN_CHARS = 1000000;
+  public static final int DEFAULT_MAX_SIZE_IN_CHARS = 104857600;
+  // no limit in bytes, texts are only limited by their number of characters
+  public static final int DEFAULT_THRESHOLD_IN_BYTES = 0;
+
+  private static final String INFO_FILE = "info.properties";
+  private static final String INFO_SOURCE = "source";
+  private static final String INFO_CHUNKS = "chunks";
+  private static final String INFO_PREVIOUS_CHUNKS = "previousChunks";
+  private static final String CHUNK_SUFFIX = ".txt.gz";
+  // a chunk ends at the last whitespace of its final part, not to split words
+  private static final int WORD_BOUNDARY_DIVISOR = 10;
+  // the same file path always gets the same lock, without keeping one per file
+  private static final int LOCK_STRIPES = 256;
+
+  private static FullTextStore instance = null;
+
+  private final Path basePath;
+  private final int chunkSize;
+  private final long maxSize;
+  private final long thresholdInBytes;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  /**
+   * The chunks of the full text of a file.
+   */
+  public static class FullText {
+    private final int chunks;
+    private final int previousChunks;
+
+    public FullText(int chunks, int previousChunks) {
+      this.chunks = chunks;
+      this.previousChunks = previousChunks;
+    }
+
+    public int getChunks() {
+      return chunks;
+    }
+
+    /**
+     * @return the number of chunks before the text last changed, so that the
+     *         ones that are gone can be removed from the index.
+     */
+    public int getPreviousChunks() {
+      return previousChunks;
+    }
+  }
+
+  /**
+   * @param maxSizeInChars
+   *          only the first part of longer texts is kept
+   * @param thresholdInBytes
+   *          only the first bytes of bigger texts are read, 0 for no limit
+   */
+  public FullTextStore(Path basePath, int chunkSizeInChars, long maxSizeInChars, long thresholdInBytes) {
+    this.basePath = basePath;
+    this.chunkSize = Math.max(1, chunkSizeInChars);
+    this.maxSize = Math.max(chunkSize, maxSizeInChars);
+    this.thresholdInBytes = thresholdInBytes;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  public static synchronized FullTextStore getInstance() {
+    if (instance == null) {
+      int chunkSize = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_CHUNK_SIZE_IN_CHARS, CONFIG_PREFIX,
+        "chunk_size_in_chars");
+      int maxSize = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_MAX_SIZE_IN_CHARS, CONFIG_PREFIX,
+        "max_size_in_chars");
+      int threshold = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_THRESHOLD_IN_BYTES,
+        "core.index.fulltext_threshold_in_bytes");
+
+      instance = new FullTextStore(RodaCoreFactory.getDataPath().resolve(RodaConstants.CORE_FULLTEXT_FOLDER),
+        chunkSize, maxSize, threshold);
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.addModelObserver(instance);
+      }
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.removeModelObserver(instance);
+      }
+      instance = null;
+    }
+  }
+
+  /**
+   * Makes sure the stored chunks of a file reflect its extracted text, splitting
+   * the text again only if it changed since it was stored.
+   */
+  public FullText update(File file, Binary fulltext) throws IOException {
+    Path path = getPath(file);
+    synchronized (getLock(path)) {
+      return update(file, fulltext, path);
+    }
+  }
+
+  private FullText update(File file, Binary fulltext, Path path) throws IOException {
+    Properties info = readInfo(path);
+    String source = getSourceSignature(fulltext);
+    int previousChunks = getInt(info, INFO_CHUNKS);
+
+    if (source != null && source.equals(info.getProperty(INFO_SOURCE))) {
+      return new FullText(previousChunks, Math.max(previousChunks, getInt(info, INFO_PREVIOUS_CHUNKS)));
+    }
+
+    Files.createDirectories(path.getParent());
+    Path tmp = Files.createTempDirectory(path.getParent(), path.getFileName().toString());
+    try {
+      int chunks;
+      try (InputStream inputStream = fulltext.getContent().createInputStream()) {
+        InputStream textStream = inputStream;
+        if (thresholdInBytes > 0 && fulltext.getSizeInBytes() > thresholdInBytes) {
+          LOGGER.warn("Full text of file {} is bigger than {} bytes, only its first part is indexed",
+            IdUtils.getFileId(file), thresholdInBytes);
+          textStream = new BoundedInputStream(inputStream, thresholdInBytes);
+        }
+        chunks = split(new InputStreamReader(textStream, StandardCharsets.UTF_8), tmp, file);
+      }
+
+      Properties newInfo = new Properties();
+      if (source != null) {
+        newInfo.setProperty(INFO_SOURCE, source);
+      }
+      newInfo.setProperty(INFO_CHUNKS, Integer.toString(chunks));
+      newInfo.setProperty(INFO_PREVIOUS_CHUNKS, Integer.toString(Math.max(chunks, previousChunks)));
+      try (OutputStream outputStream = Files.newOutputStream(tmp.resolve(INFO_FILE))) {
+        newInfo.store(outputStream, null);
+      }
+
+      FSUtils.deletePathQuietly(path);
+      Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+      return new FullText(chunks, Math.max(chunks, previousChunks));
+    } finally {
+      FSUtils.deletePathQuietly(tmp);
+    }
+  }
+
+  private int split(Reader reader, Path directory, File file) throws IOException {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    char[] buffer = new char[chunkSize];
+    int buffered = 0;
+    int chunks = 0;
+    long total = 0;
+
+    int read;
+    while ((read = bufferedReader.read(buffer, buffered, buffer.length - buffered)) != -1 || buffered > 0) {
+      buffered += Math.max(read, 0);
+      if (read != -1 && buffered < buffer.length) {
+        continue;
+      }
+
+      int end = buffered;
+      if (read != -1) {
+        int boundary = lastWhitespace(buffer, buffered - buffered / WORD_BOUNDARY_DIVISOR, buffered);
+        end = boundary > 0 ? boundary : buffered;
+      }
+
+      boolean truncated = false;
+      if (total + end > maxSize) {
+        end = (int) (maxSize - total);
+        truncated = true;
+      }
+      if (end > 0) {
+        writeChunk(directory.resolve(chunks + CHUNK_SUFFIX), buffer, end);
+        chunks++;
+        total += end;
+      }
+
+      if (truncated) {
+        LOGGER.warn("Full text of file {} is bigger than {} characters, only its first part is indexed",
+          IdUtils.getFileId(file), maxSize);
+        break;
+      }
+
+      System.arraycopy(buffer, end, buffer, 0, buffered - end);
+      buffered -= end;
+    }
+    return chunks;
+  }
+
+  private static int lastWhitespace(char[] buffer, int from, int to) {
+    for (int i = to - 1; i >= from; i--) {
+      if (Character.isWhitespace(buffer[i])) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static void writeChunk(Path chunkPath, char[] buffer, int length) throws IOException {
+    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(chunkPath)),
+      StandardCharsets.UTF_8)) {
+      writer.write(buffer, 0, length);
+    }
+  }
+
+  /**
+   * @return the stored chunks of the full text of a file, none if it was never
+   *         stored
+   */
+  public FullText retrieve(File file) throws IOException {
+    Path path = getPath(file);
+    synchronized (getLock(path)) {
+      Properties info = readInfo(path);
+      int chunks = getInt(info, INFO_CHUNKS);
+      return new FullText(chunks, Math.max(chunks, getInt(info, INFO_PREVIOUS_CHUNKS)));
+    }
+  }
+
+  public String retrieveChunk(File file, int chunk) throws IOException {
+    Path path = getPath(file);
+    synchronized (getLock(path)) {
+      try (Reader reader = new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(path.resolve(chunk + CHUNK_SUFFIX))), StandardCharsets.UTF_8)) {
+        return IOUtils.toString(reader);
+      }
+    }
+  }
+
+  /**
+   * The chunks of a file are replaced by deleting them and moving the new ones
+   * in place, so updates and reads of the same file must not interleave.
+   */
+  private Object getLock(Path path) {
+    return locks[Math.floorMod(path.hashCode(), locks.length)];
+  }
+
+  private Path getPath(File file) {
+    return getRepresentationPath(file.getAipId(), file.getRepresentationId()).resolve(IdUtils.getFileId(file));
+  }
+
+  private Path getRepresentationPath(String aipId, String representationId) {
+    return basePath.resolve(aipId).resolve(IdUtils.getRepresentationId(aipId, representationId));
+  }
+
+  private static Properties readInfo(Path path) throws IOException {
+    Properties info = new Properties();
+    try (InputStream inputStream = Files.newInputStream(path.resolve(INFO_FILE))) {
+      info.load(inputStream);
+    } catch (NoSuchFileException e) {
+      // not stored yet
+    }
+    return info;
+  }
+
+  private static int getInt(Properties info, String key) {
+    try {
+      return Integer.parseInt(info.getProperty(key, "0"));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Identifies the content of the extracted text without reading it, from its
+   * checksums or, on file system storage, from its size and modification time.
+   *
+   * @return the signature, or null if the content cannot be identified
+   */
+  private static String getSourceSignature(Binary fulltext) {
+    Map<String, String> digest = fulltext.getContentDigest();
+    if (digest != null && !digest.isEmpty()) {
+      return fulltext.getSizeInBytes() + " " + new TreeMap<>(digest);
+    }
+
+    try {
+      URI uri = fulltext.getContent().getURI();
+      if ("file".equals(uri.getScheme())) {
+        Path path = Paths.get(uri);
+        return fulltext.getSizeInBytes() + " " + Files.getLastModifiedTime(path).toMillis();
+      }
+    } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+      LOGGER.trace("Could not identify full text content", e);
+    }
+    return null;
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipDeleted(String aipId, boolean deleteIncidences) {
+    FSUtils.deletePathQuietly(basePath.resolve(aipId));
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences) {
+    aipIds.forEach(aipId -> FSUtils.deletePathQuietly(basePath.resolve(aipId)));
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationDeleted(String aipId, String representationId,
+    boolean deleteIncidences) {
+    FSUtils.deletePathQuietly(getRepresentationPath(aipId, representationId));
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileDeleted(String aipId, String representationId,
+    List<String> fileDirectoryPath, String fileId, boolean deleteIncidences) {
+    Path path = getRepresentationPath(aipId, representationId)
+      .resolve(IdUtils.getFileId(aipId, representationId, fileDirectoryPath, fileId));
+    synchronized (getLock(path)) {
+      FSUtils.deletePathQuietly(path);
+    }
+    return new ReturnWithExceptions<>(this);
+  }
+}
@@ -0,0 +1,388 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.exceptions.ReturnWithExceptions;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.AIPLink;
+import org.roda.core.data.v2.ip.DIP;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.ip.metadata.PreservationMetadata;
+import org.roda.core.data.v2.risks.RiskIncidence;
+import org.roda.core.data.v2.user.Group;
+import org.roda.core.data.v2.user.User;
+import org.roda.core.model.ModelObserver;
+import org.roda.core.model.ModelObserverAdapter;
+import org.roda.core.model.ModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Runs the independent index counts needed to assemble a browse page
+ * concurrently, on a bounded pool, and keeps the results for a short while.
+ *
+ * Cached counts are grouped by AIP and dropped as soon as the model notifies a
+ * change on that AIP (or on something counted for it). Log entries are the
+ * exception: they are created on every request, so the log count is only
+ * refreshed when the cache entry expires.
+ */
+public class IndexCountService extends ModelObserverAdapter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexCountService.class);
+
+  private static final String CONFIG_PREFIX = "core.index.browse_counts";
+  private static final int DEFAULT_THREADS = 8;
+  private static final int DEFAULT_TTL_IN_SECONDS = 10;
+  private static final int DEFAULT_CACHE_SIZE = 1000;
+  private static final String KEY_SEPARATOR = "/";
+
+  private static IndexCountService instance = null;
+
+  private final IndexService index;
+  private final ExecutorService executor;
+  private final Cache<String, Map<String, Long>> cache;
+
+  public IndexCountService(IndexService index, int threads, long ttlInSeconds, long cacheSize) {
+    this.index = index;
+
+    int poolSize = Math.max(1, threads);
+    AtomicInteger threadCounter = new AtomicInteger();
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "index-count-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    this.executor = threadPoolExecutor;
+
+    if (ttlInSeconds > 0) {
+      this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttlInSeconds, TimeUnit.SECONDS).maximumSize(cacheSize)
+        .build();
+    } else {
+      this.cache = null;
+    }
+
+    LOGGER.debug("Started index count service with {} threads (cache TTL {} s)", poolSize, ttlInSeconds);
+  }
+
+  public static synchronized IndexCountService getInstance() {
+    if (instance == null) {
+      int threads = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_THREADS, CONFIG_PREFIX, "threads");
+      int ttl = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_TTL_IN_SECONDS, CONFIG_PREFIX, "ttl_in_seconds");
+      int size = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_CACHE_SIZE, CONFIG_PREFIX, "size");
+
+      instance = new IndexCountService(RodaCoreFactory.getIndexService(), threads, ttl, size);
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.addModelObserver(instance);
+      }
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.removeModelObserver(instance);
+      }
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+    invalidateAll();
+  }
+
+  /**
+   * Counts all the given queries at the same time.
+   *
+   * @param aipId
+   *          the AIP the counts relate to, used to invalidate cached results.
+   * @param scope
+   *          what is being browsed inside the AIP (e.g. representation or file
+   *          UUID), or <code>null</code> for the AIP itself.
+   * @param user
+   *          the user for whom the counts are done (permission filters are
+   *          only applied to the queries created with one).
+   * @param queries
+   *          the queries to run, by name.
+   *
+   * @return the count of each query, by name.
+   */
+  public Map<String, Long> count(String aipId, String scope, User user, Map<String, CountQuery> queries)
+    throws GenericException, RequestNotValidException {
+    if (queries.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    String key = aipId + KEY_SEPARATOR + (scope != null ? scope : "") + KEY_SEPARATOR
+      + (user != null ? user.getId() : "") + KEY_SEPARATOR + queries.keySet();
+    Map<String, Long> counts = cache != null ? cache.getIfPresent(key) : null;
+    if (counts == null) {
+      counts = doCount(queries);
+      if (cache != null) {
+        cache.put(key, counts);
+      }
+    }
+    return counts;
+  }
+
+  private Map<String, Long> doCount(Map<String, CountQuery> queries) throws GenericException, RequestNotValidException {
+    Map<String, Future<Long>> futures = new LinkedHashMap<>();
+    for (Entry<String, CountQuery> entry : queries.entrySet()) {
+      CountQuery query = entry.getValue();
+      futures.put(entry.getKey(), executor.submit(() -> query.count(index)));
+    }
+
+    Map<String, Long> counts = new HashMap<>();
+    try {
+      for (Entry<String, Future<Long>> entry : futures.entrySet()) {
+        counts.put(entry.getKey(), entry.getValue().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      futures.values().forEach(future -> future.cancel(true));
+      throw new GenericException("Interrupted while counting", e);
+    } catch (ExecutionException e) {
+      futures.values().forEach(future -> future.cancel(true));
+      if (e.getCause() instanceof RequestNotValidException) {
+        throw (RequestNotValidException) e.getCause();
+      } else if (e.getCause() instanceof GenericException) {
+        throw (GenericException) e.getCause();
+      }
+      throw new GenericException("Error while counting", e.getCause());
+    }
+    return Collections.unmodifiableMap(counts);
+  }
+
+  public void invalidateAIP(String aipId) {
+    if (cache != null && aipId != null) {
+      String prefix = aipId + KEY_SEPARATOR;
+      cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+  }
+
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  private ReturnWithExceptions<Void, ModelObserver> invalidateAIPs(String... aipIds) {
+    for (String aipId : aipIds) {
+      invalidateAIP(aipId);
+    }
+    return new ReturnWithExceptions<>(this);
+  }
+
+  private ReturnWithExceptions<Void, ModelObserver> invalidateDIP(DIP dip) {
+    List<String> aipIds = new ArrayList<>();
+    for (AIPLink link : dip.getAipIds()) {
+      aipIds.add(link.getAipId());
+    }
+    // representation and file links always point into the linked AIPs
+    return invalidateAIPs(aipIds.toArray(new String[aipIds.size()]));
+  }
+
+  private ReturnWithExceptions<Void, ModelObserver> invalidateEverything() {
+    invalidateAll();
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipCreated(AIP aip) {
+    return invalidateAIPs(aip.getId(), aip.getParentId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipUpdated(AIP aip) {
+    return invalidateAIPs(aip.getId(), aip.getParentId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipStateUpdated(AIP aip) {
+    return invalidateAIPs(aip.getId(), aip.getParentId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipMoved(AIP aip, String oldParentId, String newParentId) {
+    return invalidateAIPs(aip.getId(), oldParentId, newParentId);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipDeleted(String aipId, boolean deleteIncidences) {
+    // the parent is no longer known, so its child count must be refreshed too
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences) {
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationCreated(Representation representation) {
+    return invalidateAIPs(representation.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationUpdated(Representation representation) {
+    return invalidateAIPs(representation.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationDeleted(String aipId, String representationId,
+    boolean deleteIncidences) {
+    return invalidateAIPs(aipId);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileCreated(File file) {
+    return invalidateAIPs(file.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileUpdated(File file) {
+    return invalidateAIPs(file.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileDeleted(String aipId, String representationId,
+    List<String> fileDirectoryPath, String fileId, boolean deleteIncidences) {
+    return invalidateAIPs(aipId);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> userUpdated(User user) {
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> groupUpdated(Group group) {
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> groupDeleted(String groupID) {
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataCreated(PreservationMetadata metadata) {
+    return invalidateAIPs(metadata.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataUpdated(PreservationMetadata metadata) {
+    return invalidateAIPs(metadata.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataDeleted(PreservationMetadata metadata) {
+    return invalidateAIPs(metadata.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipPermissionsUpdated(AIP aip) {
+    return invalidateAIPs(aip.getId(), aip.getParentId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipPermissionsUpdated(DIP dip) {
+    return invalidateDIP(dip);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceCreatedOrUpdated(RiskIncidence riskIncidence,
+    boolean commit) {
+    return invalidateAIPs(riskIncidence.getAipId());
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidencesCreatedOrUpdated(List<RiskIncidence> riskIncidences,
+    Map<String, RiskIncidence> previousRiskIncidences, boolean commit) {
+    return invalidateAIPs(riskIncidences.stream().map(RiskIncidence::getAipId).distinct().toArray(String[]::new));
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceDeleted(String riskIncidenceId, boolean commit) {
+    return invalidateEverything();
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipCreated(DIP dip, boolean commit) {
+    return invalidateDIP(dip);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipUpdated(DIP dip, boolean commit) {
+    return invalidateDIP(dip);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipDeleted(String dipId, boolean commit) {
+    return invalidateEverything();
+  }
+
+  /**
+   * A count over one index collection, optionally restricted to what a user is
+   * allowed to see.
+   */
+  public static class CountQuery {
+    private final Class<? extends IsIndexed> classToCount;
+    private final Filter filter;
+    private final User user;
+    private final boolean justActive;
+
+    public CountQuery(Class<? extends IsIndexed> classToCount, Filter filter) {
+      this(classToCount, filter, null, false);
+    }
+
+    public CountQuery(Class<? extends IsIndexed> classToCount, Filter filter, User user, boolean justActive) {
+      this.classToCount = classToCount;
+      this.filter = filter;
+      this.user = user;
+      this.justActive = justActive;
+    }
+
+    private Long count(IndexService index) throws GenericException, RequestNotValidException {
+      if (user != null) {
+        return index.count(classToCount, filter, user, justActive);
+      } else {
+        return index.count(classToCount, filter);
+      }
+    }
+  }
+}
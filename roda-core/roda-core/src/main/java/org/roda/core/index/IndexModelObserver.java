@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +28,7 @@ import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.NotSupportedException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.exceptions.ReturnWithExceptions;
 import org.roda.core.data.utils.JsonUtils;
@@ -34,6 +36,7 @@ import org.roda.core.data.v2.IsModelObject;
 import org.roda.core.data.v2.common.OptionalWithCause;
 import org.roda.core.data.v2.index.IsIndexed;
 import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
 import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.AIPState;
@@ -44,7 +47,6 @@ import org.roda.core.data.v2.ip.IndexedAIP;
 import org.roda.core.data.v2.ip.IndexedDIP;
 import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.IndexedRepresentation;
-import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.TransferredResource;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
@@ -59,12 +61,14 @@ import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.data.v2.log.LogEntry;
 import org.roda.core.data.v2.notifications.Notification;
 import org.roda.core.data.v2.ri.RepresentationInformation;
+import org.roda.core.data.v2.risks.IncidenceStatus;
 import org.roda.core.data.v2.risks.IndexedRisk;
 import org.roda.core.data.v2.risks.Risk;
 import org.roda.core.data.v2.risks.RiskIncidence;
 import org.roda.core.data.v2.user.Group;
 import org.roda.core.data.v2.user.RODAMember;
 import org.roda.core.data.v2.user.User;
+import org.roda.core.index.schema.SolrCollectionRegistry;
 import org.roda.core.index.schema.collections.AIPCollection;
 import org.roda.core.index.schema.collections.DIPFileCollection;
 import org.roda.core.index.schema.collections.FileCollection;
@@ -84,6 +88,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.google.common.collect.Lists;
+
 /**
  * 
  * @author Luis Faria <lfaria@keep.pt>
@@ -91,6 +97,8 @@ import org.xml.sax.SAXException;
  */
 public class IndexModelObserver implements ModelObserver {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexModelObserver.class);
+  private static final int DELETE_BATCH_SIZE = 500;
+  private static final int UPDATE_BATCH_SIZE = 1000;
 
   private final SolrClient index;
   private final ModelService model;
@@ -251,6 +259,7 @@ public class IndexModelObserver implements ModelObserver {
 
     FileCollection.Info info = new FileCollection.Info(aip, ancestors);
     SolrUtils.create2(index, (ModelObserver) this, IndexedFile.class, file, info).addTo(ret);
+    indexFulltextChunks(file).addTo(ret);
 
     sizeInBytes = (Long) info.getAccumulators().get(RodaConstants.FILE_SIZE);
 
@@ -509,6 +518,27 @@ public class IndexModelObserver implements ModelObserver {
     return ret;
   }
 
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences) {
+    ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
+
+    // one delete per collection and batch instead of one per AIP, with batches
+    // small enough not to exceed the maximum number of clauses of a query
+    for (List<String> batch : Lists.partition(aipIds, DELETE_BATCH_SIZE)) {
+      SolrUtils.delete(index, IndexedAIP.class, batch, this).addTo(ret);
+      deleteDocumentsFromIndex(IndexedRepresentation.class, RodaConstants.REPRESENTATION_AIP_ID, batch).addTo(ret);
+      deleteDocumentsFromIndex(IndexedFile.class, RodaConstants.FILE_AIP_ID, batch).addTo(ret);
+      deleteDocumentsFromIndex(IndexedPreservationEvent.class, RodaConstants.PRESERVATION_EVENT_AIP_ID, batch)
+        .addTo(ret);
+
+      if (deleteIncidences) {
+        deleteDocumentsFromIndex(RiskIncidence.class, RodaConstants.RISK_INCIDENCE_AIP_ID, batch).addTo(ret);
+      }
+    }
+
+    return ret;
+  }
+
   @Override
   public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataCreated(DescriptiveMetadata descriptiveMetadata) {
     ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
@@ -656,6 +686,40 @@ public class IndexModelObserver implements ModelObserver {
     return ret;
   }
 
+  /**
+   * Indexes the full text of a file beyond its first chunk, which was indexed
+   * with the file, one chunk per request so that a single chunk is in memory.
+   */
+  private ReturnWithExceptions<Void, ModelObserver> indexFulltextChunks(File file) {
+    ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
+    if (file.isDirectory()) {
+      return ret;
+    }
+
+    try {
+      FullTextStore store = FullTextStore.getInstance();
+      FullTextStore.FullText fulltext = store.retrieve(file);
+      String collection = SolrCollectionRegistry.getIndexName(IndexedFile.class);
+      for (int chunk = 1; chunk < fulltext.getChunks(); chunk++) {
+        SolrUtils.create(index, collection,
+          FileCollection.toFulltextChunkDocument(file, chunk, store.retrieveChunk(file, chunk)), this).addTo(ret);
+      }
+
+      // chunks of a previous, longer, text
+      if (fulltext.getPreviousChunks() > Math.max(1, fulltext.getChunks())) {
+        String uuid = IdUtils.getFileId(file);
+        List<String> staleChunks = new ArrayList<>();
+        for (int chunk = Math.max(1, fulltext.getChunks()); chunk < fulltext.getPreviousChunks(); chunk++) {
+          staleChunks.add(FileCollection.getFulltextChunkId(uuid, chunk));
+        }
+        SolrUtils.delete(index, IndexedFile.class, staleChunks, this).addTo(ret);
+      }
+    } catch (IOException | NotSupportedException e) {
+      LOGGER.warn("Error indexing fulltext of file: {}", file, e);
+    }
+    return ret;
+  }
+
   @Override
   public ReturnWithExceptions<Void, ModelObserver> fileDeleted(String aipId, String representationId,
     List<String> fileDirectoryPath, String fileId, boolean deleteIncidences) {
@@ -663,6 +727,7 @@ public class IndexModelObserver implements ModelObserver {
 
     String uuid = IdUtils.getFileId(aipId, representationId, fileDirectoryPath, fileId);
     deleteDocumentFromIndex(IndexedFile.class, uuid).addTo(ret);
+    deleteDocumentsFromIndex(IndexedFile.class, RodaConstants.FILE_FULLTEXT_CHUNK_OF, uuid).addTo(ret);
 
     if (deleteIncidences) {
       deleteDocumentsFromIndex(RiskIncidence.class, RodaConstants.RISK_INCIDENCE_FILE_ID, fileId).addTo(ret);
@@ -839,6 +904,12 @@ public class IndexModelObserver implements ModelObserver {
     return SolrUtils.delete(index, classToDelete, new Filter(new SimpleFilterParameter(fieldName, fieldValue)), this);
   }
 
+  private <T extends IsIndexed> ReturnWithExceptions<Void, ModelObserver> deleteDocumentsFromIndex(
+    Class<T> classToDelete, String fieldName, List<String> fieldValues) {
+    return SolrUtils.delete(index, classToDelete, new Filter(new OneOfManyFilterParameter(fieldName, fieldValues)),
+      this);
+  }
+
   private <T extends IsIndexed> ReturnWithExceptions<Void, ModelObserver> deleteDocumentsFromIndex(
     Class<T> classToDelete, String fieldName, String fieldValue, boolean commit) {
     return SolrUtils.delete(index, classToDelete, new Filter(new SimpleFilterParameter(fieldName, fieldValue)), this,
@@ -860,13 +931,26 @@ public class IndexModelObserver implements ModelObserver {
     ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
 
     // change AIP
-    SolrUtils.update(index, IndexedAIP.class, aip.getId(),
-      SolrUtils.getPermissionsAsPreCalculatedFields(aip.getPermissions()), (ModelObserver) this).addTo(ret);
+    Map<String, Object> aipFields = new HashMap<>(SolrUtils.getPermissionsAsPreCalculatedFields(aip.getPermissions()));
+    aipFields.put(RodaConstants.AIP_PERMISSIONS_PENDING, false);
+    SolrUtils.update(index, IndexedAIP.class, aip.getId(), aipFields, (ModelObserver) this).addTo(ret);
 
     if (ret.isEmpty()) {
-      // change Representations, Files and Preservation events
-      representationsPermissionsUpdated(aip).addTo(ret);
-      preservationEventsPermissionsUpdated(aip).addTo(ret);
+      // change Representations, Files and Preservation events, in the index
+      // (by AIP id) instead of walking through them in storage
+      Map<String, Object> fields = SolrUtils.getPermissionsAsPreCalculatedFields(aip.getPermissions());
+      SolrUtils.updateAll(index, IndexedRepresentation.class,
+        new Filter(new SimpleFilterParameter(RodaConstants.REPRESENTATION_AIP_ID, aip.getId())), fields,
+        UPDATE_BATCH_SIZE, (ModelObserver) this).addTo(ret);
+      SolrUtils.updateAll(index, IndexedFile.class,
+        new Filter(new SimpleFilterParameter(RodaConstants.FILE_AIP_ID, aip.getId())), fields, UPDATE_BATCH_SIZE,
+        (ModelObserver) this).addTo(ret);
+
+      Map<String, Object> eventFields = new HashMap<>(fields);
+      eventFields.put(RodaConstants.INDEX_STATE, SolrUtils.formatEnum(aip.getState()));
+      SolrUtils.updateAll(index, IndexedPreservationEvent.class,
+        new Filter(new SimpleFilterParameter(RodaConstants.PRESERVATION_EVENT_AIP_ID, aip.getId())), eventFields,
+        UPDATE_BATCH_SIZE, (ModelObserver) this).addTo(ret);
     }
 
     return ret;
@@ -900,101 +984,95 @@ public class IndexModelObserver implements ModelObserver {
     return ret;
   }
 
-  private ReturnWithExceptions<Void, ModelObserver> representationsPermissionsUpdated(final AIP aip) {
-    ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
-    for (Representation representation : aip.getRepresentations()) {
-      representationPermissionsUpdated(aip, representation).addTo(ret);
-    }
-    return ret;
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskCreatedOrUpdated(Risk risk, int incidences, boolean commit) {
+    return SolrUtils.create2(index, (ModelObserver) this, IndexedRisk.class, risk,
+      new RiskCollection.Info(risk, incidences));
   }
 
-  private ReturnWithExceptions<Void, ModelObserver> representationPermissionsUpdated(final AIP aip,
-    final Representation representation) {
-    ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
-
-    SolrUtils.update(index, IndexedRepresentation.class, IdUtils.getRepresentationId(representation),
-      SolrUtils.getPermissionsAsPreCalculatedFields(aip.getPermissions()), (ModelObserver) this).addTo(ret);
-
-    if (ret.isEmpty()) {
-      try (CloseableIterable<OptionalWithCause<File>> allFiles = model.listFilesUnder(representation.getAipId(),
-        representation.getId(), true)) {
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskDeleted(String riskId, boolean commit) {
+    return SolrUtils.delete(index, IndexedRisk.class, Arrays.asList(riskId), this, commit);
+  }
 
-        for (OptionalWithCause<File> file : allFiles) {
-          if (file.isPresent()) {
-            SolrUtils.update(index, IndexedFile.class, IdUtils.getFileId(file.get()),
-              SolrUtils.getPermissionsAsPreCalculatedFields(aip.getPermissions()), (ModelObserver) this).addTo(ret);
-          } else {
-            LOGGER.error("Cannot do a partial update on file", file.getCause());
-            ret.add(file.getCause());
-          }
-        }
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceCreatedOrUpdated(RiskIncidence riskIncidence,
+    boolean commit) {
+    // the indexed version, if any, tells how the risk counters change
+    return riskIncidencesCreatedOrUpdated(Collections.singletonList(riskIncidence),
+      retrieveIndexedRiskIncidences(Collections.singletonList(riskIncidence.getId())), commit);
+  }
 
-      } catch (AuthorizationDeniedException | IOException | NotFoundException | GenericException
-        | RequestNotValidException e) {
-        LOGGER.error("Cannot do a partial update", e);
-        ret.add(e);
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidencesCreatedOrUpdated(List<RiskIncidence> riskIncidences,
+    Map<String, RiskIncidence> previousRiskIncidences, boolean commit) {
+    ReturnWithExceptions<Void, ModelObserver> ret = SolrUtils.create(index, RiskIncidence.class, riskIncidences, this);
+
+    List<RiskIncidence> previous = new ArrayList<>();
+    for (RiskIncidence riskIncidence : riskIncidences) {
+      if (previousRiskIncidences.containsKey(riskIncidence.getId())) {
+        previous.add(previousRiskIncidences.get(riskIncidence.getId()));
       }
     }
-
+    incrementRiskCounters(previous, riskIncidences).addTo(ret);
+    commitRiskIncidences(commit, ret);
     return ret;
   }
 
-  private ReturnWithExceptions<Void, ModelObserver> preservationEventsPermissionsUpdated(final AIP aip) {
-    ReturnWithExceptions<Void, ModelObserver> ret = new ReturnWithExceptions<>(this);
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceDeleted(String riskIncidenceId, boolean commit) {
+    List<String> ids = Arrays.asList(riskIncidenceId);
+    Map<String, RiskIncidence> previous = retrieveIndexedRiskIncidences(ids);
+    ReturnWithExceptions<Void, ModelObserver> ret = SolrUtils.delete(index, RiskIncidence.class, ids, this, false);
+    incrementRiskCounters(previous.values(), Collections.emptyList()).addTo(ret);
+    commitRiskIncidences(commit, ret);
+    return ret;
+  }
 
-    try (CloseableIterable<OptionalWithCause<PreservationMetadata>> preservationMetadata = model
-      .listPreservationMetadata(aip.getId(), true)) {
-      for (OptionalWithCause<PreservationMetadata> opm : preservationMetadata) {
-        if (opm.isPresent()) {
-          PreservationMetadata pm = opm.get();
-          if (PreservationMetadataType.EVENT.equals(pm.getType())) {
-            preservationEventPermissionsUpdated(pm, aip.getPermissions(), aip.getState()).addTo(ret);
-          }
-        } else {
-          LOGGER.error("Cannot index premis event", opm.getCause());
-          ret.add(opm.getCause());
-        }
+  private Map<String, RiskIncidence> retrieveIndexedRiskIncidences(List<String> riskIncidenceIds) {
+    Map<String, RiskIncidence> ret = new HashMap<>();
+    try {
+      for (RiskIncidence riskIncidence : SolrUtils.retrieve(index, RiskIncidence.class, riskIncidenceIds,
+        new ArrayList<>())) {
+        ret.put(riskIncidence.getId(), riskIncidence);
       }
-    } catch (RequestNotValidException | NotFoundException | GenericException | AuthorizationDeniedException
-      | IOException e) {
-      LOGGER.error("Cannot index preservation events", e);
-      ret.add(e);
+    } catch (GenericException e) {
+      LOGGER.warn("Could not retrieve indexed risk incidences, the incidence counters of their risks may be off", e);
     }
-
     return ret;
   }
 
-  private ReturnWithExceptions<Void, ModelObserver> preservationEventPermissionsUpdated(PreservationMetadata pm,
-    Permissions permissions, AIPState state) {
-    Map<String, Object> updateFields = new HashMap<>();
-    updateFields.putAll(SolrUtils.getPermissionsAsPreCalculatedFields(permissions));
-    updateFields.put(RodaConstants.INDEX_STATE, SolrUtils.formatEnum(state));
-    updateFields.put(RodaConstants.PRESERVATION_EVENT_AIP_ID, pm.getAipId());
-    updateFields.put(RodaConstants.PRESERVATION_EVENT_ID, pm.getId());
-    return SolrUtils.update(index, IndexedPreservationEvent.class, pm.getId(), updateFields, this);
-
+  /**
+   * Changes the counters of each risk once for all its removed and added
+   * incidences.
+   */
+  private ReturnWithExceptions<Void, ModelObserver> incrementRiskCounters(Collection<RiskIncidence> removed,
+    Collection<RiskIncidence> added) {
+    Map<String, Map<String, Integer>> increments = new HashMap<>();
+    removed.forEach(riskIncidence -> countRiskIncidence(increments, riskIncidence, -1));
+    added.forEach(riskIncidence -> countRiskIncidence(increments, riskIncidence, 1));
+    increments.values().forEach(counters -> counters.values().removeIf(amount -> amount == 0));
+    increments.values().removeIf(Map::isEmpty);
+    return SolrUtils.increment(index, IndexedRisk.class, increments, (ModelObserver) this);
   }
 
-  @Override
-  public ReturnWithExceptions<Void, ModelObserver> riskCreatedOrUpdated(Risk risk, int incidences, boolean commit) {
-    return SolrUtils.create2(index, (ModelObserver) this, IndexedRisk.class, risk,
-      new RiskCollection.Info(risk, incidences));
-  }
-
-  @Override
-  public ReturnWithExceptions<Void, ModelObserver> riskDeleted(String riskId, boolean commit) {
-    return SolrUtils.delete(index, IndexedRisk.class, Arrays.asList(riskId), this, commit);
-  }
-
-  @Override
-  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceCreatedOrUpdated(RiskIncidence riskIncidence,
-    boolean commit) {
-    return SolrUtils.create(index, RiskIncidence.class, riskIncidence, this, commit);
+  private void commitRiskIncidences(boolean commit, ReturnWithExceptions<Void, ModelObserver> ret) {
+    if (commit) {
+      try {
+        SolrUtils.commit(index, RiskIncidence.class, IndexedRisk.class);
+      } catch (GenericException e) {
+        ret.add(e);
+      }
+    }
   }
 
-  @Override
-  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceDeleted(String riskIncidenceId, boolean commit) {
-    return SolrUtils.delete(index, RiskIncidence.class, Arrays.asList(riskIncidenceId), this, commit);
+  private static void countRiskIncidence(Map<String, Map<String, Integer>> increments, RiskIncidence riskIncidence,
+    int amount) {
+    Map<String, Integer> counters = increments.computeIfAbsent(riskIncidence.getRiskId(), k -> new HashMap<>());
+    counters.merge(RodaConstants.RISK_INCIDENCES_COUNT, amount, Integer::sum);
+    if (IncidenceStatus.UNMITIGATED.equals(riskIncidence.getStatus())) {
+      counters.merge(RodaConstants.RISK_UNMITIGATED_INCIDENCES_COUNT, amount, Integer::sum);
+    }
   }
 
   @Override
@@ -14,6 +14,7 @@ import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -46,6 +47,8 @@ import org.roda.core.data.v2.index.IndexRunnable;
 import org.roda.core.data.v2.index.IsIndexed;
 import org.roda.core.data.v2.index.facet.Facets;
 import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.OrFiltersParameters;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.roda.core.data.v2.ip.AIP;
@@ -56,6 +59,7 @@ import org.roda.core.data.v2.ip.IndexedAIP;
 import org.roda.core.data.v2.ip.IndexedDIP;
 import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.IndexedRepresentation;
+import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.ip.TransferredResource;
@@ -68,6 +72,7 @@ import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.data.v2.log.LogEntry;
 import org.roda.core.data.v2.notifications.Notification;
 import org.roda.core.data.v2.ri.RepresentationInformation;
+import org.roda.core.data.v2.risks.IncidenceStatus;
 import org.roda.core.data.v2.risks.IndexedRisk;
 import org.roda.core.data.v2.risks.Risk;
 import org.roda.core.data.v2.risks.RiskIncidence;
@@ -79,7 +84,6 @@ import org.roda.core.model.ModelObserver;
 import org.roda.core.model.ModelService;
 import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.storage.Binary;
-import org.roda.core.storage.DefaultStoragePath;
 import org.roda.core.storage.Resource;
 import org.roda.core.storage.StorageService;
 import org.slf4j.Logger;
@@ -96,6 +100,7 @@ public class IndexService {
   private final ModelService model;
   private final IndexModelObserver observer;
   private final NodeType nodeType;
+  private AIPPermissionsPropagator permissionsPropagator;
 
   public IndexService(SolrClient index, ModelService model, MetricRegistry metricRegistry,
     Configuration rodaConfiguration, NodeType nodeType) {
@@ -365,11 +370,33 @@ public class IndexService {
   public ReturnWithExceptions<Void, ModelObserver> reindexRisk(Risk risk) {
     ReturnWithExceptions<Void, ModelObserver> ret = RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseReturn(nodeType);
     if (ret.isEmpty()) {
-      ret = observer.riskCreatedOrUpdated(risk, 0, false);
+      try {
+        ret = observer.riskCreatedOrUpdated(countRiskIncidences(risk), 0, false);
+      } catch (GenericException | RequestNotValidException e) {
+        ret.add(e);
+      }
     }
     return ret;
   }
 
+  /**
+   * Risks kept in storage have no incidence counters, so they are taken from the
+   * incidences already indexed. The incidences indexed afterwards change them as
+   * usual.
+   */
+  private IndexedRisk countRiskIncidences(Risk risk) throws GenericException, RequestNotValidException {
+    if (risk instanceof IndexedRisk) {
+      return (IndexedRisk) risk;
+    }
+
+    Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_RISK_ID, risk.getId()));
+    IndexedRisk indexedRisk = new IndexedRisk(risk);
+    indexedRisk.setIncidencesCount(count(RiskIncidence.class, filter).intValue());
+    filter.add(new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_STATUS, IncidenceStatus.UNMITIGATED.toString()));
+    indexedRisk.setUnmitigatedIncidencesCount(count(RiskIncidence.class, filter).intValue());
+    return indexedRisk;
+  }
+
   public void reindexRisks(StorageService storage) {
     try {
       reindexAll(storage, Risk.class);
@@ -414,21 +441,100 @@ public class IndexService {
 
   public void reindexActionLogs()
     throws GenericException, NotFoundException, AuthorizationDeniedException, RequestNotValidException {
+    reindexActionLogs(0, false, null);
+  }
+
+  /**
+   * Reindexes the action log day files of the last {@code daysToIndex} days
+   * (all if 0) with an {@link ActionLogReindexer}, skipping the files already
+   * indexed by a previous run unless {@code force} is true.
+   */
+  public void reindexActionLogs(int daysToIndex, boolean force, ActionLogReindexer.Listener listener)
+    throws GenericException, AuthorizationDeniedException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
 
-    try (CloseableIterable<Resource> actionLogs = model.getStorage()
-      .listResourcesUnderContainer(DefaultStoragePath.parse(RodaConstants.STORAGE_CONTAINER_ACTIONLOG), false)) {
+    String configPrefix = "core.index.actionlog_reindex";
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(ActionLogReindexer.DEFAULT_THREADS, configPrefix,
+      "threads");
+    int batchSize = RodaCoreFactory.getRodaConfigurationAsInt(ActionLogReindexer.DEFAULT_BATCH_SIZE, configPrefix,
+      "batch_size");
+    int commitWithin = RodaCoreFactory.getRodaConfigurationAsInt(ActionLogReindexer.DEFAULT_COMMIT_WITHIN_IN_SECONDS,
+      configPrefix, "commit_within_in_seconds");
+    int progressInterval = RodaCoreFactory.getRodaConfigurationAsInt(
+      ActionLogReindexer.DEFAULT_PROGRESS_INTERVAL_IN_SECONDS, configPrefix, "progress_interval_in_seconds");
+
+    ActionLogReindexer reindexer = new ActionLogReindexer(getSolrClient(), model.getStorage(),
+      RodaCoreFactory.getLogPath(), RodaCoreFactory.getDataPath().resolve(RodaConstants.CORE_ACTION_LOG_INDEXED_FILES),
+      threads, batchSize, commitWithin);
+    reindexer.registerMetrics(RodaCoreFactory.getMetrics());
+    reindexer.reindex(daysToIndex, force, listener, progressInterval);
+  }
+
+  /**
+   * Propagates the permissions of an AIP to all its descendants with an
+   * {@link AIPPermissionsPropagator}, i.e. in the index at once and in their
+   * metadata files in the background.
+   *
+   * @return the number of descendants
+   */
+  public int propagateAIPPermissions(String aipId, Permissions permissions, String updatedBy)
+    throws GenericException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
 
-      for (Resource resource : actionLogs) {
-        if (resource instanceof Binary) {
-          Binary b = (Binary) resource;
-          InputStreamReader reader = new InputStreamReader(b.getContent().createInputStream());
-          reindexActionLog(reader);
-        }
+    return getAIPPermissionsPropagator().propagate(aipId, permissions, updatedBy);
+  }
+
+  /**
+   * @return true while the permissions propagated to the AIP or any of its
+   *         descendants are not yet in their metadata files.
+   */
+  public boolean hasAIPPermissionsPending(String aipId) throws GenericException, RequestNotValidException {
+    Filter filter = new Filter(new OrFiltersParameters(Arrays.asList(
+      new SimpleFilterParameter(RodaConstants.INDEX_UUID, aipId),
+      new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aipId))));
+    filter.add(new SimpleFilterParameter(RodaConstants.AIP_PERMISSIONS_PENDING, Boolean.TRUE.toString()));
+    return count(IndexedAIP.class, filter) > 0;
+  }
+
+  /**
+   * Resumes the writing of the metadata files of the AIPs whose permissions
+   * were propagated in the index but not yet written, e.g. before a restart.
+   *
+   * @return the number of AIPs
+   */
+  public int resumeAIPPermissionsPropagation() throws GenericException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    return getAIPPermissionsPropagator().resumePendingWrites();
+  }
+
+  /**
+   * Waits, up to a timeout, for the permissions being propagated to be written
+   * in the metadata files. Those not written are resumed on the next start.
+   */
+  public synchronized void shutdownAIPPermissionsPropagation(long timeoutInSeconds) {
+    if (permissionsPropagator != null) {
+      permissionsPropagator.shutdown(timeoutInSeconds);
+      permissionsPropagator = null;
+    }
+  }
+
+  private synchronized AIPPermissionsPropagator getAIPPermissionsPropagator() {
+    if (permissionsPropagator == null) {
+      String configPrefix = "core.index.permissions_propagation";
+      int threads = RodaCoreFactory.getRodaConfigurationAsInt(AIPPermissionsPropagator.DEFAULT_THREADS, configPrefix,
+        "threads");
+      int batchSize = RodaCoreFactory.getRodaConfigurationAsInt(AIPPermissionsPropagator.DEFAULT_BATCH_SIZE,
+        configPrefix, "batch_size");
+      int writeBatchSize = RodaCoreFactory.getRodaConfigurationAsInt(AIPPermissionsPropagator.DEFAULT_WRITE_BATCH_SIZE,
+        configPrefix, "write_batch_size");
+
+      permissionsPropagator = new AIPPermissionsPropagator(getSolrClient(), model, threads, batchSize, writeBatchSize);
+      if (RodaCoreFactory.getMetrics() != null) {
+        permissionsPropagator.registerMetrics(RodaCoreFactory.getMetrics());
       }
-    } catch (IOException e) {
-      throw new GenericException("Error retrieving/processing logs from storage", e);
     }
+    return permissionsPropagator;
   }
 
   public void reindexActionLog(InputStreamReader reader) throws GenericException, AuthorizationDeniedException {
@@ -683,6 +789,13 @@ public class IndexService {
     SolrUtils.create(getSolrClient(), classToCreate, instance, this);
   }
 
+  public <T extends IsIndexed, M extends IsModelObject> void create(Class<T> classToCreate, List<M> instances)
+    throws AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    SolrUtils.create(getSolrClient(), classToCreate, instances, this);
+  }
+
   public SolrClient getSolrClient() {
     return solrClient;
   }
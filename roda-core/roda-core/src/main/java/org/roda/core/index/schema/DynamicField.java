@@ -27,6 +27,7 @@ public class DynamicField {
 
   public static final String DYNAMIC_FIELD_PERMISSION_USERS = "permission_users_*";
   public static final String DYNAMIC_FIELD_PERMISSION_GROUPS = "permission_groups_*";
+  public static final String DYNAMIC_FIELD_PERMISSION_TOKENS = "permission_tokens_*";
 
   private final String name;
   private final String type;
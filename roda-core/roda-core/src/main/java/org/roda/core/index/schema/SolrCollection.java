@@ -55,7 +55,9 @@ public interface SolrCollection<I extends IsIndexed, M extends IsModelObject> {
       new DynamicField(DynamicField.DYNAMIC_FIELD_PERMISSION_USERS, Field.TYPE_STRING).setMultiValued(true)
         .setStored(stored),
       new DynamicField(DynamicField.DYNAMIC_FIELD_PERMISSION_GROUPS, Field.TYPE_STRING).setMultiValued(true)
-        .setStored(stored)));
+        .setStored(stored),
+      new DynamicField(DynamicField.DYNAMIC_FIELD_PERMISSION_TOKENS, Field.TYPE_STRING).setMultiValued(true)
+        .setStored(false)));
   }
 
   static <T> boolean hasPermissionFilters(Class<T> resultClass) {
@@ -90,6 +90,7 @@ public class AIPCollection extends AbstractSolrCollection<IndexedAIP, AIP> {
     fields.add(new Field(RodaConstants.AIP_LEVEL, Field.TYPE_STRING));
     fields.add(new Field(RodaConstants.AIP_TITLE, Field.TYPE_TEXT).setMultiValued(false));
     fields.add(new Field(RodaConstants.AIP_GHOST, Field.TYPE_BOOLEAN).setDefaultValue("false"));
+    fields.add(new Field(RodaConstants.AIP_PERMISSIONS_PENDING, Field.TYPE_BOOLEAN).setDefaultValue("false"));
 
     fields.add(new Field(RodaConstants.AIP_DESCRIPTION, Field.TYPE_TEXT).setMultiValued(true));
     fields.add(new Field(RodaConstants.AIP_DATE_INITIAL, Field.TYPE_DATE));
@@ -224,6 +225,8 @@ public class AIPCollection extends AbstractSolrCollection<IndexedAIP, AIP> {
     final Boolean hasRepresentations = SolrUtils.objectToBoolean(doc.get(RodaConstants.AIP_HAS_REPRESENTATIONS),
       Boolean.FALSE);
     final Boolean ghost = SolrUtils.objectToBoolean(doc.get(RodaConstants.AIP_GHOST), Boolean.FALSE);
+    final Boolean permissionsPending = SolrUtils.objectToBoolean(doc.get(RodaConstants.AIP_PERMISSIONS_PENDING),
+      Boolean.FALSE);
 
     final String title = titles.isEmpty() ? null : titles.get(0);
     final String description = descriptions.isEmpty() ? null : descriptions.get(0);
@@ -253,6 +256,7 @@ public class AIPCollection extends AbstractSolrCollection<IndexedAIP, AIP> {
     ret.setNumberOfSchemaFiles(numberOfSchemaFiles);
     ret.setHasRepresentations(hasRepresentations);
     ret.setGhost(ghost);
+    ret.setPermissionsPending(permissionsPending);
     ret.setIngestSIPIds(ingestSIPIds).setIngestJobId(ingestJobId).setIngestUpdateJobIds(ingestUpdateJobIds)
       .setCreatedOn(createdOn).setCreatedBy(createdBy).setUpdatedOn(updatedOn).setUpdatedBy(updatedBy)
       .setAllUpdateJobIds(allIngestJobIds);
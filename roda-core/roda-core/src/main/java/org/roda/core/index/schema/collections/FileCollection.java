@@ -8,15 +8,12 @@
 package org.roda.core.index.schema.collections;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
 import org.roda.core.RodaCoreFactory;
@@ -32,6 +29,7 @@ import org.roda.core.data.v2.ip.File;
 import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.ip.metadata.FileFormat;
+import org.roda.core.index.FullTextStore;
 import org.roda.core.index.IndexingAdditionalInfo;
 import org.roda.core.index.schema.AbstractSolrCollection;
 import org.roda.core.index.schema.CopyField;
@@ -46,7 +44,9 @@ import org.slf4j.LoggerFactory;
 public class FileCollection extends AbstractSolrCollection<IndexedFile, File> {
   private static final Logger LOGGER = LoggerFactory.getLogger(FileCollection.class);
 
-  private static final int TEN_MB_IN_BYTES = 10485760;
+  // chunk documents share the prefix of the file uuid, so that they are routed
+  // to the same shard
+  private static final String FULLTEXT_CHUNK_ID_SEPARATOR = "!fulltext-";
 
   @Override
   public Class<IndexedFile> getIndexClass() {
@@ -96,6 +96,7 @@ public class FileCollection extends AbstractSolrCollection<IndexedFile, File> {
     fields.add(new Field(RodaConstants.FILE_ISDIRECTORY, Field.TYPE_BOOLEAN));
     fields.add(new Field(RodaConstants.FILE_EXTENSION, Field.TYPE_STRING));
     fields.add(new Field(RodaConstants.FILE_FULLTEXT, Field.TYPE_TEXT).setMultiValued(false).setStored(false));
+    fields.add(new Field(RodaConstants.FILE_FULLTEXT_CHUNK_OF, Field.TYPE_STRING));
     fields.add(new Field(RodaConstants.FILE_CREATING_APPLICATION_NAME, Field.TYPE_STRING));
     fields.add(new Field(RodaConstants.FILE_CREATING_APPLICATION_VERSION, Field.TYPE_STRING));
     fields.add(new Field(RodaConstants.FILE_DATE_CREATED_BY_APPLICATION, Field.TYPE_STRING));
@@ -198,7 +199,7 @@ public class FileCollection extends AbstractSolrCollection<IndexedFile, File> {
 
     info.getAccumulators().put(RodaConstants.FILE_SIZE, sizeInBytes);
 
-    // Add full text
+    // Add full text, the first chunk only as the others are chunk documents
     String fulltext = getFileFulltext(file);
     if (fulltext != null) {
       doc.addField(RodaConstants.FILE_FULLTEXT, fulltext);
@@ -253,11 +254,9 @@ public class FileCollection extends AbstractSolrCollection<IndexedFile, File> {
       Binary fulltextBinary = RodaCoreFactory.getModelService().retrieveOtherMetadataBinary(file.getAipId(),
         file.getRepresentationId(), file.getPath(), file.getId(), RodaConstants.TIKA_FILE_SUFFIX_FULLTEXT,
         RodaConstants.OTHER_METADATA_TYPE_APACHE_TIKA);
-      if (fulltextBinary.getSizeInBytes() < RodaCoreFactory.getRodaConfigurationAsInt(TEN_MB_IN_BYTES,
-        "core.index.fulltext_threshold_in_bytes")) {
-        try (InputStream inputStream = fulltextBinary.getContent().createInputStream()) {
-          fulltext = IOUtils.toString(inputStream, Charset.forName(RodaConstants.DEFAULT_ENCODING));
-        }
+      FullTextStore store = FullTextStore.getInstance();
+      if (store.update(file, fulltextBinary).getChunks() > 0) {
+        fulltext = store.retrieveChunk(file, 0);
       }
     } catch (RequestNotValidException | GenericException | AuthorizationDeniedException | IOException e) {
       LOGGER.warn("Error getting fulltext for file: {}", file, e);
@@ -267,6 +266,28 @@ public class FileCollection extends AbstractSolrCollection<IndexedFile, File> {
     return fulltext;
   }
 
+  public static String getFulltextChunkId(String fileUUID, int chunk) {
+    return fileUUID + FULLTEXT_CHUNK_ID_SEPARATOR + chunk;
+  }
+
+  /**
+   * Creates the document of a chunk of the full text of a file (other than the
+   * first, which is indexed with the file). Chunk documents are not returned by
+   * queries on files, they only make files match their text.
+   */
+  public static SolrInputDocument toFulltextChunkDocument(File file, int chunk, String text) {
+    String fileUUID = IdUtils.getFileId(file);
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(RodaConstants.INDEX_UUID, getFulltextChunkId(fileUUID, chunk));
+    doc.addField(RodaConstants.FILE_FULLTEXT_CHUNK_OF, fileUUID);
+    // to be deleted along with the files of the AIP or representation
+    doc.addField(RodaConstants.FILE_AIP_ID, file.getAipId());
+    doc.addField(RodaConstants.FILE_REPRESENTATION_UUID,
+      IdUtils.getRepresentationId(file.getAipId(), file.getRepresentationId()));
+    doc.addField(RodaConstants.FILE_FULLTEXT, text);
+    return doc;
+  }
+
   @Override
   public IndexedFile fromSolrDocument(SolrDocument doc, List<String> fieldsToReturn) throws GenericException {
 
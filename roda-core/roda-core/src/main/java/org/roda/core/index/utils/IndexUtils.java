@@ -39,6 +39,7 @@ import org.roda.core.plugins.orchestrate.SimpleJobPluginInfo;
 import org.roda.core.storage.Binary;
 import org.roda.core.storage.DefaultStoragePath;
 import org.roda.core.storage.StorageService;
+import org.roda.core.storage.StorageServiceUtils;
 import org.roda.core.storage.fs.FSUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,9 +74,9 @@ public class IndexUtils {
    * @deprecated use DownloadUtils instead.
    */
   @Deprecated
-  public static void addToZip(List<ZipEntryInfo> zipEntries, Binary binary) {
+  public static void addToZip(List<ZipEntryInfo> zipEntries, Binary binary) throws GenericException {
     String path = FSUtils.getStoragePathAsString(binary.getStoragePath(), true);
-    ZipEntryInfo info = new ZipEntryInfo(path, binary.getContent());
+    ZipEntryInfo info = new ZipEntryInfo(path, StorageServiceUtils.getExportedBinary(binary).getContent());
     zipEntries.add(info);
   }
 
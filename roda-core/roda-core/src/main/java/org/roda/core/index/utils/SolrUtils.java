@@ -18,6 +18,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -29,6 +30,7 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -104,6 +106,7 @@ import org.roda.core.data.v2.ip.DIP;
 import org.roda.core.data.v2.ip.DIPFile;
 import org.roda.core.data.v2.ip.File;
 import org.roda.core.data.v2.ip.HasPermissionFilters;
+import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Permissions.PermissionType;
 import org.roda.core.data.v2.ip.Representation;
@@ -141,6 +144,11 @@ public class SolrUtils {
 
   private static Map<String, List<String>> liteFieldsForEachClass = new HashMap<>();
 
+  private static final String PERMISSION_TOKEN_USER_PREFIX = "u:";
+  private static final String PERMISSION_TOKEN_GROUP_PREFIX = "g:";
+  private static final String PERMISSION_TOKENS_SEPARATOR = ",";
+  private static boolean filterByPermissionTokens = false;
+
   public static final String COMMON = "common";
   public static final String CONF = "conf";
   public static final String SCHEMA = "managed-schema";
@@ -218,6 +226,8 @@ public class SolrUtils {
   private static <T extends IsIndexed> QueryResponse query(SolrClient index, Class<T> classToRetrieve, SolrQuery query)
     throws GenericException, RequestNotValidException {
 
+    excludeFulltextChunks(query, classToRetrieve);
+
     // NOTE: work-around https://issues.apache.org/jira/browse/SOLR-12858
     METHOD method = index instanceof EmbeddedSolrServer ? METHOD.GET : METHOD.POST;
 
@@ -232,13 +242,23 @@ public class SolrUtils {
     }
   }
 
+  /**
+   * Full text chunk documents are in the file index only to make their files
+   * match the text, they are never returned.
+   */
+  private static <T extends IsIndexed> void excludeFulltextChunks(SolrQuery query, Class<T> classToRetrieve) {
+    if (IndexedFile.class.equals(classToRetrieve)) {
+      query.addFilterQuery("-" + RodaConstants.FILE_FULLTEXT_CHUNK_OF + ":*");
+    }
+  }
+
   public static <T extends IsIndexed> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve, Filter filter,
     Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
     throws GenericException, RequestNotValidException {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
     query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
-    query.setQuery(parseFilter(filter));
+    query.setQuery(parseFilter(filter, classToRetrieve));
     query.setSorts(parseSorter(sorter));
     query.setStart(sublist.getFirstElementIndex());
     query.setRows(sublist.getMaximumElementCount());
@@ -277,9 +297,9 @@ public class SolrUtils {
     Pair<IndexResult<T>, String> ret;
     SolrQuery query = new SolrQuery();
     query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
-    query.setQuery(parseFilter(filter));
+    query.setQuery(parseFilter(filter, classToRetrieve));
     if (hasPermissionFilters(classToRetrieve)) {
-      query.addFilterQuery(getFilterQueries(user, justActive, classToRetrieve));
+      getFilterQueries(user, justActive, classToRetrieve).forEach(query::addFilterQuery);
     }
 
     query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
@@ -323,14 +343,14 @@ public class SolrUtils {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
     query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
-    query.setQuery(parseFilter(filter));
+    query.setQuery(parseFilter(filter, classToRetrieve));
     query.setSorts(parseSorter(sorter));
     query.setStart(sublist.getFirstElementIndex());
     query.setRows(sublist.getMaximumElementCount());
     query.setFields(fieldsToReturn.toArray(new String[fieldsToReturn.size()]));
     parseAndConfigureFacets(facets, query);
     if (hasPermissionFilters(classToRetrieve)) {
-      query.addFilterQuery(getFilterQueries(user, justActive, classToRetrieve));
+      getFilterQueries(user, justActive, classToRetrieve).forEach(query::addFilterQuery);
     }
 
     try {
@@ -778,13 +798,26 @@ public class SolrUtils {
    */
 
   public static String parseFilter(Filter filter) throws RequestNotValidException {
+    return parseFilter(filter, false);
+  }
+
+  /**
+   * Like {@link #parseFilter(Filter)}, but searches on files also match the
+   * text of their full text chunk documents.
+   */
+  public static <T extends IsIndexed> String parseFilter(Filter filter, Class<T> classToRetrieve)
+    throws RequestNotValidException {
+    return parseFilter(filter, IndexedFile.class.equals(classToRetrieve));
+  }
+
+  private static String parseFilter(Filter filter, boolean searchFulltextChunks) throws RequestNotValidException {
     StringBuilder ret = new StringBuilder();
 
     if (filter == null || filter.getParameters().isEmpty()) {
       ret.append("*:*");
     } else {
       for (FilterParameter parameter : filter.getParameters()) {
-        parseFilterParameter(ret, parameter, true);
+        parseFilterParameter(ret, parameter, true, searchFulltextChunks);
       }
 
       if (ret.length() == 0) {
@@ -797,7 +830,7 @@ public class SolrUtils {
   }
 
   private static void parseFilterParameter(StringBuilder ret, FilterParameter parameter,
-    boolean prefixWithANDOperatorIfBuilderNotEmpty) throws RequestNotValidException {
+    boolean prefixWithANDOperatorIfBuilderNotEmpty, boolean searchFulltextChunks) throws RequestNotValidException {
     if (parameter instanceof SimpleFilterParameter) {
       SimpleFilterParameter simplePar = (SimpleFilterParameter) parameter;
       appendExactMatch(ret, simplePar.getName(), simplePar.getValue(), true, prefixWithANDOperatorIfBuilderNotEmpty);
@@ -806,7 +839,18 @@ public class SolrUtils {
       appendValuesUsingOROperator(ret, param.getName(), param.getValues(), prefixWithANDOperatorIfBuilderNotEmpty);
     } else if (parameter instanceof BasicSearchFilterParameter) {
       BasicSearchFilterParameter param = (BasicSearchFilterParameter) parameter;
-      appendBasicSearch(ret, param.getName(), param.getValue(), "AND", prefixWithANDOperatorIfBuilderNotEmpty);
+      boolean fulltextField = RodaConstants.INDEX_SEARCH.equals(param.getName())
+        || RodaConstants.FILE_FULLTEXT.equals(param.getName());
+      if (searchFulltextChunks && fulltextField && StringUtils.isNotBlank(param.getValue())) {
+        appendANDOperator(ret, prefixWithANDOperatorIfBuilderNotEmpty);
+        ret.append("(");
+        appendBasicSearch(ret, param.getName(), param.getValue(), "AND", false);
+        ret.append(" OR ");
+        appendFulltextChunksSearch(ret, param.getName(), param.getValue());
+        ret.append(")");
+      } else {
+        appendBasicSearch(ret, param.getName(), param.getValue(), "AND", prefixWithANDOperatorIfBuilderNotEmpty);
+      }
     } else if (parameter instanceof EmptyKeyFilterParameter) {
       EmptyKeyFilterParameter param = (EmptyKeyFilterParameter) parameter;
       appendANDOperator(ret, true);
@@ -830,7 +874,7 @@ public class SolrUtils {
     } else if (parameter instanceof OrFiltersParameters || parameter instanceof AndFiltersParameters) {
       FiltersParameters filters = (FiltersParameters) parameter;
       appendFiltersWithOperator(ret, parameter instanceof OrFiltersParameters ? "OR" : "AND", filters.getValues(),
-        prefixWithANDOperatorIfBuilderNotEmpty);
+        prefixWithANDOperatorIfBuilderNotEmpty, searchFulltextChunks);
     } else {
       LOGGER.error("Unsupported filter parameter class: {}", parameter.getClass().getName());
       throw new RequestNotValidException("Unsupported filter parameter class: " + parameter.getClass().getName());
@@ -890,12 +934,23 @@ public class SolrUtils {
     }
   }
 
+  /**
+   * Matches the files with a full text chunk document that matches the search.
+   */
+  private static void appendFulltextChunksSearch(StringBuilder ret, String key, String value) {
+    StringBuilder chunksQuery = new StringBuilder();
+    appendBasicSearch(chunksQuery, key, value, "AND", false);
+    ret.append("_query_:\"{!join from=").append(RodaConstants.FILE_FULLTEXT_CHUNK_OF).append(" to=")
+      .append(RodaConstants.INDEX_UUID).append("}")
+      .append(chunksQuery.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"");
+  }
+
   private static void appendKeyValue(StringBuilder ret, String key, String value) {
     ret.append(key).append(":").append("(").append(value).append(")");
   }
 
   private static void appendFiltersWithOperator(StringBuilder ret, String operator, List<FilterParameter> values,
-    boolean prefixWithANDOperatorIfBuilderNotEmpty) throws RequestNotValidException {
+    boolean prefixWithANDOperatorIfBuilderNotEmpty, boolean searchFulltextChunks) throws RequestNotValidException {
     if (!values.isEmpty()) {
       appendANDOperator(ret, prefixWithANDOperatorIfBuilderNotEmpty);
 
@@ -904,7 +959,7 @@ public class SolrUtils {
         if (i != 0) {
           ret.append(" ").append(operator).append(" ");
         }
-        parseFilterParameter(ret, values.get(i), false);
+        parseFilterParameter(ret, values.get(i), false, searchFulltextChunks);
       }
       ret.append(")");
     }
@@ -1116,48 +1171,87 @@ public class SolrUtils {
    * Roda user > Apache Solr filter query
    * ____________________________________________________________________________________________________________________
    */
-  private static <T extends IsIndexed> String getFilterQueries(User user, boolean justActive,
-    Class<T> classToRetrieve) {
+  /**
+   * Defines whether the read permission filter uses the permission tokens
+   * (see {@link #setPermissions(Permissions, SolrInputDocument)}) instead of
+   * the permission users and groups fields. Only enable it after all documents
+   * have been (re)indexed with tokens.
+   */
+  public static void setFilterByPermissionTokens(boolean filterByPermissionTokens) {
+    SolrUtils.filterByPermissionTokens = filterByPermissionTokens;
+  }
 
-    StringBuilder fq = new StringBuilder();
+  /**
+   * Gets the read permission and the active state filters as separate filter
+   * queries, so that Solr caches each one independently (e.g. the state filter
+   * is shared by all users).
+   */
+  public static <T extends IsIndexed> List<String> getFilterQueries(User user, boolean justActive,
+    Class<T> classToRetrieve) {
+    List<String> ret = new ArrayList<>();
 
     // TODO find a better way to define admin super powers
     if (user != null && !RodaConstants.ADMIN.equals(user.getName())) {
-      fq.append("(");
-      String usersKey = RodaConstants.INDEX_PERMISSION_USERS_PREFIX + PermissionType.READ;
-      appendExactMatch(fq, usersKey, user.getId(), true, false);
-
-      String groupsKey = RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX + PermissionType.READ;
-      appendValuesUsingOROperatorForQuery(fq, groupsKey, new ArrayList<>(user.getGroups()), true);
-
-      fq.append(")");
+      ret.add(getPermissionFilterQuery(user, PermissionType.READ));
     }
 
     if (justActive && SolrCollection.hasStateFilter(classToRetrieve)) {
-      appendExactMatch(fq, RodaConstants.INDEX_STATE, SolrUtils.formatEnum(AIPState.ACTIVE), true, true);
+      StringBuilder fq = new StringBuilder();
+      appendExactMatch(fq, RodaConstants.INDEX_STATE, SolrUtils.formatEnum(AIPState.ACTIVE), true, false);
+      ret.add(fq.toString());
     }
 
-    return fq.toString();
+    return ret;
   }
 
-  private static void appendValuesUsingOROperatorForQuery(StringBuilder ret, String key, List<String> values,
-    boolean prependWithOrIfNeeded) {
-    if (!values.isEmpty()) {
-      if (prependWithOrIfNeeded) {
-        appendOROperator(ret, true);
-      } else {
-        appendANDOperator(ret, true);
-      }
+  private static String getPermissionFilterQuery(User user, PermissionType type) {
+    // sorted, so the same groups always give the same filter query
+    Set<String> groups = new TreeSet<>(user.getGroups());
 
-      ret.append("(");
-      for (int i = 0; i < values.size(); i++) {
-        if (i != 0) {
-          ret.append(" OR ");
-        }
-        appendExactMatch(ret, key, values.get(i), true, false);
+    if (filterByPermissionTokens) {
+      Set<String> tokens = new TreeSet<>();
+      tokens.add(PERMISSION_TOKEN_USER_PREFIX + user.getId());
+      groups.forEach(group -> tokens.add(PERMISSION_TOKEN_GROUP_PREFIX + group));
+
+      if (tokens.stream().noneMatch(token -> token.contains(PERMISSION_TOKENS_SEPARATOR))) {
+        return "{!terms f=" + RodaConstants.INDEX_PERMISSION_TOKENS_PREFIX + type + " separator=\""
+          + PERMISSION_TOKENS_SEPARATOR + "\"}" + String.join(PERMISSION_TOKENS_SEPARATOR, tokens);
       }
-      ret.append(")");
     }
+
+    // each filter(...) clause is cached on its own, so users with the same
+    // groups share the cache entry of the groups clause
+    StringBuilder fq = new StringBuilder();
+    fq.append("filter(");
+    appendExactMatch(fq, RodaConstants.INDEX_PERMISSION_USERS_PREFIX + type, user.getId(), true, false);
+    fq.append(")");
+
+    if (!groups.isEmpty()) {
+      fq.append(" OR filter(");
+      appendValuesUsingOROperator(fq, RodaConstants.INDEX_PERMISSION_GROUPS_PREFIX + type, new ArrayList<>(groups),
+        false);
+      fq.append(")");
+    }
+
+    return fq.toString();
+  }
+
+  /**
+   * Gets the tokens that grant each permission (one per user and per group),
+   * indexed in a single field per permission type so that the permission
+   * filter becomes a single term set lookup.
+   */
+  private static Map<String, List<String>> getPermissionTokens(Permissions permissions) {
+    Map<String, List<String>> ret = new HashMap<>();
+    for (PermissionType type : PermissionType.values()) {
+      List<String> tokens = new ArrayList<>();
+      permissions.getUsers().getOrDefault(type, Collections.emptySet())
+        .forEach(user -> tokens.add(PERMISSION_TOKEN_USER_PREFIX + user));
+      permissions.getGroups().getOrDefault(type, Collections.emptySet())
+        .forEach(group -> tokens.add(PERMISSION_TOKEN_GROUP_PREFIX + group));
+      ret.put(RodaConstants.INDEX_PERMISSION_TOKENS_PREFIX + type, tokens);
+    }
+    return ret;
   }
 
   /*
@@ -1264,14 +1358,44 @@ public class SolrUtils {
     return ret;
   }
 
+  /**
+   * Indexes several objects of the same class with a single request to Solr.
+   */
+  public static <T extends IsIndexed, M extends IsModelObject, S extends Object> ReturnWithExceptions<Void, S> create(
+    SolrClient index, Class<T> classToCreate, List<M> instances, S source) {
+    ReturnWithExceptions<Void, S> ret = new ReturnWithExceptions<>(source);
+    List<SolrInputDocument> solrDocuments = new ArrayList<>();
+
+    for (M instance : instances) {
+      try {
+        SolrInputDocument solrDocument = SolrCollectionRegistry.toSolrDocument(classToCreate, instance);
+        if (solrDocument != null) {
+          solrDocuments.add(solrDocument);
+        }
+      } catch (NotSupportedException | GenericException | RequestNotValidException | NotFoundException
+        | AuthorizationDeniedException e) {
+        LOGGER.error("Error adding document to index", e);
+        ret.add(e);
+      }
+    }
+
+    if (!solrDocuments.isEmpty()) {
+      try {
+        index.add(SolrCollectionRegistry.getIndexName(classToCreate), solrDocuments);
+      } catch (SolrServerException | IOException | SolrException | NotSupportedException e) {
+        LOGGER.error("Error adding documents to index", e);
+        ret.add(e);
+      }
+    }
+
+    return ret;
+  }
+
   public static <T extends IsIndexed, S extends Object> ReturnWithExceptions<Void, S> update(SolrClient index,
     Class<T> classToCreate, String uuid, Map<String, Object> fields, S source) {
     ReturnWithExceptions<Void, S> ret = new ReturnWithExceptions<>();
-    SolrInputDocument doc = new SolrInputDocument();
-    doc.addField(RodaConstants.INDEX_UUID, uuid);
-    fields.entrySet().forEach(e -> doc.addField(e.getKey(), set(e.getValue())));
     try {
-      create(index, SolrCollectionRegistry.getIndexName(classToCreate), doc, source).addTo(ret);
+      create(index, SolrCollectionRegistry.getIndexName(classToCreate), atomicUpdate(uuid, fields), source).addTo(ret);
     } catch (NotSupportedException e) {
       LOGGER.error("Error adding document to index", e);
       ret.add(e);
@@ -1279,6 +1403,94 @@ public class SolrUtils {
     return ret;
   }
 
+  /**
+   * Sets the given fields on all documents that match the filter, i.e. an
+   * update by query, sending the atomic updates in batches as the matching
+   * documents are paged with a cursor.
+   */
+  public static <T extends IsIndexed, S extends Object> ReturnWithExceptions<Void, S> updateAll(SolrClient index,
+    Class<T> classToUpdate, Filter filter, Map<String, Object> fields, int batchSize, S source) {
+    ReturnWithExceptions<Void, S> ret = new ReturnWithExceptions<>(source);
+    try {
+      String collection = SolrCollectionRegistry.getIndexName(classToUpdate);
+      SolrQuery query = new SolrQuery();
+      query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
+      query.setQuery(parseFilter(filter));
+      excludeFulltextChunks(query, classToUpdate);
+      query.setFields(RodaConstants.INDEX_UUID);
+      query.setRows(batchSize);
+      query.setSorts(Arrays.asList(SortClause.asc(RodaConstants.INDEX_UUID)));
+
+      String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+      boolean done = false;
+      while (!done) {
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        QueryResponse response = index.query(collection, query);
+        List<SolrInputDocument> docs = new ArrayList<>();
+        for (SolrDocument doc : response.getResults()) {
+          docs.add(atomicUpdate(objectToString(doc.get(RodaConstants.INDEX_UUID), null), fields));
+        }
+        if (!docs.isEmpty()) {
+          index.add(collection, docs);
+        }
+
+        done = cursorMark.equals(response.getNextCursorMark());
+        cursorMark = response.getNextCursorMark();
+      }
+    } catch (SolrServerException | IOException | SolrException | NotSupportedException | RequestNotValidException e) {
+      LOGGER.error("Error updating documents of index", e);
+      ret.add(e);
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the given amounts to numeric fields of several documents, one atomic
+   * update per document. Documents that are not in the index are not created
+   * and are skipped.
+   *
+   * @param increments
+   *          the amounts to add to each field, by document uuid
+   */
+  public static <T extends IsIndexed, S extends Object> ReturnWithExceptions<Void, S> increment(SolrClient index,
+    Class<T> classToUpdate, Map<String, Map<String, Integer>> increments, S source) {
+    ReturnWithExceptions<Void, S> ret = new ReturnWithExceptions<>(source);
+    try {
+      String collection = SolrCollectionRegistry.getIndexName(classToUpdate);
+      for (Entry<String, Map<String, Integer>> entry : increments.entrySet()) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(RodaConstants.INDEX_UUID, entry.getKey());
+        entry.getValue().forEach((field, amount) -> doc.addField(field, Collections.singletonMap("inc", amount)));
+        // only applies to an existing document
+        doc.addField("_version_", 1);
+        try {
+          index.add(collection, doc);
+        } catch (SolrException e) {
+          if (e.code() == SolrException.ErrorCode.CONFLICT.code) {
+            LOGGER.debug("Document {} is not in the index, skipping increment", entry.getKey());
+          } else {
+            LOGGER.error("Error updating document of index", e);
+            ret.add(e);
+          }
+        } catch (SolrServerException | IOException e) {
+          LOGGER.error("Error updating document of index", e);
+          ret.add(e);
+        }
+      }
+    } catch (NotSupportedException e) {
+      LOGGER.error("Error updating documents of index", e);
+      ret.add(e);
+    }
+    return ret;
+  }
+
+  private static SolrInputDocument atomicUpdate(String uuid, Map<String, Object> fields) {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(RodaConstants.INDEX_UUID, uuid);
+    fields.entrySet().forEach(e -> doc.addField(e.getKey(), set(e.getValue())));
+    return doc;
+  }
+
   private static Map<String, Object> set(Object value) {
     Map<String, Object> fieldModifier = new HashMap<>(1);
     // 20160511 this workaround fixes solr wrong behaviour with partial update
@@ -1435,6 +1647,8 @@ public class SolrUtils {
       List<String> value = new ArrayList<>(entry.getValue());
       ret.addField(key, value);
     }
+
+    getPermissionTokens(permissions).forEach(ret::addField);
   }
 
   public static Map<String, Object> getPermissionsAsPreCalculatedFields(Permissions permissions) {
@@ -1452,6 +1666,8 @@ public class SolrUtils {
       List<String> value = new ArrayList<>(entry.getValue());
       ret.put(key, value);
     }
+
+    ret.putAll(getPermissionTokens(permissions));
     return ret;
   }
 
@@ -1502,7 +1718,7 @@ public class SolrUtils {
     query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
     query.setQuery(queryBuilder.toString());
     if (hasPermissionFilters(classToRetrieve)) {
-      query.addFilterQuery(getFilterQueries(user, justActive, classToRetrieve));
+      getFilterQueries(user, justActive, classToRetrieve).forEach(query::addFilterQuery);
     }
     parseAndConfigureFacets(new Facets(new SimpleFacetParameter(field)), query);
     List<String> suggestions = new ArrayList<>();
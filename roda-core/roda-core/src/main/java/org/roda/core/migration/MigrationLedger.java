@@ -0,0 +1,97 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.migration;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Keeps the partitions already migrated by a migration action, one per line of
+ * an append only file, so that an interrupted migration can be resumed.
+ */
+public class MigrationLedger implements Closeable {
+  private final Path ledgerFile;
+  private final Set<String> done = ConcurrentHashMap.newKeySet();
+  private BufferedWriter writer;
+
+  public MigrationLedger(Path ledgerFile) throws IOException {
+    this.ledgerFile = ledgerFile;
+    Files.createDirectories(ledgerFile.getParent());
+
+    if (Files.exists(ledgerFile)) {
+      byte[] content = Files.readAllBytes(ledgerFile);
+      int validLength = content.length;
+      while (validLength > 0 && content[validLength - 1] != '\n') {
+        validLength--;
+      }
+
+      for (String line : new String(content, 0, validLength, StandardCharsets.UTF_8).split("\n")) {
+        if (StringUtils.isNotBlank(line)) {
+          done.add(line.trim());
+        }
+      }
+
+      if (validLength < content.length) {
+        // an unterminated last line means the process stopped while writing it
+        try (FileChannel channel = FileChannel.open(ledgerFile, StandardOpenOption.WRITE)) {
+          channel.truncate(validLength);
+        }
+      }
+    }
+
+    this.writer = Files.newBufferedWriter(ledgerFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+      StandardOpenOption.APPEND);
+  }
+
+  public boolean isDone(String partition) {
+    return done.contains(partition);
+  }
+
+  public synchronized void markDone(String partition) throws IOException {
+    if (writer == null) {
+      throw new IOException("Migration ledger " + ledgerFile + " is closed");
+    }
+    if (done.add(partition)) {
+      writer.write(partition);
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+
+  public int size() {
+    return done.size();
+  }
+
+  /**
+   * Removes the ledger, once the migration is recorded as complete in the model
+   * information.
+   */
+  public synchronized void delete() throws IOException {
+    close();
+    Files.deleteIfExists(ledgerFile);
+    done.clear();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+}
@@ -10,15 +10,23 @@ package org.roda.core.migration;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrRequest;
@@ -50,13 +58,27 @@ import org.slf4j.LoggerFactory;
 public class MigrationManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(MigrationManager.class);
 
+  private static final String CONFIG_PREFIX = "core.migration";
+  private static final int DEFAULT_PROGRESS_INTERVAL_IN_SECONDS = 60;
+  private static final String LEDGER_EXTENSION = ".ledger";
+
+  // runners of the migrations being done in background, which AIPs being read
+  // must go through first
+  private static volatile List<MigrationRunner> backgroundRunners = Collections.emptyList();
+
   private Path modelInfoFile;
+  private Path ledgerFolder;
   // map<model class, workflow>
-  private Map<String, MigrationWorkflow> modelMigrations = new HashMap<>();
+  private Map<String, MigrationWorkflow> modelMigrations = new LinkedHashMap<>();
+  private boolean indexMigrationNecessary = false;
+  // map<model class, version in code> of the classes whose installed version
+  // differs
+  private Map<String, Integer> modelClassesToMigrate = new HashMap<>();
 
   public MigrationManager(Path dataFolder) {
     super();
     this.modelInfoFile = dataFolder.resolve("model.json");
+    this.ledgerFolder = dataFolder.resolve(RodaConstants.CORE_MIGRATION_LEDGER_FOLDER);
   }
 
   // 20161031 hsilva: this method is not invoked in the constructor as it might
@@ -101,7 +123,8 @@ public class MigrationManager {
     migrationIsNecessary = isModelMigrationNecessary();
 
     // check if index migration is necessary
-    migrationIsNecessary |= isIndexMigrationNecessary(solrClient, tempIndexConfigsPath);
+    indexMigrationNecessary = isIndexMigrationNecessary(solrClient, tempIndexConfigsPath);
+    migrationIsNecessary |= indexMigrationNecessary;
 
     return migrationIsNecessary;
   }
@@ -138,6 +161,7 @@ public class MigrationManager {
               "A migration may be needed! Model class '{}' version is set to {} in code & installed version is set to {}",
               classFromCode, versionFromCode, versionInstalled);
             migrationIsNecessary = true;
+            modelClassesToMigrate.put(classFromCode, versionFromCode);
           }
         } else {
           // class information does not exists, probably is new & therefore no
@@ -193,50 +217,259 @@ public class MigrationManager {
     ModelInfo modelInfo = JsonUtils.getObjectFromJson(modelInfoFile, ModelInfo.class);
 
     // perform migrations
+    for (Entry<String, MigrationWorkflow> classMigrations : modelMigrations.entrySet()) {
+      performModelMigrations(classMigrations.getKey(), classMigrations.getValue(), modelInfo);
+    }
+  }
+
+  private void performModelMigrations(String className, MigrationWorkflow migrationWorkflow, ModelInfo modelInfo) {
+    int installedVersion = modelInfo.getInstalledClassesVersions().getOrDefault(className, Integer.MAX_VALUE);
+
+    // see if there is no need to continue processing this particular class
+    // based on installed version (if any)
+    if (installedVersion >= migrationWorkflow.getLastToVersion()) {
+      return;
+    }
+
+    LOGGER.info("Performing migration for class '{}'", className);
+    for (Pair<Integer, Class<? extends MigrationAction>> classMigration : migrationWorkflow.getMigrations()) {
+      Integer toVersion = classMigration.getFirst();
+      Class<? extends MigrationAction> migrationClass = classMigration.getSecond();
+
+      // see if there is no need to perform this particular migration
+      if (installedVersion >= toVersion) {
+        continue;
+      }
+
+      LOGGER.info("Migrating to version {} using class '{}'", toVersion, migrationClass.getName());
+      try {
+        // migrate
+        MigrationAction<?> migrationAction = migrationClass.newInstance();
+        if (migrationAction instanceof PartitionedMigrationAction) {
+          try (MigrationRunner runner = createRunner(className, toVersion,
+            (PartitionedMigrationAction<?>) migrationAction)) {
+            if (!runMigration(runner)) {
+              LOGGER.error(
+                "Migration action '{}' did not migrate everything. Stopping migrations for class '{}', run the migration again to resume it.",
+                migrationClass.getName(), className);
+              break;
+            }
+            recordMigration(modelInfo, className, toVersion);
+            runner.getLedger().delete();
+          }
+        } else {
+          migrationAction.migrate(RodaCoreFactory.getStorageService());
+          recordMigration(modelInfo, className, toVersion);
+        }
+        LOGGER.info("Migrated with success to version {}", toVersion);
+      } catch (InstantiationException | IllegalAccessException e) {
+        LOGGER.error("Error instantiating migration action class '{}' (which migrates to version {})",
+          migrationClass.getName(), toVersion, e);
+        break;
+      } catch (RODAException | IOException e) {
+        LOGGER.error("Error executing migration action '{}'. Stopping migrations for class '{}'.",
+          migrationClass.getName(), className, e);
+        break;
+      }
+    }
+    LOGGER.info("Done migrating class '{}'", className);
+  }
+
+  /**
+   * Whether the model migrations may run in background while RODA starts, i.e.
+   * no index migration is needed, lazy migration is enabled by the
+   * <code>core.migration.lazy</code> property and there are migrations for all
+   * the model classes that need them. Must be invoked after
+   * {@link #isNecessaryToPerformMigration(SolrClient, Optional)} and
+   * {@link #setupModelMigrations()}.
+   */
+  public boolean isBackgroundModelMigrationPossible() {
+    if (indexMigrationNecessary || !RodaCoreFactory.getRodaConfiguration().getBoolean(CONFIG_PREFIX + ".lazy", false)) {
+      return false;
+    }
+
+    // all classes must have migrations up to the version in code
+    for (Entry<String, Integer> classToMigrate : modelClassesToMigrate.entrySet()) {
+      MigrationWorkflow migrationWorkflow = modelMigrations.get(classToMigrate.getKey());
+      if (migrationWorkflow == null || migrationWorkflow.getLastToVersion() != classToMigrate.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Performs the model migrations while RODA is running. Classes with
+   * migrations that are not partitioned by AIP are migrated before returning;
+   * the others are migrated in background and, until then, each AIP is migrated
+   * when it is accessed (see {@link #migrateAIPOnAccess(String)}).
+   */
+  public void startModelMigrationsInBackground() throws GenericException {
+    ModelInfo modelInfo = JsonUtils.getObjectFromJson(modelInfoFile, ModelInfo.class);
+    List<BackgroundMigration> migrations = new ArrayList<>();
+
     for (Entry<String, MigrationWorkflow> classMigrations : modelMigrations.entrySet()) {
       String className = classMigrations.getKey();
       MigrationWorkflow migrationWorkflow = classMigrations.getValue();
       int installedVersion = modelInfo.getInstalledClassesVersions().getOrDefault(className, Integer.MAX_VALUE);
+      List<Pair<Integer, PartitionedMigrationAction<?>>> pending = getPendingAIPMigrations(migrationWorkflow,
+        installedVersion);
 
-      // see if there is no need to continue processing this particular class
-      // based on installed version (if any)
-      if (installedVersion >= migrationWorkflow.getLastToVersion()) {
+      if (pending.isEmpty()) {
+        // nothing to do or not possible to do lazily
+        performModelMigrations(className, migrationWorkflow, modelInfo);
         continue;
       }
 
-      LOGGER.info("Performing migration for class '{}'", className);
-      for (Pair<Integer, Class<? extends MigrationAction>> classMigration : migrationWorkflow.getMigrations()) {
-        Integer toVersion = classMigration.getFirst();
-        Class<? extends MigrationAction> migrationClass = classMigration.getSecond();
+      for (Pair<Integer, PartitionedMigrationAction<?>> migration : pending) {
+        try {
+          MigrationRunner runner = createRunner(className, migration.getFirst(), migration.getSecond());
+          migrations.add(new BackgroundMigration(className, migration.getFirst(), runner));
+          // AIPs created from now on are already in the current version
+          runner.getPartitions();
+        } catch (IOException e) {
+          closeRunners(migrations);
+          throw new GenericException("Error opening migration ledger", e);
+        } catch (RODAException e) {
+          closeRunners(migrations);
+          throw new GenericException("Error listing the AIPs to migrate", e);
+        }
+      }
+    }
+
+    if (migrations.isEmpty()) {
+      return;
+    }
+
+    List<MigrationRunner> runners = new ArrayList<>();
+    for (BackgroundMigration migration : migrations) {
+      runners.add(migration.runner);
+    }
+    backgroundRunners = runners;
+
+    Thread migrationThread = new Thread(() -> runInBackground(migrations, modelInfo), "ModelMigration");
+    migrationThread.setDaemon(true);
+    migrationThread.start();
+    LOGGER.info("Started {} model migrations in background", migrations.size());
+  }
+
+  /**
+   * Migrates the AIP if it was not yet migrated by the model migrations running
+   * in background, before it is read or written. Does nothing if no migration
+   * is running or the AIP was created after the migration started.
+   */
+  public static void migrateAIPOnAccess(String aipId) {
+    if (aipId == null) {
+      return;
+    }
+    for (MigrationRunner runner : backgroundRunners) {
+      // later migrations depend on the previous ones
+      if (!runner.migratePartition(aipId)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Stops the model migrations running in background, if any. They are resumed
+   * on the next start.
+   */
+  public static void stopBackgroundMigrations() {
+    for (MigrationRunner runner : backgroundRunners) {
+      runner.stop();
+    }
+  }
 
-        // see if there is no need to perform this particular migration
-        if (installedVersion >= toVersion) {
+  private void runInBackground(List<BackgroundMigration> migrations, ModelInfo modelInfo) {
+    Set<String> failedClasses = new HashSet<>();
+    try {
+      for (BackgroundMigration migration : migrations) {
+        if (failedClasses.contains(migration.className)) {
           continue;
         }
 
-        LOGGER.info("Migrating to version {} using class '{}'", toVersion, migrationClass.getName());
         try {
-          // migrate
-          migrationClass.newInstance().migrate(RodaCoreFactory.getStorageService());
-          LOGGER.info("Migrated with success to version {}", toVersion);
-
-          // update class specific version after successful migration
-          modelInfo.getInstalledClassesVersions().put(className, toVersion);
-        } catch (InstantiationException | IllegalAccessException e) {
-          LOGGER.error("Error instantiating migration action class '{}' (which migrates to version {})",
-            migrationClass.getName(), toVersion, e);
-          break;
-        } catch (RODAException e) {
-          LOGGER.error("Error executing migration action '{}'. Stopping migrations for class '{}'.",
-            migrationClass.getName(), className, e);
-          break;
+          if (runMigration(migration.runner)) {
+            recordMigration(modelInfo, migration.className, migration.toVersion);
+            migration.runner.getLedger().delete();
+            LOGGER.info("Migrated class '{}' with success to version {}", migration.className, migration.toVersion);
+          } else {
+            LOGGER.error("Migration '{}' did not migrate everything, it will be resumed on the next start",
+              migration.runner.getName());
+            failedClasses.add(migration.className);
+          }
+        } catch (RODAException | IOException e) {
+          LOGGER.error("Error executing migration '{}'. Stopping migrations for class '{}'.",
+            migration.runner.getName(), migration.className, e);
+          failedClasses.add(migration.className);
         }
       }
-      LOGGER.info("Done migrating class '{}'", className);
+    } finally {
+      backgroundRunners = Collections.emptyList();
+      closeRunners(migrations);
     }
+  }
 
-    // update model info. file
-    JsonUtils.writeObjectToFile(modelInfo, modelInfoFile);
+  private List<Pair<Integer, PartitionedMigrationAction<?>>> getPendingAIPMigrations(MigrationWorkflow workflow,
+    int installedVersion) throws GenericException {
+    List<Pair<Integer, PartitionedMigrationAction<?>>> pending = new ArrayList<>();
+    for (Pair<Integer, Class<? extends MigrationAction>> migration : workflow.getMigrations()) {
+      if (installedVersion >= migration.getFirst()) {
+        continue;
+      }
+
+      try {
+        MigrationAction<?> migrationAction = migration.getSecond().newInstance();
+        if (migrationAction instanceof PartitionedMigrationAction
+          && ((PartitionedMigrationAction<?>) migrationAction).isPartitionedByAIP()) {
+          pending.add(Pair.of(migration.getFirst(), (PartitionedMigrationAction<?>) migrationAction));
+        } else {
+          // all migrations of the class must be done before starting
+          return Collections.emptyList();
+        }
+      } catch (InstantiationException | IllegalAccessException e) {
+        throw new GenericException("Error instantiating migration action class '" + migration.getSecond().getName()
+          + "' (which migrates to version '" + migration.getFirst() + "')");
+      }
+    }
+    return pending;
+  }
+
+  private MigrationRunner createRunner(String className, int toVersion, PartitionedMigrationAction<?> action)
+    throws IOException {
+    String name = action.getClass().getSimpleName();
+    Path ledgerFile = ledgerFolder.resolve(className + "-" + toVersion + LEDGER_EXTENSION);
+    MigrationRunner runner = new MigrationRunner(name, action, RodaCoreFactory.getStorageService(), ledgerFile);
+    if (RodaCoreFactory.getMetrics() != null) {
+      runner.registerMetrics(RodaCoreFactory.getMetrics());
+    }
+    return runner;
+  }
+
+  private boolean runMigration(MigrationRunner runner) throws RODAException {
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(),
+      CONFIG_PREFIX, "threads");
+    int progressInterval = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_PROGRESS_INTERVAL_IN_SECONDS,
+      CONFIG_PREFIX, "progress_interval_in_seconds");
+    return runner.run(threads, TimeUnit.SECONDS.toMillis(Math.max(1, progressInterval)));
+  }
+
+  /**
+   * Records the new version of the class right away, so that an interrupted
+   * migration does not repeat the migrations already done.
+   */
+  private synchronized void recordMigration(ModelInfo modelInfo, String className, int toVersion) throws IOException {
+    modelInfo.getInstalledClassesVersions().put(className, toVersion);
+
+    Path tempFile = modelInfoFile.resolveSibling(modelInfoFile.getFileName() + ".tmp");
+    Files.write(tempFile, JsonUtils.getJsonFromObject(modelInfo).getBytes(StandardCharsets.UTF_8));
+    Files.move(tempFile, modelInfoFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void closeRunners(List<BackgroundMigration> migrations) {
+    for (BackgroundMigration migration : migrations) {
+      IOUtils.closeQuietly(migration.runner);
+    }
   }
 
   private boolean isIndexMigrationNecessary(SolrClient solrClient, Optional<Path> tempIndexConfigsPath)
@@ -317,6 +550,18 @@ public class MigrationManager {
     return ret;
   }
 
+  private static class BackgroundMigration {
+    private final String className;
+    private final int toVersion;
+    private final MigrationRunner runner;
+
+    public BackgroundMigration(String className, int toVersion, MigrationRunner runner) {
+      this.className = className;
+      this.toVersion = toVersion;
+      this.runner = runner;
+    }
+  }
+
   private class MigrationWorkflow {
     private int lastToVersion = Integer.MIN_VALUE;
     private List<Pair<Integer, Class<? extends MigrationAction>>> migrations = new ArrayList<>();
@@ -0,0 +1,299 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Runs a {@link PartitionedMigrationAction} over all its partitions on a pool
+ * of workers. Migrated partitions are recorded in a {@link MigrationLedger} and
+ * skipped when the migration is run again, and a single partition can also be
+ * migrated on demand (see {@link #migratePartition(String)}).
+ *
+ * The partitions are listed once, when first needed, so that the partitions
+ * created afterwards (e.g. new AIPs, already in the current model version) are
+ * neither migrated nor waited for.
+ */
+public class MigrationRunner implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MigrationRunner.class);
+  private static final int QUEUE_SIZE_FACTOR = 4;
+
+  private final String name;
+  private final PartitionedMigrationAction<?> action;
+  private final StorageService storage;
+  private final MigrationLedger ledger;
+  private final Map<String, Object> partitionLocks = new ConcurrentHashMap<>();
+  private volatile Set<String> partitions = null;
+
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong migrated = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private volatile long startTime = 0;
+  private volatile boolean stopped = false;
+  private volatile boolean finished = false;
+
+  public MigrationRunner(String name, PartitionedMigrationAction<?> action, StorageService storage, Path ledgerFile)
+    throws IOException {
+    this.name = name;
+    this.action = action;
+    this.storage = storage;
+    this.ledger = new MigrationLedger(ledgerFile);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public PartitionedMigrationAction<?> getAction() {
+    return action;
+  }
+
+  public MigrationLedger getLedger() {
+    return ledger;
+  }
+
+  /**
+   * Migrates all partitions not yet recorded in the ledger.
+   *
+   * @return true if all partitions were migrated, false if some failed (they
+   *         will be retried when the migration is run again) or the migration
+   *         was stopped.
+   */
+  public boolean run(int threads, long progressIntervalInMillis) throws RODAException {
+    startTime = System.currentTimeMillis();
+    failed.set(0);
+    Set<String> toMigrate = getPartitions();
+    LOGGER.info("Migration {}: {} partitions, {} already migrated", name, total.get(), ledger.size());
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    int poolSize = Math.max(1, threads);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(poolSize * QUEUE_SIZE_FACTOR), runnable -> {
+        Thread thread = new Thread(runnable, "migration-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "MigrationProgressReporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    reporter.scheduleAtFixedRate(this::logProgress, progressIntervalInMillis, progressIntervalInMillis,
+      TimeUnit.MILLISECONDS);
+
+    try {
+      for (String partition : toMigrate) {
+        if (stopped) {
+          break;
+        }
+        if (!ledger.isDone(partition)) {
+          executor.execute(() -> migratePartition(partition));
+        }
+      }
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        stopped = true;
+        Thread.currentThread().interrupt();
+      }
+      reporter.shutdownNow();
+    }
+
+    logProgress();
+    // partitions that failed here may have been migrated meanwhile when read
+    finished = !stopped && countPendingPartitions() == 0;
+    return finished;
+  }
+
+  /**
+   * Migrates a partition, unless it was already migrated or was not listed when
+   * the migration started.
+   *
+   * @return false if the migration of the partition failed.
+   */
+  public boolean migratePartition(String partition) {
+    if (finished || ledger.isDone(partition)) {
+      return true;
+    }
+
+    try {
+      if (!getPartitions().contains(partition)) {
+        return true;
+      }
+    } catch (RODAException e) {
+      LOGGER.error("Migration {}: could not list partitions", name, e);
+      return false;
+    }
+
+    Object lock = partitionLocks.computeIfAbsent(partition, k -> new Object());
+    synchronized (lock) {
+      try {
+        // another thread may have migrated it while waiting for the lock
+        if (!ledger.isDone(partition)) {
+          action.migrate(storage, partition);
+          ledger.markDone(partition);
+          migrated.incrementAndGet();
+        }
+        return true;
+      } catch (RODAException | IOException | RuntimeException e) {
+        if (isGone(partition)) {
+          // e.g. an AIP deleted after the migration started
+          return markGone(partition);
+        }
+        failed.incrementAndGet();
+        LOGGER.error("Migration {}: could not migrate partition {}", name, partition, e);
+        return false;
+      } finally {
+        partitionLocks.remove(partition, lock);
+      }
+    }
+  }
+
+  /**
+   * Stops a running migration after the partitions being migrated. Progress is
+   * kept in the ledger.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public long getTotal() {
+    return total.get();
+  }
+
+  public long getDone() {
+    return ledger.size();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public void registerMetrics(MetricRegistry metrics) {
+    String prefix = MetricRegistry.name(MigrationManager.class.getSimpleName(), name);
+    registerMetric(metrics, MetricRegistry.name(prefix, "total"), (Gauge<Long>) this::getTotal);
+    registerMetric(metrics, MetricRegistry.name(prefix, "done"), (Gauge<Long>) this::getDone);
+    registerMetric(metrics, MetricRegistry.name(prefix, "failed"), (Gauge<Long>) this::getFailed);
+  }
+
+  private static void registerMetric(MetricRegistry metrics, String name, Metric metric) {
+    // a new run replaces the metrics of the previous one
+    metrics.remove(name);
+    metrics.register(name, metric);
+  }
+
+  /**
+   * Lists the partitions to migrate the first time it is invoked, and returns
+   * that same list afterwards.
+   */
+  Set<String> getPartitions() throws RODAException {
+    Set<String> ret = partitions;
+    if (ret == null) {
+      synchronized (this) {
+        ret = partitions;
+        if (ret == null) {
+          ret = new LinkedHashSet<>();
+          try (CloseableIterable<String> listed = action.listPartitions(storage)) {
+            for (String partition : listed) {
+              ret.add(partition);
+            }
+          } catch (IOException e) {
+            throw new GenericException("Error listing partitions of migration " + name, e);
+          }
+          total.set(ret.size());
+          partitions = Collections.unmodifiableSet(ret);
+        }
+      }
+    }
+    return ret;
+  }
+
+  private long countPendingPartitions() throws RODAException {
+    long count = 0;
+    for (String partition : getPartitions()) {
+      if (!ledger.isDone(partition) && !isGone(partition)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private boolean isGone(String partition) {
+    try {
+      return !action.partitionExists(storage, partition);
+    } catch (RODAException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  private boolean markGone(String partition) {
+    try {
+      ledger.markDone(partition);
+      return true;
+    } catch (IOException e) {
+      LOGGER.error("Migration {}: could not record partition {}", name, partition, e);
+      return false;
+    }
+  }
+
+  private void logProgress() {
+    long done = getDone();
+    long remaining = Math.max(0, total.get() - done);
+    long elapsed = System.currentTimeMillis() - startTime;
+    long migratedInThisRun = migrated.get();
+
+    String eta = "unknown";
+    if (remaining == 0) {
+      eta = "none";
+    } else if (migratedInThisRun > 0) {
+      eta = Duration.ofMillis(elapsed * remaining / migratedInThisRun).toString();
+    }
+
+    LOGGER.info("Migration {}: {}/{} partitions migrated, {} failed, ETA {}", name, done, total.get(), failed.get(),
+      eta);
+  }
+
+  @Override
+  public void close() throws IOException {
+    ledger.close();
+  }
+}
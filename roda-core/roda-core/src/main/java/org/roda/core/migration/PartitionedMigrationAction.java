@@ -0,0 +1,66 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.migration;
+
+import java.io.IOException;
+
+import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.IsModelObject;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.StorageService;
+
+/**
+ * A {@link MigrationAction} whose work can be split in independent partitions
+ * (e.g. one per AIP), so that {@link MigrationManager} can migrate them in
+ * parallel, remember which ones are already migrated and resume an interrupted
+ * migration.
+ */
+public interface PartitionedMigrationAction<T extends IsModelObject> extends MigrationAction<T> {
+
+  /**
+   * Lists the identifiers of the partitions to migrate.
+   */
+  public CloseableIterable<String> listPartitions(StorageService storage) throws RODAException;
+
+  /**
+   * Migrates a single partition. It may be invoked concurrently for different
+   * partitions, but never twice at the same time for the same one.
+   */
+  public void migrate(StorageService storage, String partition) throws RODAException;
+
+  /**
+   * @return true if the partitions are AIP ids, which allows an AIP to be
+   *         migrated when it is read before the background migration reaches
+   *         it.
+   */
+  public default boolean isPartitionedByAIP() {
+    return true;
+  }
+
+  /**
+   * @return false if the partition no longer exists (e.g. the AIP was deleted
+   *         after the partitions were listed), and so there is nothing to
+   *         migrate.
+   */
+  public default boolean partitionExists(StorageService storage, String partition) throws RODAException {
+    return !isPartitionedByAIP() || storage.exists(ModelUtils.getAIPStoragePath(partition));
+  }
+
+  @Override
+  public default void migrate(StorageService storage) throws RODAException {
+    try (CloseableIterable<String> partitions = listPartitions(storage)) {
+      for (String partition : partitions) {
+        migrate(storage, partition);
+      }
+    } catch (IOException e) {
+      throw new GenericException("Error listing partitions to migrate", e);
+    }
+  }
+}
@@ -16,71 +16,69 @@ import java.util.Arrays;
 import java.util.Date;
 
 import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.common.iterables.CloseableIterables;
 import org.roda.core.data.common.RodaConstants;
-import org.roda.core.data.exceptions.AuthorizationDeniedException;
-import org.roda.core.data.exceptions.GenericException;
-import org.roda.core.data.exceptions.NotFoundException;
-import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.RepresentationState;
 import org.roda.core.data.v2.ip.StoragePath;
-import org.roda.core.migration.MigrationAction;
+import org.roda.core.migration.PartitionedMigrationAction;
 import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.storage.Binary;
 import org.roda.core.storage.DefaultStoragePath;
-import org.roda.core.storage.Resource;
 import org.roda.core.storage.StorageService;
 import org.roda.core.storage.StringContentPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class RepresentationToVersion2 implements MigrationAction<Representation> {
+public class RepresentationToVersion2 implements PartitionedMigrationAction<Representation> {
   private static final Logger LOGGER = LoggerFactory.getLogger(RepresentationToVersion2.class);
 
   @Override
-  public void migrate(StorageService storage) {
-    try (
-      CloseableIterable<Resource> aips = storage.listResourcesUnderDirectory(ModelUtils.getAIPContainerPath(), false)) {
-      for (Resource aipResorce : aips) {
-        try {
-          StoragePath aipJsonPath = DefaultStoragePath.parse(aipResorce.getStoragePath(),
-            RodaConstants.STORAGE_AIP_METADATA_FILENAME);
-          Binary aipJson = storage.getBinary(aipJsonPath);
-          InputStream inputStream = aipJson.getContent().createInputStream();
+  public CloseableIterable<String> listPartitions(StorageService storage) throws RODAException {
+    return CloseableIterables.transform(storage.listResourcesUnderDirectory(ModelUtils.getAIPContainerPath(), false),
+      aipResource -> aipResource.getStoragePath().getName());
+  }
 
-          AIP aip = JsonUtils.getObjectFromJson(inputStream, AIP.class);
-          for (Representation representation : aip.getRepresentations()) {
-            DefaultStoragePath representationStoragePath = DefaultStoragePath.parse(RodaConstants.STORAGE_CONTAINER_AIP,
-              aip.getId(), RodaConstants.STORAGE_DIRECTORY_REPRESENTATIONS, representation.getId());
-            Path representationPath = storage.getDirectAccess(representationStoragePath).getPath();
+  @Override
+  public void migrate(StorageService storage, String aipId) throws RODAException {
+    StoragePath aipJsonPath = DefaultStoragePath.parse(ModelUtils.getAIPStoragePath(aipId),
+      RodaConstants.STORAGE_AIP_METADATA_FILENAME);
 
-            BasicFileAttributes attr = Files.readAttributes(representationPath, BasicFileAttributes.class);
-            Date createDate = new Date(attr.creationTime().toMillis());
-            Date updateDate = new Date(attr.lastModifiedTime().toMillis());
+    try {
+      Binary aipJson = storage.getBinary(aipJsonPath);
+      AIP aip;
+      try (InputStream inputStream = aipJson.getContent().createInputStream()) {
+        aip = JsonUtils.getObjectFromJson(inputStream, AIP.class);
+      }
 
-            representation.setCreatedOn(createDate);
-            representation.setCreatedBy(aip.getCreatedBy());
-            representation.setUpdatedOn(updateDate);
-            representation.setUpdatedBy(aip.getUpdatedBy());
+      for (Representation representation : aip.getRepresentations()) {
+        DefaultStoragePath representationStoragePath = DefaultStoragePath.parse(RodaConstants.STORAGE_CONTAINER_AIP,
+          aip.getId(), RodaConstants.STORAGE_DIRECTORY_REPRESENTATIONS, representation.getId());
+        Path representationPath = storage.getDirectAccess(representationStoragePath).getPath();
 
-            if (representation.isOriginal()) {
-              representation.setRepresentationStates(Arrays.asList(RepresentationState.ORIGINAL));
-            } else {
-              representation.setRepresentationStates(Arrays.asList(RepresentationState.OTHER));
-            }
-          }
+        BasicFileAttributes attr = Files.readAttributes(representationPath, BasicFileAttributes.class);
+        Date createDate = new Date(attr.creationTime().toMillis());
+        Date updateDate = new Date(attr.lastModifiedTime().toMillis());
 
-          StringContentPayload payload = new StringContentPayload(JsonUtils.getJsonFromObject(aip));
-          storage.updateBinaryContent(aipJsonPath, payload, false, false);
-        } catch (IOException e) {
-          LOGGER.warn("Could not get AIP json file of AIP " + aipResorce.getStoragePath().toString(), e);
+        representation.setCreatedOn(createDate);
+        representation.setCreatedBy(aip.getCreatedBy());
+        representation.setUpdatedOn(updateDate);
+        representation.setUpdatedBy(aip.getUpdatedBy());
+
+        if (representation.isOriginal()) {
+          representation.setRepresentationStates(Arrays.asList(RepresentationState.ORIGINAL));
+        } else {
+          representation.setRepresentationStates(Arrays.asList(RepresentationState.OTHER));
         }
       }
-    } catch (NotFoundException | GenericException | AuthorizationDeniedException | RequestNotValidException
-      | IOException e) {
-      LOGGER.warn("Could not find AIPs", e);
+
+      StringContentPayload payload = new StringContentPayload(JsonUtils.getJsonFromObject(aip));
+      storage.updateBinaryContent(aipJsonPath, payload, false, false);
+    } catch (IOException e) {
+      LOGGER.warn("Could not get AIP json file of AIP " + aipId, e);
     }
   }
 
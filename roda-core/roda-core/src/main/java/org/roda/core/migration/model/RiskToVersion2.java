@@ -13,12 +13,15 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.common.iterables.CloseableIterables;
 import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.risks.Risk;
-import org.roda.core.migration.MigrationAction;
+import org.roda.core.migration.PartitionedMigrationAction;
 import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.storage.Binary;
+import org.roda.core.storage.DefaultStoragePath;
 import org.roda.core.storage.Resource;
 import org.roda.core.storage.StorageService;
 import org.roda.core.storage.StringContentPayload;
@@ -28,7 +31,7 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class RiskToVersion2 implements MigrationAction<Risk> {
+public class RiskToVersion2 implements PartitionedMigrationAction<Risk> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RiskToVersion2.class);
 
@@ -43,18 +46,22 @@ public class RiskToVersion2 implements MigrationAction<Risk> {
   }
 
   @Override
-  public void migrate(StorageService storage) throws RODAException {
-    try (CloseableIterable<Resource> risks = storage.listResourcesUnderDirectory(ModelUtils.getRiskContainerPath(),
-      false)) {
-      for (Resource resource : risks) {
-        if (!resource.isDirectory() && resource instanceof Binary) {
-          Binary binary = (Binary) resource;
-          migrate(storage, binary);
-        }
-      }
-    } catch (IOException e) {
-      throw new RODAException(e);
-    }
+  public CloseableIterable<String> listPartitions(StorageService storage) throws RODAException {
+    CloseableIterable<Resource> risks = CloseableIterables.filter(
+      storage.listResourcesUnderDirectory(ModelUtils.getRiskContainerPath(), false),
+      resource -> !resource.isDirectory() && resource instanceof Binary);
+    return CloseableIterables.transform(risks, resource -> resource.getStoragePath().getName());
+  }
+
+  @Override
+  public void migrate(StorageService storage, String riskFile) throws RODAException {
+    StoragePath riskPath = DefaultStoragePath.parse(ModelUtils.getRiskContainerPath(), riskFile);
+    migrate(storage, storage.getBinary(riskPath));
+  }
+
+  @Override
+  public boolean isPartitionedByAIP() {
+    return false;
   }
 
   private void migrate(StorageService storage, Binary binary) {
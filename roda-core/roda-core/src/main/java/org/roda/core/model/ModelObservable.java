@@ -9,6 +9,7 @@ package org.roda.core.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import org.roda.core.common.ReturnWithExceptionsWrapper;
@@ -83,6 +84,10 @@ public abstract class ModelObservable {
     return notifyObserversSafely(observer -> observer.aipDeleted(aipId, true));
   }
 
+  public ReturnWithExceptionsWrapper notifyAipsDeleted(List<String> aipIds) {
+    return notifyObserversSafely(observer -> observer.aipsDeleted(aipIds, true));
+  }
+
   public ReturnWithExceptionsWrapper notifyDescriptiveMetadataCreated(DescriptiveMetadata descriptiveMetadata) {
     return notifyObserversSafely(observer -> observer.descriptiveMetadataCreated(descriptiveMetadata));
   }
@@ -209,6 +214,12 @@ public abstract class ModelObservable {
     return notifyObserversSafely(observer -> observer.riskIncidenceCreatedOrUpdated(riskIncidence, commit));
   }
 
+  public ReturnWithExceptionsWrapper notifyRiskIncidencesCreatedOrUpdated(List<RiskIncidence> riskIncidences,
+    Map<String, RiskIncidence> previousRiskIncidences, boolean commit) {
+    return notifyObserversSafely(
+      observer -> observer.riskIncidencesCreatedOrUpdated(riskIncidences, previousRiskIncidences, commit));
+  }
+
   public ReturnWithExceptionsWrapper notifyRiskIncidenceDeleted(String riskIncidenceId, boolean commit) {
     return notifyObserversSafely(observer -> observer.riskIncidenceDeleted(riskIncidenceId, commit));
   }
@@ -8,6 +8,7 @@
 package org.roda.core.model;
 
 import java.util.List;
+import java.util.Map;
 
 import org.roda.core.data.exceptions.ReturnWithExceptions;
 import org.roda.core.data.v2.ip.AIP;
@@ -40,6 +41,8 @@ public interface ModelObserver {
 
   public ReturnWithExceptions<Void, ModelObserver> aipDeleted(String aipId, boolean deleteIncidences);
 
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences);
+
   public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataCreated(
     DescriptiveMetadata descriptiveMetadataBinary);
 
@@ -109,6 +112,14 @@ public interface ModelObserver {
   public ReturnWithExceptions<Void, ModelObserver> riskIncidenceCreatedOrUpdated(RiskIncidence riskIncidence,
     boolean commit);
 
+  /**
+   * @param previousRiskIncidences
+   *          the incidences as they were before being updated, by id (created
+   *          incidences have none)
+   */
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidencesCreatedOrUpdated(List<RiskIncidence> riskIncidences,
+    Map<String, RiskIncidence> previousRiskIncidences, boolean commit);
+
   public ReturnWithExceptions<Void, ModelObserver> riskIncidenceDeleted(String riskIncidenceId, boolean commit);
 
   public ReturnWithExceptions<Void, ModelObserver> representationInformationCreatedOrUpdated(
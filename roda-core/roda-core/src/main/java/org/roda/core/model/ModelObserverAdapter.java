@@ -0,0 +1,289 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.model;
+
+import java.util.List;
+import java.util.Map;
+
+import org.roda.core.data.exceptions.ReturnWithExceptions;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.DIP;
+import org.roda.core.data.v2.ip.DIPFile;
+import org.roda.core.data.v2.ip.File;
+import org.roda.core.data.v2.ip.Representation;
+import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
+import org.roda.core.data.v2.ip.metadata.OtherMetadata;
+import org.roda.core.data.v2.ip.metadata.PreservationMetadata;
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.Report;
+import org.roda.core.data.v2.log.LogEntry;
+import org.roda.core.data.v2.notifications.Notification;
+import org.roda.core.data.v2.ri.RepresentationInformation;
+import org.roda.core.data.v2.risks.Risk;
+import org.roda.core.data.v2.risks.RiskIncidence;
+import org.roda.core.data.v2.user.Group;
+import org.roda.core.data.v2.user.User;
+
+/**
+ * {@link ModelObserver} that ignores every notification, to be extended by
+ * observers only interested in a few of them.
+ */
+public abstract class ModelObserverAdapter implements ModelObserver {
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipCreated(AIP aip) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipUpdated(AIP aip) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipStateUpdated(AIP aip) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipMoved(AIP aip, String oldParentId, String newParentId) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipDeleted(String aipId, boolean deleteIncidences) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataCreated(
+    DescriptiveMetadata descriptiveMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataUpdated(
+    DescriptiveMetadata descriptiveMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataDeleted(String aipId, String representationId,
+    String descriptiveMetadataBinaryId) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationCreated(Representation representation) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationUpdated(Representation representation) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationDeleted(String aipId, String representationId,
+    boolean deleteIncidences) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileCreated(File file) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileUpdated(File file) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> fileDeleted(String aipId, String representationId,
+    List<String> fileDirectoryPath, String fileId, boolean deleteIncidences) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> logEntryCreated(LogEntry entry) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> userCreated(User user) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> userUpdated(User user) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> userDeleted(String userID) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> groupCreated(Group group) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> groupUpdated(Group group) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> groupDeleted(String groupID) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataCreated(
+    PreservationMetadata preservationMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataUpdated(
+    PreservationMetadata preservationMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> preservationMetadataDeleted(
+    PreservationMetadata preservationMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> otherMetadataCreated(OtherMetadata otherMetadataBinary) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> jobCreatedOrUpdated(Job job, boolean reindexJobReports) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> jobDeleted(String jobId) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> jobReportCreatedOrUpdated(Report jobReport, Job cachedJob) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> jobReportDeleted(String jobReportId) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipPermissionsUpdated(AIP aip) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipPermissionsUpdated(DIP dip) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> transferredResourceDeleted(String transferredResourceID) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskCreatedOrUpdated(Risk risk, int incidences, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskDeleted(String riskId, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceCreatedOrUpdated(RiskIncidence riskIncidence,
+    boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidencesCreatedOrUpdated(List<RiskIncidence> riskIncidences,
+    Map<String, RiskIncidence> previousRiskIncidences, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> riskIncidenceDeleted(String riskIncidenceId, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationInformationCreatedOrUpdated(
+    RepresentationInformation ri, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationInformationDeleted(String representationInformationId,
+    boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> notificationCreatedOrUpdated(Notification notification) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> notificationDeleted(String notificationId) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipCreated(DIP dip, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipUpdated(DIP dip, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipDeleted(String dipId, boolean commit) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipFileCreated(DIPFile file) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipFileUpdated(DIPFile file) {
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> dipFileDeleted(String dipId, List<String> path, String fileId) {
+    return new ReturnWithExceptions<>(this);
+  }
+}
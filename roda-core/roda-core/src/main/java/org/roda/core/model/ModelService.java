@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -36,11 +37,13 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.roda.core.RodaCoreFactory;
 import org.roda.core.common.PremisV3Utils;
+import org.roda.core.common.ReturnWithExceptionsWrapper;
 import org.roda.core.common.UserUtility;
 import org.roda.core.common.dips.DIPUtils;
 import org.roda.core.common.iterables.CloseableIterable;
 import org.roda.core.common.iterables.CloseableIterables;
 import org.roda.core.common.monitor.TransferredResourcesScanner;
+import org.roda.core.common.notifications.NotificationDeliveryService;
 import org.roda.core.common.notifications.NotificationProcessor;
 import org.roda.core.common.validation.ValidationUtils;
 import org.roda.core.data.common.RodaConstants;
@@ -96,6 +99,7 @@ import org.roda.core.data.v2.user.User;
 import org.roda.core.data.v2.validation.ValidationException;
 import org.roda.core.data.v2.validation.ValidationReport;
 import org.roda.core.events.EventsManager;
+import org.roda.core.migration.MigrationManager;
 import org.roda.core.model.iterables.LogEntryFileSystemIterable;
 import org.roda.core.model.iterables.LogEntryStorageIterable;
 import org.roda.core.model.utils.ModelUtils;
@@ -103,6 +107,7 @@ import org.roda.core.model.utils.ResourceListUtils;
 import org.roda.core.model.utils.ResourceParseUtils;
 import org.roda.core.storage.Binary;
 import org.roda.core.storage.BinaryVersion;
+import org.roda.core.storage.ByteArrayContentPayload;
 import org.roda.core.storage.ContentPayload;
 import org.roda.core.storage.DefaultBinary;
 import org.roda.core.storage.DefaultStoragePath;
@@ -119,6 +124,8 @@ import org.roda.core.util.IdUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  * Class that "relates" Model & Storage
  * 
@@ -131,6 +138,7 @@ public class ModelService extends ModelObservable {
 
   private static final DateTimeFormatter LOG_NAME_DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
   private static final boolean FAIL_IF_NO_DESCRIPTIVE_METADATA_SCHEMA = false;
+  private static final int DEFAULT_RISK_INCIDENCES_BATCH_SIZE = 500;
   private final StorageService storage;
   private final EventsManager eventsManager;
   private final NodeType nodeType;
@@ -203,6 +211,14 @@ public class ModelService extends ModelObservable {
   /***************** AIP related *****************/
   /***********************************************/
 
+  /**
+   * Serializes AIP, DIP, job and job report files using the configured model
+   * format (JSON by default).
+   */
+  private ContentPayload getModelPayload(Object object) throws GenericException {
+    return new ByteArrayContentPayload(JsonUtils.getModelBytesFromObject(object));
+  }
+
   private void createAIPMetadata(AIP aip) throws RequestNotValidException, GenericException, AlreadyExistsException,
     AuthorizationDeniedException, NotFoundException {
     createAIPMetadata(aip, ModelUtils.getAIPStoragePath(aip.getId()));
@@ -210,11 +226,11 @@ public class ModelService extends ModelObservable {
 
   private void createAIPMetadata(AIP aip, StoragePath storagePath) throws RequestNotValidException, GenericException,
     AlreadyExistsException, AuthorizationDeniedException, NotFoundException {
-    String json = JsonUtils.getJsonFromObject(aip);
+    ContentPayload payload = getModelPayload(aip);
     DefaultStoragePath metadataStoragePath = DefaultStoragePath.parse(storagePath,
       RodaConstants.STORAGE_AIP_METADATA_FILENAME);
     boolean asReference = false;
-    storage.createBinary(metadataStoragePath, new StringContentPayload(json), asReference);
+    storage.createBinary(metadataStoragePath, payload, asReference);
   }
 
   private void updateAIPMetadata(AIP aip)
@@ -224,12 +240,13 @@ public class ModelService extends ModelObservable {
 
   private void updateAIPMetadata(AIP aip, StoragePath storagePath)
     throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
-    String json = JsonUtils.getJsonFromObject(aip);
+    MigrationManager.migrateAIPOnAccess(aip.getId());
+    ContentPayload payload = getModelPayload(aip);
     DefaultStoragePath metadataStoragePath = DefaultStoragePath.parse(storagePath,
       RodaConstants.STORAGE_AIP_METADATA_FILENAME);
     boolean asReference = false;
     boolean createIfNotExists = true;
-    storage.updateBinaryContent(metadataStoragePath, new StringContentPayload(json), asReference, createIfNotExists);
+    storage.updateBinaryContent(metadataStoragePath, payload, asReference, createIfNotExists);
   }
 
   public CloseableIterable<OptionalWithCause<AIP>> listAIPs()
@@ -505,6 +522,32 @@ public class ModelService extends ModelObservable {
     notifyAipDeleted(aipId).failOnError();
   }
 
+  /**
+   * Deletes several AIPs, notifying the observers once for all of them. AIPs
+   * that could not be deleted are logged and skipped.
+   *
+   * @return the ids of the AIPs that were deleted
+   */
+  public List<String> deleteAIPs(List<String> aipIds)
+    throws RequestNotValidException, GenericException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    List<String> deleted = new ArrayList<>();
+    for (String aipId : aipIds) {
+      try {
+        storage.deleteResource(ModelUtils.getAIPStoragePath(aipId));
+        deleted.add(aipId);
+      } catch (NotFoundException | GenericException e) {
+        LOGGER.warn("Could not delete AIP {}: {}", aipId, e.getMessage());
+      }
+    }
+
+    if (!deleted.isEmpty()) {
+      notifyAipsDeleted(deleted).failOnError();
+    }
+    return deleted;
+  }
+
   private ValidationReport isAIPvalid(ModelService model, Directory directory,
     boolean failIfNoDescriptiveMetadataSchema)
     throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
@@ -1285,6 +1328,7 @@ public class ModelService extends ModelObservable {
 
   public Binary retrievePreservationRepresentation(String aipId, String representationId)
     throws RequestNotValidException, GenericException, NotFoundException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     String urn = IdUtils.getPreservationId(PreservationMetadataType.REPRESENTATION, aipId, representationId, null,
       null);
     StoragePath path = ModelUtils.getPreservationMetadataStoragePath(urn, PreservationMetadataType.REPRESENTATION,
@@ -1308,6 +1352,7 @@ public class ModelService extends ModelObservable {
 
   public Binary retrievePreservationFile(String aipId, String representationId, List<String> fileDirectoryPath,
     String fileId) throws RequestNotValidException, GenericException, NotFoundException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     String identifier = IdUtils.getPreservationFileId(fileId);
     StoragePath filePath = ModelUtils.getPreservationMetadataStoragePath(identifier, PreservationMetadataType.FILE,
       aipId, representationId, fileDirectoryPath, fileId);
@@ -1316,6 +1361,7 @@ public class ModelService extends ModelObservable {
 
   public boolean preservationFileExists(String aipId, String representationId, List<String> fileDirectoryPath,
     String fileId) throws RequestNotValidException, GenericException, NotFoundException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     String identifier = IdUtils.getPreservationFileId(fileId);
     StoragePath filePath = ModelUtils.getPreservationMetadataStoragePath(identifier, PreservationMetadataType.FILE,
       aipId, representationId, fileDirectoryPath, fileId);
@@ -1325,6 +1371,7 @@ public class ModelService extends ModelObservable {
   public Binary retrievePreservationEvent(String aipId, String representationId, List<String> filePath, String fileId,
     String preservationID)
     throws RequestNotValidException, GenericException, NotFoundException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     StoragePath storagePath = ModelUtils.getPreservationMetadataStoragePath(preservationID,
       PreservationMetadataType.EVENT, aipId, representationId, filePath, fileId);
     return storage.getBinary(storagePath);
@@ -1381,6 +1428,7 @@ public class ModelService extends ModelObservable {
     throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException,
     AlreadyExistsException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+    MigrationManager.migrateAIPOnAccess(aipId);
 
     PreservationMetadata pm = new PreservationMetadata();
     pm.setId(id);
@@ -1411,6 +1459,7 @@ public class ModelService extends ModelObservable {
     String representationId, List<String> fileDirectoryPath, String fileId, ContentPayload payload, boolean notify)
     throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+    MigrationManager.migrateAIPOnAccess(aipId);
 
     PreservationMetadata pm = new PreservationMetadata();
     pm.setId(id);
@@ -1434,6 +1483,7 @@ public class ModelService extends ModelObservable {
     String id, boolean notify)
     throws NotFoundException, GenericException, AuthorizationDeniedException, RequestNotValidException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+    MigrationManager.migrateAIPOnAccess(aipId);
 
     PreservationMetadata pm = new PreservationMetadata();
     pm.setAipId(aipId);
@@ -1509,6 +1559,7 @@ public class ModelService extends ModelObservable {
   public CloseableIterable<OptionalWithCause<PreservationMetadata>> listPreservationMetadata(String aipId,
     boolean includeRepresentations)
     throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     StoragePath storagePath = ModelUtils.getAIPPreservationMetadataStoragePath(aipId);
 
     CloseableIterable<OptionalWithCause<PreservationMetadata>> aipPreservationMetadata;
@@ -1542,6 +1593,7 @@ public class ModelService extends ModelObservable {
   public CloseableIterable<OptionalWithCause<PreservationMetadata>> listPreservationMetadata(String aipId,
     String representationId)
     throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
+    MigrationManager.migrateAIPOnAccess(aipId);
     StoragePath storagePath = ModelUtils.getRepresentationPreservationMetadataStoragePath(aipId, representationId);
 
     boolean recursive = true;
@@ -2184,9 +2236,9 @@ public class ModelService extends ModelObservable {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
 
     // create or update job in storage
-    String jobAsJson = JsonUtils.getJsonFromObject(job);
+    ContentPayload jobPayload = getModelPayload(job);
     StoragePath jobPath = ModelUtils.getJobStoragePath(job.getId());
-    storage.updateBinaryContent(jobPath, new StringContentPayload(jobAsJson), false, true);
+    storage.updateBinaryContent(jobPath, jobPayload, false, true);
 
     // index it
     notifyJobCreatedOrUpdated(job, false).failOnError();
@@ -2257,9 +2309,9 @@ public class ModelService extends ModelObservable {
         notifyJobReportDeleted(oldId);
       }
 
-      String jobReportAsJson = JsonUtils.getJsonFromObject(jobReport);
+      ContentPayload jobReportPayload = getModelPayload(jobReport);
       StoragePath jobReportPath = ModelUtils.getJobReportStoragePath(jobReport.getJobId(), jobReport.getId());
-      storage.updateBinaryContent(jobReportPath, new StringContentPayload(jobReportAsJson), false, true);
+      storage.updateBinaryContent(jobReportPath, jobReportPayload, false, true);
 
       // index it
       notifyJobReportCreatedOrUpdated(jobReport, cachedJob).failOnError();
@@ -2303,6 +2355,22 @@ public class ModelService extends ModelObservable {
     notifyAipPermissionsUpdated(aip).failOnError();
   }
 
+  /**
+   * Writes the permissions of an AIP in its metadata file without notifying the
+   * observers, for when the index already has them (see
+   * {@link org.roda.core.index.AIPPermissionsPropagator}).
+   */
+  public void writeAIPPermissions(String aipId, Permissions permissions, String updatedBy)
+    throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    AIP aip = retrieveAIP(aipId);
+    aip.setPermissions(permissions);
+    aip.setUpdatedBy(updatedBy);
+    aip.setUpdatedOn(new Date());
+    updateAIPMetadata(aip);
+  }
+
   public void updateDIPPermissions(DIP dip)
     throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
@@ -2450,6 +2518,98 @@ public class ModelService extends ModelObservable {
     return riskIncidence;
   }
 
+  /**
+   * Creates several risk incidences. Their files are written in batches and the
+   * observers are notified once per batch, so that each batch is indexed with a
+   * single request and the counters of its risks are changed once.
+   *
+   * @return the incidences that were created, i.e. without the ones whose files
+   *         could not be written, even if some could not be indexed
+   */
+  public List<RiskIncidence> createRiskIncidences(List<RiskIncidence> riskIncidences, boolean commit)
+    throws GenericException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    List<RiskIncidence> ret = new ArrayList<>();
+    for (List<RiskIncidence> batch : Lists.partition(riskIncidences, getRiskIncidencesBatchSize())) {
+      List<RiskIncidence> created = new ArrayList<>();
+      for (RiskIncidence riskIncidence : batch) {
+        try {
+          riskIncidence.setId(IdUtils.createUUID());
+          riskIncidence.setDetectedOn(new Date());
+
+          String riskIncidenceAsJson = JsonUtils.getJsonFromObject(riskIncidence);
+          StoragePath riskIncidencePath = ModelUtils.getRiskIncidenceStoragePath(riskIncidence.getId());
+          storage.createBinary(riskIncidencePath, new StringContentPayload(riskIncidenceAsJson), false);
+          created.add(riskIncidence);
+        } catch (GenericException | RequestNotValidException | AuthorizationDeniedException | NotFoundException
+          | AlreadyExistsException e) {
+          LOGGER.error("Error creating risk incidence in storage", e);
+        }
+      }
+
+      if (!created.isEmpty()) {
+        logRiskIncidencesNotificationErrors(
+          notifyRiskIncidencesCreatedOrUpdated(created, Collections.emptyMap(), commit));
+        ret.addAll(created);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Updates several risk incidences, in batches like
+   * {@link #createRiskIncidences(List, boolean)}.
+   *
+   * @return the incidences that were updated
+   */
+  public List<RiskIncidence> updateRiskIncidences(List<RiskIncidence> riskIncidences, boolean commit)
+    throws GenericException, AuthorizationDeniedException {
+    RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
+
+    List<RiskIncidence> ret = new ArrayList<>();
+    for (List<RiskIncidence> batch : Lists.partition(riskIncidences, getRiskIncidencesBatchSize())) {
+      List<RiskIncidence> updated = new ArrayList<>();
+      // the previous versions tell the observers how the risk counters change
+      Map<String, RiskIncidence> previous = new HashMap<>();
+      for (RiskIncidence riskIncidence : batch) {
+        try {
+          previous.put(riskIncidence.getId(), retrieveRiskIncidence(riskIncidence.getId()));
+
+          String riskIncidenceAsJson = JsonUtils.getJsonFromObject(riskIncidence);
+          StoragePath riskIncidencePath = ModelUtils.getRiskIncidenceStoragePath(riskIncidence.getId());
+          storage.updateBinaryContent(riskIncidencePath, new StringContentPayload(riskIncidenceAsJson), false, true);
+          updated.add(riskIncidence);
+        } catch (GenericException | RequestNotValidException | AuthorizationDeniedException | NotFoundException e) {
+          LOGGER.error("Error updating risk incidence in storage", e);
+        }
+      }
+
+      if (!updated.isEmpty()) {
+        logRiskIncidencesNotificationErrors(notifyRiskIncidencesCreatedOrUpdated(updated, previous, commit));
+        ret.addAll(updated);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * The incidences of a batch whose notification failed were still written, so
+   * the errors are only logged instead of losing the incidences of the batches
+   * already written. Reindexing the risk incidences repairs the index.
+   */
+  private static void logRiskIncidencesNotificationErrors(ReturnWithExceptionsWrapper notified) {
+    if (!notified.hasNoExceptions()) {
+      LOGGER.error("Error notifying risk incidences, reindex them to repair the index: {}",
+        notified.printStackTraces());
+    }
+  }
+
+  private static int getRiskIncidencesBatchSize() {
+    return Math.max(1, RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_RISK_INCIDENCES_BATCH_SIZE, "core", "model",
+      "risk_incidences", "batch_size"));
+  }
+
   public void deleteRiskIncidence(String riskIncidenceId, boolean commit)
     throws GenericException, NotFoundException, AuthorizationDeniedException, RequestNotValidException {
     RodaCoreFactory.checkIfWriteIsAllowedAndIfFalseThrowException(nodeType);
@@ -2499,6 +2659,14 @@ public class ModelService extends ModelObservable {
       throw new GenericException(e);
     }
 
+    if (processor != null && !processor.getDeferredDeliveries().isEmpty()) {
+      try {
+        NotificationDeliveryService.getInstance().enqueue(processor.getDeferredDeliveries());
+      } catch (IOException e) {
+        throw new GenericException("Could not enqueue notification deliveries", e);
+      }
+    }
+
     return notification;
   }
 
@@ -2611,10 +2779,10 @@ public class ModelService extends ModelObservable {
 
   private void createDIPMetadata(DIP dip, StoragePath storagePath) throws RequestNotValidException, GenericException,
     AlreadyExistsException, AuthorizationDeniedException, NotFoundException {
-    String json = JsonUtils.getJsonFromObject(dip);
+    ContentPayload payload = getModelPayload(dip);
     DefaultStoragePath metadataStoragePath = DefaultStoragePath.parse(storagePath,
       RodaConstants.STORAGE_DIP_METADATA_FILENAME);
-    storage.createBinary(metadataStoragePath, new StringContentPayload(json), false);
+    storage.createBinary(metadataStoragePath, payload, false);
   }
 
   private void updateDIPMetadata(DIP dip)
@@ -2624,12 +2792,12 @@ public class ModelService extends ModelObservable {
 
   private void updateDIPMetadata(DIP dip, StoragePath storagePath)
     throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
-    String json = JsonUtils.getJsonFromObject(dip);
+    ContentPayload payload = getModelPayload(dip);
     DefaultStoragePath metadataStoragePath = DefaultStoragePath.parse(storagePath,
       RodaConstants.STORAGE_DIP_METADATA_FILENAME);
     boolean asReference = false;
     boolean createIfNotExists = true;
-    storage.updateBinaryContent(metadataStoragePath, new StringContentPayload(json), asReference, createIfNotExists);
+    storage.updateBinaryContent(metadataStoragePath, payload, asReference, createIfNotExists);
   }
 
   public DIP createDIP(DIP dip, boolean notify) throws GenericException, AuthorizationDeniedException {
@@ -3052,7 +3220,7 @@ public class ModelService extends ModelObservable {
 
       if (daysToIndex > 0) {
         inStorage = new LogEntryStorageIterable(
-          CloseableIterables.filter(actionLogs, r -> isToIndex(r.getStoragePath().getName(), daysToIndex)));
+          CloseableIterables.filter(actionLogs, r -> isLogFileToIndex(r.getStoragePath().getName(), daysToIndex)));
       } else {
         inStorage = new LogEntryStorageIterable(actionLogs);
       }
@@ -3063,7 +3231,7 @@ public class ModelService extends ModelObservable {
     try {
       if (daysToIndex > 0) {
         notStorage = new LogEntryFileSystemIterable(RodaCoreFactory.getLogPath(),
-          p -> isToIndex(p.getFileName().toString(), daysToIndex));
+          p -> isLogFileToIndex(p.getFileName().toString(), daysToIndex));
       } else {
         notStorage = new LogEntryFileSystemIterable(RodaCoreFactory.getLogPath());
       }
@@ -3074,7 +3242,11 @@ public class ModelService extends ModelObservable {
     return CloseableIterables.concat(inStorage, notStorage);
   }
 
-  private boolean isToIndex(String fileName, int daysToIndex) {
+  /**
+   * Tells if the action log day file is from the last {@code daysToIndex}
+   * days.
+   */
+  public static boolean isLogFileToIndex(String fileName, int daysToIndex) {
     boolean isToIndex = false;
     String dateFromFileName = fileName.replaceFirst("([0-9]{4}-[0-9]{2}-[0-9]{2}).*", "$1");
 
@@ -174,6 +174,18 @@ public interface Plugin<T extends IsRODAObject> {
    */
   <T1 extends JobPluginInfo> T1 getJobPluginInfo(Class<T1> jobPluginInfoClass);
 
+  /**
+   * Whether {@link #execute} can run on another node than the one that ran
+   * {@link #beforeAllExecute}, as a distributed orchestrator does by creating a
+   * new instance of the plugin on each worker node. Plugins whose execution
+   * relies on state kept in memory by {@link #beforeAllExecute} (e.g. an open
+   * output file) must return false, so that they are only executed by the node
+   * that orchestrates the job.
+   */
+  default boolean isDistributable() {
+    return true;
+  }
+
   /**
    * Method executed by {@link PluginOrchestrator} before splitting the workload
    * (if it makes sense) by N workers
@@ -7,212 +7,128 @@
  */
 package org.roda.core.plugins.orchestrate;
 
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import org.roda.core.common.akka.Messages.JobPartialUpdate;
-import org.roda.core.data.exceptions.JobAlreadyStartedException;
-import org.roda.core.data.exceptions.JobException;
-import org.roda.core.data.exceptions.LockingException;
-import org.roda.core.data.v2.IsRODAObject;
-import org.roda.core.data.v2.index.IsIndexed;
-import org.roda.core.data.v2.index.filter.Filter;
-import org.roda.core.data.v2.jobs.Job;
-import org.roda.core.index.IndexService;
-import org.roda.core.model.ModelService;
-import org.roda.core.plugins.Plugin;
-import org.roda.core.plugins.PluginOrchestrator;
-import org.roda.core.plugins.orchestrate.akka.distributed.AkkaDistributedPlugin;
+import java.nio.file.Path;
+import java.util.concurrent.TimeoutException;
+
+import org.roda.core.common.akka.AkkaUtils;
 import org.roda.core.plugins.orchestrate.akka.distributed.Frontend;
 import org.roda.core.plugins.orchestrate.akka.distributed.Master;
-import org.roda.core.storage.StorageService;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGateway;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol;
+import org.roda.core.plugins.orchestrate.akka.distributed.PluginBlockDispatcher;
+import org.roda.core.plugins.orchestrate.akka.distributed.PluginBlockRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 
-import akka.actor.ActorIdentity;
-import akka.actor.ActorPath;
-import akka.actor.ActorPaths;
 import akka.actor.ActorRef;
-import akka.actor.ActorSelection;
 import akka.actor.ActorSystem;
-import akka.actor.Identify;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
+import akka.cluster.client.ClusterClientReceptionist;
 import akka.cluster.singleton.ClusterSingletonManager;
 import akka.cluster.singleton.ClusterSingletonManagerSettings;
-import akka.dispatch.OnFailure;
-import akka.dispatch.OnSuccess;
-import akka.pattern.Patterns;
-import akka.persistence.journal.leveldb.SharedLeveldbJournal;
-import akka.persistence.journal.leveldb.SharedLeveldbStore;
-import akka.util.Timeout;
-import scala.concurrent.Future;
+import akka.cluster.singleton.ClusterSingletonProxy;
+import akka.cluster.singleton.ClusterSingletonProxySettings;
+import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
-/*
- * Based on 
- * > http://www.typesafe.com/activator/template/akka-distributed-workers
- * > https://github.com/typesafehub/activator-akka-distributed-workers-java 
- * */
-public class AkkaDistributedPluginOrchestrator extends AkkaDistributedPlugin implements PluginOrchestrator {
-  private final IndexService index;
-  private final ModelService model;
-  private final StorageService storage;
+/**
+ * Orchestrates the jobs as {@link AkkaEmbeddedPluginOrchestrator} does (i.e.
+ * job state, object locks, before and after all execute are kept in this
+ * node), but the blocks of each job are executed by the worker nodes (RODA
+ * instances with node type WORKER) connected to the master started here.
+ *
+ * Based on
+ * <ul>
+ * <li>http://www.typesafe.com/activator/template/akka-distributed-workers</li>
+ * <li>https://github.com/typesafehub/activator-akka-distributed-workers-java</li>
+ * </ul>
+ */
+public class AkkaDistributedPluginOrchestrator extends AkkaEmbeddedPluginOrchestrator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AkkaDistributedPluginOrchestrator.class);
+
+  public static final String DEFAULT_JOURNAL_PLUGIN = "akka.persistence.journal.leveldb";
+  private static final String ROLE = "backend";
+
   private final ActorSystem clusterSystem;
   private final ActorRef frontend;
+  private final ActorRef masterProxy;
+  private final PluginBlockRegistry blocks = new PluginBlockRegistry();
+
+  public AkkaDistributedPluginOrchestrator(String hostname, String port, Path journalPath) {
+    this(hostname, port, DEFAULT_JOURNAL_PLUGIN, journalPath, Duration.create(60, "seconds"),
+      Master.DEFAULT_MAX_ATTEMPTS);
+  }
+
+  /**
+   * @param journalPlugin
+   *          akka persistence journal where the master keeps the work state.
+   * @param journalPath
+   *          folder of the LevelDB journal (if it is the one in use).
+   * @param workTimeout
+   *          how long a block may go without news from the worker executing it
+   *          before being given to another worker.
+   * @param maxAttempts
+   *          how many times a block is given to a worker before failing.
+   */
+  public AkkaDistributedPluginOrchestrator(String hostname, String port, String journalPlugin, Path journalPath,
+    FiniteDuration workTimeout, int maxAttempts) {
+    super(Props.create(PluginBlockDispatcher.class));
 
-  public AkkaDistributedPluginOrchestrator(String hostname, String port) {
-    super();
-    index = getIndex();
-    model = getModel();
-    storage = getStorage();
-
-    String role = "backend";
     String systemName = "ClusterSystem";
     String systemPath = systemName + "@" + hostname + ":" + port;
-    Config conf = ConfigFactory.parseString("akka.cluster.roles=[" + role + "]")
+    Config conf = ConfigFactory.parseString("akka.cluster.roles=[" + ROLE + "]")
       .withFallback(ConfigFactory.parseString("akka.cluster.seed-nodes=[\"akka.tcp://" + systemPath + "\"]"))
       .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.hostname=" + hostname))
       .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.port=" + port))
-      .withFallback(ConfigFactory.load("config/orchestrator/application"));
+      .withValue("akka.persistence.journal.plugin", ConfigValueFactory.fromAnyRef(journalPlugin))
+      .withValue("akka.persistence.journal.leveldb.dir", ConfigValueFactory.fromAnyRef(journalPath.toString()))
+      .withFallback(AkkaUtils.getAkkaConfiguration("distributed.conf"));
 
     clusterSystem = ActorSystem.create(systemName, conf);
 
-    startupSharedJournal(getClusterSystem(), true, ActorPaths.fromString("akka.tcp://" + systemPath + "/user/store"));
-
-    FiniteDuration workTimeout = Duration.create(10, "seconds");
-    getClusterSystem().actorOf(ClusterSingletonManager.props(Master.props(workTimeout), PoisonPill.getInstance(),
-      ClusterSingletonManagerSettings.create(getClusterSystem()).withRole(role)), "master");
-
+    clusterSystem.actorOf(ClusterSingletonManager.props(Master.props(workTimeout, maxAttempts),
+      PoisonPill.getInstance(), ClusterSingletonManagerSettings.create(clusterSystem).withRole(ROLE)), "master");
+    masterProxy = clusterSystem.actorOf(ClusterSingletonProxy.props("/user/master",
+      ClusterSingletonProxySettings.create(clusterSystem).withRole(ROLE)), "masterProxy");
     frontend = clusterSystem.actorOf(Props.create(Frontend.class), "frontend");
-  }
-
-  private static void startupSharedJournal(final ActorSystem system, boolean startStore, final ActorPath path) {
-    // Start the shared journal on one node (don't crash this SPOF)
-    // This will not be needed with a distributed journal
-    if (startStore) {
-      system.actorOf(Props.create(SharedLeveldbStore.class), "store");
-    }
-    // register the shared journal
-
-    Timeout timeout = new Timeout(15, TimeUnit.SECONDS);
-
-    ActorSelection actorSelection = system.actorSelection(path);
-    Future<Object> f = Patterns.ask(actorSelection, new Identify(null), timeout);
-
-    f.onSuccess(new OnSuccess<Object>() {
-
-      @Override
-      public void onSuccess(Object arg0) throws Throwable {
-        if (arg0 instanceof ActorIdentity && ((ActorIdentity) arg0).getRef() != null) {
-          SharedLeveldbJournal.setStore(((ActorIdentity) arg0).getRef(), system);
-        } else {
-          system.log().error("Lookup of shared journal at {} timed out", path);
-          System.exit(-1);
-        }
 
-      }
-    }, system.dispatcher());
-
-    f.onFailure(new OnFailure() {
-      @Override
-      public void onFailure(Throwable ex) throws Throwable {
-        system.log().error(ex, "Lookup of shared journal at {} timed out", path);
-      }
-    }, system.dispatcher());
+    ActorRef gateway = clusterSystem.actorOf(OrchestratorGateway.props(this), OrchestratorGatewayProtocol.GATEWAY_NAME);
+    ClusterClientReceptionist.get(clusterSystem).registerService(gateway);
   }
 
   public ActorSystem getClusterSystem() {
     return clusterSystem;
   }
 
-  @Override
-  public void setup() {
-    // do nothing
-  }
-
-  @Override
-  public void shutdown() {
-    // do nothing
-  }
-
-  @Override
-  public <T extends IsRODAObject, T1 extends IsIndexed> void runPluginFromIndex(Object context, Class<T1> classToActOn,
-    Filter filter, Plugin<T> plugin) {
-    // do nothing
-  }
-
-  @Override
-  public <T extends IsRODAObject> void runPlugin(Object context, Plugin<T> plugin) {
-    // do nothing
-  }
-
-  @Override
-  public void executeJob(Job job, boolean async) throws JobAlreadyStartedException {
-    // do nothing
-  }
-
-  @Override
-  public void stopJobAsync(Job job) {
-    // do nothing
-  }
-
-  @Override
-  public void cleanUnfinishedJobsAsync() {
-    // do nothing
-  }
-
-  @Override
-  public void setJobContextInformation(String jobId, Object object) {
-    // do nothing
-  }
-
-  @Override
-  public <T extends IsRODAObject> void updateJobInformationAsync(Plugin<T> plugin, JobPluginInfo jobPluginInfo)
-    throws JobException {
-    // do nothing
+  public ActorRef getFrontend() {
+    return frontend;
   }
 
-  @Override
-  public <T extends IsRODAObject> void updateJobAsync(Plugin<T> plugin, JobPartialUpdate partialUpdate) {
-    // do nothing
+  public ActorRef getMasterProxy() {
+    return masterProxy;
   }
 
-  @Override
-  public <T extends IsRODAObject> void runPluginOnAllObjects(Object context, Plugin<T> plugin, Class<T> objectClass) {
-    // do nothing
+  public PluginBlockRegistry getBlocks() {
+    return blocks;
   }
 
   @Override
-  public <T extends IsRODAObject> void runPluginOnObjects(Object context, Plugin<T> plugin, Class<T> objectClass,
-    List<String> uuids) {
-    // do nothing
-  }
-
-  @Override
-  public void setJobInError(String jobId) {
-    // do nothing
-  }
-
-  @Override
-  public void acquireObjectLock(List<String> lites, int timeoutInSeconds, boolean waitForLockIfLocked,
-    String requestUuid) throws LockingException {
-    // TODO Auto-generated method stub
-
-  }
-
-  @Override
-  public void releaseObjectLockAsync(List<String> lites, String requestUuid) {
-    // TODO Auto-generated method stub
-
-  }
-
-  @Override
-  public void releaseAllObjectLocksAsync() {
-    // TODO Auto-generated method stub
-
+  public void shutdown() {
+    super.shutdown();
+    LOGGER.info("Going to shutdown CLUSTER actor system");
+    try {
+      Await.result(clusterSystem.terminate(), Duration.create(30, "seconds"));
+    } catch (TimeoutException e) {
+      LOGGER.warn("CLUSTER actor system shutdown wait timed out, continuing...");
+    } catch (Exception e) {
+      LOGGER.error("Error while shutting down CLUSTER actor system", e);
+    }
   }
 
 }
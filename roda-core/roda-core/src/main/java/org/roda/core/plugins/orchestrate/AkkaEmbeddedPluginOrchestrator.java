@@ -56,6 +56,7 @@ import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.plugins.Plugin;
 import org.roda.core.plugins.PluginOrchestrator;
 import org.roda.core.plugins.orchestrate.akka.AkkaJobsManager;
+import org.roda.core.plugins.orchestrate.akka.AkkaWorkerActor;
 import org.roda.core.plugins.plugins.PluginHelper;
 import org.roda.core.plugins.plugins.internal.CleanUnfinishedJobsPlugin;
 import org.roda.core.util.IdUtils;
@@ -99,6 +100,15 @@ public class AkkaEmbeddedPluginOrchestrator implements PluginOrchestrator {
   private List<String> inErrorJobs;
 
   public AkkaEmbeddedPluginOrchestrator() {
+    this(Props.create(AkkaWorkerActor.class));
+  }
+
+  /**
+   * @param workerProps
+   *          the props of the actors that execute the blocks of each job
+   *          (which by default run them in this JVM).
+   */
+  protected AkkaEmbeddedPluginOrchestrator(Props workerProps) {
     maxNumberOfJobsInParallel = JobsHelper.getMaxNumberOfJobsInParallel();
 
     index = RodaCoreFactory.getIndexService();
@@ -113,7 +123,8 @@ public class AkkaEmbeddedPluginOrchestrator implements PluginOrchestrator {
     // 20170105 hsilva: subscribe all dead letter so they are logged
     jobsSystem.eventStream().subscribe(jobsSystem.actorOf(Props.create(DeadLetterActor.class)), AllDeadLetters.class);
 
-    jobsManager = jobsSystem.actorOf(Props.create(AkkaJobsManager.class, maxNumberOfJobsInParallel), "jobsManager");
+    jobsManager = jobsSystem.actorOf(Props.create(AkkaJobsManager.class, maxNumberOfJobsInParallel, workerProps),
+      "jobsManager");
 
   }
 
@@ -497,8 +508,7 @@ public class AkkaEmbeddedPluginOrchestrator implements PluginOrchestrator {
     }
 
     Object result = null;
-    Future<Object> future = Patterns.ask(jobsManager,
-      Messages.newJobsManagerAcquireLock(lites, waitForLockIfLocked, timeoutInSeconds, requestUuid), timeout);
+    Future<Object> future = askObjectLock(lites, timeoutInSeconds, waitForLockIfLocked, requestUuid);
     try {
       result = Await.result(future, timeout.duration());
     } catch (Exception e) {
@@ -512,6 +522,18 @@ public class AkkaEmbeddedPluginOrchestrator implements PluginOrchestrator {
     }
   }
 
+  /**
+   * Asks the jobs manager for the locks, without waiting for them. The reply is
+   * {@link Messages.JobsManagerNotLockableAtTheTime} if the objects are locked
+   * and the requester is not willing to wait.
+   */
+  public Future<Object> askObjectLock(List<String> lites, int timeoutInSeconds, boolean waitForLockIfLocked,
+    String requestUuid) {
+    Timeout timeout = new Timeout(Duration.create(timeoutInSeconds, "seconds"));
+    return Patterns.ask(jobsManager,
+      Messages.newJobsManagerAcquireLock(lites, waitForLockIfLocked, timeoutInSeconds, requestUuid), timeout);
+  }
+
   @Override
   public void releaseObjectLockAsync(List<String> lites, String requestUuid) {
     jobsManager.tell(Messages.newJobsManagerReleaseLock(lites, requestUuid), ActorRef.noSender());
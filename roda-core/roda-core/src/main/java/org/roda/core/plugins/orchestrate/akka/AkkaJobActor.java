@@ -37,6 +37,7 @@ public class AkkaJobActor extends AkkaBaseActor {
   private static final Logger LOGGER = LoggerFactory.getLogger(AkkaJobActor.class);
 
   private ActorRef jobsManager;
+  private Props workerProps;
 
   private SupervisorStrategy strategy = new OneForOneStrategy(false, DeciderBuilder.matchAny(e -> {
     LOGGER.error("A child actor of {} has thrown an exception", AkkaJobActor.class.getSimpleName(), e);
@@ -48,8 +49,13 @@ public class AkkaJobActor extends AkkaBaseActor {
 
   /** Public constructor */
   public AkkaJobActor(ActorRef jobsManager) {
+    this(jobsManager, Props.create(AkkaWorkerActor.class));
+  }
+
+  public AkkaJobActor(ActorRef jobsManager, Props workerProps) {
     super();
     this.jobsManager = jobsManager;
+    this.workerProps = workerProps;
   }
 
   @Override
@@ -69,7 +75,7 @@ public class AkkaJobActor extends AkkaBaseActor {
 
       String jobId = job.getId();
       ActorRef jobStateInfoActor = getContext().actorOf(Props.create(AkkaJobStateInfoActor.class, plugin, getSender(),
-        jobsManager, jobId, JobsHelper.getNumberOfJobsWorkers()), jobId);
+        jobsManager, jobId, JobsHelper.getNumberOfJobsWorkers(), workerProps), jobId);
       super.getPluginOrchestrator().setJobContextInformation(jobId, jobStateInfoActor);
 
       jobStateInfoActor.tell(Messages.newJobStateUpdated(plugin, JOB_STATE.STARTED), getSelf());
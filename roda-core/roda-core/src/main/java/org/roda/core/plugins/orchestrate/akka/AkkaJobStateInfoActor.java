@@ -59,6 +59,11 @@ public class AkkaJobStateInfoActor extends AkkaBaseActor {
 
   public AkkaJobStateInfoActor(Plugin<?> plugin, ActorRef jobCreator, ActorRef jobsManager, String jobId,
     int numberOfJobsWorkers) {
+    this(plugin, jobCreator, jobsManager, jobId, numberOfJobsWorkers, Props.create(AkkaWorkerActor.class));
+  }
+
+  public AkkaJobStateInfoActor(Plugin<?> plugin, ActorRef jobCreator, ActorRef jobsManager, String jobId,
+    int numberOfJobsWorkers, Props workerProps) {
     super();
     jobInfo = new JobInfo();
     this.plugin = plugin;
@@ -67,7 +72,7 @@ public class AkkaJobStateInfoActor extends AkkaBaseActor {
     this.jobId = jobId;
 
     LOGGER.debug("Starting AkkaJobStateInfoActor router with {} actors", numberOfJobsWorkers);
-    Props workersProps = new RoundRobinPool(numberOfJobsWorkers).props(Props.create(AkkaWorkerActor.class));
+    Props workersProps = new RoundRobinPool(numberOfJobsWorkers).props(workerProps);
     workersRouter = getContext().actorOf(workersProps, "WorkersRouter");
     // 20160914 hsilva: watch child events, so when they stop we can react
     getContext().watch(workersRouter);
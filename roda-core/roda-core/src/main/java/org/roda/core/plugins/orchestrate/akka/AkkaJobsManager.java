@@ -75,6 +75,15 @@ public class AkkaJobsManager extends AkkaBaseActor {
   private int nonParallelizableJobsQueued = 0;
 
   public AkkaJobsManager(int maxNumberOfJobsInParallel) {
+    this(maxNumberOfJobsInParallel, Props.create(AkkaWorkerActor.class));
+  }
+
+  /**
+   * @param workerProps
+   *          the props of the actors that execute the blocks of each job (see
+   *          {@link AkkaJobStateInfoActor}).
+   */
+  public AkkaJobsManager(int maxNumberOfJobsInParallel, Props workerProps) {
     super();
     this.maxNumberOfJobsInParallel = maxNumberOfJobsInParallel;
     this.jobsWaiting = new LinkedList<>();
@@ -83,7 +92,8 @@ public class AkkaJobsManager extends AkkaBaseActor {
     this.requestUuidLites = new HashMap<>();
     this.waitingToAcquireLockRequests = new ArrayList<>();
 
-    Props jobsProps = new RoundRobinPool(maxNumberOfJobsInParallel).props(Props.create(AkkaJobActor.class, getSelf()));
+    Props jobsProps = new RoundRobinPool(maxNumberOfJobsInParallel)
+      .props(Props.create(AkkaJobActor.class, getSelf(), workerProps));
     jobsRouter = getContext().actorOf(jobsProps, "JobsRouter");
 
     initMetrics(maxNumberOfJobsInParallel);
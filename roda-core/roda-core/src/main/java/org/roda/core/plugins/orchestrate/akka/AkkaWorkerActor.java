@@ -65,7 +65,7 @@ public class AkkaWorkerActor extends AkkaBaseActor {
     message.logProcessingEnded();
   }
 
-  private String getErrorMessage(Throwable e) {
+  public static String getErrorMessage(Throwable e) {
     StringBuilder ret = new StringBuilder();
     ret.append("An exception has occurred. Exception '").append(e.getClass().getName()).append("' with message '")
       .append(e.getMessage()).append("'");
@@ -7,6 +7,44 @@
  */
 package org.roda.core.plugins.orchestrate.akka.distributed;
 
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.common.akka.AkkaUtils;
+import org.roda.core.common.akka.Messages.JobPartialUpdate;
+import org.roda.core.common.akka.Messages.JobSourceObjectsUpdated;
+import org.roda.core.common.akka.Messages.JobStateDetailsUpdated;
+import org.roda.core.common.akka.Messages.JobStateUpdated;
+import org.roda.core.data.exceptions.AcquireLockTimeoutException;
+import org.roda.core.data.exceptions.JobException;
+import org.roda.core.data.exceptions.LockingException;
+import org.roda.core.data.exceptions.NotLockableAtTheTimeException;
+import org.roda.core.data.v2.IsRODAObject;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.Job.JOB_STATE;
+import org.roda.core.plugins.Plugin;
+import org.roda.core.plugins.PluginOrchestrator;
+import org.roda.core.plugins.orchestrate.JobPluginInfo;
+import org.roda.core.plugins.orchestrate.akka.AkkaWorkerActor;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.JobInError;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.JobToExecute;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockRelease;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockRequest;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockResult;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.PluginBlockJobUpdate;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.PluginBlockProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -15,15 +53,36 @@ import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.cluster.client.ClusterClient;
 import akka.cluster.client.ClusterClientSettings;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * The plugin orchestrator of a worker node: it runs a number of workers (each
+ * executing one block at a time) that get the blocks from the master, and
+ * relays to the master what the plugins being executed report about their job.
+ */
+public class AkkaDistributedPluginWorker extends AkkaDistributedPlugin implements PluginOrchestrator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AkkaDistributedPluginWorker.class);
+
+  public static final String EXECUTOR_DISPATCHER = "worker-exec-dispatcher";
+  // extra time given to the master to reply to a lock request
+  private static final int LOCK_REPLY_TIMEOUT_IN_SECONDS = 10;
 
-public class AkkaDistributedPluginWorker extends AkkaDistributedPlugin {
-  // INFO this uses a single threaded worker (as opposite to
-  // AkkaEmbeddedPluginOrchestrator which is multi-threaded)
   private ActorSystem workerSystem;
   private ActorRef clusterClient;
-  private ActorRef worker;
+  // plugins being executed, with the id of their work
+  private final Map<Plugin<?>, String> pluginWorkIds = Collections.synchronizedMap(new IdentityHashMap<>());
 
   public AkkaDistributedPluginWorker(String clusterHostname, String clusterPort, String hostname, String port) {
+    this(clusterHostname, clusterPort, hostname, port, 1, Duration.create(10, "seconds"));
+  }
+
+  public AkkaDistributedPluginWorker(String clusterHostname, String clusterPort, String hostname, String port,
+    int slots, FiniteDuration registerInterval) {
     super();
 
     String clusterSystemName = "ClusterSystem";
@@ -33,13 +92,192 @@ public class AkkaDistributedPluginWorker extends AkkaDistributedPlugin {
       .withFallback(ConfigFactory.parseString("akka.remote.netty.tcp.port=" + port))
       .withFallback(ConfigFactory.parseString(
         "akka.cluster.client.initial-contacts=[\"akka.tcp://" + clusterSystemPath + "/system/receptionist\"]"))
-      .withFallback(ConfigFactory.load("config/orchestrator/worker"));
+      .withFallback(AkkaUtils.getAkkaConfiguration("worker.conf"));
 
     workerSystem = ActorSystem.create("WorkerSystem", conf);
 
     clusterClient = workerSystem.actorOf(ClusterClient.props(ClusterClientSettings.create(workerSystem)),
       "clusterClient");
-    worker = workerSystem.actorOf(Worker.props(clusterClient, Props.create(WorkExecutor.class)), "worker");
+
+    // all the workers of this JVM are in the same node
+    String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    Props executorProps = Props.create(WorkExecutor.class, this).withDispatcher(EXECUTOR_DISPATCHER);
+    for (int i = 1; i <= slots; i++) {
+      workerSystem.actorOf(Worker.props(clusterClient, executorProps, registerInterval, nodeId), "worker-" + i);
+    }
+    LOGGER.info("Started {} workers connected to {}", slots, clusterSystemPath);
+  }
+
+  /**
+   * Executes, on this node, the plugin of a block given by the master.
+   */
+  @SuppressWarnings("unchecked")
+  public PluginBlock.Result execute(String workId, PluginBlock block) {
+    Plugin<IsRODAObject> plugin = null;
+    try {
+      plugin = (Plugin<IsRODAObject>) RodaCoreFactory.getPluginManager().getPlugin(block.getPluginClassName());
+      if (plugin == null) {
+        return new PluginBlock.Result(true, "Plugin " + block.getPluginClassName() + " is not available");
+      }
+      plugin.setParameterValues(new HashMap<>(block.getParameterValues()));
+      plugin.injectJobPluginInfo(block.getJobPluginInfo());
+      pluginWorkIds.put(plugin, workId);
+
+      plugin.execute(getIndex(), getModel(), getStorage(), block.getObjects());
+      return new PluginBlock.Result(false, null);
+    } catch (Throwable e) {
+      // as in AkkaWorkerActor, linking errors only happen during the execution
+      LOGGER.error("Error executing plugin.execute() of {}", block, e);
+      return new PluginBlock.Result(true, AkkaWorkerActor.getErrorMessage(e));
+    } finally {
+      if (plugin != null) {
+        pluginWorkIds.remove(plugin);
+      }
+    }
+  }
+
+  private void sendToMaster(Object msg) {
+    clusterClient.tell(new ClusterClient.Send(OrchestratorGatewayProtocol.GATEWAY_PATH, msg, false),
+      ActorRef.noSender());
+  }
+
+  private String getWorkId(Plugin<?> plugin) throws JobException {
+    String workId = pluginWorkIds.get(plugin);
+    if (workId == null) {
+      throw new JobException("Plugin is not being executed by this worker");
+    }
+    return workId;
+  }
+
+  @Override
+  public void setup() {
+    // do nothing
+  }
+
+  @Override
+  public void shutdown() {
+    LOGGER.info("Going to shutdown WORKER actor system");
+    try {
+      Await.result(workerSystem.terminate(), Duration.create(30, "seconds"));
+    } catch (TimeoutException e) {
+      LOGGER.warn("WORKER actor system shutdown wait timed out, continuing...");
+    } catch (Exception e) {
+      LOGGER.error("Error while shutting down WORKER actor system", e);
+    }
+  }
+
+  @Override
+  public <T extends IsRODAObject, T1 extends IsIndexed> void runPluginFromIndex(Object context, Class<T1> classToActOn,
+    Filter filter, Plugin<T> plugin) {
+    LOGGER.error("Jobs are only orchestrated by the master node");
+  }
+
+  @Override
+  public <T extends IsRODAObject> void runPluginOnObjects(Object context, Plugin<T> plugin, Class<T> objectClass,
+    List<String> uuids) {
+    LOGGER.error("Jobs are only orchestrated by the master node");
+  }
+
+  @Override
+  public <T extends IsRODAObject> void runPluginOnAllObjects(Object context, Plugin<T> plugin, Class<T> objectClass) {
+    LOGGER.error("Jobs are only orchestrated by the master node");
+  }
+
+  @Override
+  public <T extends IsRODAObject> void runPlugin(Object context, Plugin<T> plugin) {
+    LOGGER.error("Jobs are only orchestrated by the master node");
+  }
+
+  @Override
+  public void executeJob(Job job, boolean async) {
+    if (!async) {
+      LOGGER.warn("Job '{}' ({}) will be executed asynchronously by the master node", job.getName(), job.getId());
+    }
+    sendToMaster(new JobToExecute(job));
+  }
+
+  @Override
+  public void stopJobAsync(Job job) {
+    LOGGER.error("Jobs are only stopped by the master node");
+  }
+
+  @Override
+  public void cleanUnfinishedJobsAsync() {
+    // do nothing, as this is done by the master node
+  }
+
+  @Override
+  public void setJobContextInformation(String jobId, Object object) {
+    // do nothing
+  }
+
+  @Override
+  public <T extends IsRODAObject> void updateJobInformationAsync(Plugin<T> plugin, JobPluginInfo jobPluginInfo)
+    throws JobException {
+    sendToMaster(new PluginBlockProgress(getWorkId(plugin), jobPluginInfo));
+  }
+
+  @Override
+  public <T extends IsRODAObject> void updateJobAsync(Plugin<T> plugin, JobPartialUpdate partialUpdate) {
+    String workId = pluginWorkIds.get(plugin);
+    if (workId == null) {
+      LOGGER.error("Got an update of a job whose plugin is not being executed by this worker");
+      return;
+    }
+
+    JOB_STATE state = null;
+    String stateDetails = null;
+    Map<String, String> oldToNewIds = null;
+    if (partialUpdate instanceof JobStateDetailsUpdated) {
+      stateDetails = ((JobStateDetailsUpdated) partialUpdate).getStateDatails().orElse(null);
+      if (partialUpdate instanceof JobStateUpdated) {
+        state = ((JobStateUpdated) partialUpdate).getState();
+      }
+    } else if (partialUpdate instanceof JobSourceObjectsUpdated) {
+      oldToNewIds = ((JobSourceObjectsUpdated) partialUpdate).getOldToNewIds();
+    }
+    sendToMaster(new PluginBlockJobUpdate(workId, state, stateDetails, oldToNewIds));
+  }
+
+  @Override
+  public void setJobInError(String jobId) {
+    sendToMaster(new JobInError(jobId));
+  }
+
+  @Override
+  public void acquireObjectLock(List<String> lites, int timeoutInSeconds, boolean waitForLockIfLocked,
+    String requestUuid) throws LockingException {
+    if (StringUtils.isBlank(requestUuid)) {
+      throw new LockingException("One must provide valid (i.e. non blank) request uuid!");
+    }
+
+    Timeout timeout = new Timeout(Duration.create(timeoutInSeconds + LOCK_REPLY_TIMEOUT_IN_SECONDS, "seconds"));
+    Future<Object> future = Patterns.ask(clusterClient, new ClusterClient.Send(OrchestratorGatewayProtocol.GATEWAY_PATH,
+      new ObjectLockRequest(lites, timeoutInSeconds, waitForLockIfLocked, requestUuid), false), timeout);
+    Object result;
+    try {
+      result = Await.result(future, timeout.duration());
+    } catch (Exception e) {
+      LOGGER.error("Unable to acquire locks for the objects being processed '{}'", lites, e);
+      result = ObjectLockResult.TIMED_OUT;
+    }
+
+    if (result == ObjectLockResult.NOT_LOCKABLE) {
+      throw new NotLockableAtTheTimeException(
+        "Not lockable at the time due to requester not willing to await to obtain the lock!");
+    } else if (result != ObjectLockResult.ACQUIRED) {
+      throw new AcquireLockTimeoutException("Unable to acquire locks for the objects being processed '" + lites + "'");
+    }
+  }
+
+  @Override
+  public void releaseObjectLockAsync(List<String> lites, String requestUuid) {
+    sendToMaster(new ObjectLockRelease(lites, requestUuid));
+  }
+
+  @Override
+  public void releaseAllObjectLocksAsync() {
+    sendToMaster(new ObjectLockRelease(null, null));
   }
 
 }
@@ -9,20 +9,21 @@ package org.roda.core.plugins.orchestrate.akka.distributed;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.roda.core.plugins.orchestrate.akka.distributed.MasterWorkerProtocol.RegisterWorker;
 import org.roda.core.plugins.orchestrate.akka.distributed.MasterWorkerProtocol.WorkFailed;
 import org.roda.core.plugins.orchestrate.akka.distributed.MasterWorkerProtocol.WorkIsDone;
-import org.roda.core.plugins.orchestrate.akka.distributed.MasterWorkerProtocol.WorkIsReady;
 import org.roda.core.plugins.orchestrate.akka.distributed.MasterWorkerProtocol.WorkerRequestsWork;
 import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkAccepted;
+import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkCancelled;
+import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkCompacted;
 import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkCompleted;
 import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkDomainEvent;
 import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkStarted;
-import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkerFailed;
-import org.roda.core.plugins.orchestrate.akka.distributed.WorkState.WorkerTimedOut;
 
 import akka.actor.ActorRef;
 import akka.actor.Cancellable;
@@ -39,27 +40,50 @@ import scala.collection.JavaConversions;
 import scala.concurrent.duration.Deadline;
 import scala.concurrent.duration.FiniteDuration;
 
+/**
+ * Keeps the work to be done (persisting its state) and gives it to the
+ * registered workers.
+ *
+ * Work is pushed to the idle worker on the least busy node (i.e. the one with
+ * the lowest ratio of busy workers and, among those, the lowest load reported
+ * by the worker). A worker that does not report its work in progress within
+ * the work timeout is considered lost and the work is given to another one, up
+ * to a maximum number of attempts, after which the work is completed with a
+ * {@link WorkAbandoned} result.
+ */
 public class Master extends UntypedPersistentActor {
 
   public static final String RESULTS_TOPIC = "results";
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final int MAX_DONE_WORK_IDS_KEPT = 10000;
 
   private final FiniteDuration workTimeout;
+  private final int maxAttempts;
   private final ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
   private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
   private final Cancellable cleanupTask;
 
   private HashMap<String, WorkerState> workers = new HashMap<>();
   private WorkState workState = new WorkState();
+  // not persisted, i.e. a recovered master gives all the work new attempts
+  private Map<String, Integer> attempts = new HashMap<>();
+  // work whose WorkStarted event is still being persisted
+  private Set<String> starting = new HashSet<>();
 
-  public Master(FiniteDuration workTimeout) {
+  public Master(FiniteDuration workTimeout, int maxAttempts) {
     this.workTimeout = workTimeout;
+    this.maxAttempts = maxAttempts;
     ClusterClientReceptionist.get(getContext().system()).registerService(getSelf());
     this.cleanupTask = getContext().system().scheduler().schedule(workTimeout.div(2), workTimeout.div(2), getSelf(),
       CleanupTick, getContext().dispatcher(), getSelf());
   }
 
   public static Props props(FiniteDuration workTimeout) {
-    return Props.create(Master.class, workTimeout);
+    return props(workTimeout, DEFAULT_MAX_ATTEMPTS);
+  }
+
+  public static Props props(FiniteDuration workTimeout, int maxAttempts) {
+    return Props.create(Master.class, workTimeout, maxAttempts);
   }
 
   @Override
@@ -67,16 +91,65 @@ public class Master extends UntypedPersistentActor {
     cleanupTask.cancel();
   }
 
-  private void notifyWorkers() {
-    if (workState.hasWork()) {
-      // could pick a few random instead of all
-      for (WorkerState state : workers.values()) {
-        if (state.status.isIdle())
-          state.ref.tell(WorkIsReady.getInstance(), getSelf());
+  private void assignWork() {
+    for (Work work : workState.pendingWork()) {
+      if (starting.contains(work.workId)) {
+        continue;
       }
+
+      final String workerId = selectIdleWorker();
+      if (workerId == null) {
+        break;
+      }
+
+      final WorkerState state = workers.get(workerId);
+      workers.put(workerId, state.copyWithStatus(new Busy(work.workId, workTimeout.fromNow())));
+      starting.add(work.workId);
+      persist(new WorkState.WorkStarted(work.workId), new Procedure<WorkState.WorkStarted>() {
+        @Override
+        public void apply(WorkStarted event) throws Exception {
+          starting.remove(event.workId);
+          workState = workState.updated(event);
+          log.info("Giving worker {} some work {}", workerId, event.workId);
+          state.ref.tell(work, getSelf());
+        }
+      });
     }
   }
 
+  /**
+   * @return the idle worker on the node with the lowest ratio of busy workers
+   *         and, as a tie breaker, the lowest load, or null if all are busy.
+   */
+  private String selectIdleWorker() {
+    // <nodeId, [busy, total]>
+    Map<String, int[]> nodes = new HashMap<>();
+    for (WorkerState state : workers.values()) {
+      int[] slots = nodes.computeIfAbsent(state.nodeId, k -> new int[2]);
+      slots[1]++;
+      if (state.status.isBusy()) {
+        slots[0]++;
+      }
+    }
+
+    String selected = null;
+    double selectedRatio = 0;
+    double selectedLoad = 0;
+    for (Map.Entry<String, WorkerState> entry : workers.entrySet()) {
+      WorkerState state = entry.getValue();
+      if (state.status.isIdle()) {
+        int[] slots = nodes.get(state.nodeId);
+        double ratio = (double) slots[0] / slots[1];
+        if (selected == null || ratio < selectedRatio || (ratio == selectedRatio && state.load < selectedLoad)) {
+          selected = entry.getKey();
+          selectedRatio = ratio;
+          selectedLoad = state.load;
+        }
+      }
+    }
+    return selected;
+  }
+
   private static abstract class WorkerStatus {
     protected abstract boolean isIdle();
 
@@ -150,18 +223,26 @@ public class Master extends UntypedPersistentActor {
   private static final class WorkerState {
     public final ActorRef ref;
     public final WorkerStatus status;
+    public final String nodeId;
+    public final double load;
+    public final Deadline registrationDeadline;
 
-    private WorkerState(ActorRef ref, WorkerStatus status) {
+    private WorkerState(ActorRef ref, WorkerStatus status, String nodeId, double load,
+      Deadline registrationDeadline) {
       this.ref = ref;
       this.status = status;
+      this.nodeId = nodeId;
+      this.load = load;
+      this.registrationDeadline = registrationDeadline;
     }
 
-    private WorkerState copyWithRef(ActorRef ref) {
-      return new WorkerState(ref, this.status);
+    private WorkerState copyWithRegistration(ActorRef ref, String nodeId, double load,
+      Deadline registrationDeadline) {
+      return new WorkerState(ref, this.status, nodeId, load, registrationDeadline);
     }
 
     private WorkerState copyWithStatus(WorkerStatus status) {
-      return new WorkerState(this.ref, status);
+      return new WorkerState(this.ref, status, this.nodeId, this.load, this.registrationDeadline);
     }
 
     @Override
@@ -190,7 +271,7 @@ public class Master extends UntypedPersistentActor {
 
     @Override
     public String toString() {
-      return "WorkerState{" + "ref=" + ref + ", status=" + status + '}';
+      return "WorkerState{" + "ref=" + ref + ", status=" + status + ", nodeId=" + nodeId + ", load=" + load + '}';
     }
   }
 
@@ -248,6 +329,41 @@ public class Master extends UntypedPersistentActor {
     }
   }
 
+  /**
+   * Removes work that was not started yet (e.g. the one of a job that was
+   * stopped). Work in progress is not interrupted, but its result is ignored.
+   */
+  public static final class CancelWork implements Serializable {
+    private static final long serialVersionUID = 6419245310584364751L;
+    final Set<String> workIds;
+
+    public CancelWork(Set<String> workIds) {
+      this.workIds = new HashSet<>(workIds);
+    }
+
+    @Override
+    public String toString() {
+      return "CancelWork{" + "workIds=" + workIds + '}';
+    }
+  }
+
+  /**
+   * The result of work that failed or timed out too many times.
+   */
+  public static final class WorkAbandoned implements Serializable {
+    private static final long serialVersionUID = -7094427227916183530L;
+    public final String reason;
+
+    public WorkAbandoned(String reason) {
+      this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+      return "WorkAbandoned{" + "reason='" + reason + '\'' + '}';
+    }
+  }
+
   @Override
   public void onReceiveRecover(Object arg0) throws Exception {
     if (arg0 instanceof WorkDomainEvent) {
@@ -270,44 +386,23 @@ public class Master extends UntypedPersistentActor {
   @Override
   public void onReceiveCommand(Object cmd) throws Exception {
     if (cmd instanceof RegisterWorker) {
-      String workerId = ((RegisterWorker) cmd).workerId;
-      if (workers.containsKey(workerId)) {
-        workers.put(workerId, workers.get(workerId).copyWithRef(getSender()));
-      } else {
-        log.info("Worker registered: {}", workerId);
-        workers.put(workerId, new WorkerState(getSender(), Idle.instance));
-        if (workState.hasWork()) {
-          getSender().tell(WorkIsReady.getInstance(), getSelf());
-        }
-      }
+      handleRegisterWorker((RegisterWorker) cmd);
     } else if (cmd instanceof WorkerRequestsWork) {
-      if (workState.hasWork()) {
-        final String workerId = ((WorkerRequestsWork) cmd).workerId;
-        final WorkerState state = workers.get(workerId);
-        if (state != null && state.status.isIdle()) {
-          final Work work = workState.nextWork();
-          persist(new WorkState.WorkStarted(work.workId), new Procedure<WorkState.WorkStarted>() {
-            @Override
-            public void apply(WorkStarted event) throws Exception {
-              workState = workState.updated(event);
-              log.info("Giving worker {} some work {}", workerId, event.workId);
-              workers.put(workerId, state.copyWithStatus(new Busy(event.workId, workTimeout.fromNow())));
-              getSender().tell(work, getSelf());
-
-            }
-          });
-        }
-      }
+      assignWork();
     } else if (cmd instanceof WorkIsDone) {
       final String workerId = ((WorkIsDone) cmd).workerId;
       final String workId = ((WorkIsDone) cmd).workId;
       if (workState.isDone(workId)) {
         getSender().tell(new Ack(workId), getSelf());
       } else if (!workState.isInProgress(workId)) {
+        // e.g. it timed out and was given to another worker
         log.info("Work {} not in progress, reported as done by worker {}", workId, workerId);
+        changeWorkerToIdle(workerId, workId);
+        getSender().tell(new Ack(workId), getSelf());
       } else {
         log.info("Work {} is done by worker {}", workId, workerId);
         changeWorkerToIdle(workerId, workId);
+        attempts.remove(workId);
         persist(new WorkState.WorkCompleted(workId, ((WorkIsDone) cmd).result),
           new Procedure<WorkState.WorkCompleted>() {
             @Override
@@ -317,6 +412,7 @@ public class Master extends UntypedPersistentActor {
                 new DistributedPubSubMediator.Publish(RESULTS_TOPIC, new WorkResult(event.workId, event.result)),
                 getSelf());
               getSender().tell(new Ack(event.workId), getSelf());
+              compactIfIdle();
             }
           });
       }
@@ -326,13 +422,7 @@ public class Master extends UntypedPersistentActor {
       if (workState.isInProgress(workId)) {
         log.info("Work {} failed by worker {}", workId, workerId);
         changeWorkerToIdle(workerId, workId);
-        persist(new WorkState.WorkerFailed(workId), new Procedure<WorkState.WorkerFailed>() {
-          @Override
-          public void apply(WorkerFailed event) throws Exception {
-            workState = workState.updated(event);
-            notifyWorkers();
-          }
-        });
+        retryOrAbandon(workId, new WorkState.WorkerFailed(workId), "Failed on worker " + workerId);
       }
     } else if (cmd instanceof Work) {
       final String workId = ((Work) cmd).workId;
@@ -347,7 +437,24 @@ public class Master extends UntypedPersistentActor {
             // Ack back to original sender
             getSender().tell(new Ack(event.work.workId), getSelf());
             workState = workState.updated(event);
-            notifyWorkers();
+            assignWork();
+          }
+        });
+      }
+    } else if (cmd instanceof CancelWork) {
+      Set<String> workIds = new HashSet<>();
+      for (Work work : workState.pendingWork()) {
+        if (((CancelWork) cmd).workIds.contains(work.workId)) {
+          workIds.add(work.workId);
+        }
+      }
+      if (!workIds.isEmpty()) {
+        log.info("Cancelled {} pending work", workIds.size());
+        persist(new WorkCancelled(workIds), new Procedure<WorkCancelled>() {
+          @Override
+          public void apply(WorkCancelled event) throws Exception {
+            workState = workState.updated(event);
+            compactIfIdle();
           }
         });
       }
@@ -359,16 +466,16 @@ public class Master extends UntypedPersistentActor {
         WorkerState state = entry.getValue();
         if (state.status.isBusy()) {
           if (state.status.getDeadLine().isOverdue()) {
-            log.info("Work timed out: {}", state.status.getWorkId());
-            workers.remove(workerId);
-            persist(new WorkState.WorkerTimedOut(state.status.getWorkId()), new Procedure<WorkState.WorkerTimedOut>() {
-              @Override
-              public void apply(WorkerTimedOut event) throws Exception {
-                workState = workState.updated(event);
-                notifyWorkers();
-              }
-            });
+            String workId = state.status.getWorkId();
+            log.info("Work timed out: {}", workId);
+            iterator.remove();
+            if (workState.isInProgress(workId)) {
+              retryOrAbandon(workId, new WorkState.WorkerTimedOut(workId), "Timed out on worker " + workerId);
+            }
           }
+        } else if (state.registrationDeadline.isOverdue()) {
+          log.info("Worker {} is no longer registering, removing it", workerId);
+          iterator.remove();
         }
       }
     } else {
@@ -376,9 +483,78 @@ public class Master extends UntypedPersistentActor {
     }
   }
 
+  private void handleRegisterWorker(RegisterWorker registration) {
+    String workerId = registration.workerId;
+    WorkerState state = workers.get(workerId);
+    Deadline registrationDeadline = workTimeout.fromNow();
+    if (state != null) {
+      state = state.copyWithRegistration(getSender(), registration.nodeId, registration.load, registrationDeadline);
+      if (state.status.isBusy() && state.status.getWorkId().equals(registration.workId)) {
+        // the worker is still working on it
+        state = state.copyWithStatus(new Busy(registration.workId, workTimeout.fromNow()));
+      }
+      workers.put(workerId, state);
+    } else {
+      log.info("Worker registered: {} ({})", workerId, registration.nodeId);
+      // a worker that was removed while working is only given work when done
+      WorkerStatus status = registration.workId == null ? Idle.getInstance()
+        : new Busy(registration.workId, workTimeout.fromNow());
+      workers.put(workerId,
+        new WorkerState(getSender(), status, registration.nodeId, registration.load, registrationDeadline));
+    }
+    assignWork();
+  }
+
+  private <E extends WorkDomainEvent> void retryOrAbandon(String workId, E retryEvent, String reason) {
+    int attempt = attempts.merge(workId, 1, Integer::sum);
+    if (attempt >= maxAttempts) {
+      log.warning("Abandoning work {} after {} attempts: {}", workId, attempt, reason);
+      attempts.remove(workId);
+      persist(new WorkState.WorkCompleted(workId, new WorkAbandoned(reason)), new Procedure<WorkState.WorkCompleted>() {
+        @Override
+        public void apply(WorkCompleted event) throws Exception {
+          workState = workState.updated(event);
+          mediator.tell(
+            new DistributedPubSubMediator.Publish(RESULTS_TOPIC, new WorkResult(event.workId, event.result)),
+            getSelf());
+          compactIfIdle();
+        }
+      });
+    } else {
+      persist(retryEvent, new Procedure<E>() {
+        @Override
+        public void apply(E event) throws Exception {
+          workState = workState.updated(event);
+          assignWork();
+        }
+      });
+    }
+  }
+
+  /**
+   * Once there is no work left, the events are no longer needed to recover the
+   * state, so they are replaced by one with the ids of the most recently done
+   * work (to recognize late reports and resubmissions of it) to keep the
+   * journal from growing indefinitely.
+   */
+  private void compactIfIdle() {
+    if (!workState.hasWork() && !workState.hasWorkInProgress() && starting.isEmpty()) {
+      final long toSequenceNr = lastSequenceNr();
+      persist(new WorkCompacted(workState.getLastDoneWorkIds(MAX_DONE_WORK_IDS_KEPT)),
+        new Procedure<WorkCompacted>() {
+          @Override
+          public void apply(WorkCompacted event) throws Exception {
+            workState = workState.updated(event);
+            deleteMessages(toSequenceNr);
+          }
+        });
+    }
+  }
+
   private void changeWorkerToIdle(String workerId, String workId) {
-    if (workers.get(workerId).status.isBusy()) {
-      workers.put(workerId, workers.get(workerId).copyWithStatus(new Idle()));
+    WorkerState state = workers.get(workerId);
+    if (state != null && state.status.isBusy()) {
+      workers.put(workerId, state.copyWithStatus(Idle.getInstance()));
     }
   }
 }
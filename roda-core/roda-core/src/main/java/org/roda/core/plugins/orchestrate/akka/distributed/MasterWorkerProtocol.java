@@ -13,17 +13,30 @@ public abstract class MasterWorkerProtocol {
 
   // Messages from/to Workers
 
+  /**
+   * Sent periodically by each worker, so it also works as an heartbeat: it
+   * keeps the work in progress from timing out and tells the master the load
+   * of the node the worker runs on.
+   */
   public static final class RegisterWorker implements Serializable {
     private static final long serialVersionUID = 1958015449276995915L;
     public final String workerId;
+    public final String nodeId;
+    public final double load;
+    // null if idle
+    public final String workId;
 
-    public RegisterWorker(String workerId) {
+    public RegisterWorker(String workerId, String nodeId, double load, String workId) {
       this.workerId = workerId;
+      this.nodeId = nodeId;
+      this.load = load;
+      this.workId = workId;
     }
 
     @Override
     public String toString() {
-      return "RegisterWorker{" + "workerId='" + workerId + '\'' + '}';
+      return "RegisterWorker{" + "workerId='" + workerId + '\'' + ", nodeId='" + nodeId + '\'' + ", load=" + load
+        + ", workId='" + workId + '\'' + '}';
     }
   }
 
@@ -0,0 +1,155 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.util.Optional;
+
+import org.roda.core.common.akka.Messages;
+import org.roda.core.common.akka.Messages.JobPartialUpdate;
+import org.roda.core.data.exceptions.JobAlreadyStartedException;
+import org.roda.core.plugins.orchestrate.AkkaDistributedPluginOrchestrator;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.JobInError;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.JobToExecute;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockRelease;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockRequest;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.ObjectLockResult;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.PluginBlockJobUpdate;
+import org.roda.core.plugins.orchestrate.akka.distributed.OrchestratorGatewayProtocol.PluginBlockProgress;
+import org.roda.core.plugins.orchestrate.akka.distributed.PluginBlockRegistry.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import akka.dispatch.Mapper;
+import akka.dispatch.Recover;
+import akka.pattern.Patterns;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+
+/**
+ * Runs on the master node and relays to the orchestrator what the plugins
+ * running on the worker nodes report (job progress and state, locks, new
+ * jobs), as well as the results of the blocks published by the
+ * {@link Master}.
+ */
+public class OrchestratorGateway extends UntypedActor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrchestratorGateway.class);
+
+  private final AkkaDistributedPluginOrchestrator orchestrator;
+
+  public OrchestratorGateway(AkkaDistributedPluginOrchestrator orchestrator) {
+    this.orchestrator = orchestrator;
+    ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+    mediator.tell(new DistributedPubSubMediator.Subscribe(Master.RESULTS_TOPIC, getSelf()), getSelf());
+  }
+
+  public static Props props(AkkaDistributedPluginOrchestrator orchestrator) {
+    return Props.create(OrchestratorGateway.class, orchestrator);
+  }
+
+  @Override
+  public void onReceive(Object msg) throws Exception {
+    if (msg instanceof Master.WorkResult) {
+      handleWorkResult((Master.WorkResult) msg);
+    } else if (msg instanceof PluginBlockProgress) {
+      PluginBlockProgress progress = (PluginBlockProgress) msg;
+      Registration registration = orchestrator.getBlocks().get(progress.workId);
+      if (registration != null) {
+        registration.getJobStateInfoActor()
+          .tell(Messages.newJobInfoUpdated(registration.getPlugin(), progress.jobPluginInfo), ActorRef.noSender());
+      }
+    } else if (msg instanceof PluginBlockJobUpdate) {
+      handleJobUpdate((PluginBlockJobUpdate) msg);
+    } else if (msg instanceof ObjectLockRequest) {
+      handleObjectLockRequest((ObjectLockRequest) msg);
+    } else if (msg instanceof ObjectLockRelease) {
+      ObjectLockRelease release = (ObjectLockRelease) msg;
+      if (release.lites == null) {
+        orchestrator.releaseAllObjectLocksAsync();
+      } else {
+        orchestrator.releaseObjectLockAsync(release.lites, release.requestUuid);
+      }
+    } else if (msg instanceof JobToExecute) {
+      try {
+        orchestrator.executeJob(((JobToExecute) msg).job, true);
+      } catch (JobAlreadyStartedException e) {
+        LOGGER.info("Job {} requested by a worker node was already started", ((JobToExecute) msg).job.getId());
+      }
+    } else if (msg instanceof JobInError) {
+      orchestrator.setJobInError(((JobInError) msg).jobId);
+    } else if (msg instanceof DistributedPubSubMediator.SubscribeAck) {
+      LOGGER.debug("Subscribed to the results of the master");
+    } else {
+      unhandled(msg);
+    }
+  }
+
+  private void handleWorkResult(Master.WorkResult workResult) {
+    // not registered if the job was stopped (or the block is from another
+    // master node)
+    Registration registration = orchestrator.getBlocks().unregister(workResult.workId);
+    if (registration == null) {
+      return;
+    }
+
+    Object result = workResult.result;
+    Object done;
+    if (result instanceof PluginBlock.Result && !((PluginBlock.Result) result).isWithError()) {
+      done = Messages.newPluginExecuteIsDone(registration.getPlugin(), false);
+    } else if (result instanceof PluginBlock.Result) {
+      done = Messages.newPluginExecuteIsDone(registration.getPlugin(), true,
+        ((PluginBlock.Result) result).getErrorMessage());
+    } else if (result instanceof Master.WorkAbandoned) {
+      done = Messages.newPluginExecuteIsDone(registration.getPlugin(), true, ((Master.WorkAbandoned) result).reason);
+    } else {
+      done = Messages.newPluginExecuteIsDone(registration.getPlugin(), true, "Unexpected block result: " + result);
+    }
+    registration.getJobStateInfoActor().tell(done, ActorRef.noSender());
+  }
+
+  private void handleJobUpdate(PluginBlockJobUpdate update) {
+    Registration registration = orchestrator.getBlocks().get(update.workId);
+    if (registration == null) {
+      return;
+    }
+
+    JobPartialUpdate partialUpdate;
+    Optional<String> stateDetails = Optional.ofNullable(update.stateDetails);
+    if (update.state != null) {
+      partialUpdate = Messages.newJobStateUpdated(registration.getPlugin(), update.state, stateDetails);
+    } else if (update.oldToNewIds != null) {
+      partialUpdate = Messages.newJobSourceObjectsUpdated(update.oldToNewIds);
+    } else {
+      partialUpdate = Messages.newJobStateDetailsUpdated(registration.getPlugin(), stateDetails);
+    }
+    orchestrator.updateJobAsync(registration.getPlugin(), partialUpdate);
+  }
+
+  private void handleObjectLockRequest(ObjectLockRequest request) {
+    ExecutionContext ec = getContext().dispatcher();
+    Future<Object> lock = orchestrator.askObjectLock(request.lites, request.timeoutInSeconds,
+      request.waitForLockIfLocked, request.requestUuid);
+    Future<Object> result = lock.map(new Mapper<Object, Object>() {
+      @Override
+      public Object apply(Object reply) {
+        return reply instanceof Messages.JobsManagerNotLockableAtTheTime ? ObjectLockResult.NOT_LOCKABLE
+          : ObjectLockResult.ACQUIRED;
+      }
+    }, ec).recover(new Recover<Object>() {
+      @Override
+      public Object recover(Throwable failure) {
+        return ObjectLockResult.TIMED_OUT;
+      }
+    }, ec);
+    Patterns.pipe(result, ec).to(getSender());
+  }
+}
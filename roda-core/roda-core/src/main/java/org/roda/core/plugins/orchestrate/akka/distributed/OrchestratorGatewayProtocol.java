@@ -0,0 +1,138 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roda.core.data.v2.jobs.Job;
+import org.roda.core.data.v2.jobs.Job.JOB_STATE;
+import org.roda.core.plugins.orchestrate.JobPluginInfo;
+
+/**
+ * Messages sent by the plugins running on worker nodes to the master
+ * orchestrator (see {@link OrchestratorGateway}). The ones about a job refer
+ * to it by the id of the work being executed, as the plugin instance only
+ * exists on the master.
+ */
+public abstract class OrchestratorGatewayProtocol {
+
+  public static final String GATEWAY_NAME = "orchestratorGateway";
+  public static final String GATEWAY_PATH = "/user/" + GATEWAY_NAME;
+
+  public static final class PluginBlockProgress implements Serializable {
+    private static final long serialVersionUID = -1360180377315290384L;
+    public final String workId;
+    public final JobPluginInfo jobPluginInfo;
+
+    public PluginBlockProgress(String workId, JobPluginInfo jobPluginInfo) {
+      this.workId = workId;
+      this.jobPluginInfo = jobPluginInfo;
+    }
+
+    @Override
+    public String toString() {
+      return "PluginBlockProgress{" + "workId='" + workId + '\'' + ", jobPluginInfo=" + jobPluginInfo + '}';
+    }
+  }
+
+  public static final class PluginBlockJobUpdate implements Serializable {
+    private static final long serialVersionUID = 4480744101447046395L;
+    public final String workId;
+    // null if only the state details or source objects were updated
+    public final JOB_STATE state;
+    public final String stateDetails;
+    public final HashMap<String, String> oldToNewIds;
+
+    public PluginBlockJobUpdate(String workId, JOB_STATE state, String stateDetails, Map<String, String> oldToNewIds) {
+      this.workId = workId;
+      this.state = state;
+      this.stateDetails = stateDetails;
+      this.oldToNewIds = oldToNewIds == null ? null : new HashMap<>(oldToNewIds);
+    }
+
+    @Override
+    public String toString() {
+      return "PluginBlockJobUpdate{" + "workId='" + workId + '\'' + ", state=" + state + ", stateDetails='"
+        + stateDetails + '\'' + ", oldToNewIds=" + oldToNewIds + '}';
+    }
+  }
+
+  public static final class JobToExecute implements Serializable {
+    private static final long serialVersionUID = 8316519447209181405L;
+    public final Job job;
+
+    public JobToExecute(Job job) {
+      this.job = job;
+    }
+
+    @Override
+    public String toString() {
+      return "JobToExecute{" + "job=" + job.getId() + '}';
+    }
+  }
+
+  public static final class JobInError implements Serializable {
+    private static final long serialVersionUID = -5773290587614398290L;
+    public final String jobId;
+
+    public JobInError(String jobId) {
+      this.jobId = jobId;
+    }
+
+    @Override
+    public String toString() {
+      return "JobInError{" + "jobId='" + jobId + '\'' + '}';
+    }
+  }
+
+  public static final class ObjectLockRequest implements Serializable {
+    private static final long serialVersionUID = 2112287474669372431L;
+    public final ArrayList<String> lites;
+    public final int timeoutInSeconds;
+    public final boolean waitForLockIfLocked;
+    public final String requestUuid;
+
+    public ObjectLockRequest(List<String> lites, int timeoutInSeconds, boolean waitForLockIfLocked,
+      String requestUuid) {
+      this.lites = new ArrayList<>(lites);
+      this.timeoutInSeconds = timeoutInSeconds;
+      this.waitForLockIfLocked = waitForLockIfLocked;
+      this.requestUuid = requestUuid;
+    }
+
+    @Override
+    public String toString() {
+      return "ObjectLockRequest{" + "lites=" + lites + ", requestUuid='" + requestUuid + '\'' + '}';
+    }
+  }
+
+  public enum ObjectLockResult {
+    ACQUIRED, NOT_LOCKABLE, TIMED_OUT
+  }
+
+  public static final class ObjectLockRelease implements Serializable {
+    private static final long serialVersionUID = -2467409001785263880L;
+    // null to release all the locks
+    public final ArrayList<String> lites;
+    public final String requestUuid;
+
+    public ObjectLockRelease(List<String> lites, String requestUuid) {
+      this.lites = lites == null ? null : new ArrayList<>(lites);
+      this.requestUuid = requestUuid;
+    }
+
+    @Override
+    public String toString() {
+      return "ObjectLockRelease{" + "lites=" + lites + ", requestUuid='" + requestUuid + '\'' + '}';
+    }
+  }
+}
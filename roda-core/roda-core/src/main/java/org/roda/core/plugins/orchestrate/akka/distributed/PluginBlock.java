@@ -0,0 +1,95 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roda.core.data.v2.LiteOptionalWithCause;
+import org.roda.core.plugins.orchestrate.JobPluginInfo;
+
+/**
+ * A block of objects to be processed by a plugin on a worker node, i.e. what is
+ * needed to create there the same plugin instance the master would have
+ * executed.
+ */
+public final class PluginBlock implements Serializable {
+  private static final long serialVersionUID = 2930167427212396012L;
+
+  private final String jobId;
+  private final String pluginClassName;
+  private final HashMap<String, String> parameterValues;
+  private final ArrayList<LiteOptionalWithCause> objects;
+  private final JobPluginInfo jobPluginInfo;
+
+  public PluginBlock(String jobId, String pluginClassName, Map<String, String> parameterValues,
+    List<LiteOptionalWithCause> objects, JobPluginInfo jobPluginInfo) {
+    this.jobId = jobId;
+    this.pluginClassName = pluginClassName;
+    this.parameterValues = new HashMap<>(parameterValues);
+    this.objects = new ArrayList<>(objects);
+    this.jobPluginInfo = jobPluginInfo;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getPluginClassName() {
+    return pluginClassName;
+  }
+
+  public Map<String, String> getParameterValues() {
+    return parameterValues;
+  }
+
+  public List<LiteOptionalWithCause> getObjects() {
+    return objects;
+  }
+
+  public JobPluginInfo getJobPluginInfo() {
+    return jobPluginInfo;
+  }
+
+  @Override
+  public String toString() {
+    return "PluginBlock [jobId=" + jobId + ", plugin=" + pluginClassName + ", objects=" + objects.size() + "]";
+  }
+
+  /**
+   * The outcome of executing a {@link PluginBlock}, published by the master as
+   * the result of the work.
+   */
+  public static final class Result implements Serializable {
+    private static final long serialVersionUID = -4211838311474950427L;
+
+    private final boolean withError;
+    private final String errorMessage;
+
+    public Result(boolean withError, String errorMessage) {
+      this.withError = withError;
+      this.errorMessage = errorMessage;
+    }
+
+    public boolean isWithError() {
+      return withError;
+    }
+
+    public String getErrorMessage() {
+      return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+      return "Result [withError=" + withError + ", errorMessage=" + errorMessage + "]";
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.roda.core.common.akka.AkkaBaseActor;
+import org.roda.core.common.akka.Messages;
+import org.roda.core.data.v2.IsRODAObject;
+import org.roda.core.plugins.Plugin;
+import org.roda.core.plugins.orchestrate.AkkaDistributedPluginOrchestrator;
+import org.roda.core.plugins.orchestrate.JobPluginInfo;
+import org.roda.core.plugins.orchestrate.akka.AkkaWorkerActor;
+import org.roda.core.plugins.plugins.PluginHelper;
+import org.roda.core.util.IdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.dispatch.OnComplete;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Takes the place of {@link AkkaWorkerActor} in the jobs of the distributed
+ * orchestrator: each block is given to the master to be executed on a worker
+ * node, while the after all execute of the job still runs on this node (as
+ * before all execute does), and so do the blocks of the plugins that are not
+ * distributable (see {@link Plugin#isDistributable()}).
+ *
+ * When stopped (i.e. the job is stopped), the blocks not yet started are
+ * cancelled.
+ */
+public class PluginBlockDispatcher extends AkkaBaseActor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PluginBlockDispatcher.class);
+
+  private static final Timeout SUBMIT_TIMEOUT = new Timeout(5, TimeUnit.SECONDS);
+  private static final FiniteDuration SUBMIT_RETRY_INTERVAL = Duration.create(3, TimeUnit.SECONDS);
+
+  private final AkkaDistributedPluginOrchestrator orchestrator;
+  private final ActorRef localWorker;
+  private final Set<String> dispatched = new HashSet<>();
+
+  public PluginBlockDispatcher() {
+    super();
+    this.orchestrator = (AkkaDistributedPluginOrchestrator) getPluginOrchestrator();
+    this.localWorker = getContext().actorOf(Props.create(AkkaWorkerActor.class), "localWorker");
+  }
+
+  @Override
+  public void onReceive(Object msg) throws Exception {
+    super.setup(msg);
+    if (msg instanceof Messages.PluginExecuteIsReady
+      && !((Messages.PluginExecuteIsReady<?>) msg).getPlugin().isDistributable()) {
+      localWorker.forward(msg, getContext());
+    } else if (msg instanceof Messages.PluginExecuteIsReady) {
+      handlePluginExecuteIsReady((Messages.PluginExecuteIsReady<?>) msg);
+    } else if (msg instanceof Messages.PluginAfterAllExecuteIsReady) {
+      localWorker.forward(msg, getContext());
+    } else if (msg instanceof Resubmit) {
+      Master.Work work = ((Resubmit) msg).work;
+      if (orchestrator.getBlocks().isRegistered(work.workId)) {
+        submit(work);
+      }
+    } else {
+      LOGGER.error("Received a message that it doesn't know how to process ({})...", msg.getClass().getName());
+      unhandled(msg);
+    }
+  }
+
+  private <T extends IsRODAObject> void handlePluginExecuteIsReady(Messages.PluginExecuteIsReady<T> message) {
+    message.logProcessingStarted();
+    Plugin<T> plugin = message.getPlugin();
+    String workId = IdUtils.createUUID();
+    PluginBlock block = new PluginBlock(PluginHelper.getJobId(plugin), plugin.getClass().getName(),
+      plugin.getParameterValues(), message.getList(), plugin.getJobPluginInfo(JobPluginInfo.class));
+
+    orchestrator.getBlocks().register(workId, plugin, getSender());
+    dispatched.removeIf(id -> !orchestrator.getBlocks().isRegistered(id));
+    dispatched.add(workId);
+    submit(new Master.Work(workId, block));
+    message.logProcessingEnded();
+  }
+
+  private void submit(Master.Work work) {
+    final ActorRef self = getSelf();
+    final ActorSystem system = getContext().system();
+    Future<Object> future = Patterns.ask(orchestrator.getFrontend(), work, SUBMIT_TIMEOUT);
+    future.onComplete(new OnComplete<Object>() {
+      @Override
+      public void onComplete(Throwable failure, Object result) {
+        if (failure != null || !(result instanceof Frontend.Ok)) {
+          LOGGER.warn("Master did not accept block {}, retrying", work.workId);
+          system.scheduler().scheduleOnce(SUBMIT_RETRY_INTERVAL, self, new Resubmit(work), system.dispatcher(),
+            ActorRef.noSender());
+        }
+      }
+    }, system.dispatcher());
+  }
+
+  @Override
+  public void postStop() throws Exception {
+    Set<String> cancelled = new HashSet<>();
+    for (String workId : dispatched) {
+      if (orchestrator.getBlocks().unregister(workId) != null) {
+        cancelled.add(workId);
+      }
+    }
+    if (!cancelled.isEmpty()) {
+      orchestrator.getMasterProxy().tell(new Master.CancelWork(cancelled), ActorRef.noSender());
+    }
+    super.postStop();
+  }
+
+  private static final class Resubmit {
+    private final Master.Work work;
+
+    private Resubmit(Master.Work work) {
+      this.work = work;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.orchestrate.akka.distributed;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.roda.core.plugins.Plugin;
+
+import akka.actor.ActorRef;
+
+/**
+ * Keeps, on the master, the plugin instance and the job state actor of each
+ * block given to the worker nodes, by work id, until its result arrives.
+ */
+public class PluginBlockRegistry {
+  private final Map<String, Registration> blocks = new ConcurrentHashMap<>();
+
+  public void register(String workId, Plugin<?> plugin, ActorRef jobStateInfoActor) {
+    blocks.put(workId, new Registration(plugin, jobStateInfoActor));
+  }
+
+  public Registration get(String workId) {
+    return blocks.get(workId);
+  }
+
+  public Registration unregister(String workId) {
+    return blocks.remove(workId);
+  }
+
+  public boolean isRegistered(String workId) {
+    return blocks.containsKey(workId);
+  }
+
+  public static final class Registration {
+    private final Plugin<?> plugin;
+    private final ActorRef jobStateInfoActor;
+
+    private Registration(Plugin<?> plugin, ActorRef jobStateInfoActor) {
+      this.plugin = plugin;
+      this.jobStateInfoActor = jobStateInfoActor;
+    }
+
+    public Plugin<?> getPlugin() {
+      return plugin;
+    }
+
+    public ActorRef getJobStateInfoActor() {
+      return jobStateInfoActor;
+    }
+  }
+}
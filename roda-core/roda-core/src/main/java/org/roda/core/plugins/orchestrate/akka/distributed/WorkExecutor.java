@@ -11,20 +11,33 @@ import akka.actor.UntypedActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 
+/**
+ * Executes the plugin blocks given to a {@link Worker}. As a block may take a
+ * long time, it should run on its own thread (see
+ * {@link AkkaDistributedPluginWorker#EXECUTOR_DISPATCHER}) so that the workers
+ * keep registering in the master meanwhile.
+ */
 public class WorkExecutor extends UntypedActor {
 
   private LoggingAdapter log = Logging.getLogger(getContext().system(), this);
+  private final AkkaDistributedPluginWorker pluginWorker;
+
+  public WorkExecutor(AkkaDistributedPluginWorker pluginWorker) {
+    this.pluginWorker = pluginWorker;
+  }
 
   @Override
   public void onReceive(Object message) {
-    if (message instanceof Integer) {
-      Integer n = (Integer) message;
-      int n2 = n.intValue() * n.intValue();
-      String result = n + " * " + n + " = " + n2;
-      log.info("Produced result {}", result);
+    if (message instanceof Master.Work && ((Master.Work) message).job instanceof PluginBlock) {
+      Master.Work work = (Master.Work) message;
+      PluginBlock.Result result = pluginWorker.execute(work.workId, (PluginBlock) work.job);
+      log.info("Executed {} with result {}", work.job, result);
       getSender().tell(new Worker.WorkComplete(result), getSelf());
+    } else if (message instanceof Master.Work) {
+      log.error("Don't know how to execute {}", message);
+      getSender().tell(new Worker.WorkComplete(new PluginBlock.Result(true, "Unknown work")), getSelf());
     } else {
-      // TODO
+      unhandled(message);
     }
   }
 }
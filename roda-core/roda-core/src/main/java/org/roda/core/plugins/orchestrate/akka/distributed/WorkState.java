@@ -8,8 +8,11 @@
 package org.roda.core.plugins.orchestrate.akka.distributed;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
@@ -35,6 +38,10 @@ public final class WorkState {
       return new WorkState(this, (WorkerFailed) event);
     } else if (event instanceof WorkerTimedOut) {
       return new WorkState(this, (WorkerTimedOut) event);
+    } else if (event instanceof WorkCancelled) {
+      return new WorkState(this, (WorkCancelled) event);
+    } else if (event instanceof WorkCompacted) {
+      return new WorkState((WorkCompacted) event);
     }
     return newState;
   }
@@ -42,7 +49,15 @@ public final class WorkState {
   public WorkState() {
     workInProgress = new HashMap<>();
     acceptedWorkIds = new HashSet<>();
-    doneWorkIds = new HashSet<>();
+    doneWorkIds = new LinkedHashSet<>();
+    pendingWork = new ConcurrentLinkedDeque<>();
+  }
+
+  private WorkState(WorkCompacted workCompacted) {
+    workInProgress = new HashMap<>();
+    // so that late reports and resubmissions of the done work are recognized
+    acceptedWorkIds = new HashSet<>(workCompacted.doneWorkIds);
+    doneWorkIds = new LinkedHashSet<>(workCompacted.doneWorkIds);
     pendingWork = new ConcurrentLinkedDeque<>();
   }
 
@@ -53,7 +68,7 @@ public final class WorkState {
     tmp_acceptedWorkIds.add(workAccepted.work.workId);
     workInProgress = new HashMap<>(workState.workInProgress);
     acceptedWorkIds = tmp_acceptedWorkIds;
-    doneWorkIds = new HashSet<>(workState.doneWorkIds);
+    doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
     pendingWork = tmp_pendingWork;
 
   }
@@ -62,21 +77,30 @@ public final class WorkState {
     ConcurrentLinkedDeque<Work> tmp_pendingWork = new ConcurrentLinkedDeque<>(workState.pendingWork);
     Map<String, Work> tmp_workInProgress = new HashMap<>(workState.workInProgress);
 
-    Work work = tmp_pendingWork.removeFirst();
-    if (!work.workId.equals(workStarted.workId)) {
-      throw new IllegalArgumentException("WorkStarted expected workId " + work.workId + "==" + workStarted.workId);
+    // the work being started is not necessarily the first, as work that is
+    // already being started by the master is skipped
+    Work work = null;
+    for (Work pending : tmp_pendingWork) {
+      if (pending.workId.equals(workStarted.workId)) {
+        work = pending;
+        break;
+      }
     }
+    if (work == null) {
+      throw new IllegalArgumentException("WorkStarted for work " + workStarted.workId + " that is not pending");
+    }
+    tmp_pendingWork.remove(work);
     tmp_workInProgress.put(work.workId, work);
 
     workInProgress = tmp_workInProgress;
     acceptedWorkIds = new HashSet<>(workState.acceptedWorkIds);
-    doneWorkIds = new HashSet<>(workState.doneWorkIds);
+    doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
     pendingWork = tmp_pendingWork;
   }
 
   public WorkState(WorkState workState, WorkCompleted workCompleted) {
     Map<String, Work> tmp_workInProgress = new HashMap<>(workState.workInProgress);
-    Set<String> tmp_doneWorkIds = new HashSet<>(workState.doneWorkIds);
+    Set<String> tmp_doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
     tmp_workInProgress.remove(workCompleted.workId);
     tmp_doneWorkIds.add(workCompleted.workId);
     workInProgress = tmp_workInProgress;
@@ -92,7 +116,7 @@ public final class WorkState {
     tmp_workInProgress.remove(workerFailed.workId);
     workInProgress = tmp_workInProgress;
     acceptedWorkIds = new HashSet<>(workState.acceptedWorkIds);
-    doneWorkIds = new HashSet<>(workState.doneWorkIds);
+    doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
     pendingWork = tmp_pendingWork;
   }
 
@@ -103,7 +127,18 @@ public final class WorkState {
     tmp_workInProgress.remove(workerTimedOut.workId);
     workInProgress = tmp_workInProgress;
     acceptedWorkIds = new HashSet<>(workState.acceptedWorkIds);
-    doneWorkIds = new HashSet<>(workState.doneWorkIds);
+    doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
+    pendingWork = tmp_pendingWork;
+  }
+
+  public WorkState(WorkState workState, WorkCancelled workCancelled) {
+    ConcurrentLinkedDeque<Work> tmp_pendingWork = new ConcurrentLinkedDeque<>(workState.pendingWork);
+    Set<String> tmp_doneWorkIds = new LinkedHashSet<>(workState.doneWorkIds);
+    tmp_pendingWork.removeIf(work -> workCancelled.workIds.contains(work.workId));
+    tmp_doneWorkIds.addAll(workCancelled.workIds);
+    workInProgress = new HashMap<>(workState.workInProgress);
+    acceptedWorkIds = new HashSet<>(workState.acceptedWorkIds);
+    doneWorkIds = tmp_doneWorkIds;
     pendingWork = tmp_pendingWork;
   }
 
@@ -112,6 +147,17 @@ public final class WorkState {
     return Integer.toString(acceptedWorkIds.size());
   }
 
+  /**
+   * @return the pending work, in the order it will be started.
+   */
+  public List<Work> pendingWork() {
+    return new ArrayList<>(pendingWork);
+  }
+
+  public boolean hasWorkInProgress() {
+    return !workInProgress.isEmpty();
+  }
+
   public Work nextWork() {
     return pendingWork.getFirst();
   }
@@ -132,6 +178,20 @@ public final class WorkState {
     return doneWorkIds.contains(workId);
   }
 
+  /**
+   * @return the ids of the most recently done work, at most the given number.
+   */
+  public Set<String> getLastDoneWorkIds(int max) {
+    Set<String> ret = new LinkedHashSet<>();
+    int skip = doneWorkIds.size() - max;
+    for (String workId : doneWorkIds) {
+      if (skip-- <= 0) {
+        ret.add(workId);
+      }
+    }
+    return ret;
+  }
+
   public interface WorkDomainEvent {
 
   }
@@ -182,6 +242,32 @@ public final class WorkState {
 
   }
 
+  public static final class WorkCancelled implements WorkDomainEvent, Serializable {
+    private static final long serialVersionUID = 3914585330405384329L;
+
+    final Set<String> workIds;
+
+    public WorkCancelled(Set<String> workIds) {
+      this.workIds = new HashSet<>(workIds);
+    }
+
+  }
+
+  /**
+   * Replaces all the previous events, once there is no work left, keeping only
+   * the ids of the most recently done work.
+   */
+  public static final class WorkCompacted implements WorkDomainEvent, Serializable {
+    private static final long serialVersionUID = -4720417364370391874L;
+
+    final Set<String> doneWorkIds;
+
+    public WorkCompacted(Set<String> doneWorkIds) {
+      this.doneWorkIds = new LinkedHashSet<>(doneWorkIds);
+    }
+
+  }
+
   public static final class WorkerTimedOut implements WorkDomainEvent, Serializable {
     private static final long serialVersionUID = -1080174696275300604L;
 
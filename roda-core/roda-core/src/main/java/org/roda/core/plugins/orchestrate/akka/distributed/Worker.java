@@ -12,6 +12,8 @@ import static akka.actor.SupervisorStrategy.restart;
 import static akka.actor.SupervisorStrategy.stop;
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 
 import org.roda.core.plugins.orchestrate.akka.distributed.Master.Ack;
 import org.roda.core.plugins.orchestrate.akka.distributed.Master.Work;
@@ -46,25 +48,56 @@ public class Worker extends UntypedActor {
   private final ActorRef clusterClient;
   private LoggingAdapter log = Logging.getLogger(getContext().system(), this);
   private final String workerId = IdUtils.createUUID();
+  private final String nodeId;
   private final ActorRef workExecutor;
   private final Cancellable registerTask;
   private String currentWorkId = null;
 
-  public Worker(ActorRef clusterClient, Props workExecutorProps, FiniteDuration registerInterval) {
+  /**
+   * @param registerInterval
+   *          how often the worker registers itself in the master, which also
+   *          tells it the work is still in progress (so it must be several
+   *          times smaller than the master work timeout).
+   * @param nodeId
+   *          identifies the node (i.e. JVM) the worker runs on, so that the
+   *          master can spread the work among the nodes.
+   */
+  public Worker(ActorRef clusterClient, Props workExecutorProps, FiniteDuration registerInterval, String nodeId) {
     this.clusterClient = clusterClient;
+    this.nodeId = nodeId;
     this.workExecutor = getContext().watch(getContext().actorOf(workExecutorProps, "exec"));
-    this.registerTask = getContext().system().scheduler().schedule(Duration.Zero(), registerInterval, clusterClient,
-      new SendToAll("/user/master/singleton", new RegisterWorker(workerId)), getContext().dispatcher(), getSelf());
+    this.registerTask = getContext().system().scheduler().schedule(Duration.Zero(), registerInterval, getSelf(),
+      RegisterTick, getContext().dispatcher(), getSelf());
+  }
+
+  public static Props props(ActorRef clusterClient, Props workExecutorProps, FiniteDuration registerInterval,
+    String nodeId) {
+    return Props.create(Worker.class, clusterClient, workExecutorProps, registerInterval, nodeId);
   }
 
   public static Props props(ActorRef clusterClient, Props workExecutorProps, FiniteDuration registerInterval) {
-    return Props.create(Worker.class, clusterClient, workExecutorProps, registerInterval);
+    return props(clusterClient, workExecutorProps, registerInterval, ManagementFactory.getRuntimeMXBean().getName());
   }
 
   public static Props props(ActorRef clusterClient, Props workExecutorProps) {
     return props(clusterClient, workExecutorProps, Duration.create(10, "seconds"));
   }
 
+  private static final Object RegisterTick = new Object() {
+    @Override
+    public String toString() {
+      return "RegisterTick";
+    }
+  };
+
+  /**
+   * @return the system load average per processor (0 if not available).
+   */
+  private static double getLoad() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    return Math.max(0, os.getSystemLoadAverage()) / os.getAvailableProcessors();
+  }
+
   private String workId() {
     if (currentWorkId != null)
       return currentWorkId;
@@ -82,6 +115,7 @@ public class Worker extends UntypedActor {
         } else if (t instanceof Exception) {
           if (currentWorkId != null) {
             sendToMaster(new WorkFailed(workerId, workId()));
+            currentWorkId = null;
           }
           getContext().become(idle);
           return restart();
@@ -111,7 +145,7 @@ public class Worker extends UntypedActor {
         Work work = (Work) message;
         log.info("Got work: {}", work.job);
         currentWorkId = work.workId;
-        workExecutor.tell(work.job, getSelf());
+        workExecutor.tell(work, getSelf());
         getContext().become(working);
       } else {
         unhandled(message);
@@ -141,6 +175,7 @@ public class Worker extends UntypedActor {
       @Override
       public void apply(Object message) {
         if (message instanceof Ack && ((Ack) message).workId.equals(workId())) {
+          currentWorkId = null;
           sendToMaster(new WorkerRequestsWork(workerId));
           getContext().setReceiveTimeout(Duration.Undefined());
           getContext().become(idle);
@@ -162,6 +197,8 @@ public class Worker extends UntypedActor {
   public void unhandled(Object message) {
     if (message instanceof Terminated && ((Terminated) message).getActor().equals(workExecutor)) {
       getContext().stop(getSelf());
+    } else if (message == RegisterTick) {
+      sendToMaster(new RegisterWorker(workerId, nodeId, getLoad(), currentWorkId));
     } else if (message instanceof WorkIsReady) {
       // do nothing
     } else {
@@ -0,0 +1,292 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.plugins.base;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AlreadyExistsException;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.StoragePath;
+import org.roda.core.index.IndexService;
+import org.roda.core.index.utils.IterableIndexResult;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.DirectResourceAccess;
+import org.roda.core.storage.Resource;
+import org.roda.core.storage.StorageService;
+import org.roda.core.storage.StorageServiceUtils;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.FileUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports AIPs to a folder of the server file system, as folders or as ZIP
+ * files, writing next to each one a manifest with the SHA-256 checksums of its
+ * files (in the format of sha256sum) computed while they are exported.
+ *
+ * Folders are exported by copying the files of the AIP or, if asked to, by hard
+ * linking them, so that nothing is copied when the storage is on the same file
+ * system. ZIP entries of formats that are already compressed (e.g. JPEG, MP4
+ * or ZIP) are written without being compressed again, and ZIP files bigger than
+ * 4 GB or with more than 65535 entries are written in the ZIP64 format.
+ *
+ * Model files stored as Smile (see core.model.format) are written as JSON, as
+ * their names promise, so they are copied even when the other files are linked.
+ */
+public class AIPExporter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AIPExporter.class);
+
+  private static final String CONFIG_PREFIX = "core.plugins.internal.export_aip";
+  public static final String ZIP_EXTENSION = ".zip";
+  public static final String MANIFEST_EXTENSION = ".sha256";
+  private static final String PATH_DELIMITER = "/";
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final String JSON_EXTENSION = ".json";
+
+  public static final List<String> DEFAULT_INCOMPRESSIBLE_MIMETYPES = Arrays.asList("image/jpeg", "image/png",
+    "image/gif", "image/jp2", "image/webp", "video/mp4", "video/mpeg", "video/quicktime", "video/x-msvideo",
+    "video/x-matroska", "video/webm", "audio/mpeg", "audio/mp4", "audio/ogg", "audio/aac", "application/zip",
+    "application/gzip", "application/x-gzip", "application/x-bzip2", "application/x-xz", "application/x-7z-compressed",
+    "application/x-rar-compressed", "application/java-archive");
+  public static final List<String> DEFAULT_INCOMPRESSIBLE_EXTENSIONS = Arrays.asList("jpg", "jpeg", "png", "gif",
+    "jp2", "webp", "mp4", "m4v", "mpg", "mpeg", "mov", "avi", "mkv", "webm", "mp3", "m4a", "ogg", "aac", "zip", "gz",
+    "tgz", "bz2", "xz", "7z", "rar", "jar", "docx", "xlsx", "pptx", "odt", "ods", "odp");
+
+  private final StorageService storage;
+  private final IndexService index;
+  private final Path outputPath;
+  private final boolean removeIfAlreadyExists;
+  private final boolean hardLinks;
+  private final Set<String> incompressibleMimetypes;
+  private final Set<String> incompressibleExtensions;
+
+  public AIPExporter(StorageService storage, IndexService index, Path outputPath, boolean removeIfAlreadyExists,
+    boolean hardLinks) {
+    this.storage = storage;
+    this.index = index;
+    this.outputPath = outputPath;
+    this.removeIfAlreadyExists = removeIfAlreadyExists;
+    this.hardLinks = hardLinks;
+    this.incompressibleMimetypes = getConfiguredSet(DEFAULT_INCOMPRESSIBLE_MIMETYPES, "incompressible_mimetypes");
+    this.incompressibleExtensions = getConfiguredSet(DEFAULT_INCOMPRESSIBLE_EXTENSIONS, "incompressible_extensions");
+  }
+
+  private static Set<String> getConfiguredSet(List<String> defaultValues, String key) {
+    List<String> values = RodaCoreFactory.getRodaConfigurationAsList(CONFIG_PREFIX, key);
+    return (values.isEmpty() ? defaultValues : values).stream().map(value -> value.toLowerCase(Locale.ROOT))
+      .collect(Collectors.toSet());
+  }
+
+  /**
+   * Exports an AIP to a folder named after it.
+   */
+  public void exportToFolder(String aipId) throws AlreadyExistsException, GenericException, RequestNotValidException,
+    AuthorizationDeniedException, NotFoundException {
+    Path aipFolder = outputPath.resolve(aipId);
+    Path manifest = outputPath.resolve(aipId + MANIFEST_EXTENSION);
+    prepareTarget(aipFolder, manifest);
+
+    try (DirectResourceAccess directAccess = storage.getDirectAccess(ModelUtils.getAIPStoragePath(aipId));
+      BufferedWriter manifestWriter = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+      Path aipPath = directAccess.getPath();
+      List<Path> files;
+      try (Stream<Path> paths = Files.walk(aipPath)) {
+        files = paths.sorted().collect(Collectors.toList());
+      }
+
+      boolean link = hardLinks;
+      for (Path source : files) {
+        Path relativePath = aipPath.relativize(source);
+        Path target = aipFolder.resolve(relativePath.toString());
+        if (Files.isDirectory(source)) {
+          Files.createDirectories(target);
+          continue;
+        }
+
+        byte[] json = getSmileAsJson(source);
+        if (link && json == null) {
+          try {
+            Files.createLink(target, source);
+          } catch (FileSystemException | UnsupportedOperationException e) {
+            LOGGER.debug("Could not link {}, copying AIP {} instead", source, aipId, e);
+            link = false;
+          }
+        }
+
+        String checksum;
+        try (InputStream inputStream = json != null ? new ByteArrayInputStream(json) : Files.newInputStream(source)) {
+          if (Files.exists(target)) {
+            checksum = digest(inputStream, null);
+          } else {
+            try (OutputStream outputStream = Files.newOutputStream(target)) {
+              checksum = digest(inputStream, outputStream);
+            }
+          }
+        }
+        writeManifestLine(manifestWriter, checksum, aipId + PATH_DELIMITER + toManifestPath(relativePath));
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not export AIP " + aipId + " to folder " + aipFolder, e);
+    }
+  }
+
+  /**
+   * Exports an AIP to a ZIP file named after it.
+   */
+  public void exportToZip(String aipId) throws AlreadyExistsException, GenericException, RequestNotValidException,
+    AuthorizationDeniedException, NotFoundException {
+    Path zip = outputPath.resolve(aipId + ZIP_EXTENSION);
+    Path manifest = outputPath.resolve(aipId + MANIFEST_EXTENSION);
+    prepareTarget(zip, manifest);
+
+    StoragePath aipStoragePath = ModelUtils.getAIPStoragePath(aipId);
+    Set<List<String>> incompressibleFiles = findIncompressibleFiles(aipId);
+    int basePathSize = aipStoragePath.asList().size();
+
+    try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(zip)));
+      BufferedWriter manifestWriter = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8);
+      CloseableIterable<Resource> resources = storage.listResourcesUnderDirectory(aipStoragePath, true)) {
+      for (Resource resource : resources) {
+        List<String> pathAsList = resource.getStoragePath().asList();
+        String entryPath = String.join(PATH_DELIMITER, pathAsList.subList(basePathSize, pathAsList.size()));
+
+        if (resource.isDirectory()) {
+          zos.putNextEntry(new ZipEntry(entryPath + PATH_DELIMITER));
+          zos.closeEntry();
+        } else {
+          // the level applies to the entries that follow
+          boolean incompressible = incompressibleFiles.contains(pathAsList)
+            || incompressibleExtensions.contains(FilenameUtils.getExtension(entryPath).toLowerCase(Locale.ROOT));
+          zos.setLevel(incompressible ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+          zos.putNextEntry(new ZipEntry(entryPath));
+          Binary binary = StorageServiceUtils.getExportedBinary(storage.getBinary(resource.getStoragePath()));
+          try (InputStream inputStream = binary.getContent().createInputStream()) {
+            writeManifestLine(manifestWriter, digest(inputStream, zos), entryPath);
+          }
+          zos.closeEntry();
+        }
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not export AIP " + aipId + " to ZIP " + zip, e);
+    }
+  }
+
+  /**
+   * @return the content of a model file stored as Smile written as JSON, or
+   *         null if the file is not one
+   */
+  private static byte[] getSmileAsJson(Path file) throws IOException, GenericException {
+    if (!file.getFileName().toString().endsWith(JSON_EXTENSION)) {
+      return null;
+    }
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      if (!JsonUtils.isSmile(inputStream)) {
+        return null;
+      }
+    }
+    return JsonUtils.getJsonBytes(Files.newInputStream(file));
+  }
+
+  private void prepareTarget(Path target, Path manifest) throws AlreadyExistsException, GenericException {
+    if (FSUtils.exists(target)) {
+      if (!removeIfAlreadyExists) {
+        throw new AlreadyExistsException(target + " already exists");
+      }
+      try {
+        FSUtils.deletePath(target);
+      } catch (NotFoundException e) {
+        // already removed
+      }
+    }
+    FSUtils.deletePathQuietly(manifest);
+  }
+
+  /**
+   * @return the storage paths of the files of an AIP whose identified format is
+   *         already compressed
+   */
+  private Set<List<String>> findIncompressibleFiles(String aipId) throws GenericException, RequestNotValidException {
+    Set<List<String>> incompressibleFiles = new HashSet<>();
+    List<String> fields = new ArrayList<>(RodaConstants.FILE_FIELDS_TO_RETURN);
+    fields.add(RodaConstants.FILE_FORMAT_MIMETYPE);
+
+    try (IterableIndexResult<IndexedFile> files = index.findAll(IndexedFile.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.FILE_AIP_ID, aipId)), false, fields)) {
+      for (IndexedFile file : files) {
+        String mimetype = file.getFileFormat() != null ? file.getFileFormat().getMimeType() : null;
+        if (!file.isDirectory() && mimetype != null
+          && incompressibleMimetypes.contains(mimetype.toLowerCase(Locale.ROOT))) {
+          incompressibleFiles.add(ModelUtils
+            .getFileStoragePath(file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId()).asList());
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not find the formats of the files of AIP {}, all will be compressed", aipId, e);
+    }
+    return incompressibleFiles;
+  }
+
+  private static String digest(InputStream inputStream, OutputStream outputStream) throws IOException {
+    try {
+      if (outputStream == null) {
+        return FileUtility.checksum(inputStream, DIGEST_ALGORITHM);
+      }
+      return FileUtility.copyAndChecksums(inputStream, outputStream, Collections.singletonList(DIGEST_ALGORITHM))
+        .get(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static void writeManifestLine(BufferedWriter writer, String checksum, String path) throws IOException {
+    writer.write(checksum);
+    writer.write("  ");
+    writer.write(path);
+    writer.newLine();
+  }
+
+  private static String toManifestPath(Path relativePath) {
+    List<String> parts = new ArrayList<>();
+    relativePath.forEach(part -> parts.add(part.toString()));
+    return String.join(PATH_DELIMITER, parts);
+  }
+}
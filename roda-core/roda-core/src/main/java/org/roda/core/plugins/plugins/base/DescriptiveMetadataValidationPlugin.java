@@ -12,6 +12,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.roda.core.RodaCoreFactory;
 import org.roda.core.common.validation.ValidationUtils;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.PreservationEventType;
@@ -32,9 +33,10 @@ import org.roda.core.model.ModelService;
 import org.roda.core.plugins.AbstractPlugin;
 import org.roda.core.plugins.Plugin;
 import org.roda.core.plugins.PluginException;
-import org.roda.core.plugins.RODAObjectProcessingLogic;
+import org.roda.core.plugins.RODAObjectsProcessingLogic;
 import org.roda.core.plugins.orchestrate.JobPluginInfo;
 import org.roda.core.plugins.plugins.PluginHelper;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
 import org.roda.core.storage.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +63,8 @@ public class DescriptiveMetadataValidationPlugin extends AbstractPlugin<AIP> {
     "parameter.force_type", "Force metadata format and version", PluginParameterType.BOOLEAN, "false", true, false,
     "If true, bypass the metadata format and version set in the information package and use the metadata format and version passed as parameters (see above).");
 
+  private static final String THREADS_PROPERTY = "core.plugins.internal.metadata_validation.threads";
+
   private boolean validateDescriptiveMetadata;
   private boolean forceDescriptiveMetadataType;
   private String metadataType;
@@ -121,26 +125,49 @@ public class DescriptiveMetadataValidationPlugin extends AbstractPlugin<AIP> {
     metadataType = PluginHelper.getStringFromParameters(this, PARAMETER_METADATA_TYPE);
     metadataVersion = PluginHelper.getStringFromParameters(this, PARAMETER_METADATA_VERSION);
 
-    return PluginHelper.processObjects(this, new RODAObjectProcessingLogic<AIP>() {
+    return PluginHelper.processObjects(this, new RODAObjectsProcessingLogic<AIP>() {
       @Override
       public void process(IndexService index, ModelService model, StorageService storage, Report report, Job cachedJob,
-        JobPluginInfo jobPluginInfo, Plugin<AIP> plugin, AIP object) {
-        processAIP(index, model, report, jobPluginInfo, cachedJob, object);
+        JobPluginInfo jobPluginInfo, Plugin<AIP> plugin, List<AIP> objects) {
+        processAIPs(index, model, report, jobPluginInfo, cachedJob, objects);
       }
     }, index, model, storage, liteList);
   }
 
+  /**
+   * Validates the metadata of the AIPs on the shared plugin threads, which keep
+   * their validators from one block to the next, and then, one AIP at a time
+   * and in the original order, updates the job report and creates the events.
+   */
+  private void processAIPs(IndexService index, ModelService model, Report pluginReport, JobPluginInfo jobPluginInfo,
+    Job cachedJob, List<AIP> aips) {
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(),
+      THREADS_PROPERTY);
+
+    ParallelProcessingService.getInstance().process(aips, threads, aip -> validateAIP(model, aip),
+      (aip, validation, error) -> processAIP(index, model, pluginReport, jobPluginInfo, cachedJob, aip,
+        error == null ? validation : new MetadataValidation(null, error)));
+  }
+
+  private MetadataValidation validateAIP(ModelService model, AIP aip) {
+    try {
+      LOGGER.debug("Validating AIP {}", aip.getId());
+      return new MetadataValidation(ValidationUtils.isAIPMetadataValid(forceDescriptiveMetadataType,
+        validateDescriptiveMetadata, metadataType, metadataVersion, model, aip), null);
+    } catch (RODAException | RuntimeException e) {
+      return new MetadataValidation(null, e);
+    }
+  }
+
   private void processAIP(IndexService index, ModelService model, Report pluginReport, JobPluginInfo jobPluginInfo,
-    Job cachedJob, AIP aip) {
+    Job cachedJob, AIP aip, MetadataValidation validation) {
 
     Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class, AIPState.INGEST_PROCESSING);
     PluginHelper.updatePartialJobReport(this, model, reportItem, false, cachedJob);
     PluginState state = PluginState.SUCCESS;
 
-    try {
-      LOGGER.debug("Validating AIP {}", aip.getId());
-      Pair<ValidationReport, List<Pair<String, String>>> reportAndSchemaInfo = ValidationUtils.isAIPMetadataValid(
-        forceDescriptiveMetadataType, validateDescriptiveMetadata, metadataType, metadataVersion, model, aip);
+    if (validation.result != null) {
+      Pair<ValidationReport, List<Pair<String, String>>> reportAndSchemaInfo = validation.result;
       schemasInfo = reportAndSchemaInfo.getSecond();
 
       if (reportAndSchemaInfo.getFirst().isValid()) {
@@ -150,9 +177,9 @@ public class DescriptiveMetadataValidationPlugin extends AbstractPlugin<AIP> {
         reportItem.setPluginState(state).setHtmlPluginDetails(true)
           .setPluginDetails(reportAndSchemaInfo.getFirst().toHtml(false, false));
       }
-    } catch (RODAException mse) {
+    } else {
       state = PluginState.FAILURE;
-      LOGGER.error("Error processing AIP {}: {}", aip.getId(), mse.getMessage(), mse);
+      LOGGER.error("Error processing AIP {}: {}", aip.getId(), validation.error.getMessage(), validation.error);
     }
 
     try {
@@ -261,4 +288,14 @@ public class DescriptiveMetadataValidationPlugin extends AbstractPlugin<AIP> {
   public List<Class<AIP>> getObjectClasses() {
     return Arrays.asList(AIP.class);
   }
+
+  private static class MetadataValidation {
+    private final Pair<ValidationReport, List<Pair<String, String>>> result;
+    private final Throwable error;
+
+    public MetadataValidation(Pair<ValidationReport, List<Pair<String, String>>> result, Throwable error) {
+      this.result = result;
+      this.error = error;
+    }
+  }
 }
@@ -8,20 +8,16 @@
 package org.roda.core.plugins.plugins.base;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.io.IOUtils;
-import org.roda.core.common.ConsumesOutputStream;
-import org.roda.core.common.DownloadUtils;
+import org.roda.core.RodaCoreFactory;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.ExportType;
 import org.roda.core.data.common.RodaConstants.PreservationEventType;
@@ -31,11 +27,11 @@ import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.InvalidParameterException;
 import org.roda.core.data.exceptions.JobException;
 import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.LiteOptionalWithCause;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.AIPState;
-import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.jobs.Job;
 import org.roda.core.data.v2.jobs.PluginParameter;
 import org.roda.core.data.v2.jobs.PluginParameter.PluginParameterType;
@@ -45,7 +41,6 @@ import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.data.v2.validation.ValidationException;
 import org.roda.core.index.IndexService;
 import org.roda.core.model.ModelService;
-import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.plugins.AbstractPlugin;
 import org.roda.core.plugins.Plugin;
 import org.roda.core.plugins.PluginException;
@@ -53,11 +48,9 @@ import org.roda.core.plugins.RODAObjectsProcessingLogic;
 import org.roda.core.plugins.orchestrate.JobPluginInfo;
 import org.roda.core.plugins.orchestrate.SimpleJobPluginInfo;
 import org.roda.core.plugins.plugins.PluginHelper;
-import org.roda.core.storage.DefaultStoragePath;
-import org.roda.core.storage.Directory;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
 import org.roda.core.storage.StorageService;
 import org.roda.core.storage.fs.FSUtils;
-import org.roda.core.storage.fs.FileStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,10 +60,14 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
   public static final String PLUGIN_PARAM_EXPORT_FOLDER_PARAMETER = "outputFolder";
   public static final String PLUGIN_PARAM_EXPORT_TYPE = "exportType";
   public static final String PLUGIN_PARAM_EXPORT_REMOVE_IF_ALREADY_EXISTS = "removeIfAlreadyExists";
+  public static final String PLUGIN_PARAM_EXPORT_HARD_LINKS = "hardLinks";
+
+  private static final int DEFAULT_THREADS = 4;
 
   private String outputFolder;
   private ExportType exportType;
   private boolean removeIfAlreadyExists;
+  private boolean hardLinks = false;
 
   private static Map<String, PluginParameter> pluginParameters = new HashMap<>();
   static {
@@ -86,6 +83,11 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
       new PluginParameter(PLUGIN_PARAM_EXPORT_REMOVE_IF_ALREADY_EXISTS, "Overwrite files/folders",
         PluginParameterType.BOOLEAN, "true", true, false,
         "Overwrites files and folders if they already exist on the destination folder."));
+
+    pluginParameters.put(PLUGIN_PARAM_EXPORT_HARD_LINKS,
+      new PluginParameter(PLUGIN_PARAM_EXPORT_HARD_LINKS, "Link files", PluginParameterType.BOOLEAN, "false", true,
+        false, "When exporting to folders on the same file system as the storage, hard links the files instead of copying "
+          + "them. Linked files share their content with the repository and must not be changed in place."));
   }
 
   @Override
@@ -121,6 +123,7 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
     parameters.add(pluginParameters.get(PLUGIN_PARAM_EXPORT_FOLDER_PARAMETER));
     parameters.add(pluginParameters.get(PLUGIN_PARAM_EXPORT_TYPE));
     parameters.add(pluginParameters.get(PLUGIN_PARAM_EXPORT_REMOVE_IF_ALREADY_EXISTS));
+    parameters.add(pluginParameters.get(PLUGIN_PARAM_EXPORT_HARD_LINKS));
     return parameters;
   }
 
@@ -136,6 +139,10 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
         .parseBoolean(getParameterValues().get(PLUGIN_PARAM_EXPORT_REMOVE_IF_ALREADY_EXISTS));
     }
 
+    if (parameters.containsKey(PLUGIN_PARAM_EXPORT_HARD_LINKS)) {
+      hardLinks = Boolean.parseBoolean(parameters.get(PLUGIN_PARAM_EXPORT_HARD_LINKS));
+    }
+
     if (parameters.containsKey(PLUGIN_PARAM_EXPORT_TYPE)) {
       try {
         exportType = ExportType.valueOf(parameters.get(PLUGIN_PARAM_EXPORT_TYPE));
@@ -168,10 +175,9 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
           error = e.getMessage();
         }
 
-        if (error == null && exportType == ExportType.ZIP) {
-          report = exportMultiZip(aips, outputPath, report, model, index, storage, jobPluginInfo, cachedJob);
-        } else if (error == null && exportType == ExportType.FOLDER) {
-          report = exportFolders(aips, storage, model, index, report, jobPluginInfo, cachedJob);
+        if (error == null && (exportType == ExportType.ZIP || exportType == ExportType.FOLDER)) {
+          AIPExporter exporter = new AIPExporter(storage, index, outputPath, removeIfAlreadyExists, hardLinks);
+          report = exportAIPs(aips, exporter, model, index, report, jobPluginInfo, cachedJob);
         } else if (error != null) {
           jobPluginInfo.incrementObjectsProcessedWithFailure(aips.size());
           report.setCompletionPercentage(100);
@@ -183,97 +189,62 @@ public class ExportAIPPlugin extends AbstractPlugin<AIP> {
 
   }
 
-  private Report exportFolders(List<AIP> aips, StorageService storage, ModelService model, IndexService index,
+  /**
+   * Exports the AIPs in parallel, on the shared plugin threads, and then, one
+   * AIP at a time and in the original order, updates the job report and creates
+   * the events.
+   */
+  private Report exportAIPs(List<AIP> aips, AIPExporter exporter, ModelService model, IndexService index,
     Report report, JobPluginInfo jobPluginInfo, Job job) {
-    try {
-      FileStorageService localStorage = new FileStorageService(Paths.get(outputFolder), false, null, false);
-      for (AIP aip : aips) {
-        LOGGER.debug("Exporting AIP {} to folder", aip.getId());
-        String error = null;
-        StoragePath aipPath = ModelUtils.getAIPStoragePath(aip.getId());
-        try {
-          localStorage.copy(storage, aipPath, DefaultStoragePath.parse(aip.getId()));
-        } catch (AlreadyExistsException e) {
-          if (removeIfAlreadyExists) {
-            try {
-              localStorage.deleteResource(DefaultStoragePath.parse(aip.getId()));
-              localStorage.copy(storage, aipPath, DefaultStoragePath.parse(aip.getId()));
-            } catch (AlreadyExistsException e2) {
-              error = "Error removing/creating folder " + aipPath.toString();
-            }
-          } else {
-            error = "Folder " + aipPath.toString() + " already exists.";
-          }
-        }
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_THREADS, "core", "plugins", "internal",
+      "export_aip", "threads");
 
-        Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class, AIPState.ACTIVE);
-        if (error != null) {
-          reportItem.setPluginState(PluginState.FAILURE)
-            .setPluginDetails("Export AIP did not end successfully: " + error);
-          jobPluginInfo.incrementObjectsProcessedWithFailure();
-        } else {
-          reportItem.setPluginState(PluginState.SUCCESS).setPluginDetails("Export AIP ended successfully");
-          jobPluginInfo.incrementObjectsProcessedWithSuccess();
-        }
-        report.addReport(reportItem);
-        PluginHelper.updatePartialJobReport(this, model, reportItem, true, job);
+    ParallelProcessingService.getInstance().process(aips, threads, aip -> exportAIP(exporter, aip),
+      (aip, error, exception) -> reportAIP(aip, exception == null ? error : exception.getMessage(), model, index,
+        report, jobPluginInfo, job));
+    return report;
+  }
 
-        try {
-          boolean notify = true;
-          PluginHelper.createPluginEvent(this, aip.getId(), model, index, reportItem.getPluginState(), "", notify);
-        } catch (ValidationException | RequestNotValidException | NotFoundException | GenericException
-          | AuthorizationDeniedException | AlreadyExistsException e) {
-          LOGGER.error("Error creating event: " + e.getMessage(), e);
-        }
+  /**
+   * @return the error, or null if the AIP was exported
+   */
+  private String exportAIP(AIPExporter exporter, AIP aip) {
+    LOGGER.debug("Exporting AIP {} to {}", aip.getId(), exportType);
+    try {
+      if (exportType == ExportType.ZIP) {
+        exporter.exportToZip(aip.getId());
+      } else {
+        exporter.exportToFolder(aip.getId());
       }
-    } catch (GenericException | RequestNotValidException | AuthorizationDeniedException | NotFoundException e) {
-      LOGGER.error(e.getMessage(), e);
+      return null;
+    } catch (RODAException | RuntimeException e) {
+      LOGGER.error("Error exporting AIP " + aip.getId() + ": " + e.getMessage(), e);
+      return e.getMessage();
     }
-    return report;
   }
 
-  private Report exportMultiZip(List<AIP> aips, Path outputPath, Report report, ModelService model, IndexService index,
-    StorageService storage, JobPluginInfo jobPluginInfo, Job job) {
-    for (AIP aip : aips) {
-      LOGGER.debug("Exporting AIP {} to ZIP", aip.getId());
-      OutputStream os = null;
-      String error = null;
-      try {
-        Path zip = outputPath.resolve(aip.getId() + ".zip");
-        if (FSUtils.exists(zip) && removeIfAlreadyExists) {
-          Files.delete(zip);
-        } else if (FSUtils.exists(zip) && !removeIfAlreadyExists) {
-          error = "File " + zip.toString() + " already exists";
-        }
-        if (error == null) {
-          os = Files.newOutputStream(zip, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-
-          Directory directory = storage.getDirectory(ModelUtils.getAIPStoragePath(aip.getId()));
-          ConsumesOutputStream cos = DownloadUtils.download(storage, directory);
-          cos.consumeOutputStream(os);
-        }
-      } catch (Exception e) {
-        LOGGER.error("Error exporting AIP " + aip.getId() + ": " + e.getMessage());
-        error = e.getMessage();
-      } finally {
-        if (os != null) {
-          IOUtils.closeQuietly(os);
-        }
-      }
+  private void reportAIP(AIP aip, String error, ModelService model, IndexService index, Report report,
+    JobPluginInfo jobPluginInfo, Job job) {
+    Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class, AIPState.ACTIVE);
+    if (error != null) {
+      reportItem.setPluginState(PluginState.FAILURE).setPluginDetails("Export AIP did not end successfully: " + error);
+      jobPluginInfo.incrementObjectsProcessedWithFailure();
+    } else {
+      reportItem.setPluginState(PluginState.SUCCESS).setPluginDetails("Export AIP ended successfully");
+      jobPluginInfo.incrementObjectsProcessedWithSuccess();
+    }
+    report.addReport(reportItem);
+    PluginHelper.updatePartialJobReport(this, model, reportItem, true, job);
 
-      Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class, AIPState.ACTIVE);
-      if (error != null) {
-        reportItem.setPluginState(PluginState.FAILURE)
-          .setPluginDetails("Export AIP did not end successfully: " + error);
-        jobPluginInfo.incrementObjectsProcessedWithFailure();
-      } else {
-        reportItem.setPluginState(PluginState.SUCCESS).setPluginDetails("Export AIP ended successfully");
-        jobPluginInfo.incrementObjectsProcessedWithSuccess();
+    if (exportType == ExportType.FOLDER) {
+      try {
+        boolean notify = true;
+        PluginHelper.createPluginEvent(this, aip.getId(), model, index, reportItem.getPluginState(), "", notify);
+      } catch (ValidationException | RequestNotValidException | NotFoundException | GenericException
+        | AuthorizationDeniedException | AlreadyExistsException e) {
+        LOGGER.error("Error creating event: " + e.getMessage(), e);
       }
-      report.addReport(reportItem);
-      PluginHelper.updatePartialJobReport(this, model, reportItem, true, job);
     }
-    return report;
   }
 
   @Override
@@ -7,10 +7,7 @@
  */
 package org.roda.core.plugins.plugins.base;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -21,14 +18,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.roda.core.RodaCoreFactory;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.PreservationEventType;
 import org.roda.core.data.exceptions.InvalidParameterException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.v2.LiteOptionalWithCause;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.jobs.Job;
@@ -41,9 +40,10 @@ import org.roda.core.model.ModelService;
 import org.roda.core.plugins.AbstractPlugin;
 import org.roda.core.plugins.Plugin;
 import org.roda.core.plugins.PluginException;
-import org.roda.core.plugins.RODAObjectProcessingLogic;
+import org.roda.core.plugins.RODAObjectsProcessingLogic;
 import org.roda.core.plugins.orchestrate.JobPluginInfo;
 import org.roda.core.plugins.plugins.PluginHelper;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
 import org.roda.core.storage.StorageService;
 import org.roda.core.storage.fs.FSUtils;
 import org.roda.core.util.IdUtils;
@@ -53,13 +53,13 @@ import org.slf4j.LoggerFactory;
 public class InventoryReportPlugin extends AbstractPlugin<AIP> {
   private static final Logger LOGGER = LoggerFactory.getLogger(InventoryReportPlugin.class);
 
-  public static final String EXPORT_CSV_TEMP_FOLDER = "CSV";
   public static final String CSV_FILE_FIELDS = "parameter.csv.file.fields";
   public static final String CSV_FILE_OUTPUT = "parameter.csv.file.output";
   public static final String CSV_FILE_HEADERS = "parameter.csv.file.headers";
   public static final String CSV_FILE_OUTPUT_DATA = "parameter.csv.file.output.data";
   public static final String CSV_FILE_OUTPUT_DESCRIPTIVE = "parameter.csv.file.output.descriptive";
   public static final String CSV_FILE_OTHER_METADATA_TYPES = "parameter.csv.file.output.other";
+  public static final String CSV_FILE_COMPRESS = "parameter.csv.file.compress";
 
   public static final String CSV_FIELD_SIP_ID = "sipId";
   public static final String CSV_FIELD_AIP_ID = "aipId";
@@ -87,6 +87,15 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
   public static final String CSV_DEFAULT_OUTPUT = "/tmp/output.csv";
   public static final String CSV_DEFAULT_HEADERS = "true";
   public static final String CSV_DEFAULT_OTHER_METADATA = "ApacheTika,Siegfried";
+  public static final String CSV_DEFAULT_COMPRESS = "false";
+
+  private static final String THREADS_PROPERTY = "core.plugins.internal.inventory_report.threads";
+  private static final String CHECKPOINT_INTERVAL_PROPERTY = "core.plugins.internal.inventory_report"
+    + ".checkpoint_interval";
+  private static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+  // reports being written by job id, shared by all the plugin instances of a job
+  private static final Map<String, InventoryReportWriter> WRITERS = new ConcurrentHashMap<>();
 
   private List<String> fields = null;
   private Path output;
@@ -94,6 +103,7 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
   private boolean outputDataInformation;
   private boolean outputDescriptiveMetadataInformation;
   private List<String> otherMetadataTypes;
+  private boolean compress;
   private static Map<String, PluginParameter> pluginParameters = new HashMap<>();
 
   // TODO -> add plugin parameter type "LIST"...
@@ -118,6 +128,9 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
       new PluginParameter(CSV_FILE_OTHER_METADATA_TYPES, "Include other metadata files", PluginParameterType.STRING,
         CSV_DEFAULT_OTHER_METADATA, true, false,
         "Include in the inventory report information about other metadata files that exist inside AIPs."));
+    pluginParameters.put(CSV_FILE_COMPRESS,
+      new PluginParameter(CSV_FILE_COMPRESS, "Compress report", PluginParameterType.BOOLEAN, CSV_DEFAULT_COMPRESS,
+        true, false, "Compress the inventory report file with gzip."));
   }
 
   @Override
@@ -140,7 +153,8 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
     return "Creates a report in CSV format that includes a listing of all AIP and its inner files (data and metadata) which also includes some of "
       + "their technical properties (e.g. sipId, aipId, representationId, filePath, SHA-256, MD5, SHA-1). The report will be stored in a folder on "
       + "the server side as defined by the user. To obtain the report, one needs access to the storage layer of the repository server.\nThis report"
-      + " may be used to validate the completeness and correctness of an ingest process.";
+      + " may be used to validate the completeness and correctness of an ingest process.\nIf a previous report to the same"
+      + " file was interrupted, it is resumed and only the missing AIPs are added to it.";
   }
 
   @Override
@@ -161,6 +175,7 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
     parameters.add(pluginParameters.get(CSV_FILE_OUTPUT_DATA));
     parameters.add(pluginParameters.get(CSV_FILE_OUTPUT_DESCRIPTIVE));
     parameters.add(pluginParameters.get(CSV_FILE_OTHER_METADATA_TYPES));
+    parameters.add(pluginParameters.get(CSV_FILE_COMPRESS));
     return parameters;
   }
 
@@ -199,71 +214,92 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
         otherMetadataTypes.addAll(Arrays.asList(otherMetadataSTR.split(",")));
       }
     }
+    if (parameters.containsKey(CSV_FILE_COMPRESS)) {
+      compress = Boolean.parseBoolean(parameters.get(CSV_FILE_COMPRESS));
+    }
   }
 
   @Override
   public Report execute(IndexService index, ModelService model, StorageService storage,
     List<LiteOptionalWithCause> liteList) throws PluginException {
+    InventoryReportWriter writer = WRITERS.get(PluginHelper.getJobId(this));
+    if (writer == null) {
+      throw new PluginException("Inventory report " + output + " is not open");
+    }
 
-    Path jobCSVTempFolder = getJobCSVTempFolder();
-    Path csvTempFile = jobCSVTempFolder.resolve(IdUtils.createUUID() + ".csv");
-
-    CSVFormat csvFileFormat = CSVFormat.DEFAULT.withRecordSeparator("\n");
-    try (BufferedWriter fileWriter = Files.newBufferedWriter(csvTempFile);
-      CSVPrinter csvFilePrinter = new CSVPrinter(fileWriter, csvFileFormat)) {
-      return PluginHelper.processObjects(this, new RODAObjectProcessingLogic<AIP>() {
-        @Override
+    return PluginHelper.processObjects(this, new RODAObjectsProcessingLogic<AIP>() {
+      @Override
+      public void process(IndexService index, ModelService model, StorageService storage, Report report, Job cachedJob,
+        JobPluginInfo jobPluginInfo, Plugin<AIP> plugin, List<AIP> objects) {
+        processAIPs(index, model, storage, jobPluginInfo, writer, objects);
+      }
+    }, index, model, storage, liteList);
+  }
 
-        public void process(IndexService index, ModelService model, StorageService storage, Report report,
-          Job cachedJob, JobPluginInfo jobPluginInfo, Plugin<AIP> plugin, AIP object) {
-          processAIP(model, storage, jobPluginInfo, csvFilePrinter, object);
+  /**
+   * Lists the files of the AIPs in parallel, on the shared plugin threads, each
+   * AIP being appended to the report as soon as all its rows are ready. AIPs
+   * already in a resumed report are skipped.
+   */
+  private void processAIPs(IndexService index, ModelService model, StorageService storage,
+    JobPluginInfo jobPluginInfo, InventoryReportWriter writer, List<AIP> aips) {
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(),
+      THREADS_PROPERTY);
+    ParallelProcessingService.getInstance().process(aips, threads,
+      aip -> processAIP(index, model, storage, writer, aip), (aip, success, error) -> {
+        if (error != null) {
+          LOGGER.error("Error adding AIP {} to the inventory report", aip.getId(), error);
         }
-      }, index, model, storage, liteList);
-    } catch (IOException e) {
-      throw new PluginException("Unable to create/write to CSVPrinter", e);
+        updateJobPluginInfo(jobPluginInfo, aip, error == null && success);
+      });
+  }
+
+  private void updateJobPluginInfo(JobPluginInfo jobPluginInfo, AIP aip, boolean success) {
+    if (success) {
+      jobPluginInfo.incrementObjectsProcessedWithSuccess();
+    } else {
+      LOGGER.warn("AIP {} was not added to the inventory report", aip.getId());
+      jobPluginInfo.incrementObjectsProcessedWithFailure();
     }
   }
 
-  private void processAIP(ModelService model, StorageService storage, JobPluginInfo jobPluginInfo,
-    CSVPrinter csvFilePrinter, AIP aip) {
-    if (csvFilePrinter == null) {
-      LOGGER.warn("CSVPrinter is NULL! Skipping...");
-      return;
+  private boolean processAIP(IndexService index, ModelService model, StorageService storage,
+    InventoryReportWriter writer, AIP aip) {
+    if (writer.isWritten(aip.getId())) {
+      return true;
     }
 
     try {
+      List<List<String>> rows = new ArrayList<>();
       if (outputDataInformation && aip.getRepresentations() != null) {
-        List<List<String>> dataInformation = InventoryReportPluginUtils.getDataInformation(fields, aip, model, storage);
-        csvFilePrinter.printRecords(dataInformation);
+        rows.addAll(InventoryReportPluginUtils.getDataInformation(fields, aip, index, model, storage));
       }
       if (outputDescriptiveMetadataInformation && aip.getDescriptiveMetadata() != null) {
-        List<List<String>> dataInformation = InventoryReportPluginUtils.getDescriptiveMetadataInformation(fields, aip,
-          model, storage);
-        csvFilePrinter.printRecords(dataInformation);
+        rows.addAll(InventoryReportPluginUtils.getDescriptiveMetadataInformation(fields, aip, model, storage));
       }
       if (otherMetadataTypes != null && !otherMetadataTypes.isEmpty()) {
         for (String otherMetadataType : otherMetadataTypes) {
-          List<List<String>> otherMetadataInformation = InventoryReportPluginUtils.getOtherMetadataInformation(fields,
-            otherMetadataType, aip, model, storage);
-          csvFilePrinter.printRecords(otherMetadataInformation);
+          rows.addAll(
+            InventoryReportPluginUtils.getOtherMetadataInformation(fields, otherMetadataType, aip, model, storage));
         }
       }
-      jobPluginInfo.incrementObjectsProcessedWithSuccess();
+      writer.write(aip.getId(), InventoryReportWriter.toCSV(rows));
+      return true;
     } catch (IOException e) {
       LOGGER.error("Error writing CSV file", e);
-      jobPluginInfo.incrementObjectsProcessedWithFailure();
+      return false;
     }
   }
 
+  @Override
+  public boolean isDistributable() {
+    // the report is written by the node that opened it
+    return false;
+  }
+
   @Override
   public Report beforeAllExecute(IndexService index, ModelService model, StorageService storage)
     throws PluginException {
-    try {
-      Path jobCSVTempFolder = getJobCSVTempFolder();
-      Files.createDirectories(jobCSVTempFolder);
-    } catch (IOException e) {
-      LOGGER.error("Error while creating plugin working dir", e);
-    }
     try {
       Path reportsFolder = RodaCoreFactory.getRodaHomePath().resolve(RodaConstants.CORE_REPORT_FOLDER);
       if (FSUtils.exists(reportsFolder)) {
@@ -272,39 +308,78 @@ public class InventoryReportPlugin extends AbstractPlugin<AIP> {
     } catch (IOException e) {
       LOGGER.error("Error while creating report dir", e);
     }
+
+    String jobId = PluginHelper.getJobId(this);
+    synchronized (WRITERS) {
+      closeReportsOfEndedJobs(model);
+      for (InventoryReportWriter writer : WRITERS.values()) {
+        if (writer.getOutput().equals(output)) {
+          throw new PluginException("Inventory report " + output + " is already being written by another job");
+        }
+      }
+
+      try {
+        int checkpointInterval = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_CHECKPOINT_INTERVAL,
+          CHECKPOINT_INTERVAL_PROPERTY);
+        WRITERS.put(jobId,
+          new InventoryReportWriter(output, getReportId(output, fields, outputDataInformation,
+            outputDescriptiveMetadataInformation, otherMetadataTypes), compress, enableHeaders ? fields : null,
+            checkpointInterval));
+      } catch (IOException e) {
+        throw new PluginException("Unable to create inventory report " + output, e);
+      }
+    }
     return new Report();
   }
 
-  private Path getJobCSVTempFolder() {
-    Path wd = RodaCoreFactory.getWorkingDirectory();
-    Path csvExportTempFolder = wd.resolve(InventoryReportPlugin.EXPORT_CSV_TEMP_FOLDER);
-    return csvExportTempFolder.resolve(PluginHelper.getJobId(this));
+  /**
+   * Closes, keeping their checkpoints, the reports left open by jobs that were
+   * stopped or failed before their end, so that they can be resumed.
+   */
+  private static void closeReportsOfEndedJobs(ModelService model) {
+    for (Map.Entry<String, InventoryReportWriter> entry : WRITERS.entrySet()) {
+      boolean ended;
+      try {
+        Job job = model.retrieveJob(entry.getKey());
+        ended = job.isInFinalState() || job.isStopping();
+      } catch (NotFoundException e) {
+        ended = true;
+      } catch (RODAException e) {
+        LOGGER.warn("Error retrieving job {} of inventory report {}", entry.getKey(), entry.getValue().getOutput(), e);
+        ended = false;
+      }
+
+      if (ended && WRITERS.remove(entry.getKey(), entry.getValue())) {
+        LOGGER.info("Closing inventory report {} of job {}, which has ended", entry.getValue().getOutput(),
+          entry.getKey());
+        IOUtils.closeQuietly(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return the identity of a report, its output and a hash of the options that
+   *         produce its rows, so that any later job writing the same report
+   *         resumes it if it was interrupted.
+   */
+  public static String getReportId(Path output, List<String> fields, boolean outputDataInformation,
+    boolean outputDescriptiveMetadataInformation, List<String> otherMetadataTypes) {
+    String options = fields + " " + outputDataInformation + " " + outputDescriptiveMetadataInformation + " "
+      + otherMetadataTypes;
+    return output.toAbsolutePath() + " " + IdUtils.createUUID(options);
   }
 
   @Override
   public Report afterAllExecute(IndexService index, ModelService model, StorageService storage) throws PluginException {
-    CSVFormat csvFileFormat = CSVFormat.DEFAULT.withRecordSeparator("\n");
-    Path csvTempFolder = getJobCSVTempFolder();
-
-    if (csvTempFolder != null) {
-      List<Path> partials = new ArrayList<>();
-      try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(csvTempFolder);
-        FileWriter fileWriter = new FileWriter(output.toFile());
-        CSVPrinter csvFilePrinter = new CSVPrinter(fileWriter, csvFileFormat)) {
-        if (enableHeaders) {
-          csvFilePrinter.printRecord(fields);
-        }
-        for (Path path : directoryStream) {
-          partials.add(path);
-        }
-      } catch (IOException e) {
-        LOGGER.error("Error while merging partial CSVs", e);
-      }
+    InventoryReportWriter writer = WRITERS.remove(PluginHelper.getJobId(this));
+    if (writer != null) {
+      // every AIP was processed (the ones that failed are reported by the job), so
+      // the checkpoints are no longer needed
       try {
-        InventoryReportPluginUtils.mergeFiles(partials, output);
-        FSUtils.deletePathQuietly(csvTempFolder);
+        writer.complete();
       } catch (IOException e) {
-        LOGGER.error("Error while merging partial CSVs", e);
+        IOUtils.closeQuietly(writer);
+        LOGGER.error("Error while closing inventory report", e);
       }
     }
     return new Report();
@@ -8,11 +8,11 @@
 package org.roda.core.plugins.plugins.base;
 
 import java.io.IOException;
-import java.nio.channels.FileChannel;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,18 +20,23 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.xmlbeans.XmlException;
 import org.roda.core.common.PremisV3Utils;
 import org.roda.core.common.iterables.CloseableIterable;
+import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.common.OptionalWithCause;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.ip.AIP;
-import org.roda.core.data.v2.ip.File;
+import org.roda.core.data.v2.ip.IndexedFile;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
 import org.roda.core.data.v2.ip.metadata.Fixity;
 import org.roda.core.data.v2.ip.metadata.OtherMetadata;
+import org.roda.core.index.IndexService;
+import org.roda.core.index.utils.IterableIndexResult;
 import org.roda.core.model.ModelService;
 import org.roda.core.model.utils.ModelUtils;
 import org.roda.core.storage.Binary;
@@ -44,43 +49,29 @@ import org.slf4j.LoggerFactory;
 public class InventoryReportPluginUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(InventoryReportPluginUtils.class);
 
+  private static final List<String> FILE_FIELDS_TO_RETURN = Arrays.asList(RodaConstants.INDEX_UUID,
+    RodaConstants.INDEX_ID, RodaConstants.FILE_AIP_ID, RodaConstants.FILE_REPRESENTATION_ID, RodaConstants.FILE_PATH,
+    RodaConstants.FILE_ISDIRECTORY, RodaConstants.FILE_HASH);
+
   private InventoryReportPluginUtils() {
     // do nothing
   }
 
-  public static void mergeFiles(List<Path> files, Path mergedFile) throws IOException {
-    try (FileChannel out = FileChannel.open(mergedFile, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
-      for (Path path : files) {
-        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
-          for (long p = 0, l = in.size(); p < l;) {
-            p += in.transferTo(p, l - p, out);
-          }
-        }
-      }
-    } catch (IOException e) {
-      throw e;
-    }
-  }
-
-  public static List<List<String>> getDataInformation(List<String> fields, AIP aip, ModelService model,
-    StorageService storage) {
+  /**
+   * Lists the data files of an AIP from the file index. The checksums are also
+   * taken from the index and only the ones not indexed are read from the PREMIS
+   * file or, as a last resort, computed from the file content.
+   */
+  public static List<List<String>> getDataInformation(List<String> fields, AIP aip, IndexService index,
+    ModelService model, StorageService storage) {
     List<List<String>> dataInformation = new ArrayList<>();
-    for (Representation representation : aip.getRepresentations()) {
-      boolean recursive = true;
-      try (CloseableIterable<OptionalWithCause<File>> representationFiles = model.listFilesUnder(aip.getId(),
-        representation.getId(), recursive)) {
-        for (OptionalWithCause<File> subfile : representationFiles) {
-          if (subfile.isPresent()) {
-            dataInformation.add(retrieveFileInfo(fields, subfile.get(), aip, model, storage));
-          } else {
-            LOGGER.error("Cannot retrieve file information", subfile.getCause());
-          }
-        }
-      } catch (NotFoundException | GenericException | RequestNotValidException | AuthorizationDeniedException
-        | IOException e) {
-        LOGGER.error("Error retrieving files of representation '{}' of AIP '{}': " + e.getMessage(),
-          representation.getId(), aip.getId());
+    Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.FILE_AIP_ID, aip.getId()));
+    try (IterableIndexResult<IndexedFile> files = index.findAll(IndexedFile.class, filter, FILE_FIELDS_TO_RETURN)) {
+      for (IndexedFile file : files) {
+        dataInformation.add(retrieveFileInfo(fields, file, aip, model, storage));
       }
+    } catch (GenericException | RequestNotValidException | IOException | RuntimeException e) {
+      LOGGER.error("Error retrieving files of AIP '{}': {}", aip.getId(), e.getMessage(), e);
     }
     return dataInformation;
   }
@@ -148,10 +139,11 @@ public class InventoryReportPluginUtils {
     return fileInfo;
   }
 
-  public static List<String> retrieveFileInfo(List<String> fields, File file, AIP aip, ModelService model,
+  public static List<String> retrieveFileInfo(List<String> fields, IndexedFile file, AIP aip, ModelService model,
     StorageService storage) {
 
     List<String> fileInfo = new ArrayList<>();
+    Map<String, String> indexedFixities = null;
     List<Fixity> fixities = null;
 
     for (String fieldName : fields) {
@@ -168,22 +160,30 @@ public class InventoryReportPluginUtils {
       } else if (fieldName.equalsIgnoreCase(InventoryReportPlugin.CSV_FIELD_ISDIRECTORY)) {
         fileInfo.add(String.valueOf(file.isDirectory()));
       } else if (InventoryReportPlugin.CHECKSUM_ALGORITHMS.contains(fieldName.toUpperCase())) {
-        if (!file.isDirectory()) {
+        if (file.isDirectory()) {
+          fileInfo.add("");
+          continue;
+        }
+
+        if (indexedFixities == null) {
+          indexedFixities = parseIndexedFixities(file.getHash());
+        }
+
+        String fixity = indexedFixities.get(fieldName.toUpperCase());
+        if (fixity == null) {
           if (fixities == null) {
             try {
-              fixities = PremisV3Utils.extractFixities(model.retrievePreservationFile(file));
+              fixities = PremisV3Utils.extractFixities(model.retrievePreservationFile(file.getAipId(),
+                file.getRepresentationId(), file.getPath(), file.getId()));
             } catch (GenericException | RequestNotValidException | NotFoundException | AuthorizationDeniedException
               | XmlException | IOException e) {
               LOGGER.error("Error extracting fixities from premis file.", e);
+              fixities = Collections.emptyList();
             }
           }
-
-          if (fixities != null) {
-            fileInfo.add(getFixity(fieldName, fixities, file, storage));
-          } else {
-            fileInfo.add("");
-          }
+          fixity = getFixity(fieldName, fixities, file, storage);
         }
+        fileInfo.add(fixity);
       } else if (fieldName.equalsIgnoreCase(InventoryReportPlugin.CSV_FILE_TYPE)) {
         fileInfo.add(InventoryReportPlugin.CSV_LINE_TYPE.DATA.toString());
       } else {
@@ -194,7 +194,26 @@ public class InventoryReportPluginUtils {
     return fileInfo;
   }
 
-  private static String getFixity(String fixityAlgorithm, List<Fixity> fixities, File file, StorageService storage) {
+  /**
+   * Parses the indexed hashes, formatted as "digest (algorithm[, originator])",
+   * into a map from the algorithm (in upper case) to the digest.
+   */
+  private static Map<String, String> parseIndexedFixities(List<String> hashes) {
+    Map<String, String> fixities = new HashMap<>();
+    if (hashes != null) {
+      for (String hash : hashes) {
+        int start = hash.indexOf(" (");
+        if (start > 0 && hash.endsWith(")")) {
+          String algorithm = StringUtils.substringBefore(hash.substring(start + 2, hash.length() - 1), ",");
+          fixities.putIfAbsent(algorithm.trim().toUpperCase(), hash.substring(0, start));
+        }
+      }
+    }
+    return fixities;
+  }
+
+  private static String getFixity(String fixityAlgorithm, List<Fixity> fixities, IndexedFile file,
+    StorageService storage) {
     String fixity = "";
     if (fixities != null && !fixities.isEmpty()) {
       for (Fixity f : fixities) {
@@ -206,7 +225,8 @@ public class InventoryReportPluginUtils {
     }
     if (StringUtils.isBlank(fixity)) {
       try {
-        Binary binary = storage.getBinary(ModelUtils.getFileStoragePath(file));
+        Binary binary = storage.getBinary(ModelUtils.getFileStoragePath(file.getAipId(), file.getRepresentationId(),
+          file.getPath(), file.getId()));
         fixity = FileUtility.checksum(binary.getContent().createInputStream(), fixityAlgorithm);
       } catch (NoSuchAlgorithmException | IOException | GenericException | RequestNotValidException | NotFoundException
         | AuthorizationDeniedException e) {
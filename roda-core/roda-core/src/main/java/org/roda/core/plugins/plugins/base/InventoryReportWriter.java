@@ -0,0 +1,272 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.plugins.base;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the rows of an inventory report, one AIP at a time, to a single output
+ * file (optionally gzip-compressed).
+ *
+ * Every few AIPs the output is flushed and a checkpoint, with the AIPs written
+ * since the previous one and the output length, is appended to a file next to
+ * the output. A report with the same identity (the options that produce its
+ * rows) written to the same output is resumed from the last checkpoint: what
+ * was written after it is discarded and the AIPs already in the report are
+ * skipped. A report with another identity starts from the
+ * beginning. When compressed, each checkpoint closes a gzip member
+ * (a file with several members is still a valid gzip file), so that the output
+ * can be truncated at any checkpoint.
+ */
+public class InventoryReportWriter implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(InventoryReportWriter.class);
+
+  public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+  private static final String CHECKPOINT_REPORT = "report ";
+  private static final String CHECKPOINT_AIP = "aip ";
+  private static final String CHECKPOINT_OFFSET = "offset ";
+
+  private final Path output;
+  private final Path checkpointFile;
+  private final String identity;
+  private final boolean compress;
+  private final int checkpointInterval;
+
+  private final Set<String> written = ConcurrentHashMap.newKeySet();
+  private final List<String> pending = new ArrayList<>();
+  private final boolean resumed;
+
+  private FileChannel channel;
+  private OutputStream outputStream;
+  private Writer writer;
+  private Writer checkpointWriter;
+
+  /**
+   * @param output
+   *          the report file.
+   * @param reportId
+   *          identifies the options that produce the rows of the report, only
+   *          a report with the same id (and the same compression and headers)
+   *          is resumed.
+   * @param compress
+   *          whether to gzip the report.
+   * @param headers
+   *          the header line, or null to write no headers.
+   * @param checkpointInterval
+   *          the number of AIPs written between checkpoints.
+   */
+  public InventoryReportWriter(Path output, String reportId, boolean compress, List<String> headers,
+    int checkpointInterval) throws IOException {
+    this.output = output;
+    this.checkpointFile = output.resolveSibling(output.getFileName() + CHECKPOINT_SUFFIX);
+    this.identity = URLEncoder.encode(reportId + " " + compress + " " + headers, StandardCharsets.UTF_8.name());
+    this.compress = compress;
+    this.checkpointInterval = Math.max(1, checkpointInterval);
+
+    long offset = readCheckpoint();
+    this.resumed = offset >= 0;
+
+    if (resumed) {
+      LOGGER.info("Resuming inventory report {} with {} AIPs already written", output, written.size());
+      channel = FileChannel.open(output, StandardOpenOption.WRITE);
+      channel.truncate(offset);
+      channel.position(offset);
+    } else {
+      written.clear();
+      channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+    checkpointWriter = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+      resumed ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    openWriter();
+
+    if (!resumed) {
+      checkpointWriter.write(CHECKPOINT_REPORT + identity + "\n");
+      if (headers != null) {
+        writer.write(toCSV(Collections.singletonList(headers)));
+      }
+      checkpoint(true);
+    }
+  }
+
+  /**
+   * Reads the checkpoint file, dropping the AIPs written after the last
+   * checkpoint.
+   *
+   * @return the length of the output at the last checkpoint, or -1 if the
+   *         report must be started from the beginning, e.g. because the
+   *         checkpoints belong to another report.
+   */
+  private long readCheckpoint() throws IOException {
+    if (!Files.exists(checkpointFile) || !Files.exists(output)) {
+      return -1;
+    }
+
+    long offset = -1;
+    int validLength = 0;
+    int position = 0;
+    List<String> aips = new ArrayList<>();
+    byte[] content = Files.readAllBytes(checkpointFile);
+    String text = new String(content, StandardCharsets.UTF_8);
+
+    // only complete lines count, as the process may have stopped while writing
+    for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', position)) {
+      String line = text.substring(position, end);
+      if (position == 0 && !line.equals(CHECKPOINT_REPORT + identity)) {
+        return -1;
+      }
+      position = end + 1;
+      if (line.startsWith(CHECKPOINT_AIP)) {
+        aips.add(line.substring(CHECKPOINT_AIP.length()));
+      } else if (line.startsWith(CHECKPOINT_OFFSET)) {
+        offset = Long.parseLong(line.substring(CHECKPOINT_OFFSET.length()));
+        written.addAll(aips);
+        aips.clear();
+        validLength = text.substring(0, position).getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+
+    if (offset < 0 || Files.size(output) < offset) {
+      return -1;
+    }
+
+    if (validLength < content.length) {
+      try (FileChannel checkpointChannel = FileChannel.open(checkpointFile, StandardOpenOption.WRITE)) {
+        checkpointChannel.truncate(validLength);
+      }
+    }
+    return offset;
+  }
+
+  private void openWriter() throws IOException {
+    OutputStream stream = outputStream;
+    if (compress) {
+      // closing the gzip stream ends the member without closing the output
+      stream = new GZIPOutputStream(new CloseShieldOutputStream(outputStream));
+    }
+    writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+  }
+
+  public Path getOutput() {
+    return output;
+  }
+
+  /**
+   * @return true if this report is the continuation of an interrupted one.
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  public boolean isWritten(String aipId) {
+    return written.contains(aipId);
+  }
+
+  /**
+   * @return the number of AIPs in the report, including the ones written
+   *         before it was resumed.
+   */
+  public int size() {
+    return written.size();
+  }
+
+  /**
+   * Appends all the rows of an AIP, already formatted as CSV (see
+   * {@link #toCSV(List)}).
+   */
+  public synchronized void write(String aipId, String rows) throws IOException {
+    if (writer == null) {
+      throw new IOException("Inventory report " + output + " is closed");
+    }
+    if (written.add(aipId)) {
+      writer.write(rows);
+      pending.add(aipId);
+      if (pending.size() >= checkpointInterval) {
+        checkpoint(true);
+      }
+    }
+  }
+
+  private void checkpoint(boolean reopen) throws IOException {
+    if (compress) {
+      writer.close();
+    } else {
+      writer.flush();
+    }
+    outputStream.flush();
+    channel.force(false);
+
+    for (String aipId : pending) {
+      checkpointWriter.write(CHECKPOINT_AIP + aipId + "\n");
+    }
+    checkpointWriter.write(CHECKPOINT_OFFSET + channel.position() + "\n");
+    checkpointWriter.flush();
+    pending.clear();
+
+    if (compress && reopen) {
+      openWriter();
+    }
+  }
+
+  /**
+   * Closes the report and removes its checkpoints, so that a new report to the
+   * same output starts from the beginning.
+   */
+  public synchronized void complete() throws IOException {
+    close();
+    Files.deleteIfExists(checkpointFile);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      try {
+        checkpoint(false);
+      } finally {
+        writer = null;
+        checkpointWriter.close();
+        outputStream.close();
+      }
+    }
+  }
+
+  public static String toCSV(List<? extends Iterable<?>> rows) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    try (CSVPrinter printer = new CSVPrinter(builder, CSVFormat.DEFAULT.withRecordSeparator("\n"))) {
+      printer.printRecords(rows);
+    }
+    return builder.toString();
+  }
+}
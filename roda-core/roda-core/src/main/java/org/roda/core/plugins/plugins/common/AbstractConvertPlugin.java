@@ -11,14 +11,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.xmlbeans.XmlException;
 import org.roda.core.RodaCoreFactory;
@@ -71,6 +74,8 @@ import org.roda.core.util.IdUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends AbstractAIPComponentsPlugin<T> {
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractConvertPlugin.class);
 
@@ -243,6 +248,7 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
       List<File> newFiles = new ArrayList<>();
       List<DIPFile> newDIPFiles = new ArrayList<>();
       List<File> unchangedFiles = new ArrayList<>();
+      boolean notifyFiles = false;
 
       for (Representation representation : aip.getRepresentations()) {
         newRepresentationID = IdUtils.createUUID();
@@ -257,6 +263,7 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
         try (CloseableIterable<OptionalWithCause<File>> allFiles = model.listFilesUnder(aip.getId(),
           representation.getId(), true)) {
           LOGGER.debug("Processing representation {}", representation);
+          List<PendingConversion> conversions = new ArrayList<>();
 
           for (OptionalWithCause<File> oFile : allFiles) {
             if (oFile.isPresent()) {
@@ -264,94 +271,9 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
               LOGGER.debug("Processing file {}", file);
 
               if (!file.isDirectory()) {
-                IndexedFile ifile = index.retrieve(IndexedFile.class, IdUtils.getFileId(file),
-                  RodaConstants.FILE_FORMAT_FIELDS_TO_RETURN);
-                String fileMimetype = ifile.getFileFormat().getMimeType();
-                String filePronom = ifile.getFileFormat().getPronom();
-                String fileFormat = ifile.getId().substring(ifile.getId().lastIndexOf('.') + 1);
-                List<String> applicableTo = getApplicableTo();
-                List<String> convertableTo = getConvertableTo();
-                Map<String, List<String>> pronomToExtension = getPronomToExtension();
-                Map<String, List<String>> mimetypeToExtension = getMimetypeToExtension();
-
-                if (doPluginExecute(fileFormat, filePronom, fileMimetype, applicableTo, convertableTo,
-                  pronomToExtension, mimetypeToExtension)) {
-
-                  fileFormat = getNewFileFormat(fileFormat, filePronom, fileMimetype, applicableTo, pronomToExtension,
-                    mimetypeToExtension);
-
-                  StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
-                  DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath);
-
-                  LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
-                  try {
-                    Path pluginResult = Files.createTempFile(getWorkingDirectory(), "converted",
-                      "." + getOutputFormat());
-                    String result = executePlugin(directAccess.getPath(), pluginResult, fileFormat);
-
-                    String newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
-                    ContentPayload payload = new FSPathContentPayload(pluginResult);
-
-                    if (createDIP) {
-                      FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
-                        file.getId());
-                      List<FileLink> links = new ArrayList<>();
-                      links.add(fileLink);
-
-                      DIP dip = new DIP();
-                      dip.setId(IdUtils.createUUID());
-                      dip.setFileIds(links);
-                      dip.setPermissions(aip.getPermissions());
-                      dip.setTitle(dipTitle);
-                      dip.setDescription(dipDescription);
-                      dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
-                      dip = model.createDIP(dip, true);
-                      newRepresentationID = dip.getId();
-
-                      DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
-                        directAccess.getPath().toFile().length(), payload, notify);
-                      newDIPFiles.add(f);
-                    } else {
-                      // create a new representation if it does not exist
-                      if (!newRepresentations.contains(newRepresentationID)) {
-                        LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, aip.getId());
-                        boolean original = false;
-                        newRepresentations.add(newRepresentationID);
-                        String newRepresentationType = representation.getType();
-
-                        if (StringUtils.isNotBlank(representationType)) {
-                          newRepresentationType = representationType;
-                        }
-
-                        model.createRepresentation(aip.getId(), newRepresentationID, original, newRepresentationType,
-                          notify, job.getUsername());
-                        reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(),
-                          IdUtils.getRepresentationId(representation.getAipId(), newRepresentationID));
-                      }
-
-                      File f = model.createFile(aip.getId(), newRepresentationID, file.getPath(), newFileId, payload,
-                        notify);
-                      newFiles.add(f);
-                    }
-
-                    alteredFiles.add(file);
-                    IOUtils.closeQuietly(directAccess);
-
-                    Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
-                      AIPState.ACTIVE);
-                    fileReportItem.setPluginState(pluginResultState).setPluginDetails(result);
-                    reportItem.addReport(fileReportItem);
-
-                  } catch (CommandException e) {
-                    pluginResultState = PluginState.PARTIAL_SUCCESS;
-                    reportState = pluginResultState;
-                    reportItem.setPluginState(pluginResultState)
-                      .addPluginDetails(e.getMessage() + "\n" + e.getOutput() + "\n");
-
-                    LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
-                      outputFormat, file.getId(), representation.getId(), aip.getId());
-                  }
-
+                PendingConversion conversion = planConversion(index, file);
+                if (conversion != null) {
+                  conversions.add(conversion);
                 } else {
                   unchangedFiles.add(file);
 
@@ -369,6 +291,84 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
             }
           }
 
+          ConversionExecutionService conversionService = ConversionExecutionService.getInstance();
+          for (List<PendingConversion> batch : Lists.partition(conversions, conversionService.getCommitBatchSize())) {
+            submitConversions(conversionService, storage, batch);
+
+            for (PendingConversion conversion : batch) {
+              File file = conversion.getFile();
+              String fileFormat = conversion.getFileFormat();
+
+              LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
+              try {
+                String result = awaitConversion(conversionService, storage, conversion);
+
+                String newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
+                ContentPayload payload = new FSPathContentPayload(conversion.getResult());
+
+                if (createDIP) {
+                  FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
+                    file.getId());
+                  List<FileLink> links = new ArrayList<>();
+                  links.add(fileLink);
+
+                  DIP dip = new DIP();
+                  dip.setId(IdUtils.createUUID());
+                  dip.setFileIds(links);
+                  dip.setPermissions(aip.getPermissions());
+                  dip.setTitle(dipTitle);
+                  dip.setDescription(dipDescription);
+                  dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
+                  dip = model.createDIP(dip, true);
+                  newRepresentationID = dip.getId();
+
+                  DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
+                    conversion.getSourceSize(), payload, notify);
+                  newDIPFiles.add(f);
+                } else {
+                  // create a new representation if it does not exist
+                  if (!newRepresentations.contains(newRepresentationID)) {
+                    LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, aip.getId());
+                    boolean original = false;
+                    newRepresentations.add(newRepresentationID);
+                    String newRepresentationType = representation.getType();
+
+                    if (StringUtils.isNotBlank(representationType)) {
+                      newRepresentationType = representationType;
+                    }
+
+                    model.createRepresentation(aip.getId(), newRepresentationID, original, newRepresentationType,
+                      notify, job.getUsername());
+                    reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(),
+                      IdUtils.getRepresentationId(representation.getAipId(), newRepresentationID));
+                  }
+
+                  // files are indexed together when the new representation is
+                  // updated with its PREMIS skeleton
+                  File f = model.createFile(aip.getId(), newRepresentationID, file.getPath(), newFileId, payload,
+                    notifyFiles);
+                  newFiles.add(f);
+                }
+
+                alteredFiles.add(file);
+
+                Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
+                  AIPState.ACTIVE);
+                fileReportItem.setPluginState(pluginResultState).setPluginDetails(result);
+                reportItem.addReport(fileReportItem);
+
+              } catch (CommandException e) {
+                pluginResultState = PluginState.PARTIAL_SUCCESS;
+                reportState = pluginResultState;
+                reportItem.setPluginState(pluginResultState)
+                  .addPluginDetails(e.getMessage() + "\n" + e.getOutput() + "\n");
+
+                LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
+                  outputFormat, file.getId(), representation.getId(), aip.getId());
+              }
+            }
+          }
+
           reportItem.setPluginState(pluginResultState);
 
           if (reportState.equals(PluginState.SUCCESS)) {
@@ -385,7 +385,7 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
 
           // add unchanged files to the new representation if created
           if (!alteredFiles.isEmpty() && !createDIP) {
-            createNewFilesOnRepresentation(storage, model, unchangedFiles, newRepresentationID, notify);
+            createNewFilesOnRepresentation(storage, model, unchangedFiles, newRepresentationID, notifyFiles);
           }
 
         } catch (RuntimeException | NotFoundException | GenericException | RequestNotValidException
@@ -442,6 +442,8 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
       aipId = representation.getAipId();
       PluginState reportState = PluginState.SUCCESS;
       boolean notify = true;
+      boolean notifyFiles = false;
+      DIP newDIP = null;
 
       Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getRepresentationId(representation),
         Representation.class, AIPState.ACTIVE);
@@ -455,6 +457,7 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
       try (CloseableIterable<OptionalWithCause<File>> allFiles = model.listFilesUnder(representation.getAipId(),
         representation.getId(), true)) {
         LOGGER.debug("Processing representation {}", representation);
+        List<PendingConversion> conversions = new ArrayList<>();
 
         for (OptionalWithCause<File> oFile : allFiles) {
           if (oFile.isPresent()) {
@@ -462,94 +465,9 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
             LOGGER.debug("Processing file {}", file);
 
             if (!file.isDirectory()) {
-              IndexedFile ifile = index.retrieve(IndexedFile.class, IdUtils.getFileId(file),
-                RodaConstants.FILE_FORMAT_FIELDS_TO_RETURN);
-              String fileMimetype = ifile.getFileFormat().getMimeType();
-              String filePronom = ifile.getFileFormat().getPronom();
-              String fileFormat = ifile.getId().substring(ifile.getId().lastIndexOf('.') + 1);
-              List<String> applicableTo = getApplicableTo();
-              List<String> convertableTo = getConvertableTo();
-              Map<String, List<String>> pronomToExtension = getPronomToExtension();
-              Map<String, List<String>> mimetypeToExtension = getMimetypeToExtension();
-
-              if (doPluginExecute(fileFormat, filePronom, fileMimetype, applicableTo, convertableTo, pronomToExtension,
-                mimetypeToExtension)) {
-
-                fileFormat = getNewFileFormat(fileFormat, filePronom, fileMimetype, applicableTo, pronomToExtension,
-                  mimetypeToExtension);
-
-                StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
-                DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath);
-
-                LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
-                try {
-                  Path pluginResult = Files.createTempFile(getWorkingDirectory(), "converted", "." + getOutputFormat());
-                  String result = executePlugin(directAccess.getPath(), pluginResult, fileFormat);
-                  ContentPayload payload = new FSPathContentPayload(pluginResult);
-
-                  if (!newRepresentations.contains(newRepresentationID)) {
-                    LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, aipId);
-                    boolean original = false;
-                    newRepresentations.add(newRepresentationID);
-
-                    if (createDIP) {
-                      FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
-                        file.getId());
-                      List<FileLink> links = new ArrayList<>();
-                      links.add(fileLink);
-
-                      AIP aip = model.retrieveAIP(aipId);
-
-                      DIP dip = new DIP();
-                      dip.setId(IdUtils.createUUID());
-                      dip.setFileIds(links);
-                      dip.setPermissions(aip.getPermissions());
-                      dip.setTitle(dipTitle);
-                      dip.setDescription(dipDescription);
-                      dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
-                      dip = model.createDIP(dip, true);
-                      newRepresentationID = dip.getId();
-                    } else {
-                      // INFO will be a parameter
-                      String newRepresentationType = RodaConstants.REPRESENTATION_TYPE_MIXED;
-
-                      if (StringUtils.isNotBlank(representationType)) {
-                        newRepresentationType = representationType;
-                      }
-
-                      model.createRepresentation(aipId, newRepresentationID, original, newRepresentationType, notify,
-                        job.getUsername());
-                      reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(),
-                        IdUtils.getRepresentationId(representation.getAipId(), newRepresentationID));
-                    }
-                  }
-
-                  String newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
-                  if (createDIP) {
-                    DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
-                      directAccess.getPath().toFile().length(), payload, notify);
-                    newDIPFiles.add(f);
-                  } else {
-                    File newFile = model.createFile(aipId, newRepresentationID, file.getPath(), newFileId, payload,
-                      notify);
-                    newFiles.add(newFile);
-                  }
-
-                  alteredFiles.add(file);
-                  IOUtils.closeQuietly(directAccess);
-
-                  Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
-                    AIPState.ACTIVE);
-                  fileReportItem.setPluginState(PluginState.SUCCESS).setPluginDetails(result);
-                  reportItem.addReport(fileReportItem);
-
-                } catch (CommandException e) {
-                  reportState = PluginState.PARTIAL_SUCCESS;
-                  reportItem.setPluginState(reportState).addPluginDetails(e.getMessage() + "\n" + e.getOutput() + "\n");
-
-                  LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
-                    outputFormat, file.getId(), representation.getId(), representation.getAipId());
-                }
+              PendingConversion conversion = planConversion(index, file);
+              if (conversion != null) {
+                conversions.add(conversion);
               } else {
                 unchangedFiles.add(file);
 
@@ -566,6 +484,86 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
           }
         }
 
+        ConversionExecutionService conversionService = ConversionExecutionService.getInstance();
+        for (List<PendingConversion> batch : Lists.partition(conversions, conversionService.getCommitBatchSize())) {
+          submitConversions(conversionService, storage, batch);
+
+          for (PendingConversion conversion : batch) {
+            File file = conversion.getFile();
+            String fileFormat = conversion.getFileFormat();
+
+            LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
+            try {
+              String result = awaitConversion(conversionService, storage, conversion);
+              ContentPayload payload = new FSPathContentPayload(conversion.getResult());
+
+              if (!newRepresentations.contains(newRepresentationID)) {
+                LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, aipId);
+                boolean original = false;
+                newRepresentations.add(newRepresentationID);
+
+                if (createDIP) {
+                  FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
+                    file.getId());
+                  List<FileLink> links = new ArrayList<>();
+                  links.add(fileLink);
+
+                  AIP aip = model.retrieveAIP(aipId);
+
+                  DIP dip = new DIP();
+                  dip.setId(IdUtils.createUUID());
+                  dip.setFileIds(links);
+                  dip.setPermissions(aip.getPermissions());
+                  dip.setTitle(dipTitle);
+                  dip.setDescription(dipDescription);
+                  dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
+                  newDIP = model.createDIP(dip, true);
+                  newRepresentationID = newDIP.getId();
+                } else {
+                  // INFO will be a parameter
+                  String newRepresentationType = RodaConstants.REPRESENTATION_TYPE_MIXED;
+
+                  if (StringUtils.isNotBlank(representationType)) {
+                    newRepresentationType = representationType;
+                  }
+
+                  model.createRepresentation(aipId, newRepresentationID, original, newRepresentationType, notify,
+                    job.getUsername());
+                  reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(),
+                    IdUtils.getRepresentationId(representation.getAipId(), newRepresentationID));
+                }
+              }
+
+              // new files are indexed once the whole representation or DIP is
+              // committed
+              String newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
+              if (createDIP) {
+                DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
+                  conversion.getSourceSize(), payload, notifyFiles);
+                newDIPFiles.add(f);
+              } else {
+                File newFile = model.createFile(aipId, newRepresentationID, file.getPath(), newFileId, payload,
+                  notifyFiles);
+                newFiles.add(newFile);
+              }
+
+              alteredFiles.add(file);
+
+              Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
+                AIPState.ACTIVE);
+              fileReportItem.setPluginState(PluginState.SUCCESS).setPluginDetails(result);
+              reportItem.addReport(fileReportItem);
+
+            } catch (CommandException e) {
+              reportState = PluginState.PARTIAL_SUCCESS;
+              reportItem.setPluginState(reportState).addPluginDetails(e.getMessage() + "\n" + e.getOutput() + "\n");
+
+              LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
+                outputFormat, file.getId(), representation.getId(), representation.getAipId());
+            }
+          }
+        }
+
         reportItem.setPluginState(reportState);
         if (reportState.equals(PluginState.SUCCESS) && ignoreFiles && !validationReport.getIssues().isEmpty()) {
           reportItem.setHtmlPluginDetails(true)
@@ -583,9 +581,10 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
         // add unchanged files to the new representation
         if (!alteredFiles.isEmpty()) {
           if (createDIP) {
-            createNewFilesOnDIP(storage, model, unchangedFiles, newRepresentationID, notify);
+            createNewFilesOnDIP(storage, model, unchangedFiles, newRepresentationID, notifyFiles);
+            model.notifyDIPUpdated(newDIP, false).failOnError();
           } else {
-            createNewFilesOnRepresentation(storage, model, unchangedFiles, newRepresentationID, notify);
+            createNewFilesOnRepresentation(storage, model, unchangedFiles, newRepresentationID, notifyFiles);
           }
         }
 
@@ -630,6 +629,7 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
 
     Map<String, String> changedRepresentationsOnAIPs = new HashMap<>();
     boolean notify = true;
+    boolean notifyFiles = false;
     String newRepresentationID = null;
     String newFileId = null;
     ArrayList<File> newFiles = new ArrayList<>();
@@ -638,150 +638,163 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
     PluginState reportState = PluginState.SUCCESS;
     PluginState pluginResultState = PluginState.SUCCESS;
 
-    for (File file : list) {
-      try {
-        LOGGER.debug("Processing file {}", file.getId());
-        newRepresentationID = IdUtils.createUUID();
-        pluginResultState = PluginState.SUCCESS;
+    ConversionExecutionService conversionService;
+    try {
+      conversionService = ConversionExecutionService.getInstance();
+    } catch (IOException e) {
+      throw new PluginException("Could not start conversion execution service", e);
+    }
 
-        reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class, AIPState.ACTIVE);
-        if (createDIP) {
-          reportItem.setOutcomeObjectClass(DIP.class.getName());
+    for (List<File> batch : Lists.partition(list, conversionService.getCommitBatchSize())) {
+      // start all conversions of the batch before committing any of them
+      Map<String, PendingConversion> conversions = new HashMap<>();
+      for (File file : batch) {
+        if (!file.isDirectory()) {
+          try {
+            conversions.put(IdUtils.getFileId(file), planConversion(index, file));
+          } catch (RuntimeException | NotFoundException | GenericException e) {
+            // the error will be reported when the file is processed
+          }
         }
+      }
+      submitConversions(conversionService, storage,
+        conversions.values().stream().filter(Objects::nonNull).collect(Collectors.toList()));
 
-        if (!file.isDirectory()) {
-          IndexedFile ifile = index.retrieve(IndexedFile.class, IdUtils.getFileId(file),
-            RodaConstants.FILE_FORMAT_FIELDS_TO_RETURN);
-          String fileMimetype = ifile.getFileFormat().getMimeType();
-          String filePronom = ifile.getFileFormat().getPronom();
-          String fileFormat = ifile.getId().substring(ifile.getId().lastIndexOf('.') + 1);
-          List<String> applicableTo = getApplicableTo();
-          List<String> convertableTo = getConvertableTo();
-          Map<String, List<String>> pronomToExtension = getPronomToExtension();
-          Map<String, List<String>> mimetypeToExtension = getMimetypeToExtension();
-
-          if (doPluginExecute(fileFormat, filePronom, fileMimetype, applicableTo, convertableTo, pronomToExtension,
-            mimetypeToExtension)) {
-            fileFormat = getNewFileFormat(fileFormat, filePronom, fileMimetype, applicableTo, pronomToExtension,
-              mimetypeToExtension);
-
-            StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
-            DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath);
+      for (File file : batch) {
+        try {
+          LOGGER.debug("Processing file {}", file.getId());
+          newRepresentationID = IdUtils.createUUID();
+          pluginResultState = PluginState.SUCCESS;
 
-            LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
-            try {
-              Path pluginResult = Files.createTempFile(getWorkingDirectory(), "converted", "." + getOutputFormat());
-              String result = executePlugin(directAccess.getPath(), pluginResult, fileFormat);
+          reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class, AIPState.ACTIVE);
+          if (createDIP) {
+            reportItem.setOutcomeObjectClass(DIP.class.getName());
+          }
 
-              ContentPayload payload = new FSPathContentPayload(pluginResult);
-              StoragePath storagePath = ModelUtils.getRepresentationStoragePath(file.getAipId(),
-                file.getRepresentationId());
+          if (!file.isDirectory()) {
+            String fileUUID = IdUtils.getFileId(file);
+            PendingConversion conversion = conversions.containsKey(fileUUID) ? conversions.get(fileUUID)
+              : planConversion(index, file);
+
+            if (conversion != null) {
+              String fileFormat = conversion.getFileFormat();
+
+              LOGGER.debug("Running a ConvertPlugin ({} to {}) on {}", fileFormat, outputFormat, file.getId());
+              try {
+                String result = awaitConversion(conversionService, storage, conversion);
+
+                ContentPayload payload = new FSPathContentPayload(conversion.getResult());
+                StoragePath storagePath = ModelUtils.getRepresentationStoragePath(file.getAipId(),
+                  file.getRepresentationId());
+
+                // create a new representation if it does not exist
+                LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, file.getAipId());
+                boolean original = false;
+                if (createDIP) {
+                  FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
+                    file.getId());
+                  List<FileLink> links = new ArrayList<>();
+                  links.add(fileLink);
+
+                  AIP aip = model.retrieveAIP(file.getAipId());
+
+                  DIP dip = new DIP();
+                  dip.setId(IdUtils.createUUID());
+                  dip.setFileIds(links);
+                  dip.setPermissions(aip.getPermissions());
+                  dip.setTitle(dipTitle);
+                  dip.setDescription(dipDescription);
+                  dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
+                  dip = model.createDIP(dip, true);
+                  newRepresentationID = dip.getId();
+                } else {
+                  // INFO will be a parameter
+                  String newRepresentationType = RodaConstants.REPRESENTATION_TYPE_MIXED;
 
-              // create a new representation if it does not exist
-              LOGGER.debug("Creating a new representation {} on AIP {}", newRepresentationID, file.getAipId());
-              boolean original = false;
-              if (createDIP) {
-                FileLink fileLink = new FileLink(file.getAipId(), file.getRepresentationId(), file.getPath(),
-                  file.getId());
-                List<FileLink> links = new ArrayList<>();
-                links.add(fileLink);
-
-                AIP aip = model.retrieveAIP(file.getAipId());
-
-                DIP dip = new DIP();
-                dip.setId(IdUtils.createUUID());
-                dip.setFileIds(links);
-                dip.setPermissions(aip.getPermissions());
-                dip.setTitle(dipTitle);
-                dip.setDescription(dipDescription);
-                dip.setType(RodaConstants.DIP_TYPE_CONVERSION);
-                dip = model.createDIP(dip, true);
-                newRepresentationID = dip.getId();
-              } else {
-                // INFO will be a parameter
-                String newRepresentationType = RodaConstants.REPRESENTATION_TYPE_MIXED;
+                  if (StringUtils.isNotBlank(representationType)) {
+                    newRepresentationType = representationType;
+                  }
 
-                if (StringUtils.isNotBlank(representationType)) {
-                  newRepresentationType = representationType;
+                  model.createRepresentation(file.getAipId(), newRepresentationID, original, newRepresentationType,
+                    model.getStorage(), storagePath, true, job.getUsername());
                 }
 
-                model.createRepresentation(file.getAipId(), newRepresentationID, original, newRepresentationType,
-                  model.getStorage(), storagePath, true, job.getUsername());
-              }
+                // update file on new representation
+                newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
 
-              // update file on new representation
-              newFileId = file.getId().replaceFirst("[.][^.]+$", "." + outputFormat);
+                if (createDIP) {
+                  DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
+                    conversion.getSourceSize(), payload, notify);
+                  newDIPFiles.add(f);
+                } else {
+                  // the new representation is reindexed as a whole when its
+                  // PREMIS skeleton is created
+                  model.deleteFile(file.getAipId(), newRepresentationID, file.getPath(), file.getId(), notifyFiles);
+                  File f = model.createFile(file.getAipId(), newRepresentationID, file.getPath(), newFileId, payload,
+                    notifyFiles);
+                  newFiles.add(f);
+                  reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(), IdUtils.getFileId(f));
+                  changedRepresentationsOnAIPs.put(file.getRepresentationId(), file.getAipId());
+                }
 
-              if (createDIP) {
-                DIPFile f = model.createDIPFile(newRepresentationID, file.getPath(), newFileId,
-                  directAccess.getPath().toFile().length(), payload, notify);
-                newDIPFiles.add(f);
+                Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
+                  AIPState.ACTIVE);
+                fileReportItem.setPluginState(PluginState.SUCCESS).setPluginDetails(result);
+                reportItem.addReport(fileReportItem);
+
+              } catch (CommandException e) {
+                pluginResultState = PluginState.PARTIAL_SUCCESS;
+                Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
+                  AIPState.ACTIVE);
+                fileReportItem.setPluginState(PluginState.PARTIAL_SUCCESS)
+                  .setPluginDetails(e.getMessage() + "\n" + e.getOutput());
+                reportItem.addReport(fileReportItem);
+
+                LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
+                  outputFormat, file.getId(), file.getRepresentationId(), file.getAipId());
+              }
+            } else {
+              if (ignoreFiles) {
+                reportItem.setPluginDetails("This file was ignored.");
               } else {
-                model.deleteFile(file.getAipId(), newRepresentationID, file.getPath(), file.getId(), notify);
-                File f = model.createFile(file.getAipId(), newRepresentationID, file.getPath(), newFileId, payload,
-                  notify);
-                newFiles.add(f);
-                reportItem.setSourceAndOutcomeObjectId(reportItem.getSourceObjectId(), IdUtils.getFileId(f));
-                changedRepresentationsOnAIPs.put(file.getRepresentationId(), file.getAipId());
+                pluginResultState = PluginState.FAILURE;
+                reportItem.setPluginDetails(
+                  "This file was not ignored and it is not listed on the supported input file formats.");
               }
-
-              Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
-                AIPState.ACTIVE);
-              fileReportItem.setPluginState(PluginState.SUCCESS).setPluginDetails(result);
-              reportItem.addReport(fileReportItem);
-
-            } catch (CommandException e) {
-              pluginResultState = PluginState.PARTIAL_SUCCESS;
-              Report fileReportItem = PluginHelper.initPluginReportItem(this, file.getId(), File.class,
-                AIPState.ACTIVE);
-              fileReportItem.setPluginState(PluginState.PARTIAL_SUCCESS)
-                .setPluginDetails(e.getMessage() + "\n" + e.getOutput());
-              reportItem.addReport(fileReportItem);
-
-              LOGGER.debug("Conversion ({} to {}) failed on file {} of representation {} from AIP {}", fileFormat,
-                outputFormat, file.getId(), file.getRepresentationId(), file.getAipId());
             }
+          }
+
+          if (!pluginResultState.equals(PluginState.SUCCESS)) {
+            reportState = PluginState.FAILURE;
+            jobPluginInfo.incrementObjectsProcessedWithFailure();
           } else {
-            if (ignoreFiles) {
-              reportItem.setPluginDetails("This file was ignored.");
-            } else {
-              pluginResultState = PluginState.FAILURE;
-              reportItem.setPluginDetails(
-                "This file was not ignored and it is not listed on the supported input file formats.");
-            }
+            jobPluginInfo.incrementObjectsProcessedWithSuccess();
           }
-        }
 
-        if (!pluginResultState.equals(PluginState.SUCCESS)) {
+        } catch (RuntimeException | NotFoundException | GenericException | RequestNotValidException
+          | AuthorizationDeniedException | IOException | AlreadyExistsException e) {
+          LOGGER.error("Error processing File {}: {}", file.getId(), e.getMessage(), e);
           reportState = PluginState.FAILURE;
+          reportItem.setPluginDetails(e.getMessage());
           jobPluginInfo.incrementObjectsProcessedWithFailure();
-        } else {
-          jobPluginInfo.incrementObjectsProcessedWithSuccess();
+        } finally {
+          reportItem.setPluginState(pluginResultState);
+          report.addReport(reportItem);
+          PluginHelper.updatePartialJobReport(this, model, reportItem, true, job);
         }
 
-      } catch (RuntimeException | NotFoundException | GenericException | RequestNotValidException
-        | AuthorizationDeniedException | IOException | AlreadyExistsException e) {
-        LOGGER.error("Error processing File {}: {}", file.getId(), e.getMessage(), e);
-        reportState = PluginState.FAILURE;
-        reportItem.setPluginDetails(e.getMessage());
-        jobPluginInfo.incrementObjectsProcessedWithFailure();
-      } finally {
-        reportItem.setPluginState(pluginResultState);
-        report.addReport(reportItem);
-        PluginHelper.updatePartialJobReport(this, model, reportItem, true, job);
-      }
-
-      boolean notifyEvent = false;
-      createEvent(model, index, file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId(), outputFormat,
-        reportState, Arrays.asList(file), newFiles, notifyEvent);
-
-      if (!createDIP) {
-        try {
-          Representation rep = model.retrieveRepresentation(file.getAipId(), newRepresentationID);
-          createPremisSkeletonOnRepresentation(model, file.getAipId(), rep);
-        } catch (RequestNotValidException | GenericException | NotFoundException | AuthorizationDeniedException
-          | ValidationException | IOException | XmlException e) {
-          LOGGER.error("Error running premis skeleton on new representation: {}", e.getMessage());
+        boolean notifyEvent = false;
+        createEvent(model, index, file.getAipId(), file.getRepresentationId(), file.getPath(), file.getId(),
+          outputFormat, reportState, Arrays.asList(file), newFiles, notifyEvent);
+
+        if (!createDIP) {
+          try {
+            Representation rep = model.retrieveRepresentation(file.getAipId(), newRepresentationID);
+            createPremisSkeletonOnRepresentation(model, file.getAipId(), rep);
+          } catch (RequestNotValidException | GenericException | NotFoundException | AuthorizationDeniedException
+            | ValidationException | IOException | XmlException e) {
+            LOGGER.error("Error running premis skeleton on new representation: {}", e.getMessage());
+          }
         }
       }
     }
@@ -789,9 +802,136 @@ public abstract class AbstractConvertPlugin<T extends IsRODAObject> extends Abst
     return report;
   }
 
+  /**
+   * Converts the file from the input path into the output path. Conversions run
+   * concurrently on the {@link ConversionExecutionService} pool, so
+   * implementations must not keep per-file state in plugin fields. The output
+   * path is inside the warm working directory of the conversion.
+   */
   public abstract String executePlugin(Path inputPath, Path outputPath, String fileFormat)
     throws UnsupportedOperationException, IOException, CommandException;
 
+  private PendingConversion planConversion(IndexService index, File file) throws NotFoundException, GenericException {
+    IndexedFile ifile = index.retrieve(IndexedFile.class, IdUtils.getFileId(file),
+      RodaConstants.FILE_FORMAT_FIELDS_TO_RETURN);
+    String fileMimetype = ifile.getFileFormat().getMimeType();
+    String filePronom = ifile.getFileFormat().getPronom();
+    String fileFormat = ifile.getId().substring(ifile.getId().lastIndexOf('.') + 1);
+    List<String> applicableTo = getApplicableTo();
+    List<String> convertableTo = getConvertableTo();
+    Map<String, List<String>> pronomToExtension = getPronomToExtension();
+    Map<String, List<String>> mimetypeToExtension = getMimetypeToExtension();
+
+    PendingConversion conversion = null;
+    if (doPluginExecute(fileFormat, filePronom, fileMimetype, applicableTo, convertableTo, pronomToExtension,
+      mimetypeToExtension)) {
+      conversion = new PendingConversion(file, getNewFileFormat(fileFormat, filePronom, fileMimetype, applicableTo,
+        pronomToExtension, mimetypeToExtension));
+    }
+    return conversion;
+  }
+
+  private void submitConversions(ConversionExecutionService conversionService, StorageService storage,
+    List<PendingConversion> conversions) {
+    for (PendingConversion conversion : conversions) {
+      conversion.submit(conversionService, storage);
+    }
+  }
+
+  private String awaitConversion(ConversionExecutionService conversionService, StorageService storage,
+    PendingConversion conversion) throws CommandException, IOException, GenericException, RequestNotValidException,
+    AuthorizationDeniedException, NotFoundException {
+    if (!conversion.isSubmitted()) {
+      conversion.submit(conversionService, storage);
+    }
+
+    try {
+      return conversion.getFuture().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CommandException("Interrupted while converting file " + conversion.getFile().getId(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CommandException) {
+        throw (CommandException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof GenericException) {
+        throw (GenericException) cause;
+      } else if (cause instanceof RequestNotValidException) {
+        throw (RequestNotValidException) cause;
+      } else if (cause instanceof AuthorizationDeniedException) {
+        throw (AuthorizationDeniedException) cause;
+      } else if (cause instanceof NotFoundException) {
+        throw (NotFoundException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw new GenericException("Error converting file " + conversion.getFile().getId(), cause);
+      }
+    }
+  }
+
+  /**
+   * A file conversion that is (or will be) running on the conversion pool.
+   */
+  private class PendingConversion {
+    private final File file;
+    private final String fileFormat;
+    private Future<String> future = null;
+    private volatile Path result = null;
+    private volatile long sourceSize = 0;
+
+    PendingConversion(File file, String fileFormat) {
+      this.file = file;
+      this.fileFormat = fileFormat;
+    }
+
+    void submit(ConversionExecutionService conversionService, StorageService storage) {
+      future = conversionService.submit(workingDirectory -> {
+        StoragePath fileStoragePath = ModelUtils.getFileStoragePath(file);
+        try (DirectResourceAccess directAccess = storage.getDirectAccess(fileStoragePath)) {
+          Path sourcePath = directAccess.getPath();
+          sourceSize = sourcePath.toFile().length();
+
+          // the tool writes into the warm directory, which is emptied once the
+          // task ends, so the converted file is moved out to be stored later
+          Path output = workingDirectory.resolve("converted." + getOutputFormat());
+          String outcome = executePlugin(sourcePath, output, fileFormat);
+          result = Files.createTempFile(getWorkingDirectory(), "converted", "." + getOutputFormat());
+          if (Files.exists(output)) {
+            Files.move(output, result, StandardCopyOption.REPLACE_EXISTING);
+          }
+          return outcome;
+        }
+      });
+    }
+
+    boolean isSubmitted() {
+      return future != null;
+    }
+
+    Future<String> getFuture() {
+      return future;
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    String getFileFormat() {
+      return fileFormat;
+    }
+
+    Path getResult() {
+      return result;
+    }
+
+    long getSourceSize() {
+      return sourceSize;
+    }
+  }
+
   private void createPremisSkeletonOnRepresentation(ModelService model, String aipId, Representation representation)
     throws RequestNotValidException, GenericException, NotFoundException, AuthorizationDeniedException,
     ValidationException, IOException, XmlException {
@@ -7,19 +7,31 @@
  */
 package org.roda.core.plugins.plugins.common;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.RodaCoreFactory;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.InvalidParameterException;
 import org.roda.core.data.v2.IsRODAObject;
 import org.roda.core.data.v2.jobs.PluginParameter;
 import org.roda.core.data.v2.jobs.PluginParameter.PluginParameterType;
+import org.roda.core.util.CommandException;
 
 public abstract class CommandConvertPlugin<T extends IsRODAObject> extends AbstractConvertPlugin<T> {
 
+  private static final String COMMAND_INPUT_FILE = "{input_file}";
+  private static final String COMMAND_OUTPUT_FILE = "{output_file}";
+  private static final String COMMAND_OUTPUT_FORMAT = "{output_format}";
+  private static final String COMMAND_ARGUMENTS = "{arguments}";
+
   private String commandArguments;
 
   private static Map<String, PluginParameter> pluginParameters = new HashMap<>();
@@ -58,6 +70,66 @@ public abstract class CommandConvertPlugin<T extends IsRODAObject> extends Abstr
     commandArguments = args;
   }
 
+  /**
+   * Builds the command line of the tool that converts the input path into the
+   * output path. Plugins that build their command here, instead of overriding
+   * {@link #executePlugin(Path, Path, String)}, have it run by the conversion
+   * pool.
+   *
+   * By default, the command line is the one configured in
+   * <code>core.tools.&lt;tool name&gt;.commandLine</code>, whose
+   * <code>{input_file}</code>, <code>{output_file}</code> and
+   * <code>{output_format}</code> are replaced by the paths and the output format
+   * and whose <code>{arguments}</code> is replaced by the command arguments.
+   */
+  protected List<String> getCommand(Path inputPath, Path outputPath, String fileFormat) throws CommandException {
+    String commandLine = RodaCoreFactory.getRodaConfigurationAsString("core", "tools", getToolName(), "commandLine");
+    if (StringUtils.isBlank(commandLine)) {
+      throw new CommandException("No command line configured for " + getToolName());
+    }
+
+    List<String> command = new ArrayList<>();
+    for (String part : commandLine.trim().split("\\s+")) {
+      if (COMMAND_ARGUMENTS.equals(part)) {
+        if (StringUtils.isNotBlank(commandArguments)) {
+          command.addAll(Arrays.asList(commandArguments.trim().split("\\s+")));
+        }
+      } else {
+        command.add(part.replace(COMMAND_INPUT_FILE, inputPath.toString())
+          .replace(COMMAND_OUTPUT_FILE, outputPath.toString())
+          .replace(COMMAND_OUTPUT_FORMAT, StringUtils.defaultString(fileFormat)));
+      }
+    }
+    return command;
+  }
+
+  /**
+   * @return the name of the tool in the configuration, by default the plugin
+   *         class name in lower case without the "Plugin" suffix (e.g.
+   *         "imagemagickconvert" for ImageMagickConvertPlugin).
+   */
+  protected String getToolName() {
+    return StringUtils.removeEnd(getClass().getSimpleName(), "Plugin").toLowerCase();
+  }
+
+  @Override
+  public String executePlugin(Path inputPath, Path outputPath, String fileFormat)
+    throws UnsupportedOperationException, IOException, CommandException {
+    return executeCommand(getCommand(inputPath, outputPath, fileFormat));
+  }
+
+  /**
+   * Executes the conversion command inside the warm working directory of the
+   * conversion pool, enforcing the configured process timeout and output limit.
+   */
+  protected String executeCommand(List<String> command) throws CommandException {
+    try {
+      return ConversionExecutionService.getInstance().executeCommand(command);
+    } catch (IOException e) {
+      throw new CommandException("Could not start conversion execution service", e);
+    }
+  }
+
   @Override
   public List<PluginParameter> getParameters() {
     return this.orderParameters(this.getDefaultParameters());
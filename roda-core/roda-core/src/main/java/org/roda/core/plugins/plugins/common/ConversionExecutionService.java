@@ -0,0 +1,208 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.plugins.common;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.core.util.CommandException;
+import org.roda.core.util.CommandUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs external conversion tools on a bounded pool of processes shared by all
+ * conversion plugins running on this node.
+ *
+ * The pool size is the minimum between the number of available processors,
+ * the amount of physical memory divided by the memory each process is expected
+ * to use and the configured maximum. Each pool thread owns a warm working
+ * directory that is emptied, but not deleted, after each conversion.
+ */
+public class ConversionExecutionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConversionExecutionService.class);
+
+  private static final String CONFIG_PREFIX = "core.tools.convert.pool";
+  private static final int DEFAULT_MEMORY_PER_PROCESS_IN_MB = 512;
+  private static final int DEFAULT_TIMEOUT_IN_SECONDS = 3600;
+  private static final int DEFAULT_MAX_OUTPUT_IN_BYTES = 1048576;
+  private static final int DEFAULT_COMMIT_BATCH_SIZE = 100;
+  private static final int QUEUE_SIZE_FACTOR = 4;
+
+  private static ConversionExecutionService instance = null;
+
+  private final ExecutorService executor;
+  private final BlockingQueue<Path> workingDirectories;
+  private final ThreadLocal<Path> currentWorkingDirectory = new ThreadLocal<>();
+  private final int poolSize;
+  private final long timeoutInMillis;
+  private final long maxOutputInBytes;
+  private final int commitBatchSize;
+
+  public ConversionExecutionService(int poolSize, Path baseDirectory, long timeoutInMillis, long maxOutputInBytes,
+    int commitBatchSize) throws IOException {
+    this.poolSize = Math.max(1, poolSize);
+    this.timeoutInMillis = timeoutInMillis;
+    this.maxOutputInBytes = maxOutputInBytes;
+    this.commitBatchSize = Math.max(1, commitBatchSize);
+
+    this.workingDirectories = new ArrayBlockingQueue<>(this.poolSize);
+    for (int i = 0; i < this.poolSize; i++) {
+      Path directory = baseDirectory.resolve("process-" + i);
+      Files.createDirectories(directory);
+      cleanDirectory(directory);
+      workingDirectories.add(directory);
+    }
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(this.poolSize * QUEUE_SIZE_FACTOR), runnable -> {
+        Thread thread = new Thread(runnable, "conversion-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    LOGGER.info("Started conversion execution service with {} processes (timeout {} ms, output limit {} bytes)",
+      this.poolSize, timeoutInMillis, maxOutputInBytes);
+  }
+
+  public static synchronized ConversionExecutionService getInstance() throws IOException {
+    if (instance == null) {
+      int memoryPerProcess = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_MEMORY_PER_PROCESS_IN_MB,
+        CONFIG_PREFIX, "memory_per_process_in_mb");
+      int maxProcesses = RodaCoreFactory.getRodaConfigurationAsInt(0, CONFIG_PREFIX, "max_processes");
+      int timeoutInSeconds = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_TIMEOUT_IN_SECONDS, CONFIG_PREFIX,
+        "timeout_in_seconds");
+      int maxOutput = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_MAX_OUTPUT_IN_BYTES, CONFIG_PREFIX,
+        "max_output_in_bytes");
+      int batchSize = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_COMMIT_BATCH_SIZE, CONFIG_PREFIX,
+        "commit_batch_size");
+
+      Path baseDirectory = RodaCoreFactory.getWorkingDirectory().resolve(RodaConstants.CORE_CONVERSION_POOL_FOLDER);
+      instance = new ConversionExecutionService(computePoolSize(maxProcesses, memoryPerProcess), baseDirectory,
+        TimeUnit.SECONDS.toMillis(timeoutInSeconds), maxOutput, batchSize);
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  /**
+   * Computes how many external processes may run at the same time given the
+   * CPU and memory limits of the machine.
+   */
+  public static int computePoolSize(int maxProcesses, long memoryPerProcessInMB) {
+    int size = Runtime.getRuntime().availableProcessors();
+
+    long physicalMemoryInMB = getPhysicalMemoryInMB();
+    if (physicalMemoryInMB > 0 && memoryPerProcessInMB > 0) {
+      size = (int) Math.min(size, physicalMemoryInMB / memoryPerProcessInMB);
+    }
+
+    if (maxProcesses > 0) {
+      size = Math.min(size, maxProcesses);
+    }
+
+    return Math.max(1, size);
+  }
+
+  private static long getPhysicalMemoryInMB() {
+    OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize() / (1024 * 1024);
+    }
+    return -1;
+  }
+
+  /**
+   * Submits a conversion to the pool. While the task runs,
+   * {@link #getCurrentWorkingDirectory()} and {@link #executeCommand(List)} use
+   * the warm working directory assigned to it.
+   */
+  public <T> Future<T> submit(ConversionTask<T> task) {
+    return executor.submit(() -> {
+      Path directory = workingDirectories.take();
+      currentWorkingDirectory.set(directory);
+      try {
+        return task.execute(directory);
+      } finally {
+        currentWorkingDirectory.remove();
+        cleanDirectory(directory);
+        workingDirectories.put(directory);
+      }
+    });
+  }
+
+  /**
+   * Executes a command enforcing the configured timeout and output limits. If
+   * called from a conversion task, the process runs inside its warm working
+   * directory.
+   */
+  public String executeCommand(List<String> args) throws CommandException {
+    return CommandUtility.execute(args, currentWorkingDirectory.get(), timeoutInMillis, maxOutputInBytes);
+  }
+
+  /**
+   * @return the warm working directory of the running conversion task or
+   *         <code>null</code> if not called from one.
+   */
+  public Path getCurrentWorkingDirectory() {
+    return currentWorkingDirectory.get();
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public int getCommitBatchSize() {
+    return commitBatchSize;
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+    for (Path directory : workingDirectories) {
+      FSUtils.deletePathQuietly(directory);
+    }
+  }
+
+  private static void cleanDirectory(Path directory) {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        FSUtils.deletePathQuietly(path);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not clean conversion working directory {}", directory, e);
+    }
+  }
+
+  @FunctionalInterface
+  public interface ConversionTask<T> {
+    T execute(Path workingDirectory) throws Exception;
+  }
+}
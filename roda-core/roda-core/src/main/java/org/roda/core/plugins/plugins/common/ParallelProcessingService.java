@@ -0,0 +1,155 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.plugins.plugins.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.RodaCoreFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the items of a job block in parallel on a pool of threads shared by
+ * all plugins running on this node, instead of each block starting and
+ * stopping its own pool.
+ *
+ * Each call keeps at most its given parallelism of items submitted at a time
+ * and hands the results back in the calling thread and in the order of the
+ * items, so that plugins update job reports and create events from a single
+ * thread. The threads live as long as the service, so thread local state (e.g.
+ * reusable parsers) survives from one block to the next.
+ */
+public class ParallelProcessingService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelProcessingService.class);
+
+  private static final String THREADS_PROPERTY = "core.plugins.parallel.threads";
+
+  private static ParallelProcessingService instance = null;
+
+  private final ExecutorService executor;
+  private final int poolSize;
+
+  public ParallelProcessingService(int poolSize) {
+    this.poolSize = Math.max(1, poolSize);
+    AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(this.poolSize, runnable -> {
+      Thread thread = new Thread(runnable, "plugin-worker-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    LOGGER.info("Started parallel processing service with {} threads", this.poolSize);
+  }
+
+  public static synchronized ParallelProcessingService getInstance() {
+    if (instance == null) {
+      instance = new ParallelProcessingService(
+        RodaCoreFactory.getRodaConfigurationAsInt(Runtime.getRuntime().availableProcessors(), THREADS_PROPERTY));
+    }
+    return instance;
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  @FunctionalInterface
+  public interface Task<I, R> {
+    R execute(I item) throws Exception;
+  }
+
+  @FunctionalInterface
+  public interface ResultHandler<I, R> {
+    /**
+     * @param error
+     *          the error of the task, in which case result is null
+     */
+    void handle(I item, R result, Throwable error);
+  }
+
+  /**
+   * Executes a task for each item, at most parallelism of them at a time, and
+   * calls the handler, in the calling thread and in the order of the items,
+   * with the result or the error of each. With a parallelism of 1 (or a single
+   * item) everything runs in the calling thread.
+   */
+  public <I, R> void process(List<I> items, int parallelism, Task<I, R> task, ResultHandler<I, R> handler) {
+    int window = Math.min(Math.min(items.size(), poolSize), Math.max(1, parallelism));
+    if (window <= 1) {
+      for (I item : items) {
+        R result;
+        try {
+          result = task.execute(item);
+        } catch (Exception e) {
+          handler.handle(item, null, e);
+          continue;
+        }
+        handler.handle(item, result, null);
+      }
+      return;
+    }
+
+    List<Future<R>> results = new ArrayList<>(items.size());
+    try {
+      for (int i = 0; i < items.size(); i++) {
+        // keep the next items submitted, unless interrupted
+        while (results.size() < Math.min(items.size(), i + window) && !Thread.currentThread().isInterrupted()) {
+          I next = items.get(results.size());
+          results.add(executor.submit(() -> task.execute(next)));
+        }
+
+        I item = items.get(i);
+        if (i >= results.size()) {
+          handler.handle(item, null, new InterruptedException("Not processed, the job was interrupted"));
+          continue;
+        }
+
+        R result;
+        try {
+          result = results.get(i).get();
+        } catch (ExecutionException e) {
+          handler.handle(item, null, e.getCause());
+          continue;
+        } catch (CancellationException e) {
+          handler.handle(item, null, e);
+          continue;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          handler.handle(item, null, e);
+          continue;
+        }
+        handler.handle(item, result, null);
+      }
+    } finally {
+      // only running if the calling thread was interrupted or a handler failed
+      results.forEach(result -> result.cancel(true));
+    }
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public void shutdown() {
+    // cancel what never ran, so that no one keeps waiting for it
+    for (Runnable pending : executor.shutdownNow()) {
+      if (pending instanceof Future) {
+        ((Future<?>) pending).cancel(true);
+      }
+    }
+  }
+}
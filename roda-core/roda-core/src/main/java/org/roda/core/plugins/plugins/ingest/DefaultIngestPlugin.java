@@ -472,7 +472,7 @@ public abstract class DefaultIngestPlugin extends AbstractPlugin<TransferredReso
       long duration = (new Date().getTime() - job.getStartDate().getTime()) / 1000;
       scopes.put("duration", duration + " seconds");
       model.createNotification(notification,
-        new EmailNotificationProcessor(RodaConstants.INGEST_EMAIL_TEMPLATE, scopes));
+        new EmailNotificationProcessor(RodaConstants.INGEST_EMAIL_TEMPLATE, scopes, true));
     }
 
     String httpNotifications = PluginHelper.getStringFromParameters(this,
@@ -491,7 +491,7 @@ public abstract class DefaultIngestPlugin extends AbstractPlugin<TransferredReso
       notification.setRecipientUsers(Collections.singletonList(httpNotifications));
       Map<String, Object> scope = new HashMap<>();
       scope.put(HTTPNotificationProcessor.JOB_KEY, job);
-      model.createNotification(notification, new HTTPNotificationProcessor(httpNotifications, scope));
+      model.createNotification(notification, new HTTPNotificationProcessor(httpNotifications, scope, true));
     }
   }
 
@@ -10,10 +10,14 @@ package org.roda.core.plugins.plugins.internal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
+import org.roda.core.RodaCoreFactory;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.PreservationEventType;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
@@ -25,7 +29,6 @@ import org.roda.core.data.utils.URNUtils;
 import org.roda.core.data.v2.IsRODAObject;
 import org.roda.core.data.v2.LiteOptionalWithCause;
 import org.roda.core.data.v2.index.IndexResult;
-import org.roda.core.data.v2.index.IndexRunnable;
 import org.roda.core.data.v2.index.IsIndexed;
 import org.roda.core.data.v2.index.filter.Filter;
 import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
@@ -37,6 +40,8 @@ import org.roda.core.data.v2.ip.DIP;
 import org.roda.core.data.v2.ip.DIPFile;
 import org.roda.core.data.v2.ip.File;
 import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.IndexedFile;
+import org.roda.core.data.v2.ip.IndexedRepresentation;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.metadata.LinkingIdentifier;
 import org.roda.core.data.v2.ip.metadata.PreservationMetadata.PreservationMetadataType;
@@ -57,13 +62,19 @@ import org.roda.core.plugins.PluginException;
 import org.roda.core.plugins.RODAObjectProcessingLogic;
 import org.roda.core.plugins.orchestrate.JobPluginInfo;
 import org.roda.core.plugins.plugins.PluginHelper;
+import org.roda.core.plugins.plugins.common.ParallelProcessingService;
 import org.roda.core.storage.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 public class DeleteRODAObjectPlugin<T extends IsRODAObject> extends AbstractPlugin<T> {
   private static final Logger LOGGER = LoggerFactory.getLogger(DeleteRODAObjectPlugin.class);
   private static final String EVENT_DESCRIPTION = "The process of deleting an object of the repository";
+  private static final String CONFIG_PREFIX = "core.plugins.internal.delete";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_THREADS = 4;
   private String details = null;
   private boolean dontCheckRelatives;
 
@@ -159,40 +170,7 @@ public class DeleteRODAObjectPlugin<T extends IsRODAObject> extends AbstractPlug
 
     if (!dontCheckRelatives) {
       try {
-        Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aip.getId()));
-        index.execute(
-          IndexedAIP.class, filter, Arrays.asList(RodaConstants.INDEX_UUID, RodaConstants.AIP_ID,
-            RodaConstants.AIP_LEVEL, RodaConstants.AIP_DATE_INITIAL, RodaConstants.AIP_DATE_FINAL),
-          new IndexRunnable<IndexedAIP>() {
-            @Override
-            public void run(IndexedAIP item)
-              throws GenericException, RequestNotValidException, AuthorizationDeniedException {
-              PluginState state = PluginState.SUCCESS;
-              try {
-                model.deleteAIP(item.getId());
-              } catch (NotFoundException e) {
-                state = PluginState.FAILURE;
-                reportItem.addPluginDetails("Could not delete AIP: " + e.getMessage());
-              }
-
-              String outcomeText;
-              if (state.equals(PluginState.SUCCESS)) {
-                outcomeText = PluginHelper.createOutcomeTextForAIP(item, "has been manually deleted");
-              } else {
-                outcomeText = PluginHelper.createOutcomeTextForAIP(item, "has not been manually deleted");
-              }
-
-              List<LinkingIdentifier> sources = new ArrayList<>();
-              sources
-                .add(PluginHelper.getLinkingIdentifier(item.getId(), RodaConstants.PRESERVATION_LINKING_OBJECT_SOURCE));
-
-              model.createEvent(item.getId(), null, null, null, PreservationEventType.DELETION, EVENT_DESCRIPTION,
-                sources, null, state, outcomeText, details, job.getUsername(), true);
-            }
-          }, e -> {
-            reportItem.setPluginState(PluginState.FAILURE);
-            reportItem.addPluginDetails("Could not delete sublevel AIPs: " + e.getMessage());
-          });
+        deleteDescendants(index, model, reportItem, jobPluginInfo, job, aip.getId());
       } catch (GenericException | RequestNotValidException | AuthorizationDeniedException e) {
         reportItem.setPluginState(PluginState.FAILURE);
         reportItem.addPluginDetails("Could not delete sublevel AIPs: " + e.getMessage());
@@ -238,6 +216,121 @@ public class DeleteRODAObjectPlugin<T extends IsRODAObject> extends AbstractPlug
       reportItem.getPluginState(), outcomeText, details, job.getUsername(), true);
   }
 
+  /**
+   * Deletes all descendants of an AIP. The whole subtree is first removed from
+   * the index, with a single delete per collection, so that it disappears from
+   * search at once. The AIPs are then deleted from storage in batches, on the
+   * shared plugin threads, with one deletion event per batch.
+   */
+  private void deleteDescendants(IndexService index, ModelService model, Report reportItem,
+    JobPluginInfo jobPluginInfo, Job job, String aipId)
+    throws GenericException, RequestNotValidException, AuthorizationDeniedException {
+    Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aipId));
+    List<IndexedAIP> descendants = new ArrayList<>();
+    index.execute(IndexedAIP.class, filter, Arrays.asList(RodaConstants.INDEX_UUID, RodaConstants.AIP_ID,
+      RodaConstants.AIP_LEVEL, RodaConstants.AIP_DATE_INITIAL, RodaConstants.AIP_DATE_FINAL), descendants::add, e -> {
+        reportItem.setPluginState(PluginState.FAILURE);
+        reportItem.addPluginDetails("Could not delete sublevel AIPs: " + e.getMessage());
+      });
+
+    if (descendants.isEmpty()) {
+      return;
+    }
+
+    index.delete(IndexedAIP.class, filter);
+    index.delete(IndexedRepresentation.class,
+      new Filter(new SimpleFilterParameter(RodaConstants.REPRESENTATION_ANCESTORS, aipId)));
+    index.delete(IndexedFile.class, new Filter(new SimpleFilterParameter(RodaConstants.FILE_ANCESTORS, aipId)));
+    index.commit(IndexedAIP.class, IndexedRepresentation.class, IndexedFile.class);
+
+    jobPluginInfo.incrementObjectsCount(descendants.size());
+    jobPluginInfo.setSourceObjectsBeingProcessed(jobPluginInfo.getSourceObjectsBeingProcessed() + descendants.size());
+    PluginHelper.updateJobInformationAsync(this, jobPluginInfo);
+
+    int batchSize = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_BATCH_SIZE, CONFIG_PREFIX, "batch_size");
+    int threads = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_THREADS, CONFIG_PREFIX, "threads");
+
+    // job information is only updated by this thread, as batches finish
+    ParallelProcessingService.getInstance().process(Lists.partition(descendants, Math.max(1, batchSize)), threads,
+      batch -> deleteBatch(index, model, job, batch), (batch, notDeleted, error) -> {
+        List<IndexedAIP> failed = notDeleted;
+        if (error != null) {
+          LOGGER.error("Error deleting sublevel AIPs", error);
+          failed = batch;
+          reindexAIPs(index, model, batch);
+        }
+
+        for (IndexedAIP item : failed) {
+          reportItem.setPluginState(PluginState.FAILURE);
+          reportItem.addPluginDetails("Could not delete AIP " + item.getId());
+        }
+        jobPluginInfo.incrementObjectsProcessedWithSuccess(batch.size() - failed.size());
+        jobPluginInfo.incrementObjectsProcessedWithFailure(failed.size());
+        PluginHelper.updateJobInformationAsync(this, jobPluginInfo);
+      });
+  }
+
+  /**
+   * @return the AIPs of the batch that could not be deleted, which are indexed
+   *         again so that they do not stay hidden
+   */
+  private List<IndexedAIP> deleteBatch(IndexService index, ModelService model, Job job, List<IndexedAIP> batch)
+    throws GenericException, RequestNotValidException, AuthorizationDeniedException {
+    Set<String> deletedIds = new HashSet<>(
+      model.deleteAIPs(batch.stream().map(IndexedAIP::getId).collect(Collectors.toList())));
+
+    List<IndexedAIP> deleted = new ArrayList<>();
+    List<IndexedAIP> failed = new ArrayList<>();
+    for (IndexedAIP item : batch) {
+      if (deletedIds.contains(item.getId())) {
+        deleted.add(item);
+      } else {
+        failed.add(item);
+      }
+    }
+
+    reindexAIPs(index, model, failed);
+    createBatchEvent(model, job, deleted, PluginState.SUCCESS, "has been manually deleted");
+    createBatchEvent(model, job, failed, PluginState.FAILURE, "has not been manually deleted");
+    return failed;
+  }
+
+  /**
+   * Indexes again the AIPs that are still in storage, as the whole subtree was
+   * removed from the index before deleting it.
+   */
+  private void reindexAIPs(IndexService index, ModelService model, List<IndexedAIP> items) {
+    for (IndexedAIP item : items) {
+      try {
+        index.reindexAIP(model.retrieveAIP(item.getId()));
+      } catch (NotFoundException e) {
+        // already gone, nothing to restore
+      } catch (GenericException | RequestNotValidException | AuthorizationDeniedException | RuntimeException e) {
+        LOGGER.error("Could not index again AIP {} that was not deleted", item.getId(), e);
+      }
+    }
+  }
+
+  private void createBatchEvent(ModelService model, Job job, List<IndexedAIP> items, PluginState state,
+    String outcome) {
+    if (items.isEmpty()) {
+      return;
+    }
+
+    List<LinkingIdentifier> sources = new ArrayList<>();
+    StringBuilder outcomeText = new StringBuilder();
+    for (IndexedAIP item : items) {
+      sources.add(PluginHelper.getLinkingIdentifier(item.getId(), RodaConstants.PRESERVATION_LINKING_OBJECT_SOURCE));
+      if (outcomeText.length() > 0) {
+        outcomeText.append("\n");
+      }
+      outcomeText.append(PluginHelper.createOutcomeTextForAIP(item, outcome));
+    }
+
+    model.createEvent(null, null, null, null, PreservationEventType.DELETION, EVENT_DESCRIPTION, sources, null, state,
+      outcomeText.toString(), details, job.getUsername(), true);
+  }
+
   private void processFile(IndexService index, ModelService model, Report report, JobPluginInfo jobPluginInfo, Job job,
     File file) {
     PluginState state = PluginState.SUCCESS;
@@ -23,12 +23,9 @@ import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.IsRODAObject;
 import org.roda.core.data.v2.LiteOptionalWithCause;
-import org.roda.core.data.v2.index.filter.Filter;
-import org.roda.core.data.v2.index.filter.SimpleFilterParameter;
 import org.roda.core.data.v2.ip.AIP;
 import org.roda.core.data.v2.ip.AIPState;
 import org.roda.core.data.v2.ip.DIP;
-import org.roda.core.data.v2.ip.IndexedAIP;
 import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.metadata.LinkingIdentifier;
 import org.roda.core.data.v2.jobs.Job;
@@ -38,7 +35,6 @@ import org.roda.core.data.v2.jobs.PluginState;
 import org.roda.core.data.v2.jobs.PluginType;
 import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.index.IndexService;
-import org.roda.core.index.utils.IterableIndexResult;
 import org.roda.core.model.ModelService;
 import org.roda.core.plugins.AbstractPlugin;
 import org.roda.core.plugins.Plugin;
@@ -158,13 +154,9 @@ public class UpdatePermissionsPlugin<T extends IsRODAObject> extends AbstractPlu
       model.updateAIPPermissions(aip, job.getUsername());
 
       if (recursive) {
-        Filter filter = new Filter(new SimpleFilterParameter(RodaConstants.AIP_ANCESTORS, aip.getId()));
-        IterableIndexResult<IndexedAIP> childs = index.findAll(IndexedAIP.class, filter,
-          Arrays.asList(RodaConstants.INDEX_UUID, RodaConstants.AIP_ID));
-
-        for (IndexedAIP child : childs) {
-          model.updateAIPPermissions(child.getId(), permissions, job.getUsername());
-        }
+        // sublevels are changed in the index at once, their metadata files are
+        // written in the background
+        index.propagateAIPPermissions(aip.getId(), permissions, job.getUsername());
       }
 
       outcome = "AIP " + aip.getId() + " permissions were updated and all sublevels too";
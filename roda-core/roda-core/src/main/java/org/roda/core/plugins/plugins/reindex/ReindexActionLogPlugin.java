@@ -18,11 +18,11 @@ import org.roda.core.data.common.RodaConstants.PreservationEventType;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.InvalidParameterException;
+import org.roda.core.data.exceptions.JobException;
 import org.roda.core.data.exceptions.LogEntryJsonParseException;
 import org.roda.core.data.exceptions.RODAException;
 import org.roda.core.data.v2.LiteOptionalWithCause;
 import org.roda.core.data.v2.Void;
-import org.roda.core.data.v2.common.OptionalWithCause;
 import org.roda.core.data.v2.jobs.Job;
 import org.roda.core.data.v2.jobs.PluginParameter;
 import org.roda.core.data.v2.jobs.PluginParameter.PluginParameterType;
@@ -30,6 +30,7 @@ import org.roda.core.data.v2.jobs.PluginState;
 import org.roda.core.data.v2.jobs.PluginType;
 import org.roda.core.data.v2.jobs.Report;
 import org.roda.core.data.v2.log.LogEntry;
+import org.roda.core.index.ActionLogReindexer;
 import org.roda.core.index.IndexService;
 import org.roda.core.model.ModelService;
 import org.roda.core.plugins.AbstractPlugin;
@@ -48,6 +49,7 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
   private static final Logger LOGGER = LoggerFactory.getLogger(ReindexActionLogPlugin.class);
   private boolean clearIndexes = false;
   private boolean optimizeIndexes = true;
+  private boolean forceReindex = false;
   private int dontReindexOlderThanXDays = 90;
 
   private static Map<String, PluginParameter> pluginParameters = new HashMap<>();
@@ -63,6 +65,10 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
     pluginParameters.put(RodaConstants.PLUGIN_PARAMS_OPTIMIZE_INDEXES,
       new PluginParameter(RodaConstants.PLUGIN_PARAMS_OPTIMIZE_INDEXES, "Optimize indexes", PluginParameterType.BOOLEAN,
         "true", false, false, "Optimize indexes after reindexing them."));
+
+    pluginParameters.put(RodaConstants.PLUGIN_PARAMS_FORCE_REINDEX,
+      new PluginParameter(RodaConstants.PLUGIN_PARAMS_FORCE_REINDEX, "Force reindex", PluginParameterType.BOOLEAN,
+        "false", false, false, "Reindex also the log files that did not change since they were last reindexed."));
   }
 
   @Override
@@ -98,6 +104,7 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
     parameters.add(pluginParameters.get(RodaConstants.PLUGIN_PARAMS_DELETE_OLDER_THAN_X_DAYS));
     parameters.add(pluginParameters.get(RodaConstants.PLUGIN_PARAMS_CLEAR_INDEXES));
     parameters.add(pluginParameters.get(RodaConstants.PLUGIN_PARAMS_OPTIMIZE_INDEXES));
+    parameters.add(pluginParameters.get(RodaConstants.PLUGIN_PARAMS_FORCE_REINDEX));
     return parameters;
   }
 
@@ -112,6 +119,10 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
       optimizeIndexes = Boolean.parseBoolean(parameters.get(RodaConstants.PLUGIN_PARAMS_OPTIMIZE_INDEXES));
     }
 
+    if (parameters != null && parameters.containsKey(RodaConstants.PLUGIN_PARAMS_FORCE_REINDEX)) {
+      forceReindex = Boolean.parseBoolean(parameters.get(RodaConstants.PLUGIN_PARAMS_FORCE_REINDEX));
+    }
+
     if (parameters != null && parameters.containsKey(RodaConstants.PLUGIN_PARAMS_DELETE_OLDER_THAN_X_DAYS)) {
       try {
         int dontReindexOlderThan = Integer
@@ -134,68 +145,74 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
       @Override
       public void process(IndexService index, ModelService model, StorageService storage, Report report, Job cachedJob,
         JobPluginInfo jobPluginInfo, Plugin<Void> plugin) {
-        reindexActionLogs(index, model, report, cachedJob, jobPluginInfo);
+        try {
+          reindexActionLogs(index, model, report, cachedJob, jobPluginInfo);
+        } catch (GenericException | AuthorizationDeniedException e) {
+          LOGGER.error("Error reindexing action logs", e);
+          report.setPluginState(PluginState.FAILURE)
+            .setPluginDetails("Error reindexing action logs: " + e.getMessage());
+        }
       }
     }, index, model, storage);
   }
 
   private void reindexActionLogs(IndexService index, ModelService model, Report report, Job job,
-    JobPluginInfo jobPluginInfo) {
+    JobPluginInfo jobPluginInfo) throws GenericException, AuthorizationDeniedException {
     report.setPluginState(PluginState.SUCCESS);
 
-    for (OptionalWithCause<LogEntry> logEntry : model.listLogEntries(dontReindexOlderThanXDays)) {
-      jobPluginInfo.incrementObjectsCount();
-
-      if (logEntry.isPresent()) {
-        LogEntry entry = logEntry.get();
-        // 20180730 hsilva: this is needed for backwards compatibility (as
-        // before uuid was equal to id)
-        if (entry.getUUID() == null) {
-          entry.setUUID(entry.getId());
+    // a cleared index has nothing indexed, so every file is reindexed anyway
+    index.reindexActionLogs(dontReindexOlderThanXDays, forceReindex, new ActionLogReindexer.Listener() {
+      @Override
+      public void fileReindexed(String file, int entriesIndexed, int entriesFailed) {
+        synchronized (jobPluginInfo) {
+          jobPluginInfo.incrementObjectsCount(entriesIndexed + entriesFailed);
+          jobPluginInfo.incrementObjectsProcessedWithSuccess(entriesIndexed);
+          jobPluginInfo.incrementObjectsProcessedWithFailure(entriesFailed);
+          try {
+            PluginHelper.updateJobInformationAsync(ReindexActionLogPlugin.this, jobPluginInfo);
+          } catch (JobException e) {
+            LOGGER.warn("Could not update job information", e);
+          }
         }
+      }
 
-        try {
-          index.reindexActionLog(entry);
-          jobPluginInfo.incrementObjectsProcessedWithSuccess();
-        } catch (Exception e) {
-          jobPluginInfo.incrementObjectsProcessedWithFailure();
-          Report reportItem = PluginHelper.initPluginReportItem(this, entry.getId(), LogEntry.class);
-          reportItem.setPluginState(PluginState.FAILURE).setPluginDetails("Error when indexing action log " + entry.getId());
-          report.addReport(reportItem);
-          PluginHelper.updatePartialJobReport(this, model, reportItem, false, job);
-        }
-      } else {
-        jobPluginInfo.incrementObjectsProcessedWithFailure();
-
-        // INFO when log entry is not present, a unique id is needed to create
-        // multiple reports
-        String id;
-
-        StringBuilder message = new StringBuilder("Could not parse log entry: ");
-        if (logEntry.getCause() instanceof LogEntryJsonParseException) {
-          LogEntryJsonParseException cause = (LogEntryJsonParseException) logEntry.getCause();
-          id = IdUtils.createUUID(cause.getFilename() + cause.getLine());
-          message.append("Error parsing JSON on file " + cause.getFilename() + " on line " + cause.getLine());
-          if (cause.getCause() != null) {
-            message.append("\n cause: [" + cause.getCause().getCause().getClass().getSimpleName() + "] "
-              + cause.getCause().getCause().getMessage());
-          }
-        } else {
-          id = IdUtils.createUUID();
-          RODAException cause = logEntry.getCause();
-          message.append("[" + cause.getClass().getSimpleName() + "] " + cause.getMessage());
-          if (cause.getCause() != null) {
-            message.append(
-              "\n cause: [" + cause.getCause().getClass().getSimpleName() + "] " + cause.getCause().getMessage());
-          }
+      @Override
+      public void entriesFailed(int count, RODAException cause) {
+        synchronized (report) {
+          reportFailure(model, report, job, cause);
         }
+      }
+    });
+  }
 
-        Report reportItem = PluginHelper.initPluginReportItem(this, id, LogEntry.class);
-        reportItem.setPluginState(PluginState.FAILURE).setPluginDetails(message.toString());
-        report.addReport(reportItem);
-        PluginHelper.updatePartialJobReport(this, model, reportItem, false, job);
+  private void reportFailure(ModelService model, Report report, Job job, RODAException cause) {
+    // INFO when log entry is not present, a unique id is needed to create
+    // multiple reports
+    String id;
+
+    StringBuilder message = new StringBuilder("Could not parse log entry: ");
+    if (cause instanceof LogEntryJsonParseException) {
+      LogEntryJsonParseException parseException = (LogEntryJsonParseException) cause;
+      id = IdUtils.createUUID(parseException.getFilename() + parseException.getLine());
+      message.append("Error parsing JSON on file " + parseException.getFilename() + " on line "
+        + parseException.getLine());
+      if (parseException.getCause() != null && parseException.getCause().getCause() != null) {
+        message.append("\n cause: [" + parseException.getCause().getCause().getClass().getSimpleName() + "] "
+          + parseException.getCause().getCause().getMessage());
+      }
+    } else {
+      id = IdUtils.createUUID();
+      message.append("[" + cause.getClass().getSimpleName() + "] " + cause.getMessage());
+      if (cause.getCause() != null) {
+        message.append(
+          "\n cause: [" + cause.getCause().getClass().getSimpleName() + "] " + cause.getCause().getMessage());
       }
     }
+
+    Report reportItem = PluginHelper.initPluginReportItem(this, id, LogEntry.class);
+    reportItem.setPluginState(PluginState.FAILURE).setPluginDetails(message.toString());
+    report.addReport(reportItem);
+    PluginHelper.updatePartialJobReport(this, model, reportItem, false, job);
   }
 
   @Override
@@ -204,7 +221,7 @@ public class ReindexActionLogPlugin extends AbstractPlugin<Void> {
     if (clearIndexes) {
       LOGGER.debug("Clearing indexes");
       try {
-        index.clearIndex(RodaConstants.INDEX_ACTION_LOG);
+        index.deleteAllActionLog();
       } catch (GenericException | AuthorizationDeniedException e) {
         throw new PluginException("Error clearing index", e);
       }
@@ -9,10 +9,13 @@ package org.roda.core.plugins.plugins.risks;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.common.RodaConstants.PreservationEventType;
@@ -188,28 +191,60 @@ public class RiskAssociationPlugin<T extends IsRODAObject> extends AbstractPlugi
     return new Report();
   }
 
+  private RiskIncidence newIncidence(Job job, String riskId, String objectClass) {
+    RiskIncidence incidence = new RiskIncidence();
+    incidence.setDetectedOn(new Date());
+    incidence.setDetectedBy(job.getUsername());
+    incidence.setRiskId(riskId);
+    incidence.setObjectClass(objectClass);
+    incidence.setStatus(IncidenceStatus.UNMITIGATED);
+    incidence.setSeverity(SeverityLevel.valueOf(severity));
+    return incidence;
+  }
+
+  /**
+   * Creates the incidences of all the objects at once, so that they are written
+   * and indexed in batches.
+   *
+   * @return for each object, whether all its incidences were created
+   */
+  private List<Boolean> createIncidences(ModelService model, List<List<RiskIncidence>> incidencesByObject) {
+    List<RiskIncidence> incidences = new ArrayList<>();
+    incidencesByObject.forEach(incidences::addAll);
+
+    Set<RiskIncidence> created = Collections.newSetFromMap(new IdentityHashMap<>());
+    try {
+      created.addAll(model.createRiskIncidences(incidences, false));
+    } catch (GenericException | AuthorizationDeniedException e) {
+      LOGGER.error("Could not create risk incidences", e);
+    }
+
+    List<Boolean> ret = new ArrayList<>();
+    for (List<RiskIncidence> objectIncidences : incidencesByObject) {
+      ret.add(created.containsAll(objectIncidences));
+    }
+    return ret;
+  }
+
   private Pair<JobPluginInfo, Report> addIncidenceToAIPList(ModelService model, IndexService index, List<AIP> list,
     List<String> risks, JobPluginInfo jobPluginInfo, Report pluginReport, Job job) throws JobException {
 
+    List<List<RiskIncidence>> incidencesByAIP = new ArrayList<>();
     for (AIP aip : list) {
-      PluginState state = PluginState.SUCCESS;
-
+      List<RiskIncidence> incidences = new ArrayList<>();
       for (String riskId : risks) {
-        try {
-          RiskIncidence incidence = new RiskIncidence();
-          incidence.setDetectedOn(new Date());
-          incidence.setDetectedBy(job.getUsername());
-          incidence.setRiskId(riskId);
-          incidence.setAipId(aip.getId());
-          incidence.setObjectClass(AIP.class.getSimpleName());
-          incidence.setStatus(IncidenceStatus.UNMITIGATED);
-          incidence.setSeverity(SeverityLevel.valueOf(severity));
-          incidence.setDescription(incidenceDescription);
-          model.createRiskIncidence(incidence, false);
-        } catch (GenericException | AlreadyExistsException | NotFoundException | AuthorizationDeniedException e) {
-          state = PluginState.FAILURE;
-        }
+        RiskIncidence incidence = newIncidence(job, riskId, AIP.class.getSimpleName());
+        incidence.setAipId(aip.getId());
+        incidence.setDescription(incidenceDescription);
+        incidences.add(incidence);
       }
+      incidencesByAIP.add(incidences);
+    }
+    List<Boolean> created = createIncidences(model, incidencesByAIP);
+
+    for (int i = 0; i < list.size(); i++) {
+      AIP aip = list.get(i);
+      PluginState state = created.get(i) ? PluginState.SUCCESS : PluginState.FAILURE;
 
       jobPluginInfo.incrementObjectsProcessed(state);
       Report reportItem = PluginHelper.initPluginReportItem(this, aip.getId(), AIP.class);
@@ -232,25 +267,22 @@ public class RiskAssociationPlugin<T extends IsRODAObject> extends AbstractPlugi
     List<Representation> list, List<String> risks, JobPluginInfo jobPluginInfo, Report pluginReport, Job job)
     throws JobException {
 
+    List<List<RiskIncidence>> incidencesByRepresentation = new ArrayList<>();
     for (Representation representation : list) {
-      PluginState state = PluginState.SUCCESS;
-
+      List<RiskIncidence> incidences = new ArrayList<>();
       for (String riskId : risks) {
-        try {
-          RiskIncidence incidence = new RiskIncidence();
-          incidence.setDetectedOn(new Date());
-          incidence.setDetectedBy(job.getUsername());
-          incidence.setRiskId(riskId);
-          incidence.setAipId(representation.getAipId());
-          incidence.setRepresentationId(representation.getId());
-          incidence.setObjectClass(Representation.class.getSimpleName());
-          incidence.setStatus(IncidenceStatus.UNMITIGATED);
-          incidence.setSeverity(SeverityLevel.valueOf(severity));
-          model.createRiskIncidence(incidence, false);
-        } catch (GenericException | AlreadyExistsException | NotFoundException | AuthorizationDeniedException e) {
-          state = PluginState.FAILURE;
-        }
+        RiskIncidence incidence = newIncidence(job, riskId, Representation.class.getSimpleName());
+        incidence.setAipId(representation.getAipId());
+        incidence.setRepresentationId(representation.getId());
+        incidences.add(incidence);
       }
+      incidencesByRepresentation.add(incidences);
+    }
+    List<Boolean> created = createIncidences(model, incidencesByRepresentation);
+
+    for (int i = 0; i < list.size(); i++) {
+      Representation representation = list.get(i);
+      PluginState state = created.get(i) ? PluginState.SUCCESS : PluginState.FAILURE;
 
       jobPluginInfo.incrementObjectsProcessed(state);
       Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getRepresentationId(representation),
@@ -274,27 +306,24 @@ public class RiskAssociationPlugin<T extends IsRODAObject> extends AbstractPlugi
   private Pair<JobPluginInfo, Report> addIncidenceToFileList(ModelService model, IndexService index, List<File> list,
     List<String> risks, JobPluginInfo jobPluginInfo, Report pluginReport, Job job) throws JobException {
 
+    List<List<RiskIncidence>> incidencesByFile = new ArrayList<>();
     for (File file : list) {
-      PluginState state = PluginState.SUCCESS;
-
+      List<RiskIncidence> incidences = new ArrayList<>();
       for (String riskId : risks) {
-        try {
-          RiskIncidence incidence = new RiskIncidence();
-          incidence.setDetectedOn(new Date());
-          incidence.setDetectedBy(job.getUsername());
-          incidence.setRiskId(riskId);
-          incidence.setAipId(file.getAipId());
-          incidence.setRepresentationId(file.getRepresentationId());
-          incidence.setFilePath(file.getPath());
-          incidence.setFileId(file.getId());
-          incidence.setObjectClass(File.class.getSimpleName());
-          incidence.setStatus(IncidenceStatus.UNMITIGATED);
-          incidence.setSeverity(SeverityLevel.valueOf(severity));
-          model.createRiskIncidence(incidence, false);
-        } catch (GenericException | AlreadyExistsException | NotFoundException | AuthorizationDeniedException e) {
-          state = PluginState.FAILURE;
-        }
+        RiskIncidence incidence = newIncidence(job, riskId, File.class.getSimpleName());
+        incidence.setAipId(file.getAipId());
+        incidence.setRepresentationId(file.getRepresentationId());
+        incidence.setFilePath(file.getPath());
+        incidence.setFileId(file.getId());
+        incidences.add(incidence);
       }
+      incidencesByFile.add(incidences);
+    }
+    List<Boolean> created = createIncidences(model, incidencesByFile);
+
+    for (int i = 0; i < list.size(); i++) {
+      File file = list.get(i);
+      PluginState state = created.get(i) ? PluginState.SUCCESS : PluginState.FAILURE;
 
       jobPluginInfo.incrementObjectsProcessed(state);
       Report reportItem = PluginHelper.initPluginReportItem(this, IdUtils.getFileId(file), File.class);
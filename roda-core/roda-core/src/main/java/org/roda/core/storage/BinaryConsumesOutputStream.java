@@ -38,7 +38,7 @@ public class BinaryConsumesOutputStream implements ConsumesSkipableOutputStream
   }
 
   @Override
-  public void consumeOutputStream(OutputStream out, int from, int len) throws IOException {
+  public void consumeOutputStream(OutputStream out, long from, long len) throws IOException {
     try (InputStream in = binary.getContent().createInputStream()) {
       IOUtils.copyLarge(in, out, from, len);
     }
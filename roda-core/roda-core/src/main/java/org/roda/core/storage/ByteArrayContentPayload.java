@@ -0,0 +1,47 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.roda.core.storage.fs.FSUtils;
+
+public class ByteArrayContentPayload implements ContentPayload {
+  private final byte[] content;
+  private Path contentPath;
+
+  public ByteArrayContentPayload(byte[] content) {
+    this.content = content;
+    contentPath = null;
+  }
+
+  @Override
+  public InputStream createInputStream() {
+    return new ByteArrayInputStream(content);
+  }
+
+  @Override
+  public void writeToPath(Path path) throws IOException {
+    InputStream inputStream = createInputStream();
+    FSUtils.safeUpdate(inputStream, path);
+  }
+
+  @Override
+  public URI getURI() throws IOException, UnsupportedOperationException {
+    if (contentPath == null) {
+      contentPath = Files.createTempFile("content", ".tmp");
+      writeToPath(contentPath);
+    }
+    return contentPath.toUri();
+  }
+}
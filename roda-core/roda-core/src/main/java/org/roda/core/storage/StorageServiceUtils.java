@@ -7,6 +7,11 @@
  */
 package org.roda.core.storage;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -18,6 +23,7 @@ import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.ip.StoragePath;
 
 /**
@@ -27,6 +33,8 @@ import org.roda.core.data.v2.ip.StoragePath;
  * @author Luis Faria <lfaria@keep.pt>
  */
 public final class StorageServiceUtils {
+  private static final String FILE_URI_SCHEME = "file";
+  private static final String JSON_EXTENSION = ".json";
 
   /**
    * Private empty constructor
@@ -140,6 +148,59 @@ public final class StorageServiceUtils {
     IOUtils.closeQuietly(childResourcesIterable);
   }
 
+  /**
+   * Get the last modification time of the file with the content of a binary
+   * 
+   * @param binary
+   *          the binary
+   * @return the last modification time in milliseconds, or -1 if the content of
+   *         the binary is not a file
+   */
+  public static long getLastModified(Binary binary) {
+    try {
+      URI uri = binary.getContent().getURI();
+      if (uri != null && FILE_URI_SCHEME.equals(uri.getScheme())) {
+        return Files.getLastModifiedTime(Paths.get(uri)).toMillis();
+      }
+    } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+      // unknown
+    }
+    return -1;
+  }
+
+  /**
+   * Get a binary as it should leave the repository, i.e. with the model files
+   * stored as Smile (see core.model.format) written back as JSON, as their
+   * names promise
+   * 
+   * @param binary
+   *          the binary
+   * @return a JSON copy of the binary if it is a Smile model file, or the
+   *         binary itself otherwise
+   * @throws GenericException
+   */
+  public static Binary getExportedBinary(Binary binary) throws GenericException {
+    if (binary.isDirectory() || !binary.getStoragePath().getName().endsWith(JSON_EXTENSION)) {
+      return binary;
+    }
+    try (InputStream stream = binary.getContent().createInputStream()) {
+      if (!JsonUtils.isSmile(stream)) {
+        return binary;
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not read " + binary.getStoragePath(), e);
+    }
+
+    byte[] json;
+    try {
+      json = JsonUtils.getJsonBytes(binary.getContent().createInputStream());
+    } catch (IOException e) {
+      throw new GenericException("Could not read " + binary.getStoragePath(), e);
+    }
+    return new DefaultBinary(binary.getStoragePath(), new ByteArrayContentPayload(json), (long) json.length, false,
+      null);
+  }
+
   private static StoragePath extractToStoragePathChild(StoragePath fromStoragePath, StoragePath fromStoragePathChild,
     StoragePath toStoragePath) throws RequestNotValidException {
 
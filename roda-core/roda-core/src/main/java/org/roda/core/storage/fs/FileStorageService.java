@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
@@ -73,6 +74,7 @@ public class FileStorageService implements StorageService {
   private final Path historyDataPath;
   private final Path historyMetadataPath;
   private final Path trashPath;
+  private TrashManager trashManager = null;
 
   public FileStorageService(Path basePath, boolean createTrash, String trashDirName, boolean createHistory)
     throws GenericException {
@@ -103,6 +105,26 @@ public class FileStorageService implements StorageService {
     this(basePath, null);
   }
 
+  public Path getTrashPath() {
+    return trashPath;
+  }
+
+  public Path getRodaDataPath() {
+    return rodaDataPath;
+  }
+
+  /**
+   * Sets the manager that records and purges what is moved to the trash. If
+   * none is set, the trash is never emptied.
+   */
+  public void setTrashManager(TrashManager trashManager) {
+    this.trashManager = trashManager;
+  }
+
+  public TrashManager getTrashManager() {
+    return trashManager;
+  }
+
   private void initialize(Path path) throws GenericException {
     if (!FSUtils.exists(path)) {
       if (Files.isWritable(path.getParent())) {
@@ -181,18 +203,23 @@ public class FileStorageService implements StorageService {
   @Override
   public void deleteContainer(StoragePath storagePath) throws NotFoundException, GenericException {
     Path containerPath = FSUtils.getEntityPath(basePath, storagePath);
-    trash(containerPath);
+    String deletionId = IdUtils.createUUID();
+    trash(containerPath, deletionId);
 
     // cleanup history
-    deleteAllBinaryVersionsUnder(storagePath);
+    deleteAllBinaryVersionsUnder(storagePath, deletionId);
 
   }
 
-  private void trash(Path fromPath) throws GenericException, NotFoundException {
+  private void trash(Path fromPath, String deletionId) throws GenericException, NotFoundException {
     if (trashPath == null) {
       LOGGER.warn("Skipping trash '{}' because no trash folder is defined!", fromPath);
       return;
     }
+    if (trashManager != null) {
+      trashManager.trash(fromPath, deletionId);
+      return;
+    }
     try {
       Path toPath = trashPath.resolve(rodaDataPath.relativize(fromPath));
       LOGGER.debug("Moving to trash: {} to {}", fromPath, toPath);
@@ -430,10 +457,25 @@ public class FileStorageService implements StorageService {
   @Override
   public void deleteResource(StoragePath storagePath) throws NotFoundException, GenericException {
     Path resourcePath = FSUtils.getEntityPath(basePath, storagePath);
-    trash(resourcePath);
+    String deletionId = IdUtils.createUUID();
+    trash(resourcePath, deletionId);
 
     // cleanup history
-    deleteAllBinaryVersionsUnder(storagePath);
+    deleteAllBinaryVersionsUnder(storagePath, deletionId);
+  }
+
+  /**
+   * Restores the most recent deletion of a resource, together with its
+   * history, from the trash.
+   *
+   * @return the restored paths, relative to the data folder.
+   */
+  public List<String> restoreFromTrash(StoragePath storagePath)
+    throws NotFoundException, AlreadyExistsException, GenericException {
+    if (trashManager == null) {
+      throw new GenericException("Restoring from trash requires a trash manager");
+    }
+    return trashManager.restore(FSUtils.getEntityPath(basePath, storagePath));
   }
 
   public Path resolve(StoragePath storagePath) {
@@ -680,15 +722,16 @@ public class FileStorageService implements StorageService {
     Path dataPath = FSUtils.getEntityPath(historyDataPath, storagePath, version);
     Path metadataPath = FSUtils.getBinaryHistoryMetadataPath(historyDataPath, historyMetadataPath, dataPath);
 
-    trash(dataPath);
-    trash(metadataPath);
+    String deletionId = IdUtils.createUUID();
+    trash(dataPath, deletionId);
+    trash(metadataPath, deletionId);
 
     // cleanup created parents
     FSUtils.deleteEmptyAncestorsQuietly(dataPath, historyDataPath);
     FSUtils.deleteEmptyAncestorsQuietly(metadataPath, historyMetadataPath);
   }
 
-  private void deleteAllBinaryVersionsUnder(StoragePath storagePath) {
+  private void deleteAllBinaryVersionsUnder(StoragePath storagePath, String deletionId) {
     if (historyDataPath == null) {
       LOGGER.warn("Skipping delete all binary versions because no history folder is defined!");
       return;
@@ -704,8 +747,8 @@ public class FileStorageService implements StorageService {
         Path resourceHistoryMetadataPath = historyMetadataPath
           .resolve(historyDataPath.relativize(resourceHistoryDataPath));
 
-        trash(resourceHistoryDataPath);
-        trash(resourceHistoryMetadataPath);
+        trash(resourceHistoryDataPath, deletionId);
+        trash(resourceHistoryMetadataPath, deletionId);
 
         FSUtils.deleteEmptyAncestorsQuietly(resourceHistoryDataPath, historyDataPath);
         FSUtils.deleteEmptyAncestorsQuietly(resourceHistoryMetadataPath, historyMetadataPath);
@@ -728,10 +771,10 @@ public class FileStorageService implements StorageService {
           });
 
           for (Path p : directoryStream) {
-            trash(p);
+            trash(p, deletionId);
 
             Path pMetadata = FSUtils.getBinaryHistoryMetadataPath(historyDataPath, historyMetadataPath, p);
-            trash(pMetadata);
+            trash(pMetadata, deletionId);
 
             FSUtils.deleteEmptyAncestorsQuietly(p, historyDataPath);
             FSUtils.deleteEmptyAncestorsQuietly(pMetadata, historyMetadataPath);
@@ -0,0 +1,545 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.core.storage.fs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.roda.core.data.exceptions.AlreadyExistsException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.utils.JsonUtils;
+import org.roda.core.util.IdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Keeps track of what is moved into the {@link FileStorageService} trash and
+ * purges it in the background.
+ *
+ * Each deletion is kept as a separate entry (with its deletion date, size and
+ * original path) in a journal stored in the trash folder, and its content in a
+ * folder of its own, named after the entry. Entries older than
+ * the maximum age, the oldest entries while the trash is over the maximum
+ * size and the oldest copies of a path deleted more than the maximum number of
+ * times are purged, file by file, at a limited rate so that the purge does not
+ * compete with the rest of the system for I/O. The most recent deletion of a
+ * path can be restored while it is still in the trash.
+ *
+ * Content found in the trash when there is no journal yet (i.e. left by
+ * previous versions) is adopted as one entry per top level folder, dated with
+ * its last modification date.
+ */
+public class TrashManager implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrashManager.class);
+
+  private static final String JOURNAL_FILE = ".trash-journal.ndjson";
+  private static final String JOURNAL_TEMP_FILE = ".trash-journal.ndjson.tmp";
+
+  private final Path trashPath;
+  private final Path rodaDataPath;
+  private final Path journalPath;
+  private final long maxAgeInMillis;
+  private final long maxSizeInBytes;
+  private final int maxCopiesPerPath;
+  private final RateLimiter purgeRateLimiter;
+
+  // entries by id, in deletion order
+  private final Map<String, TrashEntry> entries = new LinkedHashMap<>();
+  private final Set<String> entriesBeingPurged = new HashSet<>();
+  private long size = 0;
+  private BufferedWriter journal = null;
+
+  private final Meter purgedFiles = new Meter();
+  private final Meter purgedBytes = new Meter();
+  private ScheduledExecutorService purger = null;
+
+  /**
+   * @param maxAgeInDays
+   *          0 to keep entries regardless of their age.
+   * @param maxSizeInMB
+   *          0 to keep entries regardless of the trash size.
+   * @param maxCopiesPerPath
+   *          0 to keep all deletions of the same path.
+   * @param purgeFilesPerSecond
+   *          maximum number of files deleted per second while purging.
+   */
+  public TrashManager(Path trashPath, Path rodaDataPath, int maxAgeInDays, long maxSizeInMB, int maxCopiesPerPath,
+    int purgeFilesPerSecond) {
+    this.trashPath = trashPath;
+    this.rodaDataPath = rodaDataPath;
+    this.journalPath = trashPath.resolve(JOURNAL_FILE);
+    this.maxAgeInMillis = TimeUnit.DAYS.toMillis(maxAgeInDays);
+    this.maxSizeInBytes = maxSizeInMB * 1024 * 1024;
+    this.maxCopiesPerPath = maxCopiesPerPath;
+    this.purgeRateLimiter = RateLimiter.create(Math.max(1, purgeFilesPerSecond));
+  }
+
+  public void start(int purgeIntervalInMinutes) throws GenericException {
+    try {
+      Files.createDirectories(trashPath);
+      synchronized (this) {
+        if (FSUtils.exists(journalPath)) {
+          loadJournal();
+        } else {
+          adoptExistingContent();
+        }
+        rewriteJournal();
+      }
+    } catch (IOException e) {
+      throw new GenericException("Could not load trash journal " + journalPath, e);
+    }
+
+    LOGGER.info("Trash has {} entries using {} bytes", entries.size(), size);
+
+    if (purgeIntervalInMinutes > 0) {
+      purger = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "TrashPurger");
+        thread.setDaemon(true);
+        return thread;
+      });
+      purger.scheduleWithFixedDelay(this::purgeQuietly, purgeIntervalInMinutes, purgeIntervalInMinutes,
+        TimeUnit.MINUTES);
+    }
+  }
+
+  public void registerMetrics(MetricRegistry metrics) {
+    String className = TrashManager.class.getSimpleName();
+    registerMetric(metrics, MetricRegistry.name(className, "size"), (Gauge<Long>) this::getSize);
+    registerMetric(metrics, MetricRegistry.name(className, "entries"), (Gauge<Integer>) this::getNumberOfEntries);
+    registerMetric(metrics, MetricRegistry.name(className, "purgedFiles"), purgedFiles);
+    registerMetric(metrics, MetricRegistry.name(className, "purgedBytes"), purgedBytes);
+  }
+
+  private static void registerMetric(MetricRegistry metrics, String name, Metric metric) {
+    // a new instance replaces the metrics of the previous one
+    metrics.remove(name);
+    metrics.register(name, metric);
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized int getNumberOfEntries() {
+    return entries.size();
+  }
+
+  /**
+   * Moves a file or folder into the trash, keeping its path relative to the
+   * data folder, and records it.
+   *
+   * @param deletionId
+   *          groups the entries trashed by the same deletion (e.g. a resource
+   *          and its history), which are restored together.
+   */
+  public void trash(Path fromPath, String deletionId) throws GenericException, NotFoundException {
+    Path relativePath = rodaDataPath.relativize(fromPath);
+    String entryId = IdUtils.createUUID();
+    // each entry has its own folder, so that it is never nested in another
+    Path toPath = trashPath.resolve(entryId).resolve(relativePath.toString());
+    try {
+      FSUtils.move(fromPath, toPath, false);
+    } catch (AlreadyExistsException e) {
+      LOGGER.error("Error moving to trash: {} to {}", fromPath, toPath, e);
+      throw new GenericException("Unexpected exception while moving to trash", e);
+    }
+
+    TrashEntry entry = new TrashEntry();
+    entry.setId(entryId);
+    entry.setDeletionId(deletionId);
+    entry.setOriginalPath(relativePath.toString());
+    entry.setTrashedPath(trashPath.relativize(toPath).toString());
+    entry.setDate(System.currentTimeMillis());
+    entry.setSize(computeSize(toPath));
+
+    synchronized (this) {
+      entries.put(entry.getId(), entry);
+      size += entry.getSize();
+      appendToJournal(entry);
+    }
+  }
+
+  /**
+   * Restores the most recent deletion of a path (relative to the data folder)
+   * and everything that was trashed together with it.
+   *
+   * @return the restored paths, relative to the data folder.
+   */
+  public List<String> restore(Path originalPath)
+    throws NotFoundException, AlreadyExistsException, GenericException {
+    String original = rodaDataPath.relativize(originalPath).toString();
+    List<TrashEntry> toRestore;
+    synchronized (this) {
+      // entries are in deletion order, so the last match is the most recent
+      Optional<TrashEntry> latest = entries.values().stream()
+        .filter(e -> e.getOriginalPath().equals(original) && !entriesBeingPurged.contains(e.getId()))
+        .reduce((first, second) -> second);
+      if (!latest.isPresent()) {
+        throw new NotFoundException("Nothing in trash for " + original);
+      }
+
+      String deletionId = latest.get().getDeletionId();
+      toRestore = entries.values().stream()
+        .filter(e -> deletionId != null ? deletionId.equals(e.getDeletionId()) : e == latest.get())
+        .collect(Collectors.toList());
+      for (TrashEntry entry : toRestore) {
+        if (FSUtils.exists(rodaDataPath.resolve(entry.getOriginalPath()))) {
+          throw new AlreadyExistsException("Cannot restore, path already exists: " + entry.getOriginalPath());
+        }
+      }
+
+      // entries being restored must not be purged meanwhile
+      toRestore.forEach(e -> entriesBeingPurged.add(e.getId()));
+    }
+
+    List<String> restored = new ArrayList<>();
+    try {
+      for (TrashEntry entry : toRestore) {
+        FSUtils.move(trashPath.resolve(entry.getTrashedPath()), rodaDataPath.resolve(entry.getOriginalPath()), false);
+        FSUtils.deleteEmptyAncestorsQuietly(trashPath.resolve(entry.getTrashedPath()), trashPath);
+        removeEntry(entry);
+        restored.add(entry.getOriginalPath());
+      }
+    } finally {
+      synchronized (this) {
+        toRestore.forEach(e -> entriesBeingPurged.remove(e.getId()));
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Purges the entries that are over the age, size or copies per path limits.
+   */
+  public void purge() {
+    List<TrashEntry> toPurge = selectEntriesToPurge();
+    if (toPurge.isEmpty()) {
+      return;
+    }
+
+    LOGGER.info("Purging {} entries from trash", toPurge.size());
+    for (TrashEntry entry : toPurge) {
+      try {
+        LOGGER.debug("Purging from trash {} ({} bytes, deleted at {})", entry.getTrashedPath(), entry.getSize(),
+          entry.getDate());
+        deleteThrottled(trashPath.resolve(entry.getTrashedPath()));
+        FSUtils.deleteEmptyAncestorsQuietly(trashPath.resolve(entry.getTrashedPath()), trashPath);
+        removeEntry(entry);
+      } catch (IOException | GenericException e) {
+        LOGGER.error("Could not purge from trash {}", entry.getTrashedPath(), e);
+      }
+    }
+
+    synchronized (this) {
+      // entries that could not be purged are retried on the next run
+      toPurge.forEach(e -> entriesBeingPurged.remove(e.getId()));
+      try {
+        rewriteJournal();
+      } catch (IOException e) {
+        LOGGER.error("Could not compact trash journal", e);
+      }
+    }
+  }
+
+  private void purgeQuietly() {
+    try {
+      purge();
+    } catch (RuntimeException e) {
+      LOGGER.error("Error purging trash", e);
+    }
+  }
+
+  private synchronized List<TrashEntry> selectEntriesToPurge() {
+    long now = System.currentTimeMillis();
+    long remainingSize = size;
+    Map<String, Integer> copies = new HashMap<>();
+    for (TrashEntry entry : entries.values()) {
+      copies.merge(entry.getOriginalPath(), 1, Integer::sum);
+    }
+
+    // entries are in deletion order, so the oldest are purged first
+    List<TrashEntry> toPurge = new ArrayList<>();
+    for (TrashEntry entry : entries.values()) {
+      if (entriesBeingPurged.contains(entry.getId())) {
+        continue;
+      }
+
+      boolean tooOld = maxAgeInMillis > 0 && now - entry.getDate() > maxAgeInMillis;
+      boolean tooBig = maxSizeInBytes > 0 && remainingSize > maxSizeInBytes;
+      boolean tooManyCopies = maxCopiesPerPath > 0 && copies.get(entry.getOriginalPath()) > maxCopiesPerPath;
+      if (tooOld || tooBig || tooManyCopies) {
+        entriesBeingPurged.add(entry.getId());
+        toPurge.add(entry);
+        remainingSize -= entry.getSize();
+        copies.merge(entry.getOriginalPath(), -1, Integer::sum);
+      }
+    }
+    return toPurge;
+  }
+
+  private void deleteThrottled(Path path) throws IOException {
+    if (!FSUtils.exists(path)) {
+      return;
+    }
+
+    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        purgeRateLimiter.acquire();
+        Files.delete(file);
+        purgedFiles.mark();
+        purgedBytes.mark(attrs.size());
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        if (e != null) {
+          throw e;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private synchronized void removeEntry(TrashEntry entry) throws GenericException {
+    if (entries.remove(entry.getId()) != null) {
+      size -= entry.getSize();
+      TrashEntry removal = new TrashEntry();
+      removal.setId(entry.getId());
+      removal.setRemoved(true);
+      appendToJournal(removal);
+    }
+    entriesBeingPurged.remove(entry.getId());
+  }
+
+  private void appendToJournal(TrashEntry record) throws GenericException {
+    try {
+      if (journal == null) {
+        journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+      }
+      journal.write(JsonUtils.getJsonFromObject(record));
+      journal.newLine();
+      journal.flush();
+    } catch (IOException e) {
+      throw new GenericException("Could not write to trash journal " + journalPath, e);
+    }
+  }
+
+  private void loadJournal() throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        try {
+          TrashEntry record = JsonUtils.getObjectFromJson(line, TrashEntry.class);
+          if (record.isRemoved()) {
+            TrashEntry removed = entries.remove(record.getId());
+            if (removed != null) {
+              size -= removed.getSize();
+            }
+          } else {
+            entries.put(record.getId(), record);
+            size += record.getSize();
+          }
+        } catch (GenericException e) {
+          // most likely the last line of a journal that was being written
+          LOGGER.warn("Ignoring invalid trash journal line: {}", line);
+        }
+      }
+    }
+  }
+
+  private void rewriteJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+
+    Path tempPath = trashPath.resolve(JOURNAL_TEMP_FILE);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+      for (TrashEntry entry : entries.values()) {
+        writer.write(JsonUtils.getJsonFromObject(entry));
+        writer.newLine();
+      }
+    }
+    Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void adoptExistingContent() throws IOException {
+    List<TrashEntry> adopted = new ArrayList<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(trashPath)) {
+      for (Path child : children) {
+        String name = child.getFileName().toString();
+        if (name.equals(JOURNAL_FILE) || name.equals(JOURNAL_TEMP_FILE)) {
+          continue;
+        }
+
+        TrashEntry entry = new TrashEntry();
+        entry.setId(IdUtils.createUUID());
+        entry.setOriginalPath(name);
+        entry.setTrashedPath(name);
+        entry.setDate(Files.getLastModifiedTime(child).toMillis());
+        entry.setSize(computeSize(child));
+        adopted.add(entry);
+      }
+    }
+
+    adopted.sort(Comparator.comparingLong(TrashEntry::getDate));
+    for (TrashEntry entry : adopted) {
+      LOGGER.info("Adopting existing trash content {} ({} bytes)", entry.getTrashedPath(), entry.getSize());
+      entries.put(entry.getId(), entry);
+      size += entry.getSize();
+    }
+  }
+
+  private static long computeSize(Path path) {
+    final long[] total = {0};
+    try {
+      Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          total[0] += attrs.size();
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (NoSuchFileException e) {
+      // nothing to count
+    } catch (IOException e) {
+      LOGGER.warn("Could not compute size of {}", path, e);
+    }
+    return total[0];
+  }
+
+  @Override
+  public void close() {
+    if (purger != null) {
+      purger.shutdownNow();
+    }
+    synchronized (this) {
+      if (journal != null) {
+        try {
+          journal.close();
+        } catch (IOException e) {
+          LOGGER.warn("Could not close trash journal", e);
+        }
+        journal = null;
+      }
+    }
+  }
+
+  /**
+   * A trash journal record, either an entry or the removal of one.
+   */
+  public static class TrashEntry {
+    private String id;
+    private String deletionId;
+    private String originalPath;
+    private String trashedPath;
+    private long date;
+    private long size;
+    private boolean removed = false;
+
+    public String getId() {
+      return id;
+    }
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public String getDeletionId() {
+      return deletionId;
+    }
+
+    public void setDeletionId(String deletionId) {
+      this.deletionId = deletionId;
+    }
+
+    public String getOriginalPath() {
+      return originalPath;
+    }
+
+    public void setOriginalPath(String originalPath) {
+      this.originalPath = originalPath;
+    }
+
+    public String getTrashedPath() {
+      return trashedPath;
+    }
+
+    public void setTrashedPath(String trashedPath) {
+      this.trashedPath = trashedPath;
+    }
+
+    public long getDate() {
+      return date;
+    }
+
+    public void setDate(long date) {
+      this.date = date;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public void setSize(long size) {
+      this.size = size;
+    }
+
+    public boolean isRemoved() {
+      return removed;
+    }
+
+    public void setRemoved(boolean removed) {
+      this.removed = removed;
+    }
+  }
+}
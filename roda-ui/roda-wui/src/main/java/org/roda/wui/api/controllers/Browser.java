@@ -59,6 +59,7 @@ import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Permissions.PermissionType;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.data.v2.ip.TransferredResourceUpload;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
 import org.roda.core.data.v2.ip.metadata.PreservationMetadata.PreservationMetadataType;
 import org.roda.core.data.v2.jobs.Job;
@@ -1857,6 +1858,116 @@ public class Browser extends RodaWuiController {
 
   }
 
+  public static TransferredResourceUpload createTransferredResourceUpload(User user, String parentUUID,
+    String fileName, long size, String checksum)
+    throws AuthorizationDeniedException, GenericException, RequestNotValidException, NotFoundException {
+    final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    // check user permissions
+    controllerAssistant.checkRoles(user);
+
+    if (parentUUID != null) {
+      UserUtility.checkTransferredResourceAccess(user, Arrays.asList(parentUUID));
+    }
+
+    LogEntryState state = LogEntryState.SUCCESS;
+
+    try {
+      // delegate
+      return BrowserHelper.createTransferredResourceUpload(parentUUID, fileName, size, checksum, user);
+    } catch (RODAException e) {
+      state = LogEntryState.FAILURE;
+      throw e;
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, RodaConstants.CONTROLLER_PATH_PARAM, parentUUID,
+        RodaConstants.CONTROLLER_FILENAME_PARAM, fileName);
+    }
+  }
+
+  public static TransferredResourceUpload retrieveTransferredResourceUpload(User user, String uploadId)
+    throws AuthorizationDeniedException, GenericException, NotFoundException {
+    final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    // check user permissions
+    controllerAssistant.checkRoles(user);
+
+    LogEntryState state = LogEntryState.SUCCESS;
+
+    try {
+      // delegate
+      return BrowserHelper.retrieveTransferredResourceUpload(uploadId, user);
+    } catch (RODAException e) {
+      state = LogEntryState.FAILURE;
+      throw e;
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, RodaConstants.CONTROLLER_UPLOAD_ID_PARAM, uploadId);
+    }
+  }
+
+  public static TransferredResourceUpload uploadTransferredResourceChunk(User user, String uploadId, long offset,
+    InputStream inputStream, String checksum)
+    throws AuthorizationDeniedException, GenericException, RequestNotValidException, NotFoundException {
+    final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    // check user permissions
+    controllerAssistant.checkRoles(user);
+
+    try {
+      // delegate
+      return BrowserHelper.uploadTransferredResourceChunk(uploadId, offset, inputStream, checksum, user);
+    } catch (RODAException e) {
+      // only failures are registered, a large upload has too many chunks
+      controllerAssistant.registerAction(user, LogEntryState.FAILURE, RodaConstants.CONTROLLER_UPLOAD_ID_PARAM,
+        uploadId, RodaConstants.CONTROLLER_ERROR_PARAM, e.getMessage());
+      throw e;
+    }
+  }
+
+  public static TransferredResource finishTransferredResourceUpload(User user, String uploadId, boolean forceCommit)
+    throws AuthorizationDeniedException, GenericException, RequestNotValidException, NotFoundException,
+    AlreadyExistsException {
+    final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    // check user permissions
+    controllerAssistant.checkRoles(user);
+
+    LogEntryState state = LogEntryState.SUCCESS;
+
+    try {
+      // delegate
+      return BrowserHelper.finishTransferredResourceUpload(uploadId, forceCommit, user);
+    } catch (RODAException e) {
+      state = LogEntryState.FAILURE;
+      throw e;
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, RodaConstants.CONTROLLER_UPLOAD_ID_PARAM, uploadId);
+    }
+  }
+
+  public static void deleteTransferredResourceUpload(User user, String uploadId)
+    throws AuthorizationDeniedException, GenericException, NotFoundException {
+    final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    // check user permissions
+    controllerAssistant.checkRoles(user);
+
+    LogEntryState state = LogEntryState.SUCCESS;
+
+    try {
+      // delegate
+      BrowserHelper.deleteTransferredResourceUpload(uploadId, user);
+    } catch (RODAException e) {
+      state = LogEntryState.FAILURE;
+      throw e;
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, RodaConstants.CONTROLLER_UPLOAD_ID_PARAM, uploadId);
+    }
+  }
+
   public static ConsumesOutputStream retrieveClassificationPlan(User user, String filename)
     throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
     final ControllerAssistant controllerAssistant = new ControllerAssistant() {};
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -102,6 +103,7 @@ import org.roda.core.data.v2.ip.Permissions;
 import org.roda.core.data.v2.ip.Representation;
 import org.roda.core.data.v2.ip.StoragePath;
 import org.roda.core.data.v2.ip.TransferredResource;
+import org.roda.core.data.v2.ip.TransferredResourceUpload;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
 import org.roda.core.data.v2.ip.metadata.DescriptiveMetadataList;
 import org.roda.core.data.v2.ip.metadata.IndexedPreservationAgent;
@@ -129,8 +131,9 @@ import org.roda.core.data.v2.risks.RiskIncidence;
 import org.roda.core.data.v2.user.User;
 import org.roda.core.data.v2.validation.ValidationException;
 import org.roda.core.data.v2.validation.ValidationReport;
+import org.roda.core.index.IndexCountService;
+import org.roda.core.index.IndexCountService.CountQuery;
 import org.roda.core.index.IndexService;
-import org.roda.core.index.utils.IndexUtils;
 import org.roda.core.index.utils.IterableIndexResult;
 import org.roda.core.model.ModelService;
 import org.roda.core.model.utils.ModelUtils;
@@ -172,6 +175,7 @@ import org.roda.wui.client.planning.MitigationPropertiesBundle;
 import org.roda.wui.client.planning.RelationTypeTranslationsBundle;
 import org.roda.wui.client.planning.RiskMitigationBundle;
 import org.roda.wui.client.planning.RiskVersionsBundle;
+import org.roda.wui.common.DescriptiveMetadataHtmlCache;
 import org.roda.wui.common.HTMLUtils;
 import org.roda.wui.common.server.ServerTools;
 import org.roda.wui.server.common.XMLSimilarityIgnoreElements;
@@ -191,6 +195,14 @@ public class BrowserHelper {
   private static final List<String> aipAncestorsFieldsToReturn = Arrays.asList(RodaConstants.INDEX_UUID,
     RodaConstants.AIP_GHOST, RodaConstants.AIP_LEVEL, RodaConstants.AIP_TITLE, RodaConstants.AIP_PARENT_ID);
 
+  private static final String COUNT_CHILD_AIPS = "childAIPs";
+  private static final String COUNT_REPRESENTATIONS = "representations";
+  private static final String COUNT_SIBLINGS = "siblings";
+  private static final String COUNT_DIPS = "dips";
+  private static final String COUNT_RISK_INCIDENCES = "riskIncidences";
+  private static final String COUNT_PRESERVATION_EVENTS = "preservationEvents";
+  private static final String COUNT_LOG_ENTRIES = "logEntries";
+
   private BrowserHelper() {
     // do nothing
   }
@@ -218,61 +230,49 @@ public class BrowserHelper {
       }
     }
 
-    // Count child AIPs
+    // Count related objects, skipping the ones the user cannot search
+    Map<String, CountQuery> countQueries = new HashMap<>();
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_AIP)) {
       Filter childAIPfilter = new Filter(new SimpleFilterParameter(RodaConstants.AIP_PARENT_ID, aip.getId()));
-      Long childAIPCount = RodaCoreFactory.getIndexService().count(IndexedAIP.class, childAIPfilter, user, justActive);
-      bundle.setChildAIPCount(childAIPCount);
-    } else {
-      bundle.setChildAIPCount(-1L);
+      countQueries.put(COUNT_CHILD_AIPS, new CountQuery(IndexedAIP.class, childAIPfilter, user, justActive));
     }
 
-    // Count representations
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_REPRESENTATION)) {
       Filter repFilter = new Filter(new SimpleFilterParameter(RodaConstants.REPRESENTATION_AIP_ID, aipId));
-      Long repCount = RodaCoreFactory.getIndexService().count(IndexedRepresentation.class, repFilter, user, justActive);
-      bundle.setRepresentationCount(repCount);
-    } else {
-      bundle.setRepresentationCount(-1L);
+      countQueries.put(COUNT_REPRESENTATIONS, new CountQuery(IndexedRepresentation.class, repFilter, user, justActive));
     }
 
-    // Count DIPs
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_DIP)) {
       Filter dipsFilter = new Filter(new SimpleFilterParameter(RodaConstants.DIP_AIP_UUIDS, aip.getId()));
-      Long dipCount = RodaCoreFactory.getIndexService().count(IndexedDIP.class, dipsFilter, user, justActive);
-      bundle.setDipCount(dipCount);
-    } else {
-      bundle.setDipCount(-1L);
+      countQueries.put(COUNT_DIPS, new CountQuery(IndexedDIP.class, dipsFilter, user, justActive));
     }
 
-    // Count risk incidences
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_RISK_INCIDENCE)) {
       Filter riskIncidenceFilter = new Filter(new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_AIP_ID, aipId));
-      Long riskIncidenceCount = RodaCoreFactory.getIndexService().count(RiskIncidence.class, riskIncidenceFilter, user,
-        justActive);
-      bundle.setRiskIncidenceCount(riskIncidenceCount);
-    } else {
-      bundle.setRiskIncidenceCount(-1L);
+      countQueries.put(COUNT_RISK_INCIDENCES,
+        new CountQuery(RiskIncidence.class, riskIncidenceFilter, user, justActive));
     }
 
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_PRESERVATION_EVENT)) {
       Filter preservationEventFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.PRESERVATION_EVENT_AIP_ID, aipId));
-      Long preservationEventCount = RodaCoreFactory.getIndexService().count(IndexedPreservationEvent.class,
-        preservationEventFilter, user, false);
-      bundle.setPreservationEventCount(preservationEventCount);
-    } else {
-      bundle.setPreservationEventCount(-1L);
+      countQueries.put(COUNT_PRESERVATION_EVENTS,
+        new CountQuery(IndexedPreservationEvent.class, preservationEventFilter, user, false));
     }
 
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_LOG_ENTRY)) {
       Filter logFilter = new Filter(new SimpleFilterParameter(RodaConstants.LOG_RELATED_OBJECT_ID, aipId));
-      Long logCount = RodaCoreFactory.getIndexService().count(LogEntry.class, logFilter, user, justActive);
-      bundle.setLogCount(logCount);
-    } else {
-      bundle.setLogCount(-1L);
+      countQueries.put(COUNT_LOG_ENTRIES, new CountQuery(LogEntry.class, logFilter, user, justActive));
     }
 
+    Map<String, Long> counts = IndexCountService.getInstance().count(aipId, null, user, countQueries);
+    bundle.setChildAIPCount(counts.getOrDefault(COUNT_CHILD_AIPS, -1L));
+    bundle.setRepresentationCount(counts.getOrDefault(COUNT_REPRESENTATIONS, -1L));
+    bundle.setDipCount(counts.getOrDefault(COUNT_DIPS, -1L));
+    bundle.setRiskIncidenceCount(counts.getOrDefault(COUNT_RISK_INCIDENCES, -1L));
+    bundle.setPreservationEventCount(counts.getOrDefault(COUNT_PRESERVATION_EVENTS, -1L));
+    bundle.setLogCount(counts.getOrDefault(COUNT_LOG_ENTRIES, -1L));
+
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_REPRESENTATION_INFORMATION)) {
       List<String> rodaConfigurationAsList = RodaCoreFactory.getRodaConfigurationAsList("ui.ri.rule.AIP").stream()
         .map(r -> RodaCoreFactory.getRodaConfigurationAsString(r, RodaConstants.SEARCH_FIELD_FIELDS))
@@ -307,37 +307,33 @@ public class BrowserHelper {
       }
     }
 
-    // Count DIPs
+    // Count related objects, skipping the ones the user cannot search
+    Map<String, CountQuery> countQueries = new HashMap<>();
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_DIP)) {
       Filter dipsFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.DIP_REPRESENTATION_UUIDS, representation.getUUID()));
-      Long dipCount = RodaCoreFactory.getIndexService().count(IndexedDIP.class, dipsFilter);
-      bundle.setDipCount(dipCount);
-    } else {
-      bundle.setDipCount(-1L);
+      countQueries.put(COUNT_DIPS, new CountQuery(IndexedDIP.class, dipsFilter));
     }
 
-    // Count risk incidences
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_RISK_INCIDENCE)) {
       Filter riskIncidenceFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_REPRESENTATION_ID, representation.getId()));
-      Long riskIncidenceCount = RodaCoreFactory.getIndexService().count(RiskIncidence.class, riskIncidenceFilter);
-      bundle.setRiskIncidenceCount(riskIncidenceCount);
-    } else {
-      bundle.setRiskIncidenceCount(-1L);
+      countQueries.put(COUNT_RISK_INCIDENCES, new CountQuery(RiskIncidence.class, riskIncidenceFilter));
     }
 
-    // Count preservation events
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_PRESERVATION_EVENT)) {
       Filter preservationEventFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.PRESERVATION_EVENT_REPRESENTATION_UUID, representation.getUUID()));
-      Long preservationEventCount = RodaCoreFactory.getIndexService().count(IndexedPreservationEvent.class,
-        preservationEventFilter);
-      bundle.setPreservationEventCount(preservationEventCount);
-    } else {
-      bundle.setPreservationEventCount(-1L);
+      countQueries.put(COUNT_PRESERVATION_EVENTS,
+        new CountQuery(IndexedPreservationEvent.class, preservationEventFilter));
     }
 
+    Map<String, Long> counts = IndexCountService.getInstance().count(aip.getId(), representation.getUUID(), user,
+      countQueries);
+    bundle.setDipCount(counts.getOrDefault(COUNT_DIPS, -1L));
+    bundle.setRiskIncidenceCount(counts.getOrDefault(COUNT_RISK_INCIDENCES, -1L));
+    bundle.setPreservationEventCount(counts.getOrDefault(COUNT_PRESERVATION_EVENTS, -1L));
+
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_REPRESENTATION_INFORMATION)) {
       List<String> rodaConfigurationAsList = RodaCoreFactory.getRodaConfigurationAsList("ui.ri.rule.Representation")
         .stream().map(r -> RodaCoreFactory.getRodaConfigurationAsString(r, RodaConstants.SEARCH_FIELD_FIELDS))
@@ -362,7 +358,8 @@ public class BrowserHelper {
     List<IndexedAIP> ancestors = retrieveAncestors(aip, user, aipAncestorsFieldsToReturn);
     bundle.setAipAncestors(ancestors);
 
-    // set sibling count
+    // Count related objects, skipping the ones the user cannot search
+    Map<String, CountQuery> countQueries = new HashMap<>();
     String parentUUID = bundle.getFile().getParentUUID();
 
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_FILE)) {
@@ -376,41 +373,33 @@ public class BrowserHelper {
       }
 
       boolean justActive = AIPState.ACTIVE.equals(aip.getState());
-      bundle.setTotalSiblingCount(count(IndexedFile.class, siblingFilter, justActive, user));
-    } else {
-      bundle.setTotalSiblingCount(-1L);
+      countQueries.put(COUNT_SIBLINGS, new CountQuery(IndexedFile.class, siblingFilter, user, justActive));
     }
 
-    // Count DIPs
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_DIP)) {
       Filter dipsFilter = new Filter(new SimpleFilterParameter(RodaConstants.DIP_FILE_UUIDS, file.getUUID()));
-      Long dipCount = RodaCoreFactory.getIndexService().count(IndexedDIP.class, dipsFilter);
-      bundle.setDipCount(dipCount);
-    } else {
-      bundle.setDipCount(-1L);
+      countQueries.put(COUNT_DIPS, new CountQuery(IndexedDIP.class, dipsFilter));
     }
 
-    // Count risk incidences
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_RISK_INCIDENCE)) {
       Filter riskIncidenceFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.RISK_INCIDENCE_FILE_ID, file.getUUID()));
-      Long riskIncidenceCount = RodaCoreFactory.getIndexService().count(RiskIncidence.class, riskIncidenceFilter);
-      bundle.setRiskIncidenceCount(riskIncidenceCount);
-    } else {
-      bundle.setRiskIncidenceCount(-1L);
+      countQueries.put(COUNT_RISK_INCIDENCES, new CountQuery(RiskIncidence.class, riskIncidenceFilter));
     }
 
-    // Count preservation events
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_PRESERVATION_EVENT)) {
       Filter preservationEventFilter = new Filter(
         new SimpleFilterParameter(RodaConstants.PRESERVATION_EVENT_FILE_UUID, file.getUUID()));
-      Long preservationEventCount = RodaCoreFactory.getIndexService().count(IndexedPreservationEvent.class,
-        preservationEventFilter);
-      bundle.setPreservationEventCount(preservationEventCount);
-    } else {
-      bundle.setPreservationEventCount(-1L);
+      countQueries.put(COUNT_PRESERVATION_EVENTS,
+        new CountQuery(IndexedPreservationEvent.class, preservationEventFilter));
     }
 
+    Map<String, Long> counts = IndexCountService.getInstance().count(aip.getId(), file.getUUID(), user, countQueries);
+    bundle.setTotalSiblingCount(counts.getOrDefault(COUNT_SIBLINGS, -1L));
+    bundle.setDipCount(counts.getOrDefault(COUNT_DIPS, -1L));
+    bundle.setRiskIncidenceCount(counts.getOrDefault(COUNT_RISK_INCIDENCES, -1L));
+    bundle.setPreservationEventCount(counts.getOrDefault(COUNT_PRESERVATION_EVENTS, -1L));
+
     if (UserUtility.hasPermissions(user, RodaConstants.PERMISSION_METHOD_FIND_REPRESENTATION_INFORMATION)) {
       List<String> rodaConfigurationAsList = RodaCoreFactory.getRodaConfigurationAsList("ui.ri.rule.File").stream()
         .map(r -> RodaCoreFactory.getRodaConfigurationAsString(r, RodaConstants.SEARCH_FIELD_FIELDS))
@@ -932,15 +921,13 @@ public class BrowserHelper {
 
       return DownloadUtils.createZipStreamResponse(zipEntries, aipId);
     } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_HTML.equals(acceptFormat)) {
-      ModelService model = RodaCoreFactory.getModelService();
+      DescriptiveMetadataHtmlCache htmlCache = DescriptiveMetadataHtmlCache.getInstance();
+      Locale locale = ServerTools.parseLocale(language);
       List<Pair<String, String>> htmlDescriptives = new ArrayList<>();
       List<DescriptiveMetadata> orderedMetadata = orderDescriptiveMetadata(metadata);
 
       for (DescriptiveMetadata dm : orderedMetadata) {
-        Binary descriptiveMetadataBinary = model.retrieveDescriptiveMetadataBinary(aipId, dm.getId());
-        DescriptiveMetadata descriptiveMetadata = model.retrieveDescriptiveMetadata(aipId, dm.getId());
-        htmlDescriptives.add(Pair.of(dm.getId(), HTMLUtils.descriptiveMetadataToHtml(descriptiveMetadataBinary,
-          descriptiveMetadata.getType(), descriptiveMetadata.getVersion(), ServerTools.parseLocale(language))));
+        htmlDescriptives.add(Pair.of(dm.getId(), htmlCache.getHtml(aipId, dm.getRepresentationId(), dm, locale)));
       }
 
       return new StreamResponse(
@@ -1004,11 +991,10 @@ public class BrowserHelper {
       stream = new BinaryConsumesOutputStream(descriptiveMetadataBinary, RodaConstants.MEDIA_TYPE_TEXT_XML);
       ret = new StreamResponse(stream);
     } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_HTML.equals(acceptFormat)) {
-      Binary descriptiveMetadataBinary = model.retrieveDescriptiveMetadataBinary(aipId, metadataId);
-      filename = descriptiveMetadataBinary.getStoragePath().getName() + HTML_EXT;
+      filename = ModelUtils.getDescriptiveMetadataStoragePath(aipId, metadataId).getName() + HTML_EXT;
       DescriptiveMetadata descriptiveMetadata = model.retrieveDescriptiveMetadata(aipId, metadataId);
-      String htmlDescriptive = HTMLUtils.descriptiveMetadataToHtml(descriptiveMetadataBinary,
-        descriptiveMetadata.getType(), descriptiveMetadata.getVersion(), ServerTools.parseLocale(language));
+      String htmlDescriptive = DescriptiveMetadataHtmlCache.getInstance().getHtml(aipId, null, descriptiveMetadata,
+        ServerTools.parseLocale(language));
 
       stream = new DefaultConsumesOutputStream(filename, RodaConstants.MEDIA_TYPE_TEXT_HTML, out -> {
         PrintStream printStream = new PrintStream(out);
@@ -1048,11 +1034,11 @@ public class BrowserHelper {
       stream = new BinaryConsumesOutputStream(descriptiveMetadataBinary, RodaConstants.MEDIA_TYPE_TEXT_XML);
       ret = new StreamResponse(stream);
     } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_HTML.equals(acceptFormat)) {
-      Binary descriptiveMetadataBinary = model.retrieveDescriptiveMetadataBinary(aipId, representationId, metadataId);
-      filename = descriptiveMetadataBinary.getStoragePath().getName() + HTML_EXT;
+      filename = ModelUtils.getDescriptiveMetadataStoragePath(aipId, representationId, metadataId).getName()
+        + HTML_EXT;
       DescriptiveMetadata descriptiveMetadata = model.retrieveDescriptiveMetadata(aipId, representationId, metadataId);
-      String htmlDescriptive = HTMLUtils.descriptiveMetadataToHtml(descriptiveMetadataBinary,
-        descriptiveMetadata.getType(), descriptiveMetadata.getVersion(), ServerTools.parseLocale(language));
+      String htmlDescriptive = DescriptiveMetadataHtmlCache.getInstance().getHtml(aipId, representationId,
+        descriptiveMetadata, ServerTools.parseLocale(language));
 
       stream = new DefaultConsumesOutputStream(filename, RodaConstants.MEDIA_TYPE_TEXT_HTML, out -> {
         PrintStream printStream = new PrintStream(out);
@@ -1097,8 +1083,8 @@ public class BrowserHelper {
     } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_HTML.equals(acceptFormat)) {
       filename = fileName + HTML_EXT;
       DescriptiveMetadata descriptiveMetadata = model.retrieveDescriptiveMetadata(aipId, metadataId);
-      String htmlDescriptive = HTMLUtils.descriptiveMetadataToHtml(binary, descriptiveMetadata.getType(),
-        descriptiveMetadata.getVersion(), ServerTools.parseLocale(language));
+      String htmlDescriptive = DescriptiveMetadataHtmlCache.getInstance().getHtml(aipId, null, descriptiveMetadata,
+        versionId, ServerTools.parseLocale(language));
 
       stream = new DefaultConsumesOutputStream(filename, RodaConstants.MEDIA_TYPE_TEXT_HTML, out -> {
         PrintStream printStream = new PrintStream(out);
@@ -1143,8 +1129,8 @@ public class BrowserHelper {
       filename = fileName + HTML_EXT;
       DescriptiveMetadata descriptiveMetadata = model.retrieveDescriptiveMetadata(aipId, representationId, metadataId);
 
-      String htmlDescriptive = HTMLUtils.descriptiveMetadataToHtml(binary, descriptiveMetadata.getType(),
-        descriptiveMetadata.getVersion(), ServerTools.parseLocale(language));
+      String htmlDescriptive = DescriptiveMetadataHtmlCache.getInstance().getHtml(aipId, representationId,
+        descriptiveMetadata, versionId, ServerTools.parseLocale(language));
 
       stream = new DefaultConsumesOutputStream(filename, RodaConstants.MEDIA_TYPE_TEXT_HTML, out -> {
         PrintStream printStream = new PrintStream(out);
@@ -1878,6 +1864,54 @@ public class BrowserHelper {
     return transferredResource;
   }
 
+  public static TransferredResourceUpload createTransferredResourceUpload(String parentUUID, String fileName,
+    long size, String checksum, User user) throws GenericException, RequestNotValidException {
+    return RodaCoreFactory.getTransferredResourcesScanner().getUploadManager().createUpload(parentUUID, fileName,
+      size, checksum, user.getName());
+  }
+
+  public static TransferredResourceUpload retrieveTransferredResourceUpload(String uploadId, User user)
+    throws GenericException, NotFoundException, AuthorizationDeniedException {
+    TransferredResourceUpload upload = RodaCoreFactory.getTransferredResourcesScanner().getUploadManager()
+      .retrieveUpload(uploadId);
+    if (!user.getName().equals(upload.getCreatedBy())) {
+      throw new AuthorizationDeniedException("The upload " + uploadId + " belongs to another user");
+    }
+    return upload;
+  }
+
+  public static TransferredResourceUpload uploadTransferredResourceChunk(String uploadId, long offset,
+    InputStream inputStream, String checksum, User user)
+    throws GenericException, NotFoundException, RequestNotValidException, AuthorizationDeniedException {
+    retrieveTransferredResourceUpload(uploadId, user);
+    return RodaCoreFactory.getTransferredResourcesScanner().getUploadManager().uploadChunk(uploadId, offset,
+      inputStream, checksum);
+  }
+
+  public static TransferredResource finishTransferredResourceUpload(String uploadId, boolean forceCommit, User user)
+    throws GenericException, NotFoundException, RequestNotValidException, AlreadyExistsException,
+    AuthorizationDeniedException {
+    TransferredResourceUpload upload = retrieveTransferredResourceUpload(uploadId, user);
+    if (upload.getParentUUID() != null) {
+      UserUtility.checkTransferredResourceAccess(user, Arrays.asList(upload.getParentUUID()));
+    }
+
+    TransferredResource transferredResource = RodaCoreFactory.getTransferredResourcesScanner().getUploadManager()
+      .finishUpload(uploadId);
+
+    if (forceCommit) {
+      RodaCoreFactory.getTransferredResourcesScanner().commit();
+    }
+
+    return transferredResource;
+  }
+
+  public static void deleteTransferredResourceUpload(String uploadId, User user)
+    throws GenericException, NotFoundException, AuthorizationDeniedException {
+    retrieveTransferredResourceUpload(uploadId, user);
+    RodaCoreFactory.getTransferredResourcesScanner().getUploadManager().deleteUpload(uploadId);
+  }
+
   protected static <T extends IsIndexed> void delete(User user, Class<T> returnClass, SelectedItems<T> ids)
     throws GenericException, RequestNotValidException, AuthorizationDeniedException {
     List<String> idList = consolidate(user, returnClass, ids);
@@ -2356,22 +2390,22 @@ public class BrowserHelper {
 
   public static StreamResponse retrieveAIPs(SelectedItems<IndexedAIP> selected, String acceptFormat)
     throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
-    IndexService index = RodaCoreFactory.getIndexService();
     if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_BIN.equals(acceptFormat)) {
-      List<ZipEntryInfo> zipEntries = new ArrayList<>();
-      if (selected instanceof SelectedItemsFilter) {
-        SelectedItemsFilter<IndexedAIP> selectedItems = (SelectedItemsFilter<IndexedAIP>) selected;
-        long count = index.count(IndexedAIP.class, selectedItems.getFilter());
-        for (int i = 0; i < count; i += RodaConstants.DEFAULT_PAGINATION_VALUE) {
-          List<IndexedAIP> aips = index.find(IndexedAIP.class, selectedItems.getFilter(), null,
-            new Sublist(i, RodaConstants.DEFAULT_PAGINATION_VALUE), null).getResults();
-          zipEntries.addAll(IndexUtils.zipIndexedAIP(aips));
-        }
-      } else {
-        SelectedItemsList<IndexedAIP> selectedItems = (SelectedItemsList<IndexedAIP>) selected;
-        zipEntries.addAll(IndexUtils.zipIndexedAIP(IndexUtils.getIndexedAIPsFromObjectIds(selectedItems)));
-      }
-      return DownloadUtils.createZipStreamResponse(zipEntries, "export");
+      // AIPs are listed each time the ZIP is iterated, so the whole selection
+      // is never kept in memory
+      return DownloadUtils.createZipStreamResponse(() -> {
+        StorageService storage = RodaCoreFactory.getStorageService();
+        CloseableIterable<String> aipIds = listAIPIds(selected);
+        return CloseableIterables.concat(aipIds, aipId -> {
+          try {
+            return DownloadUtils.listZipEntries(storage, ModelUtils.getAIPStoragePath(aipId), aipId + "/");
+          } catch (RequestNotValidException e) {
+            throw new UncheckedIOException(new IOException(e));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }, "export");
     } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSON.equals(acceptFormat)
       || RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSONP.equals(acceptFormat)) {
       throw new GenericException("Not yet supported: " + acceptFormat);
@@ -2380,6 +2414,21 @@ public class BrowserHelper {
     }
   }
 
+  private static CloseableIterable<String> listAIPIds(SelectedItems<IndexedAIP> selected) throws IOException {
+    if (selected instanceof SelectedItemsFilter) {
+      SelectedItemsFilter<IndexedAIP> selectedItems = (SelectedItemsFilter<IndexedAIP>) selected;
+      try {
+        IterableIndexResult<IndexedAIP> aips = RodaCoreFactory.getIndexService().findAll(IndexedAIP.class,
+          selectedItems.getFilter(), Arrays.asList(RodaConstants.INDEX_UUID));
+        return CloseableIterables.transform(aips, IndexedAIP::getId);
+      } catch (GenericException | RequestNotValidException e) {
+        throw new IOException(e);
+      }
+    } else {
+      return CloseableIterables.fromList(((SelectedItemsList<IndexedAIP>) selected).getIds());
+    }
+  }
+
   public static RiskMitigationBundle retrieveShowMitigationTerms(int preMitigationProbability, int preMitigationImpact,
     int posMitigationProbability, int posMitigationImpact) {
     int lowLimit = RodaCoreFactory.getRodaConfigurationAsInt("ui", "risk", "mitigationSeverity", "lowLimit");
@@ -16,6 +16,7 @@ import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -24,6 +25,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
@@ -112,7 +114,9 @@ public class AipsResource {
   public Response retrieveAIP(
     @ApiParam(value = "The ID of the AIP to retrieve.", required = true) @PathParam(RodaConstants.API_PATH_PARAM_AIP_ID) String aipId,
     @ApiParam(value = "Choose format in which to get the AIP", allowableValues = RodaConstants.API_GET_LIST_MEDIA_TYPES, defaultValue = RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSON) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
-    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName,
+    @ApiParam(value = "Compress the ZIP, which then has no known size and cannot be downloaded by ranges", defaultValue = "false") @QueryParam(RodaConstants.API_QUERY_KEY_COMPRESS) boolean compress,
+    @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange, @Context Request req)
     throws RODAException {
     String mediaType = ApiUtils.getMediaType(acceptFormat, request);
 
@@ -121,7 +125,7 @@ public class AipsResource {
 
     // delegate action to controller
     IndexedAIP indexedAIP = Browser.retrieve(user, IndexedAIP.class, aipId, new ArrayList<>());
-    return ApiUtils.okResponse(indexedAIP, acceptFormat, mediaType);
+    return ApiUtils.okResponse(indexedAIP, acceptFormat, mediaType, compress, range, ifRange, req);
   }
 
   @GET
@@ -132,13 +136,14 @@ public class AipsResource {
 
   public Response retrieveAIPPart(
     @ApiParam(value = "The ID of the AIP to retrieve.", required = true) @PathParam(RodaConstants.API_PATH_PARAM_AIP_ID) String aipId,
-    @ApiParam(value = "The part of the AIP to download.", required = true) @PathParam(RodaConstants.API_PATH_PARAM_PART) String part)
+    @ApiParam(value = "The part of the AIP to download.", required = true) @PathParam(RodaConstants.API_PATH_PARAM_PART) String part,
+    @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange, @Context Request req)
     throws RODAException {
     // get user
     User user = UserUtility.getApiUser(request);
 
     // delegate action to controller
-    return ApiUtils.okResponse(Browser.retrieveAIPPart(user, aipId, part));
+    return ApiUtils.okResponse(Browser.retrieveAIPPart(user, aipId, part), false, range, ifRange, req);
   }
 
   @PUT
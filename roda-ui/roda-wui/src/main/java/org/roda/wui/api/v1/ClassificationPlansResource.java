@@ -44,7 +44,7 @@ public class ClassificationPlansResource {
   @GET
   @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
   public Response getClassificationPlan(
-    @DefaultValue("plan.json") @ApiParam(value = "Choose file name", defaultValue = "plan.json") @QueryParam(RodaConstants.API_QUERY_KEY_FILENAME) String filename)
+    @DefaultValue("plan.json") @ApiParam(value = "Choose file name (use .ndjson for one AIP per line and/or .gz for gzip compression)", defaultValue = "plan.json") @QueryParam(RodaConstants.API_QUERY_KEY_FILENAME) String filename)
     throws RODAException {
 
     // get user
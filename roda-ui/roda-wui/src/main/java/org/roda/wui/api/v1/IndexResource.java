@@ -29,6 +29,10 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.server.JSONP;
 import org.roda.core.RodaCoreFactory;
+import org.roda.core.common.ConsumesOutputStream;
+import org.roda.core.common.GzippedOutputStream;
+import org.roda.core.common.ResultsCSVOutputStream;
+import org.roda.core.common.ResultsJSONOutputStream;
 import org.roda.core.common.UserUtility;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
@@ -51,11 +55,11 @@ import org.roda.core.data.v2.index.sort.SortParameter;
 import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.roda.core.data.v2.user.User;
+import org.roda.core.index.utils.IterableIndexResult;
 import org.roda.wui.api.controllers.Browser;
 import org.roda.wui.api.v1.utils.ApiUtils;
 import org.roda.wui.api.v1.utils.ExtraMediaType;
 import org.roda.wui.api.v1.utils.FacetsCSVOutputStream;
-import org.roda.wui.api.v1.utils.ResultsCSVOutputStream;
 import org.roda.wui.common.I18nUtility;
 import org.roda.wui.common.server.RodaStreamingOutput;
 import org.slf4j.Logger;
@@ -93,6 +97,10 @@ public class IndexResource {
    * Default filename for CSV files.
    */
   private static final String DEFAULT_CSV_FILENAME = "export.csv";
+  /**
+   * Default filename for newline delimited JSON files.
+   */
+  private static final String DEFAULT_JSON_FILENAME = "export.ndjson";
   /**
    * CSV type.
    */
@@ -173,20 +181,7 @@ public class IndexResource {
     findRequest.exportFacets = exportFacets;
     findRequest.filename = StringUtils.isBlank(filename) ? DEFAULT_CSV_FILENAME : filename;
 
-    findRequest.filter = new Filter();
-    for (String filterParameter : filterParameters) {
-      final String[] parts = filterParameter.split("=");
-      if (parts.length == 2) {
-        if (parts[0].startsWith("!")) {
-          String key = parts[0].substring(1);
-          findRequest.filter.add(new NotSimpleFilterParameter(key, parts[1]));
-        } else {
-          findRequest.filter.add(new SimpleFilterParameter(parts[0], parts[1]));
-        }
-      } else {
-        LOGGER.warn("Unable to parse filter parameter '{}'. Ignored", filterParameter);
-      }
-    }
+    findRequest.filter = parseFilter(filterParameters);
 
     findRequest.sorter = new Sorter();
     for (String sortParameter : sortParameters) {
@@ -310,6 +305,146 @@ public class IndexResource {
     return Response.ok(result, mediaType).build();
   }
 
+  /**
+   * Export all the indexed resources that match a filter, walking the whole
+   * result set with cursor paging and writing each page to the response as
+   * soon as it is fetched, so that the memory used does not depend on the
+   * number of results. The export stops when the client disconnects.
+   *
+   * @param returnClass
+   *                           {@link Class} of resources to export.
+   * @param filterParameters
+   *                           List of filter parameters. Example:
+   *                           "formatPronom=fmt/19".
+   * @param fields
+   *                           the indexed fields to export, or empty to export
+   *                           the whole resources.
+   * @param onlyActive
+   *                           Export only active resources?
+   * @param filename
+   *                           the filename of the export.
+   * @param acceptFormat
+   *                           the format of the export, "csv" or "json" (one
+   *                           JSON object per line).
+   * @param compress
+   *                           gzip the export?
+   * @return a {@link Response} with the resources.
+   * @throws RODAException
+   *                         if some error occurs.
+   */
+  @GET
+  @Path("/export")
+  @Produces({ExtraMediaType.TEXT_CSV, ExtraMediaType.APPLICATION_NDJSON, ExtraMediaType.APPLICATION_GZIP})
+  @ApiOperation(value = "Export indexed resources", notes = "Export all the indexed resources that match the filter, unsorted.")
+  public Response export(
+    @ApiParam(value = "Class of resources to export", required = true, example = "org.roda.core.data.v2.ip.IndexedFile") @QueryParam(RodaConstants.API_QUERY_KEY_RETURN_CLASS) final String returnClass,
+    @ApiParam(value = "Filter parameters", example = "formatPronom=fmt/19") @QueryParam(RodaConstants.API_QUERY_KEY_FILTER) final List<String> filterParameters,
+    @ApiParam(value = "Indexed fields to export, all if none", example = "uuid") @QueryParam(RodaConstants.API_QUERY_KEY_FIELD) final List<String> fields,
+    @ApiParam(value = "Export only active resources?", defaultValue = "true") @QueryParam(RodaConstants.API_QUERY_KEY_ONLY_ACTIVE) final Boolean onlyActive,
+    @ApiParam(value = "Filename") @QueryParam(RodaConstants.API_QUERY_KEY_FILENAME) final String filename,
+    @ApiParam(value = "Choose format in which to export", allowableValues = "csv, json", defaultValue = RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_CSV) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) final String acceptFormat,
+    @ApiParam(value = "Gzip the export", defaultValue = "false") @QueryParam(RodaConstants.API_QUERY_KEY_COMPRESS) final boolean compress)
+    throws RODAException {
+
+    final User user = UserUtility.getApiUser(request);
+
+    final FindRequest findRequest = new FindRequest();
+    findRequest.classToReturn = returnClass;
+    findRequest.filter = parseFilter(filterParameters);
+    findRequest.fieldsToReturn = new ArrayList<>(fields);
+    findRequest.onlyActive = onlyActive == null ? DEFAULT_ONLY_ACTIVE : onlyActive;
+    findRequest.filename = filename;
+
+    return exportResponse(findRequest, user, acceptFormat, compress);
+  }
+
+  /**
+   * Export all the indexed resources that match a filter.
+   *
+   * @param findRequest
+   *                       find parameters, of which sorter, sublist and
+   *                       facets are ignored.
+   * @param acceptFormat
+   *                       the format of the export, "csv" or "json" (one JSON
+   *                       object per line).
+   * @param compress
+   *                       gzip the export?
+   * @return a {@link Response} with the resources.
+   * @throws RODAException
+   *                         if some error occurs.
+   * @see #export(String, List, List, Boolean, String, String, boolean)
+   */
+  @POST
+  @Path("/export")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Produces({ExtraMediaType.TEXT_CSV, ExtraMediaType.APPLICATION_NDJSON, ExtraMediaType.APPLICATION_GZIP})
+  @ApiOperation(value = "Export indexed resources", notes = "Export all the indexed resources that match the filter, unsorted.")
+  public Response exportFind(@ApiParam(value = "Find parameters") final FindRequest findRequest,
+    @ApiParam(value = "Choose format in which to export", allowableValues = "csv, json", defaultValue = RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_CSV) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) final String acceptFormat,
+    @ApiParam(value = "Gzip the export", defaultValue = "false") @QueryParam(RodaConstants.API_QUERY_KEY_COMPRESS) final boolean compress)
+    throws RODAException {
+    final User user = UserUtility.getApiUser(request);
+    return exportResponse(findRequest, user, acceptFormat, compress);
+  }
+
+  /**
+   * Produces a response that streams all the results of a request.
+   *
+   * @param findRequest
+   *                       the request parameters.
+   * @param user
+   *                       the current {@link User}.
+   * @param acceptFormat
+   *                       the format of the export.
+   * @param compress
+   *                       gzip the export?
+   * @param <T>
+   *                       Type of the resources to export.
+   * @return a {@link Response} with the results.
+   * @throws RequestNotValidException
+   *                                        it the request is not valid.
+   * @throws AuthorizationDeniedException
+   *                                        if the user is not authorized to
+   *                                        perform this operation.
+   * @throws GenericException
+   *                                        if some other error occurs.
+   */
+  private <T extends IsIndexed> Response exportResponse(final FindRequest findRequest, final User user,
+    final String acceptFormat, final boolean compress)
+    throws RequestNotValidException, AuthorizationDeniedException, GenericException {
+
+    final Class<T> returnClass = getClass(findRequest.classToReturn);
+    final List<String> fields = findRequest.fieldsToReturn == null ? new ArrayList<>() : findRequest.fieldsToReturn;
+    final boolean json = RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSON.equals(acceptFormat);
+    if (!json && acceptFormat != null && !RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_CSV.equals(acceptFormat)) {
+      throw new RequestNotValidException("Unsupported export format: " + acceptFormat);
+    }
+
+    // the first page is fetched here, so that errors are reported before the
+    // response is committed
+    final IterableIndexResult<T> results = Browser.findAll(returnClass, findRequest.filter, user,
+      findRequest.onlyActive, fields);
+
+    // find requests default to the CSV filename
+    String filename = findRequest.filename;
+    if (StringUtils.isBlank(filename) || (json && DEFAULT_CSV_FILENAME.equals(filename))) {
+      filename = json ? DEFAULT_JSON_FILENAME : DEFAULT_CSV_FILENAME;
+    }
+
+    ConsumesOutputStream stream;
+    if (json) {
+      stream = new ResultsJSONOutputStream<>(results, fields, filename);
+    } else {
+      stream = new ResultsCSVOutputStream<>(results, fields, filename, getCsvDelimiter());
+    }
+
+    if (compress) {
+      stream = new GzippedOutputStream(stream);
+    }
+
+    return ApiUtils.okResponse(new RodaStreamingOutput(stream).toStreamResponse());
+  }
+
   /**
    * Produces a CSV response with results or facets.
    * 
@@ -332,13 +467,7 @@ public class IndexResource {
     String localeString) throws RequestNotValidException, AuthorizationDeniedException, GenericException {
 
     final Class<T> returnClass = getClass(findRequest.classToReturn);
-    final Configuration config = RodaCoreFactory.getRodaConfiguration();
-    final char delimiter;
-    if (StringUtils.isBlank(config.getString(CONFIG_KEY_CSV_DELIMITER))) {
-      delimiter = CSVFormat.DEFAULT.getDelimiter();
-    } else {
-      delimiter = config.getString(CONFIG_KEY_CSV_DELIMITER).trim().charAt(0);
-    }
+    final char delimiter = getCsvDelimiter();
 
     if (findRequest.exportFacets) {
       IndexResult<T> result = Browser.find(returnClass, findRequest.filter, Sorter.NONE, Sublist.NONE,
@@ -363,6 +492,46 @@ public class IndexResource {
     }
   }
 
+  /**
+   * Return the configured CSV field delimiter.
+   *
+   * @return the CSV field delimiter.
+   */
+  private char getCsvDelimiter() {
+    final Configuration config = RodaCoreFactory.getRodaConfiguration();
+    if (StringUtils.isBlank(config.getString(CONFIG_KEY_CSV_DELIMITER))) {
+      return CSVFormat.DEFAULT.getDelimiter();
+    } else {
+      return config.getString(CONFIG_KEY_CSV_DELIMITER).trim().charAt(0);
+    }
+  }
+
+  /**
+   * Parse filter parameters like "formatPronom=fmt/19", or
+   * "!formatPronom=fmt/19" to exclude a value.
+   *
+   * @param filterParameters
+   *                           the filter parameters.
+   * @return the {@link Filter}.
+   */
+  private Filter parseFilter(final List<String> filterParameters) {
+    final Filter filter = new Filter();
+    for (String filterParameter : filterParameters) {
+      final String[] parts = filterParameter.split("=");
+      if (parts.length == 2) {
+        if (parts[0].startsWith("!")) {
+          String key = parts[0].substring(1);
+          filter.add(new NotSimpleFilterParameter(key, parts[1]));
+        } else {
+          filter.add(new SimpleFilterParameter(parts[0], parts[1]));
+        }
+      } else {
+        LOGGER.warn("Unable to parse filter parameter '{}'. Ignored", filterParameter);
+      }
+    }
+    return filter;
+  }
+
   /**
    * Return the {@link Class} with the specified class name.
    * 
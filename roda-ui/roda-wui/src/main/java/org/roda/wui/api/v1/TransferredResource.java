@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -45,6 +46,7 @@ import org.roda.core.data.v2.index.filter.Filter;
 import org.roda.core.data.v2.index.select.SelectedItemsList;
 import org.roda.core.data.v2.index.sort.Sorter;
 import org.roda.core.data.v2.index.sublist.Sublist;
+import org.roda.core.data.v2.ip.TransferredResourceUpload;
 import org.roda.core.data.v2.ip.TransferredResources;
 import org.roda.core.data.v2.user.User;
 import org.roda.wui.api.controllers.Browser;
@@ -260,6 +262,141 @@ public class TransferredResource {
       .build();
   }
 
+  @POST
+  @Path("/uploads")
+  @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
+  @JSONP(callback = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK, queryParam = RodaConstants.API_QUERY_KEY_JSONP_CALLBACK)
+  @ApiOperation(value = "Create upload", notes = "Start a resumable upload of a file, to be sent in chunks.", response = TransferredResourceUpload.class)
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "OK", response = TransferredResourceUpload.class),
+    @ApiResponse(code = 400, message = "Request not valid", response = ApiResponseMessage.class)})
+
+  public Response createUpload(
+    @ApiParam(value = "The id of the parent") @QueryParam(RodaConstants.TRANSFERRED_RESOURCE_PARENT_UUID) String parentUUID,
+    @ApiParam(value = "The name of the file", required = true) @QueryParam(RodaConstants.API_PATH_PARAM_NAME) String name,
+    @ApiParam(value = "The size of the file, in bytes", required = true) @QueryParam("size") long size,
+    @ApiParam(value = "The SHA-256 of the whole file, verified when the upload is finished") @QueryParam("checksum") String checksum,
+    @ApiParam(value = "Choose format in which to get the response", allowableValues = RodaConstants.API_POST_PUT_MEDIA_TYPES) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    throws RODAException {
+    String mediaType = ApiUtils.getMediaType(acceptFormat, request);
+
+    // get user
+    User user = UserUtility.getApiUser(request);
+
+    // delegate action to controller
+    TransferredResourceUpload upload = Browser.createTransferredResourceUpload(user, parentUUID, name, size, checksum);
+    return Response.ok(upload, mediaType).build();
+  }
+
+  @GET
+  @Path("/uploads/{" + RodaConstants.API_PATH_PARAM_UPLOAD_ID + "}")
+  @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
+  @JSONP(callback = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK, queryParam = RodaConstants.API_QUERY_KEY_JSONP_CALLBACK)
+  @ApiOperation(value = "Get upload", notes = "Get the progress of an upload, i.e. the byte ranges already received.", response = TransferredResourceUpload.class)
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "OK", response = TransferredResourceUpload.class),
+    @ApiResponse(code = 404, message = "Not found", response = ApiResponseMessage.class)})
+
+  public Response getUpload(
+    @ApiParam(value = "The id of the upload", required = true) @PathParam(RodaConstants.API_PATH_PARAM_UPLOAD_ID) String uploadId,
+    @ApiParam(value = "Choose format in which to get the response", allowableValues = RodaConstants.API_POST_PUT_MEDIA_TYPES) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    throws RODAException {
+    String mediaType = ApiUtils.getMediaType(acceptFormat, request);
+
+    // get user
+    User user = UserUtility.getApiUser(request);
+
+    // delegate action to controller
+    TransferredResourceUpload upload = Browser.retrieveTransferredResourceUpload(user, uploadId);
+    return Response.ok(upload, mediaType).build();
+  }
+
+  @PUT
+  @Path("/uploads/{" + RodaConstants.API_PATH_PARAM_UPLOAD_ID + "}")
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
+  @JSONP(callback = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK, queryParam = RodaConstants.API_QUERY_KEY_JSONP_CALLBACK)
+  @ApiOperation(value = "Upload chunk", notes = "Upload a chunk of the file, starting at the given offset. Chunks can be sent in any order and sent again if they fail.", response = TransferredResourceUpload.class)
+  @ApiResponses(value = {@ApiResponse(code = 200, message = "OK", response = TransferredResourceUpload.class),
+    @ApiResponse(code = 400, message = "Request not valid (e.g. checksum mismatch)", response = ApiResponseMessage.class),
+    @ApiResponse(code = 404, message = "Not found", response = ApiResponseMessage.class)})
+
+  public Response uploadChunk(
+    @ApiParam(value = "The id of the upload", required = true) @PathParam(RodaConstants.API_PATH_PARAM_UPLOAD_ID) String uploadId,
+    @ApiParam(value = "The offset of the chunk in the file", required = true) @QueryParam("offset") long offset,
+    @ApiParam(value = "The SHA-256 of the chunk") @QueryParam("checksum") String checksum,
+    @ApiParam(value = "The chunk content", required = true) InputStream inputStream,
+    @ApiParam(value = "Choose format in which to get the response", allowableValues = RodaConstants.API_POST_PUT_MEDIA_TYPES) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    throws RODAException {
+    String mediaType = ApiUtils.getMediaType(acceptFormat, request);
+
+    // get user
+    User user = UserUtility.getApiUser(request);
+
+    // delegate action to controller
+    TransferredResourceUpload upload = Browser.uploadTransferredResourceChunk(user, uploadId, offset, inputStream,
+      checksum);
+    return Response.ok(upload, mediaType).build();
+  }
+
+  @POST
+  @Path("/uploads/{" + RodaConstants.API_PATH_PARAM_UPLOAD_ID + "}")
+  @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
+  @JSONP(callback = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK, queryParam = RodaConstants.API_QUERY_KEY_JSONP_CALLBACK)
+  @ApiOperation(value = "Finish upload", notes = "Verify the uploaded file and add it to the transferred resources.", response = org.roda.core.data.v2.ip.TransferredResource.class)
+  @ApiResponses(value = {
+    @ApiResponse(code = 200, message = "OK", response = org.roda.core.data.v2.ip.TransferredResource.class),
+    @ApiResponse(code = 400, message = "Upload not complete or checksum mismatch", response = ApiResponseMessage.class),
+    @ApiResponse(code = 409, message = "Already exists", response = ApiResponseMessage.class)})
+
+  public Response finishUpload(
+    @ApiParam(value = "The id of the upload", required = true) @PathParam(RodaConstants.API_PATH_PARAM_UPLOAD_ID) String uploadId,
+    @ApiParam(value = "Locale") @QueryParam(RodaConstants.LOCALE) String localeString,
+    @ApiParam(value = "Commit after creation", defaultValue = "false") @QueryParam(RodaConstants.API_QUERY_PARAM_COMMIT) String commitString,
+    @ApiParam(value = "Choose format in which to get the response", allowableValues = RodaConstants.API_POST_PUT_MEDIA_TYPES) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    throws RODAException {
+    String mediaType = ApiUtils.getMediaType(acceptFormat, request);
+
+    // get user
+    User user = UserUtility.getApiUser(request);
+
+    // delegate action to controller
+    try {
+      boolean forceCommit = StringUtils.isNotBlank(commitString) && Boolean.parseBoolean(commitString);
+      org.roda.core.data.v2.ip.TransferredResource transferredResource = Browser.finishTransferredResourceUpload(user,
+        uploadId, forceCommit);
+      return Response.ok(transferredResource, mediaType).build();
+    } catch (AlreadyExistsException e) {
+      return Response.status(Status.CONFLICT).entity(new ApiResponseMessage(ApiResponseMessage.ERROR,
+        I18nUtility.getMessage("ui.upload.error.alreadyexists", e.getMessage(), localeString))).build();
+    }
+  }
+
+  @DELETE
+  @Path("/uploads/{" + RodaConstants.API_PATH_PARAM_UPLOAD_ID + "}")
+  @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
+  @JSONP(callback = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK, queryParam = RodaConstants.API_QUERY_KEY_JSONP_CALLBACK)
+  @ApiOperation(value = "Delete upload", notes = "Cancel an upload, discarding the chunks already received.", response = Void.class)
+  @ApiResponses(value = {@ApiResponse(code = 204, message = "OK", response = Void.class),
+    @ApiResponse(code = 404, message = "Not found", response = ApiResponseMessage.class)})
+
+  public Response deleteUpload(
+    @ApiParam(value = "The id of the upload", required = true) @PathParam(RodaConstants.API_PATH_PARAM_UPLOAD_ID) String uploadId,
+    @ApiParam(value = "Choose format in which to get the response", allowableValues = RodaConstants.API_DELETE_MEDIA_TYPES) @QueryParam(RodaConstants.API_QUERY_KEY_ACCEPT_FORMAT) String acceptFormat,
+    @ApiParam(value = "JSONP callback name", required = false, allowMultiple = false, defaultValue = RodaConstants.API_QUERY_DEFAULT_JSONP_CALLBACK) @QueryParam(RodaConstants.API_QUERY_KEY_JSONP_CALLBACK) String jsonpCallbackName)
+    throws RODAException {
+    String mediaType = ApiUtils.getMediaType(acceptFormat, request);
+
+    // get user
+    User user = UserUtility.getApiUser(request);
+
+    // delegate action to controller
+    Browser.deleteTransferredResourceUpload(user, uploadId);
+    return Response.ok(new ApiResponseMessage(ApiResponseMessage.OK, "Upload deleted"), mediaType).build();
+  }
+
   @GET
   @Path("/reindex")
   @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, ExtraMediaType.APPLICATION_JAVASCRIPT})
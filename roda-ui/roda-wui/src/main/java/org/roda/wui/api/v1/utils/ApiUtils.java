@@ -11,8 +11,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
@@ -218,19 +222,19 @@ public class ApiUtils {
       response.header(HttpHeaders.CONTENT_LENGTH, streamResponse.getFileSize());
     }
 
-    Date lastModifiedDate = streamResponse.getLastModified();
-    if (lastModifiedDate != null) {
+    EntityTag etag = getEntityTag(streamResponse);
+    if (etag != null) {
       CacheControl cc = new CacheControl();
       cc.setMaxAge(CACHE_CONTROL_MAX_AGE);
       cc.setPrivate(true);
-      EntityTag etag = null;
-      etag = new EntityTag(Long.toString(lastModifiedDate.getTime()));
       ResponseBuilder builder = request.evaluatePreconditions(etag);
       if (builder != null) {
         return builder.cacheControl(cc).tag(etag).build();
       }
 
-      response.header(HttpHeaders.LAST_MODIFIED, streamResponse.getLastModified());
+      if (streamResponse.getLastModified() != null) {
+        response.header(HttpHeaders.LAST_MODIFIED, streamResponse.getLastModified());
+      }
       response.cacheControl(cc).tag(etag);
     }
 
@@ -243,28 +247,96 @@ public class ApiUtils {
 
   private static final int CACHE_CONTROL_MAX_AGE = 60;
 
+  /**
+   * @return the entity tag of the stream, derived from its last modification
+   *         time if it has none, or null if neither is known
+   */
+  private static EntityTag getEntityTag(StreamResponse streamResponse) {
+    if (streamResponse.getEntityTag() != null) {
+      return new EntityTag(streamResponse.getEntityTag());
+    }
+    Date lastModifiedDate = streamResponse.getLastModified();
+    return lastModifiedDate == null ? null : new EntityTag(Long.toString(lastModifiedDate.getTime()));
+  }
+
+  /**
+   * @param ifRange
+   *          the If-Range header, an entity tag or a date, may be null
+   * @return true if the stream still matches the If-Range validator, so that
+   *         the requested range can be sent
+   */
+  private static boolean isRangeValid(StreamResponse streamResponse, String ifRange) {
+    if (ifRange == null) {
+      return true;
+    }
+
+    String validator = ifRange.trim();
+    if (validator.startsWith("\"") || validator.startsWith("W/")) {
+      // weak entity tags never match
+      EntityTag etag = getEntityTag(streamResponse);
+      return etag != null && validator.equals("\"" + etag.getValue() + "\"");
+    }
+
+    // a date only validates streams without an entity tag of their own, e.g.
+    // removing an entry of a ZIP does not change its last modification time
+    Date lastModified = streamResponse.getLastModified();
+    if (lastModified == null || streamResponse.getEntityTag() != null) {
+      return false;
+    }
+    try {
+      long date = ZonedDateTime.parse(validator, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+      return date == TimeUnit.MILLISECONDS.toSeconds(lastModified.getTime());
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
   public static Response okResponse(StreamResponse streamResponse, boolean inline, final String range,
     Request request) {
+    return okResponse(streamResponse, inline, range, null, request);
+  }
+
+  /**
+   * @param range
+   *          the requested range, may be null
+   * @param ifRange
+   *          the If-Range header, may be null. If the stream changed since, the
+   *          whole stream is sent instead of the range
+   */
+  public static Response okResponse(StreamResponse streamResponse, boolean inline, final String range,
+    final String ifRange, Request request) {
 
     // range not requested : Firefox, Opera, IE do not send range headers
     // cannot skip content
     // cannot calculate file size
+    // stream changed since the client got the first part of it
+    boolean rangeValid = isRangeValid(streamResponse, ifRange);
     if (range == null || !(streamResponse.getStream() instanceof ConsumesSkipableOutputStream)
-      || streamResponse.getFileSize() < 0) {
-      return okResponse(streamResponse, inline, range == null, request);
+      || streamResponse.getFileSize() < 0 || !rangeValid) {
+      return okResponse(streamResponse, inline, range == null || !rangeValid, request);
     }
 
     String[] ranges = range.split("=")[1].split("-");
-    final int from = Integer.parseInt(ranges[0]);
-
     long fileSize = streamResponse.getFileSize();
-    int to = (int) (fileSize - 1);
-    if (ranges.length == 2) {
-      to = Integer.parseInt(ranges[1]);
+    long to = fileSize - 1;
+    final long from;
+    if (ranges[0].isEmpty()) {
+      // suffix range, i.e. the last bytes
+      from = Math.max(0, fileSize - Long.parseLong(ranges[1]));
+    } else {
+      from = Long.parseLong(ranges[0]);
+      if (ranges.length == 2) {
+        to = Math.min(Long.parseLong(ranges[1]), fileSize - 1);
+      }
+    }
+
+    if (from > to) {
+      return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE).header("Content-Range", "bytes */" + fileSize)
+        .build();
     }
 
     final String responseRange = String.format("bytes %d-%d/%d", from, to, fileSize);
-    final int len = to - from + 1;
+    final long len = to - from + 1;
 
     StreamingOutput so = new StreamingOutput() {
       @Override
@@ -285,19 +357,19 @@ public class ApiUtils {
       .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(inline) + CONTENT_DISPOSITION_FILENAME_ARGUMENT + "\""
         + streamResponse.getFilename() + "\"");
 
-    Date lastModifiedDate = streamResponse.getLastModified();
-    if (lastModifiedDate != null) {
+    EntityTag etag = getEntityTag(streamResponse);
+    if (etag != null) {
       CacheControl cc = new CacheControl();
       cc.setMaxAge(CACHE_CONTROL_MAX_AGE);
       cc.setPrivate(true);
-      EntityTag etag = null;
-      etag = new EntityTag(Long.toString(lastModifiedDate.getTime()));
       ResponseBuilder builder = request.evaluatePreconditions(etag);
       if (builder != null) {
         return builder.cacheControl(cc).tag(etag).build();
       }
 
-      response.header(HttpHeaders.LAST_MODIFIED, streamResponse.getLastModified());
+      if (streamResponse.getLastModified() != null) {
+        response.header(HttpHeaders.LAST_MODIFIED, streamResponse.getLastModified());
+      }
       response.cacheControl(cc).tag(etag);
     }
 
@@ -417,11 +489,32 @@ public class ApiUtils {
 
   public static StreamResponse download(Resource resource, String fileName)
     throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
-    ConsumesOutputStream download = DownloadUtils.download(RodaCoreFactory.getStorageService(), resource, fileName);
+    return download(resource, fileName, false);
+  }
+
+  public static StreamResponse download(Resource resource, String fileName, boolean compress)
+    throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
+    ConsumesOutputStream download = DownloadUtils.download(RodaCoreFactory.getStorageService(), resource, fileName,
+      compress);
     return new StreamResponse(download);
   }
 
   public static <T extends IsIndexed> Response okResponse(T indexed, String acceptFormat, String mediaType)
+    throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
+    return okResponse(indexed, acceptFormat, mediaType, false, null, null, null);
+  }
+
+  /**
+   * @param compress
+   *          if ZIP downloads should be compressed, instead of having a known
+   *          size and supporting ranges
+   * @param range
+   *          the requested range of the ZIP download, may be null
+   * @param ifRange
+   *          the If-Range header of the ZIP download, may be null
+   */
+  public static <T extends IsIndexed> Response okResponse(T indexed, String acceptFormat, String mediaType,
+    boolean compress, String range, String ifRange, Request request)
     throws RequestNotValidException, NotFoundException, GenericException, AuthorizationDeniedException {
     EntityResponse response;
 
@@ -431,7 +524,7 @@ public class ApiUtils {
         StoragePath storagePath = ModelUtils.getAIPStoragePath(indexedAIP.getId());
         StorageService storage = RodaCoreFactory.getStorageService();
         Directory directory = storage.getDirectory(storagePath);
-        response = download(directory, indexedAIP.getTitle());
+        response = download(directory, indexedAIP.getTitle(), compress);
       } else if (RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSON.equals(acceptFormat)
         || RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_XML.equals(acceptFormat)
         || RodaConstants.API_QUERY_VALUE_ACCEPT_FORMAT_JSONP.equals(acceptFormat)) {
@@ -444,6 +537,8 @@ public class ApiUtils {
       if (response instanceof ObjectResponse) {
         ObjectResponse<AIP> aip = (ObjectResponse<AIP>) response;
         return Response.ok(aip.getObject(), mediaType).build();
+      } else if (request != null) {
+        return ApiUtils.okResponse((StreamResponse) response, false, range, ifRange, request);
       } else {
         return ApiUtils.okResponse((StreamResponse) response);
       }
@@ -7,6 +7,8 @@
  */
 package org.roda.wui.api.v1.utils;
 
+import org.roda.core.data.common.RodaConstants;
+
 /**
  * An abstraction for extra media types. Instances are immutable.
  *
@@ -20,9 +22,11 @@ public final class ExtraMediaType {
   /**
    * A {@code String} constant representing {@value #TEXT_CSV} media type.
    */
-  public static final String TEXT_CSV = "text/csv";
+  public static final String TEXT_CSV = RodaConstants.MEDIA_TYPE_TEXT_CSV;
   public static final String APPLICATION_ZIP = "application/zip";
   public static final String APPLICATION_JAVASCRIPT = "application/javascript";
+  public static final String APPLICATION_NDJSON = RodaConstants.MEDIA_TYPE_APPLICATION_NDJSON;
+  public static final String APPLICATION_GZIP = RodaConstants.MEDIA_TYPE_APPLICATION_GZIP;
 
   /**
    * Constructor.
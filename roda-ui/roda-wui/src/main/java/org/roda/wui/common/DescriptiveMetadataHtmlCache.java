@@ -0,0 +1,422 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE file at the root of the source
+ * tree and available online at
+ *
+ * https://github.com/keeps/roda
+ */
+package org.roda.wui.common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.roda.core.RodaCoreFactory;
+import org.roda.core.common.RodaUtils;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.exceptions.ReturnWithExceptions;
+import org.roda.core.data.v2.index.filter.EmptyKeyFilterParameter;
+import org.roda.core.data.v2.index.filter.Filter;
+import org.roda.core.data.v2.index.filter.OneOfManyFilterParameter;
+import org.roda.core.data.v2.ip.AIP;
+import org.roda.core.data.v2.ip.IndexedAIP;
+import org.roda.core.data.v2.ip.metadata.DescriptiveMetadata;
+import org.roda.core.index.utils.IterableIndexResult;
+import org.roda.core.model.ModelObserver;
+import org.roda.core.model.ModelObserverAdapter;
+import org.roda.core.model.ModelService;
+import org.roda.core.model.utils.ModelUtils;
+import org.roda.core.storage.Binary;
+import org.roda.core.storage.StoragePath;
+import org.roda.core.storage.StorageService;
+import org.roda.core.storage.StorageServiceUtils;
+import org.roda.core.storage.fs.FSUtils;
+import org.roda.wui.common.server.ServerTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps the HTML rendered from descriptive metadata, so the dissemination
+ * crosswalk is not applied on every view.
+ *
+ * Entries are identified by the metadata binary (and binary version), its
+ * content (checksum, or size and modification time), its type/version and the
+ * locale, so that a binary changed without the model being notified (e.g. by
+ * another node) is rendered again. The HTML of a binary whose content cannot
+ * be identified is not kept. Entries are kept in memory and, optionally, on
+ * disk, and are dropped when the model notifies a change to the descriptive
+ * metadata of an AIP or when a dissemination crosswalk in the configuration
+ * folder changes.
+ */
+public class DescriptiveMetadataHtmlCache extends ModelObserverAdapter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DescriptiveMetadataHtmlCache.class);
+
+  private static final String CONFIG_PREFIX = "ui.browser.metadata.html_cache";
+  private static final int DEFAULT_SIZE_IN_MB = 64;
+  private static final int DEFAULT_CROSSWALKS_CHECK_INTERVAL_IN_SECONDS = 60;
+  private static final int DEFAULT_PREWARM_MAX_AIPS = 1000;
+  private static final String DISK_FOLDER = "descriptive-metadata-html";
+  private static final String CROSSWALKS_MARKER = "crosswalks.lastModified";
+  private static final String HTML_EXT = ".html";
+  private static final String KEY_SEPARATOR = "/";
+
+  private static DescriptiveMetadataHtmlCache instance = null;
+
+  private final Cache<String, String> cache;
+  private final Path diskDirectory;
+  private final long crosswalksCheckIntervalInMillis;
+  private volatile long crosswalksLastChecked = 0;
+  private volatile long crosswalksLastModified = -1;
+
+  public DescriptiveMetadataHtmlCache(long sizeInBytes, Path diskDirectory, long crosswalksCheckIntervalInMillis) {
+    this.cache = CacheBuilder.newBuilder().maximumWeight(sizeInBytes)
+      .weigher((String key, String html) -> key.length() + html.length()).build();
+    this.diskDirectory = diskDirectory;
+    this.crosswalksCheckIntervalInMillis = crosswalksCheckIntervalInMillis;
+    this.crosswalksLastModified = getCrosswalksLastModified();
+    this.crosswalksLastChecked = System.currentTimeMillis();
+
+    if (diskDirectory != null) {
+      checkDiskCrosswalksMarker();
+    }
+  }
+
+  /**
+   * Drops what is on disk if the crosswalks changed while RODA was stopped.
+   */
+  private void checkDiskCrosswalksMarker() {
+    Path marker = diskDirectory.resolve(CROSSWALKS_MARKER);
+    String lastModified = Long.toString(crosswalksLastModified);
+    try {
+      if (!FSUtils.isFile(marker)
+        || !lastModified.equals(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8))) {
+        FSUtils.deletePathQuietly(diskDirectory);
+        Files.createDirectories(diskDirectory);
+        Files.write(marker, lastModified.getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not check descriptive metadata HTML disk cache at {}", diskDirectory, e);
+    }
+  }
+
+  public static synchronized DescriptiveMetadataHtmlCache getInstance() {
+    if (instance == null) {
+      int sizeInMB = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_SIZE_IN_MB, CONFIG_PREFIX, "size_in_mb");
+      int checkInterval = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_CROSSWALKS_CHECK_INTERVAL_IN_SECONDS,
+        CONFIG_PREFIX, "crosswalks_check_interval_in_seconds");
+      Path diskDirectory = null;
+      if (RodaCoreFactory.getProperty(CONFIG_PREFIX + ".disk", false)) {
+        diskDirectory = RodaCoreFactory.getWorkingDirectory().resolve(DISK_FOLDER);
+      }
+
+      instance = new DescriptiveMetadataHtmlCache(sizeInMB * 1024L * 1024L, diskDirectory,
+        TimeUnit.SECONDS.toMillis(checkInterval));
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.addModelObserver(instance);
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Starts pre-warming the cache in background, if configured to do so.
+   */
+  public static void prewarmInBackground() {
+    int levels = RodaCoreFactory.getRodaConfigurationAsInt(0, CONFIG_PREFIX, "prewarm", "levels");
+    if (levels > 0) {
+      int maxAIPs = RodaCoreFactory.getRodaConfigurationAsInt(DEFAULT_PREWARM_MAX_AIPS, CONFIG_PREFIX, "prewarm",
+        "max_aips");
+      List<Locale> locales = RodaCoreFactory.getRodaConfigurationAsList(CONFIG_PREFIX, "prewarm", "locales").stream()
+        .map(ServerTools::parseLocale).collect(Collectors.toList());
+      if (locales.isEmpty()) {
+        locales.add(Locale.ENGLISH);
+      }
+
+      Thread thread = new Thread(() -> getInstance().prewarm(levels, maxAIPs, locales),
+        "descriptive-metadata-html-prewarm");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      ModelService model = RodaCoreFactory.getModelService();
+      if (model != null) {
+        model.removeModelObserver(instance);
+      }
+      instance.cache.invalidateAll();
+      instance = null;
+    }
+  }
+
+  /**
+   * Retrieves the HTML of the current version of a descriptive metadata
+   * binary, rendering it only if it is not cached.
+   */
+  public String getHtml(String aipId, String representationId, DescriptiveMetadata descriptiveMetadata,
+    Locale locale) throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
+    return getHtml(aipId, representationId, descriptiveMetadata, null, locale);
+  }
+
+  /**
+   * Retrieves the HTML of a descriptive metadata binary (or one of its
+   * versions), rendering it only if it is not cached.
+   */
+  public String getHtml(String aipId, String representationId, DescriptiveMetadata descriptiveMetadata,
+    String binaryVersionId, Locale locale)
+    throws GenericException, RequestNotValidException, NotFoundException, AuthorizationDeniedException {
+    checkCrosswalks();
+
+    StorageService storage = RodaCoreFactory.getStorageService();
+    StoragePath storagePath = representationId != null
+      ? ModelUtils.getDescriptiveMetadataStoragePath(aipId, representationId, descriptiveMetadata.getId())
+      : ModelUtils.getDescriptiveMetadataStoragePath(aipId, descriptiveMetadata.getId());
+    Binary binary = binaryVersionId != null ? storage.getBinaryVersion(storagePath, binaryVersionId).getBinary()
+      : storage.getBinary(storagePath);
+
+    // binary versions never change
+    String contentId = binaryVersionId != null ? binaryVersionId : getContentId(binary);
+    if (contentId == null) {
+      return HTMLUtils.descriptiveMetadataToHtml(binary, descriptiveMetadata.getType(),
+        descriptiveMetadata.getVersion(), locale);
+    }
+
+    String key = aipId + KEY_SEPARATOR + (representationId != null ? representationId : "") + KEY_SEPARATOR
+      + descriptiveMetadata.getId() + KEY_SEPARATOR + (binaryVersionId != null ? binaryVersionId : "")
+      + KEY_SEPARATOR + contentId + KEY_SEPARATOR + descriptiveMetadata.getType() + KEY_SEPARATOR
+      + descriptiveMetadata.getVersion() + KEY_SEPARATOR + locale;
+
+    String html = cache.getIfPresent(key);
+    if (html == null) {
+      html = readFromDisk(aipId, key);
+    }
+
+    if (html == null) {
+      html = HTMLUtils.descriptiveMetadataToHtml(binary, descriptiveMetadata.getType(),
+        descriptiveMetadata.getVersion(), locale);
+      writeToDisk(aipId, key, html);
+    }
+
+    cache.put(key, html);
+    return html;
+  }
+
+  /**
+   * @return the checksums of the binary or, if unknown, its size and last
+   *         modification time, or null if the content cannot be identified
+   */
+  private static String getContentId(Binary binary) {
+    Map<String, String> digests = binary.getContentDigest();
+    if (digests != null && !digests.isEmpty()) {
+      return new TreeMap<>(digests).toString();
+    }
+
+    long lastModified = StorageServiceUtils.getLastModified(binary);
+    return lastModified < 0 ? null : binary.getSizeInBytes() + "-" + lastModified;
+  }
+
+  public void invalidateAIP(String aipId) {
+    String prefix = aipId + KEY_SEPARATOR;
+    cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    if (diskDirectory != null) {
+      FSUtils.deletePathQuietly(getDiskDirectory(aipId));
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+    if (diskDirectory != null) {
+      checkDiskCrosswalksMarker();
+    }
+  }
+
+  /**
+   * Renders the AIP descriptive metadata of the top levels of the
+   * classification tree, for each of the given locales.
+   *
+   * @param levels
+   *          number of levels, starting at the root AIPs.
+   * @param maxAIPs
+   *          maximum number of AIPs to go through.
+   */
+  public void prewarm(int levels, int maxAIPs, List<Locale> locales) {
+    ModelService model = RodaCoreFactory.getModelService();
+    List<String> currentLevel = Collections.emptyList();
+    int total = 0;
+
+    try {
+      for (int level = 0; level < levels && total < maxAIPs; level++) {
+        List<Filter> filters = new ArrayList<>();
+        if (level == 0) {
+          filters.add(new Filter(new EmptyKeyFilterParameter(RodaConstants.AIP_PARENT_ID)));
+        } else {
+          for (List<String> parents : Lists.partition(currentLevel, RodaConstants.DEFAULT_PAGINATION_VALUE)) {
+            filters.add(new Filter(new OneOfManyFilterParameter(RodaConstants.AIP_PARENT_ID, parents)));
+          }
+        }
+
+        List<String> nextLevel = new ArrayList<>();
+        for (Filter filter : filters) {
+          try (IterableIndexResult<IndexedAIP> aips = RodaCoreFactory.getIndexService().findAll(IndexedAIP.class,
+            filter, Collections.singletonList(RodaConstants.INDEX_UUID))) {
+            for (IndexedAIP indexedAIP : aips) {
+              if (total++ >= maxAIPs) {
+                break;
+              }
+              nextLevel.add(indexedAIP.getId());
+              prewarm(model, indexedAIP.getId(), locales);
+            }
+          }
+        }
+        currentLevel = nextLevel;
+      }
+    } catch (RODAException | IOException | RuntimeException e) {
+      LOGGER.warn("Could not pre-warm descriptive metadata HTML cache", e);
+    }
+
+    LOGGER.info("Pre-warmed descriptive metadata HTML cache with {} AIPs", total);
+  }
+
+  private void prewarm(ModelService model, String aipId, List<Locale> locales) {
+    try {
+      AIP aip = model.retrieveAIP(aipId);
+      for (DescriptiveMetadata descriptiveMetadata : aip.getDescriptiveMetadata()) {
+        for (Locale locale : locales) {
+          getHtml(aipId, null, descriptiveMetadata, locale);
+        }
+      }
+    } catch (RODAException | RuntimeException e) {
+      LOGGER.debug("Could not pre-warm descriptive metadata HTML of AIP {}", aipId, e);
+    }
+  }
+
+  private void checkCrosswalks() {
+    long now = System.currentTimeMillis();
+    if (now - crosswalksLastChecked > crosswalksCheckIntervalInMillis) {
+      crosswalksLastChecked = now;
+      long lastModified = getCrosswalksLastModified();
+      if (lastModified != crosswalksLastModified) {
+        LOGGER.info("Dissemination crosswalks changed, clearing descriptive metadata HTML cache");
+        crosswalksLastModified = lastModified;
+        RodaUtils.invalidateMetadataStylesheets();
+        invalidateAll();
+      }
+    }
+  }
+
+  private static long getCrosswalksLastModified() {
+    Path crosswalks = RodaCoreFactory.getConfigPath().resolve(RodaConstants.CROSSWALKS_DISSEMINATION_HTML_PATH);
+    if (!FSUtils.isDirectory(crosswalks)) {
+      return -1;
+    }
+
+    try (Stream<Path> paths = Files.walk(crosswalks)) {
+      return paths.map(path -> {
+        try {
+          return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+          return FileTime.fromMillis(0);
+        }
+      }).mapToLong(FileTime::toMillis).max().orElse(-1);
+    } catch (IOException e) {
+      LOGGER.debug("Could not check dissemination crosswalks modification time", e);
+      return -1;
+    }
+  }
+
+  private Path getDiskDirectory(String aipId) {
+    return diskDirectory.resolve(DigestUtils.sha1Hex(aipId));
+  }
+
+  private String readFromDisk(String aipId, String key) {
+    if (diskDirectory == null) {
+      return null;
+    }
+
+    Path file = getDiskDirectory(aipId).resolve(DigestUtils.sha256Hex(key) + HTML_EXT);
+    try {
+      return FSUtils.isFile(file) ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8) : null;
+    } catch (IOException e) {
+      LOGGER.debug("Could not read cached descriptive metadata HTML {}", file, e);
+      return null;
+    }
+  }
+
+  private void writeToDisk(String aipId, String key, String html) {
+    if (diskDirectory == null) {
+      return;
+    }
+
+    Path directory = getDiskDirectory(aipId);
+    Path file = directory.resolve(DigestUtils.sha256Hex(key) + HTML_EXT);
+    try {
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, null, HTML_EXT);
+      Files.write(temp, html.getBytes(StandardCharsets.UTF_8));
+      FSUtils.move(temp, file, true);
+    } catch (IOException | RODAException e) {
+      LOGGER.debug("Could not write cached descriptive metadata HTML {}", file, e);
+    }
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipDeleted(String aipId, boolean deleteIncidences) {
+    invalidateAIP(aipId);
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> aipsDeleted(List<String> aipIds, boolean deleteIncidences) {
+    aipIds.forEach(this::invalidateAIP);
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataCreated(DescriptiveMetadata metadata) {
+    invalidateAIP(metadata.getAipId());
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataUpdated(DescriptiveMetadata metadata) {
+    invalidateAIP(metadata.getAipId());
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> descriptiveMetadataDeleted(String aipId, String representationId,
+    String descriptiveMetadataBinaryId) {
+    invalidateAIP(aipId);
+    return new ReturnWithExceptions<>(this);
+  }
+
+  @Override
+  public ReturnWithExceptions<Void, ModelObserver> representationDeleted(String aipId, String representationId,
+    boolean deleteIncidences) {
+    invalidateAIP(aipId);
+    return new ReturnWithExceptions<>(this);
+  }
+}
@@ -14,6 +14,7 @@ import javax.servlet.http.HttpServlet;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.roda.core.RodaCoreFactory;
+import org.roda.wui.common.DescriptiveMetadataHtmlCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,11 +44,14 @@ public class RodaWuiServlet extends HttpServlet {
 
     RodaCoreFactory.addLogger("logback_wui.xml");
 
+    DescriptiveMetadataHtmlCache.prewarmInBackground();
+
     LOGGER.info("RODA started with success!");
   }
 
   @Override
   public void destroy() {
+    DescriptiveMetadataHtmlCache.shutdownInstance();
     RodaCoreFactory.shutdown();
     LOGGER.info("Shutdown: ok...");
   }